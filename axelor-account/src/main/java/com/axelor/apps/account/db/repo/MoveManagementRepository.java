@@ -107,7 +107,9 @@ public class MoveManagementRepository extends MoveRepository {
           }
         }
       }
-      return super.save(move);
+      move = super.save(move);
+      Beans.get(MoveValidateService.class).postDayBookUpdate(move);
+      return move;
     } catch (Exception e) {
       throw new PersistenceException(e.getLocalizedMessage());
     }
@@ -228,6 +228,7 @@ public interface IExceptionMessage {
       "Account balances of %s accounting situation has not been updated, you must run the contact account batch update." /*)*/;
   static final String BATCH_ACCOUNT_5 = /*$$(*/
       "Account balances from all accounts situations (%s) has been updated." /*)*/;
+  static final String BATCH_ACCOUNT_6 = /*$$(*/ "* %s Partner balance ledger(s) corrected" /*)*/;
 
   /** Batch doubtful customer */
   static final String BATCH_DOUBTFUL_1 = /*$$(*/
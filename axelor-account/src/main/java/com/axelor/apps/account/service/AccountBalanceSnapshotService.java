@@ -0,0 +1,96 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.base.db.Period;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Debit and credit totals of the accounts by period and move status, so the balance of an account
+ * is read from a few rows instead of all its move lines.
+ *
+ * <p>Snapshots are added with the amounts of the moves when they are validated, saved in the
+ * daybook or canceled, merged from time to time, and computed again from the move lines when their
+ * period is closed, after which they are frozen.
+ */
+public interface AccountBalanceSnapshotService {
+
+  /**
+   * Check whether the lines of a move are in the snapshots.
+   *
+   * @param move
+   * @return true if the move is in the daybook or validated, and not ignored in accounting
+   */
+  boolean isPosted(Move move);
+
+  /**
+   * Add the amounts of the lines of a move to the snapshots of their accounts, under the current
+   * status of the move.
+   *
+   * @param move
+   * @param sign 1 when the move is posted, -1 when it is withdrawn
+   */
+  void postMove(Move move, int sign);
+
+  /**
+   * Post the changes of a move updated in place: the amounts of its lines as they were posted are
+   * withdrawn and the amounts of its new lines are added, so only the keys whose totals changed get
+   * a new snapshot.
+   *
+   * @param oldMove the move with its lines as they were posted
+   * @param move the updated move
+   */
+  void postMoveUpdate(Move oldMove, Move move);
+
+  /**
+   * Compute again all the snapshots of an account from its move lines.
+   *
+   * @param account
+   */
+  void rebuild(Account account);
+
+
+  /**
+   * Compute again the snapshots of all the accounts for a closed period, and freeze them.
+   *
+   * @param period
+   */
+  void freeze(Period period);
+
+  /**
+   * Release the frozen snapshots of a period opened again for adjustment.
+   *
+   * @param period
+   */
+  void unfreeze(Period period);
+
+  /**
+   * Compute the debit balance of an account: the snapshots of the periods ended at the date, and
+   * the move lines up to the date of the other periods.
+   *
+   * @param account
+   * @param date date of the balance, null for all the moves
+   * @param statusList statuses of the moves to take into account
+   * @return debit - credit
+   */
+  BigDecimal getBalance(Account account, LocalDate date, Collection<Integer> statusList);
+}
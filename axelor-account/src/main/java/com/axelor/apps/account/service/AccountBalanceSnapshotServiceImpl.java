@@ -0,0 +1,425 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountBalanceSnapshot;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.AccountBalanceSnapshotRepository;
+import com.axelor.apps.account.db.repo.AccountRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.db.repo.PeriodRepository;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+public class AccountBalanceSnapshotServiceImpl implements AccountBalanceSnapshotService {
+
+  protected static final int DEBIT = 0;
+  protected static final int CREDIT = 1;
+
+  protected static final List<Integer> POSTED_STATUS_LIST =
+      Arrays.asList(MoveRepository.STATUS_DAYBOOK, MoveRepository.STATUS_VALIDATED);
+
+  /** The snapshots of the keys of a move are merged once in this number of moves. */
+  protected static final int COMPACT_INTERVAL = 64;
+
+  /** Order in which the snapshots of several keys are locked. */
+  protected static final Comparator<SnapshotKey> SNAPSHOT_KEY_ORDER =
+      Comparator.<SnapshotKey, Long>comparing(key -> key.accountId)
+          .thenComparing(key -> key.periodId, Comparator.nullsFirst(Comparator.naturalOrder()))
+          .thenComparingInt(key -> key.statusSelect);
+
+  protected AccountRepository accountRepo;
+  protected AccountBalanceSnapshotRepository accountBalanceSnapshotRepo;
+
+  @Inject
+  public AccountBalanceSnapshotServiceImpl(
+      AccountRepository accountRepo, AccountBalanceSnapshotRepository accountBalanceSnapshotRepo) {
+
+    this.accountRepo = accountRepo;
+    this.accountBalanceSnapshotRepo = accountBalanceSnapshotRepo;
+  }
+
+  /** Key of a snapshot. */
+  protected static class SnapshotKey {
+
+    private final Long accountId;
+    private final Long periodId;
+    private final int statusSelect;
+
+    protected SnapshotKey(Long accountId, Long periodId, int statusSelect) {
+      this.accountId = accountId;
+      this.periodId = periodId;
+      this.statusSelect = statusSelect;
+    }
+
+    public Long getAccountId() {
+      return accountId;
+    }
+
+    public Long getPeriodId() {
+      return periodId;
+    }
+
+    public int getStatusSelect() {
+      return statusSelect;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof SnapshotKey)) {
+        return false;
+      }
+      SnapshotKey other = (SnapshotKey) obj;
+      return Objects.equals(accountId, other.accountId)
+          && Objects.equals(periodId, other.periodId)
+          && statusSelect == other.statusSelect;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(accountId, periodId, statusSelect);
+    }
+  }
+
+  @Override
+  public boolean isPosted(Move move) {
+    return POSTED_STATUS_LIST.contains(move.getStatusSelect()) && !move.getIgnoreInAccountingOk();
+  }
+
+  @Override
+  @Transactional
+  public void postMove(Move move, int sign) {
+    Map<SnapshotKey, BigDecimal[]> amountMap = new LinkedHashMap<>();
+    addMoveAmounts(amountMap, move, sign);
+    post(amountMap, move.getId());
+  }
+
+  @Override
+  @Transactional
+  public void postMoveUpdate(Move oldMove, Move move) {
+    Map<SnapshotKey, BigDecimal[]> amountMap = new LinkedHashMap<>();
+    addMoveAmounts(amountMap, oldMove, -1);
+    addMoveAmounts(amountMap, move, 1);
+    post(amountMap, move.getId());
+  }
+
+  /** Add the amounts of the lines of a posted move, multiplied by a sign, by key. */
+  protected void addMoveAmounts(Map<SnapshotKey, BigDecimal[]> amountMap, Move move, int sign) {
+    if (move.getMoveLineList() == null || !isPosted(move)) {
+      return;
+    }
+
+    Long periodId = move.getPeriod() != null ? move.getPeriod().getId() : null;
+    BigDecimal factor = BigDecimal.valueOf(sign);
+
+    for (MoveLine moveLine : move.getMoveLineList()) {
+      if (moveLine.getAccount() == null) {
+        continue;
+      }
+      addAmounts(
+          amountMap,
+          new SnapshotKey(moveLine.getAccount().getId(), periodId, move.getStatusSelect()),
+          moveLine.getDebit().multiply(factor),
+          moveLine.getCredit().multiply(factor));
+    }
+  }
+
+  /** Post the amounts of a move by key, and merge the snapshots of its keys once in a while. */
+  protected void post(Map<SnapshotKey, BigDecimal[]> amountMap, Long moveId) {
+    amountMap.forEach(this::post);
+
+    if (moveId != null && moveId % COMPACT_INTERVAL == 0) {
+      amountMap.keySet().stream().sorted(SNAPSHOT_KEY_ORDER).forEach(this::compact);
+    }
+  }
+
+  protected void addAmounts(
+      Map<SnapshotKey, BigDecimal[]> amountMap,
+      SnapshotKey key,
+      BigDecimal debit,
+      BigDecimal credit) {
+
+    addAmounts(
+        amountMap.computeIfAbsent(key, k -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO}),
+        debit,
+        credit);
+  }
+
+  protected void addAmounts(BigDecimal[] amounts, BigDecimal debit, BigDecimal credit) {
+    if (debit != null) {
+      amounts[DEBIT] = amounts[DEBIT].add(debit);
+    }
+    if (credit != null) {
+      amounts[CREDIT] = amounts[CREDIT].add(credit);
+    }
+  }
+
+  /**
+   * Add amounts to a key with a new open snapshot.
+   *
+   * <p>Snapshots are only inserted when posting, so concurrent validations on an account neither
+   * wait for each other on a shared row nor deadlock. The snapshots of a key are summed when read,
+   * and merged from time to time by {@link #compact(SnapshotKey)}.
+   */
+  protected void post(SnapshotKey key, BigDecimal[] amounts) {
+    if (amounts[DEBIT].signum() == 0 && amounts[CREDIT].signum() == 0) {
+      return;
+    }
+
+    create(key, amounts, false);
+  }
+
+  /**
+   * Merge the open snapshots of a key into one. The snapshots are locked in the order of their
+   * ids, so concurrent merges of a key wait for each other, and the second one only sees the
+   * snapshots left by the first.
+   */
+  protected void compact(SnapshotKey key) {
+    List<AccountBalanceSnapshot> accountBalanceSnapshotList = findOpenSnapshots(key);
+    if (accountBalanceSnapshotList.size() < 2) {
+      return;
+    }
+
+    BigDecimal[] amounts = new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO};
+    for (AccountBalanceSnapshot accountBalanceSnapshot : accountBalanceSnapshotList) {
+      addAmounts(amounts, accountBalanceSnapshot.getDebit(), accountBalanceSnapshot.getCredit());
+    }
+    removeSnapshots(accountBalanceSnapshotList);
+    if (amounts[DEBIT].signum() != 0 || amounts[CREDIT].signum() != 0) {
+      create(key, amounts, false);
+    }
+  }
+
+  /** Find and lock the snapshots of a key which are not frozen, in the order of their ids. */
+  protected List<AccountBalanceSnapshot> findOpenSnapshots(SnapshotKey key) {
+    TypedQuery<AccountBalanceSnapshot> query =
+        JPA.em()
+            .createQuery(
+                "SELECT self FROM AccountBalanceSnapshot self "
+                    + "WHERE self.account.id = :accountId AND self.statusSelect = :statusSelect "
+                    + "AND self.frozenOk = false AND "
+                    + (key.periodId == null ? "self.period IS NULL" : "self.period.id = :periodId")
+                    + " ORDER BY self.id",
+                AccountBalanceSnapshot.class)
+            .setParameter("accountId", key.accountId)
+            .setParameter("statusSelect", key.statusSelect)
+            .setLockMode(LockModeType.PESSIMISTIC_WRITE);
+    if (key.periodId != null) {
+      query.setParameter("periodId", key.periodId);
+    }
+
+    return query.getResultList();
+  }
+
+  protected void removeSnapshots(List<AccountBalanceSnapshot> accountBalanceSnapshotList) {
+    accountBalanceSnapshotList.forEach(accountBalanceSnapshotRepo::remove);
+  }
+
+  protected void create(SnapshotKey key, BigDecimal[] amounts, boolean frozen) {
+    AccountBalanceSnapshot accountBalanceSnapshot = new AccountBalanceSnapshot();
+    accountBalanceSnapshot.setAccount(JPA.em().getReference(Account.class, key.accountId));
+    if (key.periodId != null) {
+      accountBalanceSnapshot.setPeriod(JPA.em().getReference(Period.class, key.periodId));
+    }
+    accountBalanceSnapshot.setStatusSelect(key.statusSelect);
+    accountBalanceSnapshot.setDebit(amounts[DEBIT]);
+    accountBalanceSnapshot.setCredit(amounts[CREDIT]);
+    accountBalanceSnapshot.setFrozenOk(frozen);
+    accountBalanceSnapshotRepo.save(accountBalanceSnapshot);
+  }
+
+  @Override
+  @Transactional
+  public void rebuild(Account account) {
+    replace(account, null);
+
+    account = accountRepo.find(account.getId());
+    if (!account.getBalanceSnapshotOk()) {
+      account.setBalanceSnapshotOk(true);
+      accountRepo.save(account);
+    }
+  }
+
+  @Override
+  @Transactional
+  public void freeze(Period period) {
+    replace(null, period);
+  }
+
+  @Override
+  @Transactional
+  public void unfreeze(Period period) {
+    for (AccountBalanceSnapshot accountBalanceSnapshot : findFrozenSnapshots(period)) {
+      accountBalanceSnapshot.setFrozenOk(false);
+    }
+  }
+
+  protected List<AccountBalanceSnapshot> findFrozenSnapshots(Period period) {
+    return accountBalanceSnapshotRepo
+        .all()
+        .filter("self.period = ?1 AND self.frozenOk = true", period)
+        .fetch();
+  }
+
+  /**
+   * Replace the snapshots of an account, of a period, or of an account for a period, by totals of
+   * the move lines. Snapshots of closed periods are frozen.
+   *
+   * @param account the account, null for all the accounts
+   * @param period the period, null for all the periods
+   */
+  protected void replace(Account account, Period period) {
+    deleteSnapshots(account, period);
+
+    for (Object[] row : sumMoveLines(account, period)) {
+      create(
+          new SnapshotKey((Long) row[0], (Long) row[1], (Integer) row[3]),
+          new BigDecimal[] {
+            row[4] != null ? (BigDecimal) row[4] : BigDecimal.ZERO,
+            row[5] != null ? (BigDecimal) row[5] : BigDecimal.ZERO
+          },
+          Objects.equals(row[2], PeriodRepository.STATUS_CLOSED));
+    }
+  }
+
+  protected void deleteSnapshots(Account account, Period period) {
+    setFilterParameters(
+            JPA.em()
+                .createQuery(
+                    "DELETE FROM AccountBalanceSnapshot self WHERE 1 = 1"
+                        + (account != null ? " AND self.account = :account" : "")
+                        + (period != null ? " AND self.period = :period" : "")),
+            account,
+            period)
+        .executeUpdate();
+  }
+
+  /**
+   * Sum the posted move lines of an account, of a period, or of an account for a period.
+   *
+   * @return account id, period id, period status, move status, debit and credit
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> sumMoveLines(Account account, Period period) {
+    String filter =
+        (account != null ? " AND self.account = :account" : "")
+            + (period != null ? " AND move.period = :period" : "");
+
+    return setFilterParameters(
+            JPA.em()
+                .createQuery(
+                    "SELECT self.account.id, period.id, period.statusSelect, "
+                        + "move.statusSelect, SUM(self.debit), SUM(self.credit) "
+                        + "FROM MoveLine self JOIN self.move move LEFT JOIN move.period period "
+                        + "WHERE move.ignoreInAccountingOk = false "
+                        + "AND move.statusSelect IN (:statusList)"
+                        + filter
+                        + " GROUP BY self.account.id, period.id, period.statusSelect, "
+                        + "move.statusSelect"),
+            account,
+            period)
+        .setParameter("statusList", POSTED_STATUS_LIST)
+        .getResultList();
+  }
+
+  protected Query setFilterParameters(Query query, Account account, Period period) {
+    if (account != null) {
+      query.setParameter("account", account);
+    }
+    if (period != null) {
+      query.setParameter("period", period);
+    }
+    return query;
+  }
+
+  @Override
+  public BigDecimal getBalance(Account account, LocalDate date, Collection<Integer> statusList) {
+    BigDecimal balance = sumSnapshots(account, date, statusList);
+
+    if (date == null) {
+      return balance;
+    }
+
+    return balance.add(sumMoveLinesInProgress(account, date, statusList));
+  }
+
+  /** Sum the snapshots of an account, only those of the periods ended at the date if any. */
+  protected BigDecimal sumSnapshots(
+      Account account, LocalDate date, Collection<Integer> statusList) {
+    return getSum(
+        "SELECT SUM(self.debit - self.credit) FROM AccountBalanceSnapshot self "
+            + "WHERE self.account = :account AND self.statusSelect IN (:statusList)"
+            + (date != null ? " AND self.period.toDate <= :date" : ""),
+        account,
+        date,
+        statusList);
+  }
+
+  /**
+   * Sum the move lines of an account up to a date, of the period in progress at the date and of
+   * the moves without period.
+   */
+  protected BigDecimal sumMoveLinesInProgress(
+      Account account, LocalDate date, Collection<Integer> statusList) {
+    return getSum(
+        "SELECT SUM(self.debit - self.credit) FROM MoveLine self "
+            + "JOIN self.move move LEFT JOIN move.period period "
+            + "WHERE self.account = :account AND move.ignoreInAccountingOk = false "
+            + "AND move.statusSelect IN (:statusList) AND move.date <= :date "
+            + "AND (period IS NULL OR period.toDate > :date)",
+        account,
+        date,
+        statusList);
+  }
+
+  protected BigDecimal getSum(
+      String queryString, Account account, LocalDate date, Collection<Integer> statusList) {
+
+    Query query =
+        JPA.em()
+            .createQuery(queryString)
+            .setParameter("account", account)
+            .setParameter("statusList", statusList);
+    if (date != null) {
+      query.setParameter("date", date);
+    }
+
+    BigDecimal balance = (BigDecimal) query.getSingleResult();
+
+    return balance != null ? balance : BigDecimal.ZERO;
+  }
+}
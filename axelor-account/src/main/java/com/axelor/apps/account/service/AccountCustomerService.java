@@ -23,12 +23,10 @@ import com.axelor.apps.account.db.AccountingSituation;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.repo.AccountingSituationRepository;
 import com.axelor.apps.account.db.repo.MoveLineRepository;
-import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.service.app.AppBaseService;
-import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -37,11 +35,7 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
-import java.time.ZoneOffset;
-import java.util.Date;
 import java.util.List;
-import javax.persistence.Query;
-import javax.persistence.TemporalType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,22 +46,47 @@ public class AccountCustomerService {
   protected AccountingSituationService accountingSituationService;
   protected AccountingSituationRepository accSituationRepo;
   protected AppBaseService appBaseService;
+  protected PartnerBalanceLedgerService partnerBalanceLedgerService;
 
   @Inject
   public AccountCustomerService(
       AccountingSituationService accountingSituationService,
       AccountingSituationRepository accSituationRepo,
-      AppBaseService appBaseService) {
+      AppBaseService appBaseService,
+      PartnerBalanceLedgerService partnerBalanceLedgerService) {
 
     this.accountingSituationService = accountingSituationService;
     this.accSituationRepo = accSituationRepo;
     this.appBaseService = appBaseService;
+    this.partnerBalanceLedgerService = partnerBalanceLedgerService;
   }
 
   public AccountingSituationService getAccountingSituationService() {
     return this.accountingSituationService;
   }
 
+  /**
+   * Build the balance ledger of a partner from its move lines, if it has not been built yet for
+   * its accounting situation. The accounting situation, which keeps the built state, is created if
+   * the partner has none for the company.
+   *
+   * @param partner
+   * @param company
+   * @throws AxelorException
+   */
+  protected void checkBalanceLedger(Partner partner, Company company) throws AxelorException {
+    AccountingSituation accountingSituation =
+        accountingSituationService.getAccountingSituation(partner, company);
+
+    if (accountingSituation == null) {
+      accountingSituationService.createAccountingSituation(partner, company);
+    } else if (accountingSituation.getBalanceLedgerOk()) {
+      return;
+    }
+
+    partnerBalanceLedgerService.rebuild(partner, company);
+  }
+
   /**
    * Fonction permettant de calculer le solde total d'un tiers
    *
@@ -75,33 +94,12 @@ public class AccountCustomerService {
    * @param company Une société
    * @return Le solde total
    */
-  public BigDecimal getBalance(Partner partner, Company company) {
+  public BigDecimal getBalance(Partner partner, Company company) throws AxelorException {
     log.debug("Compute balance (Partner : {}, Company : {})", partner.getName(), company.getName());
 
-    Query query =
-        JPA.em()
-            .createNativeQuery(
-                "SELECT SUM(COALESCE(m1.sum_remaining,0) - COALESCE(m2.sum_remaining,0) ) "
-                    + "FROM public.account_move_line AS ml  "
-                    + "LEFT OUTER JOIN ( "
-                    + "SELECT moveline.amount_remaining AS sum_remaining, moveline.id AS moveline_id "
-                    + "FROM public.account_move_line AS moveline "
-                    + "WHERE moveline.debit > 0  GROUP BY moveline.id, moveline.amount_remaining) AS m1 ON (m1.moveline_id = ml.id) "
-                    + "LEFT OUTER JOIN ( "
-                    + "SELECT moveline.amount_remaining AS sum_remaining, moveline.id AS moveline_id "
-                    + "FROM public.account_move_line AS moveline "
-                    + "WHERE moveline.credit > 0  GROUP BY moveline.id, moveline.amount_remaining) AS m2 ON (m2.moveline_id = ml.id) "
-                    + "LEFT OUTER JOIN public.account_account AS account ON (ml.account = account.id) "
-                    + "LEFT OUTER JOIN public.account_move AS move ON (ml.move = move.id) "
-                    + "WHERE ml.partner = ?1 AND move.company = ?2 AND move.ignore_in_accounting_ok IN ('false', null)"
-                    + "AND account.use_for_partner_balance = 'true'"
-                    + "AND (move.status_select = ?3 or move.status_select = ?4) AND ml.amount_remaining > 0 ")
-            .setParameter(1, partner)
-            .setParameter(2, company)
-            .setParameter(3, MoveRepository.STATUS_VALIDATED)
-            .setParameter(4, MoveRepository.STATUS_DAYBOOK);
-
-    BigDecimal balance = (BigDecimal) query.getSingleResult();
+    this.checkBalanceLedger(partner, company);
+
+    BigDecimal balance = partnerBalanceLedgerService.getBalance(partner, company);
 
     if (balance == null) {
       balance = BigDecimal.ZERO;
@@ -122,46 +120,14 @@ public class AccountCustomerService {
    * @param company Une société
    * @return Le solde exigible
    */
-  public BigDecimal getBalanceDue(Partner partner, Company company) {
+  public BigDecimal getBalanceDue(Partner partner, Company company) throws AxelorException {
     log.debug(
         "Compute balance due (Partner : {}, Company : {})", partner.getName(), company.getName());
 
-    Query query =
-        JPA.em()
-            .createNativeQuery(
-                "SELECT SUM( COALESCE(m1.sum_remaining,0) - COALESCE(m2.sum_remaining,0) ) "
-                    + "FROM public.account_move_line AS ml  "
-                    + "LEFT OUTER JOIN ( "
-                    + "SELECT moveline.amount_remaining AS sum_remaining, moveline.id AS moveline_id "
-                    + "FROM public.account_move_line AS moveline "
-                    + "WHERE moveline.debit > 0 "
-                    + "AND ((moveline.due_date IS NULL AND moveline.date_val <= ?1) OR (moveline.due_date IS NOT NULL AND moveline.due_date <= ?1)) "
-                    + "GROUP BY moveline.id, moveline.amount_remaining) AS m1 on (m1.moveline_id = ml.id) "
-                    + "LEFT OUTER JOIN ( "
-                    + "SELECT moveline.amount_remaining AS sum_remaining, moveline.id AS moveline_id "
-                    + "FROM public.account_move_line AS moveline "
-                    + "WHERE moveline.credit > 0 "
-                    + "GROUP BY moveline.id, moveline.amount_remaining) AS m2 ON (m2.moveline_id = ml.id) "
-                    + "LEFT OUTER JOIN public.account_account AS account ON (ml.account = account.id) "
-                    + "LEFT OUTER JOIN public.account_move AS move ON (ml.move = move.id) "
-                    + "WHERE ml.partner = ?2 AND move.company = ?3 AND move.ignore_in_debt_recovery_ok IN ('false', null) "
-                    + "AND move.ignore_in_accounting_ok IN ('false', null) AND account.use_for_partner_balance = 'true'"
-                    + "AND (move.status_select = ?4 OR move.status_select = ?5) AND ml.amount_remaining > 0 ")
-            .setParameter(
-                1,
-                Date.from(
-                    appBaseService
-                        .getTodayDate()
-                        .atStartOfDay()
-                        .atZone(ZoneOffset.UTC)
-                        .toInstant()),
-                TemporalType.DATE)
-            .setParameter(2, partner)
-            .setParameter(3, company)
-            .setParameter(4, MoveRepository.STATUS_VALIDATED)
-            .setParameter(5, MoveRepository.STATUS_DAYBOOK);
-
-    BigDecimal balance = (BigDecimal) query.getSingleResult();
+    this.checkBalanceLedger(partner, company);
+
+    BigDecimal balance =
+        partnerBalanceLedgerService.getBalanceDue(partner, company, appBaseService.getTodayDate());
 
     if (balance == null) {
       balance = BigDecimal.ZERO;
@@ -185,7 +151,8 @@ public class AccountCustomerService {
    * solde des échéances rejetées qui ne sont pas bloqués
    * *****************************************************
    */
-  public BigDecimal getBalanceDueDebtRecovery(Partner partner, Company company) {
+  public BigDecimal getBalanceDueDebtRecovery(Partner partner, Company company)
+      throws AxelorException {
     log.debug(
         "Compute balance due debt recovery (Partner : {}, Company : {})",
         partner.getName(),
@@ -199,46 +166,11 @@ public class AccountCustomerService {
       mailTransitTime = accountConfig.getMailTransitTime();
     }
 
-    // TODO: Replace native query to standard JPQL query
-    Query query =
-        JPA.em()
-            .createNativeQuery(
-                "SELECT SUM( COALESCE(m1.sum_remaining,0) - COALESCE(m2.sum_remaining,0) ) "
-                    + "FROM public.account_move_line as ml  "
-                    + "LEFT OUTER JOIN ( "
-                    + "SELECT moveline.amount_remaining AS sum_remaining, moveline.id AS moveline_id "
-                    + "FROM public.account_move_line AS moveline "
-                    + "WHERE moveline.debit > 0 AND (( moveline.date_val = moveline.due_date AND (moveline.due_date + ?1 ) < ?2 ) "
-                    + "OR (moveline.due_date IS NOT NULL AND moveline.date_val != moveline.due_date AND moveline.due_date < ?2)"
-                    + "OR (moveline.due_date IS NULL AND moveline.date_val < ?2)) "
-                    + "GROUP BY moveline.id, moveline.amount_remaining) AS m1 ON (m1.moveline_id = ml.id) "
-                    + "LEFT OUTER JOIN ( "
-                    + "SELECT moveline.amount_remaining AS sum_remaining, moveline.id AS moveline_id "
-                    + "FROM public.account_move_line AS moveline "
-                    + "WHERE moveline.credit > 0 "
-                    + "GROUP BY moveline.id, moveline.amount_remaining) AS m2 ON (m2.moveline_id = ml.id) "
-                    + "LEFT OUTER JOIN public.account_account AS account ON (ml.account = account.id) "
-                    + "LEFT OUTER JOIN public.account_move AS move ON (ml.move = move.id) "
-                    + "LEFT JOIN public.account_invoice AS invoice ON (move.invoice = invoice.id) "
-                    + "WHERE ml.partner = ?3 AND move.company = ?4 AND move.ignore_in_debt_recovery_ok in ('false', null) "
-                    + "AND move.ignore_in_accounting_ok IN ('false', null) AND account.use_for_partner_balance = 'true'"
-                    + "AND (move.status_select = ?5 OR move.status_select = ?6) AND ml.amount_remaining > 0 AND invoice.debt_recovery_blocking_ok = FALSE ")
-            .setParameter(1, mailTransitTime)
-            .setParameter(
-                2,
-                Date.from(
-                    appBaseService
-                        .getTodayDate()
-                        .atStartOfDay()
-                        .atZone(ZoneOffset.UTC)
-                        .toInstant()),
-                TemporalType.DATE)
-            .setParameter(3, partner)
-            .setParameter(4, company)
-            .setParameter(5, MoveRepository.STATUS_VALIDATED)
-            .setParameter(6, MoveRepository.STATUS_DAYBOOK);
-
-    BigDecimal balance = (BigDecimal) query.getSingleResult();
+    this.checkBalanceLedger(partner, company);
+
+    BigDecimal balance =
+        partnerBalanceLedgerService.getBalanceDueDebtRecovery(
+            partner, company, appBaseService.getTodayDate(), mailTransitTime);
 
     if (balance == null) {
       balance = BigDecimal.ZERO;
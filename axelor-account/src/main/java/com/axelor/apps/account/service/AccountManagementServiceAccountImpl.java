@@ -25,6 +25,7 @@ import com.axelor.apps.account.db.FixedAssetCategory;
 import com.axelor.apps.account.exception.IExceptionMessage;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.service.tax.AccountManagementIndex;
 import com.axelor.apps.base.service.tax.AccountManagementServiceImpl;
 import com.axelor.apps.base.service.tax.FiscalPositionService;
 import com.axelor.apps.base.service.tax.TaxService;
@@ -43,8 +44,10 @@ public class AccountManagementServiceAccountImpl extends AccountManagementServic
 
   @Inject
   public AccountManagementServiceAccountImpl(
-      FiscalPositionService fiscalPositionService, TaxService taxService) {
-    super(fiscalPositionService, taxService);
+      FiscalPositionService fiscalPositionService,
+      TaxService taxService,
+      AccountManagementIndex accountManagementIndex) {
+    super(fiscalPositionService, taxService, accountManagementIndex);
   }
 
   /**
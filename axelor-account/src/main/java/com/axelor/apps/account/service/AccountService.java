@@ -18,10 +18,13 @@
 package com.axelor.apps.account.service;
 
 import com.axelor.apps.account.db.Account;
-import com.axelor.db.JPA;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.google.inject.Inject;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
-import javax.persistence.Query;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +38,16 @@ public class AccountService {
   /** Credit balance = credit - debit */
   public static final Integer BALANCE_TYPE_CREDIT_BALANCE = 2;
 
+  protected static final List<Integer> BALANCE_STATUS_LIST =
+      Arrays.asList(MoveRepository.STATUS_DAYBOOK, MoveRepository.STATUS_VALIDATED);
+
+  protected AccountBalanceSnapshotService accountBalanceSnapshotService;
+
+  @Inject
+  public AccountService(AccountBalanceSnapshotService accountBalanceSnapshotService) {
+    this.accountBalanceSnapshotService = accountBalanceSnapshotService;
+  }
+
   /**
    * Compute the balance of the account, depending of the balance type
    *
@@ -45,27 +58,33 @@ public class AccountService {
    * @return The balance (debit balance or credit balance)
    */
   public BigDecimal computeBalance(Account account, int balanceType) {
+    return computeBalance(account, null, balanceType);
+  }
 
-    Query balanceQuery =
-        JPA.em()
-            .createQuery(
-                "select sum(self.debit - self.credit) from MoveLine self where self.account = :account "
-                    + "and self.move.ignoreInAccountingOk IN ('false', null) and self.move.statusSelect IN (2, 3)");
-
-    balanceQuery.setParameter("account", account);
-
-    BigDecimal balance = (BigDecimal) balanceQuery.getSingleResult();
+  /**
+   * Compute the balance of the account at a date, depending of the balance type
+   *
+   * @param account Account
+   * @param date date of the balance, null for all the moves
+   * @param balanceType
+   *     <p>1 : debit balance = debit - credit
+   *     <p>2 : credit balance = credit - debit
+   * @return The balance (debit balance or credit balance)
+   */
+  public BigDecimal computeBalance(Account account, LocalDate date, int balanceType) {
 
-    if (balance != null) {
+    if (!account.getBalanceSnapshotOk()) {
+      accountBalanceSnapshotService.rebuild(account);
+    }
 
-      if (balanceType == BALANCE_TYPE_CREDIT_BALANCE) {
-        balance = balance.negate();
-      }
-      log.debug("Account balance : {}", balance);
+    BigDecimal balance =
+        accountBalanceSnapshotService.getBalance(account, date, BALANCE_STATUS_LIST);
 
-      return balance;
-    } else {
-      return BigDecimal.ZERO;
+    if (balanceType == BALANCE_TYPE_CREDIT_BALANCE) {
+      balance = balance.negate();
     }
+    log.debug("Account balance : {}", balance);
+
+    return balance;
   }
 }
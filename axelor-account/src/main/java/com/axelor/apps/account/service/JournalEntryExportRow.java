@@ -0,0 +1,110 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.repo.ReconcileGroupRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Line of the journal entry export (FEC), read as a projection of a move line instead of loading
+ * the move line and the records it refers to.
+ */
+public final class JournalEntryExportRow {
+
+  /** Select clause of the projection, the move lines must be filtered and ordered on self. */
+  public static final String SELECT =
+      "SELECT journal.code, journal.name, move.reference, self.date, "
+          + "account.code, account.name, partner.partnerSeq, partner.name, "
+          + "self.origin, self.originDate, self.description, self.debit, self.credit, "
+          + "reconcileGroup.statusSelect, reconcileGroup.code, reconcileGroup.dateOfLettering, "
+          + "move.validationDate, self.currencyAmount, currency.code, move.id "
+          + "FROM MoveLine self "
+          + "JOIN self.move move "
+          + "JOIN move.journal journal "
+          + "JOIN self.account account "
+          + "LEFT JOIN self.partner partner "
+          + "LEFT JOIN self.reconcileGroup reconcileGroup "
+          + "LEFT JOIN move.currency currency";
+
+  private static final int MOVE_ID = 19;
+
+  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+  private JournalEntryExportRow() {}
+
+  /**
+   * Format a row of the projection as the columns of the export.
+   *
+   * @param row a row selected with {@link #SELECT}
+   * @return
+   */
+  public static String[] toItems(Object[] row) {
+    String[] items = new String[18];
+    items[0] = (String) row[0];
+    items[1] = (String) row[1];
+    items[2] = (String) row[2];
+    items[3] = ((LocalDate) row[3]).format(DATE_FORMATTER);
+    items[4] = (String) row[4];
+    items[5] = (String) row[5];
+    items[6] = "";
+    items[7] = "";
+    if (row[6] != null || row[7] != null) {
+      items[6] = (String) row[6];
+      items[7] = (String) row[7];
+    }
+    items[8] = (String) row[8];
+    if (row[9] != null) {
+      items[9] = ((LocalDate) row[9]).format(DATE_FORMATTER);
+    }
+    items[10] = (String) row[10];
+
+    BigDecimal credit = (BigDecimal) row[12];
+    items[11] = row[11].toString().replace('.', ',');
+    items[12] = credit.toString().replace('.', ',');
+
+    Integer reconcileGroupStatus = (Integer) row[13];
+    if (reconcileGroupStatus != null
+        && reconcileGroupStatus == ReconcileGroupRepository.STATUS_FINAL) {
+      items[13] = (String) row[14];
+      items[14] = ((LocalDate) row[15]).format(DATE_FORMATTER);
+    } else {
+      items[13] = "";
+      items[14] = "";
+    }
+
+    if (row[16] != null) {
+      items[15] = ((LocalDate) row[16]).format(DATE_FORMATTER);
+    }
+
+    BigDecimal currencyAmount = (BigDecimal) row[17];
+    items[16] = currencyAmount.toString().replace('.', ',');
+    if (currencyAmount.compareTo(BigDecimal.ZERO) > 0 && credit.compareTo(BigDecimal.ZERO) > 0) {
+      items[16] = "-" + items[16];
+    }
+
+    items[17] = (String) row[18];
+
+    return items;
+  }
+
+  public static Long getMoveId(Object[] row) {
+    return (Long) row[MOVE_ID];
+  }
+}
@@ -23,13 +23,11 @@ import com.axelor.apps.account.db.Journal;
 import com.axelor.apps.account.db.JournalType;
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
-import com.axelor.apps.account.db.ReconcileGroup;
 import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.AccountingReportRepository;
 import com.axelor.apps.account.db.repo.JournalRepository;
 import com.axelor.apps.account.db.repo.MoveLineRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
-import com.axelor.apps.account.db.repo.ReconcileGroupRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
 import com.axelor.apps.account.service.app.AppAccountService;
 import com.axelor.apps.account.service.config.AccountConfigService;
@@ -39,6 +37,7 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.repo.SequenceRepository;
 import com.axelor.apps.base.service.PartnerService;
 import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.apps.tool.ThrowConsumer;
 import com.axelor.apps.tool.file.CsvTool;
 import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
@@ -49,6 +48,7 @@ import com.axelor.meta.MetaFiles;
 import com.google.common.io.Files;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import com.opencsv.CSVWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -60,8 +60,14 @@ import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import javax.persistence.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,6 +91,9 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
   protected static final String DATE_FORMAT_YYYYMMDD = "yyyyMMdd";
   protected static final String DATE_FORMAT_YYYYMMDDHHMMSS = "yyyyMMddHHmmss";
 
+  /** Number of rows fetched at once, and of moves updated at once, when scrolling an export. */
+  protected static final int EXPORT_FETCH_SIZE = 500;
+
   @Inject
   public MoveLineExportServiceImpl(
       AppAccountService appAccountService,
@@ -117,14 +126,28 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       LocalDate localDate,
       String exportToAgressoNumber) {
 
+    List<Long> moveIdList = new ArrayList<>();
+    for (Move move : moveList) {
+      moveIdList.add(move.getId());
+    }
+
+    this.updateMoveIdList(moveIdList, accountingReport, localDate, exportToAgressoNumber);
+  }
+
+  protected void updateMoveIdList(
+      Collection<Long> moveIdList,
+      AccountingReport accountingReport,
+      LocalDate localDate,
+      String exportToAgressoNumber) {
+
     int i = 0;
 
-    int moveListSize = moveList.size();
+    int moveListSize = moveIdList.size();
 
-    for (Move move : moveList) {
+    for (Long moveId : moveIdList) {
 
       this.updateMove(
-          moveRepo.find(move.getId()),
+          moveRepo.find(moveId),
           accountingReportRepo.find(accountingReport.getId()),
           localDate,
           exportToAgressoNumber);
@@ -354,17 +377,9 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
 
     log.debug("allDates : {}", allDates);
 
-    List<String[]> allMoveData = new ArrayList<String[]>();
-    String companyCode = "";
-
-    String reference = "";
     String moveQueryStr = "";
     String moveLineQueryStr = "";
-    if (accountingReport.getRef() != null) {
-      reference = accountingReport.getRef();
-    }
     if (company != null) {
-      companyCode = company.getCode();
       moveQueryStr += String.format(" AND self.company = %s", company.getId());
     }
     if (accountingReport.getPeriod() != null) {
@@ -392,80 +407,21 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
     }
     moveQueryStr += String.format(" AND self.statusSelect = %s ", MoveRepository.STATUS_VALIDATED);
 
-    LocalDate interfaceDate = accountingReport.getDate();
-
-    for (LocalDate dt : allDates) {
-
-      List<Journal> journalList =
-          journalRepo
-              .all()
-              .filter("self.journalType = ?1 AND self.notExportOk = false", journalType)
-              .fetch();
-
-      if (accountingReport.getJournal() != null) {
-        journalList = new ArrayList<Journal>();
-        journalList.add(accountingReport.getJournal());
-      }
-
-      for (Journal journal : journalList) {
-
-        List<? extends Move> moveList =
-            moveRepo
-                .all()
-                .filter(
-                    "self.date = ?1 AND self.ignoreInAccountingOk = false AND self.journal.notExportOk = false AND self.journal = ?2"
-                        + moveQueryStr,
-                    dt,
-                    journal)
-                .fetch();
-
-        String journalCode = journal.getExportCode();
-
-        if (moveList.size() > 0) {
-
-          BigDecimal sumDebit =
-              this.getSumDebit(
-                  "self.account.useForPartnerBalance = true AND self.debit != 0.00 AND self.move in ?1 "
-                      + moveLineQueryStr,
-                  moveList);
-
-          if (sumDebit.compareTo(BigDecimal.ZERO) == 1) {
-
-            String exportNumber = this.getSaleExportNumber(company);
-
-            Move firstMove = moveList.get(0);
-            String periodCode =
-                firstMove.getPeriod().getFromDate().format(DateTimeFormatter.ofPattern("yyyyMM"));
-
-            this.updateMoveList(
-                (List<Move>) moveList, accountingReport, interfaceDate, exportNumber);
-
-            String items[] = new String[8];
-            items[0] = companyCode;
-            items[1] = journalCode;
-            items[2] = exportNumber;
-            items[3] = interfaceDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-            items[4] = sumDebit.toString();
-            items[5] = reference;
-            items[6] = dt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-            items[7] = periodCode;
-            allMoveData.add(items);
-          }
-        }
-      }
-    }
-
     String fileName =
         "entete"
             + appAccountService
                 .getTodayDateTime()
                 .format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDDHHMMSS))
             + "ventes.dat";
+    String moveFilter = moveQueryStr;
+    String moveLineFilter = moveLineQueryStr;
     writeMoveLineToCsvFile(
         company,
         fileName,
         this.createHeaderForHeaderFile(accountingReport.getTypeSelect()),
-        allMoveData,
+        writer ->
+            this.writeSaleHeaderLines(
+                writer, accountingReport, journalType, allDates, moveFilter, moveLineFilter),
         accountingReport);
   }
 
@@ -540,22 +496,13 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
                     + dateQueryStr
                     + "group by self.date order by self.date");
 
-    List<LocalDate> allDates = new ArrayList<LocalDate>();
-    allDates = dateQuery.getResultList();
+    List<LocalDate> allDates = dateQuery.getResultList();
 
     log.debug("allDates : {}", allDates);
 
-    List<String[]> allMoveData = new ArrayList<String[]>();
-    String companyCode = "";
-
-    String reference = "";
     String moveQueryStr = "";
     String moveLineQueryStr = "";
-    if (accountingReport.getRef() != null) {
-      reference = accountingReport.getRef();
-    }
     if (accountingReport.getCompany() != null) {
-      companyCode = accountingReport.getCompany().getCode();
       moveQueryStr +=
           String.format(" AND self.company = %s", accountingReport.getCompany().getId());
     }
@@ -584,79 +531,21 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
     }
     moveQueryStr += String.format(" AND self.statusSelect = %s ", MoveRepository.STATUS_VALIDATED);
 
-    LocalDate interfaceDate = accountingReport.getDate();
-
-    for (LocalDate dt : allDates) {
-
-      List<Journal> journalList =
-          journalRepo
-              .all()
-              .filter("self.journalType = ?1 AND self.notExportOk = false", journalType)
-              .fetch();
-
-      if (accountingReport.getJournal() != null) {
-        journalList = new ArrayList<Journal>();
-        journalList.add(accountingReport.getJournal());
-      }
-
-      for (Journal journal : journalList) {
-
-        List<Move> moveList =
-            moveRepo
-                .all()
-                .filter(
-                    "self.date = ?1 AND self.ignoreInAccountingOk = false AND self.journal.notExportOk = false AND self.journal = ?2"
-                        + moveQueryStr,
-                    dt,
-                    journal)
-                .fetch();
-
-        String journalCode = journal.getExportCode();
-
-        if (moveList.size() > 0) {
-
-          BigDecimal sumCredit =
-              this.getSumCredit(
-                  "self.account.useForPartnerBalance = true AND self.credit != 0.00 AND self.move in ?1 "
-                      + moveLineQueryStr,
-                  moveList);
-
-          if (sumCredit.compareTo(BigDecimal.ZERO) == 1) {
-
-            String exportNumber = this.getRefundExportNumber(company);
-
-            Move firstMove = moveList.get(0);
-            String periodCode =
-                firstMove.getPeriod().getFromDate().format(DateTimeFormatter.ofPattern("yyyyMM"));
-
-            this.updateMoveList(moveList, accountingReport, interfaceDate, exportNumber);
-
-            String items[] = new String[8];
-            items[0] = companyCode;
-            items[1] = journalCode;
-            items[2] = exportNumber;
-            items[3] = interfaceDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-            items[4] = sumCredit.toString();
-            items[5] = reference;
-            items[6] = dt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-            items[7] = periodCode;
-            allMoveData.add(items);
-          }
-        }
-      }
-    }
-
     String fileName =
         "entete"
             + appAccountService
                 .getTodayDateTime()
                 .format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDDHHMMSS))
             + "avoirs.dat";
+    String moveFilter = moveQueryStr;
+    String moveLineFilter = moveLineQueryStr;
     writeMoveLineToCsvFile(
         company,
         fileName,
         this.createHeaderForHeaderFile(accountingReport.getTypeSelect()),
-        allMoveData,
+        writer ->
+            this.writeRefundHeaderLines(
+                writer, accountingReport, journalType, allDates, moveFilter, moveLineFilter),
         accountingReport);
   }
 
@@ -731,22 +620,13 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
                     + dateQueryStr
                     + "group by self.date order by self.date");
 
-    List<LocalDate> allDates = new ArrayList<LocalDate>();
-    allDates = dateQuery.getResultList();
+    List<LocalDate> allDates = dateQuery.getResultList();
 
     log.debug("allDates : {}", allDates);
 
-    List<String[]> allMoveData = new ArrayList<String[]>();
-    String companyCode = "";
-
-    String reference = "";
     String moveQueryStr = "";
     String moveLineQueryStr = "";
-    if (accountingReport.getRef() != null) {
-      reference = accountingReport.getRef();
-    }
     if (company != null) {
-      companyCode = accountingReport.getCompany().getCode();
       moveQueryStr += String.format(" AND self.company = %s", company.getId());
     }
     if (accountingReport.getPeriod() != null) {
@@ -774,81 +654,21 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
     }
     moveQueryStr += String.format(" AND self.statusSelect = %s ", MoveRepository.STATUS_VALIDATED);
 
-    LocalDate interfaceDate = accountingReport.getDate();
-
-    for (LocalDate dt : allDates) {
-
-      List<Journal> journalList =
-          journalRepo
-              .all()
-              .filter("self.journalType = ?1 AND self.notExportOk = false", journalType)
-              .fetch();
-
-      if (accountingReport.getJournal() != null) {
-        journalList = new ArrayList<Journal>();
-        journalList.add(accountingReport.getJournal());
-      }
-
-      for (Journal journal : journalList) {
-
-        List<Move> moveList =
-            moveRepo
-                .all()
-                .filter(
-                    "self.date = ?1 AND self.ignoreInAccountingOk = false AND self.journal.notExportOk = false AND self.journal = ?2"
-                        + moveQueryStr,
-                    dt,
-                    journal)
-                .fetch();
-
-        String journalCode = journal.getExportCode();
-
-        if (moveList.size() > 0) {
-
-          long moveLineListSize =
-              moveLineRepo
-                  .all()
-                  .filter(
-                      "self.move in ?1 AND (self.debit > 0 OR self.credit > 0) " + moveLineQueryStr,
-                      moveList)
-                  .count();
-
-          if (moveLineListSize > 0) {
-
-            String exportNumber = this.getTreasuryExportNumber(company);
-
-            Move firstMove = moveList.get(0);
-            String periodCode =
-                firstMove.getPeriod().getFromDate().format(DateTimeFormatter.ofPattern("yyyyMM"));
-
-            this.updateMoveList(moveList, accountingReport, interfaceDate, exportNumber);
-
-            String items[] = new String[8];
-            items[0] = companyCode;
-            items[1] = journalCode;
-            items[2] = exportNumber;
-            items[3] = interfaceDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-            items[4] = "0";
-            items[5] = reference;
-            items[6] = dt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-            items[7] = periodCode;
-            allMoveData.add(items);
-          }
-        }
-      }
-    }
-
     String fileName =
         "entete"
             + appAccountService
                 .getTodayDateTime()
                 .format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDDHHMMSS))
             + "tresorerie.dat";
+    String moveFilter = moveQueryStr;
+    String moveLineFilter = moveLineQueryStr;
     writeMoveLineToCsvFile(
         company,
         fileName,
         this.createHeaderForHeaderFile(accountingReport.getTypeSelect()),
-        allMoveData,
+        writer ->
+            this.writeTreasuryHeaderLines(
+                writer, accountingReport, journalType, allDates, moveFilter, moveLineFilter),
         accountingReport);
   }
 
@@ -921,22 +741,13 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
                     + dateQueryStr
                     + "group by self.date order by self.date");
 
-    List<LocalDate> allDates = new ArrayList<LocalDate>();
-    allDates = dateQuery.getResultList();
+    List<LocalDate> allDates = dateQuery.getResultList();
 
     log.debug("allDates : {}", allDates);
 
-    List<String[]> allMoveData = new ArrayList<String[]>();
-    String companyCode = "";
-
-    String reference = "";
     String moveQueryStr = "";
     String moveLineQueryStr = "";
-    if (accountingReport.getRef() != null) {
-      reference = accountingReport.getRef();
-    }
     if (company != null) {
-      companyCode = company.getCode();
       moveQueryStr += String.format(" AND self.company = %s", company.getId());
     }
     if (accountingReport.getPeriod() != null) {
@@ -964,108 +775,377 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
     }
     moveQueryStr += String.format(" AND self.statusSelect = %s ", MoveRepository.STATUS_VALIDATED);
 
+    String fileName =
+        "entete"
+            + appAccountService
+                .getTodayDateTime()
+                .format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDDHHMMSS))
+            + "achats.dat";
+    String moveFilter = moveQueryStr;
+    String moveLineFilter = moveLineQueryStr;
+    writeMoveLineToCsvFile(
+        company,
+        fileName,
+        this.createHeaderForHeaderFile(accountingReport.getTypeSelect()),
+        writer ->
+            this.writePurchaseHeaderLines(
+                writer, accountingReport, journalType, allDates, moveFilter, moveLineFilter),
+        accountingReport);
+  }
+
+  /**
+   * Write the header lines of the sale journals, one line per date and journal.
+   *
+   * @param writer
+   * @param accountingReport
+   * @param journalType
+   * @param dates dates of the moves to export
+   * @param moveQueryStr filter on the moves
+   * @param moveLineQueryStr filter on the move lines
+   * @throws AxelorException
+   */
+  protected void writeSaleHeaderLines(
+      CSVWriter writer,
+      AccountingReport accountingReport,
+      JournalType journalType,
+      List<LocalDate> dates,
+      String moveQueryStr,
+      String moveLineQueryStr)
+      throws AxelorException {
+
+    Company company = accountingReport.getCompany();
+    String companyCode = company.getCode();
+    String reference = accountingReport.getRef() != null ? accountingReport.getRef() : "";
+    LocalDate interfaceDate = accountingReport.getDate();
+
+    for (LocalDate dt : dates) {
+
+      for (Journal journal : this.getExportJournalList(accountingReport, journalType)) {
+
+        List<Long> moveIdList = this.getExportMoveIdList(dt, journal, moveQueryStr);
+
+        String journalCode = journal.getExportCode();
+
+        if (!moveIdList.isEmpty()) {
+
+          BigDecimal sumDebit =
+              this.getMoveLineSum(
+                  "self.debit",
+                  "self.account.useForPartnerBalance = true AND self.debit != 0.00 "
+                      + moveLineQueryStr,
+                  moveIdList);
+
+          if (sumDebit.compareTo(BigDecimal.ZERO) == 1) {
+
+            String exportNumber = this.getSaleExportNumber(company);
+
+            String periodCode = this.getPeriodCode(moveIdList.get(0));
+
+            this.updateMoveIdList(moveIdList, accountingReport, interfaceDate, exportNumber);
+
+            String items[] = new String[8];
+            items[0] = companyCode;
+            items[1] = journalCode;
+            items[2] = exportNumber;
+            items[3] = interfaceDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            items[4] = sumDebit.toString();
+            items[5] = reference;
+            items[6] = dt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            items[7] = periodCode;
+            writer.writeNext(items);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Write the header lines of the refund journals, one line per date and journal.
+   *
+   * @param writer
+   * @param accountingReport
+   * @param journalType
+   * @param dates dates of the moves to export
+   * @param moveQueryStr filter on the moves
+   * @param moveLineQueryStr filter on the move lines
+   * @throws AxelorException
+   */
+  protected void writeRefundHeaderLines(
+      CSVWriter writer,
+      AccountingReport accountingReport,
+      JournalType journalType,
+      List<LocalDate> dates,
+      String moveQueryStr,
+      String moveLineQueryStr)
+      throws AxelorException {
+
+    Company company = accountingReport.getCompany();
+    String companyCode = company.getCode();
+    String reference = accountingReport.getRef() != null ? accountingReport.getRef() : "";
     LocalDate interfaceDate = accountingReport.getDate();
 
-    for (LocalDate dt : allDates) {
+    for (LocalDate dt : dates) {
+
+      for (Journal journal : this.getExportJournalList(accountingReport, journalType)) {
+
+        List<Long> moveIdList = this.getExportMoveIdList(dt, journal, moveQueryStr);
+
+        String journalCode = journal.getExportCode();
+
+        if (!moveIdList.isEmpty()) {
+
+          BigDecimal sumCredit =
+              this.getMoveLineSum(
+                  "self.credit",
+                  "self.account.useForPartnerBalance = true AND self.credit != 0.00 "
+                      + moveLineQueryStr,
+                  moveIdList);
+
+          if (sumCredit.compareTo(BigDecimal.ZERO) == 1) {
+
+            String exportNumber = this.getRefundExportNumber(company);
 
-      List<Journal> journalList =
-          journalRepo
-              .all()
-              .filter("self.journalType = ?1 AND self.notExportOk = false", journalType)
-              .fetch();
+            String periodCode = this.getPeriodCode(moveIdList.get(0));
 
-      if (accountingReport.getJournal() != null) {
-        journalList = new ArrayList<Journal>();
-        journalList.add(accountingReport.getJournal());
+            this.updateMoveIdList(moveIdList, accountingReport, interfaceDate, exportNumber);
+
+            String items[] = new String[8];
+            items[0] = companyCode;
+            items[1] = journalCode;
+            items[2] = exportNumber;
+            items[3] = interfaceDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            items[4] = sumCredit.toString();
+            items[5] = reference;
+            items[6] = dt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            items[7] = periodCode;
+            writer.writeNext(items);
+          }
+        }
       }
+    }
+  }
+
+  /**
+   * Write the header lines of the treasury journals, one line per date and journal.
+   *
+   * @param writer
+   * @param accountingReport
+   * @param journalType
+   * @param dates dates of the moves to export
+   * @param moveQueryStr filter on the moves
+   * @param moveLineQueryStr filter on the move lines
+   * @throws AxelorException
+   */
+  protected void writeTreasuryHeaderLines(
+      CSVWriter writer,
+      AccountingReport accountingReport,
+      JournalType journalType,
+      List<LocalDate> dates,
+      String moveQueryStr,
+      String moveLineQueryStr)
+      throws AxelorException {
+
+    Company company = accountingReport.getCompany();
+    String companyCode = company.getCode();
+    String reference = accountingReport.getRef() != null ? accountingReport.getRef() : "";
+    LocalDate interfaceDate = accountingReport.getDate();
 
-      for (Journal journal : journalList) {
+    for (LocalDate dt : dates) {
 
-        List<Move> moveList =
-            moveRepo
-                .all()
-                .filter(
-                    "self.date = ?1 AND self.ignoreInAccountingOk = false AND self.journal.notExportOk = false AND self.journal = ?2"
-                        + moveQueryStr,
-                    dt,
-                    journal)
-                .fetch();
+      for (Journal journal : this.getExportJournalList(accountingReport, journalType)) {
+
+        List<Long> moveIdList = this.getExportMoveIdList(dt, journal, moveQueryStr);
 
         String journalCode = journal.getExportCode();
 
-        int moveListSize = moveList.size();
+        if (!moveIdList.isEmpty()) {
+
+          long moveLineListSize =
+              moveLineRepo
+                  .all()
+                  .filter(
+                      "self.move.id in ?1 AND (self.debit > 0 OR self.credit > 0) "
+                          + moveLineQueryStr,
+                      moveIdList)
+                  .count();
+
+          if (moveLineListSize > 0) {
+
+            String exportNumber = this.getTreasuryExportNumber(company);
+
+            String periodCode = this.getPeriodCode(moveIdList.get(0));
 
-        if (moveListSize > 0) {
+            this.updateMoveIdList(moveIdList, accountingReport, interfaceDate, exportNumber);
 
-          int i = 0;
+            String items[] = new String[8];
+            items[0] = companyCode;
+            items[1] = journalCode;
+            items[2] = exportNumber;
+            items[3] = interfaceDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            items[4] = "0";
+            items[5] = reference;
+            items[6] = dt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            items[7] = periodCode;
+            writer.writeNext(items);
+          }
+        }
+      }
+    }
+  }
 
-          for (Move move : moveList) {
+  /**
+   * Write the header lines of the purchase journals, one line per move.
+   *
+   * @param writer
+   * @param accountingReport
+   * @param journalType
+   * @param dates dates of the moves to export
+   * @param moveQueryStr filter on the moves
+   * @param moveLineQueryStr filter on the move lines
+   * @throws AxelorException
+   */
+  protected void writePurchaseHeaderLines(
+      CSVWriter writer,
+      AccountingReport accountingReport,
+      JournalType journalType,
+      List<LocalDate> dates,
+      String moveQueryStr,
+      String moveLineQueryStr)
+      throws AxelorException {
 
-            List<MoveLine> moveLineList =
-                moveLineRepo
-                    .all()
-                    .filter(
-                        "self.account.useForPartnerBalance = true AND self.credit != 0.00 AND self.move in ?1"
-                            + moveLineQueryStr,
-                        moveList)
-                    .fetch();
+    Company company = accountingReport.getCompany();
+    String companyCode = company.getCode();
+    String reference = accountingReport.getRef() != null ? accountingReport.getRef() : "";
+    LocalDate interfaceDate = accountingReport.getDate();
 
-            if (moveLineList.size() > 0) {
+    for (LocalDate dt : dates) {
 
-              String exportNumber = this.getPurchaseExportNumber(company);
+      for (Journal journal : this.getExportJournalList(accountingReport, journalType)) {
 
-              String periodCode =
-                  move.getPeriod().getFromDate().format(DateTimeFormatter.ofPattern("yyyyMM"));
+        List<Long> moveIdList = this.getExportMoveIdList(dt, journal, moveQueryStr);
 
-              BigDecimal totalCredit = this.getSumCredit(moveLineList);
-              String invoiceId = "";
-              String dueDate = "";
-              if (move.getInvoice() != null) {
-                invoiceId = move.getInvoice().getInvoiceId();
-                dueDate = move.getInvoice().getDueDate().toString();
-              }
+        String journalCode = journal.getExportCode();
 
-              MoveLine firstMoveLine = moveLineList.get(0);
-              String items[] = new String[11];
-              items[0] = companyCode;
-              items[1] = journalCode;
-              items[2] = exportNumber;
-              items[3] = interfaceDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-              items[4] = invoiceId;
-              items[5] = dueDate;
-              items[6] = firstMoveLine.getAccount().getCode();
-              items[7] = totalCredit.toString();
-              items[8] = reference;
-              items[9] = dt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-              items[10] = periodCode;
-              allMoveData.add(items);
-
-              this.updateMove(move, accountingReport, interfaceDate, exportNumber);
-
-              if (i % 10 == 0) {
-                JPA.clear();
-              }
-              if (i++ % 100 == 0) {
-                log.debug("Process : {} / {}", i, moveListSize);
-              }
+        int moveListSize = moveIdList.size();
+
+        int i = 0;
+
+        for (Long moveId : moveIdList) {
+
+          List<MoveLine> moveLineList =
+              moveLineRepo
+                  .all()
+                  .filter(
+                      "self.account.useForPartnerBalance = true AND self.credit != 0.00"
+                          + " AND self.move.id in ?1"
+                          + moveLineQueryStr,
+                      moveIdList)
+                  .fetch();
+
+          if (moveLineList.size() > 0) {
+
+            Move move = moveRepo.find(moveId);
+
+            String exportNumber = this.getPurchaseExportNumber(company);
+
+            String periodCode =
+                move.getPeriod().getFromDate().format(DateTimeFormatter.ofPattern("yyyyMM"));
+
+            BigDecimal totalCredit = this.getSumCredit(moveLineList);
+            String invoiceId = "";
+            String dueDate = "";
+            if (move.getInvoice() != null) {
+              invoiceId = move.getInvoice().getInvoiceId();
+              dueDate = move.getInvoice().getDueDate().toString();
+            }
+
+            MoveLine firstMoveLine = moveLineList.get(0);
+            String items[] = new String[11];
+            items[0] = companyCode;
+            items[1] = journalCode;
+            items[2] = exportNumber;
+            items[3] = interfaceDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            items[4] = invoiceId;
+            items[5] = dueDate;
+            items[6] = firstMoveLine.getAccount().getCode();
+            items[7] = totalCredit.toString();
+            items[8] = reference;
+            items[9] = dt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            items[10] = periodCode;
+            writer.writeNext(items);
+
+            this.updateMove(move, accountingReport, interfaceDate, exportNumber);
+
+            if (i % 10 == 0) {
+              JPA.clear();
+            }
+            if (i++ % 100 == 0) {
+              log.debug("Process : {} / {}", i, moveListSize);
             }
           }
         }
       }
     }
+  }
 
-    String fileName =
-        "entete"
-            + appAccountService
-                .getTodayDateTime()
-                .format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDDHHMMSS))
-            + "achats.dat";
-    writeMoveLineToCsvFile(
-        company,
-        fileName,
-        this.createHeaderForHeaderFile(accountingReport.getTypeSelect()),
-        allMoveData,
-        accountingReport);
+  protected List<Journal> getExportJournalList(
+      AccountingReport accountingReport, JournalType journalType) {
+    if (accountingReport.getJournal() != null) {
+      List<Journal> journalList = new ArrayList<>();
+      journalList.add(accountingReport.getJournal());
+      return journalList;
+    }
+    return journalRepo
+        .all()
+        .filter("self.journalType = ?1 AND self.notExportOk = false", journalType)
+        .fetch();
+  }
+
+  /**
+   * Get the ids of the moves of a journal to export at a date, so that the moves themselves are
+   * only loaded when they are updated.
+   *
+   * @param date
+   * @param journal
+   * @param moveQueryStr filter on the moves
+   * @return
+   */
+  protected List<Long> getExportMoveIdList(LocalDate date, Journal journal, String moveQueryStr) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id FROM Move self WHERE self.date = :date"
+                + " AND self.ignoreInAccountingOk = false AND self.journal.notExportOk = false"
+                + " AND self.journal = :journal"
+                + moveQueryStr
+                + " ORDER BY self.id",
+            Long.class)
+        .setParameter("date", date)
+        .setParameter("journal", journal)
+        .getResultList();
+  }
+
+  protected BigDecimal getMoveLineSum(
+      String amountField, String queryFilter, List<Long> moveIdList) {
+    BigDecimal result =
+        JPA.em()
+            .createQuery(
+                "SELECT SUM("
+                    + amountField
+                    + ") FROM MoveLine self WHERE self.move.id IN :moveIdList AND "
+                    + queryFilter,
+                BigDecimal.class)
+            .setParameter("moveIdList", moveIdList)
+            .getSingleResult();
+    log.debug("Total {} : {}", amountField, result);
+    return result != null ? result : BigDecimal.ZERO;
+  }
+
+  protected String getPeriodCode(Long moveId) {
+    return moveRepo
+        .find(moveId)
+        .getPeriod()
+        .getFromDate()
+        .format(DateTimeFormatter.ofPattern("yyyyMM"));
   }
 
   @Override
@@ -1073,7 +1153,6 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
   public void exportMoveLineTypeSelect1010(AccountingReport accountingReport)
       throws AxelorException, IOException {
     log.info("In Export type 1010 service:");
-    List<String[]> allMoveLineData = new ArrayList<>();
     String filterStr = accountingReportService.getMoveLineList(accountingReport);
     String queryStr =
         String.format(
@@ -1081,18 +1160,6 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
                 + "FROM MoveLine self WHERE %s "
                 + "GROUP BY self.accountCode, self.accountName ORDER BY self.accountCode",
             filterStr);
-    Query query = JPA.em().createQuery(queryStr);
-
-    @SuppressWarnings("unchecked")
-    List<Object[]> resultList = query.getResultList();
-
-    for (Object[] result : resultList) {
-      String[] items = new String[result.length];
-      for (int i = 0; i < result.length; ++i) {
-        items[i] = String.valueOf(result[i]);
-      }
-      allMoveLineData.add(items);
-    }
 
     LocalDate date;
 
@@ -1110,7 +1177,41 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
         String.format(
             "%s %s%s.csv", I18n.get("General balance"), accountingReport.getRef(), dateStr);
     writeMoveLineToCsvFile(
-        accountingReport.getCompany(), fileName, null, allMoveLineData, accountingReport);
+        accountingReport.getCompany(),
+        fileName,
+        null,
+        writer -> this.writeGeneralBalanceLines(writer, queryStr),
+        accountingReport);
+  }
+
+  /**
+   * Write the lines of the general balance, scrolling through the balance of each account.
+   *
+   * @param writer
+   * @param queryStr query of the balance of the accounts
+   */
+  protected void writeGeneralBalanceLines(CSVWriter writer, String queryStr) {
+
+    ScrollableResults results =
+        JPA.em()
+            .unwrap(Session.class)
+            .createQuery(queryStr)
+            .setFetchSize(EXPORT_FETCH_SIZE)
+            .setReadOnly(true)
+            .scroll(ScrollMode.FORWARD_ONLY);
+
+    try {
+      while (results.next()) {
+        Object[] result = results.get();
+        String[] items = new String[result.length];
+        for (int i = 0; i < result.length; ++i) {
+          items[i] = String.valueOf(result[i]);
+        }
+        writer.writeNext(items);
+      }
+    } finally {
+      results.close();
+    }
   }
 
   /**
@@ -1125,7 +1226,6 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       throws AxelorException, IOException {
 
     log.info("In Export type 1000 service : ");
-    List<String[]> allMoveLineData = new ArrayList<>();
     Company company = accountingReport.getCompany();
 
     LocalDate interfaceDate = accountingReport.getDate();
@@ -1170,91 +1270,93 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       }
     }
 
-    List<MoveLine> moveLineList =
-        moveLineRepo
-            .all()
-            .filter(
-                "(self.move.statusSelect = ?1 OR self.move.statusSelect = ?2) " + moveLineQueryStr,
-                MoveRepository.STATUS_VALIDATED,
-                MoveRepository.STATUS_DAYBOOK)
-            .order("move.validationDate")
-            .order("date")
-            .order("name")
-            .fetch();
-    if (!moveLineList.isEmpty()) {
-      List<Move> moveList = new ArrayList<>();
-      for (MoveLine moveLine : moveLineList) {
-        String[] items = new String[18];
-        Move move = moveLine.getMove();
-        if (!moveList.contains(move)) {
-          moveList.add(move);
-        }
-        Journal journal = move.getJournal();
-        items[0] = journal.getCode();
-        items[1] = journal.getName();
-        items[2] = moveLine.getMove().getReference();
-        items[3] = moveLine.getDate().format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
-        items[4] = moveLine.getAccount().getCode();
-        items[5] = moveLine.getAccount().getName();
-        items[6] = "";
-        items[7] = "";
-        Partner partner = moveLine.getPartner();
-        if (partner != null) {
-          items[6] = partner.getPartnerSeq();
-          items[7] = partner.getName();
-        }
-        items[8] = moveLine.getOrigin();
-        if (moveLine.getOriginDate() != null) {
-          items[9] =
-              moveLine.getOriginDate().format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
-        }
-        items[10] = moveLine.getDescription();
-        items[11] = moveLine.getDebit().toString().replace('.', ',');
-        items[12] = moveLine.getCredit().toString().replace('.', ',');
-
-        ReconcileGroup reconcileGroup = moveLine.getReconcileGroup();
-        if (reconcileGroup != null
-            && reconcileGroup.getStatusSelect() == ReconcileGroupRepository.STATUS_FINAL) {
-          items[13] = reconcileGroup.getCode();
-          items[14] =
-              reconcileGroup
-                  .getDateOfLettering()
-                  .format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD))
-                  .toString();
-        } else {
-          items[13] = "";
-          items[14] = "";
-        }
+    String moveLineFilter = moveLineQueryStr;
+    String fileName = this.setFileName(accountingReport);
 
-        if (move.getValidationDate() != null) {
-          items[15] =
-              move.getValidationDate().format(DateTimeFormatter.ofPattern(DATE_FORMAT_YYYYMMDD));
-        }
+    ThrowConsumer<Set<Long>> exportedMoveUpdater = moveIdSet -> {};
+    if (!administration && this.hasJournalEntryLines(moveLineFilter)) {
+      String exportNumber = this.getSaleExportNumber(company);
+      AccountingReport exportedReport = accountingReport;
+      exportedMoveUpdater =
+          moveIdSet ->
+              this.updateMoveIdList(moveIdSet, exportedReport, interfaceDate, exportNumber);
+    }
+    ThrowConsumer<Set<Long>> moveUpdater = exportedMoveUpdater;
 
-        items[16] = moveLine.getCurrencyAmount().toString().replace('.', ',');
-        if (moveLine.getCurrencyAmount().compareTo(BigDecimal.ZERO) > 0
-            && moveLine.getCredit().compareTo(BigDecimal.ZERO) > 0) {
-          items[16] = "-" + items[16];
-        }
+    Path path =
+        writeCsvFile(
+            company,
+            fileName,
+            this.createHeaderForJournalEntry(),
+            writer -> this.writeJournalEntryLines(writer, moveLineFilter, moveUpdater));
+
+    accountingReport = accountingReportRepo.find(accountingReport.getId());
+
+    attachCsvFile(path, fileName, accountingReport);
+    accountingReportRepo.save(accountingReport);
+  }
 
-        if (move.getCurrency() != null) {
-          items[17] = move.getCurrency().getCode();
+  protected boolean hasJournalEntryLines(String moveLineQueryStr) {
+    return !JPA.em()
+        .createQuery(
+            "SELECT self.id FROM MoveLine self"
+                + " WHERE (self.move.statusSelect = :statusValidated"
+                + " OR self.move.statusSelect = :statusDaybook) "
+                + moveLineQueryStr,
+            Long.class)
+        .setParameter("statusValidated", MoveRepository.STATUS_VALIDATED)
+        .setParameter("statusDaybook", MoveRepository.STATUS_DAYBOOK)
+        .setMaxResults(1)
+        .getResultList()
+        .isEmpty();
+  }
+
+  /**
+   * Write the lines of the journal entry export, scrolling through a projection of the move lines
+   * so that neither the lines nor the records they refer to are loaded.
+   *
+   * @param writer
+   * @param moveLineQueryStr filter on the move lines
+   * @param moveUpdater called with the ids of the exported moves, by chunks of at most {@link
+   *     #EXPORT_FETCH_SIZE} ids
+   * @throws Exception
+   */
+  protected void writeJournalEntryLines(
+      CSVWriter writer, String moveLineQueryStr, ThrowConsumer<Set<Long>> moveUpdater)
+      throws Exception {
+
+    ScrollableResults results =
+        JPA.em()
+            .unwrap(Session.class)
+            .createQuery(
+                JournalEntryExportRow.SELECT
+                    + " WHERE (self.move.statusSelect = :statusValidated"
+                    + " OR self.move.statusSelect = :statusDaybook) "
+                    + moveLineQueryStr
+                    + " ORDER BY move.validationDate, self.date, self.name")
+            .setParameter("statusValidated", MoveRepository.STATUS_VALIDATED)
+            .setParameter("statusDaybook", MoveRepository.STATUS_DAYBOOK)
+            .setFetchSize(EXPORT_FETCH_SIZE)
+            .setReadOnly(true)
+            .scroll(ScrollMode.FORWARD_ONLY);
+
+    Set<Long> moveIdSet = new LinkedHashSet<>();
+    try {
+      while (results.next()) {
+        Object[] row = results.get();
+        writer.writeNext(JournalEntryExportRow.toItems(row));
+        moveIdSet.add(JournalEntryExportRow.getMoveId(row));
+        if (moveIdSet.size() >= EXPORT_FETCH_SIZE) {
+          moveUpdater.accept(moveIdSet);
+          moveIdSet.clear();
         }
-        allMoveLineData.add(items);
       }
-
-      if (!administration) {
-        String exportNumber = this.getSaleExportNumber(company);
-        this.updateMoveList(moveList, accountingReport, interfaceDate, exportNumber);
+      if (!moveIdSet.isEmpty()) {
+        moveUpdater.accept(moveIdSet);
       }
+    } finally {
+      results.close();
     }
-
-    accountingReport = accountingReportRepo.find(accountingReport.getId());
-
-    String fileName = this.setFileName(accountingReport);
-    writeMoveLineToCsvFile(
-        company, fileName, this.createHeaderForJournalEntry(), allMoveLineData, accountingReport);
-    accountingReportRepo.save(accountingReport);
   }
 
   /**
@@ -1328,12 +1430,38 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
                     + moveLineQueryStr
                     + " group by self.date ORDER BY self.date");
 
-    List<LocalDate> dates = new ArrayList<LocalDate>();
-    dates = queryDate.getResultList();
+    List<LocalDate> dates = queryDate.getResultList();
 
     log.debug("dates : {}", dates);
 
-    List<String[]> allMoveLineData = new ArrayList<String[]>();
+    String moveLineFilter = moveLineQueryStr;
+    String exportCompanyCode = companyCode;
+
+    writeMoveLineToCsvFile(
+        company,
+        fileName,
+        this.createHeaderForDetailFile(typeSelect),
+        writer ->
+            this.writeDetailLines(writer, dates, moveLineFilter, exportCompanyCode, typeSelect),
+        accountingReport);
+  }
+
+  /**
+   * Write the lines of the detail file, consolidated by account for each date and export number.
+   *
+   * @param writer
+   * @param dates
+   * @param moveLineQueryStr filter on the move lines
+   * @param companyCode
+   * @param typeSelect
+   */
+  @SuppressWarnings("unchecked")
+  protected void writeDetailLines(
+      CSVWriter writer,
+      List<LocalDate> dates,
+      String moveLineQueryStr,
+      String companyCode,
+      int typeSelect) {
 
     for (LocalDate localDate : dates) {
 
@@ -1448,7 +1576,7 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
                             date.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
                   }
 
-                  allMoveLineData.add(items);
+                  writer.writeNext(items);
                 }
               }
             }
@@ -1456,22 +1584,33 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
         }
       }
     }
-
-    writeMoveLineToCsvFile(
-        company,
-        fileName,
-        this.createHeaderForDetailFile(typeSelect),
-        allMoveLineData,
-        accountingReport);
   }
 
-  private void writeMoveLineToCsvFile(
+  protected void writeMoveLineToCsvFile(
       Company company,
       String fileName,
       String[] columnHeader,
-      List<String[]> allMoveData,
+      ThrowConsumer<CSVWriter> rowWriter,
       AccountingReport accountingReport)
       throws AxelorException, IOException {
+    Path path = writeCsvFile(company, fileName, columnHeader, rowWriter);
+    attachCsvFile(path, fileName, accountingReport);
+  }
+
+  /**
+   * Write the export file in the export directory of the company, row by row.
+   *
+   * @param company
+   * @param fileName
+   * @param columnHeader
+   * @param rowWriter writes the rows of the file
+   * @return the path of the file
+   * @throws AxelorException
+   * @throws IOException
+   */
+  protected Path writeCsvFile(
+      Company company, String fileName, String[] columnHeader, ThrowConsumer<CSVWriter> rowWriter)
+      throws AxelorException, IOException {
     String filePath = accountConfigService.getAccountConfig(company).getExportPath();
     if (filePath == null) {
       filePath = Files.createTempDir().getAbsolutePath();
@@ -1479,8 +1618,24 @@ public class MoveLineExportServiceImpl implements MoveLineExportService {
       new File(filePath).mkdirs();
     }
     log.debug("Full path to export : {}{}", filePath, fileName);
-    CsvTool.csvWriter(filePath, fileName, '|', columnHeader, allMoveData);
-    Path path = Paths.get(filePath, fileName);
+
+    try (CSVWriter writer = CsvTool.setCsvFile(filePath, fileName, '|')) {
+      if (columnHeader != null) {
+        writer.writeNext(columnHeader);
+      }
+      rowWriter.accept(writer);
+      writer.flush();
+    } catch (AxelorException | IOException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new AxelorException(e, TraceBackRepository.CATEGORY_INCONSISTENCY);
+    }
+
+    return Paths.get(filePath, fileName);
+  }
+
+  protected void attachCsvFile(Path path, String fileName, AccountingReport accountingReport)
+      throws IOException {
     try (InputStream is = new FileInputStream(path.toFile())) {
       Beans.get(MetaFiles.class).attach(is, fileName, accountingReport);
     }
@@ -0,0 +1,93 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Ledger of the remaining amounts of the partners, by company, account and due date, maintained
+ * with the deltas of move validations, cancellations and reconciliations.
+ *
+ * <p>Only the lines of validated or daybook moves, on accounts used for the partner balance, are
+ * posted. The balances of a partner are then read from the ledger lines of its moves with an amount
+ * remaining, without going through all its move lines. The debt recovery flags of the moves and of
+ * their invoices are joined when reading, so changing them does not post anything.
+ */
+public interface PartnerBalanceLedgerService {
+
+  /**
+   * Check whether the lines of a move are posted in the ledger, according to its status.
+   *
+   * @param move
+   * @return
+   */
+  boolean isPosted(Move move);
+
+  /**
+   * Post the remaining amounts of the lines of a move.
+   *
+   * @param move
+   * @param sign 1 when the move is validated, -1 when it is canceled
+   */
+  void postMove(Move move, int sign);
+
+  /**
+   * Post the change of the amount paid of a move line.
+   *
+   * @param moveLine
+   * @param amountPaid amount added to the amount paid, negative when a reconcile is canceled
+   */
+  void postAmountPaid(MoveLine moveLine, BigDecimal amountPaid);
+
+  /**
+   * Compute again the ledger lines of a partner from its move lines.
+   *
+   * @param partner
+   * @param company
+   */
+  void rebuild(Partner partner, Company company);
+
+  /**
+   * Compare the ledger lines of a partner with its move lines, and compute them again if they
+   * differ.
+   *
+   * @param partner
+   * @param company
+   * @return true if the ledger lines were wrong
+   */
+  boolean verify(Partner partner, Company company);
+
+  BigDecimal getBalance(Partner partner, Company company);
+
+  BigDecimal getBalanceDue(Partner partner, Company company, LocalDate date);
+
+  /**
+   * @param partner
+   * @param company
+   * @param date
+   * @param mailTransitTime days added to the due date of the lines due on their date
+   * @return
+   */
+  BigDecimal getBalanceDueDebtRecovery(
+      Partner partner, Company company, LocalDate date, int mailTransitTime);
+}
@@ -0,0 +1,523 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountingSituation;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.PartnerBalanceLine;
+import com.axelor.apps.account.db.repo.AccountingSituationRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.db.repo.PartnerBalanceLineRepository;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.persistence.Query;
+
+public class PartnerBalanceLedgerServiceImpl implements PartnerBalanceLedgerService {
+
+  protected static final int DEBIT = 0;
+  protected static final int CREDIT = 1;
+
+  protected AccountingSituationService accountingSituationService;
+  protected AccountingSituationRepository accountingSituationRepo;
+  protected PartnerBalanceLineRepository partnerBalanceLineRepo;
+
+  @Inject
+  public PartnerBalanceLedgerServiceImpl(
+      AccountingSituationService accountingSituationService,
+      AccountingSituationRepository accountingSituationRepo,
+      PartnerBalanceLineRepository partnerBalanceLineRepo) {
+
+    this.accountingSituationService = accountingSituationService;
+    this.accountingSituationRepo = accountingSituationRepo;
+    this.partnerBalanceLineRepo = partnerBalanceLineRepo;
+  }
+
+  /** Key of a ledger line. */
+  protected static class LineKey {
+
+    private final Long partnerId;
+    private final Long companyId;
+    private final Long accountId;
+    private final Long moveId;
+    private final LocalDate dueDate;
+    private final boolean mailTransitOk;
+
+    protected LineKey(
+        Long partnerId,
+        Long companyId,
+        Long accountId,
+        Long moveId,
+        LocalDate dueDate,
+        boolean mailTransitOk) {
+      this.partnerId = partnerId;
+      this.companyId = companyId;
+      this.accountId = accountId;
+      this.moveId = moveId;
+      this.dueDate = dueDate;
+      this.mailTransitOk = mailTransitOk;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof LineKey)) {
+        return false;
+      }
+      LineKey other = (LineKey) obj;
+      return mailTransitOk == other.mailTransitOk
+          && Objects.equals(partnerId, other.partnerId)
+          && Objects.equals(companyId, other.companyId)
+          && Objects.equals(accountId, other.accountId)
+          && Objects.equals(moveId, other.moveId)
+          && Objects.equals(dueDate, other.dueDate);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(partnerId, companyId, accountId, moveId, dueDate, mailTransitOk);
+    }
+  }
+
+  /**
+   * Create the key of the ledger line of a move line. The due date of a line without due date is
+   * its date, and the mail transit time only applies to the lines due on their date.
+   *
+   * <p>Lines are kept by move, the debt recovery flags of the move and of its invoice are read with
+   * the balances, so they can change without posting anything.
+   */
+  protected LineKey createKey(
+      Long partnerId,
+      Long companyId,
+      Long accountId,
+      Long moveId,
+      LocalDate date,
+      LocalDate dueDate) {
+
+    return new LineKey(
+        partnerId,
+        companyId,
+        accountId,
+        moveId,
+        dueDate != null ? dueDate : date,
+        dueDate != null && dueDate.equals(date));
+  }
+
+  protected LineKey createKey(MoveLine moveLine) {
+    Move move = moveLine.getMove();
+
+    return createKey(
+        moveLine.getPartner().getId(),
+        move.getCompany().getId(),
+        moveLine.getAccount().getId(),
+        move.getId(),
+        moveLine.getDate(),
+        moveLine.getDueDate());
+  }
+
+  @Override
+  public boolean isPosted(Move move) {
+    int statusSelect = move.getStatusSelect();
+
+    return (statusSelect == MoveRepository.STATUS_VALIDATED
+            || statusSelect == MoveRepository.STATUS_DAYBOOK)
+        && !move.getIgnoreInAccountingOk();
+  }
+
+  protected boolean isPosted(MoveLine moveLine) {
+    Account account = moveLine.getAccount();
+
+    return moveLine.getPartner() != null
+        && account != null
+        && account.getUseForPartnerBalance()
+        && moveLine.getMove() != null
+        && isPosted(moveLine.getMove());
+  }
+
+  /**
+   * Add an amount to the debit remaining of a ledger line if the move line is a debit, or else to
+   * the credit remaining.
+   */
+  protected void addAmount(
+      Map<LineKey, BigDecimal[]> amountMap,
+      LineKey key,
+      BigDecimal debit,
+      BigDecimal credit,
+      BigDecimal amount) {
+
+    int side;
+    if (debit.signum() > 0) {
+      side = DEBIT;
+    } else if (credit.signum() > 0) {
+      side = CREDIT;
+    } else {
+      return;
+    }
+
+    BigDecimal[] amounts =
+        amountMap.computeIfAbsent(key, k -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+    amounts[side] = amounts[side].add(amount);
+  }
+
+  @Override
+  @Transactional
+  public void postMove(Move move, int sign) {
+    if (move.getMoveLineList() == null || !isPosted(move)) {
+      return;
+    }
+
+    Map<LineKey, BigDecimal[]> amountMap = new LinkedHashMap<>();
+
+    for (MoveLine moveLine : move.getMoveLineList()) {
+      if (isPosted(moveLine)) {
+        addAmount(
+            amountMap,
+            createKey(moveLine),
+            moveLine.getDebit(),
+            moveLine.getCredit(),
+            moveLine.getAmountRemaining().multiply(BigDecimal.valueOf(sign)));
+      }
+    }
+
+    amountMap.forEach(this::post);
+  }
+
+  @Override
+  @Transactional
+  public void postAmountPaid(MoveLine moveLine, BigDecimal amountPaid) {
+    // The amount remaining of a line of an account without reconciliation is always zero.
+    if (!isPosted(moveLine) || !moveLine.getAccount().getReconcileOk()) {
+      return;
+    }
+
+    Map<LineKey, BigDecimal[]> amountMap = new LinkedHashMap<>();
+    addAmount(
+        amountMap,
+        createKey(moveLine),
+        moveLine.getDebit(),
+        moveLine.getCredit(),
+        amountPaid.negate());
+    amountMap.forEach(this::post);
+  }
+
+  /**
+   * Add amounts to a ledger line, which is created if it does not exist and removed once
+   * balanced.
+   *
+   * <p>Amounts are added by update queries, so concurrent validations and reconciliations of a
+   * partner wait for each other instead of failing on the version of the line.
+   */
+  protected void post(LineKey key, BigDecimal[] amounts) {
+    if (amounts[DEBIT].signum() == 0 && amounts[CREDIT].signum() == 0) {
+      return;
+    }
+
+    int updated =
+        setKeyParameters(
+                JPA.em()
+                    .createQuery(
+                        "UPDATE PartnerBalanceLine self "
+                            + "SET self.debitRemaining = self.debitRemaining + :debit, "
+                            + "self.creditRemaining = self.creditRemaining + :credit "
+                            + "WHERE "
+                            + getKeyFilter(key)),
+                key)
+            .setParameter("debit", amounts[DEBIT])
+            .setParameter("credit", amounts[CREDIT])
+            .executeUpdate();
+
+    if (updated == 0) {
+      create(key, amounts);
+      return;
+    }
+
+    setKeyParameters(
+            JPA.em()
+                .createQuery(
+                    "DELETE FROM PartnerBalanceLine self WHERE "
+                        + getKeyFilter(key)
+                        + " AND self.debitRemaining = 0 AND self.creditRemaining = 0"),
+            key)
+        .executeUpdate();
+  }
+
+  protected String getKeyFilter(LineKey key) {
+    return "self.partner.id = :partnerId AND self.company.id = :companyId "
+        + "AND self.account.id = :accountId AND self.move.id = :moveId "
+        + "AND self.mailTransitOk = :mailTransitOk AND "
+        + (key.dueDate == null ? "self.dueDate IS NULL" : "self.dueDate = :dueDate");
+  }
+
+  protected Query setKeyParameters(Query query, LineKey key) {
+    query
+        .setParameter("partnerId", key.partnerId)
+        .setParameter("companyId", key.companyId)
+        .setParameter("accountId", key.accountId)
+        .setParameter("moveId", key.moveId)
+        .setParameter("mailTransitOk", key.mailTransitOk);
+    if (key.dueDate != null) {
+      query.setParameter("dueDate", key.dueDate);
+    }
+    return query;
+  }
+
+  protected void create(LineKey key, BigDecimal[] amounts) {
+    PartnerBalanceLine partnerBalanceLine = new PartnerBalanceLine();
+    partnerBalanceLine.setPartner(JPA.em().getReference(Partner.class, key.partnerId));
+    partnerBalanceLine.setCompany(JPA.em().getReference(Company.class, key.companyId));
+    partnerBalanceLine.setAccount(JPA.em().getReference(Account.class, key.accountId));
+    partnerBalanceLine.setMove(JPA.em().getReference(Move.class, key.moveId));
+    partnerBalanceLine.setDueDate(key.dueDate);
+    partnerBalanceLine.setMailTransitOk(key.mailTransitOk);
+    partnerBalanceLine.setDebitRemaining(amounts[DEBIT]);
+    partnerBalanceLine.setCreditRemaining(amounts[CREDIT]);
+    partnerBalanceLineRepo.save(partnerBalanceLine);
+  }
+
+  /**
+   * Compute the ledger lines of a partner from its move lines, with the filters of the former
+   * balance queries.
+   *
+   * @param partner
+   * @param company
+   * @return the debit and credit remaining amounts by ledger line
+   */
+  protected Map<LineKey, BigDecimal[]> computeAmounts(Partner partner, Company company) {
+    Map<LineKey, BigDecimal[]> amountMap = new LinkedHashMap<>();
+
+    for (Object[] row : findMoveLineAmounts(partner, company)) {
+      LineKey key =
+          createKey(
+              partner.getId(),
+              company.getId(),
+              (Long) row[0],
+              (Long) row[6],
+              (LocalDate) row[1],
+              (LocalDate) row[2]);
+
+      addAmount(amountMap, key, (BigDecimal) row[3], (BigDecimal) row[4], (BigDecimal) row[5]);
+    }
+
+    return amountMap;
+  }
+
+  /**
+   * @return the posted move lines of a partner with a remaining amount, as account id, date, due
+   *     date, debit, credit, amount remaining and move id
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> findMoveLineAmounts(Partner partner, Company company) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.account.id, self.date, self.dueDate, self.debit, self.credit, "
+                + "self.amountRemaining, move.id "
+                + "FROM MoveLine self JOIN self.move move JOIN self.account account "
+                + "WHERE self.partner = :partner AND move.company = :company "
+                + "AND move.ignoreInAccountingOk = false "
+                + "AND account.useForPartnerBalance = true "
+                + "AND move.statusSelect IN (:statusList) AND self.amountRemaining > 0")
+        .setParameter("partner", partner)
+        .setParameter("company", company)
+        .setParameter(
+            "statusList",
+            Arrays.asList(MoveRepository.STATUS_VALIDATED, MoveRepository.STATUS_DAYBOOK))
+        .getResultList();
+  }
+
+  protected Map<LineKey, BigDecimal[]> loadAmounts(Partner partner, Company company) {
+    @SuppressWarnings("unchecked")
+    List<Object[]> rowList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.account.id, self.move.id, self.dueDate, self.mailTransitOk, "
+                    + "self.debitRemaining, self.creditRemaining FROM PartnerBalanceLine self "
+                    + "WHERE self.partner = :partner AND self.company = :company")
+            .setParameter("partner", partner)
+            .setParameter("company", company)
+            .getResultList();
+
+    Map<LineKey, BigDecimal[]> amountMap = new LinkedHashMap<>();
+
+    for (Object[] row : rowList) {
+      LineKey key =
+          new LineKey(
+              partner.getId(),
+              company.getId(),
+              (Long) row[0],
+              (Long) row[1],
+              (LocalDate) row[2],
+              Boolean.TRUE.equals(row[3]));
+
+      BigDecimal[] amounts =
+          amountMap.computeIfAbsent(key, k -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+      if (row[4] != null) {
+        amounts[DEBIT] = amounts[DEBIT].add((BigDecimal) row[4]);
+      }
+      if (row[5] != null) {
+        amounts[CREDIT] = amounts[CREDIT].add((BigDecimal) row[5]);
+      }
+    }
+
+    return amountMap;
+  }
+
+  @Override
+  @Transactional
+  public void rebuild(Partner partner, Company company) {
+    replace(partner, company, computeAmounts(partner, company));
+  }
+
+  @Override
+  @Transactional
+  public boolean verify(Partner partner, Company company) {
+    Map<LineKey, BigDecimal[]> amountMap = computeAmounts(partner, company);
+
+    if (isSame(amountMap, loadAmounts(partner, company))) {
+      markBuilt(partner, company);
+      return false;
+    }
+
+    replace(partner, company, amountMap);
+    return true;
+  }
+
+  protected boolean isSame(
+      Map<LineKey, BigDecimal[]> amountMap, Map<LineKey, BigDecimal[]> otherAmountMap) {
+
+    Set<LineKey> keySet = new HashSet<>(amountMap.keySet());
+    keySet.addAll(otherAmountMap.keySet());
+
+    BigDecimal[] zero = new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO};
+
+    for (LineKey key : keySet) {
+      BigDecimal[] amounts = amountMap.getOrDefault(key, zero);
+      BigDecimal[] otherAmounts = otherAmountMap.getOrDefault(key, zero);
+      if (amounts[DEBIT].compareTo(otherAmounts[DEBIT]) != 0
+          || amounts[CREDIT].compareTo(otherAmounts[CREDIT]) != 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  protected void replace(Partner partner, Company company, Map<LineKey, BigDecimal[]> amountMap) {
+    JPA.em()
+        .createQuery(
+            "DELETE FROM PartnerBalanceLine self "
+                + "WHERE self.partner = :partner AND self.company = :company")
+        .setParameter("partner", partner)
+        .setParameter("company", company)
+        .executeUpdate();
+
+    amountMap.forEach(this::create);
+
+    markBuilt(partner, company);
+  }
+
+  protected void markBuilt(Partner partner, Company company) {
+    AccountingSituation accountingSituation =
+        accountingSituationService.getAccountingSituation(partner, company);
+
+    if (accountingSituation != null && !accountingSituation.getBalanceLedgerOk()) {
+      accountingSituation.setBalanceLedgerOk(true);
+      accountingSituationRepo.save(accountingSituation);
+    }
+  }
+
+  @Override
+  public BigDecimal getBalance(Partner partner, Company company) {
+    return getSum(
+        "SELECT SUM(self.debitRemaining - self.creditRemaining) FROM PartnerBalanceLine self "
+            + "WHERE self.partner = :partner AND self.company = :company",
+        partner,
+        company,
+        null,
+        null);
+  }
+
+  @Override
+  public BigDecimal getBalanceDue(Partner partner, Company company, LocalDate date) {
+    return getSum(
+        "SELECT SUM(CASE WHEN self.dueDate <= :date THEN self.debitRemaining ELSE 0 END "
+            + "- self.creditRemaining) FROM PartnerBalanceLine self JOIN self.move move "
+            + "WHERE self.partner = :partner AND self.company = :company "
+            + "AND move.ignoreInDebtRecoveryOk = false",
+        partner,
+        company,
+        date,
+        null);
+  }
+
+  @Override
+  public BigDecimal getBalanceDueDebtRecovery(
+      Partner partner, Company company, LocalDate date, int mailTransitTime) {
+
+    return getSum(
+        "SELECT SUM(CASE WHEN (self.mailTransitOk = true AND self.dueDate < :transitDate) "
+            + "OR (self.mailTransitOk = false AND self.dueDate < :date) "
+            + "THEN self.debitRemaining ELSE 0 END - self.creditRemaining) "
+            + "FROM PartnerBalanceLine self JOIN self.move move JOIN move.invoice invoice "
+            + "WHERE self.partner = :partner AND self.company = :company "
+            + "AND move.ignoreInDebtRecoveryOk = false "
+            + "AND invoice.debtRecoveryBlockingOk = false",
+        partner,
+        company,
+        date,
+        date.minusDays(mailTransitTime));
+  }
+
+  protected BigDecimal getSum(
+      String queryString,
+      Partner partner,
+      Company company,
+      LocalDate date,
+      LocalDate transitDate) {
+
+    Query query =
+        JPA.em()
+            .createQuery(queryString)
+            .setParameter("partner", partner)
+            .setParameter("company", company);
+    if (date != null) {
+      query.setParameter("date", date);
+    }
+    if (transitDate != null) {
+      query.setParameter("transitDate", transitDate);
+    }
+
+    BigDecimal balance = (BigDecimal) query.getSingleResult();
+
+    return balance != null ? balance : BigDecimal.ZERO;
+  }
+}
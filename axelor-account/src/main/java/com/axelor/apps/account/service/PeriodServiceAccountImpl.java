@@ -36,16 +36,19 @@ public class PeriodServiceAccountImpl extends PeriodServiceImpl {
 
   protected MoveValidateService moveValidateService;
   protected MoveRepository moveRepository;
+  protected AccountBalanceSnapshotService accountBalanceSnapshotService;
 
   @Inject
   public PeriodServiceAccountImpl(
       PeriodRepository periodRepo,
       AdjustHistoryService adjustHistoryService,
       MoveValidateService moveValidateService,
-      MoveRepository moveRepository) {
+      MoveRepository moveRepository,
+      AccountBalanceSnapshotService accountBalanceSnapshotService) {
     super(periodRepo, adjustHistoryService);
     this.moveValidateService = moveValidateService;
     this.moveRepository = moveRepository;
+    this.accountBalanceSnapshotService = accountBalanceSnapshotService;
   }
 
   @Transactional(rollbackOn = {AxelorException.class, Exception.class})
@@ -56,6 +59,16 @@ public class PeriodServiceAccountImpl extends PeriodServiceImpl {
     }
 
     super.close(period);
+
+    accountBalanceSnapshotService.freeze(period);
+  }
+
+  @Override
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  public void adjust(Period period) {
+    super.adjust(period);
+
+    accountBalanceSnapshotService.unfreeze(period);
   }
 
   public List<Move> getMoveListToValidate(Period period) {
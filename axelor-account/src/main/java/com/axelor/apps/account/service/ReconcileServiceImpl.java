@@ -61,6 +61,7 @@ public class ReconcileServiceImpl implements ReconcileService {
   protected ReconcileSequenceService reconcileSequenceService;
   protected InvoicePaymentCreateService invoicePaymentCreateService;
   protected InvoicePaymentCancelService invoicePaymentCancelService;
+  protected PartnerBalanceLedgerService partnerBalanceLedgerService;
 
   @Inject
   public ReconcileServiceImpl(
@@ -71,7 +72,8 @@ public class ReconcileServiceImpl implements ReconcileService {
       MoveAdjustementService moveAdjustementService,
       ReconcileSequenceService reconcileSequenceService,
       InvoicePaymentCancelService invoicePaymentCancelService,
-      InvoicePaymentCreateService invoicePaymentCreateService) {
+      InvoicePaymentCreateService invoicePaymentCreateService,
+      PartnerBalanceLedgerService partnerBalanceLedgerService) {
 
     this.moveToolService = moveToolService;
     this.accountCustomerService = accountCustomerService;
@@ -81,6 +83,7 @@ public class ReconcileServiceImpl implements ReconcileService {
     this.reconcileSequenceService = reconcileSequenceService;
     this.invoicePaymentCancelService = invoicePaymentCancelService;
     this.invoicePaymentCreateService = invoicePaymentCreateService;
+    this.partnerBalanceLedgerService = partnerBalanceLedgerService;
   }
 
   /**
@@ -149,6 +152,8 @@ public class ReconcileServiceImpl implements ReconcileService {
     // Add the reconciled amount to the reconciled amount in the move line
     creditMoveLine.setAmountPaid(creditMoveLine.getAmountPaid().add(reconcile.getAmount()));
     debitMoveLine.setAmountPaid(debitMoveLine.getAmountPaid().add(reconcile.getAmount()));
+    partnerBalanceLedgerService.postAmountPaid(creditMoveLine, reconcile.getAmount());
+    partnerBalanceLedgerService.postAmountPaid(debitMoveLine, reconcile.getAmount());
 
     reconcile = reconcileRepository.save(reconcile);
 
@@ -381,6 +386,8 @@ public class ReconcileServiceImpl implements ReconcileService {
     // Add the reconciled amount to the reconciled amount in the move line
     creditMoveLine.setAmountPaid(creditMoveLine.getAmountPaid().subtract(reconcile.getAmount()));
     debitMoveLine.setAmountPaid(debitMoveLine.getAmountPaid().subtract(reconcile.getAmount()));
+    partnerBalanceLedgerService.postAmountPaid(creditMoveLine, reconcile.getAmount().negate());
+    partnerBalanceLedgerService.postAmountPaid(debitMoveLine, reconcile.getAmount().negate());
 
     reconcileRepository.save(reconcile);
 
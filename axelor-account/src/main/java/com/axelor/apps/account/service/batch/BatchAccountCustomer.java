@@ -22,6 +22,7 @@ import com.axelor.apps.account.db.AccountingSituation;
 import com.axelor.apps.account.db.repo.AccountingSituationRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
 import com.axelor.apps.account.service.AccountCustomerService;
+import com.axelor.apps.account.service.PartnerBalanceLedgerService;
 import com.axelor.apps.base.db.Company;
 import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
@@ -39,15 +40,20 @@ public class BatchAccountCustomer extends BatchStrategy {
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   protected AccountingSituationRepository accountingSituationRepo;
+  protected PartnerBalanceLedgerService partnerBalanceLedgerService;
+
+  protected int ledgerCorrected;
 
   @Inject
   public BatchAccountCustomer(
       AccountCustomerService accountCustomerService,
-      AccountingSituationRepository accountingSituationRepo) {
+      AccountingSituationRepository accountingSituationRepo,
+      PartnerBalanceLedgerService partnerBalanceLedgerService) {
 
     super(accountCustomerService);
 
     this.accountingSituationRepo = accountingSituationRepo;
+    this.partnerBalanceLedgerService = partnerBalanceLedgerService;
   }
 
   @Override
@@ -77,9 +83,17 @@ public class BatchAccountCustomer extends BatchStrategy {
     for (AccountingSituation accountingSituation : accountingSituationList) {
       try {
 
+        // The balance ledger is checked against the move lines, in case a configuration change
+        // (account, invoice blocking, move ignored in accounting) was not posted to it.
+        accountingSituation = accountingSituationRepo.find(accountingSituation.getId());
+        if (partnerBalanceLedgerService.verify(
+            accountingSituation.getPartner(), accountingSituation.getCompany())) {
+          ledgerCorrected++;
+        }
+
         accountingSituation =
             accountCustomerService.updateAccountingSituationCustomerAccount(
-                accountingSituationRepo.find(accountingSituation.getId()),
+                accountingSituation,
                 updateCustAccountOk,
                 updateDueCustAccountOk,
                 updateDueDebtRecoveryCustAccountOk);
@@ -125,6 +139,8 @@ public class BatchAccountCustomer extends BatchStrategy {
     comment = I18n.get(IExceptionMessage.BATCH_ACCOUNT_2) + "\n";
     comment +=
         String.format("\t" + I18n.get(IExceptionMessage.BATCH_ACCOUNT_3) + "\n", batch.getDone());
+    comment +=
+        String.format("\t" + I18n.get(IExceptionMessage.BATCH_ACCOUNT_6) + "\n", ledgerCorrected);
     comment +=
         String.format(
             "\t" + I18n.get(com.axelor.apps.base.exceptions.IExceptionMessage.ALARM_ENGINE_BATCH_4),
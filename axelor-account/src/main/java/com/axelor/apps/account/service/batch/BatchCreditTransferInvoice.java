@@ -27,13 +27,12 @@ import com.axelor.apps.account.service.app.AppAccountService;
 import com.axelor.apps.account.service.payment.invoice.payment.InvoicePaymentCreateService;
 import com.axelor.apps.base.db.BankDetails;
 import com.axelor.apps.base.db.repo.BankDetailsRepository;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.db.IException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import java.util.ArrayList;
@@ -69,7 +68,6 @@ public abstract class BatchCreditTransferInvoice extends BatchStrategy {
    */
   protected List<InvoicePayment> processInvoices(int operationTypeSelect) {
     List<InvoicePayment> doneList = new ArrayList<>();
-    List<Long> anomalyList = Lists.newArrayList(0L); // Can't pass an empty collection to the query
     AccountingBatch accountingBatch = batch.getAccountingBatch();
     boolean manageMultiBanks = appAccountService.getAppBase().getManageMultiBanks();
     StringBuilder filter = new StringBuilder();
@@ -80,8 +78,7 @@ public abstract class BatchCreditTransferInvoice extends BatchStrategy {
             + "AND self.hasPendingPayments = FALSE "
             + "AND self.company = :company "
             + "AND self.dueDate <= :dueDate "
-            + "AND self.paymentMode = :paymentMode "
-            + "AND self.id NOT IN (:anomalyList)");
+            + "AND self.paymentMode = :paymentMode");
 
     if (manageMultiBanks) {
       filter.append(" AND self.companyBankDetails IN (:bankDetailsSet)");
@@ -91,16 +88,14 @@ public abstract class BatchCreditTransferInvoice extends BatchStrategy {
       filter.append(" AND self.currency = :currency");
     }
 
-    Query<Invoice> query =
-        invoiceRepo
-            .all()
+    KeysetPager<Invoice> pager =
+        KeysetPager.of(Invoice.class)
             .filter(filter.toString())
             .bind("operationTypeSelect", operationTypeSelect)
             .bind("statusSelect", InvoiceRepository.STATUS_VENTILATED)
             .bind("company", accountingBatch.getCompany())
             .bind("dueDate", accountingBatch.getDueDate())
-            .bind("paymentMode", accountingBatch.getPaymentMode())
-            .bind("anomalyList", anomalyList);
+            .bind("paymentMode", accountingBatch.getPaymentMode());
 
     if (manageMultiBanks) {
       Set<BankDetails> bankDetailsSet = Sets.newHashSet(accountingBatch.getBankDetails());
@@ -109,19 +104,17 @@ public abstract class BatchCreditTransferInvoice extends BatchStrategy {
         bankDetailsSet.addAll(accountingBatch.getCompany().getBankDetailsSet());
       }
 
-      query.bind("bankDetailsSet", bankDetailsSet);
+      pager.bind("bankDetailsSet", bankDetailsSet);
     }
 
     if (accountingBatch.getCurrency() != null) {
-      query.bind("currency", accountingBatch.getCurrency());
+      pager.bind("currency", accountingBatch.getCurrency());
     }
 
     BankDetailsRepository bankDetailsRepo = Beans.get(BankDetailsRepository.class);
     BankDetails companyBankDetails = accountingBatch.getBankDetails();
 
-    for (List<Invoice> invoiceList;
-        !(invoiceList = query.fetch(FETCH_LIMIT)).isEmpty();
-        JPA.clear()) {
+    for (List<Invoice> invoiceList; !(invoiceList = pager.fetchNext()).isEmpty(); ) {
       if (!JPA.em().contains(companyBankDetails)) {
         companyBankDetails = bankDetailsRepo.find(companyBankDetails.getId());
       }
@@ -133,8 +126,7 @@ public abstract class BatchCreditTransferInvoice extends BatchStrategy {
           incrementDone();
         } catch (Exception ex) {
           incrementAnomaly();
-          anomalyList.add(invoice.getId());
-          query.bind("anomalyList", anomalyList);
+          pager.seek(invoice.getId());
           TraceBackService.trace(ex, IException.CREDIT_TRANSFER, batch.getId());
           ex.printStackTrace();
           log.error(
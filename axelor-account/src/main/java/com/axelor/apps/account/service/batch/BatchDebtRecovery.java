@@ -31,14 +31,14 @@ import com.axelor.apps.message.db.repo.MessageRepository;
 import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.IException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import javax.persistence.Table;
 
 public class BatchDebtRecovery extends BatchStrategy {
@@ -95,57 +95,48 @@ public class BatchDebtRecovery extends BatchStrategy {
 
   public void debtRecoveryPartner() {
     Company company = batch.getAccountingBatch().getCompany();
+    final Long companyId = company.getId();
+
+    String filter =
+        "self.isContact = false "
+            + "AND :_company MEMBER OF self.companySet "
+            + "AND self.accountingSituationList IS NOT EMPTY "
+            + "AND self.isCustomer = true "
+            + "AND self.id NOT IN ("
+            + Beans.get(BlockingService.class)
+                .listOfBlockedPartner(company, BlockingRepository.REMINDER_BLOCKING)
+            + ")";
+
+    Map<String, Object> params = new HashMap<>();
+    params.put("_company", company);
+
+    processByPartitions(
+        Partner.class,
+        filter,
+        params,
+        IException.DEBT_RECOVERY,
+        partner -> this.debtRecoveryPartner(partner, companyRepo.find(companyId)));
+  }
 
-    Query<Partner> query =
-        partnerRepository
-            .all()
-            .filter(
-                "self.isContact = false "
-                    + "AND :_company MEMBER OF self.companySet "
-                    + "AND self.accountingSituationList IS NOT EMPTY "
-                    + "AND self.isCustomer = true "
-                    + "AND self.id NOT IN ("
-                    + Beans.get(BlockingService.class)
-                        .listOfBlockedPartner(company, BlockingRepository.REMINDER_BLOCKING)
-                    + ")")
-            .bind("_company", company)
-            .order("id");
-
-    int offset = 0;
-    List<Partner> partnerList;
-
-    while (!(partnerList = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      findBatch();
-
-      for (Partner partner : partnerList) {
-        ++offset;
-
-        try {
-          boolean remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company);
-          if (remindedOk) {
-            DebtRecovery debtRecovery = debtRecoveryService.getDebtRecovery(partner, company);
-            addBatchToModel(debtRecovery);
-            incrementDone(partner);
-          }
-        } catch (AxelorException e) {
-          TraceBackService.trace(
-              new AxelorException(
-                  e, e.getCategory(), I18n.get("Partner") + " %s", partner.getName()),
-              IException.DEBT_RECOVERY,
-              batch.getId());
-          incrementAnomaly(partner);
-          break;
-        } catch (Exception e) {
-          TraceBackService.trace(
-              new Exception(String.format(I18n.get("Partner") + " %s", partner.getName()), e),
-              IException.DEBT_RECOVERY,
-              batch.getId());
-          incrementAnomaly(partner);
-          break;
-        }
-      }
+  /**
+   * Generate the debt recovery of a partner. May be called by several workers at once.
+   *
+   * @return true if the partner has been reminded
+   */
+  protected boolean debtRecoveryPartner(Partner partner, Company company) throws Exception {
 
-      JPA.clear();
+    try {
+      boolean remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company);
+      if (remindedOk) {
+        DebtRecovery debtRecovery = debtRecoveryService.getDebtRecovery(partner, company);
+        addBatchToModel(debtRecovery, getCurrentBatchId());
+        addBatchToModel(partner, getCurrentBatchId());
+      }
+      return remindedOk;
+    } catch (AxelorException e) {
+      throw new AxelorException(e, e.getCategory(), I18n.get("Partner") + " %s", partner.getName());
+    } catch (Exception e) {
+      throw new Exception(String.format(I18n.get("Partner") + " %s", partner.getName()), e);
     }
   }
 
@@ -162,13 +153,17 @@ public class BatchDebtRecovery extends BatchStrategy {
   }
 
   protected void addBatchToModel(Model model) {
+    addBatchToModel(model, batch.getId());
+  }
+
+  protected void addBatchToModel(Model model, Long batchId) {
     String tableName = getBatchSetTableName(model);
 
     // Insert using native query for performance reasons in case of big batch set.
     String sqlString = String.format("INSERT INTO %s VALUES (:modelId, :batchId)", tableName);
     javax.persistence.Query query = JPA.em().createNativeQuery(sqlString);
     query.setParameter("modelId", model.getId());
-    query.setParameter("batchId", batch.getId());
+    query.setParameter("batchId", batchId);
     JPA.runInTransaction(query::executeUpdate);
   }
 
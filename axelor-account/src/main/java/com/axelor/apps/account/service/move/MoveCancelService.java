@@ -21,6 +21,8 @@ import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
+import com.axelor.apps.account.service.AccountBalanceSnapshotService;
+import com.axelor.apps.account.service.PartnerBalanceLedgerService;
 import com.axelor.apps.account.service.config.AccountConfigService;
 import com.axelor.apps.base.db.Period;
 import com.axelor.apps.base.db.repo.PeriodRepository;
@@ -38,13 +40,20 @@ public class MoveCancelService {
 
   protected MoveRepository moveRepository;
   protected AccountConfigService accountConfigService;
+  protected PartnerBalanceLedgerService partnerBalanceLedgerService;
+  protected AccountBalanceSnapshotService accountBalanceSnapshotService;
 
   @Inject
   public MoveCancelService(
-      AccountConfigService accountConfigService, MoveRepository moveRepository) {
+      AccountConfigService accountConfigService,
+      MoveRepository moveRepository,
+      PartnerBalanceLedgerService partnerBalanceLedgerService,
+      AccountBalanceSnapshotService accountBalanceSnapshotService) {
 
     this.accountConfigService = accountConfigService;
     this.moveRepository = moveRepository;
+    this.partnerBalanceLedgerService = partnerBalanceLedgerService;
+    this.accountBalanceSnapshotService = accountBalanceSnapshotService;
   }
 
   @Transactional(rollbackOn = {AxelorException.class, Exception.class})
@@ -75,6 +84,11 @@ public class MoveCancelService {
           I18n.get(IExceptionMessage.MOVE_CANCEL_2));
     }
 
+    if (partnerBalanceLedgerService.isPosted(move)) {
+      partnerBalanceLedgerService.postMove(move, -1);
+    }
+    accountBalanceSnapshotService.postMove(move, -1);
+
     try {
 
       if (move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK
@@ -24,11 +24,14 @@ import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
+import com.axelor.apps.account.service.AccountBalanceSnapshotService;
+import com.axelor.apps.account.service.PartnerBalanceLedgerService;
 import com.axelor.apps.account.service.config.AccountConfigService;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.repo.PartnerRepository;
 import com.axelor.apps.base.db.repo.PeriodRepository;
+import com.axelor.apps.tool.TransactionTool;
 import com.axelor.common.ObjectUtils;
 import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
@@ -42,8 +45,10 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,12 +57,16 @@ public class MoveValidateService {
 
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  private static final ThreadLocal<Map<Long, Move>> postedDayBookMoves = new ThreadLocal<>();
+
   protected AccountConfigService accountConfigService;
   protected MoveSequenceService moveSequenceService;
   protected MoveCustAccountService moveCustAccountService;
   protected MoveRepository moveRepository;
   protected AccountRepository accountRepository;
   protected PartnerRepository partnerRepository;
+  protected PartnerBalanceLedgerService partnerBalanceLedgerService;
+  protected AccountBalanceSnapshotService accountBalanceSnapshotService;
 
   @Inject
   public MoveValidateService(
@@ -66,7 +75,9 @@ public class MoveValidateService {
       MoveCustAccountService moveCustAccountService,
       MoveRepository moveRepository,
       AccountRepository accountRepository,
-      PartnerRepository partnerRepository) {
+      PartnerRepository partnerRepository,
+      PartnerBalanceLedgerService partnerBalanceLedgerService,
+      AccountBalanceSnapshotService accountBalanceSnapshotService) {
 
     this.accountConfigService = accountConfigService;
     this.moveSequenceService = moveSequenceService;
@@ -74,6 +85,8 @@ public class MoveValidateService {
     this.moveRepository = moveRepository;
     this.accountRepository = accountRepository;
     this.partnerRepository = partnerRepository;
+    this.partnerBalanceLedgerService = partnerBalanceLedgerService;
+    this.accountBalanceSnapshotService = accountBalanceSnapshotService;
   }
 
   /**
@@ -218,10 +231,26 @@ public class MoveValidateService {
 
     this.freezeAccountAndPartnerFieldsOnMoveLines(move);
 
+    // A move validated after its daybook entry is already in the partner balances.
+    boolean posted = partnerBalanceLedgerService.isPosted(move);
+
+    // Account balance snapshots are kept by move status, the move leaves the daybook ones.
+    if (accountBalanceSnapshotService.isPosted(move)) {
+      accountBalanceSnapshotService.postMove(move, -1);
+    }
+
     this.updateValidateStatus(move, dayBookMode);
 
     moveRepository.save(move);
 
+    if (!posted) {
+      partnerBalanceLedgerService.postMove(move, 1);
+    }
+    accountBalanceSnapshotService.postMove(move, 1);
+    if (move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK) {
+      getPostedDayBookMoveMap().put(move.getId(), copyPostedLines(move));
+    }
+
     if (updateCustomerAccount) {
       moveCustAccountService.updateCustomerAccount(move);
     }
@@ -292,9 +321,14 @@ public class MoveValidateService {
     List<Partner> partnerList = new ArrayList<>();
     partnerList.addAll(partnerSet);
 
+    // The account balance snapshots follow the saves of the move, see postDayBookUpdate.
     this.freezeAccountAndPartnerFieldsOnMoveLines(move);
     moveRepository.save(move);
 
+    for (Partner partner : partnerList) {
+      partnerBalanceLedgerService.rebuild(partner, move.getCompany());
+    }
+
     moveCustAccountService.updateCustomerAccount(partnerList, move.getCompany());
   }
 
@@ -322,6 +356,80 @@ public class MoveValidateService {
     return partnerList;
   }
 
+  /**
+   * Post to the account balance snapshots the changes of a move saved in the daybook: the amounts
+   * of its lines as last posted are withdrawn and the new ones are added. Called on each save of
+   * the move, as the form saves it before {@link #updateInDayBookMode(Move)} is called.
+   *
+   * @param move
+   */
+  public void postDayBookUpdate(Move move) {
+    if (move.getId() == null || move.getStatusSelect() != MoveRepository.STATUS_DAYBOOK) {
+      return;
+    }
+
+    Map<Long, Move> postedMoveMap = getPostedDayBookMoveMap();
+    Move postedMove =
+        postedMoveMap.containsKey(move.getId())
+            ? postedMoveMap.get(move.getId())
+            : getMoveBeforeUpdate(move);
+
+    if (postedMove != null && postedMove.getStatusSelect() == MoveRepository.STATUS_DAYBOOK) {
+      accountBalanceSnapshotService.postMoveUpdate(postedMove, move);
+      postedMoveMap.put(move.getId(), copyPostedLines(move));
+    }
+  }
+
+  /**
+   * Get an account move as it was last committed, read outside of the current transaction which
+   * may have already written the changes of the move.
+   *
+   * @param move
+   * @return a copy of the committed move with the posted fields of its lines, or null if the move
+   *     is not committed yet
+   */
+  public Move getMoveBeforeUpdate(Move move) {
+    return TransactionTool.callInNewEntityManager(
+        em -> {
+          Move committedMove = em.find(Move.class, move.getId());
+          return committedMove == null ? null : copyPostedLines(committedMove);
+        });
+  }
+
+  /** Copy the fields of a move and of its lines which are posted in the balance snapshots. */
+  protected Move copyPostedLines(Move move) {
+    Move copy = new Move();
+    copy.setPeriod(move.getPeriod());
+    copy.setStatusSelect(move.getStatusSelect());
+    copy.setIgnoreInAccountingOk(move.getIgnoreInAccountingOk());
+    copy.setMoveLineList(new ArrayList<>());
+
+    if (move.getMoveLineList() != null) {
+      for (MoveLine moveLine : move.getMoveLineList()) {
+        MoveLine lineCopy = new MoveLine();
+        lineCopy.setAccount(moveLine.getAccount());
+        lineCopy.setDebit(moveLine.getDebit());
+        lineCopy.setCredit(moveLine.getCredit());
+        copy.getMoveLineList().add(lineCopy);
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Daybook moves posted by the current transaction: a move saved several times in the
+   * transaction is compared with what it posted last, not with the committed lines.
+   */
+  protected Map<Long, Move> getPostedDayBookMoveMap() {
+    Map<Long, Move> postedMoveMap = postedDayBookMoves.get();
+    if (postedMoveMap == null) {
+      postedMoveMap = new HashMap<>();
+      postedDayBookMoves.set(postedMoveMap);
+      TransactionTool.runAfterCompletion(committed -> postedDayBookMoves.remove());
+    }
+    return postedMoveMap;
+  }
+
   /**
    * Method that freeze the account and partner fields on move lines
    *
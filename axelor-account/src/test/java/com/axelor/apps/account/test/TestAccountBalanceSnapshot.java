@@ -0,0 +1,497 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.test;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountBalanceSnapshot;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.AccountBalanceSnapshotServiceImpl;
+import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.db.repo.PeriodRepository;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestAccountBalanceSnapshot {
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final List<Integer> ALL_STATUS =
+      Arrays.asList(MoveRepository.STATUS_DAYBOOK, MoveRepository.STATUS_VALIDATED);
+
+  /**
+   * Snapshots kept in memory, over a list of moves. The sums follow the filters of the queries
+   * they replace.
+   */
+  private static class TestService extends AccountBalanceSnapshotServiceImpl {
+
+    private final List<AccountBalanceSnapshot> snapshotList = new ArrayList<>();
+
+    private final List<Move> moveList = new ArrayList<>();
+
+    private final Map<Long, Account> accountMap = new LinkedHashMap<>();
+
+    private final Map<Long, Period> periodMap = new LinkedHashMap<>();
+
+    TestService() {
+      super(null, null);
+    }
+
+    @Override
+    protected void create(SnapshotKey key, BigDecimal[] amounts, boolean frozen) {
+      AccountBalanceSnapshot accountBalanceSnapshot = new AccountBalanceSnapshot();
+      accountBalanceSnapshot.setAccount(accountMap.get(key.getAccountId()));
+      accountBalanceSnapshot.setPeriod(periodMap.get(key.getPeriodId()));
+      accountBalanceSnapshot.setStatusSelect(key.getStatusSelect());
+      accountBalanceSnapshot.setDebit(amounts[DEBIT]);
+      accountBalanceSnapshot.setCredit(amounts[CREDIT]);
+      accountBalanceSnapshot.setFrozenOk(frozen);
+      snapshotList.add(accountBalanceSnapshot);
+    }
+
+    @Override
+    protected List<AccountBalanceSnapshot> findOpenSnapshots(SnapshotKey key) {
+      return snapshotList.stream()
+          .filter(
+              snapshot ->
+                  !snapshot.getFrozenOk()
+                      && snapshot.getAccount().getId().equals(key.getAccountId())
+                      && Objects.equals(getId(snapshot.getPeriod()), key.getPeriodId())
+                      && snapshot.getStatusSelect() == key.getStatusSelect())
+          .collect(Collectors.toList());
+    }
+
+    @Override
+    protected void removeSnapshots(List<AccountBalanceSnapshot> accountBalanceSnapshotList) {
+      snapshotList.removeIf(
+          snapshot -> accountBalanceSnapshotList.stream().anyMatch(removed -> removed == snapshot));
+    }
+
+    @Override
+    protected void deleteSnapshots(Account account, Period period) {
+      snapshotList.removeIf(
+          snapshot ->
+              (account == null || snapshot.getAccount() == account)
+                  && (period == null || snapshot.getPeriod() == period));
+    }
+
+    @Override
+    protected List<Object[]> sumMoveLines(Account account, Period period) {
+      Map<List<Object>, BigDecimal[]> amountMap = new LinkedHashMap<>();
+      for (Move move : moveList) {
+        if (!isPosted(move) || period != null && move.getPeriod() != period) {
+          continue;
+        }
+        for (MoveLine moveLine : move.getMoveLineList()) {
+          if (account != null && moveLine.getAccount() != account) {
+            continue;
+          }
+          BigDecimal[] amounts =
+              amountMap.computeIfAbsent(
+                  Arrays.asList(
+                      moveLine.getAccount().getId(),
+                      getId(move.getPeriod()),
+                      move.getPeriod() == null ? null : move.getPeriod().getStatusSelect(),
+                      move.getStatusSelect()),
+                  key -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+          addAmounts(amounts, moveLine.getDebit(), moveLine.getCredit());
+        }
+      }
+
+      List<Object[]> rowList = new ArrayList<>();
+      amountMap.forEach(
+          (key, amounts) ->
+              rowList.add(
+                  new Object[] {
+                    key.get(0), key.get(1), key.get(2), key.get(3), amounts[DEBIT], amounts[CREDIT]
+                  }));
+      return rowList;
+    }
+
+    @Override
+    protected List<AccountBalanceSnapshot> findFrozenSnapshots(Period period) {
+      return snapshotList.stream()
+          .filter(snapshot -> snapshot.getFrozenOk() && snapshot.getPeriod() == period)
+          .collect(Collectors.toList());
+    }
+
+    @Override
+    protected BigDecimal sumSnapshots(
+        Account account, LocalDate date, Collection<Integer> statusList) {
+      BigDecimal balance = BigDecimal.ZERO;
+      for (AccountBalanceSnapshot snapshot : snapshotList) {
+        if (snapshot.getAccount() == account
+            && statusList.contains(snapshot.getStatusSelect())
+            && (date == null || isEndedAt(snapshot.getPeriod(), date))) {
+          balance = balance.add(snapshot.getDebit()).subtract(snapshot.getCredit());
+        }
+      }
+      return balance;
+    }
+
+    @Override
+    protected BigDecimal sumMoveLinesInProgress(
+        Account account, LocalDate date, Collection<Integer> statusList) {
+      BigDecimal balance = BigDecimal.ZERO;
+      for (Move move : moveList) {
+        if (move.getIgnoreInAccountingOk()
+            || !statusList.contains(move.getStatusSelect())
+            || move.getDate().isAfter(date)
+            || isEndedAt(move.getPeriod(), date)) {
+          continue;
+        }
+        for (MoveLine moveLine : move.getMoveLineList()) {
+          if (moveLine.getAccount() == account) {
+            balance = balance.add(moveLine.getDebit()).subtract(moveLine.getCredit());
+          }
+        }
+      }
+      return balance;
+    }
+
+    private static boolean isEndedAt(Period period, LocalDate date) {
+      return period != null && !period.getToDate().isAfter(date);
+    }
+
+    private static Long getId(Period period) {
+      return period == null ? null : period.getId();
+    }
+
+    int getCompactInterval() {
+      return COMPACT_INTERVAL;
+    }
+
+    long countSnapshots(Account account, Period period, boolean frozen) {
+      return snapshotList.stream()
+          .filter(
+              snapshot ->
+                  snapshot.getAccount() == account
+                      && snapshot.getPeriod() == period
+                      && snapshot.getFrozenOk() == frozen)
+          .count();
+    }
+  }
+
+  private TestService service;
+
+  private Account bankAccount;
+  private Account saleAccount;
+  private Period january;
+  private Period february;
+
+  @Before
+  public void setUp() {
+    service = new TestService();
+    bankAccount = createAccount(1L);
+    saleAccount = createAccount(2L);
+    january = createPeriod(1L, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 31));
+    february = createPeriod(2L, LocalDate.of(2019, 2, 1), LocalDate.of(2019, 2, 28));
+  }
+
+  private Account createAccount(long id) {
+    Account account = new Account();
+    account.setId(id);
+    service.accountMap.put(id, account);
+    return account;
+  }
+
+  private Period createPeriod(long id, LocalDate fromDate, LocalDate toDate) {
+    Period period = new Period();
+    period.setId(id);
+    period.setFromDate(fromDate);
+    period.setToDate(toDate);
+    period.setStatusSelect(PeriodRepository.STATUS_OPENED);
+    service.periodMap.put(id, period);
+    return period;
+  }
+
+  /** A move of an amount from the sale account to the bank account. */
+  private Move createMove(long id, int statusSelect, Period period, LocalDate date, int amount) {
+    Move move = new Move();
+    move.setId(id);
+    move.setStatusSelect(statusSelect);
+    move.setPeriod(period);
+    move.setDate(date);
+    move.setMoveLineList(new ArrayList<>());
+    addMoveLine(move, bankAccount, new BigDecimal(amount), BigDecimal.ZERO);
+    addMoveLine(move, saleAccount, BigDecimal.ZERO, new BigDecimal(amount));
+    service.moveList.add(move);
+    return move;
+  }
+
+  private void addMoveLine(Move move, Account account, BigDecimal debit, BigDecimal credit) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setMove(move);
+    moveLine.setAccount(account);
+    moveLine.setDebit(debit);
+    moveLine.setCredit(credit);
+    move.getMoveLineList().add(moveLine);
+  }
+
+  private Move copy(Move move) {
+    Move copy = new Move();
+    copy.setStatusSelect(move.getStatusSelect());
+    copy.setPeriod(move.getPeriod());
+    copy.setMoveLineList(new ArrayList<>());
+    for (MoveLine moveLine : move.getMoveLineList()) {
+      addMoveLine(copy, moveLine.getAccount(), moveLine.getDebit(), moveLine.getCredit());
+    }
+    return copy;
+  }
+
+  private void setAmount(Move move, int amount) {
+    move.getMoveLineList().get(0).setDebit(new BigDecimal(amount));
+    move.getMoveLineList().get(1).setCredit(new BigDecimal(amount));
+  }
+
+  private void assertBalance(int expected, Account account, LocalDate date, List<Integer> status) {
+    BigDecimal balance = service.getBalance(account, date, status);
+    Assert.assertEquals("balance at " + date, 0, new BigDecimal(expected).compareTo(balance));
+  }
+
+  @Test
+  public void testPostMoveSigns() {
+    Move validatedMove =
+        createMove(1L, MoveRepository.STATUS_VALIDATED, january, LocalDate.of(2019, 1, 10), 100);
+    Move dayBookMove =
+        createMove(2L, MoveRepository.STATUS_DAYBOOK, january, LocalDate.of(2019, 1, 12), 30);
+
+    service.postMove(validatedMove, 1);
+    service.postMove(dayBookMove, 1);
+    assertBalance(130, bankAccount, null, ALL_STATUS);
+    assertBalance(-130, saleAccount, null, ALL_STATUS);
+    assertBalance(100, bankAccount, null, Arrays.asList(MoveRepository.STATUS_VALIDATED));
+
+    // Canceled: the amounts are withdrawn with a snapshot of their own.
+    service.postMove(validatedMove, -1);
+    assertBalance(30, bankAccount, null, ALL_STATUS);
+    assertBalance(0, bankAccount, null, Arrays.asList(MoveRepository.STATUS_VALIDATED));
+    Assert.assertEquals(3, service.countSnapshots(bankAccount, january, false));
+
+    // Moves which are neither validated nor in the daybook, or ignored, are not posted.
+    Move draftMove =
+        createMove(3L, MoveRepository.STATUS_NEW, january, LocalDate.of(2019, 1, 15), 10);
+    Move ignoredMove =
+        createMove(4L, MoveRepository.STATUS_VALIDATED, january, LocalDate.of(2019, 1, 15), 10);
+    ignoredMove.setIgnoreInAccountingOk(true);
+    service.postMove(draftMove, 1);
+    service.postMove(ignoredMove, 1);
+    Assert.assertEquals(3, service.countSnapshots(bankAccount, january, false));
+  }
+
+  @Test
+  public void testPostMoveUpdate() {
+    Move dayBookMove =
+        createMove(1L, MoveRepository.STATUS_DAYBOOK, january, LocalDate.of(2019, 1, 20), 30);
+    service.postMove(dayBookMove, 1);
+
+    Move postedMove = copy(dayBookMove);
+    setAmount(dayBookMove, 50);
+    service.postMoveUpdate(postedMove, dayBookMove);
+    assertBalance(50, bankAccount, null, ALL_STATUS);
+    Assert.assertEquals(2, service.countSnapshots(bankAccount, january, false));
+
+    // Saved again without change: nothing is posted.
+    service.postMoveUpdate(copy(dayBookMove), dayBookMove);
+    Assert.assertEquals(2, service.countSnapshots(bankAccount, january, false));
+
+    // Moved to the next period: withdrawn from January, added to February.
+    postedMove = copy(dayBookMove);
+    dayBookMove.setPeriod(february);
+    dayBookMove.setDate(LocalDate.of(2019, 2, 2));
+    service.postMoveUpdate(postedMove, dayBookMove);
+    assertBalance(0, bankAccount, LocalDate.of(2019, 1, 31), ALL_STATUS);
+    assertBalance(50, bankAccount, LocalDate.of(2019, 2, 28), ALL_STATUS);
+  }
+
+  @Test
+  public void testCompaction() {
+    int compactInterval = service.getCompactInterval();
+    for (long id = 1; id <= compactInterval; id++) {
+      service.postMove(
+          createMove(id, MoveRepository.STATUS_VALIDATED, january, LocalDate.of(2019, 1, 5), 10),
+          1);
+      Assert.assertEquals(
+          id < compactInterval ? id : 1, service.countSnapshots(bankAccount, january, false));
+    }
+    assertBalance(10 * compactInterval, bankAccount, null, ALL_STATUS);
+    assertBalance(-10 * compactInterval, saleAccount, null, ALL_STATUS);
+  }
+
+  @Test
+  public void testFreezeAndUnfreeze() {
+    long compactInterval = service.getCompactInterval();
+    service.postMove(
+        createMove(1L, MoveRepository.STATUS_VALIDATED, january, LocalDate.of(2019, 1, 5), 100),
+        1);
+    // Validated without being posted: the snapshots have drifted from the move lines.
+    createMove(2L, MoveRepository.STATUS_VALIDATED, january, LocalDate.of(2019, 1, 6), 20);
+    assertBalance(100, bankAccount, null, ALL_STATUS);
+
+    january.setStatusSelect(PeriodRepository.STATUS_CLOSED);
+    service.freeze(january);
+    assertBalance(120, bankAccount, null, ALL_STATUS);
+    Assert.assertEquals(1, service.countSnapshots(bankAccount, january, true));
+    Assert.assertEquals(0, service.countSnapshots(bankAccount, january, false));
+
+    // Adjustment: the new snapshots are not merged with the frozen ones.
+    january.setStatusSelect(PeriodRepository.STATUS_ADJUSTING);
+    service.postMove(
+        createMove(
+            compactInterval,
+            MoveRepository.STATUS_VALIDATED,
+            january,
+            LocalDate.of(2019, 1, 31),
+            5),
+        1);
+    Assert.assertEquals(1, service.countSnapshots(bankAccount, january, true));
+    Assert.assertEquals(1, service.countSnapshots(bankAccount, january, false));
+
+    service.unfreeze(january);
+    Assert.assertEquals(0, service.countSnapshots(bankAccount, january, true));
+    service.postMove(
+        createMove(
+            2 * compactInterval,
+            MoveRepository.STATUS_VALIDATED,
+            january,
+            LocalDate.of(2019, 1, 31),
+            5),
+        1);
+    Assert.assertEquals(1, service.countSnapshots(bankAccount, january, false));
+    assertBalance(130, bankAccount, null, ALL_STATUS);
+  }
+
+  @Test
+  public void testBalanceAtPeriodBoundaries() {
+    List<Move> moveList =
+        Arrays.asList(
+            createMove(1L, MoveRepository.STATUS_VALIDATED, january, LocalDate.of(2019, 1, 10), 1),
+            createMove(2L, MoveRepository.STATUS_DAYBOOK, january, LocalDate.of(2019, 1, 31), 2),
+            createMove(3L, MoveRepository.STATUS_VALIDATED, february, LocalDate.of(2019, 2, 1), 4),
+            createMove(4L, MoveRepository.STATUS_VALIDATED, february, LocalDate.of(2019, 2, 28), 8),
+            createMove(5L, MoveRepository.STATUS_VALIDATED, null, LocalDate.of(2019, 1, 31), 16));
+    moveList.forEach(move -> service.postMove(move, 1));
+
+    january.setStatusSelect(PeriodRepository.STATUS_CLOSED);
+    service.freeze(january);
+
+    for (LocalDate date :
+        Arrays.asList(
+            LocalDate.of(2018, 12, 31),
+            LocalDate.of(2019, 1, 30),
+            LocalDate.of(2019, 1, 31),
+            LocalDate.of(2019, 2, 1),
+            LocalDate.of(2019, 2, 27),
+            LocalDate.of(2019, 2, 28),
+            LocalDate.of(2019, 3, 1))) {
+      int expected = 0;
+      for (Move move : moveList) {
+        if (!move.getDate().isAfter(date)) {
+          expected += move.getMoveLineList().get(0).getDebit().intValue();
+        }
+      }
+      assertBalance(expected, bankAccount, date, ALL_STATUS);
+      assertBalance(-expected, saleAccount, date, ALL_STATUS);
+    }
+    assertBalance(31, bankAccount, null, ALL_STATUS);
+  }
+
+  /**
+   * Balance of an account at a date over 20 million move lines: the sum of all the lines up to the
+   * date, as it was read before the snapshots, against the sum of the snapshots of the ended
+   * periods and of the lines of the period in progress. The lines are synthetic amounts in cents,
+   * held in memory in date order, one period per month over ten years.
+   */
+  @Test
+  public void benchmarkSyntheticLedger() {
+    int lineCount = 20_000_000;
+    int periodCount = 120;
+    int linesPerPeriod = lineCount / periodCount;
+    int dateCount = 100;
+    Random random = new Random(42);
+
+    int[] amounts = new int[linesPerPeriod * periodCount];
+    for (int i = 0; i < amounts.length; i++) {
+      amounts[i] = random.nextInt(200_001) - 100_000;
+    }
+
+    // Snapshots, as posted line by line.
+    long[] snapshots = new long[periodCount];
+    for (int i = 0; i < amounts.length; i++) {
+      snapshots[i / linesPerPeriod] += amounts[i];
+    }
+
+    // Balance dates, as the index of the last line of the date.
+    int[] lastLines = new int[dateCount];
+    for (int i = 0; i < dateCount; i++) {
+      lastLines[i] = random.nextInt(amounts.length);
+    }
+
+    long start = System.nanoTime();
+    long[] scanBalances = new long[dateCount];
+    for (int i = 0; i < dateCount; i++) {
+      long balance = 0;
+      for (int line = 0; line <= lastLines[i]; line++) {
+        balance += amounts[line];
+      }
+      scanBalances[i] = balance;
+    }
+    long scanNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    long[] snapshotBalances = new long[dateCount];
+    for (int i = 0; i < dateCount; i++) {
+      int period = lastLines[i] / linesPerPeriod;
+      long balance = 0;
+      for (int ended = 0; ended < period; ended++) {
+        balance += snapshots[ended];
+      }
+      for (int line = period * linesPerPeriod; line <= lastLines[i]; line++) {
+        balance += amounts[line];
+      }
+      snapshotBalances[i] = balance;
+    }
+    long snapshotNanos = System.nanoTime() - start;
+
+    log.info(
+        "Account balance over {} move lines, {} dates: scan of the lines {} ms, "
+            + "snapshots and lines of the period in progress {} ms",
+        amounts.length,
+        dateCount,
+        scanNanos / 1_000_000,
+        snapshotNanos / 1_000_000);
+
+    Assert.assertArrayEquals(scanBalances, snapshotBalances);
+  }
+}
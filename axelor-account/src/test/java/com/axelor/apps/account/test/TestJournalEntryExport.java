@@ -0,0 +1,356 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.test;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.Journal;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.ReconcileGroup;
+import com.axelor.apps.account.db.repo.ReconcileGroupRepository;
+import com.axelor.apps.account.service.JournalEntryExportRow;
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.tool.file.CsvTool;
+import com.opencsv.CSVWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Format the rows of the journal entry export, and compare the export written row by row from
+ * projections with the export built in memory from the move lines, on a synthetic ledger.
+ */
+public class TestJournalEntryExport {
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int LINE_COUNT = 200_000;
+
+  private static final LocalDate START_DATE = LocalDate.of(2019, 1, 1);
+
+  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+  private Path directory;
+
+  private Journal journal;
+  private Account customerAccount;
+  private Account saleAccount;
+  private Partner partner;
+  private Currency currency;
+  private ReconcileGroup reconcileGroup;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("fec");
+
+    journal = new Journal();
+    journal.setCode("VT");
+    journal.setName("Sales journal");
+    customerAccount = new Account();
+    customerAccount.setCode("411000");
+    customerAccount.setName("Customers");
+    saleAccount = new Account();
+    saleAccount.setCode("706000");
+    saleAccount.setName("Sales");
+    partner = new Partner();
+    partner.setPartnerSeq("C0001");
+    partner.setName("Customer");
+    currency = new Currency();
+    currency.setCode("EUR");
+    reconcileGroup = new ReconcileGroup();
+    reconcileGroup.setCode("LET1");
+    reconcileGroup.setStatusSelect(ReconcileGroupRepository.STATUS_FINAL);
+    reconcileGroup.setDateOfLettering(START_DATE.plusDays(30));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (File file : directory.toFile().listFiles()) {
+      file.delete();
+    }
+    Files.delete(directory);
+  }
+
+  /** Line i of the synthetic ledger: moves of two lines, the customer line being lettered. */
+  private MoveLine createMoveLine(int i) {
+    Move move = new Move();
+    move.setId((long) i / 2);
+    move.setReference("VT" + i / 2);
+    move.setJournal(journal);
+    move.setCurrency(currency);
+    move.setValidationDate(i % 7 == 0 ? null : START_DATE.plusDays(i / 1000));
+
+    BigDecimal amount = BigDecimal.valueOf(i / 2 + 1, 2);
+    boolean customerLine = i % 2 == 0;
+
+    MoveLine moveLine = new MoveLine();
+    moveLine.setMove(move);
+    moveLine.setDate(START_DATE.plusDays(i / 1000));
+    moveLine.setAccount(customerLine ? customerAccount : saleAccount);
+    moveLine.setPartner(customerLine ? partner : null);
+    moveLine.setOrigin("INV" + i / 2);
+    moveLine.setOriginDate(i % 3 == 0 ? null : START_DATE);
+    moveLine.setDescription("Invoice " + i / 2);
+    moveLine.setDebit(customerLine ? amount : BigDecimal.ZERO.setScale(2));
+    moveLine.setCredit(customerLine ? BigDecimal.ZERO.setScale(2) : amount);
+    moveLine.setCurrencyAmount(amount);
+    moveLine.setReconcileGroup(customerLine && i % 4 == 0 ? reconcileGroup : null);
+    return moveLine;
+  }
+
+  /** Row of {@link JournalEntryExportRow#SELECT} for a move line. */
+  private Object[] toRow(MoveLine moveLine) {
+    Move move = moveLine.getMove();
+    Partner linePartner = moveLine.getPartner();
+    ReconcileGroup lineReconcileGroup = moveLine.getReconcileGroup();
+
+    return new Object[] {
+      move.getJournal().getCode(),
+      move.getJournal().getName(),
+      move.getReference(),
+      moveLine.getDate(),
+      moveLine.getAccount().getCode(),
+      moveLine.getAccount().getName(),
+      linePartner == null ? null : linePartner.getPartnerSeq(),
+      linePartner == null ? null : linePartner.getName(),
+      moveLine.getOrigin(),
+      moveLine.getOriginDate(),
+      moveLine.getDescription(),
+      moveLine.getDebit(),
+      moveLine.getCredit(),
+      lineReconcileGroup == null ? null : lineReconcileGroup.getStatusSelect(),
+      lineReconcileGroup == null ? null : lineReconcileGroup.getCode(),
+      lineReconcileGroup == null ? null : lineReconcileGroup.getDateOfLettering(),
+      move.getValidationDate(),
+      moveLine.getCurrencyAmount(),
+      move.getCurrency() == null ? null : move.getCurrency().getCode(),
+      move.getId()
+    };
+  }
+
+  /** Columns of a move line, as built by the export before it read projections. */
+  private String[] toItems(MoveLine moveLine) {
+    String[] items = new String[18];
+    Move move = moveLine.getMove();
+    Journal moveJournal = move.getJournal();
+    items[0] = moveJournal.getCode();
+    items[1] = moveJournal.getName();
+    items[2] = moveLine.getMove().getReference();
+    items[3] = moveLine.getDate().format(DATE_FORMATTER);
+    items[4] = moveLine.getAccount().getCode();
+    items[5] = moveLine.getAccount().getName();
+    items[6] = "";
+    items[7] = "";
+    Partner linePartner = moveLine.getPartner();
+    if (linePartner != null) {
+      items[6] = linePartner.getPartnerSeq();
+      items[7] = linePartner.getName();
+    }
+    items[8] = moveLine.getOrigin();
+    if (moveLine.getOriginDate() != null) {
+      items[9] = moveLine.getOriginDate().format(DATE_FORMATTER);
+    }
+    items[10] = moveLine.getDescription();
+    items[11] = moveLine.getDebit().toString().replace('.', ',');
+    items[12] = moveLine.getCredit().toString().replace('.', ',');
+
+    ReconcileGroup lineReconcileGroup = moveLine.getReconcileGroup();
+    if (lineReconcileGroup != null
+        && lineReconcileGroup.getStatusSelect() == ReconcileGroupRepository.STATUS_FINAL) {
+      items[13] = lineReconcileGroup.getCode();
+      items[14] = lineReconcileGroup.getDateOfLettering().format(DATE_FORMATTER);
+    } else {
+      items[13] = "";
+      items[14] = "";
+    }
+
+    if (move.getValidationDate() != null) {
+      items[15] = move.getValidationDate().format(DATE_FORMATTER);
+    }
+
+    items[16] = moveLine.getCurrencyAmount().toString().replace('.', ',');
+    if (moveLine.getCurrencyAmount().compareTo(BigDecimal.ZERO) > 0
+        && moveLine.getCredit().compareTo(BigDecimal.ZERO) > 0) {
+      items[16] = "-" + items[16];
+    }
+
+    if (move.getCurrency() != null) {
+      items[17] = move.getCurrency().getCode();
+    }
+    return items;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private Object[] createRow(BigDecimal debit, BigDecimal credit, BigDecimal currencyAmount) {
+    return new Object[] {
+      "VT",
+      "Sales journal",
+      "INV-0001",
+      LocalDate.of(2019, 3, 15),
+      "411000",
+      "Customers",
+      "C0001",
+      "Customer",
+      "INV-0001",
+      LocalDate.of(2019, 3, 14),
+      "Invoice INV-0001",
+      debit,
+      credit,
+      null,
+      null,
+      null,
+      LocalDate.of(2019, 3, 16),
+      currencyAmount,
+      "EUR",
+      1L
+    };
+  }
+
+  @Test
+  public void testColumns() {
+    String[] items =
+        JournalEntryExportRow.toItems(
+            createRow(new BigDecimal("120.50"), BigDecimal.ZERO, new BigDecimal("120.50")));
+
+    Assert.assertEquals(18, items.length);
+    Assert.assertEquals("VT", items[0]);
+    Assert.assertEquals("20190315", items[3]);
+    Assert.assertEquals("C0001", items[6]);
+    Assert.assertEquals("20190314", items[9]);
+    Assert.assertEquals("120,50", items[11]);
+    Assert.assertEquals("0", items[12]);
+    Assert.assertEquals("20190316", items[15]);
+    Assert.assertEquals("120,50", items[16]);
+    Assert.assertEquals("EUR", items[17]);
+  }
+
+  @Test
+  public void testLettering() {
+    Object[] row = createRow(new BigDecimal("10.00"), BigDecimal.ZERO, new BigDecimal("10.00"));
+    row[13] = ReconcileGroupRepository.STATUS_FINAL;
+    row[14] = "AB";
+    row[15] = LocalDate.of(2019, 4, 2);
+
+    String[] items = JournalEntryExportRow.toItems(row);
+    Assert.assertEquals("AB", items[13]);
+    Assert.assertEquals("20190402", items[14]);
+
+    row[13] = ReconcileGroupRepository.STATUS_TEMPORARY;
+    items = JournalEntryExportRow.toItems(row);
+    Assert.assertEquals("", items[13]);
+    Assert.assertEquals("", items[14]);
+  }
+
+  @Test
+  public void testCurrencyAmountOfCredit() {
+    String[] items =
+        JournalEntryExportRow.toItems(
+            createRow(BigDecimal.ZERO, new BigDecimal("12.50"), new BigDecimal("12.50")));
+    Assert.assertEquals("12,50", items[12]);
+    Assert.assertEquals("-12,50", items[16]);
+
+    items =
+        JournalEntryExportRow.toItems(
+            createRow(BigDecimal.ZERO, new BigDecimal("12.50"), new BigDecimal("-12.50")));
+    Assert.assertEquals("-12,50", items[16]);
+  }
+
+  @Test
+  public void testNullValues() {
+    Object[] row = createRow(new BigDecimal("5.00"), BigDecimal.ZERO, new BigDecimal("5.00"));
+    row[6] = null;
+    row[7] = null;
+    row[9] = null;
+    row[16] = null;
+
+    String[] items = JournalEntryExportRow.toItems(row);
+    Assert.assertEquals("", items[6]);
+    Assert.assertEquals("", items[7]);
+    Assert.assertNull(items[9]);
+    Assert.assertNull(items[15]);
+    Assert.assertEquals(Long.valueOf(1L), JournalEntryExportRow.getMoveId(row));
+  }
+
+  @Test
+  public void testSameFileAsInMemoryExport() throws IOException {
+    String[] header = {"JournalCode", "JournalLib", "EcritureNum"};
+
+    System.gc();
+    long start = System.currentTimeMillis();
+    long startMemory = usedMemory();
+    long peakMemory = 0;
+    List<MoveLine> moveLineList = new ArrayList<>();
+    for (int i = 0; i < LINE_COUNT; i++) {
+      moveLineList.add(createMoveLine(i));
+    }
+    List<String[]> allMoveLineData = new ArrayList<>();
+    for (MoveLine moveLine : moveLineList) {
+      allMoveLineData.add(toItems(moveLine));
+    }
+    peakMemory = Math.max(peakMemory, usedMemory() - startMemory);
+    CsvTool.csvWriter(directory.toString(), "memory.csv", '|', header, allMoveLineData);
+    log.info(
+        "In-memory export of {} lines: {} ms, {} MB retained",
+        LINE_COUNT,
+        System.currentTimeMillis() - start,
+        peakMemory >> 20);
+
+    moveLineList = null;
+    allMoveLineData = null;
+    System.gc();
+    start = System.currentTimeMillis();
+    startMemory = usedMemory();
+    peakMemory = 0;
+    try (CSVWriter writer = CsvTool.setCsvFile(directory.toString(), "stream.csv", '|')) {
+      writer.writeNext(header);
+      for (int i = 0; i < LINE_COUNT; i++) {
+        writer.writeNext(JournalEntryExportRow.toItems(toRow(createMoveLine(i))));
+        if (i % 10_000 == 0) {
+          peakMemory = Math.max(peakMemory, usedMemory() - startMemory);
+        }
+      }
+    }
+    log.info(
+        "Streamed export of {} lines: {} ms, {} MB retained",
+        LINE_COUNT,
+        System.currentTimeMillis() - start,
+        peakMemory >> 20);
+
+    Assert.assertArrayEquals(
+        Files.readAllBytes(directory.resolve("memory.csv")),
+        Files.readAllBytes(directory.resolve("stream.csv")));
+  }
+}
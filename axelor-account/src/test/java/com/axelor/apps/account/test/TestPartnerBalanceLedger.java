@@ -0,0 +1,235 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.test;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.PartnerBalanceLedgerServiceImpl;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPartnerBalanceLedger {
+
+  private static final LocalDate DATE = LocalDate.of(2019, 3, 15);
+
+  /** Ledger kept in memory, over a list of move lines. */
+  private static class TestService extends PartnerBalanceLedgerServiceImpl {
+
+    private final Map<LineKey, BigDecimal[]> ledger = new LinkedHashMap<>();
+
+    private final List<MoveLine> moveLineList = new ArrayList<>();
+
+    TestService() {
+      super(null, null, null);
+    }
+
+    @Override
+    protected void post(LineKey key, BigDecimal[] amounts) {
+      BigDecimal[] line =
+          ledger.computeIfAbsent(key, k -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+      line[DEBIT] = line[DEBIT].add(amounts[DEBIT]);
+      line[CREDIT] = line[CREDIT].add(amounts[CREDIT]);
+      if (line[DEBIT].signum() == 0 && line[CREDIT].signum() == 0) {
+        ledger.remove(key);
+      }
+    }
+
+    @Override
+    protected List<Object[]> findMoveLineAmounts(Partner partner, Company company) {
+      List<Object[]> rowList = new ArrayList<>();
+      for (MoveLine moveLine : moveLineList) {
+        if (isPosted(moveLine) && moveLine.getAmountRemaining().signum() > 0) {
+          rowList.add(
+              new Object[] {
+                moveLine.getAccount().getId(),
+                moveLine.getDate(),
+                moveLine.getDueDate(),
+                moveLine.getDebit(),
+                moveLine.getCredit(),
+                moveLine.getAmountRemaining(),
+                moveLine.getMove().getId()
+              });
+        }
+      }
+      return rowList;
+    }
+
+    @Override
+    protected Map<LineKey, BigDecimal[]> loadAmounts(Partner partner, Company company) {
+      Map<LineKey, BigDecimal[]> amountMap = new LinkedHashMap<>();
+      ledger.forEach((key, amounts) -> amountMap.put(key, amounts.clone()));
+      return amountMap;
+    }
+
+    @Override
+    protected void replace(Partner partner, Company company, Map<LineKey, BigDecimal[]> amountMap) {
+      ledger.clear();
+      ledger.putAll(amountMap);
+    }
+
+    @Override
+    protected void markBuilt(Partner partner, Company company) {}
+
+    BigDecimal getLedgerBalance() {
+      BigDecimal balance = BigDecimal.ZERO;
+      for (BigDecimal[] amounts : ledger.values()) {
+        balance = balance.add(amounts[DEBIT]).subtract(amounts[CREDIT]);
+      }
+      return balance;
+    }
+
+    int getLedgerSize() {
+      return ledger.size();
+    }
+  }
+
+  private TestService service = new TestService();
+
+  private Partner partner;
+  private Company company;
+  private Account customerAccount;
+  private Account saleAccount;
+
+  private Move invoiceMove;
+  private Move paymentMove;
+
+  @Before
+  public void setUp() {
+    partner = new Partner();
+    partner.setId(1L);
+    company = new Company();
+    company.setId(1L);
+    customerAccount = createAccount(1L, true);
+    saleAccount = createAccount(2L, false);
+
+    invoiceMove = createMove(10L);
+    addMoveLine(invoiceMove, customerAccount, new BigDecimal(120), BigDecimal.ZERO);
+    addMoveLine(invoiceMove, saleAccount, BigDecimal.ZERO, new BigDecimal(120));
+
+    paymentMove = createMove(11L);
+    addMoveLine(paymentMove, customerAccount, BigDecimal.ZERO, new BigDecimal(50));
+    addMoveLine(paymentMove, saleAccount, new BigDecimal(50), BigDecimal.ZERO);
+  }
+
+  private Account createAccount(long id, boolean useForPartnerBalance) {
+    Account account = new Account();
+    account.setId(id);
+    account.setUseForPartnerBalance(useForPartnerBalance);
+    account.setReconcileOk(useForPartnerBalance);
+    return account;
+  }
+
+  private Move createMove(long id) {
+    Move move = new Move();
+    move.setId(id);
+    move.setCompany(company);
+    move.setStatusSelect(MoveRepository.STATUS_VALIDATED);
+    move.setMoveLineList(new ArrayList<>());
+    return move;
+  }
+
+  private void addMoveLine(Move move, Account account, BigDecimal debit, BigDecimal credit) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setMove(move);
+    moveLine.setPartner(partner);
+    moveLine.setAccount(account);
+    moveLine.setDate(DATE);
+    moveLine.setDueDate(DATE.plusDays(30));
+    moveLine.setDebit(debit);
+    moveLine.setCredit(credit);
+    moveLine.setAmountRemaining(account.getReconcileOk() ? debit.max(credit) : BigDecimal.ZERO);
+    move.getMoveLineList().add(moveLine);
+    service.moveLineList.add(moveLine);
+  }
+
+  private MoveLine getCustomerLine(Move move) {
+    return move.getMoveLineList().get(0);
+  }
+
+  private void reconcile(BigDecimal amount) {
+    for (MoveLine moveLine :
+        Arrays.asList(getCustomerLine(invoiceMove), getCustomerLine(paymentMove))) {
+      moveLine.setAmountRemaining(moveLine.getAmountRemaining().subtract(amount));
+      service.postAmountPaid(moveLine, amount);
+    }
+  }
+
+  @Test
+  public void testPostAndCancel() {
+    service.postMove(invoiceMove, 1);
+    Assert.assertEquals(0, new BigDecimal(120).compareTo(service.getLedgerBalance()));
+    Assert.assertEquals(1, service.getLedgerSize());
+
+    service.postMove(paymentMove, 1);
+    Assert.assertEquals(0, new BigDecimal(70).compareTo(service.getLedgerBalance()));
+    Assert.assertEquals(2, service.getLedgerSize());
+
+    service.postMove(paymentMove, -1);
+    Assert.assertEquals(0, new BigDecimal(120).compareTo(service.getLedgerBalance()));
+    Assert.assertEquals(1, service.getLedgerSize());
+
+    // Moves which are not validated nor in the daybook are not posted.
+    Move draftMove = createMove(12L);
+    draftMove.setStatusSelect(MoveRepository.STATUS_NEW);
+    addMoveLine(draftMove, customerAccount, new BigDecimal(10), BigDecimal.ZERO);
+    service.postMove(draftMove, 1);
+    Assert.assertEquals(1, service.getLedgerSize());
+  }
+
+  @Test
+  public void testReconcileAndUnreconcile() {
+    service.postMove(invoiceMove, 1);
+    service.postMove(paymentMove, 1);
+
+    reconcile(new BigDecimal(50));
+    Assert.assertEquals(0, new BigDecimal(70).compareTo(service.getLedgerBalance()));
+    // The line of the payment is balanced, it is removed from the ledger.
+    Assert.assertEquals(1, service.getLedgerSize());
+
+    reconcile(new BigDecimal(-50));
+    Assert.assertEquals(0, new BigDecimal(70).compareTo(service.getLedgerBalance()));
+    Assert.assertEquals(2, service.getLedgerSize());
+  }
+
+  @Test
+  public void testRebuild() {
+    service.postMove(invoiceMove, 1);
+
+    // The payment was not posted: the ledger is corrected once, then it is the same.
+    Assert.assertTrue(service.verify(partner, company));
+    Assert.assertEquals(0, new BigDecimal(70).compareTo(service.getLedgerBalance()));
+    Assert.assertFalse(service.verify(partner, company));
+
+    paymentMove.setIgnoreInAccountingOk(true);
+    service.rebuild(partner, company);
+    Assert.assertEquals(0, new BigDecimal(120).compareTo(service.getLedgerBalance()));
+    Assert.assertEquals(1, service.getLedgerSize());
+  }
+}
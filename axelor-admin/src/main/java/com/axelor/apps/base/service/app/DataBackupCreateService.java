@@ -23,12 +23,14 @@ import com.axelor.common.StringUtils;
 import com.axelor.data.csv.CSVBind;
 import com.axelor.data.csv.CSVConfig;
 import com.axelor.data.csv.CSVInput;
+import com.axelor.db.JPA;
 import com.axelor.db.JpaRepository;
 import com.axelor.db.Model;
 import com.axelor.db.Query;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.db.mapper.Property;
 import com.axelor.exception.service.TraceBackService;
+import com.axelor.inject.Beans;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.meta.db.MetaJsonField;
 import com.axelor.meta.db.MetaModel;
@@ -37,24 +39,36 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Files;
 import com.google.inject.Inject;
+import com.google.inject.persist.UnitOfWork;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
 import com.opencsv.CSVWriter;
 import com.thoughtworks.xstream.XStream;
-import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import org.slf4j.Logger;
@@ -66,15 +80,10 @@ public class DataBackupCreateService {
   private static final char QUOTE_CHAR = '"';
   private static final char REFERENCE_FIELD_SEPARATOR = '|';
 
-  private static final int BUFFER_SIZE = 1000;
-
   @Inject private MetaModelRepository metaModelRepo;
 
   private Logger LOG = LoggerFactory.getLogger(getClass());
 
-  private boolean notNullReferenceFlag, referenceFlag;
-  private boolean byteArrFieldFlag = false;
-
   private static Set<String> exceptColumnNameList =
       ImmutableSet.of(
           "importOrigin",
@@ -103,78 +112,229 @@ public class DataBackupCreateService {
           .put("com.axelor.apps.bankpayment.db.BankStatementFileFormat", "self.name = :name")
           .build();
 
-  List<String> fileNameList;
+  /** Export of a model, holding its own state so that models can be exported in parallel. */
+  protected static class ModelExport {
+
+    private final String fullName;
+    private final String name;
+    private final List<String> subClasses;
+    private final CSVInput csvInput = new CSVInput();
+    private final List<String> fileNameList = new ArrayList<>();
+
+    private boolean notNullReferenceFlag, referenceFlag;
+    private boolean byteArrFieldFlag = false;
+    private boolean exported = false;
+
+    protected ModelExport(MetaModel metaModel, List<String> subClasses) {
+      this.fullName = metaModel.getFullName();
+      this.name = metaModel.getName();
+      this.subClasses = subClasses;
+    }
+
+    public String getFileName() {
+      return name + ".csv";
+    }
+  }
+
+  /** Target of the CSV file of a model, only opened once the first row is found. */
+  protected interface CsvTarget {
+    Writer open(String fileName) throws IOException;
+  }
 
   /* Generate csv Files for each individual MetaModel and single config file */
   public File create(Integer fetchLimit) throws InterruptedException {
+    return create(fetchLimit, 1, null);
+  }
+
+  /**
+   * Export the data of all the models into a zip file, with the csv config to restore it.
+   *
+   * <p>Rows are read by pages following the id, so the cost of a page does not depend on its
+   * position. With one thread, each csv file is written directly into the zip file. With more
+   * threads, models are exported in parallel into temporary files, each file being added to the
+   * zip file as soon as its model is exported.
+   *
+   * @param fetchLimit count of rows of a page
+   * @param threadCount count of models exported at the same time
+   * <p>An incremental backup only holds the rows created or updated since a previous backup. Its
+   * rows are searched by their import id on restore, so it is restored over the restore of the
+   * full backup and of the incremental backups that followed it, in order: updated rows replace
+   * the rows restored with the same id, and references to unchanged rows resolve to the rows
+   * already restored. Deleted rows are not in the backup, so they are not deleted on restore.
+   *
+   * @param fromDateTime if not null, only the rows created or updated after this date time are
+   *     exported
+   * @return the zip file
+   * @throws InterruptedException
+   */
+  public File create(Integer fetchLimit, int threadCount, LocalDateTime fromDateTime)
+      throws InterruptedException {
     File tempDir = Files.createTempDir();
     String tempDirectoryPath = tempDir.getAbsolutePath();
 
-    fileNameList = new ArrayList<>();
-    List<MetaModel> metaModelList = getMetaModels();
-
-    LinkedList<CSVInput> simpleCsvs = new LinkedList<>();
-    LinkedList<CSVInput> refernceCsvs = new LinkedList<>();
-    LinkedList<CSVInput> notNullReferenceCsvs = new LinkedList<>();
+    List<ModelExport> exportList = new ArrayList<>();
     Map<String, List<String>> subClassesMap = getSubClassesMap();
 
-    for (MetaModel metaModel : metaModelList) {
-      try {
-        List<String> subClasses = subClassesMap.get(metaModel.getFullName());
-        long totalRecord = getMetaModelDataCount(metaModel, subClasses);
-        if (totalRecord > 0) {
-          LOG.debug("Exporting Model : " + metaModel.getFullName());
-
-          notNullReferenceFlag = false;
-          referenceFlag = false;
-
-          CSVWriter csvWriter =
-              new CSVWriter(
-                  new FileWriter(new File(tempDirectoryPath, metaModel.getName() + ".csv")),
-                  SEPARATOR,
-                  QUOTE_CHAR);
-          CSVInput csvInput =
-              writeCSVData(
-                  metaModel, csvWriter, fetchLimit, totalRecord, subClasses, tempDirectoryPath);
-          csvWriter.close();
-
-          if (notNullReferenceFlag) {
-            notNullReferenceCsvs.add(csvInput);
-          } else if (referenceFlag) {
-            refernceCsvs.add(csvInput);
-
-            CSVInput temcsv = new CSVInput();
-            temcsv.setFileName(csvInput.getFileName());
-            temcsv.setTypeName(csvInput.getTypeName());
-            if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
-              temcsv.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
-            }
-            if (Class.forName(metaModel.getFullName()).getSuperclass() == App.class) {
-              temcsv.setSearch("self.code = :code");
-            }
-            simpleCsvs.add(temcsv);
-          } else {
-            simpleCsvs.add(csvInput);
+    for (MetaModel metaModel : getMetaModels()) {
+      exportList.add(new ModelExport(metaModel, subClassesMap.get(metaModel.getFullName())));
+    }
+
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmSS");
+    String backupZipFileName = "DataBackup_" + LocalDateTime.now().format(formatter) + ".zip";
+    File zipFile = new File(tempDirectoryPath, backupZipFileName);
+
+    try (ZipOutputStream out =
+        new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+
+      if (threadCount > 1) {
+        exportInParallel(exportList, fetchLimit, fromDateTime, tempDirectoryPath, threadCount, out);
+      } else {
+        // The entry is left open by the writer, which is flushed but not closed. Each model has
+        // its own writer, so what a failed export left in its buffer is not written afterwards.
+        for (ModelExport export : exportList) {
+          exportModel(
+              export,
+              fetchLimit,
+              fromDateTime,
+              tempDirectoryPath,
+              fileName -> {
+                out.putNextEntry(new ZipEntry(fileName));
+                return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+              });
+          if (export.exported) {
+            out.closeEntry();
           }
+        }
+      }
 
-          fileNameList.add(metaModel.getName() + ".csv");
+      for (ModelExport export : exportList) {
+        for (String fileName : export.fileNameList) {
+          addFileToZip(out, tempDirectoryPath, fileName);
         }
-      } catch (ClassNotFoundException e) {
-      } catch (IOException e) {
-        TraceBackService.trace(e, DataBackupService.class.getName());
       }
+
+      out.putNextEntry(new ZipEntry(DataBackupServiceImpl.CONFIG_FILE_NAME));
+      out.write(
+          generateConfig(exportList, fromDateTime != null).getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+
+    } catch (IOException e) {
+      TraceBackService.trace(e, "Error From DataBackupCreateService - create()");
     }
 
-    CSVConfig csvConfig = new CSVConfig();
-    csvConfig.setInputs(simpleCsvs);
-    csvConfig.getInputs().addAll(notNullReferenceCsvs);
-    csvConfig.getInputs().addAll(refernceCsvs);
-    csvConfig.getInputs().addAll(notNullReferenceCsvs);
-    generateConfig(tempDirectoryPath, csvConfig);
+    return zipFile;
+  }
+
+  protected void exportInParallel(
+      List<ModelExport> exportList,
+      Integer fetchLimit,
+      LocalDateTime fromDateTime,
+      String dirPath,
+      int threadCount,
+      ZipOutputStream out)
+      throws InterruptedException, IOException {
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    CompletionService<ModelExport> completionService = new ExecutorCompletionService<>(executor);
+    Map<Future<ModelExport>, ModelExport> futureMap = new HashMap<>();
+
+    try {
+      for (ModelExport export : exportList) {
+        Future<ModelExport> future =
+            completionService.submit(
+                () -> {
+                  List<Writer> writerList = new ArrayList<>();
+                  RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+                  UnitOfWork unitOfWork = Beans.get(UnitOfWork.class);
+                  try (RequestScoper.CloseableScope ignored = scope.open()) {
+                    unitOfWork.begin();
+                    exportModel(
+                        export,
+                        fetchLimit,
+                        fromDateTime,
+                        dirPath,
+                        fileName -> {
+                          Writer writer =
+                              new BufferedWriter(
+                                  new OutputStreamWriter(
+                                      new FileOutputStream(new File(dirPath, fileName)),
+                                      StandardCharsets.UTF_8));
+                          writerList.add(writer);
+                          return writer;
+                        });
+                  } finally {
+                    unitOfWork.end();
+                    for (Writer writer : writerList) {
+                      writer.close();
+                    }
+                  }
+                  return export;
+                });
+        futureMap.put(future, export);
+      }
+
+      for (int i = 0; i < exportList.size(); i++) {
+        Future<ModelExport> future = completionService.take();
+        ModelExport export = futureMap.get(future);
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          TraceBackService.trace(e.getCause(), DataBackupService.class.getName());
+          discardExport(export, dirPath);
+          continue;
+        }
+        if (export.exported) {
+          addFileToZip(out, dirPath, export.getFileName());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Leave out of the backup a model whose export failed: its csv file may be partly written, so it
+   * is removed with the files of its binary fields, and the model is not put in the config.
+   */
+  protected void discardExport(ModelExport export, String dirPath) {
+    export.exported = false;
+    new File(dirPath, export.getFileName()).delete();
+    for (String fileName : export.fileNameList) {
+      new File(dirPath, fileName).delete();
+    }
+    export.fileNameList.clear();
+  }
+
+  /**
+   * Export the rows of a model.
+   *
+   * @return the writer of the csv file, flushed, or null if the model has no row to export
+   */
+  protected Writer exportModel(
+      ModelExport export,
+      Integer fetchLimit,
+      LocalDateTime fromDateTime,
+      String dirPath,
+      CsvTarget target) {
 
-    fileNameList.add(DataBackupServiceImpl.CONFIG_FILE_NAME);
-    File zippedFile = generateZIP(tempDirectoryPath, fileNameList);
-    return zippedFile;
+    try {
+      LOG.debug("Exporting Model : " + export.fullName);
+      return writeCSVData(export, fetchLimit, fromDateTime, dirPath, target);
+    } catch (ClassNotFoundException e) {
+    } catch (IOException e) {
+      TraceBackService.trace(e, DataBackupService.class.getName());
+      discardExport(export, dirPath);
+    }
+    return null;
+  }
+
+  protected void addFileToZip(ZipOutputStream out, String dirPath, String fileName)
+      throws IOException {
+    File file = new File(dirPath, fileName);
+    out.putNextEntry(new ZipEntry(fileName));
+    java.nio.file.Files.copy(file.toPath(), out);
+    out.closeEntry();
+    file.delete();
   }
 
   /* Get All MetaModels */
@@ -212,34 +372,32 @@ public class DataBackupCreateService {
     return subClassMap;
   }
 
-  /* Get All Data of Specific MetaModel */
+  /* Get the rows of a MetaModel following the given id */
   private List<Model> getMetaModelDataList(
-      MetaModel metaModel, int start, Integer fetchLimit, List<String> subClasses)
+      ModelExport export, long lastId, Integer fetchLimit, LocalDateTime fromDateTime)
       throws ClassNotFoundException {
-    return getQuery(metaModel, subClasses).fetch(fetchLimit, start);
-  }
-
-  private long getMetaModelDataCount(MetaModel metaModel, List<String> subClasses)
-      throws InterruptedException, ClassNotFoundException {
-    Query<Model> query = getQuery(metaModel, subClasses);
-    long count = 0;
-    if (query != null) {
-      count = query.count();
+    Query<Model> query = getQuery(export, fromDateTime);
+    if (query == null) {
+      return Collections.emptyList();
     }
-    return count;
+    return query.bind("lastId", lastId).order("id").fetch(fetchLimit);
   }
 
-  private Query<Model> getQuery(MetaModel metaModel, List<String> subClasses)
+  private Query<Model> getQuery(ModelExport export, LocalDateTime fromDateTime)
       throws ClassNotFoundException {
-    String whereStr = "";
-    if (subClasses != null && subClasses.size() > 0) {
-      for (String subClassName : subClasses) {
-        whereStr += whereStr.length() > 0 ? " AND " : "";
-        whereStr += "id NOT IN (select id from " + subClassName + ")";
+    String whereStr = "self.id > :lastId";
+    if (export.subClasses != null && export.subClasses.size() > 0) {
+      for (String subClassName : export.subClasses) {
+        whereStr += " AND id NOT IN (select id from " + subClassName + ")";
       }
     }
     @SuppressWarnings("unchecked")
-    Class<Model> klass = (Class<Model>) Class.forName(metaModel.getFullName());
+    Class<Model> klass = (Class<Model>) Class.forName(export.fullName);
+    if (fromDateTime != null && AuditableModel.class.isAssignableFrom(klass)) {
+      whereStr +=
+          " AND (self.updatedOn > :fromDateTime "
+              + "OR (self.updatedOn IS NULL AND self.createdOn > :fromDateTime))";
+    }
     JpaRepository<Model> model = null;
     Query<Model> query = null;
     try {
@@ -248,80 +406,97 @@ public class DataBackupCreateService {
       TraceBackService.trace(e, DataBackupService.class.getName());
     }
     if (model != null) {
-      query = JpaRepository.of(klass).all();
-      if (StringUtils.notEmpty(whereStr)) {
-        query.filter(whereStr);
+      query = model.all().filter(whereStr);
+      if (whereStr.contains(":fromDateTime")) {
+        query.bind("fromDateTime", fromDateTime);
       }
     }
     return query;
   }
 
-  private CSVInput writeCSVData(
-      MetaModel metaModel,
-      CSVWriter csvWriter,
+  /**
+   * Write the rows of a model in its csv file, by pages following the id. The persistence context
+   * is cleared after each page, so the memory used does not grow with the count of rows.
+   *
+   * @return the writer of the csv file, or null if the model has no row to export
+   */
+  private Writer writeCSVData(
+      ModelExport export,
       Integer fetchLimit,
-      long totalRecord,
-      List<String> subClasses,
-      String dirPath) {
-    CSVInput csvInput = new CSVInput();
-    boolean headerFlag = true;
+      LocalDateTime fromDateTime,
+      String dirPath,
+      CsvTarget target)
+      throws ClassNotFoundException, IOException {
+    CSVInput csvInput = export.csvInput;
+    Writer writer = null;
+    CSVWriter csvWriter = null;
     List<String> dataArr = null;
-    List<String> headerArr = new ArrayList<>();
     List<Model> dataList = null;
 
-    try {
-      Mapper metaModelMapper = Mapper.of(Class.forName(metaModel.getFullName()));
-      Property[] pro = metaModelMapper.getProperties();
-
-      csvInput.setFileName(metaModel.getName() + ".csv");
-      csvInput.setTypeName(metaModel.getFullName());
-      csvInput.setBindings(new ArrayList<>());
-
-      for (int i = 0; i < totalRecord; i = i + fetchLimit) {
-
-        dataList = getMetaModelDataList(metaModel, i, fetchLimit, subClasses);
-
-        if (dataList != null && dataList.size() > 0) {
-          for (Object dataObject : dataList) {
-            dataArr = new ArrayList<>();
-
-            for (Property property : pro) {
-              if (isPropertyExportable(property)) {
-                if (headerFlag) {
-                  String headerStr = getMetaModelHeader(dataObject, property, csvInput);
-                  headerArr.add(headerStr);
-                }
-                dataArr.add(
-                    getMetaModelData(
-                        metaModel.getName(),
-                        metaModelMapper.get(dataObject, "id").toString(),
-                        property,
-                        metaModelMapper.get(dataObject, property.getName()),
-                        dirPath));
-              }
-            }
-
-            if (headerFlag) {
-              if (byteArrFieldFlag) {
-                csvInput.setCallable(
-                    "com.axelor.apps.base.service.app.DataBackupRestoreService:importObjectWithByteArray");
-                byteArrFieldFlag = false;
-              }
-              csvWriter.writeNext(headerArr.toArray(new String[headerArr.size()]), true);
-              headerFlag = false;
-            }
-            csvWriter.writeNext(dataArr.toArray(new String[dataArr.size()]), true);
-          }
+    Class<?> klass = Class.forName(export.fullName);
+    Mapper metaModelMapper = Mapper.of(klass);
+
+    // Exportable properties are computed once for the model instead of for each row.
+    List<Property> propertyList = new ArrayList<>();
+    for (Property property : metaModelMapper.getProperties()) {
+      if (isPropertyExportable(property)) {
+        propertyList.add(property);
+      }
+    }
+
+    csvInput.setFileName(export.getFileName());
+    csvInput.setTypeName(export.fullName);
+    csvInput.setBindings(new ArrayList<>());
+
+    long lastId = 0L;
+
+    while (!(dataList = getMetaModelDataList(export, lastId, fetchLimit, fromDateTime))
+        .isEmpty()) {
+
+      if (csvWriter == null) {
+        writer = target.open(export.getFileName());
+        csvWriter = new CSVWriter(writer, SEPARATOR, QUOTE_CHAR);
+
+        List<String> headerArr = new ArrayList<>();
+        for (Property property : propertyList) {
+          headerArr.add(getMetaModelHeader(export, property, csvInput));
+        }
+        if (export.byteArrFieldFlag) {
+          csvInput.setCallable(
+              "com.axelor.apps.base.service.app.DataBackupRestoreService:importObjectWithByteArray");
+          export.byteArrFieldFlag = false;
         }
+        csvWriter.writeNext(headerArr.toArray(new String[headerArr.size()]), true);
+        export.exported = true;
       }
-      if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
-        csvInput.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
-      } else if (Class.forName(metaModel.getFullName()).getSuperclass() == App.class) {
-        csvInput.setSearch("self.code = :code");
+
+      for (Model dataObject : dataList) {
+        dataArr = new ArrayList<>();
+        String id = dataObject.getId().toString();
+
+        for (Property property : propertyList) {
+          dataArr.add(getMetaModelData(export, id, property, property.get(dataObject), dirPath));
+        }
+
+        csvWriter.writeNext(dataArr.toArray(new String[dataArr.size()]), true);
       }
-    } catch (ClassNotFoundException e) {
+
+      lastId = dataList.get(dataList.size() - 1).getId();
+      JPA.clear();
     }
-    return csvInput;
+
+    if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
+      csvInput.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
+    } else if (klass.getSuperclass() == App.class) {
+      csvInput.setSearch("self.code = :code");
+    } else if (fromDateTime != null) {
+      csvInput.setSearch("self.importId = :importId");
+    }
+
+    if (csvWriter != null) {
+      csvWriter.flush();
+    }
+    return writer;
   }
 
   private boolean isPropertyExportable(Property property) {
@@ -341,28 +516,28 @@ public class DataBackupCreateService {
   }
 
   /* Get Header For csv File */
-  private String getMetaModelHeader(Object value, Property property, CSVInput csvInput) {
+  private String getMetaModelHeader(ModelExport export, Property property, CSVInput csvInput) {
     String propertyTypeStr = property.getType().toString();
     String propertyName = property.getName();
     switch (propertyTypeStr) {
       case "LONG":
         return propertyName.equalsIgnoreCase("id") ? "importId" : propertyName;
       case "BINARY":
-        byteArrFieldFlag = true;
+        export.byteArrFieldFlag = true;
         return "byte_" + propertyName;
       case "ONE_TO_ONE":
       case "MANY_TO_ONE":
-        return getRelationalFieldHeader(property, csvInput, "ONE");
+        return getRelationalFieldHeader(export, property, csvInput, "ONE");
       case "ONE_TO_MANY":
       case "MANY_TO_MANY":
-        return getRelationalFieldHeader(property, csvInput, "MANY");
+        return getRelationalFieldHeader(export, property, csvInput, "MANY");
       default:
         return propertyName;
     }
   }
 
   private String getRelationalFieldHeader(
-      Property property, CSVInput csvInput, String relationship) {
+      ModelExport export, Property property, CSVInput csvInput, String relationship) {
     csvInput.setSearch("self.importId = :importId");
     CSVBind csvBind = new CSVBind();
 
@@ -388,16 +563,16 @@ public class DataBackupCreateService {
       csvBind.setExpression(columnName + ".split('\\\\|') as List");
     }
     csvInput.getBindings().add(csvBind);
-    referenceFlag = true;
+    export.referenceFlag = true;
     if (property.isRequired()) {
-      notNullReferenceFlag = true;
+      export.notNullReferenceFlag = true;
     }
     return columnName;
   }
 
   /* Get Data For csv File */
   private String getMetaModelData(
-      String metaModelName, String id, Property property, Object value, String dirPath) {
+      ModelExport export, String id, Property property, Object value, String dirPath) {
     if (value == null) {
       return "";
     }
@@ -409,12 +584,12 @@ public class DataBackupCreateService {
             ? ((ZonedDateTime) value).toLocalDateTime().toString()
             : value.toString();
       case "BINARY":
-        String fileName = metaModelName + "_" + property.getName() + "_" + id + ".png";
+        String fileName = export.name + "_" + property.getName() + "_" + id + ".png";
 
         try {
           org.apache.commons.io.FileUtils.writeByteArrayToFile(
               new File(dirPath, fileName), (byte[]) value);
-          fileNameList.add(fileName);
+          export.fileNameList.add(fileName);
         } catch (IOException e) {
           e.printStackTrace();
         }
@@ -461,54 +636,57 @@ public class DataBackupCreateService {
     }
   }
 
-  private File generateZIP(String dirPath, List<String> fileNameList) {
+  /**
+   * Generate XML config from the exported models, in the order of the models. The inputs of an
+   * incremental backup all search their rows by import id, so restoring them updates the rows
+   * restored before instead of inserting them again.
+   */
+  private String generateConfig(List<ModelExport> exportList, boolean incremental) {
+    LinkedList<CSVInput> simpleCsvs = new LinkedList<>();
+    LinkedList<CSVInput> refernceCsvs = new LinkedList<>();
+    LinkedList<CSVInput> notNullReferenceCsvs = new LinkedList<>();
 
-    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmSS");
-    String backupZipFileName = "DataBackup_" + LocalDateTime.now().format(formatter) + ".zip";
-    File zipFile = new File(dirPath, backupZipFileName);
-    try {
-      ZipOutputStream out = null;
-      out = new ZipOutputStream(new FileOutputStream(zipFile));
-      for (String fileName : fileNameList) {
-        ZipEntry e = new ZipEntry(fileName);
-        out.putNextEntry(e);
-        File file = new File(dirPath, fileName);
-        BufferedInputStream bin = new BufferedInputStream(new FileInputStream(file));
-        byte[] data;
-        while (bin.available() > 0) {
-          if (bin.available() < BUFFER_SIZE) {
-            data = new byte[bin.available()];
-          } else {
-            data = new byte[BUFFER_SIZE];
+    for (ModelExport export : exportList) {
+      if (!export.exported) {
+        continue;
+      }
+      CSVInput csvInput = export.csvInput;
+
+      if (export.notNullReferenceFlag) {
+        notNullReferenceCsvs.add(csvInput);
+      } else if (export.referenceFlag) {
+        refernceCsvs.add(csvInput);
+
+        CSVInput temcsv = new CSVInput();
+        temcsv.setFileName(csvInput.getFileName());
+        temcsv.setTypeName(csvInput.getTypeName());
+        if (AutoImportModelMap.containsKey(csvInput.getTypeName())) {
+          temcsv.setSearch(AutoImportModelMap.get(csvInput.getTypeName()).toString());
+        }
+        try {
+          if (Class.forName(export.fullName).getSuperclass() == App.class) {
+            temcsv.setSearch("self.code = :code");
           }
-          bin.read(data, 0, data.length);
-          out.write(data, 0, data.length);
+        } catch (ClassNotFoundException e) {
         }
-        bin.close();
-        out.closeEntry();
-        file.delete();
+        if (incremental && temcsv.getSearch() == null) {
+          temcsv.setSearch("self.importId = :importId");
+        }
+        simpleCsvs.add(temcsv);
+      } else {
+        simpleCsvs.add(csvInput);
       }
-      out.close();
-    } catch (IOException e) {
-      TraceBackService.trace(e, "Error From DataBackupCreateService - generateZIP()");
     }
-    return zipFile;
-  }
 
-  /* Generate XML File from CSVConfig */
-  private void generateConfig(String dirPath, CSVConfig csvConfig) {
-    try {
-      File file = new File(dirPath, DataBackupServiceImpl.CONFIG_FILE_NAME);
-      FileWriter fileWriter = new FileWriter(file, true);
-
-      XStream xStream = new XStream();
-      xStream.processAnnotations(CSVConfig.class);
-      xStream.setMode(XStream.NO_REFERENCES);
-      fileWriter.append(xStream.toXML(csvConfig));
+    CSVConfig csvConfig = new CSVConfig();
+    csvConfig.setInputs(simpleCsvs);
+    csvConfig.getInputs().addAll(notNullReferenceCsvs);
+    csvConfig.getInputs().addAll(refernceCsvs);
+    csvConfig.getInputs().addAll(notNullReferenceCsvs);
 
-      fileWriter.close();
-    } catch (IOException e) {
-      TraceBackService.trace(e, "Error From DataBackupCreateService - generateConfig()");
-    }
+    XStream xStream = new XStream();
+    xStream.processAnnotations(CSVConfig.class);
+    xStream.setMode(XStream.NO_REFERENCES);
+    return xStream.toXML(csvConfig);
   }
 }
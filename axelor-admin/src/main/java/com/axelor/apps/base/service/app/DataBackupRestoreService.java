@@ -17,17 +17,25 @@
  */
 package com.axelor.apps.base.service.app;
 
+import com.axelor.auth.AuditableRunner;
+import com.axelor.common.ObjectUtils;
 import com.axelor.common.StringUtils;
 import com.axelor.data.Listener;
+import com.axelor.data.csv.CSVConfig;
 import com.axelor.data.csv.CSVImporter;
+import com.axelor.data.csv.CSVInput;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
 import com.axelor.db.mapper.Mapper;
 import com.axelor.exception.service.TraceBackService;
+import com.axelor.inject.Beans;
 import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaFile;
 import com.google.common.base.Strings;
 import com.google.common.io.Files;
+import com.google.inject.persist.UnitOfWork;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -37,7 +45,15 @@ import java.io.PrintWriter;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import org.apache.commons.io.FileUtils;
@@ -48,6 +64,21 @@ public class DataBackupRestoreService {
 
   /* Restore the Data using provided zip File and prepare Log File and Return it*/
   public File restore(MetaFile zipedBackupFile) {
+    return restore(zipedBackupFile, 1);
+  }
+
+  /**
+   * Restore the data of a backup zip file, and prepare a log file.
+   *
+   * <p>The first inputs of the backup config do not bind any reference, so they are independent:
+   * with more than one thread, they are split in groups of about the same size imported in
+   * parallel. The inputs binding references are then imported in order.
+   *
+   * @param zipedBackupFile
+   * @param threadCount count of groups imported at the same time
+   * @return the log file, or null if the backup could not be read
+   */
+  public File restore(MetaFile zipedBackupFile, int threadCount) {
     Logger LOG = LoggerFactory.getLogger(getClass());
     File tempDir = Files.createTempDir();
     String dirPath = tempDir.getAbsolutePath();
@@ -57,43 +88,24 @@ public class DataBackupRestoreService {
       String configFName =
           tempDir.getAbsolutePath() + File.separator + DataBackupServiceImpl.CONFIG_FILE_NAME;
 
-      CSVImporter csvImporter = new CSVImporter(configFName, tempDir.getAbsolutePath());
-      csvImporter.addListener(
-          new Listener() {
-            String modelName;
-            StringBuilder sb1 = new StringBuilder();
-
-            @Override
-            public void handle(Model bean, Exception e) {
-              if (e.getMessage() != null && !e.getMessage().equals("null")) {
-                if (bean != null) {
-                  sb1.append(bean.getClass().getSimpleName() + " : \n" + e.getMessage() + "\n\n");
-                } else {
-                  sb1.append(e.getMessage() + "\n\n");
-                }
-              }
-            }
+      List<CSVInput> inputList = CSVConfig.parse(new File(configFName)).getInputs();
 
-            @Override
-            public void imported(Model model) {
-              modelName = model.getClass().getSimpleName();
-            }
+      int independentCount = 0;
+      while (independentCount < inputList.size()
+          && ObjectUtils.isEmpty(inputList.get(independentCount).getBindings())) {
+        independentCount++;
+      }
+
+      if (threadCount > 1 && independentCount > 1) {
+        importInParallel(
+            getInputGroups(inputList.subList(0, independentCount), dirPath, threadCount),
+            dirPath,
+            sb);
+        inputList = inputList.subList(independentCount, inputList.size());
+      }
+
+      sb.append(importInputs(inputList, dirPath));
 
-            @Override
-            public void imported(Integer total, Integer count) {
-              String str = "", strError = "";
-              if (!StringUtils.isBlank(sb1)) {
-                strError = "Errors : \n" + sb1.toString();
-              }
-              str = "Total Records :  {" + total + "} - Success Records :  {" + count + "}  \n";
-              if (total != 0 && count != 0) {
-                sb.append(modelName + " : \n");
-              }
-              sb.append(strError).append(str + "-----------------------------------------\n");
-              sb1.setLength(0);
-            }
-          });
-      csvImporter.run();
       LOG.info("Data Restore Completed");
       FileUtils.cleanDirectory(new File(tempDir.getAbsolutePath()));
       DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmSS");
@@ -107,7 +119,129 @@ public class DataBackupRestoreService {
     } catch (IOException e) {
       TraceBackService.trace(e);
       return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      TraceBackService.trace(e);
+      return null;
+    }
+  }
+
+  /** Split inputs in groups of about the same size of csv files, the largest files first. */
+  protected List<List<CSVInput>> getInputGroups(
+      List<CSVInput> inputList, String dirPath, int groupCount) {
+
+    List<CSVInput> sortedInputList = new ArrayList<>(inputList);
+    sortedInputList.sort(
+        Comparator.comparingLong(
+                (CSVInput input) -> new File(dirPath, input.getFileName()).length())
+            .reversed());
+
+    List<List<CSVInput>> groupList = new ArrayList<>();
+    long[] groupSizes = new long[Math.min(groupCount, sortedInputList.size())];
+    for (int i = 0; i < groupSizes.length; i++) {
+      groupList.add(new ArrayList<>());
     }
+
+    for (CSVInput input : sortedInputList) {
+      int smallest = 0;
+      for (int i = 1; i < groupSizes.length; i++) {
+        if (groupSizes[i] < groupSizes[smallest]) {
+          smallest = i;
+        }
+      }
+      groupList.get(smallest).add(input);
+      groupSizes[smallest] += new File(dirPath, input.getFileName()).length();
+    }
+
+    return groupList;
+  }
+
+  protected void importInParallel(List<List<CSVInput>> groupList, String dirPath, StringBuilder sb)
+      throws InterruptedException {
+
+    ExecutorService executor = Executors.newFixedThreadPool(groupList.size());
+    List<Future<String>> futureList = new ArrayList<>();
+
+    try {
+      for (List<CSVInput> group : groupList) {
+        futureList.add(
+            executor.submit(
+                () -> {
+                  RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+                  UnitOfWork unitOfWork = Beans.get(UnitOfWork.class);
+                  try (RequestScoper.CloseableScope ignored = scope.open()) {
+                    unitOfWork.begin();
+                    try {
+                      return Beans.get(AuditableRunner.class)
+                          .run(() -> importInputs(group, dirPath));
+                    } finally {
+                      unitOfWork.end();
+                    }
+                  }
+                }));
+      }
+
+      for (Future<String> future : futureList) {
+        try {
+          sb.append(future.get());
+        } catch (ExecutionException e) {
+          TraceBackService.trace(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /* Import the given inputs of the backup config and return their log */
+  protected String importInputs(List<CSVInput> inputList, String dirPath) {
+    StringBuilder sb = new StringBuilder();
+    if (inputList.isEmpty()) {
+      return "";
+    }
+
+    CSVConfig csvConfig = new CSVConfig();
+    csvConfig.setInputs(new ArrayList<>(inputList));
+
+    CSVImporter csvImporter = new CSVImporter(csvConfig, dirPath);
+    csvImporter.addListener(
+        new Listener() {
+          String modelName;
+          StringBuilder sb1 = new StringBuilder();
+
+          @Override
+          public void handle(Model bean, Exception e) {
+            if (e.getMessage() != null && !e.getMessage().equals("null")) {
+              if (bean != null) {
+                sb1.append(bean.getClass().getSimpleName() + " : \n" + e.getMessage() + "\n\n");
+              } else {
+                sb1.append(e.getMessage() + "\n\n");
+              }
+            }
+          }
+
+          @Override
+          public void imported(Model model) {
+            modelName = model.getClass().getSimpleName();
+          }
+
+          @Override
+          public void imported(Integer total, Integer count) {
+            String str = "", strError = "";
+            if (!StringUtils.isBlank(sb1)) {
+              strError = "Errors : \n" + sb1.toString();
+            }
+            str = "Total Records :  {" + total + "} - Success Records :  {" + count + "}  \n";
+            if (total != 0 && count != 0) {
+              sb.append(modelName + " : \n");
+            }
+            sb.append(strError).append(str + "-----------------------------------------\n");
+            sb1.setLength(0);
+          }
+        });
+    csvImporter.run();
+
+    return sb.toString();
   }
 
   private boolean unZip(MetaFile zipMetaFile, String destinationDirectoryPath) throws IOException {
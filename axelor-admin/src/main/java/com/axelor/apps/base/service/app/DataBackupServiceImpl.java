@@ -17,6 +17,7 @@
  */
 package com.axelor.apps.base.service.app;
 
+import com.axelor.app.AppSettings;
 import com.axelor.apps.base.db.DataBackup;
 import com.axelor.apps.base.db.repo.DataBackupRepository;
 import com.axelor.auth.AuditableRunner;
@@ -29,6 +30,7 @@ import com.google.inject.persist.Transactional;
 import com.google.inject.servlet.RequestScoper;
 import com.google.inject.servlet.ServletScopes;
 import java.io.File;
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -40,6 +42,11 @@ public class DataBackupServiceImpl implements DataBackupService {
 
   static final String CONFIG_FILE_NAME = "config.xml";
 
+  protected static final String POOL_SIZE_SETTING = "hibernate.hikari.maximumPoolSize";
+
+  /** Size of the connection pool when it is not set in the application settings. */
+  protected static final int DEFAULT_POOL_SIZE = 20;
+
   @Inject private DataBackupCreateService createService;
 
   @Inject private DataBackupRestoreService restoreService;
@@ -83,7 +90,12 @@ public class DataBackupServiceImpl implements DataBackupService {
           public Boolean call() throws Exception {
             Logger LOG = LoggerFactory.getLogger(getClass());
             DataBackup obj = Beans.get(DataBackupRepository.class).find(dataBackup.getId());
-            File backupFile = createService.create(obj.getFetchLimit());
+            LocalDateTime fromDateTime =
+                obj.getFromDataBackup() != null ? obj.getFromDataBackup().getBackupDate() : null;
+            File backupFile =
+                createService.create(obj.getFetchLimit(), getThreadCount(obj), fromDateTime);
+            // The persistence context is cleared while exporting.
+            obj = Beans.get(DataBackupRepository.class).find(dataBackup.getId());
             obj.setBackupMetaFile(metaFiles.upload(backupFile));
             obj.setStatusSelect(DataBackupRepository.DATA_BACKUP_STATUS_CREATED);
             Beans.get(DataBackupRepository.class).save(obj);
@@ -123,7 +135,8 @@ public class DataBackupServiceImpl implements DataBackupService {
           public Boolean call() throws Exception {
             Logger LOG = LoggerFactory.getLogger(getClass());
             DataBackup obj = Beans.get(DataBackupRepository.class).find(dataBackup.getId());
-            File logFile = restoreService.restore(obj.getBackupMetaFile());
+            File logFile =
+                restoreService.restore(obj.getBackupMetaFile(), getThreadCount(obj));
             save(logFile, obj);
             LOG.info("Data Restore Saved");
             return true;
@@ -149,6 +162,19 @@ public class DataBackupServiceImpl implements DataBackupService {
     runner.run(job);
   }
 
+  /**
+   * Each thread holds a database connection, and the backup itself another one, so the count of
+   * threads is limited by the size of the connection pool.
+   */
+  protected int getThreadCount(DataBackup dataBackup) {
+    Integer threadCount = dataBackup.getThreadCount();
+    if (threadCount == null || threadCount <= 1) {
+      return 1;
+    }
+    int poolSize = AppSettings.get().getInt(POOL_SIZE_SETTING, DEFAULT_POOL_SIZE);
+    return Math.max(1, Math.min(threadCount, poolSize - 1));
+  }
+
   public boolean SeuencesExist() {
     return restoreService.SeuencesExist();
   }
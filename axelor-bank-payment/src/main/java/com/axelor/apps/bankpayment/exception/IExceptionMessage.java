@@ -194,6 +194,10 @@ public interface IExceptionMessage {
   String BATCH_BANK_STATEMENT_RETRIEVED_BANK_STATEMENT_COUNT = /*$$(*/
       "Number of retrieved bank statements: %d." /*)*/;
 
+  /** Bank reconciliation */
+  static final String BANK_RECONCILIATION_AUTO_MATCH = /*$$(*/
+      "%d statement lines matched with move lines." /*)*/;
+
   /** BankStatement import */
   static final String BANK_STATEMENT_FILE_UNKNOWN_FORMAT = /*$$(*/
       "Unknown format for file import process" /*)*/;
@@ -0,0 +1,492 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankreconciliation;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory matching of bank statement lines with the unreconciled move lines of a cash account.
+ *
+ * <p>Move lines are indexed by side and amount, then by date in a sorted map, by side and date,
+ * and by side, amount and reference token. All the statement lines are then matched by three
+ * successive rules:
+ *
+ * <ol>
+ *   <li>same amount and a common reference token, the closest move line by date is chosen;
+ *   <li>same amount within the date tolerance, when a single move line is the closest by date;
+ *   <li>sum of two or more move lines within the date tolerance equal to the amount, when no other
+ *       sum is found.
+ * </ol>
+ *
+ * A move line is used by at most one match. Statement lines without match are left for a manual
+ * reconciliation.
+ */
+public class BankReconciliationMatcher {
+
+  public static final int DEFAULT_DATE_TOLERANCE = 5;
+
+  public static final int DEFAULT_MAX_SUM_LINES = 3;
+
+  /** Scale of the amounts compared by the matcher, amounts are stored with two decimals. */
+  protected static final int AMOUNT_SCALE = 6;
+
+  /** Tokens shorter than this are too common to identify a payment. */
+  protected static final int MIN_TOKEN_LENGTH = 4;
+
+  /** Move lines combined by three or more by the sum rule, the closest ones by date. */
+  protected static final int MAX_SUM_CANDIDATES = 20;
+
+  public enum Rule {
+    REFERENCE,
+    DATE,
+    SUM
+  }
+
+  /** Unreconciled part of a move line. */
+  public static class Candidate {
+
+    private final Long moveLineId;
+    private final LocalDate date;
+    private final BigDecimal amount;
+    private final long units;
+    private final boolean bankDebit;
+    private final Set<String> tokens;
+    private boolean used;
+
+    /**
+     * @param moveLineId
+     * @param date
+     * @param amount amount remaining to reconcile
+     * @param bankDebit whether the move line is matched by a debit of the bank statement, which is
+     *     the case of a credit move line
+     * @param texts name, origin, description... of the move line
+     */
+    public Candidate(
+        Long moveLineId, LocalDate date, BigDecimal amount, boolean bankDebit, String... texts) {
+      this.moveLineId = moveLineId;
+      this.date = date;
+      this.amount = amount;
+      this.units = toUnits(amount);
+      this.bankDebit = bankDebit;
+      this.tokens = tokenize(texts);
+    }
+
+    public Long getMoveLineId() {
+      return moveLineId;
+    }
+
+    public LocalDate getDate() {
+      return date;
+    }
+
+    public BigDecimal getAmount() {
+      return amount;
+    }
+  }
+
+  /** Bank statement line to match. */
+  public static class StatementItem {
+
+    private final Object key;
+    private final LocalDate date;
+    private final long units;
+    private final boolean debit;
+    private final Set<String> tokens;
+
+    /**
+     * @param key identifier of the statement line for the caller
+     * @param date
+     * @param amount
+     * @param debit whether the statement line is a debit
+     * @param texts reference, name... of the statement line
+     */
+    public StatementItem(
+        Object key, LocalDate date, BigDecimal amount, boolean debit, String... texts) {
+      this.key = key;
+      this.date = date;
+      this.units = toUnits(amount);
+      this.debit = debit;
+      this.tokens = tokenize(texts);
+    }
+
+    public Object getKey() {
+      return key;
+    }
+
+    public boolean isDebit() {
+      return debit;
+    }
+  }
+
+  /** Move lines matched with a statement line, their amounts sum to the statement amount. */
+  public static class Match {
+
+    private final StatementItem item;
+    private final List<Candidate> candidates;
+    private final Rule rule;
+
+    Match(StatementItem item, List<Candidate> candidates, Rule rule) {
+      this.item = item;
+      this.candidates = candidates;
+      this.rule = rule;
+    }
+
+    public StatementItem getItem() {
+      return item;
+    }
+
+    public List<Candidate> getCandidates() {
+      return candidates;
+    }
+
+    public Rule getRule() {
+      return rule;
+    }
+  }
+
+  private final int dateTolerance;
+
+  private final int maxSumLines;
+
+  private final Map<Boolean, Map<Long, NavigableMap<LocalDate, List<Candidate>>>> amountIndex =
+      new HashMap<>();
+
+  private final Map<String, List<Candidate>> referenceIndex = new HashMap<>();
+
+  private final Map<Boolean, NavigableMap<LocalDate, List<Candidate>>> dateIndex =
+      new HashMap<>();
+
+  private int candidateCount;
+
+  public BankReconciliationMatcher() {
+    this(DEFAULT_DATE_TOLERANCE, DEFAULT_MAX_SUM_LINES);
+  }
+
+  /**
+   * @param dateTolerance maximum number of days between a statement line and its move lines for
+   *     the date and sum rules
+   * @param maxSumLines maximum number of move lines summed by the sum rule, the rule is disabled
+   *     below 2
+   */
+  public BankReconciliationMatcher(int dateTolerance, int maxSumLines) {
+    this.dateTolerance = Math.max(dateTolerance, 0);
+    this.maxSumLines = maxSumLines;
+  }
+
+  public void addCandidate(Candidate candidate) {
+    if (candidate.units <= 0 || candidate.date == null) {
+      return;
+    }
+
+    amountIndex
+        .computeIfAbsent(candidate.bankDebit, side -> new HashMap<>())
+        .computeIfAbsent(candidate.units, units -> new TreeMap<>())
+        .computeIfAbsent(candidate.date, date -> new ArrayList<>())
+        .add(candidate);
+    for (String token : candidate.tokens) {
+      referenceIndex
+          .computeIfAbsent(
+              referenceKey(candidate.bankDebit, candidate.units, token), key -> new ArrayList<>())
+          .add(candidate);
+    }
+    dateIndex
+        .computeIfAbsent(candidate.bankDebit, side -> new TreeMap<>())
+        .computeIfAbsent(candidate.date, date -> new ArrayList<>())
+        .add(candidate);
+    candidateCount++;
+  }
+
+  public int getCandidateCount() {
+    return candidateCount;
+  }
+
+  /**
+   * Match the statement lines, each rule being applied to all the lines left by the previous one.
+   *
+   * @param items
+   * @return the matches, in the order of the statement lines
+   */
+  public List<Match> match(List<StatementItem> items) {
+    Map<StatementItem, Match> matchMap = new HashMap<>();
+    List<StatementItem> remainingItems = new ArrayList<>();
+    for (StatementItem item : items) {
+      if (item.units > 0 && item.date != null) {
+        remainingItems.add(item);
+      }
+    }
+
+    remainingItems = applyRule(remainingItems, matchMap, Rule.REFERENCE);
+    remainingItems = applyRule(remainingItems, matchMap, Rule.DATE);
+    if (maxSumLines >= 2) {
+      applyRule(remainingItems, matchMap, Rule.SUM);
+    }
+
+    List<Match> matchList = new ArrayList<>();
+    for (StatementItem item : items) {
+      Match match = matchMap.get(item);
+      if (match != null) {
+        matchList.add(match);
+      }
+    }
+    return matchList;
+  }
+
+  protected List<StatementItem> applyRule(
+      List<StatementItem> items, Map<StatementItem, Match> matchMap, Rule rule) {
+
+    List<StatementItem> remainingItems = new ArrayList<>();
+    for (StatementItem item : items) {
+      List<Candidate> candidates;
+      switch (rule) {
+        case REFERENCE:
+          candidates = matchByReference(item);
+          break;
+        case DATE:
+          candidates = matchByDate(item);
+          break;
+        default:
+          candidates = matchBySum(item);
+      }
+
+      if (candidates == null) {
+        remainingItems.add(item);
+        continue;
+      }
+
+      for (Candidate candidate : candidates) {
+        candidate.used = true;
+      }
+      matchMap.put(item, new Match(item, candidates, rule));
+    }
+    return remainingItems;
+  }
+
+  protected List<Candidate> matchByReference(StatementItem item) {
+    Candidate best = null;
+    for (String token : item.tokens) {
+      for (Candidate candidate :
+          referenceIndex.getOrDefault(
+              referenceKey(item.debit, item.units, token), Collections.emptyList())) {
+        if (!candidate.used && isCloser(item, candidate, best)) {
+          best = candidate;
+        }
+      }
+    }
+    return best == null ? null : Collections.singletonList(best);
+  }
+
+  protected List<Candidate> matchByDate(StatementItem item) {
+    NavigableMap<LocalDate, List<Candidate>> dateMap =
+        amountIndex.getOrDefault(item.debit, Collections.emptyMap()).get(item.units);
+    if (dateMap == null) {
+      return null;
+    }
+
+    // The window is ordered by distance, the first move line is the closest one.
+    Candidate best = null;
+    for (Candidate candidate : window(dateMap, item.date)) {
+      if (candidate.used) {
+        continue;
+      }
+      if (best == null) {
+        best = candidate;
+      } else if (distance(item, candidate) == distance(item, best)) {
+        // Between equally close move lines of the same amount, the choice is left to the user.
+        return null;
+      } else {
+        break;
+      }
+    }
+    return best == null ? null : Collections.singletonList(best);
+  }
+
+  protected List<Candidate> matchBySum(StatementItem item) {
+    NavigableMap<LocalDate, List<Candidate>> dateMap = dateIndex.get(item.debit);
+    if (dateMap == null) {
+      return null;
+    }
+
+    List<Candidate> candidates = new ArrayList<>();
+    for (Candidate candidate : window(dateMap, item.date)) {
+      if (!candidate.used && candidate.units < item.units) {
+        candidates.add(candidate);
+      }
+    }
+    if (candidates.size() < 2) {
+      return null;
+    }
+
+    // As for the date rule, a sum is only proposed when no other one is found.
+    List<List<Candidate>> solutions = new ArrayList<>();
+    findPairs(item, candidates, solutions);
+
+    if (solutions.isEmpty() && maxSumLines > 2) {
+      if (candidates.size() > MAX_SUM_CANDIDATES) {
+        candidates = new ArrayList<>(candidates.subList(0, MAX_SUM_CANDIDATES));
+      }
+      // Largest amounts first, so that partial sums exceeding the amount are pruned early.
+      candidates.sort(
+          Comparator.comparingLong((Candidate candidate) -> candidate.units).reversed());
+      findSums(candidates, 0, item.units, new ArrayList<>(), solutions);
+    }
+
+    return solutions.size() == 1 ? solutions.get(0) : null;
+  }
+
+  /**
+   * Find the pairs of move lines summing to the amount, the other move line of a pair being looked
+   * up in the amount index. The search stops at the second pair found.
+   */
+  protected void findPairs(
+      StatementItem item, List<Candidate> candidates, List<List<Candidate>> solutions) {
+    Map<Long, NavigableMap<LocalDate, List<Candidate>>> unitsMap = amountIndex.get(item.debit);
+
+    for (Candidate candidate : candidates) {
+      NavigableMap<LocalDate, List<Candidate>> dateMap = unitsMap.get(item.units - candidate.units);
+      if (dateMap == null) {
+        continue;
+      }
+      for (Candidate other : window(dateMap, item.date)) {
+        // Each pair is found from both move lines, it is only kept from the first one.
+        if (!other.used && candidate.moveLineId < other.moveLineId) {
+          solutions.add(Arrays.asList(candidate, other));
+          if (solutions.size() > 1) {
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Find the combinations of three to {@link #maxSumLines} move lines summing to the remaining
+   * amount. The search stops at the second combination found.
+   */
+  protected void findSums(
+      List<Candidate> candidates,
+      int start,
+      long remaining,
+      List<Candidate> selection,
+      List<List<Candidate>> solutions) {
+
+    for (int i = start; i < candidates.size() && solutions.size() < 2; i++) {
+      Candidate candidate = candidates.get(i);
+      if (candidate.units > remaining) {
+        continue;
+      }
+
+      selection.add(candidate);
+      if (candidate.units == remaining) {
+        if (selection.size() > 2) {
+          solutions.add(new ArrayList<>(selection));
+        }
+      } else if (selection.size() < maxSumLines) {
+        findSums(candidates, i + 1, remaining - candidate.units, selection, solutions);
+      }
+      selection.remove(selection.size() - 1);
+    }
+  }
+
+  /**
+   * Get the move lines within the date tolerance, the closest ones by date first.
+   *
+   * @param dateMap
+   * @param date
+   * @return
+   */
+  protected List<Candidate> window(
+      NavigableMap<LocalDate, List<Candidate>> dateMap, LocalDate date) {
+    List<Candidate> candidates = new ArrayList<>();
+    addAll(candidates, dateMap.get(date));
+    for (int days = 1; days <= dateTolerance; days++) {
+      addAll(candidates, dateMap.get(date.minusDays(days)));
+      addAll(candidates, dateMap.get(date.plusDays(days)));
+    }
+    return candidates;
+  }
+
+  private static void addAll(List<Candidate> candidates, List<Candidate> candidateList) {
+    if (candidateList != null) {
+      candidates.addAll(candidateList);
+    }
+  }
+
+  protected boolean isCloser(StatementItem item, Candidate candidate, Candidate best) {
+    if (best == null) {
+      return true;
+    }
+    long distance = distance(item, candidate);
+    long bestDistance = distance(item, best);
+    return distance < bestDistance
+        || distance == bestDistance && candidate.moveLineId < best.moveLineId;
+  }
+
+  protected static long distance(StatementItem item, Candidate candidate) {
+    return Math.abs(ChronoUnit.DAYS.between(item.date, candidate.date));
+  }
+
+  protected static long toUnits(BigDecimal amount) {
+    return amount == null
+        ? 0
+        : amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValue();
+  }
+
+  protected static String referenceKey(boolean bankDebit, long units, String token) {
+    return (bankDebit ? "D" : "C") + units + '|' + token;
+  }
+
+  /**
+   * Split texts into upper case alphanumeric tokens.
+   *
+   * @param texts
+   * @return the tokens of at least {@link #MIN_TOKEN_LENGTH} characters
+   */
+  protected static Set<String> tokenize(String... texts) {
+    Set<String> tokens = new LinkedHashSet<>();
+    for (String text : texts) {
+      if (text == null) {
+        continue;
+      }
+      int start = 0;
+      for (int i = 0; i <= text.length(); i++) {
+        if (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+          continue;
+        }
+        if (i - start >= MIN_TOKEN_LENGTH) {
+          tokens.add(text.substring(start, i).toUpperCase());
+        }
+        start = i + 1;
+      }
+    }
+    return tokens;
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankreconciliation;
+
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.bankpayment.db.BankPaymentConfig;
+import com.axelor.apps.bankpayment.db.BankReconciliation;
+import com.axelor.apps.bankpayment.db.BankReconciliationLine;
+import com.axelor.apps.bankpayment.db.repo.BankReconciliationRepository;
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMatcher.Candidate;
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMatcher.Match;
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMatcher.StatementItem;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * Automatic matching of the lines of a bank reconciliation with the unreconciled move lines of its
+ * cash account.
+ *
+ * <p>Matches are proposed by setting the move line of the statement lines, they are applied by
+ * the validation of the bank reconciliation, once checked by the user.
+ */
+public class BankReconciliationMatchingService {
+
+  protected static final int FETCH_SIZE = 1000;
+
+  protected BankReconciliationRepository bankReconciliationRepository;
+  protected BankReconciliationLineService bankReconciliationLineService;
+
+  @Inject
+  public BankReconciliationMatchingService(
+      BankReconciliationRepository bankReconciliationRepository,
+      BankReconciliationLineService bankReconciliationLineService) {
+
+    this.bankReconciliationRepository = bankReconciliationRepository;
+    this.bankReconciliationLineService = bankReconciliationLineService;
+  }
+
+  /**
+   * Match the statement lines of the bank reconciliation which are neither posted nor linked to a
+   * move line or an account.
+   *
+   * @param bankReconciliation
+   * @return the number of matched statement lines
+   */
+  @Transactional
+  public int match(BankReconciliation bankReconciliation) {
+
+    List<StatementItem> items = new ArrayList<>();
+    for (BankReconciliationLine bankReconciliationLine :
+        bankReconciliation.getBankReconciliationLineList()) {
+      if (bankReconciliationLine.getIsPosted()
+          || bankReconciliationLine.getMoveLine() != null
+          || bankReconciliationLine.getAccount() != null) {
+        continue;
+      }
+      boolean debit = bankReconciliationLine.getDebit().signum() > 0;
+      items.add(
+          new StatementItem(
+              bankReconciliationLine,
+              bankReconciliationLine.getEffectDate(),
+              debit ? bankReconciliationLine.getDebit() : bankReconciliationLine.getCredit(),
+              debit,
+              bankReconciliationLine.getReference(),
+              bankReconciliationLine.getName()));
+    }
+
+    if (items.isEmpty() || bankReconciliation.getCashAccount() == null) {
+      return 0;
+    }
+
+    BankReconciliationMatcher matcher = createMatcher(bankReconciliation);
+    loadCandidates(bankReconciliation, matcher);
+
+    List<Match> matchList = matcher.match(items);
+    for (Match match : matchList) {
+      apply(bankReconciliation, match);
+    }
+
+    bankReconciliationRepository.save(bankReconciliation);
+
+    return matchList.size();
+  }
+
+  protected BankReconciliationMatcher createMatcher(BankReconciliation bankReconciliation) {
+    BankPaymentConfig bankPaymentConfig =
+        bankReconciliation.getCompany() == null
+            ? null
+            : bankReconciliation.getCompany().getBankPaymentConfig();
+
+    if (bankPaymentConfig == null) {
+      return new BankReconciliationMatcher();
+    }
+    return new BankReconciliationMatcher(
+        bankPaymentConfig.getReconciliationDateTolerance(),
+        bankPaymentConfig.getReconciliationMaxSumLines());
+  }
+
+  /**
+   * Add the unreconciled move lines of the cash account to the matcher, read with a single query.
+   * Move lines already selected on a statement line which is not posted yet are left out.
+   */
+  protected void loadCandidates(
+      BankReconciliation bankReconciliation, BankReconciliationMatcher matcher) {
+
+    StringBuilder queryStr =
+        new StringBuilder(
+            "SELECT self.id, self.date, self.debit, self.credit, self.bankReconciledAmount, "
+                + "self.name, self.origin, self.description FROM MoveLine self "
+                + "WHERE self.account.id = :cashAccount "
+                + "AND self.move.statusSelect != :statusCanceled "
+                + "AND ((self.debit > 0 AND self.bankReconciledAmount < self.debit) "
+                + "OR (self.credit > 0 AND self.bankReconciledAmount < self.credit)) "
+                + "AND self.id NOT IN (SELECT line.moveLine.id FROM BankReconciliationLine line "
+                + "WHERE line.isPosted = false AND line.moveLine IS NOT NULL)");
+    if (bankReconciliation.getJournal() != null) {
+      queryStr.append(" AND self.move.journal.id = :journal");
+    }
+
+    org.hibernate.query.Query<?> query =
+        JPA.em().unwrap(Session.class).createQuery(queryStr.toString());
+    query.setParameter("cashAccount", bankReconciliation.getCashAccount().getId());
+    query.setParameter("statusCanceled", MoveRepository.STATUS_CANCELED);
+    if (bankReconciliation.getJournal() != null) {
+      query.setParameter("journal", bankReconciliation.getJournal().getId());
+    }
+
+    ScrollableResults results =
+        query.setFetchSize(FETCH_SIZE).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY);
+
+    try {
+      while (results.next()) {
+        Object[] row = results.get();
+        BigDecimal debit = (BigDecimal) row[2];
+        BigDecimal credit = (BigDecimal) row[3];
+        BigDecimal bankReconciledAmount = (BigDecimal) row[4];
+        boolean bankDebit = credit.signum() > 0;
+        matcher.addCandidate(
+            new Candidate(
+                (Long) row[0],
+                (LocalDate) row[1],
+                (bankDebit ? credit : debit).subtract(bankReconciledAmount),
+                bankDebit,
+                (String) row[5],
+                (String) row[6],
+                (String) row[7]));
+      }
+    } finally {
+      results.close();
+    }
+  }
+
+  /**
+   * Link the statement line to the matched move lines. A statement line matched with several move
+   * lines is split, as by the multiple reconcile wizard.
+   */
+  protected void apply(BankReconciliation bankReconciliation, Match match) {
+    BankReconciliationLine bankReconciliationLine =
+        (BankReconciliationLine) match.getItem().getKey();
+    boolean debit = match.getItem().isDebit();
+    boolean firstLine = true;
+
+    for (Candidate candidate : match.getCandidates()) {
+      MoveLine moveLine = JPA.em().getReference(MoveLine.class, candidate.getMoveLineId());
+      BigDecimal debitAmount = debit ? candidate.getAmount() : BigDecimal.ZERO;
+      BigDecimal creditAmount = debit ? BigDecimal.ZERO : candidate.getAmount();
+
+      if (firstLine) {
+        bankReconciliationLine.setDebit(debitAmount);
+        bankReconciliationLine.setCredit(creditAmount);
+        bankReconciliationLine.setMoveLine(moveLine);
+        firstLine = false;
+      } else {
+        bankReconciliation.addBankReconciliationLineListItem(
+            bankReconciliationLineService.createBankReconciliationLine(
+                bankReconciliationLine.getEffectDate(),
+                debitAmount,
+                creditAmount,
+                bankReconciliationLine.getName(),
+                bankReconciliationLine.getReference(),
+                bankReconciliationLine.getBankStatementLine(),
+                moveLine));
+      }
+    }
+  }
+}
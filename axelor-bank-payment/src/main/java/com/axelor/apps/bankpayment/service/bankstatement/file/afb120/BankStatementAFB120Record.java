@@ -0,0 +1,206 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.service.bankstatement.file.afb120;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Record of an AFB120 file, read before its bank statement line is created. Reference data are
+ * kept as codes, they are resolved when the line is created.
+ */
+public class BankStatementAFB120Record {
+
+  private int lineType;
+  private int sequence;
+  private String bankCode;
+  private String sortCode;
+  private String accountNumber;
+  private String currencyCode;
+  private String operationInterbankCode;
+  private String rejectInterbankCode;
+  private LocalDate operationDate;
+  private LocalDate valueDate;
+  private String description;
+  private String additionalInformation;
+  private String origin;
+  private String reference;
+  private BigDecimal debit = BigDecimal.ZERO;
+  private BigDecimal credit = BigDecimal.ZERO;
+  private String unavailabilityIndexSelect;
+  private String commissionExemptionIndexSelect;
+
+  public BankStatementAFB120Record(int lineType) {
+    this.lineType = lineType;
+  }
+
+  public int getLineType() {
+    return lineType;
+  }
+
+  public int getSequence() {
+    return sequence;
+  }
+
+  public void setSequence(int sequence) {
+    this.sequence = sequence;
+  }
+
+  public String getBankCode() {
+    return bankCode;
+  }
+
+  public void setBankCode(String bankCode) {
+    this.bankCode = bankCode;
+  }
+
+  public String getSortCode() {
+    return sortCode;
+  }
+
+  public void setSortCode(String sortCode) {
+    this.sortCode = sortCode;
+  }
+
+  public String getAccountNumber() {
+    return accountNumber;
+  }
+
+  public void setAccountNumber(String accountNumber) {
+    this.accountNumber = accountNumber;
+  }
+
+  public String getCurrencyCode() {
+    return currencyCode;
+  }
+
+  public void setCurrencyCode(String currencyCode) {
+    this.currencyCode = currencyCode;
+  }
+
+  public String getOperationInterbankCode() {
+    return operationInterbankCode;
+  }
+
+  public void setOperationInterbankCode(String operationInterbankCode) {
+    this.operationInterbankCode = operationInterbankCode;
+  }
+
+  public String getRejectInterbankCode() {
+    return rejectInterbankCode;
+  }
+
+  public void setRejectInterbankCode(String rejectInterbankCode) {
+    this.rejectInterbankCode = rejectInterbankCode;
+  }
+
+  public LocalDate getOperationDate() {
+    return operationDate;
+  }
+
+  public void setOperationDate(LocalDate operationDate) {
+    this.operationDate = operationDate;
+  }
+
+  public LocalDate getValueDate() {
+    return valueDate;
+  }
+
+  public void setValueDate(LocalDate valueDate) {
+    this.valueDate = valueDate;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription(String description) {
+    this.description = description;
+  }
+
+  public String getAdditionalInformation() {
+    return additionalInformation;
+  }
+
+  /**
+   * Add the information of a complement record, on a new line.
+   *
+   * @param additionalInformation
+   */
+  public void addAdditionalInformation(String additionalInformation) {
+    this.additionalInformation =
+        this.additionalInformation == null
+            ? additionalInformation
+            : this.additionalInformation + "\n" + additionalInformation;
+  }
+
+  public String getOrigin() {
+    return origin;
+  }
+
+  public void setOrigin(String origin) {
+    this.origin = origin;
+  }
+
+  public String getReference() {
+    return reference;
+  }
+
+  public void setReference(String reference) {
+    this.reference = reference;
+  }
+
+  public BigDecimal getDebit() {
+    return debit;
+  }
+
+  public BigDecimal getCredit() {
+    return credit;
+  }
+
+  /**
+   * Set the debit or the credit from a signed amount, a positive amount being a credit.
+   *
+   * @param amount
+   */
+  public void setAmount(BigDecimal amount) {
+    if (amount.signum() == 1) {
+      debit = BigDecimal.ZERO;
+      credit = amount.abs();
+    } else {
+      credit = BigDecimal.ZERO;
+      debit = amount.abs();
+    }
+  }
+
+  public String getUnavailabilityIndexSelect() {
+    return unavailabilityIndexSelect;
+  }
+
+  public void setUnavailabilityIndexSelect(String unavailabilityIndexSelect) {
+    this.unavailabilityIndexSelect = unavailabilityIndexSelect;
+  }
+
+  public String getCommissionExemptionIndexSelect() {
+    return commissionExemptionIndexSelect;
+  }
+
+  public void setCommissionExemptionIndexSelect(String commissionExemptionIndexSelect) {
+    this.commissionExemptionIndexSelect = commissionExemptionIndexSelect;
+  }
+}
@@ -21,30 +21,40 @@ import com.axelor.apps.account.db.InterbankCodeLine;
 import com.axelor.apps.account.db.repo.InterbankCodeLineRepository;
 import com.axelor.apps.bankpayment.db.BankStatementLineAFB120;
 import com.axelor.apps.bankpayment.db.repo.BankStatementLineAFB120Repository;
+import com.axelor.apps.bankpayment.service.app.AppBankPaymentService;
 import com.axelor.apps.bankpayment.service.bankstatement.BankStatementService;
 import com.axelor.apps.bankpayment.service.bankstatement.file.BankStatementFileService;
 import com.axelor.apps.bankpayment.service.cfonb.CfonbToolService;
+import com.axelor.apps.base.db.AppBankPayment;
 import com.axelor.apps.base.db.BankDetails;
 import com.axelor.apps.base.db.Currency;
 import com.axelor.apps.base.db.repo.BankDetailsRepository;
 import com.axelor.apps.base.db.repo.CurrencyRepository;
-import com.axelor.apps.tool.file.FileTool;
 import com.axelor.db.JPA;
+import com.axelor.db.Model;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.IException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.inject.Beans;
-import com.beust.jcommander.internal.Lists;
-import com.beust.jcommander.internal.Maps;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,169 +76,273 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
 
   private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("ddMMyy");
 
+  /** Lines created by transaction, unless set in the bank payment application. */
+  protected static final int DEFAULT_BATCH_SIZE = 100;
+
+  protected static final int READER_BUFFER_SIZE = 64 * 1024;
+
+  protected final Map<String, Optional<Long>> currencyIdMap = new HashMap<>();
+  protected final Map<String, Optional<Long>> bankDetailsIdMap = new HashMap<>();
+  protected final Map<String, Optional<Long>> interbankCodeLineIdMap = new HashMap<>();
+
   @Inject
-  public BankStatementFileAFB120Service(BankStatementService bankStatementService) {
+  public BankStatementFileAFB120Service(
+      BankStatementService bankStatementService,
+      CfonbToolService cfonbToolService,
+      CurrencyRepository currencyRepository,
+      BankDetailsRepository bankDetailsRepository,
+      InterbankCodeLineRepository interbankCodeLineRepository,
+      BankStatementLineAFB120Service bankStatementLineAFB120Service,
+      BankStatementLineAFB120Repository bankStatementLineAFB120Repository) {
 
     super(bankStatementService);
 
-    this.cfonbToolService = Beans.get(CfonbToolService.class);
-    this.currencyRepository = Beans.get(CurrencyRepository.class);
-    this.bankDetailsRepository = Beans.get(BankDetailsRepository.class);
-    this.interbankCodeLineRepository = Beans.get(InterbankCodeLineRepository.class);
+    this.cfonbToolService = cfonbToolService;
+    this.currencyRepository = currencyRepository;
+    this.bankDetailsRepository = bankDetailsRepository;
+    this.interbankCodeLineRepository = interbankCodeLineRepository;
 
-    this.bankStatementLineAFB120Service = Beans.get(BankStatementLineAFB120Service.class);
-    this.bankStatementLineAFB120Repository = Beans.get(BankStatementLineAFB120Repository.class);
+    this.bankStatementLineAFB120Service = bankStatementLineAFB120Service;
+    this.bankStatementLineAFB120Repository = bankStatementLineAFB120Repository;
   }
 
+  /**
+   * Import the file in two passes: the records are all read and checked first, so that a malformed
+   * record does not leave a partial statement, then read again to create the lines by batches.
+   */
   @Override
   public void process() throws IOException, AxelorException {
     super.process();
 
-    List<Map<String, Object>> structuredContentFile = readFile();
+    currencyIdMap.clear();
+    bankDetailsIdMap.clear();
+    interbankCodeLineIdMap.clear();
+    findBankStatement();
+
+    readRecords(record -> {});
+
+    int batchSize = getBatchSize();
+    List<BankStatementAFB120Record> records = new ArrayList<>(batchSize);
+
+    try {
+      readRecords(
+          record -> {
+            records.add(record);
+            if (records.size() >= batchSize) {
+              createBankStatementLines(records);
+              records.clear();
+            }
+          });
+
+      if (!records.isEmpty()) {
+        createBankStatementLines(records);
+      }
+    } catch (IOException | AxelorException | RuntimeException e) {
+      // The file could not be read again: the lines already created are removed.
+      deleteBankStatementLines();
+      throw e;
+    }
+  }
+
+  /**
+   * Read the records of the file, the complement records being added to the movement they follow.
+   *
+   * @param consumer called with each record once complete
+   * @throws IOException
+   * @throws AxelorException if a record is malformed
+   */
+  protected void readRecords(Consumer<BankStatementAFB120Record> consumer)
+      throws IOException, AxelorException {
 
     int sequence = 0;
-    findBankStatement();
 
-    for (Map<String, Object> structuredContentLine : structuredContentFile) {
-
-      try {
-        createBankStatementLine(structuredContentLine, sequence++);
-      } catch (Exception e) {
-        TraceBackService.trace(
-            new Exception(String.format("Line %s : %s", sequence, e), e), IException.IMPORT);
-        findBankStatement();
-      } finally {
-        if (sequence % 10 == 0) {
-          JPA.clear();
-          findBankStatement();
+    // A movement record is complete once the next record is read, as it can be followed by
+    // complement records.
+    BankStatementAFB120Record lastRecord = null;
+
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(Files.newInputStream(file.toPath()), Charset.defaultCharset()),
+            READER_BUFFER_SIZE)) {
+
+      String lineContent;
+      while ((lineContent = reader.readLine()) != null) {
+
+        log.debug("Read line : {}", lineContent);
+
+        // Code enregistrement
+        String operationCode =
+            cfonbToolService.readZone(
+                "Record code",
+                lineContent,
+                cfonbToolService.STATUS_MANDATORY,
+                cfonbToolService.FORMAT_NUMERIC,
+                1,
+                2);
+
+        BankStatementAFB120Record record;
+        switch (operationCode) {
+          case PREVIOUS_BALANCE_OPERATION_CODE:
+            record = readPreviousBalanceRecord(lineContent);
+            break;
+          case MOVEMENT_OPERATION_CODE:
+            record = readMovementRecord(lineContent);
+            break;
+          case COMPLEMENT_MOVEMENT_OPERATION_CODE:
+            String additionalInformation = readAdditionalInformation(lineContent);
+            if (lastRecord != null) {
+              lastRecord.addAdditionalInformation(additionalInformation);
+            }
+            continue;
+          case NEW_BALANCE_OPERATION_CODE:
+            record = readNewBalanceRecord(lineContent);
+            break;
+          default:
+            continue;
+        }
+
+        record.setSequence(sequence++);
+        if (lastRecord != null) {
+          consumer.accept(lastRecord);
         }
+        lastRecord = record;
       }
     }
 
-    JPA.clear();
+    if (lastRecord != null) {
+      consumer.accept(lastRecord);
+    }
   }
 
-  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
-  public void createBankStatementLine(Map<String, Object> structuredContentLine, int sequence) {
+  @Transactional
+  public void deleteBankStatementLines() {
+    JPA.clear();
+    bankStatementLineAFB120Repository
+        .all()
+        .filter("self.bankStatement = ?1", findBankStatement())
+        .remove();
+  }
 
-    String description = (String) structuredContentLine.get("description");
+  protected int getBatchSize() {
+    AppBankPayment appBankPayment = Beans.get(AppBankPaymentService.class).getAppBankPayment();
+    Integer batchSize =
+        appBankPayment == null ? null : appBankPayment.getBankStatementImportBatchSize();
+    return batchSize == null || batchSize <= 0 ? DEFAULT_BATCH_SIZE : batchSize;
+  }
 
-    if (structuredContentLine.containsKey("additionalInformation")
-        && structuredContentLine.get("additionalInformation") != null) {
-      description += "\n" + (String) structuredContentLine.get("additionalInformation");
+  /**
+   * Create the bank statement lines of the records in one transaction. If a line fails, the lines
+   * of the batch are created again one by one, so that only the failing lines are skipped.
+   *
+   * @param records
+   */
+  protected void createBankStatementLines(List<BankStatementAFB120Record> records) {
+    try {
+      saveBankStatementLines(records);
+    } catch (Exception e) {
+      clear();
+      for (BankStatementAFB120Record record : records) {
+        try {
+          saveBankStatementLines(Collections.singletonList(record));
+        } catch (Exception lineException) {
+          traceLineException(record, lineException);
+          clear();
+        }
+      }
+    } finally {
+      clear();
     }
+  }
 
-    BankDetails bankDetails = null;
-    if (structuredContentLine.containsKey("bankDetails")
-        && structuredContentLine.get("bankDetails") != null) {
-      bankDetails =
-          bankDetailsRepository.find(
-              ((BankDetails) structuredContentLine.get("bankDetails")).getId());
-    }
+  protected void traceLineException(BankStatementAFB120Record record, Exception e) {
+    TraceBackService.trace(
+        new Exception(String.format("Line %s : %s", record.getSequence(), e), e),
+        IException.IMPORT);
+  }
 
-    Currency currency = null;
-    if (structuredContentLine.containsKey("currency")
-        && structuredContentLine.get("currency") != null) {
-      currency =
-          currencyRepository.find(((Currency) structuredContentLine.get("currency")).getId());
-    }
+  /** Clear the persistence context, keeping the bank statement. */
+  protected void clear() {
+    JPA.clear();
+    findBankStatement();
+  }
 
-    InterbankCodeLine operationInterbankCodeLine = null;
-    if (structuredContentLine.containsKey("operationInterbankCodeLine")
-        && structuredContentLine.get("operationInterbankCodeLine") != null) {
-      operationInterbankCodeLine =
-          interbankCodeLineRepository.find(
-              ((InterbankCodeLine) structuredContentLine.get("operationInterbankCodeLine"))
-                  .getId());
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  public void saveBankStatementLines(List<BankStatementAFB120Record> records) {
+    for (BankStatementAFB120Record record : records) {
+      bankStatementLineAFB120Repository.save(createBankStatementLine(record));
     }
+  }
 
-    InterbankCodeLine rejectInterbankCodeLine = null;
-    if (structuredContentLine.containsKey("rejectInterbankCodeLine")
-        && structuredContentLine.get("rejectInterbankCodeLine") != null) {
-      rejectInterbankCodeLine =
-          interbankCodeLineRepository.find(
-              ((InterbankCodeLine) structuredContentLine.get("rejectInterbankCodeLine")).getId());
+  protected BankStatementLineAFB120 createBankStatementLine(BankStatementAFB120Record record) {
+
+    String description = record.getDescription();
+    if (record.getAdditionalInformation() != null) {
+      description += "\n" + record.getAdditionalInformation();
     }
 
-    BankStatementLineAFB120 bankStatementLineAFB120 =
-        bankStatementLineAFB120Service.createBankStatementLine(
-            findBankStatement(),
-            sequence,
-            bankDetails,
-            (BigDecimal) structuredContentLine.get("debit"),
-            (BigDecimal) structuredContentLine.get("credit"),
-            currency,
-            description,
-            (LocalDate) structuredContentLine.get("operationDate"),
-            (LocalDate) structuredContentLine.get("valueDate"),
-            operationInterbankCodeLine,
-            rejectInterbankCodeLine,
-            (String) structuredContentLine.get("origin"),
-            (String) structuredContentLine.get("reference"),
-            (int) structuredContentLine.get("lineType"),
-            (String) structuredContentLine.get("unavailabilityIndexSelect"),
-            (String) structuredContentLine.get("commissionExemptionIndexSelect"));
-
-    bankStatementLineAFB120Repository.save(bankStatementLineAFB120);
+    String bankDetailsKey =
+        record.getAccountNumber() + "|" + record.getBankCode() + "|" + record.getSortCode();
+
+    return bankStatementLineAFB120Service.createBankStatementLine(
+        findBankStatement(),
+        record.getSequence(),
+        getReference(
+            BankDetails.class,
+            bankDetailsIdMap,
+            bankDetailsKey,
+            key ->
+                getBankDetails(
+                    record.getAccountNumber(), record.getBankCode(), record.getSortCode())),
+        record.getDebit(),
+        record.getCredit(),
+        getReference(Currency.class, currencyIdMap, record.getCurrencyCode(), this::getCurrency),
+        description,
+        record.getOperationDate(),
+        record.getValueDate(),
+        getReference(
+            InterbankCodeLine.class,
+            interbankCodeLineIdMap,
+            record.getOperationInterbankCode(),
+            this::getInterbankCodeLine),
+        getReference(
+            InterbankCodeLine.class,
+            interbankCodeLineIdMap,
+            record.getRejectInterbankCode(),
+            this::getInterbankCodeLine),
+        record.getOrigin(),
+        record.getReference(),
+        record.getLineType(),
+        record.getUnavailabilityIndexSelect(),
+        record.getCommissionExemptionIndexSelect());
   }
 
-  protected List<Map<String, Object>> readFile() throws IOException, AxelorException {
-
-    List<Map<String, Object>> structuredContent = Lists.newArrayList();
-
-    List<String> fileContent = FileTool.reader(file.getPath());
-
-    for (String lineContent : fileContent) {
-
-      log.info("Read line : {}", lineContent);
-
-      // Code enregistrement
-      String operationCode =
-          cfonbToolService.readZone(
-              "Record code",
-              lineContent,
-              cfonbToolService.STATUS_MANDATORY,
-              cfonbToolService.FORMAT_NUMERIC,
-              1,
-              2);
-
-      switch (operationCode) {
-        case PREVIOUS_BALANCE_OPERATION_CODE:
-          structuredContent.add(readPreviousBalanceRecord(lineContent));
-          break;
-        case MOVEMENT_OPERATION_CODE:
-          structuredContent.add(readMovementRecord(lineContent));
-          break;
-        case COMPLEMENT_MOVEMENT_OPERATION_CODE:
-          Map<String, Object> movementLine = structuredContent.get(structuredContent.size() - 1);
-          String additionalInformation = "";
-          if (movementLine.containsKey("additionalInformation")) {
-            additionalInformation = (String) movementLine.get("additionalInformation") + "\n";
-          }
-          additionalInformation +=
-              (String) readAdditionalMovementRecord(lineContent).get("additionalInformation");
-
-          movementLine.put("additionalInformation", additionalInformation);
-
-          break;
-        case NEW_BALANCE_OPERATION_CODE:
-          structuredContent.add(readNewBalanceRecord(lineContent));
-          break;
-        default:
-          break;
-      }
-    }
+  /**
+   * Get a reference to the record of a code, the record being searched once per distinct code of
+   * the file.
+   *
+   * @param klass
+   * @param idMap ids of the records already searched, by code
+   * @param code
+   * @param finder search of the record of a code
+   * @return the reference, or null if there is no code or no record for the code
+   */
+  protected <T extends Model> T getReference(
+      Class<T> klass, Map<String, Optional<Long>> idMap, String code, Function<String, T> finder) {
 
-    return structuredContent;
+    if (code == null) {
+      return null;
+    }
+    return idMap
+        .computeIfAbsent(code, key -> Optional.ofNullable(finder.apply(key)).map(Model::getId))
+        .map(id -> JPA.em().getReference(klass, id))
+        .orElse(null);
   }
 
-  protected Map<String, Object> readPreviousBalanceRecord(String lineContent)
+  protected BankStatementAFB120Record readPreviousBalanceRecord(String lineContent)
       throws AxelorException {
 
-    Map<String, Object> structuredLineContent = Maps.newHashMap();
-
-    structuredLineContent.put(
-        "lineType", BankStatementLineAFB120Repository.LINE_TYPE_INITIAL_BALANCE);
+    BankStatementAFB120Record record =
+        new BankStatementAFB120Record(BankStatementLineAFB120Repository.LINE_TYPE_INITIAL_BALANCE);
 
     // Zone 1-B : Code banque
     String bankCode =
@@ -259,7 +373,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             cfonbToolService.FORMAT_ALPHA,
             17,
             3);
-    structuredLineContent.put("currency", getCurrency(currencyCode));
+    record.setCurrencyCode(currencyCode);
 
     // Zone 1-F : Nombre de décimales du montant de l'ancien solde
     int decimalDigitNumber =
@@ -282,7 +396,9 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             22,
             11);
 
-    structuredLineContent.put("bankDetails", getBankDetails(accountNumber, bankCode, sortCode));
+    record.setBankCode(bankCode);
+    record.setSortCode(sortCode);
+    record.setAccountNumber(accountNumber);
 
     // Zone 1-J : Date de l'ancien solde (JJMMAA)
     String date =
@@ -293,7 +409,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             cfonbToolService.FORMAT_NUMERIC,
             35,
             6);
-    structuredLineContent.put("operationDate", getDate(date));
+    record.setOperationDate(getDate(date));
 
     // Zone 1-L : Montant de l'ancien solde
     String amountStr =
@@ -307,22 +423,16 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
 
     BigDecimal amount = getAmount(amountStr, decimalDigitNumber);
 
-    if (amount.signum() == 1) {
-      structuredLineContent.put("debit", BigDecimal.ZERO);
-      structuredLineContent.put("credit", amount.abs());
-    } else {
-      structuredLineContent.put("credit", BigDecimal.ZERO);
-      structuredLineContent.put("debit", amount.abs());
-    }
+    record.setAmount(amount);
 
-    return structuredLineContent;
+    return record;
   }
 
-  protected Map<String, Object> readMovementRecord(String lineContent) throws AxelorException {
-
-    Map<String, Object> structuredLineContent = Maps.newHashMap();
+  protected BankStatementAFB120Record readMovementRecord(String lineContent)
+      throws AxelorException {
 
-    structuredLineContent.put("lineType", BankStatementLineAFB120Repository.LINE_TYPE_MOVEMENT);
+    BankStatementAFB120Record record =
+        new BankStatementAFB120Record(BankStatementLineAFB120Repository.LINE_TYPE_MOVEMENT);
 
     // Zone 2-B : Code banque
     String bankCode =
@@ -353,7 +463,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             cfonbToolService.FORMAT_ALPHA,
             17,
             3);
-    structuredLineContent.put("currency", getCurrency(currencyCode));
+    record.setCurrencyCode(currencyCode);
 
     // Zone 2-F : Nombre de décimales du montant du mouvement
     int decimalDigitNumber =
@@ -376,7 +486,9 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             22,
             11);
 
-    structuredLineContent.put("bankDetails", getBankDetails(accountNumber, bankCode, sortCode));
+    record.setBankCode(bankCode);
+    record.setSortCode(sortCode);
+    record.setAccountNumber(accountNumber);
 
     // Zone 2-I : Code opération interbancaire
     String operationInterbankCode =
@@ -387,8 +499,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             cfonbToolService.FORMAT_ALPHA_NUMERIC,
             33,
             2);
-    structuredLineContent.put(
-        "operationInterbankCodeLine", getInterbankCodeLine(operationInterbankCode));
+    record.setOperationInterbankCode(operationInterbankCode);
 
     // Zone 2-J : Date de comptabilisation de l'opération (JJMMAA)
     String movementDate =
@@ -399,10 +510,10 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             cfonbToolService.FORMAT_NUMERIC,
             35,
             6);
-    structuredLineContent.put("operationDate", getDate(movementDate));
+    record.setOperationDate(getDate(movementDate));
 
     // Zone 2-K : Code motif de rejet
-    String rejectInterbankCodeLine =
+    String rejectInterbankCode =
         cfonbToolService.readZone(
             "2-K : interbank reject code",
             lineContent,
@@ -410,8 +521,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             cfonbToolService.FORMAT_NUMERIC,
             41,
             2);
-    structuredLineContent.put(
-        "rejectInterbankCodeLine", getInterbankCodeLine(rejectInterbankCodeLine));
+    record.setRejectInterbankCode(rejectInterbankCode);
 
     // Zone 2-L : Date de valeur (JJMMAA)
     String valueDate =
@@ -422,11 +532,10 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             cfonbToolService.FORMAT_NUMERIC,
             43,
             6);
-    structuredLineContent.put("valueDate", getDate(valueDate));
+    record.setValueDate(getDate(valueDate));
 
     // Zone 2-M : Libellé
-    structuredLineContent.put(
-        "description",
+    record.setDescription(
         cfonbToolService.readZone(
             "2-M : label",
             lineContent,
@@ -436,8 +545,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             31));
 
     // Zone 2-O : Numéro d'écriture
-    structuredLineContent.put(
-        "origin",
+    record.setOrigin(
         cfonbToolService.readZone(
             "2-O : move number",
             lineContent,
@@ -447,8 +555,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             7));
 
     // Zone 2-P : Indice d'exonération de commission de mouvement de compte
-    structuredLineContent.put(
-        "commissionExemptionIndexSelect",
+    record.setCommissionExemptionIndexSelect(
         cfonbToolService.readZone(
             "2-P : turnover commission exemption index",
             lineContent,
@@ -458,8 +565,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             1));
 
     // Zone 2-Q : Indice d'indisponibilité
-    structuredLineContent.put(
-        "unavailabilityIndexSelect",
+    record.setUnavailabilityIndexSelect(
         cfonbToolService.readZone(
             "2-Q : unavailability index",
             lineContent,
@@ -479,17 +585,10 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             14);
     BigDecimal amount = getAmount(amountStr, decimalDigitNumber);
 
-    if (amount.signum() == 1) {
-      structuredLineContent.put("debit", BigDecimal.ZERO);
-      structuredLineContent.put("credit", amount.abs());
-    } else {
-      structuredLineContent.put("credit", BigDecimal.ZERO);
-      structuredLineContent.put("debit", amount.abs());
-    }
+    record.setAmount(amount);
 
     // Zone 2-S : Zone référence
-    structuredLineContent.put(
-        "reference",
+    record.setReference(
         cfonbToolService.readZone(
             "2-S : reference zone",
             lineContent,
@@ -498,44 +597,44 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             105,
             16));
 
-    return structuredLineContent;
+    return record;
   }
 
-  protected Map<String, Object> readAdditionalMovementRecord(String lineContent)
-      throws AxelorException {
-
-    Map<String, Object> structuredLineContent = Maps.newHashMap();
+  /**
+   * Read a complement record, its zones identifying the movement are checked but not kept.
+   *
+   * @param lineContent
+   * @return the additional information of the movement
+   * @throws AxelorException
+   */
+  protected String readAdditionalInformation(String lineContent) throws AxelorException {
 
     // Zone 2b-B : Code banque
-    String bankCode =
-        cfonbToolService.readZone(
-            "2b-B : bank code",
-            lineContent,
-            cfonbToolService.STATUS_MANDATORY,
-            cfonbToolService.FORMAT_NUMERIC,
-            3,
-            5);
+    cfonbToolService.readZone(
+        "2b-B : bank code",
+        lineContent,
+        cfonbToolService.STATUS_MANDATORY,
+        cfonbToolService.FORMAT_NUMERIC,
+        3,
+        5);
 
     // Zone 2b-D : Code guichet
-    String sortCode =
-        cfonbToolService.readZone(
-            "2b-D : sort code",
-            lineContent,
-            cfonbToolService.STATUS_MANDATORY,
-            cfonbToolService.FORMAT_NUMERIC,
-            12,
-            5);
+    cfonbToolService.readZone(
+        "2b-D : sort code",
+        lineContent,
+        cfonbToolService.STATUS_MANDATORY,
+        cfonbToolService.FORMAT_NUMERIC,
+        12,
+        5);
 
     // Zone 2b-E : Code devise ISO
-    String currencyCode =
-        cfonbToolService.readZone(
-            "2b-E : currency code",
-            lineContent,
-            cfonbToolService.STATUS_MANDATORY,
-            cfonbToolService.FORMAT_ALPHA,
-            17,
-            3);
-    structuredLineContent.put("currency", getCurrency(currencyCode));
+    cfonbToolService.readZone(
+        "2b-E : currency code",
+        lineContent,
+        cfonbToolService.STATUS_MANDATORY,
+        cfonbToolService.FORMAT_ALPHA,
+        17,
+        3);
 
     // Zone 2b-F : Nombre de décimales du montant du mouvement
     cfonbToolService.readZone(
@@ -547,39 +646,31 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
         1);
 
     // Zone 2b-H : Numéro de compte
-    String accountNumber =
-        cfonbToolService.readZone(
-            "2b-H : account number",
-            lineContent,
-            cfonbToolService.STATUS_MANDATORY,
-            cfonbToolService.FORMAT_ALPHA_NUMERIC,
-            22,
-            11);
-
-    structuredLineContent.put("bankDetails", getBankDetails(accountNumber, bankCode, sortCode));
+    cfonbToolService.readZone(
+        "2b-H : account number",
+        lineContent,
+        cfonbToolService.STATUS_MANDATORY,
+        cfonbToolService.FORMAT_ALPHA_NUMERIC,
+        22,
+        11);
 
     // Zone 2b-I : Code opération interbancaire
-    String operationInterbankCode =
-        cfonbToolService.readZone(
-            "2b-I : interbank operation code",
-            lineContent,
-            cfonbToolService.STATUS_MANDATORY,
-            cfonbToolService.FORMAT_ALPHA_NUMERIC,
-            33,
-            2);
-    structuredLineContent.put(
-        "operationInterbankCodeLine", getInterbankCodeLine(operationInterbankCode));
+    cfonbToolService.readZone(
+        "2b-I : interbank operation code",
+        lineContent,
+        cfonbToolService.STATUS_MANDATORY,
+        cfonbToolService.FORMAT_ALPHA_NUMERIC,
+        33,
+        2);
 
     // Zone 2b-J : Date de comptabilisation de l'opération (JJMMAA)
-    String date =
-        cfonbToolService.readZone(
-            "2b-J : operation date",
-            lineContent,
-            cfonbToolService.STATUS_MANDATORY,
-            cfonbToolService.FORMAT_NUMERIC,
-            35,
-            6);
-    structuredLineContent.put("operationDate", getDate(date));
+    cfonbToolService.readZone(
+        "2b-J : operation date",
+        lineContent,
+        cfonbToolService.STATUS_MANDATORY,
+        cfonbToolService.FORMAT_NUMERIC,
+        35,
+        6);
 
     // Zone 2b-L : Qualifiant de la zone "Informations complémentaires"
     String additionalInformationType =
@@ -594,16 +685,13 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
     switch (additionalInformationType) {
       case "LIB":
         // Zone 2b-M : Informations complémentaires
-        structuredLineContent.put(
-            "additionalInformation",
-            cfonbToolService.readZone(
-                "2b-M : additional informations",
-                lineContent,
-                cfonbToolService.STATUS_MANDATORY,
-                cfonbToolService.FORMAT_ALPHA_NUMERIC,
-                49,
-                70));
-        break;
+        return cfonbToolService.readZone(
+            "2b-M : additional informations",
+            lineContent,
+            cfonbToolService.STATUS_MANDATORY,
+            cfonbToolService.FORMAT_ALPHA_NUMERIC,
+            49,
+            70);
       case "MMO":
         // Zone 2b-M : Informations complémentaires
         // 2b-M-1 : Code devise ISO (norme ISO4217 (NF K 10 020)) du montant d'origine
@@ -639,32 +727,24 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
         String decimalPartOfAmount =
             amountInCurrency.substring(amountInCurrency.length() - decimalDigitNumber);
         String correctAmount = integerPartOfAmount + "." + decimalPartOfAmount;
-        structuredLineContent.put(
-            "additionalInformation", correctAmount + " " + origineCurrencyCode);
-        break;
+        return correctAmount + " " + origineCurrencyCode;
       default:
         // Zone 2b-M : Informations complémentaires
-        structuredLineContent.put(
-            "additionalInformation",
-            cfonbToolService.readZone(
-                "2b-M : additional informations",
-                lineContent,
-                cfonbToolService.STATUS_MANDATORY,
-                cfonbToolService.FORMAT_ALPHA_NUMERIC,
-                49,
-                70));
-        break;
+        return cfonbToolService.readZone(
+            "2b-M : additional informations",
+            lineContent,
+            cfonbToolService.STATUS_MANDATORY,
+            cfonbToolService.FORMAT_ALPHA_NUMERIC,
+            49,
+            70);
     }
-
-    return structuredLineContent;
   }
 
-  protected Map<String, Object> readNewBalanceRecord(String lineContent) throws AxelorException {
-
-    Map<String, Object> structuredLineContent = Maps.newHashMap();
+  protected BankStatementAFB120Record readNewBalanceRecord(String lineContent)
+      throws AxelorException {
 
-    structuredLineContent.put(
-        "lineType", BankStatementLineAFB120Repository.LINE_TYPE_FINAL_BALANCE);
+    BankStatementAFB120Record record =
+        new BankStatementAFB120Record(BankStatementLineAFB120Repository.LINE_TYPE_FINAL_BALANCE);
 
     // Zone 1-B : Code banque
     String bankCode =
@@ -695,7 +775,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             cfonbToolService.FORMAT_ALPHA,
             17,
             3);
-    structuredLineContent.put("currency", getCurrency(currencyCode));
+    record.setCurrencyCode(currencyCode);
 
     // Zone 1-F : Nombre de décimales du montant du nouveau solde
     int nbDecimalDigit =
@@ -718,7 +798,9 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             22,
             11);
 
-    structuredLineContent.put("bankDetails", getBankDetails(accountNumber, bankCode, sortCode));
+    record.setBankCode(bankCode);
+    record.setSortCode(sortCode);
+    record.setAccountNumber(accountNumber);
 
     // Zone 1-J : Date du nouveau solde (JJMMAA)
     String date =
@@ -729,7 +811,7 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
             cfonbToolService.FORMAT_NUMERIC,
             35,
             6);
-    structuredLineContent.put("operationDate", getDate(date));
+    record.setOperationDate(getDate(date));
 
     // Zone 1-L : Montant du nouveau solde
     String amountStr =
@@ -743,15 +825,9 @@ public class BankStatementFileAFB120Service extends BankStatementFileService {
 
     BigDecimal amount = getAmount(amountStr, nbDecimalDigit);
 
-    if (amount.signum() == 1) {
-      structuredLineContent.put("debit", BigDecimal.ZERO);
-      structuredLineContent.put("credit", amount.abs());
-    } else {
-      structuredLineContent.put("credit", BigDecimal.ZERO);
-      structuredLineContent.put("debit", amount.abs());
-    }
+    record.setAmount(amount);
 
-    return structuredLineContent;
+    return record;
   }
 
   protected Currency getCurrency(String isoCode) {
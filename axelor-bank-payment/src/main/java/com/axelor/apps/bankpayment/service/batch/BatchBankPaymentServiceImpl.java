@@ -47,6 +47,7 @@ import com.axelor.apps.base.db.Currency;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.tool.QueryBuilder;
 import com.axelor.db.JPA;
@@ -151,15 +152,17 @@ public class BatchBankPaymentServiceImpl implements BatchBankPaymentService {
       throws AxelorException, JAXBException, IOException, DatatypeConfigurationException {
 
     List<PaymentScheduleLine> paymentScheduleLineList;
-    int offset = 0;
+    KeysetPager<PaymentScheduleLine> paymentScheduleLinePager =
+        getPaymentScheduleLineDonePager(batch);
 
-    while (!(paymentScheduleLineList = fetchPaymentScheduleLineDoneList(batch, offset)).isEmpty()) {
-      createBankOrders(batch, paymentScheduleLineList);
-      offset += paymentScheduleLineList.size();
-      JPA.clear();
+    while (!(paymentScheduleLineList = paymentScheduleLinePager.fetchNext()).isEmpty()) {
       batch = batchRepo.find(batch.getId());
+      createBankOrders(batch, paymentScheduleLineList);
     }
 
+    JPA.clear();
+    batch = batchRepo.find(batch.getId());
+
     List<BankOrder> bankOrderList;
 
     while ((bankOrderList = fetchLimitedBankOrderList(batch)).size() > 1) {
@@ -263,11 +266,11 @@ public class BatchBankPaymentServiceImpl implements BatchBankPaymentService {
     bankOrder = JPA.save(bankOrder);
 
     List<PaymentScheduleLine> paymentScheduleLineList;
-    int offset = 0;
+    KeysetPager<PaymentScheduleLine> paymentScheduleLinePager =
+        getPaymentScheduleLineDonePager(batch);
 
     try {
-      while (!(paymentScheduleLineList = fetchPaymentScheduleLineDoneList(batch, offset))
-          .isEmpty()) {
+      while (!(paymentScheduleLineList = paymentScheduleLinePager.fetchNext()).isEmpty()) {
         bankOrder = bankOrderRepo.find(bankOrder.getId());
 
         for (PaymentScheduleLine paymentScheduleLine : paymentScheduleLineList) {
@@ -293,8 +296,6 @@ public class BatchBankPaymentServiceImpl implements BatchBankPaymentService {
         }
 
         bankOrder = JPA.save(bankOrder);
-        offset += paymentScheduleLineList.size();
-        JPA.clear();
       }
     } catch (Exception e) {
       bankOrder = bankOrderRepo.find(bankOrder.getId());
@@ -312,11 +313,7 @@ public class BatchBankPaymentServiceImpl implements BatchBankPaymentService {
     return bankOrder;
   }
 
-  protected List<PaymentScheduleLine> fetchPaymentScheduleLineDoneList(Batch batch, int offset) {
-    return getPaymentScheduleLineDoneListQuery(batch).fetch(AbstractBatch.FETCH_LIMIT, offset);
-  }
-
-  private Query<PaymentScheduleLine> getPaymentScheduleLineDoneListQuery(Batch batch) {
+  protected KeysetPager<PaymentScheduleLine> getPaymentScheduleLineDonePager(Batch batch) {
     QueryBuilder<PaymentScheduleLine> queryBuilder = QueryBuilder.of(PaymentScheduleLine.class);
 
     queryBuilder.add(":batch MEMBER OF self.batchSet");
@@ -325,7 +322,9 @@ public class BatchBankPaymentServiceImpl implements BatchBankPaymentService {
     queryBuilder.add("self.statusSelect = :statusSelect");
     queryBuilder.bind("statusSelect", PaymentScheduleLineRepository.STATUS_VALIDATED);
 
-    return queryBuilder.build().order("id");
+    return KeysetPager.of(PaymentScheduleLine.class)
+        .filter(queryBuilder.buildFilter())
+        .bind(queryBuilder.getBindingMap());
   }
 
   protected List<BankOrder> fetchLimitedBankOrderList(Batch batch) {
@@ -27,9 +27,9 @@ import com.axelor.apps.bankpayment.service.bankorder.BankOrderMergeService;
 import com.axelor.apps.base.db.BankDetails;
 import com.axelor.apps.base.db.repo.BankDetailsRepository;
 import com.axelor.apps.base.db.repo.BlockingRepository;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.IException;
 import com.axelor.exception.service.TraceBackService;
@@ -120,10 +120,6 @@ public class BatchDirectDebitCustomerInvoice extends BatchDirectDebit {
 
     List<InvoicePayment> doneList = new ArrayList<>();
 
-    List<Long> anomalyList = Lists.newArrayList(0L);
-    filterList.add("self.id NOT IN (:anomalyList)");
-    bindingList.add(Pair.of("anomalyList", (Object) anomalyList));
-
     String filter =
         Joiner.on(" AND ")
             .join(
@@ -136,10 +132,10 @@ public class BatchDirectDebitCustomerInvoice extends BatchDirectDebit {
                       }
                     }));
 
-    Query<Invoice> query = Beans.get(InvoiceRepository.class).all().filter(filter);
+    KeysetPager<Invoice> pager = KeysetPager.of(Invoice.class).filter(filter);
 
     for (Pair<String, Object> binding : bindingList) {
-      query.bind(binding.getLeft(), binding.getRight());
+      pager.bind(binding.getLeft(), binding.getRight());
     }
 
     Set<Long> treatedSet = new HashSet<>();
@@ -149,7 +145,7 @@ public class BatchDirectDebitCustomerInvoice extends BatchDirectDebit {
     BankDetailsRepository bankDetailsRepo = Beans.get(BankDetailsRepository.class);
     BankDetails companyBankDetails = getCompanyBankDetails(batch.getAccountingBatch());
 
-    while (!(invoiceList = query.fetch(FETCH_LIMIT)).isEmpty()) {
+    while (!(invoiceList = pager.fetchNext()).isEmpty()) {
       if (!JPA.em().contains(companyBankDetails)) {
         companyBankDetails = bankDetailsRepo.find(companyBankDetails.getId());
       }
@@ -167,15 +163,12 @@ public class BatchDirectDebitCustomerInvoice extends BatchDirectDebit {
           incrementDone();
         } catch (Exception e) {
           incrementAnomaly();
-          anomalyList.add(invoice.getId());
-          query.bind("anomalyList", anomalyList);
+          pager.seek(invoice.getId());
           TraceBackService.trace(e, IException.DIRECT_DEBIT, batch.getId());
           LOG.error(e.getMessage());
           break;
         }
       }
-
-      JPA.clear();
     }
 
     return doneList;
@@ -34,10 +34,9 @@ import com.axelor.apps.base.db.BankDetails;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.repo.BankDetailsRepository;
 import com.axelor.apps.base.db.repo.BlockingRepository;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.tool.QueryBuilder;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.IException;
 import com.axelor.exception.service.TraceBackService;
@@ -166,7 +165,10 @@ public class BatchDirectDebitPaymentSchedule extends BatchDirectDebit {
   }
 
   private void processQuery(QueryBuilder<PaymentScheduleLine> queryBuilder) {
-    Query<PaymentScheduleLine> query = queryBuilder.build();
+    KeysetPager<PaymentScheduleLine> pager =
+        KeysetPager.of(PaymentScheduleLine.class)
+            .filter(queryBuilder.buildFilter())
+            .bind(queryBuilder.getBindingMap());
 
     List<PaymentScheduleLine> paymentScheduleLineList;
     PaymentScheduleService paymentScheduleService = Beans.get(PaymentScheduleService.class);
@@ -176,7 +178,7 @@ public class BatchDirectDebitPaymentSchedule extends BatchDirectDebit {
 
     BankDetails companyBankDetails = getCompanyBankDetails(batch.getAccountingBatch());
 
-    while (!(paymentScheduleLineList = query.fetch(FETCH_LIMIT)).isEmpty()) {
+    while (!(paymentScheduleLineList = pager.fetchNext()).isEmpty()) {
       findBatch();
       companyBankDetails = bankDetailsRepo.find(companyBankDetails.getId());
       PaymentMode directDebitPaymentMode = batch.getAccountingBatch().getPaymentMode();
@@ -204,11 +206,10 @@ public class BatchDirectDebitPaymentSchedule extends BatchDirectDebit {
         } catch (Exception e) {
           TraceBackService.trace(e, IException.DIRECT_DEBIT, batch.getId());
           incrementAnomaly(paymentScheduleLine);
+          pager.seek(paymentScheduleLine.getId());
           break;
         }
       }
-
-      JPA.clear();
     }
   }
 
@@ -22,11 +22,14 @@ import com.axelor.apps.bankpayment.db.BankReconciliation;
 import com.axelor.apps.bankpayment.db.BankReconciliationLine;
 import com.axelor.apps.bankpayment.db.repo.BankReconciliationLineRepository;
 import com.axelor.apps.bankpayment.db.repo.BankReconciliationRepository;
+import com.axelor.apps.bankpayment.exception.IExceptionMessage;
 import com.axelor.apps.bankpayment.report.IReport;
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMatchingService;
 import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationService;
 import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationValidateService;
 import com.axelor.apps.report.engine.ReportSettings;
 import com.axelor.exception.service.TraceBackService;
+import com.axelor.i18n.I18n;
 import com.axelor.meta.schema.actions.ActionView;
 import com.axelor.rpc.ActionRequest;
 import com.axelor.rpc.ActionResponse;
@@ -44,6 +47,8 @@ public class BankReconciliationController {
 
   @Inject BankReconciliationValidateService bankReconciliationValidateService;
 
+  @Inject BankReconciliationMatchingService bankReconciliationMatchingService;
+
   @Inject BankReconciliationRepository bankReconciliationRepo;
 
   @Inject BankReconciliationLineRepository bankReconciliationLineRepo;
@@ -96,6 +101,21 @@ public class BankReconciliationController {
     }
   }
 
+  public void autoMatch(ActionRequest request, ActionResponse response) {
+
+    try {
+      BankReconciliation bankReconciliation = request.getContext().asType(BankReconciliation.class);
+      int matchCount =
+          bankReconciliationMatchingService.match(
+              bankReconciliationRepo.find(bankReconciliation.getId()));
+      response.setFlash(
+          String.format(I18n.get(IExceptionMessage.BANK_RECONCILIATION_AUTO_MATCH), matchCount));
+      response.setReload(true);
+    } catch (Exception e) {
+      TraceBackService.trace(response, e);
+    }
+  }
+
   public void validateMultipleReconcile(ActionRequest request, ActionResponse response) {
 
     try {
@@ -0,0 +1,174 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.test;
+
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMatcher;
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMatcher.Candidate;
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMatcher.Match;
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMatcher.Rule;
+import com.axelor.apps.bankpayment.service.bankreconciliation.BankReconciliationMatcher.StatementItem;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestBankReconciliationMatcher {
+
+  private static final LocalDate TODAY = LocalDate.of(2019, 3, 15);
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Test
+  public void testMatchByReference() {
+    BankReconciliationMatcher matcher = new BankReconciliationMatcher();
+    matcher.addCandidate(new Candidate(1L, TODAY, new BigDecimal("120.00"), true, "INV-0042"));
+    matcher.addCandidate(new Candidate(2L, TODAY, new BigDecimal("120"), true, "INV-0043"));
+
+    List<Match> matchList =
+        matcher.match(
+            Arrays.asList(
+                new StatementItem(
+                    "a", TODAY.plusDays(30), new BigDecimal("120.0"), true, "Payment INV0043")));
+
+    Assert.assertEquals(0, matchList.size());
+
+    matchList =
+        matcher.match(
+            Arrays.asList(
+                new StatementItem(
+                    "a", TODAY.plusDays(30), new BigDecimal("120.0"), true, "Payment 0043")));
+
+    Assert.assertEquals(1, matchList.size());
+    Assert.assertEquals(Rule.REFERENCE, matchList.get(0).getRule());
+    Assert.assertEquals(2L, (long) matchList.get(0).getCandidates().get(0).getMoveLineId());
+  }
+
+  @Test
+  public void testMatchByDate() {
+    BankReconciliationMatcher matcher = new BankReconciliationMatcher(3, 0);
+    matcher.addCandidate(new Candidate(1L, TODAY, new BigDecimal("80"), false));
+    matcher.addCandidate(new Candidate(2L, TODAY.plusDays(2), new BigDecimal("80"), false));
+    matcher.addCandidate(new Candidate(3L, TODAY.plusDays(4), new BigDecimal("80"), false));
+    matcher.addCandidate(new Candidate(4L, TODAY, new BigDecimal("50"), true));
+
+    StatementItem closest = new StatementItem("a", TODAY.plusDays(2), new BigDecimal("80"), false);
+    StatementItem wrongSide = new StatementItem("b", TODAY, new BigDecimal("50"), false);
+    StatementItem sameSide = new StatementItem("c", TODAY, new BigDecimal("50"), true);
+
+    List<Match> matchList =
+        matcher.match(Arrays.asList(closest, wrongSide, sameSide, tie(TODAY.plusDays(9))));
+
+    Assert.assertEquals(2, matchList.size());
+    Assert.assertSame(closest, matchList.get(0).getItem());
+    Assert.assertEquals(2L, (long) matchList.get(0).getCandidates().get(0).getMoveLineId());
+    Assert.assertSame(sameSide, matchList.get(1).getItem());
+
+    // Move lines 1 and 3 are equally close, no move line is proposed.
+    matchList = matcher.match(Arrays.asList(tie(TODAY.plusDays(2))));
+    Assert.assertTrue(matchList.isEmpty());
+  }
+
+  private StatementItem tie(LocalDate date) {
+    return new StatementItem("tie", date, new BigDecimal("80"), false);
+  }
+
+  @Test
+  public void testMatchBySum() {
+    BankReconciliationMatcher matcher = new BankReconciliationMatcher(5, 3);
+    matcher.addCandidate(new Candidate(1L, TODAY, new BigDecimal("70"), true));
+    matcher.addCandidate(new Candidate(2L, TODAY, new BigDecimal("20"), true));
+    matcher.addCandidate(new Candidate(3L, TODAY.plusDays(1), new BigDecimal("10.50"), true));
+    matcher.addCandidate(new Candidate(4L, TODAY.plusDays(10), new BigDecimal("30"), true));
+
+    List<Match> matchList =
+        matcher.match(
+            Arrays.asList(new StatementItem("a", TODAY, new BigDecimal("100.5"), true)));
+
+    Assert.assertEquals(1, matchList.size());
+    Assert.assertEquals(Rule.SUM, matchList.get(0).getRule());
+    Assert.assertEquals(3, matchList.get(0).getCandidates().size());
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (Candidate candidate : matchList.get(0).getCandidates()) {
+      total = total.add(candidate.getAmount());
+    }
+    Assert.assertEquals(0, total.compareTo(new BigDecimal("100.5")));
+  }
+
+  /** Benchmark of the matching of a generated statement of 100k lines. */
+  @Test
+  public void benchmarkGeneratedStatement() {
+
+    int lineCount = 100000;
+    Random random = new Random(42);
+    BankReconciliationMatcher matcher = new BankReconciliationMatcher();
+    List<StatementItem> items = new ArrayList<>(lineCount);
+    long moveLineId = 0;
+
+    long start = System.currentTimeMillis();
+
+    for (int i = 0; i < lineCount; i++) {
+      LocalDate date = TODAY.plusDays(random.nextInt(365));
+      BigDecimal amount = BigDecimal.valueOf(100 + random.nextInt(1000000), 2);
+      boolean debit = random.nextBoolean();
+      String reference = "REF" + i;
+      int kind = random.nextInt(20);
+
+      if (kind < 12) {
+        LocalDate moveDate = date.minusDays(random.nextInt(30));
+        matcher.addCandidate(new Candidate(++moveLineId, moveDate, amount, debit, reference));
+      } else if (kind < 17) {
+        matcher.addCandidate(
+            new Candidate(++moveLineId, date.plusDays(random.nextInt(5)), amount, debit));
+      } else if (kind < 19) {
+        BigDecimal part = amount.divide(BigDecimal.valueOf(3), 2, RoundingMode.DOWN);
+        matcher.addCandidate(new Candidate(++moveLineId, date, part, debit));
+        matcher.addCandidate(new Candidate(++moveLineId, date, amount.subtract(part), debit));
+      }
+
+      items.add(new StatementItem(i, date, amount, debit, "Transfer " + reference));
+    }
+
+    long loaded = System.currentTimeMillis();
+
+    List<Match> matchList = matcher.match(items);
+
+    long matched = System.currentTimeMillis();
+
+    log.info(
+        "Bank reconciliation matching benchmark: {} statement lines, {} move lines, "
+            + "indexed in {} ms, {} matches found in {} ms",
+        items.size(),
+        matcher.getCandidateCount(),
+        loaded - start,
+        matchList.size(),
+        matched - loaded);
+
+    // Lines matched by reference or by date alone make 85% of the statement.
+    Assert.assertTrue(matchList.size() <= lineCount);
+    Assert.assertTrue(matchList.size() >= lineCount * 0.8);
+  }
+}
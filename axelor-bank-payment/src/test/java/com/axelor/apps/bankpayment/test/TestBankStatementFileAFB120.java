@@ -0,0 +1,210 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.test;
+
+import com.axelor.apps.bankpayment.db.BankStatement;
+import com.axelor.apps.bankpayment.service.bankstatement.file.afb120.BankStatementAFB120Record;
+import com.axelor.apps.bankpayment.service.bankstatement.file.afb120.BankStatementFileAFB120Service;
+import com.axelor.apps.bankpayment.service.cfonb.CfonbToolService;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBankStatementFileAFB120 {
+
+  private File file;
+
+  private TestService service;
+
+  /** Import keeping the lines in memory, lines of the failing sequences being rejected. */
+  private static class TestService extends BankStatementFileAFB120Service {
+
+    private final List<BankStatementAFB120Record> lines = new ArrayList<>();
+
+    private final Set<Integer> failingSequences = new HashSet<>();
+
+    private final List<Integer> tracedSequences = new ArrayList<>();
+
+    private int transactionCount;
+
+    private boolean deleted;
+
+    private TestService(File file) {
+      super(null, new CfonbToolService(), null, null, null, null, null);
+      this.bankStatement = new BankStatement();
+      this.file = file;
+    }
+
+    @Override
+    protected BankStatement findBankStatement() {
+      return bankStatement;
+    }
+
+    @Override
+    protected int getBatchSize() {
+      return 2;
+    }
+
+    @Override
+    public void saveBankStatementLines(List<BankStatementAFB120Record> records) {
+      transactionCount++;
+      for (BankStatementAFB120Record record : records) {
+        if (failingSequences.contains(record.getSequence())) {
+          throw new IllegalStateException("Rejected line");
+        }
+      }
+      lines.addAll(records);
+    }
+
+    @Override
+    protected void traceLineException(BankStatementAFB120Record record, Exception e) {
+      tracedSequences.add(record.getSequence());
+    }
+
+    @Override
+    protected void clear() {}
+
+    @Override
+    public void deleteBankStatementLines() {
+      lines.clear();
+      deleted = true;
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("afb120", ".txt");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private String record(String code, String date, String label, String amount) {
+    char[] line = new char[120];
+    Arrays.fill(line, ' ');
+    put(line, 1, code);
+    put(line, 3, "30004");
+    put(line, 12, "00001");
+    put(line, 17, "EUR");
+    put(line, 20, "2");
+    put(line, 22, "00012345678");
+    put(line, 33, "01");
+    put(line, 35, date);
+    put(line, 43, date);
+    put(line, 49, label);
+    put(line, 82, "0000001");
+    put(line, 91, amount);
+    return new String(line);
+  }
+
+  private String complement(String information) {
+    char[] line = record("05", "020519", "", "").toCharArray();
+    put(line, 46, "LIB");
+    put(line, 49, information);
+    return new String(line);
+  }
+
+  private void put(char[] line, int position, String value) {
+    value.getChars(0, value.length(), line, position - 1);
+  }
+
+  private void write(String... lines) throws IOException {
+    Files.write(file.toPath(), Arrays.asList(lines), Charset.defaultCharset());
+    service = new TestService(file);
+  }
+
+  @Test
+  public void testComplementRecords() throws Exception {
+    write(
+        record("01", "010519", "", "0000000010000{"),
+        record("04", "020519", "TRANSFER", "0000000001500}"),
+        complement("FIRST INFORMATION"),
+        complement("SECOND INFORMATION"),
+        record("04", "030519", "CARD", "0000000000250{"),
+        record("07", "030519", "", "0000000008750{"));
+
+    service.process();
+
+    Assert.assertEquals(4, service.lines.size());
+    BankStatementAFB120Record transfer = service.lines.get(1);
+    Assert.assertEquals(1, transfer.getSequence());
+    Assert.assertEquals(new BigDecimal("150.00"), transfer.getDebit());
+    Assert.assertEquals(
+        "FIRST INFORMATION\nSECOND INFORMATION", transfer.getAdditionalInformation());
+
+    BankStatementAFB120Record card = service.lines.get(2);
+    Assert.assertEquals(2, card.getSequence());
+    Assert.assertEquals(new BigDecimal("25.00"), card.getCredit());
+    Assert.assertNull(card.getAdditionalInformation());
+    Assert.assertEquals(3, service.lines.get(3).getSequence());
+  }
+
+  @Test
+  public void testLineRetry() throws Exception {
+    write(
+        record("01", "010519", "", "0000000010000{"),
+        record("04", "020519", "TRANSFER", "0000000001500}"),
+        record("04", "030519", "CARD", "0000000000250{"),
+        record("07", "030519", "", "0000000008750{"));
+    service.failingSequences.add(1);
+
+    service.process();
+
+    // The first batch fails, and is created again line by line.
+    Assert.assertEquals(Arrays.asList(1), service.tracedSequences);
+    Assert.assertEquals(3, service.lines.size());
+    Assert.assertEquals(0, service.lines.get(0).getSequence());
+    Assert.assertEquals(2, service.lines.get(1).getSequence());
+    Assert.assertEquals(3, service.lines.get(2).getSequence());
+    Assert.assertEquals(4, service.transactionCount);
+    Assert.assertFalse(service.deleted);
+  }
+
+  @Test
+  public void testMalformedRecord() throws Exception {
+    write(
+        record("01", "010519", "", "0000000010000{"),
+        record("04", "020519", "TRANSFER", "0000000001500}"),
+        record("04", "030519", "CARD", "0000000000250{"),
+        record("04", "030519", "CARD", "0000000000250{").substring(0, 60),
+        record("07", "030519", "", "0000000008750{"));
+
+    try {
+      service.process();
+      Assert.fail("A malformed record must stop the import");
+    } catch (RuntimeException e) {
+      // Expected
+    }
+
+    Assert.assertEquals(0, service.transactionCount);
+    Assert.assertTrue(service.lines.isEmpty());
+  }
+}
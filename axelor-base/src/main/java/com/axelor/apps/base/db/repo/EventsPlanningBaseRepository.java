@@ -0,0 +1,41 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.db.repo;
+
+import com.axelor.apps.base.db.EventsPlanning;
+import com.axelor.apps.base.service.weeklyplanning.WorkingCalendarCache;
+import com.google.inject.Inject;
+
+public class EventsPlanningBaseRepository extends EventsPlanningRepository {
+
+  @Inject protected WorkingCalendarCache workingCalendarCache;
+
+  @Override
+  public EventsPlanning save(EventsPlanning eventsPlanning) {
+    eventsPlanning = super.save(eventsPlanning);
+    workingCalendarCache.invalidatePublicHolidays(eventsPlanning.getId());
+    return eventsPlanning;
+  }
+
+  @Override
+  public void remove(EventsPlanning eventsPlanning) {
+    Long eventsPlanningId = eventsPlanning.getId();
+    super.remove(eventsPlanning);
+    workingCalendarCache.invalidatePublicHolidays(eventsPlanningId);
+  }
+}
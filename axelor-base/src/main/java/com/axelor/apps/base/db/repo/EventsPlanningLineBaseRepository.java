@@ -0,0 +1,46 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.db.repo;
+
+import com.axelor.apps.base.db.EventsPlanningLine;
+import com.axelor.apps.base.service.weeklyplanning.WorkingCalendarCache;
+import com.google.inject.Inject;
+
+public class EventsPlanningLineBaseRepository extends EventsPlanningLineRepository {
+
+  @Inject protected WorkingCalendarCache workingCalendarCache;
+
+  @Override
+  public EventsPlanningLine save(EventsPlanningLine eventsPlanningLine) {
+    eventsPlanningLine = super.save(eventsPlanningLine);
+    invalidate(eventsPlanningLine);
+    return eventsPlanningLine;
+  }
+
+  @Override
+  public void remove(EventsPlanningLine eventsPlanningLine) {
+    super.remove(eventsPlanningLine);
+    invalidate(eventsPlanningLine);
+  }
+
+  protected void invalidate(EventsPlanningLine eventsPlanningLine) {
+    if (eventsPlanningLine.getEventsPlanning() != null) {
+      workingCalendarCache.invalidatePublicHolidays(eventsPlanningLine.getEventsPlanning().getId());
+    }
+  }
+}
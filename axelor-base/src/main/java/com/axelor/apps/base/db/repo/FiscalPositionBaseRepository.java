@@ -0,0 +1,41 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.db.repo;
+
+import com.axelor.apps.account.db.FiscalPosition;
+import com.axelor.apps.account.db.repo.FiscalPositionRepository;
+import com.axelor.apps.base.service.tax.AccountManagementIndex;
+import com.google.inject.Inject;
+
+public class FiscalPositionBaseRepository extends FiscalPositionRepository {
+
+  @Inject protected AccountManagementIndex accountManagementIndex;
+
+  @Override
+  public FiscalPosition save(FiscalPosition fiscalPosition) {
+    fiscalPosition = super.save(fiscalPosition);
+    accountManagementIndex.invalidateAfterCommit();
+    return fiscalPosition;
+  }
+
+  @Override
+  public void remove(FiscalPosition fiscalPosition) {
+    super.remove(fiscalPosition);
+    accountManagementIndex.invalidateAfterCommit();
+  }
+}
@@ -21,6 +21,7 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.PartnerAddress;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.service.PartnerService;
+import com.axelor.apps.base.service.PriceListIndex;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.exception.AxelorException;
@@ -40,6 +41,8 @@ public class PartnerBaseRepository extends PartnerRepository {
 
   @Inject AppBaseService appBaseService;
 
+  @Inject PriceListIndex priceListIndex;
+
   @Override
   public Partner save(Partner partner) {
     try {
@@ -97,7 +100,9 @@ public class PartnerBaseRepository extends PartnerRepository {
 
       partnerService.setPartnerFullName(partner);
       partnerService.setCompanyStr(partner);
-      return super.save(partner);
+      partner = super.save(partner);
+      priceListIndex.invalidateDefaultPriceListsAfterCommit();
+      return partner;
     } catch (Exception e) {
       throw new PersistenceException(e);
     }
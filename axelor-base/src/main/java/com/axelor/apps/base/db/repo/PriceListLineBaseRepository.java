@@ -0,0 +1,44 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.db.repo;
+
+import com.axelor.apps.base.db.PriceListLine;
+import com.axelor.apps.base.service.PriceListIndex;
+import com.google.inject.Inject;
+
+public class PriceListLineBaseRepository extends PriceListLineRepository {
+
+  @Inject protected PriceListIndex priceListIndex;
+
+  @Override
+  public PriceListLine save(PriceListLine priceListLine) {
+    priceListLine = super.save(priceListLine);
+    if (priceListLine.getPriceList() != null) {
+      priceListIndex.invalidatePriceListAfterCommit(priceListLine.getPriceList().getId());
+    }
+    return priceListLine;
+  }
+
+  @Override
+  public void remove(PriceListLine priceListLine) {
+    Long priceListId =
+        priceListLine.getPriceList() != null ? priceListLine.getPriceList().getId() : null;
+    super.remove(priceListLine);
+    priceListIndex.invalidatePriceListAfterCommit(priceListId);
+  }
+}
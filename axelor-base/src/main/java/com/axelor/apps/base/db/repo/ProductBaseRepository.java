@@ -21,6 +21,7 @@ import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.service.BarcodeGeneratorService;
 import com.axelor.apps.base.service.ProductService;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.base.service.tax.AccountManagementIndex;
 import com.axelor.apps.tool.service.TranslationService;
 import com.axelor.exception.AxelorException;
 import com.axelor.inject.Beans;
@@ -30,6 +31,7 @@ import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import javax.persistence.PersistenceException;
 import javax.validation.ValidationException;
 
@@ -45,6 +47,8 @@ public class ProductBaseRepository extends ProductRepository {
 
   @Inject protected BarcodeGeneratorService barcodeGeneratorService;
 
+  @Inject protected AccountManagementIndex accountManagementIndex;
+
   @Override
   public Product save(Product product) {
 
@@ -59,6 +63,12 @@ public class ProductBaseRepository extends ProductRepository {
 
     product.setFullName(String.format(FULL_NAME_FORMAT, product.getCode(), product.getName()));
 
+    // The index is keyed by the product family given by the caller, only the account managements
+    // of the product itself are indexed: stock moves and cost updates keep the index.
+    boolean accountManagementChanged =
+        !accountManagementIndex.isProductIndexed(
+            product.getId(), product.getAccountManagementList());
+
     if (product.getId() != null) {
       Product oldProduct = Beans.get(ProductRepository.class).find(product.getId());
       translationService.updateFormatedValueTranslations(
@@ -96,7 +106,21 @@ public class ProductBaseRepository extends ProductRepository {
         throw new ValidationException(e.getMessage());
       }
     }
-    return super.save(product);
+    product = super.save(product);
+    if (accountManagementChanged) {
+      accountManagementIndex.invalidateAfterCommit();
+    }
+    return product;
+  }
+
+  @Override
+  public void remove(Product product) {
+    boolean accountManagementIndexed =
+        !accountManagementIndex.isProductIndexed(product.getId(), Collections.emptyList());
+    super.remove(product);
+    if (accountManagementIndexed) {
+      accountManagementIndex.invalidateAfterCommit();
+    }
   }
 
   @Override
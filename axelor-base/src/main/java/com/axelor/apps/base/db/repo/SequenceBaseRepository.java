@@ -18,6 +18,8 @@
 package com.axelor.apps.base.db.repo;
 
 import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.inject.Beans;
 
 public class SequenceBaseRepository extends SequenceRepository {
 
@@ -30,4 +32,17 @@ public class SequenceBaseRepository extends SequenceRepository {
 
     return copy;
   }
+
+  @Override
+  public Sequence save(Sequence sequence) {
+    sequence = super.save(sequence);
+    Beans.get(SequenceService.class).invalidateBlocks(sequence.getId());
+    return sequence;
+  }
+
+  @Override
+  public void remove(Sequence sequence) {
+    Beans.get(SequenceService.class).invalidateBlocks(sequence.getId());
+    super.remove(sequence);
+  }
 }
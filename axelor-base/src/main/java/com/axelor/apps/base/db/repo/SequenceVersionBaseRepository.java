@@ -0,0 +1,46 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.db.repo;
+
+import com.axelor.apps.base.db.SequenceVersion;
+import com.axelor.apps.base.service.administration.SequenceService;
+import com.axelor.inject.Beans;
+
+public class SequenceVersionBaseRepository extends SequenceVersionRepository {
+
+  @Override
+  public SequenceVersion save(SequenceVersion sequenceVersion) {
+    sequenceVersion = super.save(sequenceVersion);
+    invalidateBlocks(sequenceVersion);
+    return sequenceVersion;
+  }
+
+  @Override
+  public void remove(SequenceVersion sequenceVersion) {
+    invalidateBlocks(sequenceVersion);
+    super.remove(sequenceVersion);
+  }
+
+  protected void invalidateBlocks(SequenceVersion sequenceVersion) {
+    SequenceService sequenceService = Beans.get(SequenceService.class);
+    if (sequenceVersion.getSequence() != null
+        && sequenceService.isBlockAllocated(sequenceVersion.getSequence())) {
+      sequenceService.invalidateBlocks(sequenceVersion.getSequence().getId());
+    }
+  }
+}
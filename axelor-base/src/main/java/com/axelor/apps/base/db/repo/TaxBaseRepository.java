@@ -19,9 +19,26 @@ package com.axelor.apps.base.db.repo;
 
 import com.axelor.apps.account.db.Tax;
 import com.axelor.apps.account.db.repo.TaxRepository;
+import com.axelor.apps.base.service.tax.AccountManagementIndex;
+import com.google.inject.Inject;
 
 public class TaxBaseRepository extends TaxRepository {
 
+  @Inject protected AccountManagementIndex accountManagementIndex;
+
+  @Override
+  public Tax save(Tax tax) {
+    tax = super.save(tax);
+    accountManagementIndex.invalidateAfterCommit();
+    return tax;
+  }
+
+  @Override
+  public void remove(Tax tax) {
+    super.remove(tax);
+    accountManagementIndex.invalidateAfterCommit();
+  }
+
   @Override
   public Tax copy(Tax entity, boolean deep) {
     Tax copy = super.copy(entity, deep);
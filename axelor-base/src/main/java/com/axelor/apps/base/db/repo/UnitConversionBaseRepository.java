@@ -0,0 +1,40 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.db.repo;
+
+import com.axelor.apps.base.db.UnitConversion;
+import com.axelor.apps.base.service.UnitConversionGraph;
+import com.google.inject.Inject;
+
+public class UnitConversionBaseRepository extends UnitConversionRepository {
+
+  @Inject protected UnitConversionGraph unitConversionGraph;
+
+  @Override
+  public UnitConversion save(UnitConversion unitConversion) {
+    unitConversion = super.save(unitConversion);
+    unitConversionGraph.invalidateAfterCommit();
+    return unitConversion;
+  }
+
+  @Override
+  public void remove(UnitConversion unitConversion) {
+    super.remove(unitConversion);
+    unitConversionGraph.invalidateAfterCommit();
+  }
+}
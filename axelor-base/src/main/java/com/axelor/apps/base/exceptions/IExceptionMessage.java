@@ -247,6 +247,7 @@ public interface IExceptionMessage {
       "Warning : Exported maximum export limit records." /*)*/;
   static final String ADVANCED_EXPORT_4 = /*$$(*/
       "Please select export object or export format." /*)*/;
+  static final String ADVANCED_EXPORT_5 = /*$$(*/ "Field %s not found in model %s." /*)*/;
 
   /** Barcode Generator Service */
   public static final String BARCODE_GENERATOR_1 = /*$$(*/
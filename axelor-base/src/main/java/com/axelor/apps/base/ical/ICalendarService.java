@@ -55,14 +55,19 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.SecureRandom;
 import java.text.ParseException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import javax.xml.parsers.ParserConfigurationException;
 import net.fortuna.ical4j.connector.FailedOperationException;
@@ -76,23 +81,28 @@ import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.ConstraintViolationException;
 import net.fortuna.ical4j.model.Date;
+import net.fortuna.ical4j.model.DateList;
 import net.fortuna.ical4j.model.DateTime;
 import net.fortuna.ical4j.model.Parameter;
 import net.fortuna.ical4j.model.Property;
 import net.fortuna.ical4j.model.PropertyList;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.parameter.Cn;
+import net.fortuna.ical4j.model.parameter.Value;
 import net.fortuna.ical4j.model.property.Attendee;
 import net.fortuna.ical4j.model.property.CalScale;
 import net.fortuna.ical4j.model.property.Clazz;
 import net.fortuna.ical4j.model.property.Description;
 import net.fortuna.ical4j.model.property.DtEnd;
 import net.fortuna.ical4j.model.property.DtStart;
+import net.fortuna.ical4j.model.property.ExDate;
 import net.fortuna.ical4j.model.property.Geo;
 import net.fortuna.ical4j.model.property.LastModified;
 import net.fortuna.ical4j.model.property.Location;
 import net.fortuna.ical4j.model.property.Organizer;
 import net.fortuna.ical4j.model.property.ProdId;
+import net.fortuna.ical4j.model.property.RRule;
+import net.fortuna.ical4j.model.property.RecurrenceId;
 import net.fortuna.ical4j.model.property.Status;
 import net.fortuna.ical4j.model.property.Summary;
 import net.fortuna.ical4j.model.property.Transp;
@@ -542,6 +552,14 @@ public class ICalendarService {
       items.add(lastModified);
     }
 
+    if (event.getRecurrenceRule() != null) {
+      items.add(new RRule(event.getRecurrenceRule()));
+      if (!Strings.isNullOrEmpty(event.getRecurrenceExDates())) {
+        DateList exDates = new DateList(event.getRecurrenceExDates(), Value.DATE_TIME);
+        items.add(new ExDate(exDates));
+      }
+    }
+
     Organizer organizer = updateUser(new Organizer(), event.getOrganizer());
     if (organizer != null) {
       items.add(organizer);
@@ -559,6 +577,99 @@ public class ICalendarService {
     return vevent;
   }
 
+  /**
+   * Create the VEVENTs of the occurrences of a recurrent event changed on their own. Each one has
+   * the UID of the recurrent event and a RECURRENCE-ID, so it replaces the occurrence of the rule.
+   *
+   * @param event the recurrent event
+   * @param uid the UID of the VEVENT of the recurrent event
+   * @return the VEVENTs of the changed occurrences, empty if the event is not recurrent
+   */
+  protected List<VEvent> createRecurrenceOverrides(ICalendarEvent event, String uid)
+      throws SocketException, ParseException {
+    List<VEvent> overrideList = new ArrayList<>();
+    if (event.getRecurrenceRule() == null) {
+      return overrideList;
+    }
+
+    // The RECURRENCE-ID has the value type of the DTSTART of the recurrent event.
+    boolean allDay = event.getAllDay() == Boolean.TRUE;
+
+    for (ICalendarEvent occurrence : getRecurrenceOccurrences(event)) {
+      if (!isRecurrenceOverride(occurrence, event)) {
+        continue;
+      }
+      VEvent vevent = createVEvent(occurrence);
+      PropertyList<Property> items = vevent.getProperties();
+      items.remove(vevent.getUid());
+      items.add(new Uid(uid));
+      items.add(new RecurrenceId(toDate(getRecurrenceDateTime(occurrence), allDay)));
+      overrideList.add(vevent);
+    }
+    return overrideList;
+  }
+
+  /**
+   * Whether an occurrence differs from its recurrent event on one of the exported properties, or
+   * was moved from the start date given by the rule.
+   */
+  protected boolean isRecurrenceOverride(ICalendarEvent occurrence, ICalendarEvent event) {
+    return !occurrence.getStartDateTime().equals(getRecurrenceDateTime(occurrence))
+        || !Duration.between(occurrence.getStartDateTime(), occurrence.getEndDateTime())
+            .equals(Duration.between(event.getStartDateTime(), event.getEndDateTime()))
+        || (occurrence.getAllDay() == Boolean.TRUE) != (event.getAllDay() == Boolean.TRUE)
+        || !Objects.equals(occurrence.getSubject(), event.getSubject())
+        || !Objects.equals(occurrence.getDescription(), event.getDescription())
+        || !Objects.equals(occurrence.getStatus(), event.getStatus())
+        || !Objects.equals(occurrence.getLocation(), event.getLocation())
+        || !Objects.equals(occurrence.getGeo(), event.getGeo())
+        || !Objects.equals(occurrence.getUrl(), event.getUrl())
+        || !Objects.equals(getEmail(occurrence.getOrganizer()), getEmail(event.getOrganizer()))
+        || !getAttendeeEmails(occurrence).equals(getAttendeeEmails(event));
+  }
+
+  /** Start date of an occurrence in the rule of its recurrent event, before it was moved. */
+  protected LocalDateTime getRecurrenceDateTime(ICalendarEvent occurrence) {
+    return occurrence.getRecurrenceDateT() != null
+        ? occurrence.getRecurrenceDateT()
+        : occurrence.getStartDateTime();
+  }
+
+  protected String getEmail(ICalendarUser user) {
+    return user == null ? null : user.getEmail();
+  }
+
+  protected Set<String> getAttendeeEmails(ICalendarEvent event) {
+    Set<String> emailSet = new HashSet<>();
+    if (event.getAttendees() != null) {
+      for (ICalendarUser user : event.getAttendees()) {
+        emailSet.add(user.getEmail());
+      }
+    }
+    return emailSet;
+  }
+
+  /**
+   * Get the occurrences of a recurrent event which are stored as events, leaving out the archived
+   * ones. Nothing is stored here: occurrences are created by the modules managing the recurrences.
+   *
+   * @param event the recurrent event
+   * @return the occurrences, in order of start date
+   */
+  protected List<ICalendarEvent> getRecurrenceOccurrences(ICalendarEvent event) {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Get the recurrent event of a stored occurrence.
+   *
+   * @param occurrence an event having isRecurrenceOccurrence set
+   * @return the recurrent event, null if it is not known
+   */
+  protected ICalendarEvent getRecurrenceEvent(ICalendarEvent occurrence) {
+    return null;
+  }
+
   /**
    * Export the calendar to the given file.
    *
@@ -602,6 +713,7 @@ public class ICalendarService {
     for (ICalendarEvent item : getICalendarEvents(calendar)) {
       VEvent event = createVEvent(item);
       cal.getComponents().add(event);
+      cal.getComponents().addAll(createRecurrenceOverrides(item, event.getUid().getValue()));
     }
 
     CalendarOutputter outputter = new CalendarOutputter();
@@ -666,7 +778,7 @@ public class ICalendarService {
     final Map<String, VEvent> modifiedRemoteEvents = new HashMap<>();
     final List<ICalendarEvent> modifiedLocalEvents = getICalendarEvents(calendar);
     final Set<String> allRemoteUids = new HashSet<>();
-    final Set<VEvent> updatedEvents = new HashSet<>();
+    final Map<VEvent, List<VEvent>> updatedEvents = new HashMap<>();
     List<VEvent> events = null;
     Instant lastSynchro = null;
 
@@ -695,19 +807,25 @@ public class ICalendarService {
           I18n.get(IExceptionMessage.CALENDAR_NO_EVENTS_FOR_SYNC_ERROR));
     }
 
+    // Remote occurrences changed on their own share the UID of their recurrent event, they are
+    // not imported.
     for (VEvent item : events) {
-      modifiedRemoteEvents.put(item.getUid().getValue(), item);
+      if (item.getRecurrenceId() == null) {
+        modifiedRemoteEvents.put(item.getUid().getValue(), item);
+      }
     }
 
     for (ICalendarEvent item : modifiedLocalEvents) {
       VEvent source = createVEvent(item);
       VEvent target = modifiedRemoteEvents.get(source.getUid().getValue());
+      List<VEvent> overrides = createRecurrenceOverrides(item, source.getUid().getValue());
 
       // If uid is empty, the event is new
       if (StringUtils.isBlank(item.getUid())) {
         item.setUid(source.getUid().getValue());
         Calendar cal = newCalendar();
         cal.getComponents().add(source);
+        cal.getComponents().addAll(overrides);
         collection.addCalendar(cal);
         allRemoteUids.add(item.getUid());
       }
@@ -720,7 +838,7 @@ public class ICalendarService {
           updateEvent(source, target, keepRemote);
           modifiedRemoteEvents.remove(target.getUid().getValue());
         }
-        updatedEvents.add(target);
+        updatedEvents.put(target, overrides);
       }
     }
 
@@ -731,9 +849,10 @@ public class ICalendarService {
     }
 
     // update remote events
-    for (VEvent item : updatedEvents) {
+    for (Map.Entry<VEvent, List<VEvent>> entry : updatedEvents.entrySet()) {
       Calendar cal = newCalendar();
-      cal.getComponents().add(item);
+      cal.getComponents().add(entry.getKey());
+      cal.getComponents().addAll(entry.getValue());
       collection.updateCalendar(cal);
     }
 
@@ -969,20 +1088,44 @@ public class ICalendarService {
     }
   }
 
+  /**
+   * Get the events to export, leaving out the stored occurrences of the recurrent events: they are
+   * exported with their recurrent event. Once synchronized, only the events changed since are
+   * exported, with the recurrent events of the occurrences changed since.
+   */
   private List<ICalendarEvent> getICalendarEvents(ICalendar calendar) {
     LocalDateTime lastSynchro = calendar.getLastSynchronizationDateT();
     if (lastSynchro != null) {
-      return iEventRepo
-          .all()
-          .filter(
-              "COALESCE(self.archived, false) = false AND self.calendar = ?1 AND COALESCE(self.updatedOn, self.createdOn) > ?2",
-              calendar,
-              lastSynchro)
-          .fetch();
+      List<ICalendarEvent> modifiedEvents =
+          iEventRepo
+              .all()
+              .filter(
+                  "COALESCE(self.archived, false) = false AND self.calendar = ?1"
+                      + " AND COALESCE(self.updatedOn, self.createdOn) > ?2",
+                  calendar,
+                  lastSynchro)
+              .fetch();
+
+      Map<Long, ICalendarEvent> eventMap = new LinkedHashMap<>();
+      for (ICalendarEvent event : modifiedEvents) {
+        if (event.getIsRecurrenceOccurrence() == Boolean.TRUE) {
+          event = getRecurrenceEvent(event);
+          if (event == null
+              || event.getArchived() == Boolean.TRUE
+              || !calendar.equals(event.getCalendar())) {
+            continue;
+          }
+        }
+        eventMap.putIfAbsent(event.getId(), event);
+      }
+      return new ArrayList<>(eventMap.values());
     }
     return iEventRepo
         .all()
-        .filter("COALESCE(self.archived, false) = false AND self.calendar = ?1", calendar)
+        .filter(
+            "COALESCE(self.archived, false) = false AND self.calendar = ?1"
+                + " AND COALESCE(self.isRecurrenceOccurrence, false) = false",
+            calendar)
         .fetch();
   }
 
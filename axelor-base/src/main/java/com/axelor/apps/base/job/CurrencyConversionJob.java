@@ -18,6 +18,7 @@
 package com.axelor.apps.base.job;
 
 import com.axelor.apps.base.service.CurrencyConversionService;
+import com.axelor.apps.base.service.CurrencyRateIndex;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
 import org.quartz.Job;
@@ -28,12 +29,16 @@ public class CurrencyConversionJob implements Job {
 
   @Inject private CurrencyConversionService currencyConversionService;
 
+  @Inject private CurrencyRateIndex currencyRateIndex;
+
   @Override
   public void execute(JobExecutionContext context) throws JobExecutionException {
     try {
       currencyConversionService.updateCurrencyConverion();
     } catch (AxelorException e) {
       throw new JobExecutionException(e);
+    } finally {
+      currencyRateIndex.invalidate();
     }
   }
 }
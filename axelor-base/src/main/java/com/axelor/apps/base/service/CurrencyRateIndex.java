@@ -0,0 +1,285 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.apps.tool.TransactionTool;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the currency conversion lines of the application configuration, loaded with
+ * one query on first use and kept until a transaction saving a conversion line or the
+ * configuration is committed.
+ *
+ * <p>Lines are indexed by currency pair, then by start date in a sorted map, so the rate of a pair
+ * at a date is found in O(log n): the line starting last before the date, or when it has ended,
+ * the earlier line overlapping it which ends after it.
+ */
+@Singleton
+public class CurrencyRateIndex {
+
+  public static final int DEFAULT_RATE_SCALE = 10;
+
+  /** Exchange rate of a conversion line, valid from a date to an optional date. */
+  public static class Rate {
+
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+    private final BigDecimal exchangeRate;
+
+    /** Latest line starting before this one and ending after it, set when loading the index. */
+    private Rate fallback;
+
+    public Rate(LocalDate fromDate, LocalDate toDate, BigDecimal exchangeRate) {
+      this.fromDate = fromDate;
+      this.toDate = toDate;
+      this.exchangeRate = exchangeRate;
+    }
+
+    public LocalDate getFromDate() {
+      return fromDate;
+    }
+
+    public LocalDate getToDate() {
+      return toDate;
+    }
+
+    public BigDecimal getExchangeRate() {
+      return exchangeRate;
+    }
+
+    public boolean covers(LocalDate date) {
+      return !fromDate.isAfter(date) && (toDate == null || !toDate.isBefore(date));
+    }
+  }
+
+  private static class Snapshot {
+
+    private final Map<Long, Map<Long, NavigableMap<LocalDate, Rate>>> rateMap;
+
+    private final Map<Long, Set<Long>> neighbourMap = new HashMap<>();
+
+    private final long generation;
+
+    private Snapshot(Map<Long, Map<Long, NavigableMap<LocalDate, Rate>>> rateMap, long generation) {
+      this.rateMap = rateMap;
+      this.generation = generation;
+
+      for (Map.Entry<Long, Map<Long, NavigableMap<LocalDate, Rate>>> entry : rateMap.entrySet()) {
+        for (Long endCurrencyId : entry.getValue().keySet()) {
+          neighbourMap
+              .computeIfAbsent(entry.getKey(), id -> new LinkedHashSet<>())
+              .add(endCurrencyId);
+          neighbourMap
+              .computeIfAbsent(endCurrencyId, id -> new LinkedHashSet<>())
+              .add(entry.getKey());
+        }
+      }
+    }
+  }
+
+  private volatile Snapshot snapshot;
+
+  /** Incremented by each invalidation, a snapshot loaded before the last one is stale. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /** Mark the rates as stale: the next lookup reads all the conversion lines again. */
+  public void invalidate() {
+    generation.incrementAndGet();
+  }
+
+  /** Mark the rates as stale when the transaction saving a conversion line commits. */
+  public void invalidateAfterCommit() {
+    TransactionTool.runAfterCommit(this::invalidate);
+  }
+
+  /**
+   * Find the conversion line from a currency to another which covers a date.
+   *
+   * @param startCurrencyId
+   * @param endCurrencyId
+   * @param date
+   * @return the rate of the line, or null if there is no line for this pair at this date
+   */
+  public Rate findRate(Long startCurrencyId, Long endCurrencyId, LocalDate date) {
+    NavigableMap<LocalDate, Rate> dateMap =
+        getSnapshot()
+            .rateMap
+            .getOrDefault(startCurrencyId, Collections.emptyMap())
+            .get(endCurrencyId);
+
+    if (dateMap == null) {
+      return null;
+    }
+
+    Map.Entry<LocalDate, Rate> entry = dateMap.floorEntry(date);
+    Rate rate = entry == null ? null : entry.getValue();
+
+    // Fallbacks end later and later, they are only followed when lines of the pair overlap.
+    while (rate != null && !rate.covers(date)) {
+      rate = rate.fallback;
+    }
+
+    return rate;
+  }
+
+  /**
+   * Compute the rate from a currency to another through a third currency, using the direct or the
+   * inverse lines of both legs.
+   *
+   * @param startCurrencyId
+   * @param endCurrencyId
+   * @param date
+   * @return the cross rate, or null if there is no pivot currency with rates at this date
+   */
+  public BigDecimal findCrossRate(Long startCurrencyId, Long endCurrencyId, LocalDate date) {
+    Snapshot current = getSnapshot();
+    Set<Long> pivotIds = current.neighbourMap.getOrDefault(startCurrencyId, Collections.emptySet());
+
+    for (Long pivotId : pivotIds) {
+      if (pivotId.equals(endCurrencyId)
+          || !current.neighbourMap.get(pivotId).contains(endCurrencyId)) {
+        continue;
+      }
+
+      BigDecimal startRate = findDirectOrInverseRate(startCurrencyId, pivotId, date);
+      BigDecimal endRate =
+          startRate == null ? null : findDirectOrInverseRate(pivotId, endCurrencyId, date);
+
+      if (endRate != null) {
+        return startRate.multiply(endRate).setScale(DEFAULT_RATE_SCALE, RoundingMode.HALF_EVEN);
+      }
+    }
+
+    return null;
+  }
+
+  protected BigDecimal findDirectOrInverseRate(
+      Long startCurrencyId, Long endCurrencyId, LocalDate date) {
+
+    Rate rate = findRate(startCurrencyId, endCurrencyId, date);
+    if (rate != null) {
+      return rate.getExchangeRate();
+    }
+
+    rate = findRate(endCurrencyId, startCurrencyId, date);
+    if (rate == null || rate.getExchangeRate() == null || rate.getExchangeRate().signum() == 0) {
+      return null;
+    }
+
+    return BigDecimal.ONE.divide(
+        rate.getExchangeRate(), DEFAULT_RATE_SCALE, RoundingMode.HALF_EVEN);
+  }
+
+  private Snapshot getSnapshot() {
+    Snapshot current = snapshot;
+    if (current == null || current.generation != generation.get()) {
+      synchronized (this) {
+        current = snapshot;
+        long loadGeneration = generation.get();
+        if (current == null || current.generation != loadGeneration) {
+          Map<Long, Map<Long, NavigableMap<LocalDate, Rate>>> rateMap = load();
+          for (Map<Long, NavigableMap<LocalDate, Rate>> endRateMap : rateMap.values()) {
+            endRateMap.values().forEach(this::linkFallbacks);
+          }
+          current = new Snapshot(rateMap, loadGeneration);
+          snapshot = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Link each line of a pair to the latest line starting before it and ending after it, the
+   * previous greater end date found with a stack.
+   */
+  protected void linkFallbacks(NavigableMap<LocalDate, Rate> dateMap) {
+    Deque<Rate> stack = new ArrayDeque<>();
+
+    for (Rate rate : dateMap.values()) {
+      while (!stack.isEmpty() && !endsAfter(stack.peek(), rate)) {
+        stack.pop();
+      }
+      rate.fallback = stack.peek();
+      stack.push(rate);
+    }
+  }
+
+  private boolean endsAfter(Rate rate, Rate other) {
+    return rate.toDate == null || other.toDate != null && rate.toDate.isAfter(other.toDate);
+  }
+
+  /** Read the rates of all the currency pairs, as saved in database, and index them by date. */
+  protected Map<Long, Map<Long, NavigableMap<LocalDate, Rate>>> load() {
+    List<Object[]> rowList =
+        TransactionTool.callInNewEntityManager(
+            em ->
+                em.createQuery(
+                        "SELECT self.startCurrency.id, self.endCurrency.id, self.fromDate, "
+                            + "self.toDate, self.exchangeRate FROM CurrencyConversionLine self "
+                            + "WHERE self.appBase IS NOT NULL ORDER BY self.id",
+                        Object[].class)
+                    .getResultList());
+
+    Map<Long, Map<Long, NavigableMap<LocalDate, Rate>>> rateMap = new HashMap<>();
+
+    for (Object[] row : rowList) {
+      addRate(
+          rateMap,
+          (Long) row[0],
+          (Long) row[1],
+          new Rate((LocalDate) row[2], (LocalDate) row[3], (BigDecimal) row[4]));
+    }
+
+    return rateMap;
+  }
+
+  /**
+   * Add a rate to the index. Of several lines of a pair starting the same day, the first one is
+   * kept, as it was by the scan of the configuration lines.
+   */
+  protected void addRate(
+      Map<Long, Map<Long, NavigableMap<LocalDate, Rate>>> rateMap,
+      Long startCurrencyId,
+      Long endCurrencyId,
+      Rate rate) {
+
+    if (rate.getFromDate() == null) {
+      return;
+    }
+
+    rateMap
+        .computeIfAbsent(startCurrencyId, id -> new HashMap<>())
+        .computeIfAbsent(endCurrencyId, id -> new TreeMap<>())
+        .putIfAbsent(rate.getFromDate(), rate);
+  }
+}
@@ -18,8 +18,8 @@
 package com.axelor.apps.base.service;
 
 import com.axelor.apps.base.db.Currency;
-import com.axelor.apps.base.db.CurrencyConversionLine;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
+import com.axelor.apps.base.service.CurrencyRateIndex.Rate;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
@@ -31,7 +31,6 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,18 +41,22 @@ public class CurrencyService {
 
   protected AppBaseService appBaseService;
 
+  protected CurrencyRateIndex currencyRateIndex;
+
   private LocalDate today;
 
   @Inject
-  public CurrencyService(AppBaseService appBaseService) {
+  public CurrencyService(AppBaseService appBaseService, CurrencyRateIndex currencyRateIndex) {
 
     this.appBaseService = appBaseService;
+    this.currencyRateIndex = currencyRateIndex;
     this.today = appBaseService.getTodayDate();
   }
 
   public CurrencyService(LocalDate today) {
 
     this.appBaseService = Beans.get(AppBaseService.class);
+    this.currencyRateIndex = Beans.get(CurrencyRateIndex.class);
     this.today = today;
   }
 
@@ -71,16 +74,30 @@ public class CurrencyService {
 
       LocalDate dateToConvert = this.getDateToConvert(date);
 
-      CurrencyConversionLine currencyConversionLine =
-          this.getCurrencyConversionLine(startCurrency, endCurrency, dateToConvert);
-      if (currencyConversionLine != null) {
-        return currencyConversionLine.getExchangeRate();
+      log.debug(
+          "Currency from: {}, Currency to: {}, localDate: {}",
+          startCurrency,
+          endCurrency,
+          dateToConvert);
+
+      Rate rate =
+          currencyRateIndex.findRate(startCurrency.getId(), endCurrency.getId(), dateToConvert);
+      if (rate != null) {
+        return rate.getExchangeRate();
       } else {
-        currencyConversionLine =
-            this.getCurrencyConversionLine(endCurrency, startCurrency, dateToConvert);
+        rate =
+            currencyRateIndex.findRate(endCurrency.getId(), startCurrency.getId(), dateToConvert);
       }
 
-      if (currencyConversionLine == null) {
+      if (rate == null) {
+        BigDecimal crossRate =
+            currencyRateIndex.findCrossRate(
+                startCurrency.getId(), endCurrency.getId(), dateToConvert);
+
+        if (crossRate != null) {
+          return crossRate;
+        }
+
         throw new AxelorException(
             TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
             I18n.get(IExceptionMessage.CURRENCY_1),
@@ -89,7 +106,7 @@ public class CurrencyService {
             dateToConvert);
       }
 
-      BigDecimal exchangeRate = currencyConversionLine.getExchangeRate();
+      BigDecimal exchangeRate = rate.getExchangeRate();
 
       if (exchangeRate == null || exchangeRate.compareTo(BigDecimal.ZERO) == 0) {
         throw new AxelorException(
@@ -101,45 +118,12 @@ public class CurrencyService {
       }
 
       return BigDecimal.ONE.divide(
-          currencyConversionLine.getExchangeRate(), 10, RoundingMode.HALF_EVEN);
+          exchangeRate, CurrencyRateIndex.DEFAULT_RATE_SCALE, RoundingMode.HALF_EVEN);
     }
 
     return BigDecimal.ONE;
   }
 
-  private CurrencyConversionLine getCurrencyConversionLine(
-      Currency startCurrency, Currency endCurrency, LocalDate localDate) {
-
-    List<CurrencyConversionLine> currencyConversionLineList =
-        appBaseService.getCurrencyConfigurationLineList();
-
-    if (currencyConversionLineList == null) {
-      return null;
-    }
-
-    log.debug(
-        "Currency from: {}, Currency to: {}, localDate: {}", startCurrency, endCurrency, localDate);
-
-    for (CurrencyConversionLine ccl : currencyConversionLineList) {
-
-      String cclStartCode = ccl.getStartCurrency().getCode();
-      String cclEndCode = ccl.getEndCurrency().getCode();
-      String startCode = startCurrency.getCode();
-      String endCode = endCurrency.getCode();
-      LocalDate fromDate = ccl.getFromDate();
-      LocalDate toDate = ccl.getToDate();
-
-      if (cclStartCode.equals(startCode) && cclEndCode.equals(endCode)) {
-        if ((fromDate.isBefore(localDate) || fromDate.equals(localDate))
-            && (toDate == null || toDate.isAfter(localDate) || toDate.isEqual(localDate))) {
-          return ccl;
-        }
-      }
-    }
-
-    return null;
-  }
-
   /**
    * Convert the amount in start currency into the end currency according to the date to convert
    *
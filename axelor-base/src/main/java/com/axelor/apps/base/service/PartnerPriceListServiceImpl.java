@@ -40,10 +40,17 @@ import java.util.stream.Collectors;
 public class PartnerPriceListServiceImpl implements PartnerPriceListService {
 
   protected AppBaseService appBaseService;
+  protected PriceListIndex priceListIndex;
+  protected PriceListRepository priceListRepo;
 
   @Inject
-  public PartnerPriceListServiceImpl(AppBaseService appBaseService) {
+  public PartnerPriceListServiceImpl(
+      AppBaseService appBaseService,
+      PriceListIndex priceListIndex,
+      PriceListRepository priceListRepo) {
     this.appBaseService = appBaseService;
+    this.priceListIndex = priceListIndex;
+    this.priceListRepo = priceListRepo;
   }
 
   @Override
@@ -93,6 +100,30 @@ public class PartnerPriceListServiceImpl implements PartnerPriceListService {
     if (partner == null) {
       return null;
     }
+    if (partner.getId() == null) {
+      return resolveDefaultPriceList(partner, priceListTypeSelect);
+    }
+    Long priceListId =
+        priceListIndex.findDefaultPriceListId(
+            partner.getId(),
+            priceListTypeSelect,
+            appBaseService.getTodayDate(),
+            () -> {
+              PriceList priceList = resolveDefaultPriceList(partner, priceListTypeSelect);
+              return priceList != null ? priceList.getId() : null;
+            });
+    return priceListId != null ? priceListRepo.find(priceListId) : null;
+  }
+
+  /**
+   * Find the price list of the partner price list of the partner which applies today, if it is the
+   * only one.
+   *
+   * @param partner
+   * @param priceListTypeSelect
+   * @return
+   */
+  protected PriceList resolveDefaultPriceList(Partner partner, int priceListTypeSelect) {
     partner = Beans.get(PartnerRepository.class).find(partner.getId());
     PartnerPriceList partnerPriceList = getPartnerPriceList(partner, priceListTypeSelect);
     if (partnerPriceList == null) {
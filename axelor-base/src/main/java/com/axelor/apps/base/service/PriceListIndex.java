@@ -0,0 +1,333 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.apps.tool.TransactionTool;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index of the price list lines, loaded from the committed rows with one query per price
+ * list on first use and kept until a newer version of the price list is used or a transaction
+ * saving or removing one of its lines is committed.
+ *
+ * <p>Lines of a price list are indexed by product and by product category, each with its lines
+ * sorted by minimum quantity, so the line of a quantity is found by binary search. The default
+ * price list of the partners is cached as well, for the current day.
+ */
+@Singleton
+public class PriceListIndex {
+
+  /** Lines of a product or a product category, sorted by minimum quantity. */
+  protected static class QtyBreaks {
+
+    private final BigDecimal[] minQtys;
+    private final long[] lineIds;
+
+    QtyBreaks(List<BigDecimal> minQtyList, List<Long> lineIdList) {
+      minQtys = minQtyList.toArray(new BigDecimal[0]);
+      lineIds = new long[lineIdList.size()];
+      for (int i = 0; i < lineIds.length; i++) {
+        lineIds[i] = lineIdList.get(i);
+      }
+    }
+
+    /**
+     * Find the line with the highest minimum quantity which is lower or equal to the quantity.
+     *
+     * @param qty
+     * @return the id of the line, or null if the quantity is lower than all the minimums
+     */
+    Long find(BigDecimal qty) {
+      int low = 0;
+      int high = minQtys.length - 1;
+      int found = -1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        if (minQtys[middle].compareTo(qty) <= 0) {
+          found = middle;
+          low = middle + 1;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return found < 0 ? null : lineIds[found];
+    }
+  }
+
+  protected static class Entry {
+
+    private final Integer version;
+    private final Map<Long, QtyBreaks> productMap;
+    private final Map<Long, QtyBreaks> productCategoryMap;
+
+    protected Entry(
+        Integer version,
+        Map<Long, QtyBreaks> productMap,
+        Map<Long, QtyBreaks> productCategoryMap) {
+      this.version = version;
+      this.productMap = productMap;
+      this.productCategoryMap = productCategoryMap;
+    }
+  }
+
+  private final Map<Long, Entry> entryMap = new ConcurrentHashMap<>();
+
+  private final Map<String, Optional<Long>> defaultPriceListMap = new ConcurrentHashMap<>();
+
+  private volatile LocalDate defaultPriceListDate;
+
+  /** Transactions changing the default price lists and not completed yet. */
+  private final AtomicInteger pendingDefaultPriceListChangeCount = new AtomicInteger();
+
+  private final AtomicLong lineHitCount = new AtomicLong();
+  private final AtomicLong lineMissCount = new AtomicLong();
+  private final AtomicLong defaultPriceListHitCount = new AtomicLong();
+  private final AtomicLong defaultPriceListMissCount = new AtomicLong();
+
+  /** Drop the lines of a price list and every default price list resolved so far. */
+  public void invalidatePriceList(Long priceListId) {
+    if (priceListId != null) {
+      entryMap.remove(priceListId);
+    }
+    defaultPriceListMap.clear();
+  }
+
+  /** Discard the default price lists of the partners. */
+  public void invalidateDefaultPriceLists() {
+    defaultPriceListMap.clear();
+  }
+
+  /**
+   * Drop the lines of a price list when the transaction editing it commits, so that a rolled back
+   * price change keeps the previous prices.
+   */
+  public void invalidatePriceListAfterCommit(Long priceListId) {
+    invalidateDefaultPriceListsAfterCommit();
+    if (priceListId != null) {
+      TransactionTool.runAfterCommit(() -> entryMap.remove(priceListId));
+    }
+  }
+
+  /**
+   * Drop the default price lists of the partners when the transaction changing a partner or a
+   * price list commits. While such a transaction is open, default price lists are resolved from
+   * database on every call and not kept.
+   */
+  public void invalidateDefaultPriceListsAfterCommit() {
+    pendingDefaultPriceListChangeCount.incrementAndGet();
+    TransactionTool.runAfterCompletion(
+        committed -> {
+          if (committed) {
+            defaultPriceListMap.clear();
+          }
+          pendingDefaultPriceListChangeCount.decrementAndGet();
+        });
+  }
+
+  /**
+   * Find the line of a price list applying to a product and a quantity: the line of the product
+   * with the highest minimum quantity lower or equal to the quantity, or else the line of its
+   * product category.
+   *
+   * @param priceListId
+   * @param version version of the price list, its lines are loaded again when it is newer than the
+   *     loaded one
+   * @param productId
+   * @param productCategoryId can be null
+   * @param qty
+   * @return the id of the line, or null if no line applies
+   */
+  public Long findPriceListLineId(
+      Long priceListId, Integer version, Long productId, Long productCategoryId, BigDecimal qty) {
+
+    if (qty == null) {
+      return null;
+    }
+
+    Entry entry = getEntry(priceListId, version);
+
+    QtyBreaks qtyBreaks = entry.productMap.get(productId);
+    Long lineId = qtyBreaks == null ? null : qtyBreaks.find(qty);
+    if (lineId == null && productCategoryId != null) {
+      qtyBreaks = entry.productCategoryMap.get(productCategoryId);
+      lineId = qtyBreaks == null ? null : qtyBreaks.find(qty);
+    }
+    return lineId;
+  }
+
+  protected Entry getEntry(Long priceListId, Integer version) {
+    Entry entry = entryMap.get(priceListId);
+    if (entry != null && !isNewer(version, entry.version)) {
+      lineHitCount.incrementAndGet();
+      return entry;
+    }
+
+    return entryMap.compute(
+        priceListId,
+        (id, current) -> {
+          if (current != null && !isNewer(version, current.version)) {
+            lineHitCount.incrementAndGet();
+            return current;
+          }
+          lineMissCount.incrementAndGet();
+          return load(id, version);
+        });
+  }
+
+  protected boolean isNewer(Integer version, Integer loadedVersion) {
+    return version != null && (loadedVersion == null || version > loadedVersion);
+  }
+
+  /**
+   * Read the lines of a price list together with the version they belong to, outside the
+   * transaction of the caller.
+   *
+   * @param priceListId
+   * @param version version used by the caller, the entry gets the committed one
+   * @return
+   */
+  protected Entry load(Long priceListId, Integer version) {
+    return TransactionTool.callInNewEntityManager(
+        em -> {
+          List<Integer> versionList =
+              em.createQuery(
+                      "SELECT self.version FROM PriceList self WHERE self.id = :priceListId",
+                      Integer.class)
+                  .setParameter("priceListId", priceListId)
+                  .getResultList();
+
+          List<Object[]> rowList =
+              em.createQuery(
+                      "SELECT self.id, self.product.id, self.productCategory.id, self.minQty "
+                          + "FROM PriceListLine self "
+                          + "WHERE self.priceList.id = :priceListId AND self.minQty IS NOT NULL "
+                          + "ORDER BY self.minQty, self.id",
+                      Object[].class)
+                  .setParameter("priceListId", priceListId)
+                  .getResultList();
+
+          return createEntry(versionList.isEmpty() ? null : versionList.get(0), rowList);
+        });
+  }
+
+  /**
+   * Create the index of the lines of a price list.
+   *
+   * @param version
+   * @param rowList lines as id, product id, product category id and minimum quantity, sorted by
+   *     minimum quantity
+   * @return
+   */
+  protected Entry createEntry(Integer version, List<Object[]> rowList) {
+    Map<Long, List<Object[]>> productRowMap = new HashMap<>();
+    Map<Long, List<Object[]>> productCategoryRowMap = new HashMap<>();
+
+    for (Object[] row : rowList) {
+      if (row[1] != null) {
+        productRowMap.computeIfAbsent((Long) row[1], id -> new ArrayList<>()).add(row);
+      }
+      if (row[2] != null) {
+        productCategoryRowMap.computeIfAbsent((Long) row[2], id -> new ArrayList<>()).add(row);
+      }
+    }
+
+    return new Entry(version, toQtyBreaks(productRowMap), toQtyBreaks(productCategoryRowMap));
+  }
+
+  protected Map<Long, QtyBreaks> toQtyBreaks(Map<Long, List<Object[]>> rowMap) {
+    Map<Long, QtyBreaks> qtyBreaksMap = new HashMap<>();
+    for (Map.Entry<Long, List<Object[]>> rowEntry : rowMap.entrySet()) {
+      List<BigDecimal> minQtyList = new ArrayList<>();
+      List<Long> lineIdList = new ArrayList<>();
+      for (Object[] row : rowEntry.getValue()) {
+        lineIdList.add((Long) row[0]);
+        minQtyList.add((BigDecimal) row[3]);
+      }
+      qtyBreaksMap.put(rowEntry.getKey(), new QtyBreaks(minQtyList, lineIdList));
+    }
+    return qtyBreaksMap;
+  }
+
+  /**
+   * Get the default price list of a partner, resolved once a day unless the partner or the price
+   * lists are changed.
+   *
+   * @param partnerId
+   * @param priceListTypeSelect
+   * @param date current day
+   * @param resolver resolution of the default price list of the partner
+   * @return the id of the price list, or null if the partner has no default price list
+   */
+  public Long findDefaultPriceListId(
+      Long partnerId, int priceListTypeSelect, LocalDate date, Supplier<Long> resolver) {
+
+    if (!Objects.equals(date, defaultPriceListDate)) {
+      defaultPriceListMap.clear();
+      defaultPriceListDate = date;
+    }
+
+    String key = partnerId + ":" + priceListTypeSelect;
+    Optional<Long> priceListId = defaultPriceListMap.get(key);
+    if (priceListId != null) {
+      defaultPriceListHitCount.incrementAndGet();
+      return priceListId.orElse(null);
+    }
+
+    if (pendingDefaultPriceListChangeCount.get() > 0) {
+      defaultPriceListMissCount.incrementAndGet();
+      return resolver.get();
+    }
+
+    return defaultPriceListMap
+        .computeIfAbsent(
+            key,
+            k -> {
+              defaultPriceListMissCount.incrementAndGet();
+              return Optional.ofNullable(resolver.get());
+            })
+        .orElse(null);
+  }
+
+  public long getLineHitCount() {
+    return lineHitCount.get();
+  }
+
+  public long getLineMissCount() {
+    return lineMissCount.get();
+  }
+
+  public long getDefaultPriceListHitCount() {
+    return defaultPriceListHitCount.get();
+  }
+
+  public long getDefaultPriceListMissCount() {
+    return defaultPriceListMissCount.get();
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
+import com.axelor.apps.tool.TransactionTool;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory graph of the unit conversions, loaded with one query on first use and kept until a
+ * transaction saving or removing a unit conversion is committed.
+ *
+ * <p>Units are the vertices and each conversion gives an edge in both directions, the reverse
+ * edge using the inverse of the coefficient. Paths between two units are found by breadth-first
+ * search, so a conversion can go through intermediate units (box → pack → unit), and are cached.
+ */
+@Singleton
+public class UnitConversionGraph {
+
+  public static final int DEFAULT_COEFFICIENT_SCALE = 12;
+
+  /** Conversion from one unit to another, following a unit conversion in one direction. */
+  public static class Edge {
+
+    private final Long unitConversionId;
+    private final Long endUnitId;
+    private final boolean inverse;
+    private final int typeSelect;
+    private final BigDecimal coef;
+    private final String formula;
+
+    Edge(
+        Long unitConversionId,
+        Long endUnitId,
+        boolean inverse,
+        int typeSelect,
+        BigDecimal coef,
+        String formula) {
+      this.unitConversionId = unitConversionId;
+      this.endUnitId = endUnitId;
+      this.inverse = inverse;
+      this.typeSelect = typeSelect;
+      this.coef = coef;
+      this.formula = formula;
+    }
+
+    public Long getUnitConversionId() {
+      return unitConversionId;
+    }
+
+    public boolean isInverse() {
+      return inverse;
+    }
+
+    public boolean isFormula() {
+      return typeSelect != UnitConversionRepository.TYPE_COEFF;
+    }
+
+    public String getFormula() {
+      return formula;
+    }
+
+    /**
+     * Get the coefficient of a coefficient conversion, inverted for a reverse edge.
+     *
+     * @return the coefficient, or null if the conversion can not be used in this direction
+     */
+    public BigDecimal getCoef() {
+      if (coef == null) {
+        return null;
+      }
+      if (!inverse) {
+        return coef;
+      }
+      if (coef.signum() == 0) {
+        return null;
+      }
+      return BigDecimal.ONE.divide(coef, DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    boolean isUsable(boolean withFormula) {
+      return isFormula() ? withFormula && formula != null : getCoef() != null;
+    }
+  }
+
+  private static class Snapshot {
+
+    private final Map<Long, List<Edge>> edgeMap;
+
+    private final Map<String, Optional<List<Edge>>> pathCache = new ConcurrentHashMap<>();
+
+    private final long generation;
+
+    private Snapshot(Map<Long, List<Edge>> edgeMap, long generation) {
+      this.edgeMap = edgeMap;
+      this.generation = generation;
+    }
+  }
+
+  private volatile Snapshot snapshot;
+
+  /** Incremented by each invalidation, a snapshot loaded before the last one is stale. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /** Mark the graph as stale: the next conversion rebuilds it from the unit conversions. */
+  public void invalidate() {
+    generation.incrementAndGet();
+  }
+
+  /** Mark the graph as stale when the transaction saving a unit conversion commits. */
+  public void invalidateAfterCommit() {
+    TransactionTool.runAfterCommit(this::invalidate);
+  }
+
+  /**
+   * Find the shortest path of conversions between two units.
+   *
+   * @param startUnitId
+   * @param endUnitId
+   * @param withFormula whether formula conversions can be used, they need a product
+   * @return the conversions to apply in order, empty if the units are the same, or null if there
+   *     is no path
+   */
+  public List<Edge> findPath(Long startUnitId, Long endUnitId, boolean withFormula) {
+    if (startUnitId.equals(endUnitId)) {
+      return Collections.emptyList();
+    }
+
+    Snapshot current = getSnapshot();
+    String key = startUnitId + ":" + endUnitId + ":" + withFormula;
+
+    return current
+        .pathCache
+        .computeIfAbsent(
+            key,
+            k -> Optional.ofNullable(search(current.edgeMap, startUnitId, endUnitId, withFormula)))
+        .orElse(null);
+  }
+
+  private Snapshot getSnapshot() {
+    Snapshot current = snapshot;
+    if (current == null || current.generation != generation.get()) {
+      synchronized (this) {
+        current = snapshot;
+        long loadGeneration = generation.get();
+        if (current == null || current.generation != loadGeneration) {
+          current = new Snapshot(load(), loadGeneration);
+          snapshot = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /** Read the edges of the graph from the unit conversions saved in database. */
+  protected Map<Long, List<Edge>> load() {
+    List<Object[]> rowList =
+        TransactionTool.callInNewEntityManager(
+            em ->
+                em.createQuery(
+                        "SELECT self.id, self.startUnit.id, self.endUnit.id, self.typeSelect, "
+                            + "self.coef, self.formula FROM UnitConversion self ORDER BY self.id",
+                        Object[].class)
+                    .getResultList());
+
+    Map<Long, List<Edge>> edgeMap = new HashMap<>();
+
+    for (Object[] row : rowList) {
+      addConversion(
+          edgeMap,
+          (Long) row[0],
+          (Long) row[1],
+          (Long) row[2],
+          row[3] == null ? UnitConversionRepository.TYPE_COEFF : (Integer) row[3],
+          (BigDecimal) row[4],
+          (String) row[5]);
+    }
+
+    return edgeMap;
+  }
+
+  protected void addConversion(
+      Map<Long, List<Edge>> edgeMap,
+      Long unitConversionId,
+      Long startUnitId,
+      Long endUnitId,
+      int typeSelect,
+      BigDecimal coef,
+      String formula) {
+
+    edgeMap
+        .computeIfAbsent(startUnitId, unitId -> new ArrayList<>())
+        .add(new Edge(unitConversionId, endUnitId, false, typeSelect, coef, formula));
+    edgeMap
+        .computeIfAbsent(endUnitId, unitId -> new ArrayList<>())
+        .add(new Edge(unitConversionId, startUnitId, true, typeSelect, coef, formula));
+  }
+
+  protected List<Edge> search(
+      Map<Long, List<Edge>> edgeMap, Long startUnitId, Long endUnitId, boolean withFormula) {
+
+    Map<Long, Edge> previousEdgeMap = new HashMap<>();
+    Map<Long, Long> previousUnitMap = new HashMap<>();
+    Deque<Long> queue = new ArrayDeque<>();
+    queue.add(startUnitId);
+    previousUnitMap.put(startUnitId, null);
+
+    while (!queue.isEmpty()) {
+      Long unitId = queue.poll();
+
+      for (Edge edge : edgeMap.getOrDefault(unitId, Collections.emptyList())) {
+        if (previousUnitMap.containsKey(edge.endUnitId) || !edge.isUsable(withFormula)) {
+          continue;
+        }
+
+        previousUnitMap.put(edge.endUnitId, unitId);
+        previousEdgeMap.put(edge.endUnitId, edge);
+
+        if (edge.endUnitId.equals(endUnitId)) {
+          LinkedList<Edge> path = new LinkedList<>();
+          for (Long id = endUnitId; !id.equals(startUnitId); id = previousUnitMap.get(id)) {
+            path.addFirst(previousEdgeMap.get(id));
+          }
+          return Collections.unmodifiableList(new ArrayList<>(path));
+        }
+
+        queue.add(edge.endUnitId);
+      }
+    }
+
+    return null;
+  }
+}
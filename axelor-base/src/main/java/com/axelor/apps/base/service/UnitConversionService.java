@@ -22,24 +22,21 @@ import com.axelor.apps.base.db.Unit;
 import com.axelor.apps.base.db.UnitConversion;
 import com.axelor.apps.base.db.repo.UnitConversionRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
+import com.axelor.apps.base.service.UnitConversionGraph.Edge;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.tool.service.ScriptCacheService;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
-import com.axelor.tool.template.TemplateMaker;
 import com.google.inject.Inject;
 import com.google.inject.servlet.RequestScoped;
-import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import org.codehaus.groovy.control.CompilationFailedException;
-import org.codehaus.groovy.control.CompilerConfiguration;
-import org.codehaus.groovy.control.customizers.ImportCustomizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,14 +45,17 @@ public class UnitConversionService {
   private static final Logger logger =
       LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-  private static final char TEMPLATE_DELIMITER = '$';
-  private static final int DEFAULT_COEFFICIENT_SCALE = 12;
-  protected TemplateMaker maker;
+  private static final int DEFAULT_COEFFICIENT_SCALE =
+      UnitConversionGraph.DEFAULT_COEFFICIENT_SCALE;
 
   @Inject protected AppBaseService appBaseService;
 
   @Inject protected UnitConversionRepository unitConversionRepo;
 
+  @Inject protected UnitConversionGraph unitConversionGraph;
+
+  @Inject protected ScriptCacheService scriptCacheService;
+
   /**
    * Convert a value from a unit to another
    *
@@ -77,17 +77,62 @@ public class UnitConversionService {
           I18n.get(IExceptionMessage.UNIT_CONVERSION_2));
 
     if (startUnit.equals(endUnit)) return value;
-    else {
-      try {
-        BigDecimal coefficient =
-            this.getCoefficient(unitConversionRepo.all().fetch(), startUnit, endUnit, product);
-
-        return value.multiply(coefficient).setScale(scale, RoundingMode.HALF_EVEN);
-      } catch (IOException | ClassNotFoundException e) {
-        e.printStackTrace();
+
+    BigDecimal coefficient = this.getCoefficient(startUnit, endUnit, product);
+
+    return value.multiply(coefficient).setScale(scale, RoundingMode.HALF_EVEN);
+  }
+
+  /**
+   * Get the conversion coefficient between two units from the graph of the unit conversions. If
+   * there is no conversion between the units, conversions through other units are used.
+   *
+   * @param startUnit The start unit
+   * @param endUnit The end unit
+   * @param product Optionnal, a product used for complex conversions. Input null if needless.
+   * @return A conversion coefficient to convert from startUnit to endUnit.
+   * @throws AxelorException There is no conversion path between the units.
+   */
+  public BigDecimal getCoefficient(Unit startUnit, Unit endUnit, Product product)
+      throws AxelorException {
+
+    List<Edge> path =
+        unitConversionGraph.findPath(startUnit.getId(), endUnit.getId(), product != null);
+
+    if (path == null) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.UNIT_CONVERSION_1),
+          startUnit.getName(),
+          endUnit.getName());
+    }
+
+    BigDecimal coefficient = BigDecimal.ONE;
+
+    for (Edge edge : path) {
+      BigDecimal edgeCoefficient = edge.getCoef();
+
+      if (edge.isFormula()) {
+        edgeCoefficient = this.evaluateFormula(edge.getFormula(), product);
+
+        if (edge.isInverse()) {
+          if (edgeCoefficient.signum() == 0) {
+            throw new AxelorException(
+                TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+                I18n.get(IExceptionMessage.UNIT_CONVERSION_1),
+                startUnit.getName(),
+                endUnit.getName());
+          }
+          edgeCoefficient =
+              BigDecimal.ONE.divide(
+                  edgeCoefficient, DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_EVEN);
+        }
       }
+
+      coefficient = coefficient.multiply(edgeCoefficient);
     }
-    return value;
+
+    return coefficient;
   }
 
   /**
@@ -112,11 +157,6 @@ public class UnitConversionService {
       Product product)
       throws AxelorException, CompilationFailedException, ClassNotFoundException, IOException {
     /* Looking for the start unit and the end unit in the unitConversionList to get the coefficient */
-    if (product != null) {
-      this.maker = new TemplateMaker(Locale.FRENCH, TEMPLATE_DELIMITER, TEMPLATE_DELIMITER);
-      this.maker.setContext(product, "Product");
-    }
-    String eval = null;
     for (UnitConversion unitConversion : unitConversionList) {
 
       if (unitConversion.getStartUnit().equals(startUnit)
@@ -124,15 +164,7 @@ public class UnitConversionService {
         if (unitConversion.getTypeSelect() == UnitConversionRepository.TYPE_COEFF) {
           return unitConversion.getCoef();
         } else if (product != null) {
-          maker.setTemplate(unitConversion.getFormula());
-          eval = maker.make();
-          CompilerConfiguration conf = new CompilerConfiguration();
-          ImportCustomizer customizer = new ImportCustomizer();
-          customizer.addStaticStars("java.lang.Math");
-          conf.addCompilationCustomizers(customizer);
-          Binding binding = new Binding();
-          GroovyShell shell = new GroovyShell(binding, conf);
-          return new BigDecimal(shell.evaluate(eval).toString());
+          return this.evaluateFormula(unitConversion.getFormula(), product);
         }
       }
 
@@ -145,15 +177,7 @@ public class UnitConversionService {
           return BigDecimal.ONE.divide(
               unitConversion.getCoef(), DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_EVEN);
         } else if (product != null) {
-          maker.setTemplate(unitConversion.getFormula());
-          eval = maker.make();
-          CompilerConfiguration conf = new CompilerConfiguration();
-          ImportCustomizer customizer = new ImportCustomizer();
-          customizer.addStaticStars("java.lang.Math");
-          conf.addCompilationCustomizers(customizer);
-          Binding binding = new Binding();
-          GroovyShell shell = new GroovyShell(binding, conf);
-          BigDecimal result = new BigDecimal(shell.evaluate(eval).toString());
+          BigDecimal result = this.evaluateFormula(unitConversion.getFormula(), product);
           if (result.compareTo(BigDecimal.ZERO) != 0) {
             return BigDecimal.ONE.divide(result, DEFAULT_COEFFICIENT_SCALE, RoundingMode.HALF_EVEN);
           }
@@ -167,4 +191,18 @@ public class UnitConversionService {
         startUnit.getName(),
         endUnit.getName());
   }
+
+  /**
+   * Evaluate the formula of a unit conversion for a product. The formula is compiled once and
+   * cached, unless it uses template expressions other than property paths.
+   *
+   * @param formula The formula, a groovy expression where $Product.field$ is a field of the product
+   * @param product The product
+   * @return The result of the formula
+   */
+  protected BigDecimal evaluateFormula(String formula, Product product) {
+    Object result =
+        scriptCacheService.evalTemplate(formula, Collections.singletonMap("Product", product));
+    return new BigDecimal(result.toString());
+  }
 }
@@ -17,10 +17,13 @@
  */
 package com.axelor.apps.base.service.administration;
 
+import com.axelor.app.AppSettings;
 import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.repo.BatchRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.auth.AuditableRunner;
+import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.AuditableModel;
 import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
@@ -28,13 +31,30 @@ import com.axelor.db.Model;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.google.common.base.Preconditions;
 import com.google.inject.persist.Transactional;
+import com.google.inject.persist.UnitOfWork;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
+import javax.persistence.EntityTransaction;
+import javax.persistence.TypedQuery;
+import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +63,14 @@ public abstract class AbstractBatch {
 
   public static final int FETCH_LIMIT = 10;
 
+  /** Number of workers used to process a partitioned batch (1 to process it sequentially). */
+  public static final String PARTITION_THREADS = "batch.partition.threads";
+
+  /** Number of records of a partition, each partition being processed in its own transaction. */
+  public static final String PARTITION_SIZE = "batch.partition.size";
+
+  public static final int DEFAULT_PARTITION_SIZE = 100;
+
   @Inject protected AppBaseService appBaseService;
 
   protected static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -173,6 +201,24 @@ public abstract class AbstractBatch {
     LOG.debug("Anomaly ::: {}", anomaly);
   }
 
+  /**
+   * Increment the done and anomaly counters at once, with a single check point.
+   *
+   * @param doneCount
+   * @param anomalyCount
+   */
+  protected void incrementCounters(int doneCount, int anomalyCount) {
+    findBatch();
+
+    done += doneCount;
+    anomaly += anomalyCount;
+    batch.setDone(done);
+    batch.setAnomaly(anomaly);
+    checkPoint();
+
+    LOG.debug("Done ::: {}, Anomaly ::: {}", done, anomaly);
+  }
+
   protected void addComment(String comment) {
     findBatch();
 
@@ -226,6 +272,322 @@ public abstract class AbstractBatch {
     return field.getType().equals(EntityHelper.getEntityClass(model));
   }
 
+  /** Process one record of a partitioned batch. */
+  @FunctionalInterface
+  public interface RecordProcessor<T extends Model> {
+
+    /**
+     * Process a record, in the transaction of its partition. When a record of the partition fails,
+     * the partition is rolled back and its records are processed again, each in its own
+     * transaction, so a record can be processed twice.
+     *
+     * @param record the record to process, attached to the entity manager of the worker
+     * @return true if the record must be counted as done, false if it was skipped
+     * @throws Exception counted as an anomaly and traced on the batch
+     */
+    boolean process(T record) throws Exception;
+  }
+
+  /**
+   * Process the records matching a filter by partitions of consecutive ids.
+   *
+   * <p>Partitions are computed with keyset paging on the id, so the cost of a partition does not
+   * depend on its position and records leaving the filter while being processed are neither
+   * skipped nor repeated. Each partition is loaded and processed in its own transaction and the
+   * done and anomaly counters are saved on the batch once, at the end.
+   *
+   * <p>With {@value #PARTITION_THREADS} greater than 1 in the application settings, partitions are
+   * processed in parallel, each worker having its own request scope and entity manager and running
+   * as the user who started the batch. The processor is then called from several threads: it must
+   * not use entities loaded by the calling thread (including {@code batch}), but reload them from
+   * their ids.
+   *
+   * @param modelClass the class of the records
+   * @param filter the JPQL filter on {@code self}, with named parameters
+   * @param params the values of the named parameters of the filter
+   * @param traceCategory the category used to trace the anomalies
+   * @param processor the processor of a record
+   */
+  protected <T extends Model> void processByPartitions(
+      Class<T> modelClass,
+      String filter,
+      Map<String, Object> params,
+      String traceCategory,
+      RecordProcessor<T> processor) {
+
+    final AppSettings settings = AppSettings.get();
+    final int threadCount = Math.max(1, settings.getInt(PARTITION_THREADS, 1));
+    final int partitionSize =
+        Math.max(1, settings.getInt(PARTITION_SIZE, DEFAULT_PARTITION_SIZE));
+    final long batchId = batch.getId();
+    final AtomicInteger doneCount = new AtomicInteger();
+    final AtomicInteger anomalyCount = new AtomicInteger();
+
+    final Subject subject = AuthUtils.getSubject();
+
+    ExecutorService executor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+    List<Future<?>> futureList = new ArrayList<>();
+
+    try {
+      long lastId = 0L;
+      List<Long> idList;
+
+      while (!(idList = fetchIdPartition(modelClass, filter, params, lastId, partitionSize))
+          .isEmpty()) {
+
+        final long firstId = idList.get(0);
+        lastId = idList.get(idList.size() - 1);
+        final long partitionLastId = lastId;
+
+        if (executor == null) {
+          processPartition(
+              modelClass,
+              filter,
+              params,
+              firstId,
+              partitionLastId,
+              batchId,
+              traceCategory,
+              processor,
+              doneCount,
+              anomalyCount);
+          JPA.clear();
+          continue;
+        }
+
+        futureList.add(
+            executor.submit(
+                () ->
+                    runInWorker(
+                        subject,
+                        () -> {
+                          threadBatchId.set(batchId);
+                          try {
+                            processPartition(
+                                modelClass,
+                                filter,
+                                params,
+                                firstId,
+                                partitionLastId,
+                                batchId,
+                                traceCategory,
+                                processor,
+                                doneCount,
+                                anomalyCount);
+                          } finally {
+                            threadBatchId.remove();
+                          }
+                        })));
+      }
+
+      for (Future<?> future : futureList) {
+        future.get();
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      TraceBackService.trace(e, traceCategory, batchId);
+    } catch (ExecutionException e) {
+      TraceBackService.trace(e.getCause(), traceCategory, batchId);
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      incrementCounters(doneCount.get(), anomalyCount.get());
+    }
+  }
+
+  /**
+   * Run a partition in a worker thread, in a request scope and a unit of work of its own: the
+   * entity manager of the worker is closed when the partition ends. The partition runs as the user
+   * of the calling thread, so the records it saves are audited with this user.
+   *
+   * @param subject the subject of the calling thread, null if there is none
+   * @param partition the processing of the partition
+   */
+  protected Void runInWorker(Subject subject, Runnable partition) throws Exception {
+
+    Callable<Void> job =
+        () -> {
+          RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+          UnitOfWork unitOfWork = Beans.get(UnitOfWork.class);
+          try (RequestScoper.CloseableScope ignored = scope.open()) {
+            unitOfWork.begin();
+            try {
+              Beans.get(AuditableRunner.class).run(partition);
+            } finally {
+              unitOfWork.end();
+            }
+          }
+          return null;
+        };
+
+    return subject != null ? subject.execute(job) : job.call();
+  }
+
+  /**
+   * Fetch the ids of the next partition, following the given id.
+   *
+   * @return the ids of the partition, in ascending order
+   */
+  protected <T extends Model> List<Long> fetchIdPartition(
+      Class<T> modelClass, String filter, Map<String, Object> params, long lastId, int limit) {
+
+    TypedQuery<Long> query =
+        JPA.em()
+            .createQuery(
+                String.format(
+                    "SELECT self.id FROM %s self WHERE (%s) AND self.id > :_lastId ORDER BY self.id",
+                    modelClass.getSimpleName(),
+                    filter),
+                Long.class)
+            .setParameter("_lastId", lastId)
+            .setMaxResults(limit);
+
+    params.forEach(query::setParameter);
+
+    return query.getResultList();
+  }
+
+  /**
+   * Load and process the records of a partition in a transaction. If a record fails or the
+   * transaction cannot be committed, the partition is rolled back and its records are processed
+   * again one by one, each in its own transaction, so the writes of a failed record are never
+   * committed.
+   */
+  protected <T extends Model> void processPartition(
+      Class<T> modelClass,
+      String filter,
+      Map<String, Object> params,
+      long firstId,
+      long lastId,
+      long batchId,
+      String traceCategory,
+      RecordProcessor<T> processor,
+      AtomicInteger doneCount,
+      AtomicInteger anomalyCount) {
+
+    List<Throwable> errorList = new ArrayList<>();
+    List<Long> idList = null;
+    int partitionDone = 0;
+    int partitionAnomaly = 0;
+    boolean retry = false;
+
+    EntityTransaction transaction = JPA.em().getTransaction();
+    boolean ownTransaction = !transaction.isActive();
+
+    try {
+      if (ownTransaction) {
+        transaction.begin();
+      }
+
+      TypedQuery<T> query =
+          JPA.em()
+              .createQuery(
+                  String.format(
+                      "SELECT self FROM %s self WHERE (%s) AND self.id BETWEEN :_firstId AND :_lastId ORDER BY self.id",
+                      modelClass.getSimpleName(),
+                      filter),
+                  modelClass)
+              .setParameter("_firstId", firstId)
+              .setParameter("_lastId", lastId);
+
+      params.forEach(query::setParameter);
+
+      List<T> recordList = query.getResultList();
+      idList = new ArrayList<>();
+      for (T record : recordList) {
+        idList.add(record.getId());
+      }
+
+      for (T record : recordList) {
+        try {
+          if (processor.process(record)) {
+            partitionDone++;
+          }
+        } catch (Exception e) {
+          if (ownTransaction) {
+            retry = true;
+            break;
+          }
+          // Joined transaction of the caller, which can not be partially rolled back.
+          errorList.add(e);
+          partitionAnomaly++;
+        }
+      }
+
+      if (ownTransaction) {
+        if (retry || transaction.getRollbackOnly()) {
+          transaction.rollback();
+          retry = true;
+        } else {
+          transaction.commit();
+        }
+      }
+
+    } catch (Exception e) {
+      if (ownTransaction && transaction.isActive()) {
+        transaction.rollback();
+      }
+      if (ownTransaction && idList != null) {
+        retry = true;
+      } else {
+        errorList.add(e);
+        partitionAnomaly += Math.max(partitionDone, 1);
+        partitionDone = 0;
+      }
+    }
+
+    if (retry) {
+      JPA.clear();
+      partitionDone = 0;
+      partitionAnomaly = 0;
+
+      for (Long id : idList) {
+        try {
+          if (processRecord(modelClass, id, processor)) {
+            partitionDone++;
+          }
+        } catch (Exception e) {
+          errorList.add(e);
+          partitionAnomaly++;
+        }
+      }
+    }
+
+    doneCount.addAndGet(partitionDone);
+    anomalyCount.addAndGet(partitionAnomaly);
+
+    for (Throwable error : errorList) {
+      TraceBackService.trace(error, traceCategory, batchId);
+    }
+  }
+
+  /**
+   * Reload and process a record of a failed partition in its own transaction.
+   *
+   * @return true if the record must be counted as done
+   * @throws Exception if the record fails, its transaction being rolled back
+   */
+  protected <T extends Model> boolean processRecord(
+      Class<T> modelClass, Long id, RecordProcessor<T> processor) throws Exception {
+
+    EntityTransaction transaction = JPA.em().getTransaction();
+    transaction.begin();
+
+    try {
+      T record = JPA.em().find(modelClass, id);
+      boolean done = record != null && processor.process(record);
+      transaction.commit();
+      return done;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+      JPA.clear();
+    }
+  }
+
   protected Batch findBatch() {
     if (!JPA.em().contains(batch)) {
       batch = JPA.find(Batch.class, batch.getId());
@@ -0,0 +1,170 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.db.Query;
+import com.google.common.base.Preconditions;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetch the records matching a filter by chunks, using keyset paging on the id.
+ *
+ * <p>Each chunk is fetched with {@code self.id > :lastId ORDER BY self.id}, so its cost does not
+ * depend on the number of records already fetched, and records leaving the filter while being
+ * processed are neither skipped nor repeated. The entity manager is cleared before fetching the
+ * next chunk: entities of a previous chunk, including the batch, must be reloaded.
+ *
+ * <pre>
+ * KeysetPager&lt;Invoice&gt; pager =
+ *     KeysetPager.of(Invoice.class).filter("self.company = :company").bind("company", company);
+ *
+ * for (List&lt;Invoice&gt; invoiceList; !(invoiceList = pager.fetchNext()).isEmpty(); ) {
+ *   findBatch();
+ *   ...
+ * }
+ * </pre>
+ *
+ * @param <T> the type of the records
+ */
+public class KeysetPager<T extends Model> {
+
+  private static final String LAST_ID = "_keysetLastId";
+
+  private final Class<T> modelClass;
+
+  private String filter;
+
+  private final Map<String, Object> params = new HashMap<>();
+
+  private int limit = AbstractBatch.FETCH_LIMIT;
+
+  private long lastId;
+
+  private boolean clear;
+
+  private boolean finished;
+
+  protected KeysetPager(Class<T> modelClass) {
+    this.modelClass = Preconditions.checkNotNull(modelClass);
+  }
+
+  public static <T extends Model> KeysetPager<T> of(Class<T> modelClass) {
+    return new KeysetPager<>(modelClass);
+  }
+
+  /**
+   * Set the JPQL filter on {@code self}, with named parameters.
+   *
+   * @param filter
+   * @return this pager
+   */
+  public KeysetPager<T> filter(String filter) {
+    this.filter = filter;
+    return this;
+  }
+
+  /**
+   * Bind a named parameter of the filter. A parameter can be bound again between two chunks, the
+   * new value is used by the next chunk.
+   *
+   * @param name
+   * @param value
+   * @return this pager
+   */
+  public KeysetPager<T> bind(String name, Object value) {
+    params.put(name, value);
+    return this;
+  }
+
+  public KeysetPager<T> bind(Map<String, Object> params) {
+    this.params.putAll(params);
+    return this;
+  }
+
+  /**
+   * Set the number of records of a chunk, {@link AbstractBatch#FETCH_LIMIT} by default.
+   *
+   * @param limit
+   * @return this pager
+   */
+  public KeysetPager<T> limit(int limit) {
+    Preconditions.checkArgument(limit > 0, "The chunk size must be positive.");
+    this.limit = limit;
+    return this;
+  }
+
+  /**
+   * Continue after the given id. Records of the current chunk following this id are fetched again
+   * in the next chunk: used when a chunk has been interrupted by an error.
+   *
+   * @param id the id of the last processed record
+   * @return this pager
+   */
+  public KeysetPager<T> seek(long id) {
+    lastId = id;
+    finished = false;
+    return this;
+  }
+
+  public long getLastId() {
+    return lastId;
+  }
+
+  /**
+   * Clear the entity manager, unless this is the first chunk, and fetch the next chunk.
+   *
+   * @return the records of the chunk in ascending id order, an empty list when all the records
+   *     have been fetched
+   */
+  public List<T> fetchNext() {
+    if (finished) {
+      return Collections.emptyList();
+    }
+
+    if (clear) {
+      JPA.clear();
+    }
+    clear = true;
+
+    Query<T> query =
+        JPA.all(modelClass)
+            .filter(
+                filter == null
+                    ? String.format("self.id > :%s", LAST_ID)
+                    : String.format("(%s) AND self.id > :%s", filter, LAST_ID))
+            .bind(params)
+            .bind(LAST_ID, lastId)
+            .order("id");
+
+    List<T> list = query.fetch(limit);
+
+    if (list.size() < limit) {
+      finished = true;
+    }
+    if (!list.isEmpty()) {
+      lastId = list.get(list.size() - 1).getId();
+    }
+
+    return list;
+  }
+}
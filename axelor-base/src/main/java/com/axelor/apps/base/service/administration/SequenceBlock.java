@@ -0,0 +1,97 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Block of numbers reserved on a sequence version, handed out without lock.
+ *
+ * <p>Numbers of a block which are not handed out before the server stops are lost, so blocks are
+ * only used for sequences accepting gaps.
+ */
+public class SequenceBlock {
+
+  private final Long sequenceVersionId;
+
+  private final LocalDate startDate;
+
+  private final LocalDate endDate;
+
+  private final AtomicLong nextNum;
+
+  private final long endNum;
+
+  private final long step;
+
+  /**
+   * @param sequenceVersionId id of the sequence version the numbers are reserved on
+   * @param startDate start date of the sequence version
+   * @param endDate end date of the sequence version, null if open
+   * @param firstNum first number of the block
+   * @param step increment of the sequence
+   * @param size count of numbers of the block
+   */
+  public SequenceBlock(
+      Long sequenceVersionId,
+      LocalDate startDate,
+      LocalDate endDate,
+      long firstNum,
+      long step,
+      int size) {
+    this.sequenceVersionId = sequenceVersionId;
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.nextNum = new AtomicLong(firstNum);
+    this.endNum = firstNum + step * size;
+    this.step = step;
+  }
+
+  /**
+   * Check whether the sequence version of the block covers the given date.
+   *
+   * @param refDate
+   * @return
+   */
+  public boolean covers(LocalDate refDate) {
+    return !refDate.isBefore(startDate) && (endDate == null || !refDate.isAfter(endDate));
+  }
+
+  /**
+   * Hand out the next number of the block.
+   *
+   * @return the number, or -1 if the block is exhausted
+   */
+  public long next() {
+    if (nextNum.get() >= endNum) {
+      return -1;
+    }
+    long num = nextNum.getAndAdd(step);
+    return num < endNum ? num : -1;
+  }
+
+  public Long getSequenceVersionId() {
+    return sequenceVersionId;
+  }
+
+  /** @return the first number following the block */
+  public long getEndNum() {
+    return endNum;
+  }
+}
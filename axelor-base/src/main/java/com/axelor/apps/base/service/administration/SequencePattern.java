@@ -0,0 +1,142 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.administration;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Prefix or suffix of a sequence, parsed once into literal parts and date tags.
+ *
+ * <p>Supported tags are %YYYY (full year), %YY (year), %M (month), %FM (full month), %D (day) and
+ * %WY (week number). Patterns are cached by their text, so a modified prefix or suffix is parsed
+ * again on its first use.
+ */
+public final class SequencePattern {
+
+  private static final DateTimeFormatter YEAR_FORMATTER = DateTimeFormatter.ofPattern("yy");
+
+  private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MM");
+
+  /** Tags in matching order: a tag must come before the tags it starts with. */
+  private static final String[] TAGS = {"%YYYY", "%YY", "%M", "%FM", "%D", "%WY"};
+
+  private static final List<Function<LocalDate, String>> TAG_FORMATTERS =
+      Collections.unmodifiableList(
+          Arrays.<Function<LocalDate, String>>asList(
+              date -> Integer.toString(date.get(ChronoField.YEAR_OF_ERA)),
+              date -> date.format(YEAR_FORMATTER),
+              date -> Integer.toString(date.getMonthValue()),
+              date -> date.format(MONTH_FORMATTER),
+              date -> Integer.toString(date.getDayOfMonth()),
+              date -> Integer.toString(date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR))));
+
+  private static final Map<String, SequencePattern> CACHE = new ConcurrentHashMap<>();
+
+  private static final SequencePattern EMPTY = new SequencePattern(Collections.emptyList());
+
+  private final List<Function<LocalDate, String>> parts;
+
+  private SequencePattern(List<Function<LocalDate, String>> parts) {
+    this.parts = parts;
+  }
+
+  /**
+   * Get the parsed pattern of a prefix or suffix.
+   *
+   * @param pattern the prefix or suffix, can be null
+   * @return
+   */
+  public static SequencePattern of(String pattern) {
+    if (pattern == null || pattern.isEmpty()) {
+      return EMPTY;
+    }
+    return CACHE.computeIfAbsent(pattern, SequencePattern::parse);
+  }
+
+  private static SequencePattern parse(String pattern) {
+    List<Function<LocalDate, String>> parts = new ArrayList<>();
+    StringBuilder literal = new StringBuilder();
+    int index = 0;
+
+    while (index < pattern.length()) {
+      int tagIndex = findTag(pattern, index);
+
+      if (tagIndex < 0) {
+        literal.append(pattern.charAt(index++));
+        continue;
+      }
+
+      if (literal.length() > 0) {
+        parts.add(literalPart(literal.toString()));
+        literal.setLength(0);
+      }
+      parts.add(TAG_FORMATTERS.get(tagIndex));
+      index += TAGS[tagIndex].length();
+    }
+
+    if (literal.length() > 0) {
+      parts.add(literalPart(literal.toString()));
+    }
+
+    return new SequencePattern(Collections.unmodifiableList(parts));
+  }
+
+  private static int findTag(String pattern, int index) {
+    if (pattern.charAt(index) != '%') {
+      return -1;
+    }
+    for (int i = 0; i < TAGS.length; i++) {
+      if (pattern.startsWith(TAGS[i], index)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static Function<LocalDate, String> literalPart(String literal) {
+    return date -> literal;
+  }
+
+  /**
+   * Append the pattern, with its tags replaced by the values of the given date.
+   *
+   * @param builder
+   * @param refDate
+   * @return the builder
+   */
+  public StringBuilder appendTo(StringBuilder builder, LocalDate refDate) {
+    for (Function<LocalDate, String> part : parts) {
+      builder.append(part.apply(refDate));
+    }
+    return builder;
+  }
+
+  public String format(LocalDate refDate) {
+    return appendTo(new StringBuilder(), refDate).toString();
+  }
+}
@@ -27,6 +27,8 @@ import com.axelor.apps.base.db.repo.SequenceVersionRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.tool.StringTool;
+import com.axelor.apps.tool.TransactionTool;
+import com.axelor.db.JPA;
 import com.axelor.db.Model;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
@@ -35,15 +37,21 @@ import com.axelor.inject.Beans;
 import com.axelor.meta.db.MetaSelectItem;
 import com.axelor.meta.db.repo.MetaSelectItemRepository;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoField;
-import java.time.temporal.IsoFields;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.concurrent.ThreadSafe;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+import javax.persistence.TypedQuery;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,12 +66,18 @@ public class SequenceService {
       PATTERN_YEAR = "%YY",
       PATTERN_MONTH = "%M",
       PATTERN_FULL_MONTH = "%FM",
-      PATTERN_DAY = "%D",
-      PATTERN_WEEK = "%WY",
       PADDING_STRING = "0";
 
+  /** Codes of the sequences whose numbers must not have gaps: never reserved by blocks. */
+  private static final Set<String> GAPLESS_CODES = ImmutableSet.of("invoice", "move");
+
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  /** Reserved blocks by sequence id, then by sequence version id. */
+  private final Map<Long, Map<Long, SequenceBlock>> blockMap = new ConcurrentHashMap<>();
+
+  private final Map<Long, Object> blockLockMap = new ConcurrentHashMap<>();
+
   private SequenceVersionRepository sequenceVersionRepository;
 
   private AppBaseService appBaseService;
@@ -191,51 +205,243 @@ public class SequenceService {
   @Transactional(rollbackOn = {AxelorException.class, Exception.class})
   public String getSequenceNumber(Sequence sequence, LocalDate refDate) {
 
-    SequenceVersion sequenceVersion = getVersion(sequence, refDate);
+    long nextNum = isBlockAllocated(sequence) ? getBlockNum(sequence, refDate) : -1;
 
-    String seqPrefixe = StringUtils.defaultString(sequence.getPrefixe(), ""),
-        seqSuffixe = StringUtils.defaultString(sequence.getSuffixe(), ""),
-        sequenceValue;
+    if (nextNum < 0) {
+      SequenceVersion sequenceVersion = getVersion(sequence, refDate);
+      nextNum = sequenceVersion.getNextNum();
+      sequenceVersion.setNextNum(nextNum + sequence.getToBeAdded());
+      sequenceVersionRepository.save(sequenceVersion);
+    }
+
+    String sequenceValue;
 
     if (sequence.getSequenceTypeSelect() == SequenceTypeSelect.NUMBERS) {
       sequenceValue =
-          StringUtils.leftPad(
-              sequenceVersion.getNextNum().toString(), sequence.getPadding(), PADDING_STRING);
+          StringUtils.leftPad(Long.toString(nextNum), sequence.getPadding(), PADDING_STRING);
     } else {
-      sequenceValue = findNextLetterSequence(sequenceVersion);
+      sequenceValue = findNextLetterSequence(nextNum, sequence.getSequenceLettersTypeSelect());
     }
-    sequenceVersion.setNextNum(sequenceVersion.getNextNum() + sequence.getToBeAdded());
-    String nextSeq =
-        (seqPrefixe + sequenceValue + seqSuffixe)
-            .replaceAll(PATTERN_FULL_YEAR, Integer.toString(refDate.get(ChronoField.YEAR_OF_ERA)))
-            .replaceAll(PATTERN_YEAR, refDate.format(DateTimeFormatter.ofPattern("yy")))
-            .replaceAll(PATTERN_MONTH, Integer.toString(refDate.getMonthValue()))
-            .replaceAll(PATTERN_FULL_MONTH, refDate.format(DateTimeFormatter.ofPattern("MM")))
-            .replaceAll(PATTERN_DAY, Integer.toString(refDate.getDayOfMonth()))
-            .replaceAll(
-                PATTERN_WEEK, Integer.toString(refDate.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)));
+
+    StringBuilder nextSeq = new StringBuilder();
+    SequencePattern.of(sequence.getPrefixe()).appendTo(nextSeq, refDate);
+    nextSeq.append(sequenceValue);
+    SequencePattern.of(sequence.getSuffixe()).appendTo(nextSeq, refDate);
 
     log.debug("nextSeq : : : : {}", nextSeq);
 
-    sequenceVersionRepository.save(sequenceVersion);
-    return nextSeq;
+    return nextSeq.toString();
   }
 
-  private String findNextLetterSequence(SequenceVersion sequenceVersion) {
-    long n = sequenceVersion.getNextNum();
+  private String findNextLetterSequence(long n, SequenceLettersTypeSelect lettersTypeSelect) {
     char[] buf = new char[(int) Math.floor(Math.log(25 * (n + 1)) / Math.log(26))];
     for (int i = buf.length - 1; i >= 0; i--) {
       n--;
       buf[i] = (char) ('A' + n % 26);
       n /= 26;
     }
-    if (sequenceVersion.getSequence().getSequenceLettersTypeSelect()
-        == SequenceLettersTypeSelect.UPPERCASE) {
+    if (lettersTypeSelect == SequenceLettersTypeSelect.UPPERCASE) {
       return new String(buf);
     }
     return new String(buf).toLowerCase();
   }
 
+  /**
+   * Check whether the numbers of a sequence are reserved by blocks. Invoice and move sequences
+   * are never reserved by blocks, as their numbers must not have gaps.
+   *
+   * @param sequence
+   * @return
+   */
+  public boolean isBlockAllocated(Sequence sequence) {
+    return sequence.getBlockSize() != null
+        && sequence.getBlockSize() > 1
+        && sequence.getId() != null
+        && !GAPLESS_CODES.contains(sequence.getCode());
+  }
+
+  /**
+   * Hand out the next number of a sequence from the reserved block of the sequence version of the
+   * date, reserving a new block if there is none or if it is exhausted. Each version keeps its own
+   * block, so numbers alternating between periods do not discard each other's blocks.
+   *
+   * @param sequence
+   * @param refDate
+   * @return the number, or -1 if the sequence is not committed yet
+   */
+  protected long getBlockNum(Sequence sequence, LocalDate refDate) {
+
+    final Long sequenceId = sequence.getId();
+
+    while (true) {
+      SequenceBlock block = findBlock(sequenceId, refDate);
+
+      if (block != null) {
+        long num = block.next();
+        if (num > 0) {
+          return num;
+        }
+      }
+
+      synchronized (blockLockMap.computeIfAbsent(sequenceId, id -> new Object())) {
+        if (findBlock(sequenceId, refDate) == block) {
+          SequenceBlock newBlock = reserveBlock(sequence, refDate);
+          if (newBlock == null) {
+            return -1;
+          }
+          blockMap
+              .computeIfAbsent(sequenceId, id -> new ConcurrentHashMap<>())
+              .put(newBlock.getSequenceVersionId(), newBlock);
+        }
+      }
+    }
+  }
+
+  protected SequenceBlock findBlock(Long sequenceId, LocalDate refDate) {
+    Map<Long, SequenceBlock> versionBlockMap = blockMap.get(sequenceId);
+
+    if (versionBlockMap == null) {
+      return null;
+    }
+
+    for (SequenceBlock block : versionBlockMap.values()) {
+      if (block.covers(refDate)) {
+        return block;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Discard the reserved blocks of a sequence once the current transaction is committed, after its
+   * next number, its increment or its block size has been edited. The remaining numbers of the
+   * blocks are lost.
+   *
+   * @param sequenceId
+   */
+  public void invalidateBlocks(Long sequenceId) {
+    if (sequenceId != null) {
+      TransactionTool.runAfterCommit(() -> blockMap.remove(sequenceId));
+    }
+  }
+
+  /**
+   * Reserve a block of numbers on the sequence version of the date, in a short transaction of its
+   * own so that the version is not locked until the end of the caller transaction.
+   *
+   * @param sequence
+   * @param refDate
+   * @return the reserved block, or null if the sequence is not committed yet
+   */
+  protected SequenceBlock reserveBlock(Sequence sequence, LocalDate refDate) {
+
+    EntityManager em = JPA.em().getEntityManagerFactory().createEntityManager();
+    EntityTransaction transaction = em.getTransaction();
+
+    try {
+      transaction.begin();
+
+      Sequence lockedSequence = em.find(Sequence.class, sequence.getId());
+      if (lockedSequence == null) {
+        transaction.rollback();
+        return null;
+      }
+
+      LocalDate startDate = refDate.withDayOfMonth(1);
+      LocalDate endDate = refDate.withDayOfMonth(refDate.lengthOfMonth());
+      TypedQuery<SequenceVersion> query;
+
+      if (lockedSequence.getMonthlyResetOk()) {
+        query =
+            em.createQuery(
+                    "SELECT self FROM SequenceVersion self WHERE self.sequence = :sequence "
+                        + "AND MONTH(self.startDate) = :month AND YEAR(self.startDate) = :year",
+                    SequenceVersion.class)
+                .setParameter("month", refDate.getMonthValue())
+                .setParameter("year", refDate.getYear());
+      } else if (lockedSequence.getYearlyResetOk()) {
+        query =
+            em.createQuery(
+                    "SELECT self FROM SequenceVersion self WHERE self.sequence = :sequence "
+                        + "AND YEAR(self.startDate) = :year",
+                    SequenceVersion.class)
+                .setParameter("year", refDate.getYear());
+      } else {
+        query =
+            em.createQuery(
+                    "SELECT self FROM SequenceVersion self WHERE self.sequence = :sequence "
+                        + "AND self.startDate <= :date "
+                        + "AND (self.endDate IS NULL OR self.endDate >= :date)",
+                    SequenceVersion.class)
+                .setParameter("date", refDate);
+        startDate = refDate;
+        endDate = null;
+      }
+
+      List<SequenceVersion> sequenceVersionList =
+          query
+              .setParameter("sequence", lockedSequence)
+              .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+              .setMaxResults(1)
+              .getResultList();
+
+      SequenceVersion sequenceVersion;
+
+      if (sequenceVersionList.isEmpty()) {
+        sequenceVersion = new SequenceVersion(lockedSequence, startDate, endDate, 1L);
+        em.persist(sequenceVersion);
+      } else {
+        sequenceVersion = sequenceVersionList.get(0);
+      }
+
+      long firstNum = sequenceVersion.getNextNum();
+      SequenceBlock block = getVersionBlock(lockedSequence, sequenceVersion, refDate, firstNum);
+      sequenceVersion.setNextNum(block.getEndNum());
+
+      transaction.commit();
+
+      log.debug(
+          "Sequence {} : numbers {} to {} reserved",
+          lockedSequence.getCode(),
+          firstNum,
+          block.getEndNum());
+
+      return block;
+
+    } catch (RuntimeException e) {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+      throw e;
+    } finally {
+      em.close();
+    }
+  }
+
+  protected SequenceBlock getVersionBlock(
+      Sequence sequence, SequenceVersion sequenceVersion, LocalDate refDate, long firstNum) {
+
+    LocalDate startDate = sequenceVersion.getStartDate();
+    LocalDate endDate = sequenceVersion.getEndDate();
+
+    if (sequence.getMonthlyResetOk()) {
+      startDate = refDate.withDayOfMonth(1);
+      endDate = refDate.withDayOfMonth(refDate.lengthOfMonth());
+    } else if (sequence.getYearlyResetOk()) {
+      startDate = refDate.withDayOfYear(1);
+      endDate = refDate.withDayOfYear(refDate.lengthOfYear());
+    }
+
+    return new SequenceBlock(
+        sequenceVersion.getId(),
+        startDate,
+        endDate,
+        firstNum,
+        sequence.getToBeAdded(),
+        sequence.getBlockSize());
+  }
+
   protected SequenceVersion getVersion(Sequence sequence, LocalDate refDate) {
 
     log.debug("Reference date : : : : {}", refDate);
@@ -25,7 +25,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
-import javax.persistence.Query;
+import org.hibernate.ScrollableResults;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,9 +48,10 @@ public abstract class AdvancedExportGenerator {
    * This method generate the body of export file.
    *
    * @param dataList
+   * @throws AxelorException
    */
   @SuppressWarnings("rawtypes")
-  public abstract void generateBody(List<List> dataList);
+  public abstract void generateBody(List<List> dataList) throws AxelorException;
 
   /**
    * This method close the object.
@@ -83,17 +84,14 @@ public abstract class AdvancedExportGenerator {
   public abstract String getFileName();
 
   /**
-   * This method is used to generate the export file.
+   * This method is used to generate the export file, reading the rows of the query by chunks of
+   * the query fetch size of the advanced export, up to its maximum export limit.
    *
-   * @param advancedExport
    * @param query
    * @return
    * @throws AxelorException
-   * @throws IOException
-   * @throws DocumentException
    */
-  @SuppressWarnings({"unchecked", "rawtypes"})
-  public File generateFile(Query query) throws AxelorException {
+  public File generateFile(AdvancedExportQuery query) throws AxelorException {
 
     AdvancedExport advancedExport = getAdvancedExport();
 
@@ -101,31 +99,74 @@ public abstract class AdvancedExportGenerator {
 
     generateHeader();
 
-    int startPosition = 0;
-    int reachLimit = 0;
     int maxExportLimit = advancedExport.getMaxExportLimit();
-    int queryFetchLimit = advancedExport.getQueryFetchSize();
-    List<List> dataList = new ArrayList<>();
-    query.setMaxResults(queryFetchLimit);
+    int queryFetchSize = Math.max(advancedExport.getQueryFetchSize(), 1);
+
+    int exportCount =
+        query.isOrdered()
+            ? generateOrderedBody(query, queryFetchSize, maxExportLimit)
+            : generateBodyByChunks(query, queryFetchSize, maxExportLimit);
+
+    if (exportCount >= maxExportLimit) {
+      isReachMaxExportLimit = true;
+    }
+    close();
+    return getExportFile();
+  }
+
+  @SuppressWarnings("rawtypes")
+  protected int generateBodyByChunks(
+      AdvancedExportQuery query, int queryFetchSize, int maxExportLimit) throws AxelorException {
+
+    int exportCount = 0;
+    long lastId = 0;
 
-    while (startPosition < maxExportLimit) {
-      if ((maxExportLimit - startPosition) < queryFetchLimit) {
-        query.setMaxResults((maxExportLimit - startPosition));
+    while (exportCount < maxExportLimit) {
+      List<Long> idList = query.fetchNextIds(lastId, queryFetchSize);
+      if (idList.isEmpty()) {
+        break;
+      }
+      lastId = idList.get(idList.size() - 1);
+
+      List<List> dataList = query.fetchRows(idList);
+      if (dataList.size() > maxExportLimit - exportCount) {
+        dataList = dataList.subList(0, maxExportLimit - exportCount);
       }
-      query.setFirstResult(startPosition);
-      dataList = query.getResultList();
-      if (dataList.isEmpty()) break;
 
       generateBody(dataList);
+      exportCount += dataList.size();
+    }
 
-      startPosition = startPosition + queryFetchLimit;
-      reachLimit += dataList.size();
+    return exportCount;
+  }
+
+  @SuppressWarnings("rawtypes")
+  protected int generateOrderedBody(
+      AdvancedExportQuery query, int queryFetchSize, int maxExportLimit) throws AxelorException {
+
+    int exportCount = 0;
+    List<List> dataList = new ArrayList<>(queryFetchSize);
+    ScrollableResults results = query.scroll(queryFetchSize, maxExportLimit);
+
+    try {
+      while (results.next()) {
+        dataList.add((List) results.get(0));
+        if (dataList.size() == queryFetchSize) {
+          generateBody(dataList);
+          exportCount += dataList.size();
+          dataList.clear();
+        }
+      }
+    } finally {
+      results.close();
     }
-    if (maxExportLimit == reachLimit) {
-      isReachMaxExportLimit = true;
+
+    if (!dataList.isEmpty()) {
+      generateBody(dataList);
+      exportCount += dataList.size();
     }
-    close();
-    return getExportFile();
+
+    return exportCount;
   }
 
   public boolean getIsReachMaxExportLimit() {
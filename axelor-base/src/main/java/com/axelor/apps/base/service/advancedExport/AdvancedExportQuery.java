@@ -0,0 +1,244 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.advancedExport;
+
+import com.axelor.db.JPA;
+import com.google.common.base.Joiner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * Query of an advanced export, built by {@link AdvancedExportService} and read by chunks by the
+ * {@link AdvancedExportGenerator}.
+ *
+ * <p>Without ordering on a column, the ids of the records are fetched first, by keyset paging on
+ * the id, then the rows of each chunk of ids. The cost of a chunk does not depend on the number
+ * of rows already exported, and the rows of a record multiplied by a one-to-many column are never
+ * split between two chunks. With ordering on columns, the rows are read through a forward-only
+ * cursor.
+ */
+public class AdvancedExportQuery {
+
+  private final String modelName;
+
+  private final String selectClause;
+
+  private final String joinClause;
+
+  private final String securityJoinClause;
+
+  private final String securityFilter;
+
+  private final List<Object> params;
+
+  private final List<Long> recordIds;
+
+  private final String orderBy;
+
+  /**
+   * @param modelName name of the exported model, aliased {@code self}
+   * @param selectClause {@code SELECT NEW List(...)} of the columns
+   * @param joinClause joins of the columns, can be empty
+   * @param securityJoinClause joins of the security filter, can be empty
+   * @param securityFilter security filter with numbered positional parameters, can be null
+   * @param params values of the positional parameters of the security filter
+   * @param recordIds ids of the records to export, null to export all the records
+   * @param orderBy column aliases to order by, can be empty
+   */
+  AdvancedExportQuery(
+      String modelName,
+      String selectClause,
+      String joinClause,
+      String securityJoinClause,
+      String securityFilter,
+      List<Object> params,
+      List<Long> recordIds,
+      String orderBy) {
+    this.modelName = modelName;
+    this.selectClause = selectClause;
+    this.joinClause = joinClause;
+    this.securityJoinClause = securityJoinClause;
+    this.securityFilter = securityFilter;
+    this.params = params == null ? Collections.emptyList() : params;
+    this.orderBy = orderBy;
+
+    if (recordIds == null) {
+      this.recordIds = null;
+    } else {
+      List<Long> sortedIds = new ArrayList<>(recordIds);
+      Collections.sort(sortedIds);
+      this.recordIds = sortedIds;
+    }
+  }
+
+  public boolean isOrdered() {
+    return !orderBy.isEmpty();
+  }
+
+  /**
+   * Create the query of all the rows of the export, in the order of the export.
+   *
+   * @return
+   */
+  public Query createQuery() {
+    Query query = JPA.em().createQuery(getOrderedQuery(), List.class);
+    for (int i = 0; i < params.size(); i++) {
+      query.setParameter(i + 1, params.get(i));
+    }
+    return query;
+  }
+
+  /**
+   * Open a forward-only cursor on the rows of the export, in the order of the export.
+   *
+   * @param fetchSize number of rows fetched from the database at once
+   * @param maxResults maximum number of rows
+   * @return the cursor, each result holding a row as a list of column values
+   */
+  public ScrollableResults scroll(int fetchSize, int maxResults) {
+    org.hibernate.query.Query<?> query =
+        JPA.em().unwrap(Session.class).createQuery(getOrderedQuery());
+    for (int i = 0; i < params.size(); i++) {
+      query.setParameter(i + 1, params.get(i));
+    }
+    return query
+        .setFetchSize(fetchSize)
+        .setMaxResults(maxResults)
+        .setReadOnly(true)
+        .scroll(ScrollMode.FORWARD_ONLY);
+  }
+
+  protected String getOrderedQuery() {
+    List<String> conditions = new ArrayList<>();
+    if (recordIds != null) {
+      conditions.add(
+          recordIds.isEmpty()
+              ? "self.id IS NULL"
+              : "self.id IN (" + Joiner.on(',').join(recordIds) + ")");
+    }
+    if (securityFilter != null) {
+      conditions.add("(" + securityFilter + ")");
+    }
+
+    StringBuilder builder =
+        new StringBuilder(selectClause)
+            .append(" FROM ")
+            .append(modelName)
+            .append(" self")
+            .append(joinClause)
+            .append(securityJoinClause);
+    if (!conditions.isEmpty()) {
+      builder.append(" WHERE ").append(Joiner.on(" AND ").join(conditions));
+    }
+    builder.append(" ORDER BY ").append(isOrdered() ? orderBy + ", self.id" : "self.id");
+    return builder.toString();
+  }
+
+  /**
+   * Fetch the ids of the next records to export.
+   *
+   * @param lastId id of the last exported record, 0 for the first chunk
+   * @param limit maximum number of ids
+   * @return the ids in ascending order, an empty list when all the records have been fetched
+   */
+  public List<Long> fetchNextIds(long lastId, int limit) {
+    if (recordIds == null) {
+      return fetchIds(lastId, null, limit);
+    }
+
+    int index = Collections.binarySearch(recordIds, lastId);
+    index = index < 0 ? -index - 1 : index + 1;
+
+    // A chunk of the given ids can be emptied by the security filter, the next one is checked.
+    while (index < recordIds.size()) {
+      List<Long> idList = recordIds.subList(index, Math.min(index + limit, recordIds.size()));
+      if (securityFilter == null) {
+        return idList;
+      }
+
+      List<Long> allowedIdList = fetchIds(lastId, idList, limit);
+      if (!allowedIdList.isEmpty()) {
+        return allowedIdList;
+      }
+
+      index += idList.size();
+      lastId = idList.get(idList.size() - 1);
+    }
+
+    return Collections.emptyList();
+  }
+
+  @SuppressWarnings("unchecked")
+  protected List<Long> fetchIds(long lastId, List<Long> idList, int limit) {
+    int position = params.size();
+
+    StringBuilder builder =
+        new StringBuilder("SELECT ")
+            .append(securityJoinClause.isEmpty() ? "" : "DISTINCT ")
+            .append("self.id FROM ")
+            .append(modelName)
+            .append(" self")
+            .append(securityJoinClause)
+            .append(" WHERE self.id > ?")
+            .append(position + 1);
+    if (idList != null) {
+      builder.append(" AND self.id IN (?").append(position + 2).append(")");
+    }
+    if (securityFilter != null) {
+      builder.append(" AND (").append(securityFilter).append(")");
+    }
+    builder.append(" ORDER BY self.id");
+
+    Query query = JPA.em().createQuery(builder.toString()).setMaxResults(limit);
+    for (int i = 0; i < params.size(); i++) {
+      query.setParameter(i + 1, params.get(i));
+    }
+    query.setParameter(position + 1, lastId);
+    if (idList != null) {
+      query.setParameter(position + 2, idList);
+    }
+
+    return query.getResultList();
+  }
+
+  /**
+   * Fetch the rows of the given records, which have been checked against the security filter.
+   *
+   * @param idList
+   * @return the rows in ascending id order, as lists of column values
+   */
+  @SuppressWarnings("rawtypes")
+  public List<List> fetchRows(List<Long> idList) {
+    return JPA.em()
+        .createQuery(
+            selectClause
+                + " FROM "
+                + modelName
+                + " self"
+                + joinClause
+                + " WHERE self.id IN (?1) ORDER BY self.id",
+            List.class)
+        .setParameter(1, idList)
+        .getResultList();
+  }
+}
@@ -21,9 +21,7 @@ import com.axelor.apps.base.db.AdvancedExport;
 import com.axelor.exception.AxelorException;
 import com.axelor.meta.db.MetaModel;
 import com.axelor.rpc.filter.Filter;
-import java.io.File;
 import java.util.List;
-import javax.persistence.Query;
 
 public interface AdvancedExportService {
 
@@ -33,15 +31,12 @@ public interface AdvancedExportService {
   public static final String EXCEL = "EXCEL";
   public static final String CSV = "CSV";
 
-  public Query getAdvancedExportQuery(AdvancedExport advancedExport, List<Long> recordIds)
-      throws AxelorException;
+  public AdvancedExportQuery getAdvancedExportQuery(
+      AdvancedExport advancedExport, List<Long> recordIds) throws AxelorException;
 
-  public File export(AdvancedExport advancedExport, List<Long> recordIds, String fileType)
+  public AdvancedExportGenerator export(
+      AdvancedExport advancedExport, List<Long> recordIds, String fileType)
       throws AxelorException;
 
   public Filter getJpaSecurityFilter(MetaModel metaModel);
-
-  public boolean getIsReachMaxExportLimit();
-
-  public String getExportFileName();
 }
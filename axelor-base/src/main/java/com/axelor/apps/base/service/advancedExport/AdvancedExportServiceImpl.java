@@ -19,9 +19,8 @@ package com.axelor.apps.base.service.advancedExport;
 
 import com.axelor.apps.base.db.AdvancedExport;
 import com.axelor.apps.base.db.AdvancedExportLine;
-import com.axelor.apps.tool.NamingTool;
+import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.auth.AuthUtils;
-import com.axelor.db.JPA;
 import com.axelor.db.JpaSecurity;
 import com.axelor.db.Model;
 import com.axelor.db.hibernate.type.JsonFunction;
@@ -30,12 +29,10 @@ import com.axelor.db.mapper.Property;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.exception.service.TraceBackService;
+import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
-import com.axelor.meta.db.MetaField;
 import com.axelor.meta.db.MetaModel;
 import com.axelor.meta.db.MetaSelect;
-import com.axelor.meta.db.repo.MetaFieldRepository;
-import com.axelor.meta.db.repo.MetaModelRepository;
 import com.axelor.meta.db.repo.MetaSelectRepository;
 import com.axelor.rpc.filter.Filter;
 import com.google.common.base.Joiner;
@@ -43,15 +40,16 @@ import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
-import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedHashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import javax.persistence.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,297 +57,216 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
 
   private static final Logger log = LoggerFactory.getLogger(AdvancedExportServiceImpl.class);
 
-  @Inject private MetaFieldRepository metaFieldRepo;
-
-  @Inject private MetaModelRepository metaModelRepo;
+  /**
+   * Fields of the exported paths, by model and path. They are read from the mappers of the model
+   * classes, which do not change while the server runs.
+   */
+  private static final Map<String, List<Property>> FIELD_PATH_CACHE = new ConcurrentHashMap<>();
 
   @Inject private MetaSelectRepository metaSelectRepo;
 
   @Inject private AdvancedExportGeneratorFactory exportGeneratorFactory;
 
-  private LinkedHashSet<String> joinFieldSet = new LinkedHashSet<>(),
-      selectionJoinFieldSet = new LinkedHashSet<>();
-
-  private List<Object> params = null;
-
-  private String exportFileName, language, selectField, aliasName;
-  private boolean isReachMaxExportLimit, isNormalField, isSelectionField = false;
-  private int msi, mt;
-
   /**
    * This method split and join the all fields/columns which are selected by user and create the
-   * query.
+   * query. The query is built on local state only, so exports can run concurrently.
    *
    * @param advancedExport
-   * @param criteria
+   * @param recordIds
    * @return
    * @throws AxelorException
-   * @throws ClassNotFoundException
    */
   @Override
-  public Query getAdvancedExportQuery(AdvancedExport advancedExport, List<Long> recordIds)
-      throws AxelorException {
-
-    StringBuilder selectFieldBuilder = new StringBuilder(),
-        orderByFieldBuilder = new StringBuilder();
-
-    joinFieldSet.clear();
-    selectionJoinFieldSet.clear();
-    isNormalField = true;
-    selectField = "";
-    msi = 0;
-    mt = 0;
-    int col = 0;
-    language = AuthUtils.getUser().getLanguage();
+  public AdvancedExportQuery getAdvancedExportQuery(
+      AdvancedExport advancedExport, List<Long> recordIds) throws AxelorException {
 
+    MetaModel metaModel = advancedExport.getMetaModel();
+    Class<?> klass;
     try {
-      for (AdvancedExportLine advancedExportLine : advancedExport.getAdvancedExportLineList()) {
-        String[] splitField = advancedExportLine.getTargetField().split("\\.");
-        String alias = "Col_" + col + ",";
-
-        createQueryParts(splitField, 0, advancedExport.getMetaModel());
-
-        selectFieldBuilder.append(aliasName + selectField + " AS " + alias);
-
-        if (advancedExportLine.getOrderBy()) {
-          orderByFieldBuilder.append(alias);
-        }
-        selectField = "";
-        aliasName = "";
-        col++;
-      }
+      klass = Class.forName(metaModel.getFullName());
     } catch (ClassNotFoundException e) {
       TraceBackService.trace(e);
       throw new AxelorException(e, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR);
     }
-    return createQuery(
-        createQueryBuilder(
-            advancedExport.getMetaModel(), selectFieldBuilder, recordIds, orderByFieldBuilder));
-  }
 
-  /**
-   * This method create query parts based on field.
-   *
-   * @param splitField
-   * @param parentIndex
-   * @param metaModel
-   * @throws ClassNotFoundException
-   */
-  private void createQueryParts(String[] splitField, int parentIndex, MetaModel metaModel)
-      throws ClassNotFoundException {
-
-    while (parentIndex <= splitField.length - 1) {
-      MetaField relationalField =
-          metaFieldRepo
-              .all()
-              .filter("self.name = ?1 and self.metaModel = ?2", splitField[parentIndex], metaModel)
-              .fetchOne();
-      MetaModel subMetaModel =
-          metaModelRepo.all().filter("self.name = ?1", relationalField.getTypeName()).fetchOne();
-
-      if (!Strings.isNullOrEmpty(relationalField.getRelationship())) {
-        checkRelationalField(splitField, parentIndex);
-      } else {
-        checkSelectionField(splitField, parentIndex, metaModel);
-        checkNormalField(splitField, parentIndex);
+    String language = AuthUtils.getUser().getLanguage();
+    Map<String, String> joinAliasMap = new HashMap<>();
+    Map<String, Long> metaSelectIdMap = new HashMap<>();
+    StringBuilder joinBuilder = new StringBuilder();
+    List<String> selectFieldList = new ArrayList<>();
+    List<String> orderByFieldList = new ArrayList<>();
+    int col = 0;
+    int selectionCount = 0;
+
+    for (AdvancedExportLine advancedExportLine : advancedExport.getAdvancedExportLineList()) {
+      List<Property> fieldPath = getFieldPath(klass, advancedExportLine.getTargetField());
+      String aliasName = "self";
+      String path = null;
+
+      for (Property property : fieldPath.subList(0, fieldPath.size() - 1)) {
+        path = path == null ? property.getName() : path + "." + property.getName();
+        aliasName = addJoin(joinBuilder, joinAliasMap, aliasName, property.getName(), path);
       }
-      parentIndex += 1;
-      metaModel = subMetaModel;
-    }
-  }
 
-  private void checkRelationalField(String[] splitField, int parentIndex) {
-    String tempAliasName = "";
-    isNormalField = false;
-    if (parentIndex != 0) {
-      tempAliasName = isKeyword(splitField, 0);
-      aliasName = tempAliasName;
-
-      for (int subIndex = 1; subIndex <= parentIndex; subIndex++) {
-        tempAliasName = isKeyword(splitField, subIndex);
-        if (!aliasName.equals(splitField[parentIndex])) {
-          joinFieldSet.add(
-              "LEFT JOIN " + aliasName + "." + splitField[subIndex] + " " + tempAliasName);
-          aliasName = tempAliasName;
+      Property field = fieldPath.get(fieldPath.size() - 1);
+      String selectField = aliasName + "." + field.getName();
+
+      if (field.getTarget() != null) {
+        path = path == null ? field.getName() : path + "." + field.getName();
+        selectField = addJoin(joinBuilder, joinAliasMap, aliasName, field.getName(), path);
+      } else if (!Strings.isNullOrEmpty(field.getSelection())) {
+        Long metaSelectId = getMetaSelectId(metaSelectIdMap, field.getSelection());
+        if (metaSelectId != null) {
+          selectField =
+              addSelectionJoin(
+                  joinBuilder, selectField, metaSelectId, ++selectionCount, language);
         }
       }
-    } else {
-      tempAliasName = isKeyword(splitField, parentIndex);
-      joinFieldSet.add("LEFT JOIN self." + splitField[parentIndex] + " " + tempAliasName);
-      aliasName = tempAliasName;
-    }
-  }
 
-  private String isKeyword(String[] fieldNames, int ind) {
-    if (NamingTool.isKeyword(fieldNames[ind])) {
-      return fieldNames[ind] + "_id";
-    }
-    return fieldNames[ind];
-  }
-
-  private void checkSelectionField(String[] fieldName, int index, MetaModel metaModel)
-      throws ClassNotFoundException {
-
-    Class<?> klass = Class.forName(metaModel.getFullName());
-    Mapper mapper = Mapper.of(klass);
-    MetaSelect metaSelect =
-        metaSelectRepo.findByName(mapper.getProperty(fieldName[index]).getSelection());
-
-    if (metaSelect != null) {
-      isSelectionField = true;
-      String alias = "self";
-      msi++;
-      mt++;
-      if (!isNormalField && index != 0) {
-        alias = aliasName;
+      String alias = "Col_" + col++;
+      selectFieldList.add(selectField + " AS " + alias);
+      if (advancedExportLine.getOrderBy()) {
+        orderByFieldList.add(alias);
       }
-      addSelectionField(fieldName[index], alias, metaSelect.getId());
     }
-  }
 
-  private void addSelectionField(String fieldName, String alias, Long metaSelectId) {
-    String selectionJoin =
-        "LEFT JOIN "
-            + "MetaSelectItem "
-            + ("msi_" + (msi))
-            + " ON CAST("
-            + alias
-            + "."
-            + fieldName
-            + " AS text) = "
-            + ("msi_" + (msi))
-            + ".value AND "
-            + ("msi_" + (msi))
-            + ".select = "
-            + metaSelectId;
-
-    if (language.equals(LANGUAGE_FR)) {
-      selectionJoin +=
-          " LEFT JOIN "
-              + "MetaTranslation "
-              + ("mt_" + (mt))
-              + " ON "
-              + ("msi_" + (msi))
-              + ".title = "
-              + ("mt_" + (mt))
-              + ".key AND "
-              + ("mt_" + (mt))
-              + ".language = \'"
-              + language
-              + "\'";
+    String securityJoinClause = "";
+    String securityFilter = null;
+    List<Object> params = null;
+    Filter filter = getJpaSecurityFilter(metaModel);
+
+    if (filter != null) {
+      JoinHelper helper = new JoinHelper(klass);
+      securityFilter = numberParams(helper.parse(filter.getQuery()));
+      securityJoinClause = helper.toString();
+      params = filter.getParams();
     }
-    selectionJoinFieldSet.add(selectionJoin);
-  }
 
-  private void checkNormalField(String[] splitField, int parentIndex) {
+    AdvancedExportQuery query =
+        new AdvancedExportQuery(
+            metaModel.getName(),
+            "SELECT NEW List(" + Joiner.on(", ").join(selectFieldList) + ")",
+            joinBuilder.toString(),
+            securityJoinClause,
+            securityFilter,
+            params,
+            recordIds,
+            Joiner.on(", ").join(orderByFieldList));
 
-    if (isSelectionField) {
-      if (parentIndex == 0) {
-        selectField = "";
-      }
-      if (language.equals(LANGUAGE_FR)) {
-        aliasName =
-            "COALESCE ("
-                + "NULLIF"
-                + "("
-                + ("mt_" + (mt))
-                + ".message, '') , "
-                + ("msi_" + (msi))
-                + ".title)";
-        selectField += "";
-      } else {
-        aliasName = ("msi_" + (msi));
-        selectField += ".title";
-      }
-      isSelectionField = false;
-    } else {
-      if (parentIndex == 0) {
-        selectField = "";
-        aliasName = "self";
-      }
-      selectField += "." + splitField[parentIndex];
-    }
+    log.debug("query : {}", query.getOrderedQuery());
+
+    return query;
   }
 
   /**
-   * This method build a dynamic query using <i>StringBuilder</i>.
+   * Get the fields of a path, from the field of the model to the exported field.
    *
-   * @param metaModel
-   * @param selectFieldBuilder
-   * @param selectJoinFieldBuilder
-   * @param selectionFieldBuilder
-   * @param criteria
-   * @param orderByFieldBuilder
+   * @param klass
+   * @param targetField
    * @return
+   * @throws AxelorException if a field of the path does not exist
    */
-  private StringBuilder createQueryBuilder(
-      MetaModel metaModel,
-      StringBuilder selectFieldBuilder,
-      List<Long> recordIds,
-      StringBuilder orderByFieldBuilder) {
-
-    String joinField = "", selectionJoinField = "", orderByCol = "";
-
-    joinField = String.join(" ", joinFieldSet);
-    selectionJoinField = String.join(" ", selectionJoinFieldSet);
-
-    params = null;
-    String criteria = getCriteria(metaModel, recordIds);
-
-    if (!orderByFieldBuilder.toString().equals(""))
-      orderByCol =
-          " ORDER BY " + orderByFieldBuilder.substring(0, orderByFieldBuilder.length() - 1);
-
-    StringBuilder queryBuilder = new StringBuilder();
-    queryBuilder.append("SELECT NEW List(");
-    queryBuilder.append(selectFieldBuilder.substring(0, selectFieldBuilder.length() - 1));
-    queryBuilder.append(") FROM " + metaModel.getName() + " self ");
-    queryBuilder.append((!Strings.isNullOrEmpty(joinField)) ? joinField + " " : "");
-    queryBuilder.append(
-        (!Strings.isNullOrEmpty(selectionJoinField)) ? selectionJoinField + " " : "");
-    queryBuilder.append((!Strings.isNullOrEmpty(criteria)) ? criteria : "");
-    queryBuilder.append((!Strings.isNullOrEmpty(orderByCol)) ? orderByCol : "");
-
-    return queryBuilder;
+  protected List<Property> getFieldPath(Class<?> klass, String targetField)
+      throws AxelorException {
+
+    String key = klass.getName() + ":" + targetField;
+    List<Property> fieldPath = FIELD_PATH_CACHE.get(key);
+
+    if (fieldPath == null) {
+      fieldPath = new ArrayList<>();
+      Class<?> currentClass = klass;
+
+      for (String fieldName : targetField.split("\\.")) {
+        Property property =
+            currentClass == null ? null : Mapper.of(currentClass).getProperty(fieldName);
+        if (property == null) {
+          throw new AxelorException(
+              TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+              I18n.get(IExceptionMessage.ADVANCED_EXPORT_5),
+              targetField,
+              klass.getSimpleName());
+        }
+        fieldPath.add(property);
+        currentClass = property.getTarget();
+      }
+
+      fieldPath = Collections.unmodifiableList(fieldPath);
+      FIELD_PATH_CACHE.put(key, fieldPath);
+    }
+
+    return fieldPath;
   }
 
   /**
-   * This method make <i>WHERE</i> clause with criteria.
+   * Add a <code>LEFT JOIN</code> on a relational field, unless the path is already joined.
    *
-   * @param metaModel
-   * @param criteria
-   * @return
+   * @return the alias of the joined path
    */
-  private String getCriteria(MetaModel metaModel, List<Long> recordIds) {
-    String criteria = null;
-    if (recordIds != null) {
-      criteria = recordIds.toString().substring(1, recordIds.toString().length() - 1);
-      log.trace("criteria : {}", recordIds.toString());
-      criteria = " WHERE self.id IN (" + criteria + ")";
+  private String addJoin(
+      StringBuilder joinBuilder,
+      Map<String, String> joinAliasMap,
+      String parentAlias,
+      String fieldName,
+      String path) {
+
+    String joinAlias = joinAliasMap.get(path);
+    if (joinAlias == null) {
+      joinAlias = "j_" + joinAliasMap.size();
+      joinAliasMap.put(path, joinAlias);
+      joinBuilder
+          .append(" LEFT JOIN ")
+          .append(parentAlias)
+          .append('.')
+          .append(fieldName)
+          .append(' ')
+          .append(joinAlias);
     }
-    Filter filter = getJpaSecurityFilter(metaModel);
-    JoinHelper helper = null;
-    if (filter != null) {
-      String permissionFilter = filter.getQuery();
-      try {
-        helper = new JoinHelper(Class.forName(metaModel.getFullName()));
-        permissionFilter = helper.parse(permissionFilter).toString();
-      } catch (ClassNotFoundException e) {
-        TraceBackService.trace(e, e.getMessage());
-      }
-      if (recordIds == null) {
-        criteria = " WHERE " + permissionFilter;
-      } else {
-        criteria += " AND (" + permissionFilter + ")";
-      }
-      params = filter.getParams();
+    return joinAlias;
+  }
+
+  private Long getMetaSelectId(Map<String, Long> metaSelectIdMap, String selection) {
+    if (!metaSelectIdMap.containsKey(selection)) {
+      MetaSelect metaSelect = metaSelectRepo.findByName(selection);
+      metaSelectIdMap.put(selection, metaSelect == null ? null : metaSelect.getId());
     }
+    return metaSelectIdMap.get(selection);
+  }
 
-    if (helper != null) {
-      criteria = helper.toString() + " " + criteria;
+  /**
+   * Add the joins giving the title of the selection item of a field, translated in french.
+   *
+   * @return the expression of the title
+   */
+  private String addSelectionJoin(
+      StringBuilder joinBuilder, String field, Long metaSelectId, int index, String language) {
+
+    String msi = "msi_" + index;
+    joinBuilder.append(
+        String.format(
+            " LEFT JOIN MetaSelectItem %1$s ON CAST(%2$s AS text) = %1$s.value"
+                + " AND %1$s.select = %3$d",
+            msi, field, metaSelectId));
+
+    if (!LANGUAGE_FR.equals(language)) {
+      return msi + ".title";
     }
 
-    return criteria;
+    String mt = "mt_" + index;
+    joinBuilder.append(
+        String.format(
+            " LEFT JOIN MetaTranslation %1$s ON %2$s.title = %1$s.key AND %1$s.language = '%3$s'",
+            mt, msi, language));
+    return "COALESCE (NULLIF(" + mt + ".message, '') , " + msi + ".title)";
+  }
+
+  private String numberParams(String filter) {
+    StringBuilder builder = new StringBuilder(filter);
+    int n = 0, i = builder.indexOf("?");
+    while (i > -1) {
+      builder.replace(i, i + 1, "?" + (++n));
+      i = builder.indexOf("?", i + 1);
+    }
+    return builder.toString();
   }
 
   @SuppressWarnings("unchecked")
@@ -367,22 +284,6 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
     return null;
   }
 
-  private Query createQuery(StringBuilder queryBuilder) {
-    int n = 0, i = queryBuilder.indexOf("?");
-    while (i > -1) {
-      queryBuilder.replace(i, i + 1, "?" + (++n));
-      i = queryBuilder.indexOf("?", i + 1);
-    }
-    log.debug("query : {}", queryBuilder.toString());
-    Query query = JPA.em().createQuery(queryBuilder.toString(), List.class);
-    if (params != null) {
-      for (i = 0; i < params.size(); i++) {
-        query.setParameter(i + 1, params.get(i));
-      }
-    }
-    return query;
-  }
-
   private List<AdvancedExportLine> sortAdvancedExportLineList(
       List<AdvancedExportLine> advancedExportLineList) {
 
@@ -408,10 +309,13 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
    * Initialize the object of <i>AdvancedExportGenerator</i> based on file type and generate the
    * export file.
    *
+   * @return the generator, giving the export file and whether the maximum export limit has been
+   *     reached
    * @throws AxelorException
    */
   @Override
-  public File export(AdvancedExport advancedExport, List<Long> recordIds, String fileType)
+  public AdvancedExportGenerator export(
+      AdvancedExport advancedExport, List<Long> recordIds, String fileType)
       throws AxelorException {
 
     AdvancedExportGenerator exportGenerator =
@@ -419,22 +323,8 @@ public class AdvancedExportServiceImpl implements AdvancedExportService {
 
     sortAdvancedExportLineList(advancedExport.getAdvancedExportLineList());
 
-    Query query = getAdvancedExportQuery(advancedExport, recordIds);
-
-    File file = exportGenerator.generateFile(query);
-    isReachMaxExportLimit = exportGenerator.getIsReachMaxExportLimit();
-    exportFileName = exportGenerator.getExportFileName();
-    return file;
-  }
-
-  @Override
-  public boolean getIsReachMaxExportLimit() {
-    return isReachMaxExportLimit;
-  }
-
-  @Override
-  public String getExportFileName() {
-    return exportFileName;
+    exportGenerator.generateFile(getAdvancedExportQuery(advancedExport, recordIds));
+    return exportGenerator;
   }
 
   /**
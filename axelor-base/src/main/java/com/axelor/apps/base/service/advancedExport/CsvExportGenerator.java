@@ -24,6 +24,7 @@ import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.opencsv.CSVWriter;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -32,6 +33,8 @@ import java.util.List;
 
 public class CsvExportGenerator extends AdvancedExportGenerator {
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+
   private CSVWriter csvWriter;
 
   private String[] totalCols;
@@ -47,7 +50,8 @@ public class CsvExportGenerator extends AdvancedExportGenerator {
     exportFileName = advancedExport.getMetaModel().getName() + ".csv";
     try {
       exportFile = File.createTempFile(advancedExport.getMetaModel().getName(), ".csv");
-      csvWriter = new CSVWriter(new FileWriter(exportFile, true), ';');
+      csvWriter =
+          new CSVWriter(new BufferedWriter(new FileWriter(exportFile), BUFFER_SIZE), ';');
     } catch (IOException e) {
       TraceBackService.trace(e);
       throw new AxelorException(e, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR);
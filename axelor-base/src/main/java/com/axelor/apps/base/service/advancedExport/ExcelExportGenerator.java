@@ -36,20 +36,29 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Locale;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.DateFormatConverter;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 public class ExcelExportGenerator extends AdvancedExportGenerator {
 
-  private Workbook workbook;
+  /** Rows kept in memory, older rows are flushed to a temporary file. */
+  private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
+  private SXSSFWorkbook workbook;
 
   private Sheet sheet;
 
+  private CellStyle dateCellStyle;
+
+  private CellStyle dateTimeCellStyle;
+
+  private int rowNum;
+
   private AdvancedExport advancedExport;
 
   private File exportFile;
@@ -65,51 +74,47 @@ public class ExcelExportGenerator extends AdvancedExportGenerator {
       TraceBackService.trace(e);
       throw new AxelorException(e, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR);
     }
-    workbook = new XSSFWorkbook();
+    workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW_SIZE);
+    workbook.setCompressTempFiles(true);
     sheet = workbook.createSheet(advancedExport.getMetaModel().getName());
-  }
 
-  @Override
-  public void generateHeader() {
-    Row headerRow = sheet.createRow(sheet.getFirstRowNum());
-    int colHeaderNum = 0;
-    for (AdvancedExportLine advancedExportLine : advancedExport.getAdvancedExportLineList()) {
-      Cell headerCell = headerRow.createCell(colHeaderNum++);
-      headerCell.setCellValue(I18n.get(advancedExportLine.getTitle()));
-    }
+    // Styles are shared by all the cells, a workbook can only hold a limited number of styles.
+    Locale locale = AppFilter.getLocale();
+    dateCellStyle = createDateCellStyle(DateFormat.getDateInstance(DateFormat.SHORT, locale));
+    dateTimeCellStyle =
+        createDateCellStyle(
+            DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale));
   }
 
-  @SuppressWarnings("rawtypes")
-  @Override
-  public void generateBody(List<List> dataList) {
-    CellStyle dateCellStyle = workbook.createCellStyle();
-    CellStyle dateTimeCellStyle = workbook.createCellStyle();
-
-    DateFormat fmt = DateFormat.getDateInstance(DateFormat.SHORT, AppFilter.getLocale());
+  protected CellStyle createDateCellStyle(DateFormat fmt) {
+    CellStyle cellStyle = workbook.createCellStyle();
     if (fmt instanceof SimpleDateFormat) {
       String pattern = ((SimpleDateFormat) fmt).toPattern();
       // use full year
       pattern = pattern.replaceAll("y+", "yyyy");
-      dateCellStyle.setDataFormat(
+      cellStyle.setDataFormat(
           workbook
               .createDataFormat()
               .getFormat(DateFormatConverter.convert(AppFilter.getLocale(), pattern)));
     }
+    return cellStyle;
+  }
 
-    fmt = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, AppFilter.getLocale());
-
-    if (fmt instanceof SimpleDateFormat) {
-      String pattern = ((SimpleDateFormat) fmt).toPattern();
-      // use full year
-      pattern = pattern.replaceAll("y+", "yyyy");
-      dateTimeCellStyle.setDataFormat(
-          workbook
-              .createDataFormat()
-              .getFormat(DateFormatConverter.convert(AppFilter.getLocale(), pattern)));
+  @Override
+  public void generateHeader() {
+    Row headerRow = sheet.createRow(rowNum++);
+    int colHeaderNum = 0;
+    for (AdvancedExportLine advancedExportLine : advancedExport.getAdvancedExportLineList()) {
+      Cell headerCell = headerRow.createCell(colHeaderNum++);
+      headerCell.setCellValue(I18n.get(advancedExportLine.getTitle()));
     }
+  }
 
+  @SuppressWarnings("rawtypes")
+  @Override
+  public void generateBody(List<List> dataList) {
     for (List listObj : dataList) {
-      Row row = sheet.createRow(sheet.getLastRowNum() + 1);
+      Row row = sheet.createRow(rowNum++);
       for (int colIndex = 0; colIndex < listObj.size(); colIndex++) {
         Object value = listObj.get(colIndex);
         Cell cell = row.createCell(colIndex);
@@ -120,8 +125,7 @@ public class ExcelExportGenerator extends AdvancedExportGenerator {
             cell.setCellValue(
                 Date.from(
                     ((LocalDate) value).atStartOfDay().atZone(ZoneId.systemDefault()).toInstant()));
-          }
-          if (value instanceof LocalDateTime) {
+          } else if (value instanceof LocalDateTime) {
             cell.setCellStyle(dateTimeCellStyle);
             cell.setCellValue(
                 Date.from(((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant()));
@@ -150,6 +154,8 @@ public class ExcelExportGenerator extends AdvancedExportGenerator {
     } catch (IOException e) {
       TraceBackService.trace(e);
       throw new AxelorException(e, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR);
+    } finally {
+      workbook.dispose();
     }
   }
 
@@ -56,6 +56,8 @@ public class PdfExportGenerator extends AdvancedExportGenerator {
     exportFileName = advancedExport.getMetaModel().getName() + ".pdf";
     document = new Document();
     table = new PdfPTable(advancedExport.getAdvancedExportLineList().size());
+    // Rows are added to the document by chunks and released once written.
+    table.setComplete(false);
     try {
       exportFile = File.createTempFile(advancedExport.getMetaModel().getName(), ".pdf");
       FileOutputStream outStream = new FileOutputStream(exportFile);
@@ -89,7 +91,7 @@ public class PdfExportGenerator extends AdvancedExportGenerator {
 
   @SuppressWarnings("rawtypes")
   @Override
-  public void generateBody(List<List> dataList) {
+  public void generateBody(List<List> dataList) throws AxelorException {
     PdfPCell cell;
     Font font = new Font();
     font.setSize(7);
@@ -106,11 +108,19 @@ public class PdfExportGenerator extends AdvancedExportGenerator {
         table.addCell(cell);
       }
     }
+
+    try {
+      document.add(table);
+    } catch (DocumentException e) {
+      TraceBackService.trace(e);
+      throw new AxelorException(e, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR);
+    }
   }
 
   @Override
   public void close() throws AxelorException {
     try {
+      table.setComplete(true);
       document.add(table);
       document.close();
     } catch (DocumentException e) {
@@ -0,0 +1,118 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.publicHoliday;
+
+import com.axelor.apps.base.service.weeklyplanning.WorkingWeek;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Public holidays of an events planning, held as one bitmap of the days of the year by year.
+ *
+ * <p>Several lines on the same date give one public holiday.
+ */
+public class PublicHolidayCalendar {
+
+  public static final PublicHolidayCalendar EMPTY =
+      new PublicHolidayCalendar(Collections.emptyList());
+
+  private final NavigableMap<Integer, BitSet> yearMap = new TreeMap<>();
+
+  public PublicHolidayCalendar(Collection<LocalDate> dates) {
+    for (LocalDate date : dates) {
+      if (date != null) {
+        yearMap.computeIfAbsent(date.getYear(), year -> new BitSet(367)).set(date.getDayOfYear());
+      }
+    }
+  }
+
+  public boolean isPublicHoliday(LocalDate date) {
+    BitSet days = yearMap.get(date.getYear());
+    return days != null && days.get(date.getDayOfYear());
+  }
+
+  /**
+   * Get the public holidays between two dates, both included.
+   *
+   * @param fromDate
+   * @param toDate
+   * @return the public holidays in ascending order
+   */
+  public List<LocalDate> getPublicHolidays(LocalDate fromDate, LocalDate toDate) {
+    List<LocalDate> publicHolidayList = new ArrayList<>();
+    if (toDate.isBefore(fromDate)) {
+      return publicHolidayList;
+    }
+
+    for (Map.Entry<Integer, BitSet> entry :
+        yearMap.subMap(fromDate.getYear(), true, toDate.getYear(), true).entrySet()) {
+      int year = entry.getKey();
+      BitSet days = entry.getValue();
+      int firstDay = year == fromDate.getYear() ? fromDate.getDayOfYear() : 1;
+      int lastDay = year == toDate.getYear() ? toDate.getDayOfYear() : 366;
+
+      for (int day = days.nextSetBit(firstDay);
+          day >= 0 && day <= lastDay;
+          day = days.nextSetBit(day + 1)) {
+        publicHolidayList.add(LocalDate.ofYearDay(year, day));
+      }
+    }
+
+    return publicHolidayList;
+  }
+
+  /**
+   * Get the working value in days of the public holidays between two dates, both included.
+   *
+   * @param workingWeek
+   * @param fromDate
+   * @param toDate
+   * @return
+   */
+  public double getDaysValue(WorkingWeek workingWeek, LocalDate fromDate, LocalDate toDate) {
+    double value = 0;
+    for (LocalDate date : getPublicHolidays(fromDate, toDate)) {
+      value += workingWeek.getDayValue(date);
+    }
+    return value;
+  }
+
+  /**
+   * Get the working hours of the public holidays between two dates, both included.
+   *
+   * @param workingWeek
+   * @param fromDate
+   * @param toDate
+   * @return
+   */
+  public BigDecimal getDaysHours(WorkingWeek workingWeek, LocalDate fromDate, LocalDate toDate) {
+    BigDecimal hours = BigDecimal.ZERO;
+    for (LocalDate date : getPublicHolidays(fromDate, toDate)) {
+      hours = hours.add(workingWeek.getDayHours(date, null, null));
+    }
+    return hours;
+  }
+}
@@ -18,27 +18,29 @@
 package com.axelor.apps.base.service.publicHoliday;
 
 import com.axelor.apps.base.db.EventsPlanning;
-import com.axelor.apps.base.db.EventsPlanningLine;
 import com.axelor.apps.base.db.WeeklyPlanning;
 import com.axelor.apps.base.db.repo.EventsPlanningLineRepository;
 import com.axelor.apps.base.service.weeklyplanning.WeeklyPlanningService;
+import com.axelor.apps.base.service.weeklyplanning.WorkingCalendarCache;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.List;
 
 public class PublicHolidayService {
 
   protected WeeklyPlanningService weeklyPlanningService;
   protected EventsPlanningLineRepository eventsPlanningLineRepo;
+  protected WorkingCalendarCache workingCalendarCache;
 
   @Inject
   public PublicHolidayService(
       WeeklyPlanningService weeklyPlanningService,
-      EventsPlanningLineRepository eventsPlanningLineRepo) {
+      EventsPlanningLineRepository eventsPlanningLineRepo,
+      WorkingCalendarCache workingCalendarCache) {
 
     this.weeklyPlanningService = weeklyPlanningService;
     this.eventsPlanningLineRepo = eventsPlanningLineRepo;
+    this.workingCalendarCache = workingCalendarCache;
   }
 
   public BigDecimal computePublicHolidayDays(
@@ -46,25 +48,33 @@ public class PublicHolidayService {
       LocalDate toDate,
       WeeklyPlanning weeklyPlanning,
       EventsPlanning publicHolidayPlanning) {
-    BigDecimal publicHolidayDays = BigDecimal.ZERO;
 
-    List<EventsPlanningLine> publicHolidayDayList =
-        eventsPlanningLineRepo
-            .all()
-            .filter(
-                "self.eventsPlanning = ?1 AND self.date BETWEEN ?2 AND ?3",
-                publicHolidayPlanning,
-                fromDate,
-                toDate)
-            .fetch();
-    for (EventsPlanningLine publicHolidayDay : publicHolidayDayList) {
-      publicHolidayDays =
-          publicHolidayDays.add(
-              BigDecimal.valueOf(
-                  weeklyPlanningService.getWorkingDayValueInDays(
-                      weeklyPlanning, publicHolidayDay.getDate())));
-    }
-    return publicHolidayDays;
+    return BigDecimal.valueOf(
+        workingCalendarCache
+            .getPublicHolidays(publicHolidayPlanning)
+            .getDaysValue(
+                workingCalendarCache.getWorkingWeek(weeklyPlanning), fromDate, toDate));
+  }
+
+  /**
+   * Computes the working hours of the public holidays between two dates, both included, according
+   * to the weekly planning.
+   *
+   * @param fromDate
+   * @param toDate
+   * @param weeklyPlanning
+   * @param publicHolidayPlanning
+   * @return
+   */
+  public BigDecimal computePublicHolidayHours(
+      LocalDate fromDate,
+      LocalDate toDate,
+      WeeklyPlanning weeklyPlanning,
+      EventsPlanning publicHolidayPlanning) {
+
+    return workingCalendarCache
+        .getPublicHolidays(publicHolidayPlanning)
+        .getDaysHours(workingCalendarCache.getWorkingWeek(weeklyPlanning), fromDate, toDate);
   }
 
   /**
@@ -75,16 +85,8 @@ public class PublicHolidayService {
    * @return
    */
   public boolean checkPublicHolidayDay(LocalDate date, EventsPlanning publicHolidayEventsPlanning) {
-
-    if (publicHolidayEventsPlanning == null) {
-      return false;
-    }
-    List<EventsPlanningLine> publicHolidayDayList =
-        eventsPlanningLineRepo
-            .all()
-            .filter(
-                "self.eventsPlanning = ?1 AND self.date = ?2", publicHolidayEventsPlanning, date)
-            .fetch();
-    return publicHolidayDayList != null && !publicHolidayDayList.isEmpty();
+    return workingCalendarCache
+        .getPublicHolidays(publicHolidayEventsPlanning)
+        .isPublicHoliday(date);
   }
 }
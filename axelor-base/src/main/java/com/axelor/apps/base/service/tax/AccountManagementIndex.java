@@ -0,0 +1,445 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.tax;
+
+import com.axelor.apps.account.db.AccountManagement;
+import com.axelor.apps.account.db.Tax;
+import com.axelor.apps.tool.TransactionTool;
+import com.google.inject.Singleton;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the account managements of the products and product families, the tax
+ * equivalences of the fiscal positions and the tax lines, loaded with one query each on first use
+ * and kept until a change of one of them is committed.
+ *
+ * <p>Account managements are indexed by product or product family, then by company. The tax of a
+ * product for a company, a fiscal position and purchase or sale, with the fallback on the product
+ * family and the tax equivalence applied, is resolved once and cached.
+ */
+@Singleton
+public class AccountManagementIndex {
+
+  /** Taxes of an account management. */
+  public static class Management {
+
+    private final Long accountManagementId;
+    private final Long saleTaxId;
+    private final Long purchaseTaxId;
+
+    public Management(Long accountManagementId, Long saleTaxId, Long purchaseTaxId) {
+      this.accountManagementId = accountManagementId;
+      this.saleTaxId = saleTaxId;
+      this.purchaseTaxId = purchaseTaxId;
+    }
+
+    public Long getAccountManagementId() {
+      return accountManagementId;
+    }
+
+    public Long getTaxId(boolean isPurchase) {
+      return isPurchase ? purchaseTaxId : saleTaxId;
+    }
+  }
+
+  /** Tax equivalence of a fiscal position. */
+  public static class Equivalence {
+
+    private final Long taxEquivId;
+    private final Long toTaxId;
+
+    public Equivalence(Long taxEquivId, Long toTaxId) {
+      this.taxEquivId = taxEquivId;
+      this.toTaxId = toTaxId;
+    }
+
+    public Long getTaxEquivId() {
+      return taxEquivId;
+    }
+
+    public Long getToTaxId() {
+      return toTaxId;
+    }
+  }
+
+  /** Tax line valid from a date to an optional date. */
+  public static class DatedTaxLine {
+
+    private final Long taxLineId;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+
+    public DatedTaxLine(Long taxLineId, LocalDate startDate, LocalDate endDate) {
+      this.taxLineId = taxLineId;
+      this.startDate = startDate;
+      this.endDate = endDate;
+    }
+
+    public boolean covers(LocalDate date) {
+      return !startDate.isAfter(date) && (endDate == null || !endDate.isBefore(date));
+    }
+  }
+
+  protected static class Snapshot {
+
+    private final Map<Long, Map<Long, Management>> productMap = new HashMap<>();
+    private final Map<Long, Map<Long, Management>> productFamilyMap = new HashMap<>();
+    private final Map<Long, Map<Long, Equivalence>> equivalenceMap = new HashMap<>();
+    private final Map<Long, List<DatedTaxLine>> taxLineMap = new HashMap<>();
+
+    private final Map<String, Optional<Long>> taxCache = new ConcurrentHashMap<>();
+
+    private long generation;
+  }
+
+  private volatile Snapshot snapshot;
+
+  /** Incremented by each invalidation, a snapshot loaded before the last one is stale. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /** Mark the index as stale: the next tax lookup reads the three tables again. */
+  public void invalidate() {
+    generation.incrementAndGet();
+  }
+
+  /**
+   * Mark the index as stale when the transaction saving an account management, a tax equivalence
+   * or a tax line commits.
+   */
+  public void invalidateAfterCommit() {
+    TransactionTool.runAfterCommit(this::invalidate);
+  }
+
+  /**
+   * Check whether the loaded index holds the given account managements for a product, so that
+   * saving a product whose account managements did not change keeps the index.
+   *
+   * @param productId
+   * @param accountManagementList account managements of the product, can be null
+   * @return false if the index is not loaded or differs for the product
+   */
+  public boolean isProductIndexed(Long productId, List<AccountManagement> accountManagementList) {
+    Snapshot current = snapshot;
+    if (productId == null || current == null || current.generation != generation.get()) {
+      return false;
+    }
+
+    List<AccountManagement> sortedList = new ArrayList<>();
+    if (accountManagementList != null) {
+      for (AccountManagement accountManagement : accountManagementList) {
+        if (accountManagement.getId() == null) {
+          return false;
+        }
+        sortedList.add(accountManagement);
+      }
+    }
+    sortedList.sort(Comparator.comparing(AccountManagement::getId));
+
+    Map<Long, Management> indexedMap =
+        current.productMap.getOrDefault(productId, Collections.emptyMap());
+    Map<Long, AccountManagement> firstMap = new HashMap<>();
+    for (AccountManagement accountManagement : sortedList) {
+      if (accountManagement.getCompany() != null) {
+        firstMap.putIfAbsent(accountManagement.getCompany().getId(), accountManagement);
+      }
+    }
+    if (!firstMap.keySet().equals(indexedMap.keySet())) {
+      return false;
+    }
+
+    for (Map.Entry<Long, AccountManagement> entry : firstMap.entrySet()) {
+      AccountManagement accountManagement = entry.getValue();
+      Management management = indexedMap.get(entry.getKey());
+      if (!accountManagement.getId().equals(management.accountManagementId)
+          || !Objects.equals(getId(accountManagement.getSaleTax()), management.saleTaxId)
+          || !Objects.equals(getId(accountManagement.getPurchaseTax()), management.purchaseTaxId)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Long getId(Tax tax) {
+    return tax == null ? null : tax.getId();
+  }
+
+  /**
+   * Find the account management of a product for a company.
+   *
+   * @param productId
+   * @param companyId
+   * @return the first account management of the product for the company, or null
+   */
+  public Management findProductManagement(Long productId, Long companyId) {
+    return get(getSnapshot().productMap, productId, companyId);
+  }
+
+  /**
+   * Find the account management of a product family for a company.
+   *
+   * @param productFamilyId
+   * @param companyId
+   * @return the first account management of the product family for the company, or null
+   */
+  public Management findProductFamilyManagement(Long productFamilyId, Long companyId) {
+    return get(getSnapshot().productFamilyMap, productFamilyId, companyId);
+  }
+
+  /**
+   * Find the tax equivalence of a fiscal position replacing a tax.
+   *
+   * @param fiscalPositionId
+   * @param fromTaxId
+   * @return the first equivalence of the fiscal position for the tax, or null
+   */
+  public Equivalence findEquivalence(Long fiscalPositionId, Long fromTaxId) {
+    return get(getSnapshot().equivalenceMap, fiscalPositionId, fromTaxId);
+  }
+
+  /**
+   * Find the tax line of a tax covering a date.
+   *
+   * @param taxId
+   * @param date
+   * @return the first tax line covering the date, or null
+   */
+  public Long findTaxLineId(Long taxId, LocalDate date) {
+    for (DatedTaxLine taxLine :
+        getSnapshot().taxLineMap.getOrDefault(taxId, Collections.emptyList())) {
+      if (taxLine.covers(date)) {
+        return taxLine.taxLineId;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Resolve the tax of a product: the tax of the account management of the product for the
+   * company, or else of its product family, replaced by the tax equivalence of the fiscal position.
+   *
+   * @param productId
+   * @param productFamilyId can be null
+   * @param companyId
+   * @param fiscalPositionId can be null
+   * @param isPurchase
+   * @return the id of the tax, or null if the product has no tax for the company
+   */
+  public Long findProductTaxId(
+      Long productId,
+      Long productFamilyId,
+      Long companyId,
+      Long fiscalPositionId,
+      boolean isPurchase) {
+
+    Snapshot current = getSnapshot();
+    String key =
+        productId
+            + ":"
+            + productFamilyId
+            + ":"
+            + companyId
+            + ":"
+            + fiscalPositionId
+            + ":"
+            + isPurchase;
+
+    return current
+        .taxCache
+        .computeIfAbsent(
+            key,
+            k ->
+                Optional.ofNullable(
+                    resolveProductTaxId(
+                        current,
+                        productId,
+                        productFamilyId,
+                        companyId,
+                        fiscalPositionId,
+                        isPurchase)))
+        .orElse(null);
+  }
+
+  protected Long resolveProductTaxId(
+      Snapshot current,
+      Long productId,
+      Long productFamilyId,
+      Long companyId,
+      Long fiscalPositionId,
+      boolean isPurchase) {
+
+    Management management = get(current.productMap, productId, companyId);
+    Long taxId = management == null ? null : management.getTaxId(isPurchase);
+
+    if (taxId == null && productFamilyId != null) {
+      management = get(current.productFamilyMap, productFamilyId, companyId);
+      taxId = management == null ? null : management.getTaxId(isPurchase);
+    }
+
+    if (taxId == null || fiscalPositionId == null) {
+      return taxId;
+    }
+
+    Equivalence equivalence = get(current.equivalenceMap, fiscalPositionId, taxId);
+    return equivalence == null ? taxId : equivalence.toTaxId;
+  }
+
+  private static <T> T get(Map<Long, Map<Long, T>> map, Long key, Long subKey) {
+    Map<Long, T> subMap = map.get(key);
+    return subMap == null ? null : subMap.get(subKey);
+  }
+
+  private Snapshot getSnapshot() {
+    Snapshot current = snapshot;
+    if (current == null || current.generation != generation.get()) {
+      synchronized (this) {
+        current = snapshot;
+        long loadGeneration = generation.get();
+        if (current == null || current.generation != loadGeneration) {
+          current = load();
+          current.generation = loadGeneration;
+          snapshot = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Build the index from the rows as committed in database. The rows are read outside the
+   * transaction of the caller, which may hold unsaved changes or be rolled back, since the index is
+   * shared by all users.
+   */
+  protected Snapshot load() {
+    Snapshot current = new Snapshot();
+
+    for (Object[] row : loadAccountManagements()) {
+      addManagement(
+          current,
+          (Long) row[1],
+          (Long) row[2],
+          (Long) row[3],
+          new Management((Long) row[0], (Long) row[4], (Long) row[5]));
+    }
+
+    for (Object[] row : loadTaxEquivs()) {
+      addEquivalence(
+          current, (Long) row[1], (Long) row[2], new Equivalence((Long) row[0], (Long) row[3]));
+    }
+
+    for (Object[] row : loadTaxLines()) {
+      addTaxLine(
+          current,
+          (Long) row[1],
+          new DatedTaxLine((Long) row[0], (LocalDate) row[2], (LocalDate) row[3]));
+    }
+
+    return current;
+  }
+
+  /**
+   * @return account managements of the products and product families as id, product id, product
+   *     family id, company id, sale tax id and purchase tax id
+   */
+  protected List<Object[]> loadAccountManagements() {
+    return TransactionTool.callInNewEntityManager(
+        em ->
+            em.createQuery(
+                    "SELECT self.id, self.product.id, self.productFamily.id, self.company.id, "
+                        + "self.saleTax.id, self.purchaseTax.id FROM AccountManagement self "
+                        + "WHERE self.product IS NOT NULL OR self.productFamily IS NOT NULL "
+                        + "ORDER BY self.id",
+                    Object[].class)
+                .getResultList());
+  }
+
+  /** @return tax equivalences as id, fiscal position id, from tax id and to tax id */
+  protected List<Object[]> loadTaxEquivs() {
+    return TransactionTool.callInNewEntityManager(
+        em ->
+            em.createQuery(
+                    "SELECT self.id, self.fiscalPosition.id, self.fromTax.id, self.toTax.id "
+                        + "FROM TaxEquiv self WHERE self.fiscalPosition IS NOT NULL "
+                        + "AND self.fromTax IS NOT NULL AND self.toTax IS NOT NULL "
+                        + "ORDER BY self.id",
+                    Object[].class)
+                .getResultList());
+  }
+
+  /** @return tax lines as id, tax id, start date and end date */
+  protected List<Object[]> loadTaxLines() {
+    return TransactionTool.callInNewEntityManager(
+        em ->
+            em.createQuery(
+                    "SELECT self.id, self.tax.id, self.startDate, self.endDate FROM TaxLine self "
+                        + "WHERE self.tax IS NOT NULL AND self.startDate IS NOT NULL "
+                        + "ORDER BY self.id",
+                    Object[].class)
+                .getResultList());
+  }
+
+  /**
+   * Add an account management to the index. Of several account managements of a product or a
+   * product family for a company, the first one is kept, as it was by the scan of the list.
+   */
+  protected void addManagement(
+      Snapshot current,
+      Long productId,
+      Long productFamilyId,
+      Long companyId,
+      Management management) {
+
+    if (companyId == null) {
+      return;
+    }
+    if (productId != null) {
+      current
+          .productMap
+          .computeIfAbsent(productId, id -> new HashMap<>())
+          .putIfAbsent(companyId, management);
+    }
+    if (productFamilyId != null) {
+      current
+          .productFamilyMap
+          .computeIfAbsent(productFamilyId, id -> new HashMap<>())
+          .putIfAbsent(companyId, management);
+    }
+  }
+
+  protected void addEquivalence(
+      Snapshot current, Long fiscalPositionId, Long fromTaxId, Equivalence equivalence) {
+
+    current
+        .equivalenceMap
+        .computeIfAbsent(fiscalPositionId, id -> new HashMap<>())
+        .putIfAbsent(fromTaxId, equivalence);
+  }
+
+  protected void addTaxLine(Snapshot current, Long taxId, DatedTaxLine taxLine) {
+    current.taxLineMap.computeIfAbsent(taxId, id -> new ArrayList<>()).add(taxLine);
+  }
+}
@@ -25,7 +25,9 @@ import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
 import com.axelor.exception.AxelorException;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface AccountManagementService {
 
@@ -60,4 +62,23 @@ public interface AccountManagementService {
       FiscalPosition fiscalPosition,
       boolean isPurchase)
       throws AxelorException;
+
+  /**
+   * Get the tax lines of several products, each product being resolved once.
+   *
+   * @param date
+   * @param products
+   * @param company
+   * @param fiscalPosition
+   * @param isPurchase
+   * @return the tax line of each product, in the order of the products
+   * @throws AxelorException if a product has no tax line
+   */
+  public Map<Product, TaxLine> getTaxLines(
+      LocalDate date,
+      Collection<Product> products,
+      Company company,
+      FiscalPosition fiscalPosition,
+      boolean isPurchase)
+      throws AxelorException;
 }
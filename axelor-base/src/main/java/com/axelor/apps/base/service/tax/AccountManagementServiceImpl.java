@@ -25,13 +25,18 @@ import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.ProductFamily;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
+import com.axelor.apps.base.service.tax.AccountManagementIndex.Management;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
 import com.google.inject.Inject;
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,11 +51,16 @@ public class AccountManagementServiceImpl implements AccountManagementService {
 
   private TaxService taxService;
 
+  protected AccountManagementIndex accountManagementIndex;
+
   @Inject
   public AccountManagementServiceImpl(
-      FiscalPositionService fiscalPositionService, TaxService taxService) {
+      FiscalPositionService fiscalPositionService,
+      TaxService taxService,
+      AccountManagementIndex accountManagementIndex) {
     this.fiscalPositionService = fiscalPositionService;
     this.taxService = taxService;
+    this.accountManagementIndex = accountManagementIndex;
   }
 
   /**
@@ -94,6 +104,11 @@ public class AccountManagementServiceImpl implements AccountManagementService {
    */
   protected AccountManagement getAccountManagement(Product product, Company company) {
 
+    if (product.getId() != null && company != null && company.getId() != null) {
+      return this.findAccountManagement(
+          accountManagementIndex.findProductManagement(product.getId(), company.getId()));
+    }
+
     return this.getAccountManagement(product.getAccountManagementList(), company);
   }
 
@@ -103,9 +118,21 @@ public class AccountManagementServiceImpl implements AccountManagementService {
       return null;
     }
 
+    if (productFamily.getId() != null && company != null && company.getId() != null) {
+      return this.findAccountManagement(
+          accountManagementIndex.findProductFamilyManagement(
+              productFamily.getId(), company.getId()));
+    }
+
     return this.getAccountManagement(productFamily.getAccountManagementList(), company);
   }
 
+  protected AccountManagement findAccountManagement(Management management) {
+    return management == null
+        ? null
+        : JPA.find(AccountManagement.class, management.getAccountManagementId());
+  }
+
   /**
    * Get the right Account management line according to the company
    *
@@ -122,8 +149,6 @@ public class AccountManagementServiceImpl implements AccountManagementService {
 
     for (AccountManagement accountManagement : accountManagements) {
       if (accountManagement.getCompany().equals(company)) {
-        LOG.debug("Obtention de la configuration comptable => société: {}", company.getName());
-
         return accountManagement;
       }
     }
@@ -145,6 +170,11 @@ public class AccountManagementServiceImpl implements AccountManagementService {
       Product product, Company company, FiscalPosition fiscalPosition, boolean isPurchase)
       throws AxelorException {
 
+    Long taxId = this.findProductTaxId(product, company, fiscalPosition, isPurchase);
+    if (taxId != null) {
+      return JPA.find(Tax.class, taxId);
+    }
+
     LOG.debug(
         "Get the tax for the product {} (company : {}, purchase : {}, fiscal position : {})",
         new Object[] {
@@ -169,6 +199,36 @@ public class AccountManagementServiceImpl implements AccountManagementService {
         company.getName());
   }
 
+  /**
+   * Find the product tax according to the fiscal position in the index, when the product, the
+   * company and the fiscal position are saved.
+   *
+   * @param product
+   * @param company
+   * @param fiscalPosition
+   * @param isPurchase
+   * @return the id of the tax, or null if it has to be computed from the records
+   */
+  protected Long findProductTaxId(
+      Product product, Company company, FiscalPosition fiscalPosition, boolean isPurchase) {
+
+    ProductFamily productFamily = product.getProductFamily();
+
+    if (product.getId() == null
+        || company.getId() == null
+        || (productFamily != null && productFamily.getId() == null)
+        || (fiscalPosition != null && fiscalPosition.getId() == null)) {
+      return null;
+    }
+
+    return accountManagementIndex.findProductTaxId(
+        product.getId(),
+        productFamily != null ? productFamily.getId() : null,
+        company.getId(),
+        fiscalPosition != null ? fiscalPosition.getId() : null,
+        isPurchase);
+  }
+
   /**
    * Get the product tax
    *
@@ -232,4 +292,25 @@ public class AccountManagementServiceImpl implements AccountManagementService {
         I18n.get(IExceptionMessage.ACCOUNT_MANAGEMENT_2),
         product.getCode());
   }
+
+  @Override
+  public Map<Product, TaxLine> getTaxLines(
+      LocalDate date,
+      Collection<Product> products,
+      Company company,
+      FiscalPosition fiscalPosition,
+      boolean isPurchase)
+      throws AxelorException {
+
+    Map<Product, TaxLine> taxLineMap = new LinkedHashMap<>();
+
+    for (Product product : products) {
+      if (product != null && !taxLineMap.containsKey(product)) {
+        taxLineMap.put(
+            product, this.getTaxLine(date, product, company, fiscalPosition, isPurchase));
+      }
+    }
+
+    return taxLineMap;
+  }
 }
@@ -20,11 +20,16 @@ package com.axelor.apps.base.service.tax;
 import com.axelor.apps.account.db.FiscalPosition;
 import com.axelor.apps.account.db.Tax;
 import com.axelor.apps.account.db.TaxEquiv;
+import com.axelor.apps.base.service.tax.AccountManagementIndex.Equivalence;
+import com.axelor.db.JPA;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 @Singleton
 public class FiscalPositionServiceImpl implements FiscalPositionService {
 
+  @Inject protected AccountManagementIndex accountManagementIndex;
+
   @Override
   public Tax getTax(FiscalPosition fiscalPosition, Tax tax) {
     TaxEquiv taxEquiv = getTaxEquiv(fiscalPosition, tax);
@@ -34,6 +39,15 @@ public class FiscalPositionServiceImpl implements FiscalPositionService {
 
   @Override
   public TaxEquiv getTaxEquiv(FiscalPosition fiscalPosition, Tax tax) {
+    if (fiscalPosition != null
+        && fiscalPosition.getId() != null
+        && tax != null
+        && tax.getId() != null) {
+      Equivalence equivalence =
+          accountManagementIndex.findEquivalence(fiscalPosition.getId(), tax.getId());
+      return equivalence == null ? null : JPA.find(TaxEquiv.class, equivalence.getTaxEquivId());
+    }
+
     if (fiscalPosition != null && fiscalPosition.getTaxEquivList() != null && tax != null) {
       for (TaxEquiv taxEquiv : fiscalPosition.getTaxEquivList()) {
         if (taxEquiv.getFromTax() != null
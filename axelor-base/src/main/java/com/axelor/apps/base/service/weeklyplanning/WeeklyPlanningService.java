@@ -69,6 +69,30 @@ public interface WeeklyPlanningService {
   public BigDecimal getWorkingDayValueInHours(
       WeeklyPlanning weeklyPlanning, LocalDate date, LocalTime from, LocalTime to);
 
+  /**
+   * Computes the number of working days between two dates, both included, according to the
+   * weekly planning.
+   *
+   * @param planning
+   * @param fromDate
+   * @param toDate
+   * @return
+   */
+  public double getWorkingDaysValueInDays(
+      WeeklyPlanning planning, LocalDate fromDate, LocalDate toDate);
+
+  /**
+   * Computes the number of working hours of the full days between two dates, both included,
+   * according to the weekly planning.
+   *
+   * @param planning
+   * @param fromDate
+   * @param toDate
+   * @return
+   */
+  public BigDecimal getWorkingDaysValueInHours(
+      WeeklyPlanning planning, LocalDate fromDate, LocalDate toDate);
+
   public DayPlanning findDayPlanning(WeeklyPlanning planning, LocalDate date);
 
   public DayPlanning findDayWithName(WeeklyPlanning planning, String name);
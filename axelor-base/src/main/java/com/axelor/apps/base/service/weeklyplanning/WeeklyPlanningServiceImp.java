@@ -23,15 +23,17 @@ import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
+import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 public class WeeklyPlanningServiceImp implements WeeklyPlanningService {
 
+  @Inject protected WorkingCalendarCache workingCalendarCache;
+
   @Override
   @Transactional(rollbackOn = {Exception.class})
   public WeeklyPlanning initPlanning(WeeklyPlanning planning) {
@@ -90,72 +92,31 @@ public class WeeklyPlanningServiceImp implements WeeklyPlanningService {
 
   @Override
   public double getWorkingDayValueInDays(WeeklyPlanning planning, LocalDate date) {
-    double value = 0;
-    DayPlanning dayPlanning = findDayPlanning(planning, date);
-    if (dayPlanning == null) {
-      return value;
-    }
-    if (dayPlanning.getMorningFrom() != null && dayPlanning.getMorningTo() != null) {
-      value += 0.5;
-    }
-    if (dayPlanning.getAfternoonFrom() != null && dayPlanning.getAfternoonTo() != null) {
-      value += 0.5;
-    }
-    return value;
+    return workingCalendarCache.getWorkingWeek(planning).getDayValue(date);
   }
 
   @Override
   public double getWorkingDayValueInDaysWithSelect(
       WeeklyPlanning planning, LocalDate date, boolean morning, boolean afternoon) {
-    double value = 0;
-    DayPlanning dayPlanning = findDayPlanning(planning, date);
-    if (dayPlanning == null) {
-      return value;
-    }
-    if (morning && dayPlanning.getMorningFrom() != null && dayPlanning.getMorningTo() != null) {
-      value += 0.5;
-    }
-    if (afternoon
-        && dayPlanning.getAfternoonFrom() != null
-        && dayPlanning.getAfternoonTo() != null) {
-      value += 0.5;
-    }
-    return value;
+    return workingCalendarCache.getWorkingWeek(planning).getDayValue(date, morning, afternoon);
   }
 
   @Override
   public BigDecimal getWorkingDayValueInHours(
       WeeklyPlanning weeklyPlanning, LocalDate date, LocalTime from, LocalTime to) {
-    double value = 0;
-    DayPlanning dayPlanning = this.findDayPlanning(weeklyPlanning, date);
-
-    // Compute morning leave duration
-    LocalTime morningFrom = dayPlanning.getMorningFrom();
-    LocalTime morningTo = dayPlanning.getMorningTo();
-    if (morningFrom != null && morningTo != null) {
-      LocalTime morningBegin = from != null && from.isAfter(morningFrom) ? from : morningFrom;
-      LocalTime morningEnd = to != null && to.isBefore(morningTo) ? to : morningTo;
-      if (to != null && to.isBefore(morningBegin)) {
-        return BigDecimal.ZERO;
-      } else if (from == null || from.isBefore(morningEnd)) {
-        value += ChronoUnit.MINUTES.between(morningBegin, morningEnd);
-      }
-    }
+    return workingCalendarCache.getWorkingWeek(weeklyPlanning).getDayHours(date, from, to);
+  }
 
-    // Compute afternoon leave duration
-    LocalTime afternoonFrom = dayPlanning.getAfternoonFrom();
-    LocalTime afternoonTo = dayPlanning.getAfternoonTo();
-    if (afternoonFrom != null && afternoonTo != null) {
-      LocalTime afternoonBegin = from != null && from.isAfter(afternoonFrom) ? from : afternoonFrom;
-      LocalTime afternoonEnd = to != null && to.isBefore(afternoonTo) ? to : afternoonTo;
-      if (from != null && from.isAfter(afternoonEnd)) {
-        return BigDecimal.ZERO;
-      } else if (to == null || to.isAfter(afternoonBegin)) {
-        value += ChronoUnit.MINUTES.between(afternoonBegin, afternoonEnd);
-      }
-    }
+  @Override
+  public double getWorkingDaysValueInDays(
+      WeeklyPlanning planning, LocalDate fromDate, LocalDate toDate) {
+    return workingCalendarCache.getWorkingWeek(planning).getDaysValue(fromDate, toDate);
+  }
 
-    return BigDecimal.valueOf(value).divide(BigDecimal.valueOf(60), BigDecimal.ROUND_HALF_UP);
+  @Override
+  public BigDecimal getWorkingDaysValueInHours(
+      WeeklyPlanning planning, LocalDate fromDate, LocalDate toDate) {
+    return workingCalendarCache.getWorkingWeek(planning).getDaysHours(fromDate, toDate);
   }
 
   public DayPlanning findDayPlanning(WeeklyPlanning planning, LocalDate date) {
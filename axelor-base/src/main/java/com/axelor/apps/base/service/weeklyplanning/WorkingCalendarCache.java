@@ -0,0 +1,122 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.weeklyplanning;
+
+import com.axelor.apps.base.db.EventsPlanning;
+import com.axelor.apps.base.db.EventsPlanningLine;
+import com.axelor.apps.base.db.WeeklyPlanning;
+import com.axelor.apps.base.service.publicHoliday.PublicHolidayCalendar;
+import com.axelor.apps.tool.TransactionTool;
+import com.google.inject.Singleton;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled weekly plannings and public holiday plannings, built on first use from the committed
+ * rows and kept until a transaction saving or removing the planning or one of its lines is
+ * committed.
+ *
+ * <p>Working days and hours of a date or of a range of dates are then computed without any query.
+ */
+@Singleton
+public class WorkingCalendarCache {
+
+  private final Map<Long, WorkingWeek> workingWeekMap = new ConcurrentHashMap<>();
+
+  private final Map<Long, PublicHolidayCalendar> publicHolidayMap = new ConcurrentHashMap<>();
+
+  public WorkingWeek getWorkingWeek(WeeklyPlanning weeklyPlanning) {
+    Long weeklyPlanningId = weeklyPlanning.getId();
+    if (weeklyPlanningId == null) {
+      return new WorkingWeek(weeklyPlanning.getWeekDays());
+    }
+
+    return workingWeekMap.computeIfAbsent(weeklyPlanningId, this::loadWorkingWeek);
+  }
+
+  /** Build the working week from the day lines of the weekly planning as stored in database. */
+  protected WorkingWeek loadWorkingWeek(Long weeklyPlanningId) {
+    return TransactionTool.callInNewEntityManager(
+        em -> {
+          WeeklyPlanning weeklyPlanning = em.find(WeeklyPlanning.class, weeklyPlanningId);
+          return new WorkingWeek(
+              weeklyPlanning == null ? new ArrayList<>() : weeklyPlanning.getWeekDays());
+        });
+  }
+
+  /**
+   * Get the public holidays of an events planning.
+   *
+   * @param eventsPlanning can be null
+   * @return the public holidays, empty if there is no planning
+   */
+  public PublicHolidayCalendar getPublicHolidays(EventsPlanning eventsPlanning) {
+    if (eventsPlanning == null) {
+      return PublicHolidayCalendar.EMPTY;
+    }
+
+    Long eventsPlanningId = eventsPlanning.getId();
+    if (eventsPlanningId == null) {
+      List<LocalDate> dateList = new ArrayList<>();
+      if (eventsPlanning.getEventsPlanningLineList() != null) {
+        for (EventsPlanningLine eventsPlanningLine : eventsPlanning.getEventsPlanningLineList()) {
+          dateList.add(eventsPlanningLine.getDate());
+        }
+      }
+      return new PublicHolidayCalendar(dateList);
+    }
+
+    return publicHolidayMap.computeIfAbsent(
+        eventsPlanningId, id -> new PublicHolidayCalendar(loadPublicHolidays(id)));
+  }
+
+  /** Read the dates of an events planning as stored in database, edits in progress excluded. */
+  protected List<LocalDate> loadPublicHolidays(Long eventsPlanningId) {
+    return TransactionTool.callInNewEntityManager(
+        em ->
+            em.createQuery(
+                    "SELECT self.date FROM EventsPlanningLine self "
+                        + "WHERE self.eventsPlanning.id = :eventsPlanningId",
+                    LocalDate.class)
+                .setParameter("eventsPlanningId", eventsPlanningId)
+                .getResultList());
+  }
+
+  /**
+   * Forget the working week of a weekly planning when the transaction saving it commits. The next
+   * working day computation builds it from the saved day lines.
+   */
+  public void invalidateWorkingWeek(Long weeklyPlanningId) {
+    if (weeklyPlanningId != null) {
+      TransactionTool.runAfterCommit(() -> workingWeekMap.remove(weeklyPlanningId));
+    }
+  }
+
+  /**
+   * Forget the holidays of an events planning when the transaction saving it commits. A rolled back
+   * edit leaves the known dates untouched.
+   */
+  public void invalidatePublicHolidays(Long eventsPlanningId) {
+    if (eventsPlanningId != null) {
+      TransactionTool.runAfterCommit(() -> publicHolidayMap.remove(eventsPlanningId));
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.weeklyplanning;
+
+import com.axelor.apps.base.db.DayPlanning;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Working times of a weekly planning by day of week, read once from its day plannings.
+ *
+ * <p>Values of a range of dates are computed from the number of each day of week in the range,
+ * so their cost does not depend on the length of the range.
+ */
+public class WorkingWeek {
+
+  private static final List<String> DAY_NAMES =
+      Arrays.asList("monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday");
+
+  private final boolean[] planned = new boolean[7];
+
+  private final LocalTime[] morningFrom = new LocalTime[7];
+  private final LocalTime[] morningTo = new LocalTime[7];
+  private final LocalTime[] afternoonFrom = new LocalTime[7];
+  private final LocalTime[] afternoonTo = new LocalTime[7];
+
+  private final double[] dayValues = new double[7];
+  private final BigDecimal[] dayHours = new BigDecimal[7];
+
+  /**
+   * @param dayPlanningList day plannings of the weekly planning, the first one of a day is used
+   */
+  public WorkingWeek(List<DayPlanning> dayPlanningList) {
+    if (dayPlanningList != null) {
+      for (DayPlanning dayPlanning : dayPlanningList) {
+        int index = DAY_NAMES.indexOf(dayPlanning.getName());
+        if (index < 0 || planned[index]) {
+          continue;
+        }
+        planned[index] = true;
+        morningFrom[index] = dayPlanning.getMorningFrom();
+        morningTo[index] = dayPlanning.getMorningTo();
+        afternoonFrom[index] = dayPlanning.getAfternoonFrom();
+        afternoonTo[index] = dayPlanning.getAfternoonTo();
+      }
+    }
+
+    for (int index = 0; index < 7; index++) {
+      dayValues[index] = getDayValue(index, true, true);
+      dayHours[index] = getDayHours(index, null, null);
+    }
+  }
+
+  private static int indexOf(LocalDate date) {
+    return date.getDayOfWeek().getValue() - 1;
+  }
+
+  public boolean hasMorning(LocalDate date) {
+    int index = indexOf(date);
+    return morningFrom[index] != null && morningTo[index] != null;
+  }
+
+  public boolean hasAfternoon(LocalDate date) {
+    int index = indexOf(date);
+    return afternoonFrom[index] != null && afternoonTo[index] != null;
+  }
+
+  /**
+   * Get the working value of a date in days: 0.5 for a working morning and 0.5 for a working
+   * afternoon.
+   *
+   * @param date
+   * @return
+   */
+  public double getDayValue(LocalDate date) {
+    return dayValues[indexOf(date)];
+  }
+
+  public double getDayValue(LocalDate date, boolean morning, boolean afternoon) {
+    return getDayValue(indexOf(date), morning, afternoon);
+  }
+
+  private double getDayValue(int index, boolean morning, boolean afternoon) {
+    double value = 0;
+    if (morning && morningFrom[index] != null && morningTo[index] != null) {
+      value += 0.5;
+    }
+    if (afternoon && afternoonFrom[index] != null && afternoonTo[index] != null) {
+      value += 0.5;
+    }
+    return value;
+  }
+
+  /**
+   * Get the working hours of a date between two times.
+   *
+   * @param date
+   * @param from start of the period in the day, null for the start of the working day
+   * @param to end of the period in the day, null for the end of the working day
+   * @return
+   */
+  public BigDecimal getDayHours(LocalDate date, LocalTime from, LocalTime to) {
+    int index = indexOf(date);
+    if (from == null && to == null) {
+      return dayHours[index];
+    }
+    return getDayHours(index, from, to);
+  }
+
+  private BigDecimal getDayHours(int index, LocalTime from, LocalTime to) {
+    if (!planned[index]) {
+      return BigDecimal.ZERO;
+    }
+
+    double value = 0;
+
+    // Compute morning duration
+    LocalTime morningFrom = this.morningFrom[index];
+    LocalTime morningTo = this.morningTo[index];
+    if (morningFrom != null && morningTo != null) {
+      LocalTime morningBegin = from != null && from.isAfter(morningFrom) ? from : morningFrom;
+      LocalTime morningEnd = to != null && to.isBefore(morningTo) ? to : morningTo;
+      if (to != null && to.isBefore(morningBegin)) {
+        return BigDecimal.ZERO;
+      } else if (from == null || from.isBefore(morningEnd)) {
+        value += ChronoUnit.MINUTES.between(morningBegin, morningEnd);
+      }
+    }
+
+    // Compute afternoon duration
+    LocalTime afternoonFrom = this.afternoonFrom[index];
+    LocalTime afternoonTo = this.afternoonTo[index];
+    if (afternoonFrom != null && afternoonTo != null) {
+      LocalTime afternoonBegin = from != null && from.isAfter(afternoonFrom) ? from : afternoonFrom;
+      LocalTime afternoonEnd = to != null && to.isBefore(afternoonTo) ? to : afternoonTo;
+      if (from != null && from.isAfter(afternoonEnd)) {
+        return BigDecimal.ZERO;
+      } else if (to == null || to.isAfter(afternoonBegin)) {
+        value += ChronoUnit.MINUTES.between(afternoonBegin, afternoonEnd);
+      }
+    }
+
+    return BigDecimal.valueOf(value).divide(BigDecimal.valueOf(60), BigDecimal.ROUND_HALF_UP);
+  }
+
+  /**
+   * Get the working value in days of the dates between two dates, both included.
+   *
+   * @param fromDate
+   * @param toDate
+   * @return the sum of the values of the dates, 0 if the range is empty
+   */
+  public double getDaysValue(LocalDate fromDate, LocalDate toDate) {
+    long[] counts = countDaysOfWeek(fromDate, toDate);
+    double value = 0;
+    for (int index = 0; index < 7; index++) {
+      value += counts[index] * dayValues[index];
+    }
+    return value;
+  }
+
+  /**
+   * Get the working hours of the full days between two dates, both included.
+   *
+   * @param fromDate
+   * @param toDate
+   * @return the sum of the hours of the dates, 0 if the range is empty
+   */
+  public BigDecimal getDaysHours(LocalDate fromDate, LocalDate toDate) {
+    long[] counts = countDaysOfWeek(fromDate, toDate);
+    BigDecimal hours = BigDecimal.ZERO;
+    for (int index = 0; index < 7; index++) {
+      hours = hours.add(dayHours[index].multiply(BigDecimal.valueOf(counts[index])));
+    }
+    return hours;
+  }
+
+  /**
+   * Count each day of week between two dates, both included.
+   *
+   * @param fromDate
+   * @param toDate
+   * @return the counts, indexed from monday
+   */
+  protected static long[] countDaysOfWeek(LocalDate fromDate, LocalDate toDate) {
+    long[] counts = new long[7];
+    if (toDate.isBefore(fromDate)) {
+      return counts;
+    }
+
+    long days = ChronoUnit.DAYS.between(fromDate, toDate) + 1;
+    Arrays.fill(counts, days / 7);
+
+    int start = indexOf(fromDate);
+    for (int i = 0; i < days % 7; i++) {
+      counts[(start + i) % 7]++;
+    }
+    return counts;
+  }
+}
@@ -20,6 +20,7 @@ package com.axelor.apps.base.web;
 import com.axelor.apps.base.db.AdvancedExport;
 import com.axelor.apps.base.db.repo.AdvancedExportRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
+import com.axelor.apps.base.service.advancedExport.AdvancedExportGenerator;
 import com.axelor.apps.base.service.advancedExport.AdvancedExportService;
 import com.axelor.common.Inflector;
 import com.axelor.db.Model;
@@ -198,15 +199,17 @@ public class AdvancedExportController {
     if (!advancedExport.getAdvancedExportLineList().isEmpty()) {
       List<Long> recordIds = createCriteria(request, advancedExport);
 
-      File file = advancedExportService.export(advancedExport, recordIds, fileType);
+      AdvancedExportGenerator exportGenerator =
+          advancedExportService.export(advancedExport, recordIds, fileType);
+      File file = exportGenerator.getExportFile();
 
-      if (advancedExportService.getIsReachMaxExportLimit()) {
+      if (exportGenerator.getIsReachMaxExportLimit()) {
         response.setFlash(I18n.get(IExceptionMessage.ADVANCED_EXPORT_3));
       }
 
       FileInputStream inStream = new FileInputStream(file);
       MetaFile exportFile =
-          Beans.get(MetaFiles.class).upload(inStream, advancedExportService.getExportFileName());
+          Beans.get(MetaFiles.class).upload(inStream, exportGenerator.getExportFileName());
       inStream.close();
       file.delete();
 
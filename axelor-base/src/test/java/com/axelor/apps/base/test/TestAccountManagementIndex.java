@@ -0,0 +1,158 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.account.db.AccountManagement;
+import com.axelor.apps.account.db.Tax;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.service.tax.AccountManagementIndex;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAccountManagementIndex {
+
+  private static final long PRODUCT = 1L, OTHER_PRODUCT = 2L, FAMILY = 10L;
+
+  private static final long COMPANY = 100L, OTHER_COMPANY = 101L, FISCAL_POSITION = 200L;
+
+  private static final long VAT_20 = 1000L, VAT_10 = 1001L, VAT_0 = 1002L;
+
+  private int loadCount;
+
+  private List<Object[]> taxLineList = new ArrayList<>();
+
+  private AccountManagementIndex index =
+      new AccountManagementIndex() {
+        @Override
+        protected List<Object[]> loadAccountManagements() {
+          loadCount++;
+          return Arrays.asList(
+              new Object[] {1L, PRODUCT, null, COMPANY, VAT_10, null},
+              new Object[] {2L, PRODUCT, null, COMPANY, VAT_0, VAT_0},
+              new Object[] {3L, null, FAMILY, COMPANY, VAT_20, VAT_20},
+              new Object[] {4L, null, FAMILY, OTHER_COMPANY, VAT_10, VAT_10});
+        }
+
+        @Override
+        protected List<Object[]> loadTaxEquivs() {
+          return Arrays.<Object[]>asList(new Object[] {50L, FISCAL_POSITION, VAT_20, VAT_0});
+        }
+
+        @Override
+        protected List<Object[]> loadTaxLines() {
+          return taxLineList;
+        }
+      };
+
+  private Long findTax(long productId, long companyId, Long fiscalPositionId, boolean isPurchase) {
+    return index.findProductTaxId(productId, FAMILY, companyId, fiscalPositionId, isPurchase);
+  }
+
+  @Test
+  public void testProductThenFamily() {
+    Assert.assertEquals(
+        Long.valueOf(1L), index.findProductManagement(PRODUCT, COMPANY).getAccountManagementId());
+    Assert.assertNull(index.findProductManagement(PRODUCT, OTHER_COMPANY));
+
+    // The first account management of the company is used, the family one when it has no tax.
+    Assert.assertEquals(Long.valueOf(VAT_10), findTax(PRODUCT, COMPANY, null, false));
+    Assert.assertEquals(Long.valueOf(VAT_20), findTax(PRODUCT, COMPANY, null, true));
+    Assert.assertEquals(Long.valueOf(VAT_20), findTax(OTHER_PRODUCT, COMPANY, null, false));
+    Assert.assertEquals(Long.valueOf(VAT_10), findTax(OTHER_PRODUCT, OTHER_COMPANY, null, true));
+    Assert.assertNull(index.findProductTaxId(OTHER_PRODUCT, null, COMPANY, null, false));
+  }
+
+  @Test
+  public void testFiscalPosition() {
+    Assert.assertEquals(
+        Long.valueOf(VAT_0), findTax(OTHER_PRODUCT, COMPANY, FISCAL_POSITION, false));
+    Assert.assertEquals(Long.valueOf(VAT_10), findTax(PRODUCT, COMPANY, FISCAL_POSITION, false));
+    Assert.assertEquals(
+        Long.valueOf(50L), index.findEquivalence(FISCAL_POSITION, VAT_20).getTaxEquivId());
+    Assert.assertNull(index.findEquivalence(FISCAL_POSITION, VAT_10));
+  }
+
+  @Test
+  public void testTaxLines() {
+    taxLineList.add(
+        new Object[] {1L, VAT_20, LocalDate.of(2014, 1, 1), LocalDate.of(2019, 12, 31)});
+    taxLineList.add(new Object[] {2L, VAT_20, LocalDate.of(2020, 1, 1), null});
+
+    Assert.assertEquals(Long.valueOf(1L), index.findTaxLineId(VAT_20, LocalDate.of(2019, 12, 31)));
+    Assert.assertEquals(Long.valueOf(2L), index.findTaxLineId(VAT_20, LocalDate.of(2020, 1, 1)));
+    Assert.assertNull(index.findTaxLineId(VAT_20, LocalDate.of(2013, 12, 31)));
+    Assert.assertNull(index.findTaxLineId(VAT_10, LocalDate.of(2020, 1, 1)));
+  }
+
+  @Test
+  public void testInvalidate() {
+    findTax(PRODUCT, COMPANY, null, false);
+    findTax(PRODUCT, COMPANY, null, true);
+    Assert.assertEquals(1, loadCount);
+
+    index.invalidate();
+    findTax(PRODUCT, COMPANY, null, false);
+    Assert.assertEquals(2, loadCount);
+  }
+
+  private AccountManagement createAccountManagement(long id, long companyId, Long saleTaxId) {
+    Company company = new Company();
+    company.setId(companyId);
+    AccountManagement accountManagement = new AccountManagement();
+    accountManagement.setId(id);
+    accountManagement.setCompany(company);
+    if (saleTaxId != null) {
+      Tax tax = new Tax();
+      tax.setId(saleTaxId);
+      accountManagement.setSaleTax(tax);
+    }
+    return accountManagement;
+  }
+
+  @Test
+  public void testProductIndexed() {
+    List<AccountManagement> accountManagementList =
+        new ArrayList<>(
+            Arrays.asList(
+                createAccountManagement(2L, COMPANY, VAT_0),
+                createAccountManagement(1L, COMPANY, VAT_10)));
+
+    // Not loaded yet.
+    Assert.assertFalse(index.isProductIndexed(PRODUCT, accountManagementList));
+    findTax(PRODUCT, COMPANY, null, false);
+
+    // Only the first account management of the company matters.
+    Assert.assertTrue(index.isProductIndexed(PRODUCT, accountManagementList));
+    Assert.assertTrue(index.isProductIndexed(OTHER_PRODUCT, null));
+    Assert.assertFalse(index.isProductIndexed(PRODUCT, accountManagementList.subList(0, 1)));
+    Assert.assertFalse(
+        index.isProductIndexed(
+            PRODUCT, Arrays.asList(createAccountManagement(1L, COMPANY, VAT_20))));
+    Assert.assertFalse(index.isProductIndexed(PRODUCT, null));
+
+    accountManagementList.add(createAccountManagement(5L, OTHER_COMPANY, VAT_10));
+    Assert.assertFalse(index.isProductIndexed(PRODUCT, accountManagementList));
+
+    index.invalidate();
+    Assert.assertFalse(index.isProductIndexed(OTHER_PRODUCT, null));
+  }
+}
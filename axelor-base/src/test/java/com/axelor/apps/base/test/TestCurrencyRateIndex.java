@@ -0,0 +1,96 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.service.CurrencyRateIndex;
+import com.axelor.apps.base.service.CurrencyRateIndex.Rate;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCurrencyRateIndex {
+
+  private static final long EUR = 1L, USD = 2L, GBP = 3L, JPY = 4L, CHF = 5L;
+
+  private CurrencyRateIndex index =
+      new CurrencyRateIndex() {
+        @Override
+        protected Map<Long, Map<Long, NavigableMap<LocalDate, Rate>>> load() {
+          Map<Long, Map<Long, NavigableMap<LocalDate, Rate>>> rateMap = new HashMap<>();
+          addRate(rateMap, EUR, USD, rate("2019-01-01", "2019-01-31", "1.10"));
+          addRate(rateMap, EUR, USD, rate("2019-02-01", null, "1.20"));
+          addRate(rateMap, GBP, EUR, rate("2019-01-01", null, "1.25"));
+          // Overlapping lines: a yearly rate, a monthly one and a weekly one inside it.
+          addRate(rateMap, EUR, CHF, rate("2019-01-01", "2019-12-31", "1.20"));
+          addRate(rateMap, EUR, CHF, rate("2019-03-01", "2019-03-31", "1.25"));
+          addRate(rateMap, EUR, CHF, rate("2019-03-10", "2019-03-15", "1.30"));
+          return rateMap;
+        }
+      };
+
+  private static Rate rate(String fromDate, String toDate, String exchangeRate) {
+    return new Rate(
+        LocalDate.parse(fromDate),
+        toDate == null ? null : LocalDate.parse(toDate),
+        new BigDecimal(exchangeRate));
+  }
+
+  private BigDecimal findExchangeRate(long startCurrencyId, long endCurrencyId, String date) {
+    Rate rate = index.findRate(startCurrencyId, endCurrencyId, LocalDate.parse(date));
+    return rate == null ? null : rate.getExchangeRate();
+  }
+
+  @Test
+  public void testDateRanges() {
+    Assert.assertNull(findExchangeRate(EUR, USD, "2018-12-31"));
+    Assert.assertEquals(new BigDecimal("1.10"), findExchangeRate(EUR, USD, "2019-01-01"));
+    Assert.assertEquals(new BigDecimal("1.10"), findExchangeRate(EUR, USD, "2019-01-31"));
+    Assert.assertEquals(new BigDecimal("1.20"), findExchangeRate(EUR, USD, "2030-01-01"));
+    Assert.assertNull(findExchangeRate(USD, EUR, "2019-01-15"));
+  }
+
+  @Test
+  public void testCrossRate() {
+    // GBP -> EUR -> USD: 1.25 * 1.20
+    Assert.assertEquals(
+        0,
+        new BigDecimal("1.5")
+            .compareTo(index.findCrossRate(GBP, USD, LocalDate.parse("2019-03-01"))));
+    // USD -> EUR -> GBP: 1 / 1.20 / 1.25
+    Assert.assertEquals(
+        0,
+        new BigDecimal("0.6666666666")
+            .compareTo(index.findCrossRate(USD, GBP, LocalDate.parse("2019-03-01"))));
+    Assert.assertNull(index.findCrossRate(GBP, USD, LocalDate.parse("2018-03-01")));
+    Assert.assertNull(index.findCrossRate(GBP, JPY, LocalDate.parse("2019-03-01")));
+  }
+
+  @Test
+  public void testOverlappingLines() {
+    Assert.assertEquals(new BigDecimal("1.20"), findExchangeRate(EUR, CHF, "2019-02-01"));
+    Assert.assertEquals(new BigDecimal("1.25"), findExchangeRate(EUR, CHF, "2019-03-01"));
+    Assert.assertEquals(new BigDecimal("1.30"), findExchangeRate(EUR, CHF, "2019-03-12"));
+    Assert.assertEquals(new BigDecimal("1.25"), findExchangeRate(EUR, CHF, "2019-03-20"));
+    Assert.assertEquals(new BigDecimal("1.20"), findExchangeRate(EUR, CHF, "2019-04-01"));
+    Assert.assertNull(findExchangeRate(EUR, CHF, "2020-01-01"));
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.service.PriceListIndex;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPriceListIndex {
+
+  private static final long PRICE_LIST = 1L, PRODUCT = 10L, OTHER_PRODUCT = 11L, CATEGORY = 20L;
+
+  private static final long PARTNER = 30L;
+
+  private int loadCount;
+
+  private List<Object[]> rowList = new ArrayList<>();
+
+  private PriceListIndex index =
+      new PriceListIndex() {
+        @Override
+        protected Entry load(Long priceListId, Integer version) {
+          loadCount++;
+          return createEntry(version, rowList);
+        }
+      };
+
+  public TestPriceListIndex() {
+    // Sorted by minimum quantity, as loaded from the database.
+    rowList.add(row(100L, PRODUCT, null, "0"));
+    rowList.add(row(200L, null, CATEGORY, "0"));
+    rowList.add(row(101L, PRODUCT, null, "10"));
+    rowList.add(row(201L, null, CATEGORY, "50"));
+    rowList.add(row(102L, PRODUCT, null, "100"));
+  }
+
+  private static Object[] row(Long id, Long productId, Long productCategoryId, String minQty) {
+    return new Object[] {id, productId, productCategoryId, new BigDecimal(minQty)};
+  }
+
+  private Long find(Long productId, Long productCategoryId, String qty) {
+    return index.findPriceListLineId(
+        PRICE_LIST, 0, productId, productCategoryId, new BigDecimal(qty));
+  }
+
+  @Test
+  public void testQtyBreaks() {
+    Assert.assertEquals(Long.valueOf(100L), find(PRODUCT, CATEGORY, "5"));
+    Assert.assertEquals(Long.valueOf(101L), find(PRODUCT, CATEGORY, "10"));
+    Assert.assertEquals(Long.valueOf(101L), find(PRODUCT, CATEGORY, "99.99"));
+    Assert.assertEquals(Long.valueOf(102L), find(PRODUCT, CATEGORY, "1000"));
+  }
+
+  @Test
+  public void testProductCategoryFallback() {
+    Assert.assertEquals(Long.valueOf(200L), find(OTHER_PRODUCT, CATEGORY, "49"));
+    Assert.assertEquals(Long.valueOf(201L), find(OTHER_PRODUCT, CATEGORY, "50"));
+    Assert.assertNull(find(OTHER_PRODUCT, null, "50"));
+    Assert.assertNull(find(PRODUCT, CATEGORY, "-1"));
+  }
+
+  @Test
+  public void testReloadOnNewerVersion() {
+    find(PRODUCT, null, "1");
+    find(PRODUCT, null, "1");
+    Assert.assertEquals(1, loadCount);
+    Assert.assertEquals(1, index.getLineHitCount());
+    Assert.assertEquals(1, index.getLineMissCount());
+
+    rowList.add(row(103L, PRODUCT, null, "1000"));
+    Assert.assertEquals(
+        Long.valueOf(103L),
+        index.findPriceListLineId(PRICE_LIST, 1, PRODUCT, null, new BigDecimal("1000")));
+    Assert.assertEquals(2, loadCount);
+
+    index.invalidatePriceList(PRICE_LIST);
+    find(PRODUCT, null, "1");
+    Assert.assertEquals(3, loadCount);
+  }
+
+  @Test
+  public void testDefaultPriceList() {
+    LocalDate today = LocalDate.of(2019, 6, 1);
+    int[] resolveCount = new int[1];
+    Supplier<Long> resolver =
+        () -> {
+          resolveCount[0]++;
+          return PRICE_LIST;
+        };
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(
+          Long.valueOf(PRICE_LIST), index.findDefaultPriceListId(PARTNER, 1, today, resolver));
+    }
+    Assert.assertEquals(1, resolveCount[0]);
+    Assert.assertEquals(2, index.getDefaultPriceListHitCount());
+
+    // Resolved again the next day, and when partner price lists are changed.
+    index.findDefaultPriceListId(PARTNER, 1, today.plusDays(1), resolver);
+    Assert.assertEquals(2, resolveCount[0]);
+
+    index.invalidateDefaultPriceLists();
+    index.findDefaultPriceListId(PARTNER, 1, today.plusDays(1), resolver);
+    Assert.assertEquals(3, resolveCount[0]);
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.service.administration.SequenceBlock;
+import com.axelor.apps.base.service.administration.SequenceService;
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestSequenceBlock {
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final LocalDate START_DATE = LocalDate.of(2019, 1, 1);
+
+  private static final LocalDate END_DATE = LocalDate.of(2019, 1, 31);
+
+  /** Sequence service reserving blocks on monthly versions kept in memory. */
+  private static class InMemorySequenceService extends SequenceService {
+
+    private final Map<LocalDate, Long> nextNumMap = new HashMap<>();
+
+    private int reservationCount;
+
+    /** Simulated time of the update of a locked version row, in nanoseconds. */
+    private long rowUpdateNanos;
+
+    InMemorySequenceService() {
+      super(null, null);
+    }
+
+    @Override
+    protected synchronized SequenceBlock reserveBlock(Sequence sequence, LocalDate refDate) {
+      LockSupport.parkNanos(rowUpdateNanos);
+      LocalDate startDate = refDate.withDayOfMonth(1);
+      long firstNum = nextNumMap.getOrDefault(startDate, 1L);
+      SequenceBlock block =
+          new SequenceBlock(
+              startDate.toEpochDay(),
+              startDate,
+              refDate.withDayOfMonth(refDate.lengthOfMonth()),
+              firstNum,
+              sequence.getToBeAdded(),
+              sequence.getBlockSize());
+      nextNumMap.put(startDate, block.getEndNum());
+      reservationCount++;
+      return block;
+    }
+
+    long nextNum(Sequence sequence, LocalDate refDate) {
+      return getBlockNum(sequence, refDate);
+    }
+
+    /** Number handed out as without blocks, the version row being locked for each number. */
+    synchronized long nextNumPerNumber(Sequence sequence, LocalDate refDate) {
+      LockSupport.parkNanos(rowUpdateNanos);
+      LocalDate startDate = refDate.withDayOfMonth(1);
+      long num = nextNumMap.getOrDefault(startDate, 1L);
+      nextNumMap.put(startDate, num + sequence.getToBeAdded());
+      return num;
+    }
+  }
+
+  /** Hand out numbers from several threads and return the throughput, in numbers per second. */
+  private static double measureThroughput(
+      int threadCount, int numbersPerThread, LongSupplier numberSupplier) throws Exception {
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<?>> futureList = new ArrayList<>();
+    long start = System.nanoTime();
+
+    for (int i = 0; i < threadCount; i++) {
+      futureList.add(
+          executor.submit(
+              () -> {
+                for (int j = 0; j < numbersPerThread; j++) {
+                  numberSupplier.getAsLong();
+                }
+              }));
+    }
+    for (Future<?> future : futureList) {
+      future.get();
+    }
+
+    long elapsedNanos = System.nanoTime() - start;
+    executor.shutdown();
+
+    return threadCount * numbersPerThread * 1e9 / elapsedNanos;
+  }
+
+  private Sequence createSequence(int blockSize) {
+    Sequence sequence = new Sequence();
+    sequence.setId(1L);
+    sequence.setToBeAdded(1);
+    sequence.setBlockSize(blockSize);
+    sequence.setMonthlyResetOk(true);
+    return sequence;
+  }
+
+  @Test
+  public void testBlock() {
+    SequenceBlock block = new SequenceBlock(1L, START_DATE, END_DATE, 11, 2, 3);
+
+    Assert.assertTrue(block.covers(START_DATE));
+    Assert.assertTrue(block.covers(END_DATE));
+    Assert.assertFalse(block.covers(END_DATE.plusDays(1)));
+    Assert.assertFalse(block.covers(START_DATE.minusDays(1)));
+
+    Assert.assertEquals(11, block.next());
+    Assert.assertEquals(13, block.next());
+    Assert.assertEquals(15, block.next());
+    Assert.assertEquals(-1, block.next());
+    Assert.assertEquals(17, block.getEndNum());
+  }
+
+  @Test
+  public void testOpenBlock() {
+    SequenceBlock block = new SequenceBlock(1L, START_DATE, null, 1, 1, 10);
+
+    Assert.assertTrue(block.covers(END_DATE.plusYears(10)));
+  }
+
+  /** Numbers alternating between two monthly versions keep the block of each version. */
+  @Test
+  public void testAlternatingVersions() {
+    InMemorySequenceService sequenceService = new InMemorySequenceService();
+    Sequence sequence = createSequence(10);
+    LocalDate februaryDate = END_DATE.plusDays(1);
+
+    for (long num = 1; num <= 30; num++) {
+      Assert.assertEquals(num, sequenceService.nextNum(sequence, START_DATE));
+      Assert.assertEquals(num, sequenceService.nextNum(sequence, februaryDate));
+    }
+
+    Assert.assertEquals(6, sequenceService.reservationCount);
+  }
+
+  /** Numbers handed out from several threads are unique and without gaps. */
+  @Test
+  public void testConcurrentAllocation() throws Exception {
+    final int threadCount = 8;
+    final int numbersPerThread = 20_000;
+    final InMemorySequenceService sequenceService = new InMemorySequenceService();
+    final Sequence sequence = createSequence(100);
+
+    Callable<long[]> worker =
+        () -> {
+          long[] numbers = new long[numbersPerThread];
+          for (int i = 0; i < numbersPerThread; i++) {
+            numbers[i] = sequenceService.nextNum(sequence, START_DATE);
+          }
+          return numbers;
+        };
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<long[]>> futureList = new ArrayList<>();
+
+    for (int i = 0; i < threadCount; i++) {
+      futureList.add(executor.submit(worker));
+    }
+
+    BitSet handedOut = new BitSet();
+    int count = 0;
+    for (Future<long[]> future : futureList) {
+      for (long num : future.get()) {
+        Assert.assertFalse("Number handed out twice: " + num, handedOut.get((int) num));
+        handedOut.set((int) num);
+        count++;
+      }
+    }
+    executor.shutdown();
+
+    Assert.assertEquals(threadCount * numbersPerThread, count);
+    Assert.assertEquals(1, handedOut.nextSetBit(0));
+    Assert.assertEquals(count, handedOut.length() - 1);
+    Assert.assertEquals(count / 100, sequenceService.reservationCount);
+  }
+
+  /**
+   * Throughput of the numbers handed out from blocks, against the numbers handed out one by one
+   * from the locked version row. The update of the row is simulated by a pause of 50 µs.
+   */
+  @Test
+  public void testThroughput() throws Exception {
+    final int threadCount = 8;
+    final int numbersPerThread = 1_000;
+    final LocalDate refDate = START_DATE;
+
+    InMemorySequenceService perNumberService = new InMemorySequenceService();
+    perNumberService.rowUpdateNanos = 50_000;
+    Sequence perNumberSequence = createSequence(1);
+    double perNumberThroughput =
+        measureThroughput(
+            threadCount,
+            numbersPerThread,
+            () -> perNumberService.nextNumPerNumber(perNumberSequence, refDate));
+
+    InMemorySequenceService blockService = new InMemorySequenceService();
+    blockService.rowUpdateNanos = 50_000;
+    Sequence blockSequence = createSequence(100);
+    double blockThroughput =
+        measureThroughput(
+            threadCount, numbersPerThread, () -> blockService.nextNum(blockSequence, refDate));
+
+    log.info(
+        "Sequence numbers per second with {} threads: {} per number, {} by blocks of 100",
+        threadCount,
+        Math.round(perNumberThroughput),
+        Math.round(blockThroughput));
+
+    Assert.assertEquals(threadCount * numbersPerThread / 100, blockService.reservationCount);
+    Assert.assertTrue(blockThroughput > perNumberThroughput);
+  }
+}
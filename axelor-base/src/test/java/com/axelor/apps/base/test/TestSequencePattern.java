@@ -0,0 +1,52 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.service.administration.SequencePattern;
+import java.time.LocalDate;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSequencePattern {
+
+  private static final LocalDate DATE = LocalDate.of(2019, 3, 7);
+
+  @Test
+  public void testTags() {
+    Assert.assertEquals("FA2019", SequencePattern.of("FA%YYYY").format(DATE));
+    Assert.assertEquals("FA19-3", SequencePattern.of("FA%YY-%M").format(DATE));
+    Assert.assertEquals("19/03/7-", SequencePattern.of("%YY/%FM/%D-").format(DATE));
+    Assert.assertEquals("W10", SequencePattern.of("W%WY").format(DATE));
+  }
+
+  @Test
+  public void testLiterals() {
+    Assert.assertEquals("", SequencePattern.of(null).format(DATE));
+    Assert.assertEquals("INV-", SequencePattern.of("INV-").format(DATE));
+    Assert.assertEquals("%X19Y", SequencePattern.of("%X%YYY").format(DATE));
+    Assert.assertEquals("100%", SequencePattern.of("100%").format(DATE));
+  }
+
+  @Test
+  public void testAppendTo() {
+    StringBuilder builder = new StringBuilder();
+    SequencePattern.of("SO%YY").appendTo(builder, DATE).append("0001");
+    SequencePattern.of("-%FM").appendTo(builder, DATE);
+    Assert.assertEquals("SO190001-03", builder.toString());
+  }
+}
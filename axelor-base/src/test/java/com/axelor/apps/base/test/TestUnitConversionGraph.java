@@ -0,0 +1,129 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.db.repo.UnitConversionRepository;
+import com.axelor.apps.base.service.UnitConversionGraph;
+import com.axelor.apps.base.service.UnitConversionGraph.Edge;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestUnitConversionGraph {
+
+  private static final long UNIT = 1L, PACK = 2L, BOX = 3L, KG = 4L, LITRE = 5L;
+
+  private static final int COEFF = UnitConversionRepository.TYPE_COEFF;
+
+  private static final int FORMULA = UnitConversionRepository.TYPE_FORMULA;
+
+  private int loadCount;
+
+  private UnitConversionGraph graph =
+      new UnitConversionGraph() {
+        @Override
+        protected Map<Long, List<Edge>> load() {
+          loadCount++;
+          Map<Long, List<Edge>> edgeMap = new HashMap<>();
+          // 1 box = 4 packs, 1 pack = 6 units
+          addConversion(edgeMap, 1L, BOX, PACK, COEFF, coef("4"), null);
+          addConversion(edgeMap, 2L, PACK, UNIT, COEFF, coef("6"), null);
+          addConversion(edgeMap, 3L, UNIT, KG, FORMULA, null, "$Product.netMass$");
+          return edgeMap;
+        }
+      };
+
+  private static BigDecimal coef(String value) {
+    return new BigDecimal(value);
+  }
+
+  private static BigDecimal multiply(List<Edge> path) {
+    BigDecimal coefficient = BigDecimal.ONE;
+    for (Edge edge : path) {
+      coefficient = coefficient.multiply(edge.getCoef());
+    }
+    return coefficient;
+  }
+
+  @Test
+  public void testDirectAndReverse() {
+    Assert.assertEquals(0, coef("6").compareTo(multiply(graph.findPath(PACK, UNIT, false))));
+
+    List<Edge> path = graph.findPath(UNIT, PACK, false);
+    Assert.assertEquals(1, path.size());
+    Assert.assertTrue(path.get(0).isInverse());
+    Assert.assertEquals(0, coef("0.166666666667").compareTo(multiply(path)));
+  }
+
+  @Test
+  public void testMultiHop() {
+    List<Edge> path = graph.findPath(BOX, UNIT, false);
+    Assert.assertEquals(2, path.size());
+    Assert.assertEquals(0, coef("24").compareTo(multiply(path)));
+  }
+
+  @Test
+  public void testFormula() {
+    Assert.assertNull(graph.findPath(BOX, KG, false));
+
+    List<Edge> path = graph.findPath(BOX, KG, true);
+    Assert.assertEquals(3, path.size());
+    Assert.assertTrue(path.get(2).isFormula());
+  }
+
+  @Test
+  public void testNoPath() {
+    Assert.assertNull(graph.findPath(UNIT, LITRE, true));
+    Assert.assertTrue(graph.findPath(LITRE, LITRE, true).isEmpty());
+  }
+
+  @Test
+  public void testCacheAndInvalidate() {
+    graph.findPath(BOX, UNIT, false);
+    graph.findPath(UNIT, BOX, false);
+    Assert.assertEquals(1, loadCount);
+
+    graph.invalidate();
+    graph.findPath(BOX, UNIT, false);
+    Assert.assertEquals(2, loadCount);
+  }
+
+  @Test
+  public void testInvalidateDuringLoad() {
+    UnitConversionGraph concurrentGraph =
+        new UnitConversionGraph() {
+          @Override
+          protected Map<Long, List<Edge>> load() {
+            loadCount++;
+            if (loadCount == 1) {
+              // A commit invalidates the graph while the first load reads the old rows.
+              invalidate();
+            }
+            return new HashMap<>();
+          }
+        };
+
+    concurrentGraph.findPath(BOX, UNIT, false);
+    concurrentGraph.findPath(BOX, UNIT, false);
+    concurrentGraph.findPath(BOX, UNIT, false);
+    Assert.assertEquals(2, loadCount);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.test;
+
+import com.axelor.apps.base.db.DayPlanning;
+import com.axelor.apps.base.service.publicHoliday.PublicHolidayCalendar;
+import com.axelor.apps.base.service.weeklyplanning.WorkingWeek;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestWorkingWeek {
+
+  private WorkingWeek workingWeek = new WorkingWeek(createDayPlanningList());
+
+  private static List<DayPlanning> createDayPlanningList() {
+    List<DayPlanning> dayPlanningList = new ArrayList<>();
+    for (String name : Arrays.asList("monday", "tuesday", "wednesday", "thursday", "friday")) {
+      dayPlanningList.add(createDayPlanning(name, true, true));
+    }
+    dayPlanningList.add(createDayPlanning("saturday", true, false));
+    dayPlanningList.add(createDayPlanning("sunday", false, false));
+    return dayPlanningList;
+  }
+
+  private static DayPlanning createDayPlanning(String name, boolean morning, boolean afternoon) {
+    DayPlanning dayPlanning = new DayPlanning();
+    dayPlanning.setName(name);
+    if (morning) {
+      dayPlanning.setMorningFrom(LocalTime.of(8, 0));
+      dayPlanning.setMorningTo(LocalTime.of(12, 0));
+    }
+    if (afternoon) {
+      dayPlanning.setAfternoonFrom(LocalTime.of(13, 30));
+      dayPlanning.setAfternoonTo(LocalTime.of(17, 0));
+    }
+    return dayPlanning;
+  }
+
+  @Test
+  public void testDayValues() {
+    // 2019-03-04 is a monday
+    Assert.assertEquals(1, workingWeek.getDayValue(LocalDate.parse("2019-03-04")), 0);
+    Assert.assertEquals(0.5, workingWeek.getDayValue(LocalDate.parse("2019-03-09")), 0);
+    Assert.assertEquals(0, workingWeek.getDayValue(LocalDate.parse("2019-03-10")), 0);
+    Assert.assertEquals(
+        0.5, workingWeek.getDayValue(LocalDate.parse("2019-03-04"), false, true), 0);
+    Assert.assertEquals(
+        new BigDecimal("7.5"), workingWeek.getDayHours(LocalDate.parse("2019-03-04"), null, null));
+    Assert.assertEquals(
+        new BigDecimal("5.5"),
+        workingWeek.getDayHours(LocalDate.parse("2019-03-04"), LocalTime.of(10, 0), null));
+  }
+
+  @Test
+  public void testRangeMatchesDayByDay() {
+    LocalDate fromDate = LocalDate.parse("2019-02-27");
+
+    for (int length = -1; length < 40; length++) {
+      LocalDate toDate = fromDate.plusDays(length);
+      double value = 0;
+      BigDecimal hours = BigDecimal.ZERO;
+      for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+        value += workingWeek.getDayValue(date);
+        hours = hours.add(workingWeek.getDayHours(date, null, null));
+      }
+
+      Assert.assertEquals(value, workingWeek.getDaysValue(fromDate, toDate), 0);
+      Assert.assertEquals(0, hours.compareTo(workingWeek.getDaysHours(fromDate, toDate)));
+    }
+  }
+
+  @Test
+  public void testPublicHolidays() {
+    PublicHolidayCalendar publicHolidays =
+        new PublicHolidayCalendar(
+            Arrays.asList(
+                LocalDate.parse("2018-12-25"),
+                LocalDate.parse("2019-01-01"),
+                LocalDate.parse("2019-01-01"),
+                LocalDate.parse("2019-05-01")));
+
+    Assert.assertTrue(publicHolidays.isPublicHoliday(LocalDate.parse("2019-01-01")));
+    Assert.assertFalse(publicHolidays.isPublicHoliday(LocalDate.parse("2019-01-02")));
+    Assert.assertEquals(
+        Arrays.asList(LocalDate.parse("2018-12-25"), LocalDate.parse("2019-01-01")),
+        publicHolidays.getPublicHolidays(
+            LocalDate.parse("2018-12-01"), LocalDate.parse("2019-04-30")));
+    // 2018-12-25 is a tuesday, 2019-01-01 a tuesday and 2019-05-01 a wednesday
+    Assert.assertEquals(
+        3,
+        publicHolidays.getDaysValue(
+            workingWeek, LocalDate.parse("2018-01-01"), LocalDate.parse("2019-12-31")),
+        0);
+    Assert.assertTrue(
+        publicHolidays
+            .getPublicHolidays(LocalDate.parse("2019-01-02"), LocalDate.parse("2019-04-30"))
+            .isEmpty());
+  }
+}
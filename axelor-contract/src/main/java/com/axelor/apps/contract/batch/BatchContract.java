@@ -17,12 +17,11 @@
  */
 package com.axelor.apps.contract.batch;
 
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.base.service.batch.BatchStrategy;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractBatchRepository;
 import com.axelor.apps.contract.db.repo.ContractRepository;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
@@ -64,10 +63,10 @@ public class BatchContract extends BatchStrategy {
               I18n.get("Action %s has no Batch implementation."),
               batch.getContractBatch().getActionSelect()));
 
-      Query<Contract> query = factory.prepare(batch);
+      KeysetPager<Contract> pager = factory.prepare(batch);
       List<Contract> contracts;
 
-      while (!(contracts = query.fetch(FETCH_LIMIT)).isEmpty()) {
+      while (!(contracts = pager.fetchNext()).isEmpty()) {
         findBatch();
         for (Contract contract : contracts) {
           try {
@@ -78,7 +77,6 @@ public class BatchContract extends BatchStrategy {
             incrementAnomaly(contract);
           }
         }
-        JPA.clear();
       }
     } catch (Exception e) {
       TraceBackService.trace(e);
@@ -18,11 +18,11 @@
 package com.axelor.apps.contract.batch;
 
 import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
 
@@ -39,7 +39,7 @@ abstract class BatchContractFactory {
     this.baseService = baseService;
   }
 
-  abstract Query<Contract> prepare(Batch batch);
+  abstract KeysetPager<Contract> prepare(Batch batch);
 
   abstract void process(Contract contract) throws AxelorException;
 }
@@ -18,12 +18,12 @@
 package com.axelor.apps.contract.batch;
 
 import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.db.repo.ContractVersionRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
 import java.time.format.DateTimeFormatter;
@@ -37,9 +37,8 @@ public class BatchContractFactoryNextActivation extends BatchContractFactory {
   }
 
   @Override
-  Query<Contract> prepare(Batch batch) {
-    return repository
-        .all()
+  KeysetPager<Contract> prepare(Batch batch) {
+    return KeysetPager.of(Contract.class)
         .filter(
             "self.nextVersion.supposedActivationDate <= :date "
                 + "AND self.nextVersion.statusSelect = :status "
@@ -18,11 +18,11 @@
 package com.axelor.apps.contract.batch;
 
 import com.axelor.apps.base.db.Batch;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractRepository;
 import com.axelor.apps.contract.service.ContractService;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
 import java.time.format.DateTimeFormatter;
@@ -36,9 +36,8 @@ public class BatchContractFactoryTerminate extends BatchContractFactory {
   }
 
   @Override
-  Query<Contract> prepare(Batch batch) {
-    return repository
-        .all()
+  KeysetPager<Contract> prepare(Batch batch) {
+    return KeysetPager.of(Contract.class)
         .filter(
             "(self.terminatedDate <= :date "
                 + " OR self.currentContractVersion.supposedEndDate <= :date)"
@@ -85,4 +85,5 @@ public interface IExceptionMessage {
       "The number of repetitions must be greater than 0" /*)*/;
   static final String RECURRENCE_END_DATE = /*$$(*/
       "The end date must be after the start date" /*)*/;
+  static final String RECURRENCE_RULE_INVALID = /*$$(*/ "Invalid recurrence rule %s" /*)*/;
 }
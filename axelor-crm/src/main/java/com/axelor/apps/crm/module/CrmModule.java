@@ -31,6 +31,8 @@ import com.axelor.apps.crm.db.repo.LeadRepository;
 import com.axelor.apps.crm.db.repo.OpportunityManagementRepository;
 import com.axelor.apps.crm.db.repo.OpportunityRepository;
 import com.axelor.apps.crm.service.CalendarService;
+import com.axelor.apps.crm.service.EventRecurrenceService;
+import com.axelor.apps.crm.service.EventRecurrenceServiceImpl;
 import com.axelor.apps.crm.service.EventService;
 import com.axelor.apps.crm.service.EventServiceImpl;
 import com.axelor.apps.crm.service.LeadService;
@@ -51,6 +53,7 @@ public class CrmModule extends AxelorModule {
     bind(ICalendarService.class).to(CalendarService.class);
     bind(AppCrmService.class).to(AppCrmServiceImpl.class);
     bind(EventService.class).to(EventServiceImpl.class);
+    bind(EventRecurrenceService.class).to(EventRecurrenceServiceImpl.class);
     bind(CrmBatchRepository.class).to(CrmBatchCrmRepository.class);
     bind(LeadService.class).to(LeadServiceImpl.class);
     ICalendarEventFactory.register(ICalendarRepository.CRM_SYNCHRO, Event::new);
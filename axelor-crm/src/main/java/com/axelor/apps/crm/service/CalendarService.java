@@ -19,8 +19,11 @@ package com.axelor.apps.crm.service;
 
 import com.axelor.apps.base.db.CalendarManagement;
 import com.axelor.apps.base.db.ICalendar;
+import com.axelor.apps.base.db.ICalendarEvent;
 import com.axelor.apps.base.db.repo.ICalendarRepository;
 import com.axelor.apps.base.ical.ICalendarService;
+import com.axelor.apps.crm.db.Event;
+import com.axelor.apps.crm.db.repo.EventRepository;
 import com.axelor.auth.db.User;
 import com.axelor.team.db.Team;
 import com.google.common.collect.Lists;
@@ -33,6 +36,8 @@ public class CalendarService extends ICalendarService {
 
   @Inject private ICalendarRepository icalRepo;
 
+  @Inject private EventRepository eventRepo;
+
   public List<Long> showSharedCalendars(User user) {
     Team team = user.getActiveTeam();
     Set<User> followedUsers = user.getFollowersCalUserSet();
@@ -52,4 +57,28 @@ public class CalendarService extends ICalendarService {
     calendarIdlist.addAll(Lists.transform(icalList, it -> it.getId()));
     return calendarIdlist;
   }
+
+  @Override
+  protected List<ICalendarEvent> getRecurrenceOccurrences(ICalendarEvent event) {
+    if (!(event instanceof Event)) {
+      return super.getRecurrenceOccurrences(event);
+    }
+    return new ArrayList<>(
+        eventRepo
+            .all()
+            .filter(
+                "self.parentEvent = ?1 AND self.isRecurrenceOccurrence = TRUE "
+                    + "AND COALESCE(self.archived, false) = false",
+                event)
+            .order("startDateTime")
+            .fetch());
+  }
+
+  @Override
+  protected ICalendarEvent getRecurrenceEvent(ICalendarEvent occurrence) {
+    if (!(occurrence instanceof Event)) {
+      return super.getRecurrenceEvent(occurrence);
+    }
+    return ((Event) occurrence).getParentEvent();
+  }
 }
@@ -0,0 +1,121 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.crm.service;
+
+import com.axelor.apps.crm.db.Event;
+import com.axelor.apps.crm.db.RecurrenceConfiguration;
+import com.axelor.exception.AxelorException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Recurrence of events, stored as a rule (RRULE) with excluded dates on the first event of the
+ * recurrence. Its occurrences are expanded from the rule, and only created as events up to {@link
+ * #OCCURRENCE_HORIZON_MONTHS} months ahead, so they can be displayed and reminded. The recurrences
+ * created before the rules are converted when one of their events is changed or removed.
+ */
+public interface EventRecurrenceService {
+
+  int OCCURRENCE_HORIZON_MONTHS = 3;
+
+  /**
+   * Compute the recurrence rule of a recurrence configuration.
+   *
+   * @param conf
+   * @param startDateTime start of the first event of the recurrence
+   * @return the RRULE value
+   * @throws AxelorException if the configuration is not valid
+   */
+  String computeRule(RecurrenceConfiguration conf, LocalDateTime startDateTime)
+      throws AxelorException;
+
+  /**
+   * Expand the occurrences of a recurrent event within a window, leaving out the event itself and
+   * the excluded dates.
+   *
+   * @param event first event of the recurrence
+   * @param fromDateTime start of the window, included
+   * @param toDateTime end of the window, excluded
+   * @return the start dates of the occurrences, in order
+   * @throws AxelorException if the rule of the event is not valid
+   */
+  List<LocalDateTime> expand(Event event, LocalDateTime fromDateTime, LocalDateTime toDateTime)
+      throws AxelorException;
+
+  /**
+   * Set the recurrence rule of an event from a configuration, and create its next occurrences.
+   *
+   * @param event
+   * @param conf
+   * @throws AxelorException
+   */
+  void generate(Event event, RecurrenceConfiguration conf) throws AxelorException;
+
+  /**
+   * Create the occurrences of a recurrent event up to a date, following the ones already created.
+   *
+   * @param event first event of the recurrence
+   * @param untilDateTime
+   * @throws AxelorException
+   */
+  void createOccurrences(Event event, LocalDateTime untilDateTime) throws AxelorException;
+
+  /**
+   * Apply the changes of an event to all the events of its recurrence: the first event is updated,
+   * then its occurrences with one bulk update.
+   *
+   * @param event
+   * @throws AxelorException
+   */
+  void applyChangesToAll(Event event) throws AxelorException;
+
+  /**
+   * Replace the recurrence of an event by a new configuration, the event becoming the first event
+   * of the recurrence.
+   *
+   * @param event
+   * @param conf
+   * @throws AxelorException
+   */
+  void changeAll(Event event, RecurrenceConfiguration conf) throws AxelorException;
+
+  /**
+   * Remove an event of a recurrence. An occurrence is excluded from the rule, the first event is
+   * replaced by the next occurrence.
+   *
+   * @param event
+   * @throws AxelorException
+   */
+  void deleteThis(Event event) throws AxelorException;
+
+  /**
+   * Remove an event of a recurrence and the following ones, the rule ending before the event.
+   *
+   * @param event
+   * @throws AxelorException
+   */
+  void deleteNext(Event event) throws AxelorException;
+
+  /**
+   * Remove all the events of the recurrence of an event.
+   *
+   * @param event
+   * @throws AxelorException
+   */
+  void deleteAll(Event event) throws AxelorException;
+}
@@ -0,0 +1,744 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.crm.service;
+
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.crm.db.Event;
+import com.axelor.apps.crm.db.EventReminder;
+import com.axelor.apps.crm.db.RecurrenceConfiguration;
+import com.axelor.apps.crm.db.repo.EventRepository;
+import com.axelor.apps.crm.db.repo.RecurrenceConfigurationRepository;
+import com.axelor.apps.crm.exception.IExceptionMessage;
+import com.axelor.db.JPA;
+import com.axelor.exception.AxelorException;
+import com.axelor.exception.db.repo.TraceBackRepository;
+import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import java.text.ParseException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.Query;
+import net.fortuna.ical4j.model.Date;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Recur;
+import net.fortuna.ical4j.model.parameter.Value;
+
+public class EventRecurrenceServiceImpl implements EventRecurrenceService {
+
+  /** Format of the excluded dates and of the end of the rules, local date-times as in iCalendar. */
+  protected static final DateTimeFormatter ICAL_DATE_TIME_FORMAT =
+      DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+  protected static final int ITERATION_LIMIT = 1000;
+
+  protected EventRepository eventRepo;
+
+  protected AppBaseService appBaseService;
+
+  @Inject
+  public EventRecurrenceServiceImpl(EventRepository eventRepo, AppBaseService appBaseService) {
+    this.eventRepo = eventRepo;
+    this.appBaseService = appBaseService;
+  }
+
+  @Override
+  public String computeRule(RecurrenceConfiguration conf, LocalDateTime startDateTime)
+      throws AxelorException {
+
+    if (conf.getRecurrenceType() == null) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.RECURRENCE_RECURRENCE_TYPE));
+    }
+
+    if (conf.getPeriodicity() == null || conf.getPeriodicity() < 1) {
+      throw new AxelorException(
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.RECURRENCE_PERIODICITY));
+    }
+
+    StringBuilder rule = new StringBuilder("FREQ=");
+
+    switch (conf.getRecurrenceType()) {
+      case RecurrenceConfigurationRepository.TYPE_DAY:
+        rule.append(Recur.DAILY);
+        break;
+
+      case RecurrenceConfigurationRepository.TYPE_WEEK:
+        rule.append(Recur.WEEKLY);
+        break;
+
+      case RecurrenceConfigurationRepository.TYPE_MONTH:
+        rule.append(Recur.MONTHLY);
+        break;
+
+      case RecurrenceConfigurationRepository.TYPE_YEAR:
+        rule.append(Recur.YEARLY);
+        break;
+
+      default:
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(IExceptionMessage.RECURRENCE_RECURRENCE_TYPE));
+    }
+
+    if (conf.getPeriodicity() > 1) {
+      rule.append(";INTERVAL=").append(conf.getPeriodicity());
+    }
+
+    List<String> dayList = new ArrayList<>();
+
+    if (conf.getRecurrenceType() == RecurrenceConfigurationRepository.TYPE_WEEK) {
+      addWeekDay(dayList, conf.getMonday(), DayOfWeek.MONDAY);
+      addWeekDay(dayList, conf.getTuesday(), DayOfWeek.TUESDAY);
+      addWeekDay(dayList, conf.getWednesday(), DayOfWeek.WEDNESDAY);
+      addWeekDay(dayList, conf.getThursday(), DayOfWeek.THURSDAY);
+      addWeekDay(dayList, conf.getFriday(), DayOfWeek.FRIDAY);
+      addWeekDay(dayList, conf.getSaturday(), DayOfWeek.SATURDAY);
+      addWeekDay(dayList, conf.getSunday(), DayOfWeek.SUNDAY);
+
+      if (dayList.isEmpty()) {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(IExceptionMessage.RECURRENCE_DAYS_CHECKED));
+      }
+
+      rule.append(";BYDAY=").append(Joiner.on(',').join(dayList)).append(";WKST=MO");
+
+    } else if (conf.getRecurrenceType() == RecurrenceConfigurationRepository.TYPE_MONTH) {
+      if (conf.getMonthRepeatType() == RecurrenceConfigurationRepository.REPEAT_TYPE_WEEK) {
+        int weekNo = 1 + (startDateTime.getDayOfMonth() - 1) / 7;
+        // A fifth week day falls back on the fourth one in shorter months: it is the last one.
+        rule.append(";BYDAY=")
+            .append(weekNo == 5 ? -1 : weekNo)
+            .append(getWeekDay(startDateTime.getDayOfWeek()));
+      } else {
+        rule.append(";BYMONTHDAY=").append(startDateTime.getDayOfMonth());
+      }
+    }
+
+    if (conf.getEndType() == RecurrenceConfigurationRepository.END_TYPE_REPET) {
+      if (conf.getRepetitionsNumber() == null || conf.getRepetitionsNumber() < 1) {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(IExceptionMessage.RECURRENCE_REPETITION_NUMBER));
+      }
+
+      // The repetitions of a weekly recurrence are weeks, with an occurrence on each checked day,
+      // and the count of the rule includes the first event.
+      rule.append(";COUNT=").append(conf.getRepetitionsNumber() * Math.max(dayList.size(), 1) + 1);
+
+    } else if (conf.getEndType() == RecurrenceConfigurationRepository.END_TYPE_DATE) {
+      if (conf.getEndDate() == null
+          || !conf.getEndDate().isAfter(startDateTime.toLocalDate())) {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(IExceptionMessage.RECURRENCE_END_DATE));
+      }
+
+      rule.append(";UNTIL=")
+          .append(conf.getEndDate().atTime(LocalTime.of(23, 59, 59)).format(ICAL_DATE_TIME_FORMAT));
+    }
+
+    return parseRule(rule.toString()).toString();
+  }
+
+  protected void addWeekDay(List<String> dayList, boolean checked, DayOfWeek dayOfWeek) {
+    if (checked) {
+      dayList.add(getWeekDay(dayOfWeek));
+    }
+  }
+
+  protected String getWeekDay(DayOfWeek dayOfWeek) {
+    return dayOfWeek.name().substring(0, 2);
+  }
+
+  protected Recur parseRule(String rule) throws AxelorException {
+    try {
+      return new Recur(rule);
+    } catch (ParseException | IllegalArgumentException e) {
+      throw new AxelorException(
+          e,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.RECURRENCE_RULE_INVALID),
+          rule);
+    }
+  }
+
+  @Override
+  public List<LocalDateTime> expand(
+      Event event, LocalDateTime fromDateTime, LocalDateTime toDateTime) throws AxelorException {
+
+    List<LocalDateTime> occurrenceList = new ArrayList<>();
+
+    if (event.getRecurrenceRule() == null || !fromDateTime.isBefore(toDateTime)) {
+      return occurrenceList;
+    }
+
+    Set<LocalDateTime> exDateSet = getExDates(event);
+
+    for (Date date :
+        parseRule(event.getRecurrenceRule())
+            .getDates(
+                toDateTime(event.getStartDateTime()),
+                toDateTime(fromDateTime),
+                toDateTime(toDateTime),
+                Value.DATE_TIME)) {
+
+      LocalDateTime startDateTime = toLocalDateTime(date);
+
+      if (!startDateTime.isBefore(fromDateTime)
+          && startDateTime.isBefore(toDateTime)
+          && !startDateTime.equals(event.getStartDateTime())
+          && !exDateSet.contains(startDateTime)) {
+        occurrenceList.add(startDateTime);
+      }
+    }
+
+    Collections.sort(occurrenceList);
+
+    return occurrenceList;
+  }
+
+  /**
+   * Find the first occurrence of a recurrent event after a date, even beyond the created ones.
+   *
+   * @return the start date of the occurrence, or null if the recurrence ends before
+   */
+  protected LocalDateTime getNextOccurrence(Event event, LocalDateTime afterDateTime)
+      throws AxelorException {
+
+    Recur recur = parseRule(event.getRecurrenceRule());
+    Set<LocalDateTime> exDateSet = getExDates(event);
+    DateTime seed = toDateTime(event.getStartDateTime());
+
+    for (int iteration = 0; iteration < ITERATION_LIMIT; iteration++) {
+      Date date = recur.getNextDate(seed, toDateTime(afterDateTime));
+      if (date == null) {
+        return null;
+      }
+      afterDateTime = toLocalDateTime(date);
+      if (!exDateSet.contains(afterDateTime)) {
+        return afterDateTime;
+      }
+    }
+
+    return null;
+  }
+
+  protected Set<LocalDateTime> getExDates(Event event) {
+    if (Strings.isNullOrEmpty(event.getRecurrenceExDates())) {
+      return Collections.emptySet();
+    }
+    return Splitter.on(',')
+        .omitEmptyStrings()
+        .trimResults()
+        .splitToList(event.getRecurrenceExDates())
+        .stream()
+        .map(exDate -> LocalDateTime.parse(exDate, ICAL_DATE_TIME_FORMAT))
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+  }
+
+  protected void setExDates(Event event, Set<LocalDateTime> exDateSet) {
+    event.setRecurrenceExDates(
+        exDateSet.isEmpty()
+            ? null
+            : exDateSet
+                .stream()
+                .sorted()
+                .map(ICAL_DATE_TIME_FORMAT::format)
+                .collect(Collectors.joining(",")));
+  }
+
+  protected DateTime toDateTime(LocalDateTime localDateTime) {
+    return new DateTime(
+        java.util.Date.from(localDateTime.atZone(ZoneId.systemDefault()).toInstant()));
+  }
+
+  protected LocalDateTime toLocalDateTime(java.util.Date date) {
+    return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+  }
+
+  protected LocalDateTime getHorizonDateTime() {
+    return appBaseService
+        .getTodayDateTime()
+        .toLocalDateTime()
+        .plusMonths(OCCURRENCE_HORIZON_MONTHS);
+  }
+
+  @Override
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  public void generate(Event event, RecurrenceConfiguration conf) throws AxelorException {
+    event.setRecurrenceRule(computeRule(conf, event.getStartDateTime()));
+    event.setRecurrenceExDates(null);
+    event.setRecurrenceHorizonDateT(null);
+    createOccurrences(event, getHorizonDateTime());
+  }
+
+  @Override
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  public void createOccurrences(Event event, LocalDateTime untilDateTime) throws AxelorException {
+
+    LocalDateTime fromDateTime =
+        event.getRecurrenceHorizonDateT() != null
+            ? event.getRecurrenceHorizonDateT()
+            : event.getStartDateTime();
+
+    if (!fromDateTime.isBefore(untilDateTime)) {
+      return;
+    }
+
+    Duration duration = Duration.between(event.getStartDateTime(), event.getEndDateTime());
+
+    for (LocalDateTime startDateTime : expand(event, fromDateTime, untilDateTime)) {
+      eventRepo.save(createOccurrence(event, startDateTime, duration));
+    }
+
+    event.setRecurrenceHorizonDateT(untilDateTime);
+    eventRepo.save(event);
+  }
+
+  /** Copy a recurrent event as one of its occurrences, with its own reminders. */
+  protected Event createOccurrence(Event event, LocalDateTime startDateTime, Duration duration) {
+    Event occurrence = eventRepo.copy(event, false);
+    occurrence.setParentEvent(event);
+    occurrence.setIsRecurrenceOccurrence(true);
+    occurrence.setRecurrenceRule(null);
+    occurrence.setRecurrenceExDates(null);
+    occurrence.setRecurrenceHorizonDateT(null);
+    occurrence.setUid(null);
+    occurrence.setRecurrenceDateT(startDateTime);
+    occurrence.setStartDateTime(startDateTime);
+    occurrence.setEndDateTime(startDateTime.plus(duration));
+
+    occurrence.setEventReminderList(new ArrayList<>());
+    if (event.getEventReminderList() != null) {
+      for (EventReminder eventReminder : event.getEventReminderList()) {
+        EventReminder occurrenceReminder = new EventReminder();
+        occurrenceReminder.setTypeSelect(eventReminder.getTypeSelect());
+        occurrenceReminder.setDuration(eventReminder.getDuration());
+        occurrenceReminder.setDurationTypeSelect(eventReminder.getDurationTypeSelect());
+        occurrenceReminder.setAssignToSelect(eventReminder.getAssignToSelect());
+        occurrence.addEventReminderListItem(occurrenceReminder);
+      }
+    }
+
+    return occurrence;
+  }
+
+  /**
+   * Find the first event of the recurrence of an event, converting the recurrence first if it was
+   * created before the rules.
+   */
+  protected Event getFirstEvent(Event event) throws AxelorException {
+    if (event.getIsRecurrenceOccurrence()) {
+      return event.getParentEvent() != null ? event.getParentEvent() : event;
+    }
+    if (event.getRecurrenceRule() == null
+        && (event.getParentEvent() != null || event.getRecurrenceConfiguration() != null)) {
+      return convertRecurrence(event);
+    }
+    return event;
+  }
+
+  /**
+   * Convert a recurrence created before the rules, whose events were all created as copies chained
+   * through their parent event. The first event of the chain gets the rule of its configuration,
+   * ending with the last event, and the other events become its occurrences.
+   *
+   * @return the first event of the recurrence
+   */
+  protected Event convertRecurrence(Event event) throws AxelorException {
+
+    Event firstEvent = event;
+    Set<Long> chainIdSet = new HashSet<>();
+    while (firstEvent.getParentEvent() != null && chainIdSet.add(firstEvent.getId())) {
+      firstEvent = firstEvent.getParentEvent();
+    }
+
+    RecurrenceConfiguration conf =
+        firstEvent.getRecurrenceConfiguration() != null
+            ? firstEvent.getRecurrenceConfiguration()
+            : event.getRecurrenceConfiguration();
+    if (conf == null) {
+      return event;
+    }
+
+    LocalDateTime lastStartDateTime = firstEvent.getStartDateTime();
+    List<Event> parentList = Collections.singletonList(firstEvent);
+    boolean converted = false;
+
+    while (!parentList.isEmpty()) {
+      List<Event> occurrenceList =
+          eventRepo
+              .all()
+              .filter(
+                  "self.parentEvent IN :parentList AND self.isRecurrenceOccurrence = FALSE "
+                      + "AND self.id != :firstEventId")
+              .bind("parentList", parentList)
+              .bind("firstEventId", firstEvent.getId())
+              .fetch();
+
+      for (Event occurrence : occurrenceList) {
+        occurrence.setParentEvent(firstEvent);
+        occurrence.setIsRecurrenceOccurrence(true);
+        occurrence.setRecurrenceRule(null);
+        occurrence.setRecurrenceExDates(null);
+        occurrence.setRecurrenceHorizonDateT(null);
+        occurrence.setRecurrenceDateT(occurrence.getStartDateTime());
+        eventRepo.save(occurrence);
+        if (occurrence.getStartDateTime().isAfter(lastStartDateTime)) {
+          lastStartDateTime = occurrence.getStartDateTime();
+        }
+        converted = true;
+      }
+      parentList = occurrenceList;
+    }
+
+    if (!converted) {
+      return event;
+    }
+
+    // All the occurrences were created with the recurrence, none is left to create.
+    Recur recur = parseRule(computeRule(conf, firstEvent.getStartDateTime()));
+    recur.setUntil(toDateTime(lastStartDateTime));
+    firstEvent.setParentEvent(null);
+    firstEvent.setIsRecurrenceOccurrence(false);
+    firstEvent.setRecurrenceDateT(null);
+    firstEvent.setRecurrenceConfiguration(conf);
+    firstEvent.setRecurrenceRule(recur.toString());
+    firstEvent.setRecurrenceExDates(null);
+    firstEvent.setRecurrenceHorizonDateT(lastStartDateTime.plusSeconds(1));
+    return eventRepo.save(firstEvent);
+  }
+
+  @Override
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  public void applyChangesToAll(Event event) throws AxelorException {
+
+    Event firstEvent = getFirstEvent(event);
+
+    if (firstEvent != event) {
+      copyChanges(event, firstEvent);
+      firstEvent.setStartDateTime(
+          withTime(firstEvent.getStartDateTime(), event.getStartDateTime()));
+      firstEvent.setEndDateTime(withTime(firstEvent.getEndDateTime(), event.getEndDateTime()));
+      firstEvent = eventRepo.save(firstEvent);
+      if (event.getRecurrenceDateT() != null) {
+        event.setRecurrenceDateT(withTime(event.getRecurrenceDateT(), event.getStartDateTime()));
+      }
+    }
+
+    JPA.em()
+        .createQuery(
+            "UPDATE Event self SET self.subject = :subject, self.subjectTeam = :subjectTeam, "
+                + "self.calendar = :calendar, self.duration = :duration, self.user = :user, "
+                + "self.team = :team, self.disponibilitySelect = :disponibilitySelect, "
+                + "self.visibilitySelect = :visibilitySelect, self.description = :description, "
+                + "self.partner = :partner, self.contactPartner = :contactPartner, "
+                + "self.lead = :lead, self.typeSelect = :typeSelect, "
+                + "self.location = :location, self.version = self.version + 1 "
+                + "WHERE self.parentEvent = :parentEvent AND self.isRecurrenceOccurrence = TRUE "
+                + "AND self.id != :eventId")
+        .setParameter("subject", firstEvent.getSubject())
+        .setParameter("subjectTeam", firstEvent.getSubjectTeam())
+        .setParameter("calendar", firstEvent.getCalendar())
+        .setParameter("duration", firstEvent.getDuration())
+        .setParameter("user", firstEvent.getUser())
+        .setParameter("team", firstEvent.getTeam())
+        .setParameter("disponibilitySelect", firstEvent.getDisponibilitySelect())
+        .setParameter("visibilitySelect", firstEvent.getVisibilitySelect())
+        .setParameter("description", firstEvent.getDescription())
+        .setParameter("partner", firstEvent.getPartner())
+        .setParameter("contactPartner", firstEvent.getContactPartner())
+        .setParameter("lead", firstEvent.getLead())
+        .setParameter("typeSelect", firstEvent.getTypeSelect())
+        .setParameter("location", firstEvent.getLocation())
+        .setParameter("parentEvent", firstEvent)
+        .setParameter("eventId", event.getId())
+        .executeUpdate();
+
+    // Times are only rewritten on the occurrences whose time of day differs, with the start date
+    // of the occurrences in the rule.
+    LocalDateTime startDateTime = firstEvent.getStartDateTime();
+    LocalDateTime endDateTime = firstEvent.getEndDateTime();
+    List<Event> occurrenceList =
+        eventRepo
+            .all()
+            .filter(
+                "self.parentEvent = :parentEvent AND self.isRecurrenceOccurrence = TRUE "
+                    + "AND COALESCE(self.archived, false) = false AND self.id != :eventId "
+                    + "AND (HOUR(self.startDateTime) != :startHour "
+                    + "OR MINUTE(self.startDateTime) != :startMinute "
+                    + "OR HOUR(self.endDateTime) != :endHour "
+                    + "OR MINUTE(self.endDateTime) != :endMinute "
+                    + "OR HOUR(self.recurrenceDateT) != :startHour "
+                    + "OR MINUTE(self.recurrenceDateT) != :startMinute)")
+            .bind("parentEvent", firstEvent)
+            .bind("eventId", event.getId())
+            .bind("startHour", startDateTime.getHour())
+            .bind("startMinute", startDateTime.getMinute())
+            .bind("endHour", endDateTime.getHour())
+            .bind("endMinute", endDateTime.getMinute())
+            .fetch();
+
+    for (Event occurrence : occurrenceList) {
+      occurrence.setStartDateTime(withTime(occurrence.getStartDateTime(), startDateTime));
+      occurrence.setEndDateTime(withTime(occurrence.getEndDateTime(), endDateTime));
+      if (occurrence.getRecurrenceDateT() != null) {
+        occurrence.setRecurrenceDateT(withTime(occurrence.getRecurrenceDateT(), startDateTime));
+      }
+      eventRepo.save(occurrence);
+    }
+  }
+
+  protected void copyChanges(Event source, Event target) {
+    target.setSubject(source.getSubject());
+    target.setCalendar(source.getCalendar());
+    target.setDuration(source.getDuration());
+    target.setUser(source.getUser());
+    target.setTeam(source.getTeam());
+    target.setDisponibilitySelect(source.getDisponibilitySelect());
+    target.setVisibilitySelect(source.getVisibilitySelect());
+    target.setDescription(source.getDescription());
+    target.setPartner(source.getPartner());
+    target.setContactPartner(source.getContactPartner());
+    target.setLead(source.getLead());
+    target.setTypeSelect(source.getTypeSelect());
+    target.setLocation(source.getLocation());
+  }
+
+  protected LocalDateTime withTime(LocalDateTime dateTime, LocalDateTime timeSource) {
+    return dateTime.withHour(timeSource.getHour()).withMinute(timeSource.getMinute());
+  }
+
+  /**
+   * Archive the occurrences of a recurrent event with one bulk update.
+   *
+   * @param event first event of the recurrence
+   * @param fromDateTime start of the first occurrence to archive, null for all the occurrences
+   * @param keptEvent occurrence to keep, can be null
+   */
+  protected void archiveOccurrences(Event event, LocalDateTime fromDateTime, Event keptEvent) {
+    StringBuilder update =
+        new StringBuilder(
+            "UPDATE Event self SET self.archived = TRUE, self.version = self.version + 1 "
+                + "WHERE self.parentEvent = :parentEvent AND self.isRecurrenceOccurrence = TRUE "
+                + "AND COALESCE(self.archived, false) = false");
+    if (fromDateTime != null) {
+      update.append(" AND self.startDateTime >= :fromDateTime");
+    }
+    if (keptEvent != null) {
+      update.append(" AND self.id != :keptEventId");
+    }
+
+    Query query = JPA.em().createQuery(update.toString()).setParameter("parentEvent", event);
+    if (fromDateTime != null) {
+      query.setParameter("fromDateTime", fromDateTime);
+    }
+    if (keptEvent != null) {
+      query.setParameter("keptEventId", keptEvent.getId());
+    }
+    query.executeUpdate();
+  }
+
+  @Override
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  public void changeAll(Event event, RecurrenceConfiguration conf) throws AxelorException {
+
+    Event firstEvent = getFirstEvent(event);
+    archiveOccurrences(firstEvent, null, event);
+
+    if (firstEvent != event) {
+      firstEvent.setRecurrenceRule(null);
+      eventRepo.remove(firstEvent);
+      event.setParentEvent(null);
+      event.setIsRecurrenceOccurrence(false);
+      event.setRecurrenceDateT(null);
+    }
+
+    conf = Beans.get(RecurrenceConfigurationRepository.class).save(conf);
+    event.setRecurrenceConfiguration(conf);
+    generate(event, conf);
+  }
+
+  @Override
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  public void deleteThis(Event event) throws AxelorException {
+
+    Event firstEvent = getFirstEvent(event);
+
+    if (firstEvent != event) {
+      Set<LocalDateTime> exDateSet = new LinkedHashSet<>(getExDates(firstEvent));
+      exDateSet.add(getRuleDateTime(event));
+      setExDates(firstEvent, exDateSet);
+      eventRepo.save(firstEvent);
+      eventRepo.remove(event);
+      return;
+    }
+
+    if (event.getRecurrenceRule() == null) {
+      eventRepo.remove(event);
+      return;
+    }
+
+    // The next occurrence becomes the first event of the recurrence.
+    Event nextEvent =
+        eventRepo
+            .all()
+            .filter(
+                "self.parentEvent = ?1 AND self.isRecurrenceOccurrence = TRUE "
+                    + "AND COALESCE(self.archived, false) = false",
+                event)
+            .order("startDateTime")
+            .order("id")
+            .fetchOne();
+
+    if (nextEvent == null) {
+      LocalDateTime nextStartDateTime = getNextOccurrence(event, event.getStartDateTime());
+      if (nextStartDateTime == null) {
+        event.setRecurrenceRule(null);
+        eventRepo.remove(event);
+        return;
+      }
+      nextEvent =
+          createOccurrence(
+              event,
+              nextStartDateTime,
+              Duration.between(event.getStartDateTime(), event.getEndDateTime()));
+    }
+
+    LocalDateTime nextStartDateTime = nextEvent.getStartDateTime();
+
+    nextEvent.setParentEvent(null);
+    nextEvent.setIsRecurrenceOccurrence(false);
+    nextEvent.setRecurrenceDateT(null);
+    nextEvent.setRecurrenceConfiguration(event.getRecurrenceConfiguration());
+    nextEvent.setRecurrenceRule(getRuleFrom(event, nextStartDateTime));
+    setExDates(
+        nextEvent,
+        getExDates(event)
+            .stream()
+            .filter(exDate -> exDate.isAfter(nextStartDateTime))
+            .collect(Collectors.toCollection(LinkedHashSet::new)));
+    LocalDateTime horizonDateTime = event.getRecurrenceHorizonDateT();
+    nextEvent.setRecurrenceHorizonDateT(
+        horizonDateTime == null || horizonDateTime.isBefore(nextStartDateTime)
+            ? nextStartDateTime
+            : horizonDateTime);
+    Event firstNextEvent = eventRepo.save(nextEvent);
+
+    JPA.em()
+        .createQuery(
+            "UPDATE Event self SET self.parentEvent = :nextEvent, self.version = self.version + 1 "
+                + "WHERE self.parentEvent = :event AND self.id != :nextEventId")
+        .setParameter("nextEvent", firstNextEvent)
+        .setParameter("event", event)
+        .setParameter("nextEventId", firstNextEvent.getId())
+        .executeUpdate();
+
+    event.setRecurrenceRule(null);
+    event.setRecurrenceExDates(null);
+    eventRepo.remove(event);
+  }
+
+  /**
+   * Compute the rule of a recurrence starting with one of its occurrences instead of its first
+   * event: the instances before the occurrence, excluded or not, no longer count.
+   */
+  protected String getRuleFrom(Event event, LocalDateTime nextStartDateTime)
+      throws AxelorException {
+
+    Recur recur = parseRule(event.getRecurrenceRule());
+    if (recur.getCount() > 0) {
+      long previousCount =
+          recur
+              .getDates(
+                  toDateTime(event.getStartDateTime()),
+                  toDateTime(event.getStartDateTime()),
+                  toDateTime(nextStartDateTime),
+                  Value.DATE_TIME)
+              .stream()
+              .filter(date -> toLocalDateTime(date).isBefore(nextStartDateTime))
+              .count();
+      recur.setCount(recur.getCount() - (int) Math.max(previousCount, 1));
+    }
+    return recur.toString();
+  }
+
+  /**
+   * Start date of an occurrence in the rule of its recurrence, which differs from its start date
+   * once the occurrence is moved. Occurrences created without it use their start date.
+   */
+  protected LocalDateTime getRuleDateTime(Event occurrence) {
+    return occurrence.getRecurrenceDateT() != null
+        ? occurrence.getRecurrenceDateT()
+        : occurrence.getStartDateTime();
+  }
+
+  /** Compute the rule of a recurrence ending before one of its occurrences. */
+  protected String getRuleUntil(Event event, LocalDateTime startDateTime) throws AxelorException {
+    Recur recur = parseRule(event.getRecurrenceRule());
+    recur.setUntil(toDateTime(startDateTime.minusSeconds(1)));
+    return recur.toString();
+  }
+
+  @Override
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  public void deleteNext(Event event) throws AxelorException {
+
+    Event firstEvent = getFirstEvent(event);
+
+    if (firstEvent == event) {
+      deleteAll(event);
+      return;
+    }
+
+    firstEvent.setRecurrenceRule(getRuleUntil(firstEvent, getRuleDateTime(event)));
+    eventRepo.save(firstEvent);
+
+    archiveOccurrences(firstEvent, event.getStartDateTime(), null);
+  }
+
+  @Override
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  public void deleteAll(Event event) throws AxelorException {
+
+    Event firstEvent = getFirstEvent(event);
+    archiveOccurrences(firstEvent, null, null);
+
+    firstEvent.setRecurrenceRule(null);
+    eventRepo.remove(firstEvent);
+  }
+}
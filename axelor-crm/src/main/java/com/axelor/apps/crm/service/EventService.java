@@ -23,9 +23,7 @@ import com.axelor.apps.crm.db.RecurrenceConfiguration;
 import com.axelor.apps.message.db.EmailAddress;
 import com.axelor.auth.db.User;
 import com.axelor.exception.AxelorException;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Map;
 
 public interface EventService {
 
@@ -43,29 +41,7 @@ public interface EventService {
 
   void manageFollowers(Event event);
 
-  void addRecurrentEventsByDays(
-      Event event, int periodicity, int endType, int repetitionsNumber, LocalDate endDate);
-
-  void addRecurrentEventsByWeeks(
-      Event event,
-      int periodicity,
-      int endType,
-      int repetitionsNumber,
-      LocalDate endDate,
-      Map<Integer, Boolean> daysCheckedMap);
-
-  void addRecurrentEventsByMonths(
-      Event event,
-      int periodicity,
-      int endType,
-      int repetitionsNumber,
-      LocalDate endDate,
-      int monthRepeatType);
-
-  void addRecurrentEventsByYears(
-      Event event, int periodicity, int endType, int repetitionsNumber, LocalDate endDate);
-
-  void applyChangesToAll(Event event);
+  void applyChangesToAll(Event event) throws AxelorException;
 
   String computeRecurrenceName(RecurrenceConfiguration recurrConf);
 
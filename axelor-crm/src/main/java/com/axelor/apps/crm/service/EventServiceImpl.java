@@ -29,14 +29,12 @@ import com.axelor.apps.crm.db.RecurrenceConfiguration;
 import com.axelor.apps.crm.db.repo.EventRepository;
 import com.axelor.apps.crm.db.repo.LeadRepository;
 import com.axelor.apps.crm.db.repo.RecurrenceConfigurationRepository;
-import com.axelor.apps.crm.exception.IExceptionMessage;
 import com.axelor.apps.message.db.EmailAddress;
 import com.axelor.apps.message.db.repo.EmailAddressRepository;
 import com.axelor.apps.message.service.MessageService;
 import com.axelor.apps.message.service.TemplateMessageService;
 import com.axelor.auth.db.User;
 import com.axelor.exception.AxelorException;
-import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.mail.db.MailAddress;
@@ -46,19 +44,10 @@ import com.axelor.mail.db.repo.MailFollowerRepository;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
-import java.time.DayOfWeek;
 import java.time.Duration;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.TemporalAdjusters;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.function.BiFunction;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import org.apache.commons.math3.exception.TooManyIterationsException;
 
 public class EventServiceImpl implements EventService {
 
@@ -76,7 +65,7 @@ public class EventServiceImpl implements EventService {
 
   @Inject private LeadRepository leadRepo;
 
-  private static final int ITERATION_LIMIT = 1000;
+  @Inject private EventRecurrenceService eventRecurrenceService;
 
   @Inject
   public EventServiceImpl(
@@ -158,234 +147,8 @@ public class EventServiceImpl implements EventService {
   }
 
   @Override
-  @Transactional
-  public void addRecurrentEventsByDays(
-      Event event, int periodicity, int endType, int repetitionsNumber, LocalDate endDate) {
-    Event lastEvent = event;
-    if (endType == RecurrenceConfigurationRepository.END_TYPE_REPET) {
-      int repeated = 0;
-      while (repeated != repetitionsNumber) {
-        Event copy = eventRepo.copy(lastEvent, false);
-        copy.setParentEvent(event);
-        copy.setStartDateTime(copy.getStartDateTime().plusDays(periodicity));
-        copy.setEndDateTime(copy.getEndDateTime().plusDays(periodicity));
-        lastEvent = eventRepo.save(copy);
-        repeated++;
-      }
-    } else {
-      while (lastEvent
-          .getStartDateTime()
-          .plusDays(periodicity)
-          .isBefore(endDate.atStartOfDay().plusDays(1))) {
-        Event copy = eventRepo.copy(lastEvent, false);
-        copy.setParentEvent(event);
-        copy.setStartDateTime(copy.getStartDateTime().plusDays(periodicity));
-        copy.setEndDateTime(copy.getEndDateTime().plusDays(periodicity));
-        lastEvent = eventRepo.save(copy);
-      }
-    }
-  }
-
-  @Override
-  @Transactional
-  public void addRecurrentEventsByWeeks(
-      Event event,
-      int periodicity,
-      int endType,
-      int repetitionsNumber,
-      LocalDate endDate,
-      Map<Integer, Boolean> daysCheckedMap) {
-
-    List<DayOfWeek> dayOfWeekList =
-        daysCheckedMap.keySet().stream().sorted().map(DayOfWeek::of).collect(Collectors.toList());
-    Duration duration = Duration.between(event.getStartDateTime(), event.getEndDateTime());
-    Event lastEvent = event;
-    BiFunction<Integer, LocalDateTime, Boolean> breakCondition;
-
-    if (endType == RecurrenceConfigurationRepository.END_TYPE_REPET) {
-      breakCondition = (iteration, dateTime) -> iteration >= repetitionsNumber;
-    } else {
-      breakCondition = (iteration, dateTime) -> dateTime.toLocalDate().isAfter(endDate);
-    }
-
-    boolean loop = true;
-
-    for (int iteration = 0; loop; ++iteration) {
-      if (iteration > ITERATION_LIMIT) {
-        throw new TooManyIterationsException(iteration);
-      }
-
-      LocalDateTime nextStartDateTime = lastEvent.getStartDateTime().plusWeeks(periodicity - 1L);
-
-      for (DayOfWeek dayOfWeek : dayOfWeekList) {
-        nextStartDateTime = nextStartDateTime.with(TemporalAdjusters.next(dayOfWeek));
-
-        if (breakCondition.apply(iteration, nextStartDateTime)) {
-          loop = false;
-          break;
-        }
-
-        Event copy = eventRepo.copy(lastEvent, false);
-        copy.setParentEvent(event);
-        copy.setStartDateTime(nextStartDateTime);
-        copy.setEndDateTime(nextStartDateTime.plus(duration));
-        lastEvent = eventRepo.save(copy);
-      }
-    }
-  }
-
-  @Override
-  @Transactional
-  public void addRecurrentEventsByMonths(
-      Event event,
-      int periodicity,
-      int endType,
-      int repetitionsNumber,
-      LocalDate endDate,
-      int monthRepeatType) {
-
-    int weekNo = 1 + (event.getStartDateTime().getDayOfMonth() - 1) / 7;
-    Duration duration = Duration.between(event.getStartDateTime(), event.getEndDateTime());
-    Event lastEvent = event;
-    BiFunction<Integer, LocalDateTime, Boolean> breakConditionFunc;
-    Function<LocalDateTime, LocalDateTime> nextStartDateTimeFunc;
-    LocalDateTime nextStartDateTime;
-
-    if (endType == RecurrenceConfigurationRepository.END_TYPE_REPET) {
-      breakConditionFunc = (iteration, dateTime) -> iteration >= repetitionsNumber;
-    } else {
-      breakConditionFunc = (iteration, dateTime) -> dateTime.toLocalDate().isAfter(endDate);
-    }
-
-    if (monthRepeatType == RecurrenceConfigurationRepository.REPEAT_TYPE_MONTH) {
-      nextStartDateTimeFunc =
-          dateTime ->
-              dateTime
-                  .withDayOfMonth(1)
-                  .plusMonths(periodicity)
-                  .withDayOfMonth(event.getStartDateTime().getDayOfMonth());
-    } else {
-      nextStartDateTimeFunc =
-          dateTime -> {
-            LocalDateTime baseNextDateTime = dateTime.withDayOfMonth(1).plusMonths(periodicity);
-            dateTime =
-                baseNextDateTime.with(
-                    TemporalAdjusters.dayOfWeekInMonth(
-                        weekNo, event.getStartDateTime().getDayOfWeek()));
-
-            if (!dateTime.getMonth().equals(baseNextDateTime.getMonth()) && weekNo > 1) {
-              dateTime =
-                  baseNextDateTime.with(
-                      TemporalAdjusters.dayOfWeekInMonth(
-                          weekNo - 1, event.getStartDateTime().getDayOfWeek()));
-            }
-
-            return dateTime;
-          };
-    }
-
-    for (int iteration = 0; ; ++iteration) {
-      if (iteration > ITERATION_LIMIT) {
-        throw new TooManyIterationsException(iteration);
-      }
-
-      nextStartDateTime = nextStartDateTimeFunc.apply(lastEvent.getStartDateTime());
-
-      if (breakConditionFunc.apply(iteration, nextStartDateTime)) {
-        break;
-      }
-
-      Event copy = eventRepo.copy(lastEvent, false);
-      copy.setParentEvent(event);
-      copy.setStartDateTime(nextStartDateTime);
-      copy.setEndDateTime(nextStartDateTime.plus(duration));
-      lastEvent = eventRepo.save(copy);
-    }
-  }
-
-  @Override
-  @Transactional
-  public void addRecurrentEventsByYears(
-      Event event, int periodicity, int endType, int repetitionsNumber, LocalDate endDate) {
-    Event lastEvent = event;
-    if (endType == RecurrenceConfigurationRepository.END_TYPE_REPET) {
-      int repeated = 0;
-      while (repeated != repetitionsNumber) {
-        Event copy = eventRepo.copy(lastEvent, false);
-        copy.setParentEvent(event);
-        copy.setStartDateTime(copy.getStartDateTime().plusYears(periodicity));
-        copy.setEndDateTime(copy.getEndDateTime().plusYears(periodicity));
-        lastEvent = eventRepo.save(copy);
-        repeated++;
-      }
-    } else {
-      while (lastEvent
-          .getStartDateTime()
-          .plusYears(periodicity)
-          .isBefore(endDate.atStartOfDay().plusYears(1))) {
-        Event copy = eventRepo.copy(lastEvent, false);
-        copy.setParentEvent(event);
-        copy.setStartDateTime(copy.getStartDateTime().plusYears(periodicity));
-        copy.setEndDateTime(copy.getEndDateTime().plusYears(periodicity));
-        lastEvent = eventRepo.save(copy);
-      }
-    }
-  }
-
-  @Override
-  @Transactional
-  public void applyChangesToAll(Event event) {
-
-    Event child = eventRepo.all().filter("self.parentEvent.id = ?1", event.getId()).fetchOne();
-    Event parent = event.getParentEvent();
-    Event copyEvent = eventRepo.copy(event, false);
-    while (child != null) {
-      child.setSubject(event.getSubject());
-      child.setCalendar(event.getCalendar());
-      child.setStartDateTime(child.getStartDateTime().withHour(event.getStartDateTime().getHour()));
-      child.setStartDateTime(
-          child.getStartDateTime().withMinute(event.getStartDateTime().getMinute()));
-      child.setEndDateTime(child.getEndDateTime().withHour(event.getEndDateTime().getHour()));
-      child.setEndDateTime(child.getEndDateTime().withMinute(event.getEndDateTime().getMinute()));
-      child.setDuration(event.getDuration());
-      child.setUser(event.getUser());
-      child.setTeam(event.getTeam());
-      child.setDisponibilitySelect(event.getDisponibilitySelect());
-      child.setVisibilitySelect(event.getVisibilitySelect());
-      child.setDescription(event.getDescription());
-      child.setPartner(event.getPartner());
-      child.setContactPartner(event.getContactPartner());
-      child.setLead(event.getLead());
-      child.setTypeSelect(event.getTypeSelect());
-      child.setLocation(event.getLocation());
-      eventRepo.save(child);
-      copyEvent = child;
-      child = eventRepo.all().filter("self.parentEvent.id = ?1", copyEvent.getId()).fetchOne();
-    }
-    while (parent != null) {
-      Event nextParent = parent.getParentEvent();
-      parent.setSubject(event.getSubject());
-      parent.setCalendar(event.getCalendar());
-      parent.setStartDateTime(
-          parent.getStartDateTime().withHour(event.getStartDateTime().getHour()));
-      parent.setStartDateTime(
-          parent.getStartDateTime().withMinute(event.getStartDateTime().getMinute()));
-      parent.setEndDateTime(parent.getEndDateTime().withHour(event.getEndDateTime().getHour()));
-      parent.setEndDateTime(parent.getEndDateTime().withMinute(event.getEndDateTime().getMinute()));
-      parent.setDuration(event.getDuration());
-      parent.setUser(event.getUser());
-      parent.setTeam(event.getTeam());
-      parent.setDisponibilitySelect(event.getDisponibilitySelect());
-      parent.setVisibilitySelect(event.getVisibilitySelect());
-      parent.setDescription(event.getDescription());
-      parent.setPartner(event.getPartner());
-      parent.setContactPartner(event.getContactPartner());
-      parent.setLead(event.getLead());
-      parent.setTypeSelect(event.getTypeSelect());
-      parent.setLocation(event.getLocation());
-      eventRepo.save(parent);
-      parent = nextParent;
-    }
+  public void applyChangesToAll(Event event) throws AxelorException {
+    eventRecurrenceService.applyChangesToAll(event);
   }
 
   @Override
@@ -515,118 +278,7 @@ public class EventServiceImpl implements EventService {
   @Override
   public void generateRecurrentEvents(Event event, RecurrenceConfiguration conf)
       throws AxelorException {
-    if (conf.getRecurrenceType() == null) {
-      throw new AxelorException(
-          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-          IExceptionMessage.RECURRENCE_RECURRENCE_TYPE);
-    }
-
-    int recurrenceType = new Integer(conf.getRecurrenceType().toString());
-
-    if (conf.getPeriodicity() == null) {
-      throw new AxelorException(
-          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-          I18n.get(IExceptionMessage.RECURRENCE_PERIODICITY));
-    }
-
-    int periodicity = new Integer(conf.getPeriodicity().toString());
-
-    if (periodicity < 1) {
-      throw new AxelorException(
-          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-          I18n.get(IExceptionMessage.RECURRENCE_PERIODICITY));
-    }
-
-    boolean monday = conf.getMonday();
-    boolean tuesday = conf.getTuesday();
-    boolean wednesday = conf.getWednesday();
-    boolean thursday = conf.getThursday();
-    boolean friday = conf.getFriday();
-    boolean saturday = conf.getSaturday();
-    boolean sunday = conf.getSunday();
-    Map<Integer, Boolean> daysMap = new HashMap<>();
-    Map<Integer, Boolean> daysCheckedMap = new HashMap<>();
-    if (recurrenceType == RecurrenceConfigurationRepository.TYPE_WEEK) {
-      daysMap.put(DayOfWeek.MONDAY.getValue(), monday);
-      daysMap.put(DayOfWeek.TUESDAY.getValue(), tuesday);
-      daysMap.put(DayOfWeek.WEDNESDAY.getValue(), wednesday);
-      daysMap.put(DayOfWeek.THURSDAY.getValue(), thursday);
-      daysMap.put(DayOfWeek.FRIDAY.getValue(), friday);
-      daysMap.put(DayOfWeek.SATURDAY.getValue(), saturday);
-      daysMap.put(DayOfWeek.SUNDAY.getValue(), sunday);
-
-      for (Integer day : daysMap.keySet()) {
-        if (daysMap.get(day)) {
-          daysCheckedMap.put(day, daysMap.get(day));
-        }
-      }
-      if (daysCheckedMap.isEmpty()) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.RECURRENCE_DAYS_CHECKED));
-      }
-    }
-
-    int monthRepeatType = new Integer(conf.getMonthRepeatType().toString());
-
-    int endType = new Integer(conf.getEndType().toString());
-
-    int repetitionsNumber = 0;
-
-    if (endType == RecurrenceConfigurationRepository.END_TYPE_REPET) {
-      if (conf.getRepetitionsNumber() == null) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.RECURRENCE_REPETITION_NUMBER));
-      }
-
-      repetitionsNumber = new Integer(conf.getRepetitionsNumber().toString());
-
-      if (repetitionsNumber < 1) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.RECURRENCE_REPETITION_NUMBER));
-      }
-    }
-    LocalDate endDate = event.getEndDateTime().toLocalDate();
-    if (endType == RecurrenceConfigurationRepository.END_TYPE_DATE) {
-      if (conf.getEndDate() == null) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.RECURRENCE_END_DATE));
-      }
-
-      endDate = LocalDate.parse(conf.getEndDate().toString(), DateTimeFormatter.ISO_DATE);
-
-      if (endDate.isBefore(event.getStartDateTime().toLocalDate())
-          || endDate.isEqual(event.getStartDateTime().toLocalDate())) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.RECURRENCE_END_DATE));
-      }
-    }
-    switch (recurrenceType) {
-      case RecurrenceConfigurationRepository.TYPE_DAY:
-        addRecurrentEventsByDays(event, periodicity, endType, repetitionsNumber, endDate);
-        break;
-
-      case RecurrenceConfigurationRepository.TYPE_WEEK:
-        addRecurrentEventsByWeeks(
-            event, periodicity, endType, repetitionsNumber, endDate, daysCheckedMap);
-        break;
-
-      case RecurrenceConfigurationRepository.TYPE_MONTH:
-        addRecurrentEventsByMonths(
-            event, periodicity, endType, repetitionsNumber, endDate, monthRepeatType);
-        break;
-
-      case RecurrenceConfigurationRepository.TYPE_YEAR:
-        addRecurrentEventsByYears(event, periodicity, endType, repetitionsNumber, endDate);
-        break;
-
-      default:
-        break;
-    }
+    eventRecurrenceService.generate(event, conf);
   }
 
   @Override
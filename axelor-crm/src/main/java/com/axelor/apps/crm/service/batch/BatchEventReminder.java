@@ -17,6 +17,7 @@
  */
 package com.axelor.apps.crm.service.batch;
 
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.crm.db.Event;
 import com.axelor.apps.crm.db.EventReminder;
@@ -24,6 +25,7 @@ import com.axelor.apps.crm.db.IEventReminder;
 import com.axelor.apps.crm.db.repo.EventRepository;
 import com.axelor.apps.crm.exception.IExceptionMessage;
 import com.axelor.apps.crm.message.MessageServiceCrmImpl;
+import com.axelor.apps.crm.service.EventRecurrenceService;
 import com.axelor.apps.message.db.Message;
 import com.axelor.apps.message.service.MailAccountService;
 import com.axelor.apps.message.service.MessageService;
@@ -49,6 +51,8 @@ public class BatchEventReminder extends BatchStrategy {
 
   @Inject private EventRepository eventRepo;
 
+  @Inject private EventRecurrenceService eventRecurrenceService;
+
   @Inject
   public BatchEventReminder(
       MessageServiceCrmImpl messageServiceCrmImpl, MailAccountService mailAccountService) {
@@ -65,51 +69,78 @@ public class BatchEventReminder extends BatchStrategy {
   @Override
   protected void process() {
 
+    this.createOccurrencesProcess();
     this.markEventReminderProcess();
     this.generateMessageProcess();
   }
 
-  protected void markEventReminderProcess() {
-
-    if (!stop) {
+  /** Create the occurrences of the recurrent events up to the horizon, with their reminders. */
+  protected void createOccurrencesProcess() {
 
-      int i = 0;
+    LocalDateTime untilDateTime =
+        Beans.get(AppBaseService.class)
+            .getTodayDateTime()
+            .toLocalDateTime()
+            .plusMonths(EventRecurrenceService.OCCURRENCE_HORIZON_MONTHS);
 
-      List<? extends EventReminder> eventReminderList = eventReminderRepo.all().fetch();
+    KeysetPager<Event> pager =
+        KeysetPager.of(Event.class)
+            .filter(
+                "self.recurrenceRule IS NOT NULL AND COALESCE(self.archived, false) = false "
+                    + "AND (self.recurrenceHorizonDateT IS NULL "
+                    + "OR self.recurrenceHorizonDateT < :untilDateTime)")
+            .bind("untilDateTime", untilDateTime);
+    List<Event> eventList;
 
-      for (EventReminder eventReminder : eventReminderList) {
+    while (!(eventList = pager.fetchNext()).isEmpty()) {
 
+      for (Event event : eventList) {
         try {
+          eventRecurrenceService.createOccurrences(event, untilDateTime);
+        } catch (Exception e) {
+          TraceBackService.trace(e, IException.CRM, batch.getId());
+          incrementAnomaly();
+        }
+      }
+    }
+  }
 
-          eventReminder = eventReminderRepo.find(eventReminder.getId());
+  protected void markEventReminderProcess() {
 
-          if (this.isExpired(eventReminder)) {
-            eventReminder.setIsReminded(true);
-            updateEventReminder(eventReminder);
-            i++;
-          }
+    if (!stop) {
 
-        } catch (Exception e) {
+      KeysetPager<EventReminder> pager =
+          KeysetPager.of(EventReminder.class)
+              .filter("COALESCE(self.event.archived, false) = false");
+      List<EventReminder> eventReminderList;
 
-          TraceBackService.trace(
-              new Exception(
-                  String.format(
-                      I18n.get(IExceptionMessage.BATCH_EVENT_REMINDER_1),
-                      eventReminderRepo.find(eventReminder.getId()).getEvent().getSubject()),
-                  e),
-              IException.CRM,
-              batch.getId());
+      while (!(eventReminderList = pager.fetchNext()).isEmpty()) {
 
-          incrementAnomaly();
+        for (EventReminder eventReminder : eventReminderList) {
 
-          LOG.error(
-              "Bug(Anomalie) généré(e) pour le rappel de l'évènement {}",
-              eventReminderRepo.find(eventReminder.getId()).getEvent().getSubject());
+          try {
 
-        } finally {
+            if (this.isExpired(eventReminder)) {
+              eventReminder.setIsReminded(true);
+              updateEventReminder(eventReminder);
+            }
 
-          if (i % 1 == 0) {
-            JPA.clear();
+          } catch (Exception e) {
+
+            TraceBackService.trace(
+                new Exception(
+                    String.format(
+                        I18n.get(IExceptionMessage.BATCH_EVENT_REMINDER_1),
+                        eventReminderRepo.find(eventReminder.getId()).getEvent().getSubject()),
+                    e),
+                IException.CRM,
+                batch.getId());
+
+            incrementAnomaly();
+
+            LOG.error(
+                "Bug(Anomalie) généré(e) pour le rappel de l'évènement {}",
+                eventReminderRepo.find(eventReminder.getId()).getEvent().getSubject());
           }
         }
       }
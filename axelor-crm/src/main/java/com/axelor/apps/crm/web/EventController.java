@@ -26,6 +26,7 @@ import com.axelor.apps.crm.db.repo.LeadRepository;
 import com.axelor.apps.crm.db.repo.RecurrenceConfigurationRepository;
 import com.axelor.apps.crm.exception.IExceptionMessage;
 import com.axelor.apps.crm.service.CalendarService;
+import com.axelor.apps.crm.service.EventRecurrenceService;
 import com.axelor.apps.crm.service.EventService;
 import com.axelor.apps.crm.service.LeadService;
 import com.axelor.apps.message.db.EmailAddress;
@@ -46,9 +47,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
-import java.time.DayOfWeek;
 import java.time.Duration;
-import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -254,208 +253,60 @@ public class EventController {
     }
   }
 
-  @Transactional
-  public void deleteThis(ActionRequest request, ActionResponse response) throws AxelorException {
-    Long eventId = new Long(request.getContext().getParent().get("id").toString());
-    Event event = eventRepo.find(eventId);
-    Event child = eventRepo.all().filter("self.parentEvent.id = ?1", event.getId()).fetchOne();
-    if (child != null) {
-      child.setParentEvent(event.getParentEvent());
+  public void deleteThis(ActionRequest request, ActionResponse response) {
+    try {
+      Long eventId = new Long(request.getContext().getParent().get("id").toString());
+      Beans.get(EventRecurrenceService.class).deleteThis(eventRepo.find(eventId));
+      response.setCanClose(true);
+      response.setReload(true);
+    } catch (Exception e) {
+      TraceBackService.trace(response, e);
     }
-    eventRepo.remove(event);
-    response.setCanClose(true);
-    response.setReload(true);
   }
 
-  @Transactional
-  public void deleteNext(ActionRequest request, ActionResponse response) throws AxelorException {
-    Long eventId = new Long(request.getContext().getParent().get("id").toString());
-    Event event = eventRepo.find(eventId);
-    Event child = eventRepo.all().filter("self.parentEvent.id = ?1", event.getId()).fetchOne();
-    while (child != null) {
-      child.setParentEvent(null);
-      eventRepo.remove(event);
-      event = child;
-      child = eventRepo.all().filter("self.parentEvent.id = ?1", event.getId()).fetchOne();
+  public void deleteNext(ActionRequest request, ActionResponse response) {
+    try {
+      Long eventId = new Long(request.getContext().getParent().get("id").toString());
+      Beans.get(EventRecurrenceService.class).deleteNext(eventRepo.find(eventId));
+      response.setCanClose(true);
+      response.setReload(true);
+    } catch (Exception e) {
+      TraceBackService.trace(response, e);
     }
-    response.setCanClose(true);
-    response.setReload(true);
   }
 
-  @Transactional
-  public void deleteAll(ActionRequest request, ActionResponse response) throws AxelorException {
-    Long eventId = new Long(request.getContext().getParent().get("id").toString());
-    Event event = eventRepo.find(eventId);
-    Event child = eventRepo.all().filter("self.parentEvent.id = ?1", event.getId()).fetchOne();
-    Event parent = event.getParentEvent();
-    while (child != null) {
-      child.setParentEvent(null);
-      eventRepo.remove(event);
-      event = child;
-      child = eventRepo.all().filter("self.parentEvent.id = ?1", event.getId()).fetchOne();
-    }
-    while (parent != null) {
-      Event nextParent = parent.getParentEvent();
-      eventRepo.remove(parent);
-      parent = nextParent;
+  public void deleteAll(ActionRequest request, ActionResponse response) {
+    try {
+      Long eventId = new Long(request.getContext().getParent().get("id").toString());
+      Beans.get(EventRecurrenceService.class).deleteAll(eventRepo.find(eventId));
+      response.setCanClose(true);
+      response.setReload(true);
+    } catch (Exception e) {
+      TraceBackService.trace(response, e);
     }
-    response.setCanClose(true);
-    response.setReload(true);
   }
 
-  @Transactional
-  public void changeAll(ActionRequest request, ActionResponse response) throws AxelorException {
-    Long eventId = new Long(request.getContext().getParent().get("id").toString());
-    Event event = eventRepo.find(eventId);
-
-    Event child = eventRepo.all().filter("self.parentEvent.id = ?1", event.getId()).fetchOne();
-    Event parent = event.getParentEvent();
-    child.setParentEvent(null);
-    Event eventDeleted = child;
-    child = eventRepo.all().filter("self.parentEvent.id = ?1", eventDeleted.getId()).fetchOne();
-    while (child != null) {
-      child.setParentEvent(null);
-      eventRepo.remove(eventDeleted);
-      eventDeleted = child;
-      child = eventRepo.all().filter("self.parentEvent.id = ?1", eventDeleted.getId()).fetchOne();
-    }
-    while (parent != null) {
-      Event nextParent = parent.getParentEvent();
-      eventRepo.remove(parent);
-      parent = nextParent;
-    }
-
-    RecurrenceConfiguration conf = request.getContext().asType(RecurrenceConfiguration.class);
-    RecurrenceConfigurationRepository confRepo = Beans.get(RecurrenceConfigurationRepository.class);
-    conf = confRepo.save(conf);
-    event.setRecurrenceConfiguration(conf);
-    event = eventRepo.save(event);
-    if (conf.getRecurrenceType() == null) {
-      throw new AxelorException(
-          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-          I18n.get(IExceptionMessage.RECURRENCE_RECURRENCE_TYPE));
-    }
-
-    int recurrenceType = conf.getRecurrenceType();
-
-    if (conf.getPeriodicity() == null) {
-      throw new AxelorException(
-          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-          I18n.get(IExceptionMessage.RECURRENCE_PERIODICITY));
-    }
-
-    int periodicity = conf.getPeriodicity();
-
-    if (periodicity < 1) {
-      throw new AxelorException(
-          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-          I18n.get(IExceptionMessage.RECURRENCE_PERIODICITY));
-    }
-
-    boolean monday = conf.getMonday();
-    boolean tuesday = conf.getTuesday();
-    boolean wednesday = conf.getWednesday();
-    boolean thursday = conf.getThursday();
-    boolean friday = conf.getFriday();
-    boolean saturday = conf.getSaturday();
-    boolean sunday = conf.getSunday();
-    Map<Integer, Boolean> daysMap = new HashMap<Integer, Boolean>();
-    Map<Integer, Boolean> daysCheckedMap = new HashMap<Integer, Boolean>();
-    if (recurrenceType == 2) {
-      daysMap.put(DayOfWeek.MONDAY.getValue(), monday);
-      daysMap.put(DayOfWeek.TUESDAY.getValue(), tuesday);
-      daysMap.put(DayOfWeek.WEDNESDAY.getValue(), wednesday);
-      daysMap.put(DayOfWeek.THURSDAY.getValue(), thursday);
-      daysMap.put(DayOfWeek.FRIDAY.getValue(), friday);
-      daysMap.put(DayOfWeek.SATURDAY.getValue(), saturday);
-      daysMap.put(DayOfWeek.SUNDAY.getValue(), sunday);
-
-      for (Integer day : daysMap.keySet()) {
-        if (daysMap.get(day)) {
-          daysCheckedMap.put(day, daysMap.get(day));
-        }
-      }
-      if (daysMap.isEmpty()) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.RECURRENCE_DAYS_CHECKED));
-      }
-    }
-
-    int monthRepeatType = conf.getMonthRepeatType();
-
-    int endType = conf.getEndType();
-
-    int repetitionsNumber = 0;
-
-    if (endType == 1) {
-      if (conf.getRepetitionsNumber() == null) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.RECURRENCE_REPETITION_NUMBER));
-      }
-
-      repetitionsNumber = conf.getRepetitionsNumber();
-
-      if (repetitionsNumber < 1) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            IExceptionMessage.RECURRENCE_REPETITION_NUMBER);
-      }
-    }
-    LocalDate endDate = LocalDate.now();
-    if (endType == 2) {
-      if (conf.getEndDate() == null) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.RECURRENCE_END_DATE));
-      }
-
-      endDate = conf.getEndDate();
-
-      if (endDate.isBefore(event.getStartDateTime().toLocalDate())
-          && endDate.isEqual(event.getStartDateTime().toLocalDate())) {
-        throw new AxelorException(
-            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-            I18n.get(IExceptionMessage.RECURRENCE_END_DATE));
-      }
-    }
-    switch (recurrenceType) {
-      case 1:
-        eventService.addRecurrentEventsByDays(
-            event, periodicity, endType, repetitionsNumber, endDate);
-        break;
-
-      case 2:
-        eventService.addRecurrentEventsByWeeks(
-            event, periodicity, endType, repetitionsNumber, endDate, daysCheckedMap);
-        break;
-
-      case 3:
-        eventService.addRecurrentEventsByMonths(
-            event, periodicity, endType, repetitionsNumber, endDate, monthRepeatType);
-        break;
-
-      case 4:
-        eventService.addRecurrentEventsByYears(
-            event, periodicity, endType, repetitionsNumber, endDate);
-        break;
-
-      default:
-        break;
+  public void changeAll(ActionRequest request, ActionResponse response) {
+    try {
+      Long eventId = new Long(request.getContext().getParent().get("id").toString());
+      RecurrenceConfiguration conf = request.getContext().asType(RecurrenceConfiguration.class);
+      Beans.get(EventRecurrenceService.class).changeAll(eventRepo.find(eventId), conf);
+      response.setCanClose(true);
+      response.setReload(true);
+    } catch (Exception e) {
+      TraceBackService.trace(response, e);
     }
-
-    response.setCanClose(true);
-    response.setReload(true);
   }
 
   public void applyChangesToAll(ActionRequest request, ActionResponse response) {
-    Event thisEvent = eventRepo.find(new Long(request.getContext().get("_idEvent").toString()));
-    Event event = eventRepo.find(thisEvent.getId());
-
-    eventService.applyChangesToAll(event);
-    response.setCanClose(true);
-    response.setReload(true);
+    try {
+      Event event = eventRepo.find(new Long(request.getContext().get("_idEvent").toString()));
+      eventService.applyChangesToAll(event);
+      response.setCanClose(true);
+      response.setReload(true);
+    } catch (Exception e) {
+      TraceBackService.trace(response, e);
+    }
   }
 
   public void computeRecurrenceName(ActionRequest request, ActionResponse response) {
@@ -0,0 +1,224 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.crm.test;
+
+import com.axelor.apps.base.db.ICalendarEvent;
+import com.axelor.apps.base.ical.ICalendarService;
+import com.axelor.apps.crm.db.Event;
+import com.axelor.apps.crm.db.RecurrenceConfiguration;
+import com.axelor.apps.crm.db.repo.RecurrenceConfigurationRepository;
+import com.axelor.apps.crm.service.EventRecurrenceServiceImpl;
+import com.axelor.exception.AxelorException;
+import java.net.SocketException;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.fortuna.ical4j.model.Recur;
+import net.fortuna.ical4j.model.component.VEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestEventRecurrence {
+
+  private static final LocalDateTime START_DATE_TIME = LocalDateTime.of(2019, 1, 7, 10, 0);
+
+  /** Service exposing the computation of the rules, which does not need the database. */
+  private static class TestService extends EventRecurrenceServiceImpl {
+
+    TestService() {
+      super(null, null);
+    }
+
+    @Override
+    public String getRuleFrom(Event event, LocalDateTime nextStartDateTime) throws AxelorException {
+      return super.getRuleFrom(event, nextStartDateTime);
+    }
+
+    @Override
+    public String getRuleUntil(Event event, LocalDateTime startDateTime) throws AxelorException {
+      return super.getRuleUntil(event, startDateTime);
+    }
+  }
+
+  private TestService service = new TestService();
+
+  /** Calendar service exporting occurrences given in memory. */
+  private static class TestCalendarService extends ICalendarService {
+
+    private final List<ICalendarEvent> occurrenceList = new ArrayList<>();
+
+    @Override
+    protected List<ICalendarEvent> getRecurrenceOccurrences(ICalendarEvent event) {
+      return occurrenceList;
+    }
+
+    @Override
+    public List<VEvent> createRecurrenceOverrides(ICalendarEvent event, String uid)
+        throws SocketException, ParseException {
+      return super.createRecurrenceOverrides(event, uid);
+    }
+  }
+
+  private static RecurrenceConfiguration conf(int recurrenceType, int periodicity) {
+    RecurrenceConfiguration conf = new RecurrenceConfiguration();
+    conf.setRecurrenceType(recurrenceType);
+    conf.setPeriodicity(periodicity);
+    return conf;
+  }
+
+  private static RecurrenceConfiguration repeated(RecurrenceConfiguration conf, int number) {
+    conf.setEndType(RecurrenceConfigurationRepository.END_TYPE_REPET);
+    conf.setRepetitionsNumber(number);
+    return conf;
+  }
+
+  private static RecurrenceConfiguration daily(int periodicity, int number) {
+    return repeated(conf(RecurrenceConfigurationRepository.TYPE_DAY, periodicity), number);
+  }
+
+  private Event event(LocalDateTime startDateTime, RecurrenceConfiguration conf)
+      throws AxelorException {
+    Event event = new Event();
+    event.setStartDateTime(startDateTime);
+    event.setEndDateTime(startDateTime.plusHours(1));
+    event.setRecurrenceRule(service.computeRule(conf, startDateTime));
+    return event;
+  }
+
+  private List<LocalDateTime> expandAll(Event event) throws AxelorException {
+    return service.expand(event, event.getStartDateTime(), event.getStartDateTime().plusYears(5));
+  }
+
+  private static LocalDateTime day(int dayOfMonth) {
+    return START_DATE_TIME.withDayOfMonth(dayOfMonth);
+  }
+
+  @Test
+  public void testComputeRule() throws Exception {
+    RecurrenceConfiguration conf = conf(RecurrenceConfigurationRepository.TYPE_MONTH, 2);
+    conf.setMonthRepeatType(RecurrenceConfigurationRepository.REPEAT_TYPE_WEEK);
+    conf.setEndType(RecurrenceConfigurationRepository.END_TYPE_DATE);
+    conf.setEndDate(LocalDate.of(2019, 12, 31));
+
+    Recur recur = new Recur(service.computeRule(conf, START_DATE_TIME));
+    Assert.assertEquals(Recur.MONTHLY, recur.getFrequency());
+    Assert.assertEquals(2, recur.getInterval());
+    Assert.assertEquals("1MO", recur.getDayList().get(0).toString());
+    Assert.assertEquals(-1, recur.getCount());
+    Assert.assertNotNull(recur.getUntil());
+  }
+
+  @Test
+  public void testExpand() throws Exception {
+    Event event = event(START_DATE_TIME, daily(2, 3));
+
+    // The first event is counted by the rule, but not expanded.
+    Assert.assertEquals(Arrays.asList(day(9), day(11), day(13)), expandAll(event));
+    Assert.assertEquals(Arrays.asList(day(11)), service.expand(event, day(10), day(13)));
+  }
+
+  @Test
+  public void testExpandWithExDates() throws Exception {
+    Event event = event(START_DATE_TIME, daily(1, 3));
+    event.setRecurrenceExDates("20190109T100000");
+
+    Assert.assertEquals(Arrays.asList(day(8), day(10)), expandAll(event));
+  }
+
+  @Test
+  public void testWeeklyCount() throws Exception {
+    RecurrenceConfiguration conf =
+        repeated(conf(RecurrenceConfigurationRepository.TYPE_WEEK, 1), 2);
+    conf.setMonday(true);
+    conf.setWednesday(true);
+
+    // Two weeks of two days each, after the first event.
+    Assert.assertEquals(
+        Arrays.asList(day(9), day(14), day(16), day(21)), expandAll(event(START_DATE_TIME, conf)));
+  }
+
+  @Test
+  public void testRuleFromNextOccurrence() throws Exception {
+    Event event = event(START_DATE_TIME, daily(1, 3));
+    event.setRecurrenceExDates("20190108T100000");
+
+    // The first event and the excluded occurrence no longer count.
+    Event nextEvent = new Event();
+    nextEvent.setStartDateTime(day(9));
+    nextEvent.setRecurrenceRule(service.getRuleFrom(event, day(9)));
+
+    Assert.assertEquals(2, new Recur(nextEvent.getRecurrenceRule()).getCount());
+    Assert.assertEquals(Arrays.asList(day(10)), expandAll(nextEvent));
+  }
+
+  @Test
+  public void testRuleUntilOccurrence() throws Exception {
+    Event event = event(START_DATE_TIME, daily(1, 9));
+    event.setRecurrenceRule(service.getRuleUntil(event, day(10)));
+
+    Assert.assertEquals(Arrays.asList(day(8), day(9)), expandAll(event));
+  }
+
+  private static Event occurrence(Event event, LocalDateTime startDateTime) {
+    // Exported events need a creation date, only set by the database otherwise.
+    Event occurrence =
+        new Event() {
+          @Override
+          public LocalDateTime getCreatedOn() {
+            return START_DATE_TIME;
+          }
+        };
+    occurrence.setIsRecurrenceOccurrence(true);
+    occurrence.setSubject(event.getSubject());
+    occurrence.setRecurrenceDateT(startDateTime);
+    occurrence.setStartDateTime(startDateTime);
+    occurrence.setEndDateTime(startDateTime.plusHours(1));
+    return occurrence;
+  }
+
+  @Test
+  public void testRecurrenceOverrides() throws Exception {
+    Event event = event(START_DATE_TIME, daily(1, 4));
+    event.setSubject("Meeting");
+
+    TestCalendarService calendarService = new TestCalendarService();
+    Event movedOccurrence = occurrence(event, day(8));
+    movedOccurrence.setStartDateTime(day(8).plusHours(4));
+    movedOccurrence.setEndDateTime(day(8).plusHours(5));
+    Event renamedOccurrence = occurrence(event, day(10));
+    renamedOccurrence.setSubject("Review");
+    calendarService.occurrenceList.add(movedOccurrence);
+    calendarService.occurrenceList.add(occurrence(event, day(9)));
+    calendarService.occurrenceList.add(renamedOccurrence);
+
+    // The unchanged occurrence is given by the rule, the other ones override it.
+    List<VEvent> overrideList = calendarService.createRecurrenceOverrides(event, "event-uid");
+    Assert.assertEquals(2, overrideList.size());
+    for (VEvent override : overrideList) {
+      Assert.assertEquals("event-uid", override.getUid().getValue());
+    }
+    Assert.assertEquals(
+        day(8).toInstant(OffsetDateTime.now().getOffset()).toEpochMilli(),
+        overrideList.get(0).getRecurrenceId().getDate().getTime());
+    Assert.assertEquals("Review", overrideList.get(1).getSummary().getValue());
+  }
+}
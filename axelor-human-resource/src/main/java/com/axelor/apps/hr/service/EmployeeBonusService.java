@@ -26,32 +26,36 @@ import com.axelor.apps.hr.db.repo.EmployeeBonusMgtLineRepository;
 import com.axelor.apps.hr.db.repo.EmployeeBonusMgtRepository;
 import com.axelor.apps.hr.db.repo.EmployeeRepository;
 import com.axelor.apps.hr.service.employee.EmployeeServiceImpl;
+import com.axelor.apps.tool.service.ScriptCacheService;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.inject.Beans;
-import com.axelor.tool.template.TemplateMaker;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
-import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import org.codehaus.groovy.control.CompilerConfiguration;
-import org.codehaus.groovy.control.customizers.ImportCustomizer;
 
 public class EmployeeBonusService {
 
+  /** Names of the HR variables in the context of the formulas. */
+  public static final String AGE_VARIABLE = "HrAge";
+
+  public static final String SENIORITY_VARIABLE = "HrSeniority";
+
+  public static final String WORKING_DAYS_VARIABLE = "HrWorkingDays";
+
+  public static final String TOTAL_WORKING_DAYS_VARIABLE = "HrTotalWorkingDays";
+
   @Inject EmployeeBonusMgtRepository employeeBonusMgtRepo;
 
   @Inject EmployeeBonusMgtLineRepository employeeBonusMgtLineRepo;
 
   @Inject EmployeeServiceImpl employeeService;
 
-  private static final char TEMPLATE_DELIMITER = '$';
+  @Inject ScriptCacheService scriptCacheService;
 
   @Transactional
   public void compute(EmployeeBonusMgt bonus) throws AxelorException {
@@ -65,15 +69,12 @@ public class EmployeeBonusService {
             .all()
             .filter("self.mainEmploymentContract.payCompany = ?1", bonus.getCompany())
             .fetch();
-    TemplateMaker maker = new TemplateMaker(Locale.FRENCH, TEMPLATE_DELIMITER, TEMPLATE_DELIMITER);
-    String eval;
-    CompilerConfiguration conf = new CompilerConfiguration();
-    ImportCustomizer customizer = new ImportCustomizer();
-    customizer.addStaticStars("java.lang.Math");
-    conf.addCompilationCustomizers(customizer);
-    Binding binding = new Binding();
-    GroovyShell shell = new GroovyShell(binding, conf);
-
+    HRConfig hrConfig = bonus.getCompany().getHrConfig();
+    String conditionFormula =
+        replaceExpressionInFormula(
+            bonus.getEmployeeBonusType().getApplicationCondition(), hrConfig);
+    String amountFormula =
+        replaceExpressionInFormula(bonus.getEmployeeBonusType().getFormula(), hrConfig);
     Integer employeeBonusStatus = EmployeeBonusMgtRepository.STATUS_CALCULATED;
     for (Employee employee : allEmployee) {
 
@@ -89,37 +90,22 @@ public class EmployeeBonusService {
         }
       }
 
-      maker.setContext(employee, "Employee");
       EmployeeBonusMgtLine line = new EmployeeBonusMgtLine();
       line.setEmployeeBonusMgt(bonus);
       line.setEmployee(employee);
-      maker.addInContext("EmployeeBonusMgtLine", line);
-      String formula = bonus.getEmployeeBonusType().getApplicationCondition();
+      Map<String, Object> context = new HashMap<>();
+      context.put("Employee", employee);
+      context.put("EmployeeBonusMgtLine", line);
+      String formula = conditionFormula;
       Integer lineStatus = EmployeeBonusMgtLineRepository.STATUS_CALCULATED;
       try {
-        formula =
-            replaceExpressionInFormula(
-                formula, bonus.getCompany().getHrConfig(), employee, bonus.getPayPeriod());
+        putVariables(context, hrConfig, employee, bonus.getPayPeriod());
       } catch (Exception e) {
         TraceBackService.trace(e);
         formula = "true";
         lineStatus = EmployeeBonusMgtLineRepository.STATUS_ANOMALY;
       }
-      maker.setTemplate(formula);
-      eval = maker.make();
-
-      if (shell.evaluate(eval).toString().equals("true")) {
-        try {
-          formula =
-              replaceExpressionInFormula(
-                  bonus.getEmployeeBonusType().getFormula(),
-                  bonus.getCompany().getHrConfig(),
-                  employee,
-                  bonus.getPayPeriod());
-        } catch (Exception e) {
-          lineStatus = EmployeeBonusMgtLineRepository.STATUS_ANOMALY;
-        }
-
+      if (scriptCacheService.evalTemplate(formula, context).toString().equals("true")) {
         line.setStatusSelect(lineStatus);
 
         if (lineStatus.equals(EmployeeBonusMgtLineRepository.STATUS_ANOMALY)) {
@@ -132,9 +118,8 @@ public class EmployeeBonusService {
         line.setCoef(employee.getBonusCoef());
         line.setWeeklyPlanning(employee.getWeeklyPlanning());
 
-        maker.setTemplate(formula);
-        eval = maker.make();
-        line.setAmount(new BigDecimal(shell.evaluate(eval).toString()));
+        line.setAmount(
+            new BigDecimal(scriptCacheService.evalTemplate(amountFormula, context).toString()));
 
         employeeBonusMgtLineRepo.save(line);
       }
@@ -143,37 +128,79 @@ public class EmployeeBonusService {
     employeeBonusMgtRepo.save(bonus);
   }
 
-  public String replaceExpressionInFormula(
-      String formula, HRConfig hrConfig, Employee employee, Period period) throws AxelorException {
+  /**
+   * Replace the variable names of the HR configuration in a formula by placeholders of the values
+   * put in the context by {@link #putVariables}. The formula is then the same for all the
+   * employees and is compiled once.
+   *
+   * @param formula
+   * @param hrConfig
+   * @return
+   */
+  public String replaceExpressionInFormula(String formula, HRConfig hrConfig) {
+
+    if (formula == null || hrConfig == null) {
+      return formula;
+    }
+
+    formula = replaceVariableName(formula, hrConfig.getAgeVariableName(), AGE_VARIABLE);
+    formula =
+        replaceVariableName(formula, hrConfig.getSeniorityVariableName(), SENIORITY_VARIABLE);
+    formula =
+        replaceVariableName(formula, hrConfig.getWorkingDaysVariableName(), WORKING_DAYS_VARIABLE);
+    formula =
+        replaceVariableName(
+            formula, hrConfig.getTotalWorkingDaysVariableName(), TOTAL_WORKING_DAYS_VARIABLE);
+    return formula;
+  }
+
+  /**
+   * Replace a variable name of the HR configuration by the placeholder of a context value.
+   *
+   * @param formula
+   * @param variableName variable name of the HR configuration, can be empty
+   * @param contextName name of the value in the context
+   * @return
+   */
+  public static String replaceVariableName(
+      String formula, String variableName, String contextName) {
+
+    if (Strings.isNullOrEmpty(variableName)) {
+      return formula;
+    }
+    return formula.replace(variableName, "$" + contextName + "$");
+  }
+
+  /**
+   * Put the values of the HR variables of an employee in the context of the formulas.
+   *
+   * @param context
+   * @param hrConfig
+   * @param employee
+   * @param period
+   * @throws AxelorException
+   */
+  public void putVariables(
+      Map<String, Object> context, HRConfig hrConfig, Employee employee, Period period)
+      throws AxelorException {
 
     if (!Strings.isNullOrEmpty(hrConfig.getAgeVariableName())) {
-      formula =
-          formula.replace(
-              hrConfig.getAgeVariableName(),
-              String.valueOf(employeeService.getAge(employee, period.getFromDate())));
+      context.put(AGE_VARIABLE, employeeService.getAge(employee, period.getFromDate()));
     }
     if (!Strings.isNullOrEmpty(hrConfig.getSeniorityVariableName())) {
-      formula =
-          formula.replace(
-              hrConfig.getSeniorityVariableName(),
-              String.valueOf(employeeService.getLengthOfService(employee, period.getFromDate())));
+      context.put(
+          SENIORITY_VARIABLE, employeeService.getLengthOfService(employee, period.getFromDate()));
     }
     if (!Strings.isNullOrEmpty(hrConfig.getWorkingDaysVariableName())) {
-      formula =
-          formula.replace(
-              hrConfig.getWorkingDaysVariableName(),
-              String.valueOf(
-                  employeeService.getDaysWorkedInPeriod(
-                      employee, period.getFromDate(), period.getToDate())));
+      context.put(
+          WORKING_DAYS_VARIABLE,
+          employeeService.getDaysWorkedInPeriod(
+              employee, period.getFromDate(), period.getToDate()));
     }
     if (!Strings.isNullOrEmpty(hrConfig.getTotalWorkingDaysVariableName())) {
-      formula =
-          formula.replace(
-              hrConfig.getTotalWorkingDaysVariableName(),
-              String.valueOf(
-                  employeeService.getDaysWorksInPeriod(
-                      employee, period.getFromDate(), period.getToDate())));
+      context.put(
+          TOTAL_WORKING_DAYS_VARIABLE,
+          employeeService.getDaysWorksInPeriod(employee, period.getFromDate(), period.getToDate()));
     }
-    return formula;
   }
 }
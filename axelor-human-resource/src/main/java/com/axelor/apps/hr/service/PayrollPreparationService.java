@@ -178,17 +178,11 @@ public class PayrollPreparationService {
       PayrollPreparation payrollPreparation, List<PayrollLeave> payrollLeaveList) {
     LocalDate fromDate = payrollPreparation.getPeriod().getFromDate();
     LocalDate toDate = payrollPreparation.getPeriod().getToDate();
-    LocalDate itDate = LocalDate.parse(fromDate.toString(), DateTimeFormatter.ISO_DATE);
-    BigDecimal workingDays = BigDecimal.ZERO;
+    BigDecimal workingDays =
+        BigDecimal.valueOf(
+            weeklyPlanningService.getWorkingDaysValueInDays(
+                payrollPreparation.getEmployee().getWeeklyPlanning(), fromDate, toDate));
     BigDecimal leaveDays = BigDecimal.ZERO;
-    while (!itDate.isAfter(toDate)) {
-      workingDays =
-          workingDays.add(
-              BigDecimal.valueOf(
-                  weeklyPlanningService.getWorkingDayValueInDays(
-                      payrollPreparation.getEmployee().getWeeklyPlanning(), itDate)));
-      itDate = itDate.plusDays(1);
-    }
     if (payrollLeaveList != null) {
       for (PayrollLeave payrollLeave : payrollLeaveList) {
         workingDays = workingDays.subtract(payrollLeave.getDuration());
@@ -25,16 +25,14 @@ import com.axelor.apps.account.service.batch.BatchCreditTransferExpensePayment;
 import com.axelor.apps.bankpayment.db.BankOrder;
 import com.axelor.apps.bankpayment.service.bankorder.BankOrderMergeService;
 import com.axelor.apps.base.db.BankDetails;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.hr.db.Expense;
 import com.axelor.apps.hr.db.repo.ExpenseRepository;
 import com.axelor.apps.hr.service.expense.ExpenseService;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.IException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -109,28 +107,24 @@ public class BatchCreditTransferExpensePaymentHR extends BatchCreditTransferExpe
    */
   protected List<Expense> processExpenses() {
     List<Expense> doneList = new ArrayList<>();
-    List<Long> anomalyList = Lists.newArrayList(0L); // Can't pass an empty collection to the query
     AccountingBatch accountingBatch = batch.getAccountingBatch();
     boolean manageMultiBanks = appAccountService.getAppBase().getManageMultiBanks();
     String filter =
         "self.ventilated = true "
             + "AND self.paymentStatusSelect = :paymentStatusSelect "
             + "AND self.company = :company "
-            + "AND self.user.partner.outPaymentMode = :paymentMode "
-            + "AND self.id NOT IN (:anomalyList)";
+            + "AND self.user.partner.outPaymentMode = :paymentMode";
 
     if (manageMultiBanks) {
       filter += " AND self.bankDetails IN (:bankDetailsSet)";
     }
 
-    Query<Expense> query =
-        expenseRepo
-            .all()
+    KeysetPager<Expense> pager =
+        KeysetPager.of(Expense.class)
             .filter(filter)
             .bind("paymentStatusSelect", InvoicePaymentRepository.STATUS_DRAFT)
             .bind("company", accountingBatch.getCompany())
-            .bind("paymentMode", accountingBatch.getPaymentMode())
-            .bind("anomalyList", anomalyList);
+            .bind("paymentMode", accountingBatch.getPaymentMode());
 
     if (manageMultiBanks) {
       Set<BankDetails> bankDetailsSet = Sets.newHashSet(accountingBatch.getBankDetails());
@@ -139,12 +133,10 @@ public class BatchCreditTransferExpensePaymentHR extends BatchCreditTransferExpe
         bankDetailsSet.addAll(accountingBatch.getCompany().getBankDetailsSet());
       }
 
-      query.bind("bankDetailsSet", bankDetailsSet);
+      pager.bind("bankDetailsSet", bankDetailsSet);
     }
 
-    for (List<Expense> expenseList;
-        !(expenseList = query.fetch(FETCH_LIMIT)).isEmpty();
-        JPA.clear()) {
+    for (List<Expense> expenseList; !(expenseList = pager.fetchNext()).isEmpty(); ) {
       for (Expense expense : expenseList) {
         try {
           addPayment(expense, accountingBatch.getBankDetails());
@@ -152,8 +144,7 @@ public class BatchCreditTransferExpensePaymentHR extends BatchCreditTransferExpe
           incrementDone();
         } catch (Exception ex) {
           incrementAnomaly();
-          anomalyList.add(expense.getId());
-          query.bind("anomalyList", anomalyList);
+          pager.seek(expense.getId());
           TraceBackService.trace(ex, IException.CREDIT_TRANSFER, batch.getId());
           ex.printStackTrace();
           log.error(
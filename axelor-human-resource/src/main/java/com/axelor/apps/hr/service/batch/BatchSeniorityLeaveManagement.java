@@ -42,8 +42,10 @@ import com.axelor.apps.hr.db.repo.HRConfigRepository;
 import com.axelor.apps.hr.db.repo.LeaveLineRepository;
 import com.axelor.apps.hr.db.repo.LeaveManagementRepository;
 import com.axelor.apps.hr.exception.IExceptionMessage;
+import com.axelor.apps.hr.service.EmployeeBonusService;
 import com.axelor.apps.hr.service.employee.EmployeeService;
 import com.axelor.apps.hr.service.leave.management.LeaveManagementService;
+import com.axelor.apps.tool.service.ScriptCacheService;
 import com.axelor.auth.AuthUtils;
 import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
@@ -52,18 +54,15 @@ import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
-import com.axelor.tool.template.TemplateMaker;
 import com.beust.jcommander.internal.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
-import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
-import org.codehaus.groovy.control.CompilerConfiguration;
-import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,13 +74,13 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
   int noValueAnomaly;
   int confAnomaly;
 
-  private static final char TEMPLATE_DELIMITER = '$';
-  protected TemplateMaker maker;
   protected HRConfig hrConfig;
 
   protected LeaveLineRepository leaveLineRepository;
   protected LeaveManagementRepository leaveManagementRepository;
 
+  @Inject protected ScriptCacheService scriptCacheService;
+
   @Inject
   public BatchSeniorityLeaveManagement(
       LeaveManagementService leaveManagementService,
@@ -110,7 +109,6 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
     total = 0;
     noValueAnomaly = 0;
     confAnomaly = 0;
-    this.maker = new TemplateMaker(Locale.FRENCH, TEMPLATE_DELIMITER, TEMPLATE_DELIMITER);
     hrConfig =
         Beans.get(HRConfigRepository.class)
             .all()
@@ -167,7 +165,6 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
 
     batch = batchRepo.find(batch.getId());
     int count = 0;
-    String eval = null;
     LeaveLine leaveLine = null;
     BigDecimal quantity = BigDecimal.ZERO;
 
@@ -199,6 +196,8 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
     }
     if (count == 1) {
 
+      Map<String, Object> context = null;
+
       for (LeaveManagementBatchRule rule :
           Beans.get(HRConfigRepository.class)
               .all()
@@ -208,29 +207,20 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
 
         if (rule.getExecutiveStatusSelect()
             == employee.getMainEmploymentContract().getExecutiveStatusSelect()) {
-          maker.setContext(employee, "Employee");
           String formula = rule.getFormula();
           formula =
-              formula.replace(
+              EmployeeBonusService.replaceVariableName(
+                  formula,
                   hrConfig.getSeniorityVariableName(),
-                  String.valueOf(
-                      Beans.get(EmployeeService.class)
-                          .getLengthOfService(employee, batch.getHrBatch().getReferentialDate())));
+                  EmployeeBonusService.SENIORITY_VARIABLE);
           formula =
-              formula.replace(
-                  hrConfig.getAgeVariableName(),
-                  String.valueOf(
-                      Beans.get(EmployeeService.class)
-                          .getAge(employee, batch.getHrBatch().getReferentialDate())));
-          maker.setTemplate(formula);
-          eval = maker.make();
-          CompilerConfiguration conf = new CompilerConfiguration();
-          ImportCustomizer customizer = new ImportCustomizer();
-          customizer.addStaticStars("java.lang.Math");
-          conf.addCompilationCustomizers(customizer);
-          Binding binding = new Binding();
-          GroovyShell shell = new GroovyShell(binding, conf);
-          if (shell.evaluate(eval).toString().equals("true")) {
+              EmployeeBonusService.replaceVariableName(
+                  formula, hrConfig.getAgeVariableName(), EmployeeBonusService.AGE_VARIABLE);
+          if (context == null) {
+            context = createFormulaContext(employee);
+          }
+          Object result = scriptCacheService.evalTemplate(formula, context);
+          if (result.toString().equals("true")) {
             quantity = rule.getLeaveDayNumber();
             break;
           }
@@ -259,6 +249,24 @@ public class BatchSeniorityLeaveManagement extends BatchStrategy {
     }
   }
 
+  /**
+   * Create the context of the rule formulas of an employee, with the seniority and the age at the
+   * referential date bound as variables, so the formulas are compiled once for all the employees.
+   */
+  protected Map<String, Object> createFormulaContext(Employee employee) throws AxelorException {
+    EmployeeService employeeService = Beans.get(EmployeeService.class);
+    LocalDate referentialDate = batch.getHrBatch().getReferentialDate();
+
+    Map<String, Object> context = new HashMap<>();
+    context.put("Employee", employee);
+    context.put(
+        EmployeeBonusService.SENIORITY_VARIABLE,
+        employeeService.getLengthOfService(employee, referentialDate));
+    context.put(
+        EmployeeBonusService.AGE_VARIABLE, employeeService.getAge(employee, referentialDate));
+    return context;
+  }
+
   @Override
   protected void stop() {
 
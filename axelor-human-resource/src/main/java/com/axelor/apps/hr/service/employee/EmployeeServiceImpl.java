@@ -120,14 +120,10 @@ public class EmployeeServiceImpl extends UserServiceImpl implements EmployeeServ
           employee.getName());
     }
 
-    LocalDate date = fromDate;
-    while (!date.isAfter(toDate)) {
-      duration =
-          duration.add(
-              BigDecimal.valueOf(
-                  weeklyPlanningService.getWorkingDayValueInDays(weeklyPlanning, date)));
-      date = date.plusDays(1);
-    }
+    duration =
+        duration.add(
+            BigDecimal.valueOf(
+                weeklyPlanningService.getWorkingDaysValueInDays(weeklyPlanning, fromDate, toDate)));
 
     duration =
         duration.subtract(
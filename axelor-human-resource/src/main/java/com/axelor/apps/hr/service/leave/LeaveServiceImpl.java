@@ -240,14 +240,11 @@ public class LeaveServiceImpl implements LeaveService {
               BigDecimal.valueOf(
                   this.computeStartDateWithSelect(fromDate, startOn, weeklyPlanning)));
 
-      LocalDate itDate = fromDate.plusDays(1);
-      while (!itDate.isEqual(toDate) && !itDate.isAfter(toDate)) {
-        duration =
-            duration.add(
-                BigDecimal.valueOf(
-                    weeklyPlanningService.getWorkingDayValueInDays(weeklyPlanning, itDate)));
-        itDate = itDate.plusDays(1);
-      }
+      duration =
+          duration.add(
+              BigDecimal.valueOf(
+                  weeklyPlanningService.getWorkingDaysValueInDays(
+                      weeklyPlanning, fromDate.plusDays(1), toDate.minusDays(1))));
 
       duration =
           duration.add(
@@ -310,14 +307,15 @@ public class LeaveServiceImpl implements LeaveService {
       }
 
       // Daily leave duration of the other days between from and to date
-      for (LocalDate date = fromDate; date.isBefore(toDate); date = date.plusDays(1)) {
-        if (!publicHolidayHrService.checkPublicHolidayDay(date, holidayPlanning)) {
-          duration =
-              duration.add(
-                  weeklyPlanningService.getWorkingDayValueInHours(
-                      weeklyPlanning, date, null, null));
-        }
-      }
+      LocalDate lastDate = toDate.minusDays(1);
+      duration =
+          duration
+              .add(
+                  weeklyPlanningService.getWorkingDaysValueInHours(
+                      weeklyPlanning, fromDate, lastDate))
+              .subtract(
+                  publicHolidayHrService.computePublicHolidayHours(
+                      fromDate, lastDate, weeklyPlanning, holidayPlanning));
     }
 
     return duration;
@@ -17,23 +17,22 @@
  */
 package com.axelor.apps.hr.service.publicHoliday;
 
-import com.axelor.apps.base.db.EventsPlanning;
-import com.axelor.apps.base.db.EventsPlanningLine;
 import com.axelor.apps.base.db.repo.EventsPlanningLineRepository;
 import com.axelor.apps.base.service.publicHoliday.PublicHolidayService;
 import com.axelor.apps.base.service.weeklyplanning.WeeklyPlanningService;
+import com.axelor.apps.base.service.weeklyplanning.WorkingCalendarCache;
 import com.axelor.apps.hr.db.Employee;
 import com.google.inject.Inject;
 import java.time.LocalDate;
-import java.util.List;
 
 public class PublicHolidayHrService extends PublicHolidayService {
 
   @Inject
   public PublicHolidayHrService(
       WeeklyPlanningService weeklyPlanningService,
-      EventsPlanningLineRepository eventsPlanningLineRepo) {
-    super(weeklyPlanningService, eventsPlanningLineRepo);
+      EventsPlanningLineRepository eventsPlanningLineRepo,
+      WorkingCalendarCache workingCalendarCache) {
+    super(weeklyPlanningService, eventsPlanningLineRepo, workingCalendarCache);
   }
 
   public boolean checkPublicHolidayDay(LocalDate date, Employee employee) {
@@ -41,25 +40,9 @@ public class PublicHolidayHrService extends PublicHolidayService {
   }
 
   public int getImposedDayNumber(Employee employee, LocalDate startDate, LocalDate endDate) {
-
-    EventsPlanning imposedDays = employee.getImposedDayEventsPlanning();
-
-    if (imposedDays == null
-        || imposedDays.getEventsPlanningLineList() == null
-        || imposedDays.getEventsPlanningLineList().isEmpty()) {
-      return 0;
-    }
-
-    List<EventsPlanningLine> imposedDayList =
-        eventsPlanningLineRepo
-            .all()
-            .filter(
-                "self.eventsPlanning = ?1 AND self.date BETWEEN ?2 AND ?3",
-                imposedDays,
-                startDate,
-                endDate)
-            .fetch();
-
-    return imposedDayList.size();
+    return workingCalendarCache
+        .getPublicHolidays(employee.getImposedDayEventsPlanning())
+        .getPublicHolidays(startDate, endDate)
+        .size();
   }
 }
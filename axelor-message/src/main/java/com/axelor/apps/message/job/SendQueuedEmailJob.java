@@ -0,0 +1,37 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.message.job;
+
+import com.axelor.apps.message.service.MailQueueService;
+import com.google.inject.Inject;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Wake up the workers of the accounts having queued emails to send: emails to retry, and emails
+ * left by a server stopped while sending them.
+ */
+public class SendQueuedEmailJob implements Job {
+
+  @Inject private MailQueueService mailQueueService;
+
+  @Override
+  public void execute(JobExecutionContext context) {
+    mailQueueService.wakeUpAll();
+  }
+}
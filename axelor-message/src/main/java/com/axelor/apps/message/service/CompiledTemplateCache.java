@@ -0,0 +1,140 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.message.service;
+
+import com.axelor.apps.message.db.Template;
+import com.axelor.tool.template.TemplateMaker;
+import com.google.common.base.Strings;
+import com.google.inject.Singleton;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.stringtemplate.v4.ST;
+
+/**
+ * Cache of the compiled fields of the message templates, by template id.
+ *
+ * <p>A cached template is compiled again when the template has been saved since, its version
+ * having changed, or when it is rendered with another name of the record in the context.
+ */
+@Singleton
+public class CompiledTemplateCache {
+
+  private static final char TEMPLATE_DELIMITER = '$';
+
+  /** Fields of a message template compiled for a name of the record, null for empty fields. */
+  public static class CompiledTemplate {
+
+    private final Integer version;
+    private final String tag;
+
+    private final ST content;
+    private final ST addressBlock;
+    private final ST subject;
+    private final ST fromAddress;
+    private final ST replyToRecipients;
+    private final ST toRecipients;
+    private final ST ccRecipients;
+    private final ST bccRecipients;
+
+    protected CompiledTemplate(TemplateMaker compiler, Template template, String tag) {
+      this.version = template.getVersion();
+      this.tag = tag;
+
+      content = compile(compiler, template.getContent(), tag);
+      addressBlock = compile(compiler, template.getAddressBlock(), tag);
+      subject = compile(compiler, template.getSubject(), tag);
+      fromAddress = compile(compiler, template.getFromAdress(), tag);
+      replyToRecipients = compile(compiler, template.getReplyToRecipients(), tag);
+      toRecipients = compile(compiler, template.getToRecipients(), tag);
+      ccRecipients = compile(compiler, template.getCcRecipients(), tag);
+      bccRecipients = compile(compiler, template.getBccRecipients(), tag);
+    }
+
+    private static ST compile(TemplateMaker compiler, String text, String tag) {
+      if (Strings.isNullOrEmpty(text)) {
+        return null;
+      }
+      return compiler.compile(
+          text, tag == null ? Collections.emptyList() : Collections.singletonList(tag));
+    }
+
+    protected boolean isCompiledFor(Template template, String tag) {
+      return Objects.equals(version, template.getVersion()) && Objects.equals(this.tag, tag);
+    }
+
+    public ST getContent() {
+      return content;
+    }
+
+    public ST getAddressBlock() {
+      return addressBlock;
+    }
+
+    public ST getSubject() {
+      return subject;
+    }
+
+    public ST getFromAddress() {
+      return fromAddress;
+    }
+
+    public ST getReplyToRecipients() {
+      return replyToRecipients;
+    }
+
+    public ST getToRecipients() {
+      return toRecipients;
+    }
+
+    public ST getCcRecipients() {
+      return ccRecipients;
+    }
+
+    public ST getBccRecipients() {
+      return bccRecipients;
+    }
+  }
+
+  private final TemplateMaker compiler =
+      new TemplateMaker(Locale.FRENCH, TEMPLATE_DELIMITER, TEMPLATE_DELIMITER);
+
+  private final Map<Long, CompiledTemplate> cache = new ConcurrentHashMap<>();
+
+  /**
+   * Get the compiled fields of a template.
+   *
+   * @param template
+   * @param tag the name of the record in the context, null if the template has no model
+   * @return the compiled fields, compiled without cache if the template is not saved
+   */
+  public CompiledTemplate get(Template template, String tag) {
+    if (template.getId() == null) {
+      return new CompiledTemplate(compiler, template, tag);
+    }
+
+    return cache.compute(
+        template.getId(),
+        (id, compiledTemplate) ->
+            compiledTemplate != null && compiledTemplate.isCompiledFor(template, tag)
+                ? compiledTemplate
+                : new CompiledTemplate(compiler, template, tag));
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.message.service;
+
+import com.axelor.apps.message.db.EmailAccount;
+
+/**
+ * Outbox of the emails: messages sent by email are queued in the database, with the status {@link
+ * com.axelor.apps.message.db.repo.MessageRepository#STATUS_IN_QUEUE}, and sent in background by
+ * one worker per email account.
+ */
+public interface MailQueueService {
+
+  /**
+   * Schedule the sending of the queued emails of an account once the current transaction is
+   * committed.
+   *
+   * @param emailAccount
+   */
+  public void wakeUp(EmailAccount emailAccount);
+
+  /** Schedule the sending of the queued emails of all the accounts having emails to send. */
+  public void wakeUpAll();
+
+  /**
+   * Send the queued emails of an account which are due, until none is left.
+   *
+   * @param emailAccountId
+   * @return the number of emails sent
+   */
+  public int sendQueuedEmails(Long emailAccountId);
+
+  /**
+   * Create the schedule of {@link com.axelor.apps.message.job.SendQueuedEmailJob} if it does not
+   * exist, for databases created before it was imported with the initial data. The schedule picks
+   * up the emails left by a stopped server.
+   */
+  public void createSendSchedule();
+}
@@ -0,0 +1,501 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.message.service;
+
+import com.axelor.apps.message.db.EmailAccount;
+import com.axelor.apps.message.db.Message;
+import com.axelor.apps.message.db.repo.EmailAccountRepository;
+import com.axelor.apps.message.db.repo.MessageRepository;
+import com.axelor.apps.tool.TransactionTool;
+import com.axelor.db.JPA;
+import com.axelor.exception.service.TraceBackService;
+import com.axelor.mail.MailAccount;
+import com.axelor.mail.MailSender;
+import com.axelor.meta.db.MetaSchedule;
+import com.axelor.meta.db.repo.MetaScheduleRepository;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Send the queued emails with one worker thread per email account.
+ *
+ * <p>A worker claims the due emails of its account by chunks, sends them through one SMTP
+ * connection kept open until the queue is empty, waiting between two emails to respect the rate of
+ * the account, and updates the status of the chunk in one transaction. A failed email is retried
+ * later, with a delay doubled on each attempt, and goes back to draft after {@link
+ * #MAX_SEND_ATTEMPTS} attempts.
+ *
+ * <p>Claimed emails are reserved for {@link #CLAIM_MINUTES} minutes: emails of a worker stopped by
+ * a server shutdown are sent again once this delay is over, by the same or another server.
+ */
+@Singleton
+public class MailQueueServiceImpl implements MailQueueService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final int SEND_CHUNK_SIZE = 100;
+
+  public static final int MAX_SEND_ATTEMPTS = 5;
+
+  /** Delay before the first retry of a failed email, doubled on each attempt. */
+  protected static final long RETRY_DELAY_SECONDS = 60;
+
+  protected static final long CLAIM_MINUTES = 15;
+
+  protected static final String SEND_JOB = "com.axelor.apps.message.job.SendQueuedEmailJob";
+
+  protected static final String SEND_JOB_CRON = "0 0/1 * * * ?";
+
+  private static class Worker {
+
+    private final ScheduledExecutorService executor;
+
+    /** Next run, waiting to start, guarded by the worker. */
+    private ScheduledFuture<?> future;
+
+    private long runNanos;
+
+    private Worker(Long emailAccountId) {
+      executor =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("mail-queue-" + emailAccountId + "-%d")
+                  .setDaemon(true)
+                  .build());
+    }
+  }
+
+  private final Map<Long, Worker> workerMap = new ConcurrentHashMap<>();
+
+  protected MessageService messageService;
+  protected MailAccountService mailAccountService;
+  protected EmailAccountRepository emailAccountRepo;
+  protected MetaScheduleRepository metaScheduleRepo;
+
+  @Inject
+  public MailQueueServiceImpl(
+      MessageService messageService,
+      MailAccountService mailAccountService,
+      EmailAccountRepository emailAccountRepo,
+      MetaScheduleRepository metaScheduleRepo) {
+    this.messageService = messageService;
+    this.mailAccountService = mailAccountService;
+    this.emailAccountRepo = emailAccountRepo;
+    this.metaScheduleRepo = metaScheduleRepo;
+  }
+
+  @Override
+  public void wakeUp(EmailAccount emailAccount) {
+    Long emailAccountId = emailAccount.getId();
+    TransactionTool.runAfterCommit(() -> schedule(emailAccountId, 0));
+  }
+
+  @Override
+  public void wakeUpAll() {
+    List<Long> emailAccountIdList =
+        JPA.em()
+            .createQuery(
+                "SELECT DISTINCT self.mailAccount.id FROM Message self "
+                    + "WHERE self.statusSelect = :inQueue AND self.nextSendAttemptDateT <= :now",
+                Long.class)
+            .setParameter("inQueue", MessageRepository.STATUS_IN_QUEUE)
+            .setParameter("now", LocalDateTime.now())
+            .getResultList();
+
+    for (Long emailAccountId : emailAccountIdList) {
+      schedule(emailAccountId, 0);
+    }
+  }
+
+  @Override
+  @Transactional
+  public void createSendSchedule() {
+    if (metaScheduleRepo.all().filter("self.job = ?1", SEND_JOB).count() > 0) {
+      return;
+    }
+
+    MetaSchedule metaSchedule = new MetaSchedule();
+    metaSchedule.setName("Send queued emails every minute");
+    metaSchedule.setJob(SEND_JOB);
+    metaSchedule.setCron(SEND_JOB_CRON);
+    metaSchedule.setActive(true);
+    metaScheduleRepo.save(metaSchedule);
+  }
+
+  /**
+   * Schedule a run of the worker of the account, unless one is already waiting to start earlier. A
+   * wake up during a run schedules another one, so emails queued meanwhile are not missed.
+   */
+  protected void schedule(Long emailAccountId, long delayMillis) {
+    Worker worker = workerMap.computeIfAbsent(emailAccountId, Worker::new);
+    long runNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+
+    synchronized (worker) {
+      if (worker.future != null) {
+        if (worker.runNanos - runNanos <= 0) {
+          return;
+        }
+        worker.future.cancel(false);
+      }
+
+      worker.runNanos = runNanos;
+      worker.future =
+          worker.executor.schedule(
+              () -> run(worker, emailAccountId, runNanos), delayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void run(Worker worker, Long emailAccountId, long runNanos) {
+    synchronized (worker) {
+      if (worker.runNanos != runNanos) {
+        // Replaced by an earlier run, which sends the emails instead.
+        return;
+      }
+      worker.future = null;
+    }
+
+    try {
+      int count = sendQueuedEmails(emailAccountId);
+      if (!Thread.currentThread().isInterrupted()) {
+        scheduleNextAttempt(emailAccountId, count > 0);
+      }
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+    } finally {
+      JPA.clear();
+    }
+  }
+
+  /**
+   * Schedule the worker of the account at the next attempt of its queued emails, so failed emails
+   * are retried, and emails claimed by a stopped server are sent, without waiting for a wake up.
+   *
+   * @param emailAccountId
+   * @param progress false if the last run sent nothing, due emails are then left to the next wake
+   *     up instead of being tried again at once
+   */
+  protected void scheduleNextAttempt(Long emailAccountId, boolean progress) {
+    LocalDateTime nextSendAttemptDateT =
+        JPA.em()
+            .createQuery(
+                "SELECT MIN(self.nextSendAttemptDateT) FROM Message self "
+                    + "WHERE self.statusSelect = :inQueue "
+                    + "AND self.mailAccount.id = :emailAccountId",
+                LocalDateTime.class)
+            .setParameter("inQueue", MessageRepository.STATUS_IN_QUEUE)
+            .setParameter("emailAccountId", emailAccountId)
+            .getSingleResult();
+
+    if (nextSendAttemptDateT == null) {
+      return;
+    }
+
+    long delayMillis = ChronoUnit.MILLIS.between(LocalDateTime.now(), nextSendAttemptDateT);
+    if (delayMillis > 0 || progress) {
+      schedule(emailAccountId, Math.max(delayMillis, 0));
+    }
+  }
+
+  @Override
+  public int sendQueuedEmails(Long emailAccountId) {
+    EmailAccount emailAccount = emailAccountRepo.find(emailAccountId);
+
+    if (emailAccount == null) {
+      return 0;
+    }
+
+    MailAccount account = mailAccountService.getMailAccount(emailAccount);
+    MailSender sender = new MailSender(account);
+    Session session = account.getSession();
+    String protocol = mailAccountService.getProtocol(emailAccount);
+    int maxSendRate = emailAccount.getMaxSendRate() == null ? 0 : emailAccount.getMaxSendRate();
+    SendRateLimiter rateLimiter = new SendRateLimiter(maxSendRate, System.nanoTime());
+    // A chunk lasts about one minute at most, so its status update is not delayed for long.
+    int chunkSize = maxSendRate > 0 ? Math.min(maxSendRate, SEND_CHUNK_SIZE) : SEND_CHUNK_SIZE;
+
+    int count = 0;
+    Transport transport = null;
+
+    try {
+      for (List<Long> idList; !(idList = claim(emailAccountId, chunkSize)).isEmpty(); ) {
+        List<Long> sentIdList = new ArrayList<>();
+        Map<Long, Exception> failedMap = new LinkedHashMap<>();
+
+        for (int i = 0; i < idList.size(); i++) {
+          Long id = idList.get(i);
+          MimeMessage mimeMessage;
+
+          try {
+            mimeMessage = messageService.buildEmail(JPA.find(Message.class, id), sender);
+          } catch (Exception e) {
+            failedMap.put(id, e);
+            continue;
+          }
+
+          long waitNanos = rateLimiter.reserve(System.nanoTime());
+          if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+          }
+
+          try {
+            if (transport == null || !transport.isConnected()) {
+              close(transport);
+              transport = session.getTransport(protocol);
+              transport.connect();
+            }
+          } catch (MessagingException e) {
+            // The server can not be reached: the emails left are retried later.
+            for (Long failedId : idList.subList(i, idList.size())) {
+              failedMap.put(failedId, e);
+            }
+            updateStatus(sentIdList, failedMap);
+            return count + sentIdList.size();
+          }
+
+          try {
+            transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+            sentIdList.add(id);
+          } catch (MessagingException e) {
+            failedMap.put(id, e);
+          }
+        }
+
+        updateStatus(sentIdList, failedMap);
+        count += sentIdList.size();
+        JPA.clear();
+      }
+    } catch (InterruptedException e) {
+      // Claimed emails which are not sent are sent again once their claim is over.
+      Thread.currentThread().interrupt();
+    } finally {
+      close(transport);
+    }
+
+    LOG.debug("{} email(s) sent with account {}", count, emailAccountId);
+
+    return count;
+  }
+
+  /**
+   * Reserve the next due emails of an account, so they are not sent by another server meanwhile.
+   *
+   * @param emailAccountId
+   * @param limit
+   * @return the ids of the claimed emails, in sending order
+   */
+  protected List<Long> claim(Long emailAccountId, int limit) {
+    LocalDateTime now = LocalDateTime.now();
+
+    List<Long> idList = findDueIds(emailAccountId, now, limit);
+
+    if (idList.isEmpty()) {
+      return idList;
+    }
+
+    LocalDateTime claimDateT = now.plusMinutes(CLAIM_MINUTES).truncatedTo(ChronoUnit.MILLIS);
+    int claimed = updateClaim(idList, now, claimDateT);
+
+    if (claimed == idList.size()) {
+      return idList;
+    }
+    if (claimed == 0) {
+      return Collections.emptyList();
+    }
+
+    // Part of the chunk has been claimed by another server meanwhile.
+    return findClaimedIds(idList, claimDateT);
+  }
+
+  protected List<Long> findDueIds(Long emailAccountId, LocalDateTime now, int limit) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id FROM Message self "
+                + "WHERE self.statusSelect = :inQueue "
+                + "AND self.mailAccount.id = :emailAccountId "
+                + "AND self.nextSendAttemptDateT <= :now "
+                + "ORDER BY self.nextSendAttemptDateT, self.id",
+            Long.class)
+        .setParameter("inQueue", MessageRepository.STATUS_IN_QUEUE)
+        .setParameter("emailAccountId", emailAccountId)
+        .setParameter("now", now)
+        .setMaxResults(limit)
+        .getResultList();
+  }
+
+  /**
+   * Claim the emails which are still due, in a transaction of its own.
+   *
+   * @return the number of claimed emails
+   */
+  protected int updateClaim(List<Long> idList, LocalDateTime now, LocalDateTime claimDateT) {
+    AtomicInteger claimed = new AtomicInteger();
+
+    JPA.runInTransaction(
+        () ->
+            claimed.set(
+                JPA.em()
+                    .createQuery(
+                        "UPDATE Message self SET self.nextSendAttemptDateT = :claimDateT, "
+                            + "self.version = self.version + 1 "
+                            + "WHERE self.id IN (:idList) AND self.statusSelect = :inQueue "
+                            + "AND self.nextSendAttemptDateT <= :now")
+                    .setParameter("claimDateT", claimDateT)
+                    .setParameter("idList", idList)
+                    .setParameter("inQueue", MessageRepository.STATUS_IN_QUEUE)
+                    .setParameter("now", now)
+                    .executeUpdate()));
+
+    return claimed.get();
+  }
+
+  protected List<Long> findClaimedIds(List<Long> idList, LocalDateTime claimDateT) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id FROM Message self WHERE self.id IN (:idList) "
+                + "AND self.statusSelect = :inQueue AND self.nextSendAttemptDateT = :claimDateT "
+                + "ORDER BY self.id",
+            Long.class)
+        .setParameter("idList", idList)
+        .setParameter("inQueue", MessageRepository.STATUS_IN_QUEUE)
+        .setParameter("claimDateT", claimDateT)
+        .getResultList();
+  }
+
+  /**
+   * Update the status of the emails of a chunk in one transaction, with bulk updates which leave
+   * the emails deleted meanwhile untouched. The sent date of the emails is the date of the update,
+   * at most one chunk later than the actual sending.
+   */
+  protected void updateStatus(List<Long> sentIdList, Map<Long, Exception> failedMap) {
+    LocalDateTime now = LocalDateTime.now();
+    List<Exception> abandonedList = new ArrayList<>();
+
+    JPA.runInTransaction(
+        () -> {
+          if (!sentIdList.isEmpty()) {
+            JPA.em()
+                .createQuery(
+                    "UPDATE Message self SET self.statusSelect = :sent, "
+                        + "self.sentByEmail = TRUE, self.sentDateT = :now, "
+                        + "self.nextSendAttemptDateT = NULL, self.sendErrorMessage = NULL, "
+                        + "self.version = self.version + 1 "
+                        + "WHERE self.id IN (:idList) AND self.statusSelect = :inQueue")
+                .setParameter("sent", MessageRepository.STATUS_SENT)
+                .setParameter("now", now)
+                .setParameter("idList", sentIdList)
+                .setParameter("inQueue", MessageRepository.STATUS_IN_QUEUE)
+                .executeUpdate();
+          }
+
+          for (Map.Entry<Long, Exception> entry : failedMap.entrySet()) {
+            if (!updateFailed(entry.getKey(), entry.getValue(), now)) {
+              abandonedList.add(entry.getValue());
+            }
+          }
+        });
+
+    for (Exception e : abandonedList) {
+      TraceBackService.trace(e);
+    }
+  }
+
+  /**
+   * Schedule the next attempt of a failed email, or put it back to draft if it has been tried
+   * {@link #MAX_SEND_ATTEMPTS} times.
+   *
+   * @return false if the email is put back to draft
+   */
+  protected boolean updateFailed(Long id, Exception e, LocalDateTime now) {
+    Message message = JPA.find(Message.class, id);
+
+    if (message == null) {
+      return true;
+    }
+
+    int attemptCount = message.getSendAttemptCount() + 1;
+    boolean retry = attemptCount < MAX_SEND_ATTEMPTS;
+    String error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+
+    LOG.warn("Sending of email {} failed, attempt {}: {}", id, attemptCount, error);
+
+    JPA.em()
+        .createQuery(
+            "UPDATE Message self SET self.statusSelect = :status, "
+                + "self.sendAttemptCount = :attemptCount, self.sendErrorMessage = :error, "
+                + "self.nextSendAttemptDateT = :nextSendAttemptDateT, "
+                + "self.version = self.version + 1 "
+                + "WHERE self.id = :id AND self.statusSelect = :inQueue")
+        .setParameter(
+            "status",
+            retry ? MessageRepository.STATUS_IN_QUEUE : MessageRepository.STATUS_DRAFT)
+        .setParameter("attemptCount", attemptCount)
+        .setParameter("error", error)
+        .setParameter(
+            "nextSendAttemptDateT",
+            retry ? getNextSendAttemptDateT(now, attemptCount) : null)
+        .setParameter("id", id)
+        .setParameter("inQueue", MessageRepository.STATUS_IN_QUEUE)
+        .executeUpdate();
+
+    return retry;
+  }
+
+  /**
+   * Get the date of the next attempt of an email which failed, the delay doubling on each attempt.
+   *
+   * @param now
+   * @param attemptCount number of failed attempts, from 1
+   * @return
+   */
+  protected LocalDateTime getNextSendAttemptDateT(LocalDateTime now, int attemptCount) {
+    return now.plusSeconds(RETRY_DELAY_SECONDS << (attemptCount - 1));
+  }
+
+  protected void close(Transport transport) {
+    if (transport == null || !transport.isConnected()) {
+      return;
+    }
+    try {
+      transport.close();
+    } catch (MessagingException e) {
+      LOG.debug("Error while closing the SMTP connection: {}", e.getMessage());
+    }
+  }
+}
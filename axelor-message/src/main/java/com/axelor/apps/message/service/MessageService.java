@@ -21,6 +21,7 @@ import com.axelor.apps.message.db.EmailAccount;
 import com.axelor.apps.message.db.EmailAddress;
 import com.axelor.apps.message.db.Message;
 import com.axelor.exception.AxelorException;
+import com.axelor.mail.MailSender;
 import com.axelor.meta.db.MetaAttachment;
 import com.axelor.meta.db.MetaFile;
 import com.google.inject.persist.Transactional;
@@ -28,6 +29,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
 
 public interface MessageService {
 
@@ -58,6 +60,17 @@ public interface MessageService {
   public Message sendByEmail(Message message)
       throws MessagingException, IOException, AxelorException;
 
+  /**
+   * Build the email of a message, to be sent through its email account.
+   *
+   * @param message
+   * @param sender the sender of the email account
+   * @return the email, ready to be sent
+   * @throws AxelorException if the message has no recipient or an invalid sender
+   */
+  public MimeMessage buildEmail(Message message, MailSender sender)
+      throws MessagingException, IOException, AxelorException;
+
   @Transactional(rollbackOn = Exception.class)
   public Message sendToUser(Message message);
 
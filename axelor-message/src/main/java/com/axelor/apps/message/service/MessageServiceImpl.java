@@ -34,7 +34,6 @@ import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.mail.MailBuilder;
 import com.axelor.mail.MailSender;
-import com.axelor.mail.SmtpAccount;
 import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaAttachment;
 import com.axelor.meta.db.MetaFile;
@@ -52,10 +51,8 @@ import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,8 +62,6 @@ public class MessageServiceImpl implements MessageService {
   private MetaAttachmentRepository metaAttachmentRepository;
   protected MessageRepository messageRepository;
 
-  private ExecutorService executor = Executors.newCachedThreadPool();
-
   @Inject
   public MessageServiceImpl(
       MetaAttachmentRepository metaAttachmentRepository, MessageRepository messageRepository) {
@@ -249,6 +244,11 @@ public class MessageServiceImpl implements MessageService {
     return messageRepository.save(message);
   }
 
+  /**
+   * Queue the message, it is sent in background by the worker of its email account.
+   *
+   * @see MailQueueService
+   */
   @Transactional(rollbackOn = {MessagingException.class, IOException.class, Exception.class})
   public Message sendByEmail(Message message)
       throws MessagingException, IOException, AxelorException {
@@ -259,52 +259,68 @@ public class MessageServiceImpl implements MessageService {
       return message;
     }
 
-    log.debug("Sent email");
-    MailAccountService mailAccountService = Beans.get(MailAccountService.class);
-    com.axelor.mail.MailAccount account =
-        new SmtpAccount(
-            mailAccount.getHost(),
-            mailAccount.getPort().toString(),
-            mailAccount.getLogin(),
-            mailAccountService.getDecryptPassword(mailAccount.getPassword()),
-            mailAccountService.getSecurity(mailAccount));
+    checkEmail(message);
 
-    List<String> replytoRecipients = this.getEmailAddresses(message.getReplyToEmailAddressSet()),
-        toRecipients = this.getEmailAddresses(message.getToEmailAddressSet()),
-        ccRecipients = this.getEmailAddresses(message.getCcEmailAddressSet()),
-        bccRecipients = this.getEmailAddresses(message.getBccEmailAddressSet());
+    log.debug("Queue email");
+    message.setStatusSelect(MessageRepository.STATUS_IN_QUEUE);
+    message.setSendAttemptCount(0);
+    message.setNextSendAttemptDateT(LocalDateTime.now());
+    message.setSendErrorMessage(null);
+    message.setSenderUser(AuthUtils.getUser());
+    message = messageRepository.save(message);
+
+    Beans.get(MailQueueService.class).wakeUp(mailAccount);
+
+    return message;
+  }
+
+  protected void checkEmail(Message message) throws AxelorException {
+
+    if (message.getFromEmailAddress() != null
+        && Strings.isNullOrEmpty(message.getFromEmailAddress().getAddress())) {
+      throw new AxelorException(
+          message, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, IExceptionMessage.MESSAGE_5);
+    }
 
-    if (toRecipients.isEmpty() && ccRecipients.isEmpty() && bccRecipients.isEmpty()) {
+    if (this.getEmailAddresses(message.getToEmailAddressSet()).isEmpty()
+        && this.getEmailAddresses(message.getCcEmailAddressSet()).isEmpty()
+        && this.getEmailAddresses(message.getBccEmailAddressSet()).isEmpty()) {
       throw new AxelorException(
           message,
           TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
           I18n.get(IExceptionMessage.MESSAGE_6));
     }
+  }
+
+  @Override
+  public MimeMessage buildEmail(Message message, MailSender sender)
+      throws MessagingException, IOException, AxelorException {
+
+    checkEmail(message);
+
+    List<String> replytoRecipients = this.getEmailAddresses(message.getReplyToEmailAddressSet()),
+        toRecipients = this.getEmailAddresses(message.getToEmailAddressSet()),
+        ccRecipients = this.getEmailAddresses(message.getCcEmailAddressSet()),
+        bccRecipients = this.getEmailAddresses(message.getBccEmailAddressSet());
 
-    MailSender sender = new MailSender(account);
     MailBuilder mailBuilder = sender.compose();
 
     mailBuilder.subject(message.getSubject());
 
     if (message.getFromEmailAddress() != null) {
-      if (!Strings.isNullOrEmpty(message.getFromEmailAddress().getAddress())) {
-        log.debug("Override from :::  {}", this.getFullEmailAddress(message.getFromEmailAddress()));
-        mailBuilder.from(this.getFullEmailAddress(message.getFromEmailAddress()));
-      } else {
-        throw new AxelorException(
-            message, TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, IExceptionMessage.MESSAGE_5);
-      }
+      log.debug("Override from :::  {}", this.getFullEmailAddress(message.getFromEmailAddress()));
+      mailBuilder.from(this.getFullEmailAddress(message.getFromEmailAddress()));
     }
-    if (replytoRecipients != null && !replytoRecipients.isEmpty()) {
+    if (!replytoRecipients.isEmpty()) {
       mailBuilder.replyTo(Joiner.on(",").join(replytoRecipients));
     }
-    if (toRecipients != null && !toRecipients.isEmpty()) {
+    if (!toRecipients.isEmpty()) {
       mailBuilder.to(Joiner.on(",").join(toRecipients));
     }
-    if (ccRecipients != null && !ccRecipients.isEmpty()) {
+    if (!ccRecipients.isEmpty()) {
       mailBuilder.cc(Joiner.on(",").join(ccRecipients));
     }
-    if (bccRecipients != null && !bccRecipients.isEmpty()) {
+    if (!bccRecipients.isEmpty()) {
       mailBuilder.bcc(Joiner.on(",").join(bccRecipients));
     }
     if (!Strings.isNullOrEmpty(message.getContent())) {
@@ -316,29 +332,10 @@ public class MessageServiceImpl implements MessageService {
       mailBuilder.attach(metaFile.getFileName(), MetaFiles.getPath(metaFile).toString());
     }
 
-    // send email using a separate process to avoid thread blocking
-    executor.submit(
-        new Callable<Boolean>() {
-          @Override
-          public Boolean call() {
-            try {
-              mailBuilder.send();
-              Message updateMessage = messageRepository.find(message.getId());
-              JPA.em().getTransaction().begin();
-              updateMessage.setSentByEmail(true);
-              updateMessage.setStatusSelect(MessageRepository.STATUS_SENT);
-              updateMessage.setSentDateT(LocalDateTime.now());
-              updateMessage.setSenderUser(AuthUtils.getUser());
-              messageRepository.save(updateMessage);
-              JPA.em().getTransaction().commit();
-            } catch (Exception e) {
-              TraceBackService.trace(e);
-            }
-            return true;
-          }
-        });
+    MimeMessage mimeMessage = mailBuilder.build();
+    mimeMessage.saveChanges();
 
-    return message;
+    return mimeMessage;
   }
 
   public Set<MetaAttachment> getMetaAttachments(Message message) {
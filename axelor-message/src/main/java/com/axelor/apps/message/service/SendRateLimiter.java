@@ -0,0 +1,52 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.message.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spread the emails sent through an account over time, so that no more than its maximum send rate
+ * is sent per minute. Not thread safe: each worker uses its own.
+ */
+public class SendRateLimiter {
+
+  private final long intervalNanos;
+
+  private long nextNanos;
+
+  /**
+   * @param maxSendRate maximum number of emails per minute, 0 for no limit
+   * @param nowNanos current value of {@link System#nanoTime()}
+   */
+  public SendRateLimiter(int maxSendRate, long nowNanos) {
+    this.intervalNanos = maxSendRate > 0 ? TimeUnit.MINUTES.toNanos(1) / maxSendRate : 0;
+    this.nextNanos = nowNanos;
+  }
+
+  /**
+   * Reserve the slot of the next email.
+   *
+   * @param nowNanos current value of {@link System#nanoTime()}
+   * @return the time to wait before sending the email, in nanoseconds
+   */
+  public long reserve(long nowNanos) {
+    long waitNanos = Math.max(nextNanos - nowNanos, 0);
+    nextNanos = Math.max(nextNanos, nowNanos) + intervalNanos;
+    return waitNanos;
+  }
+}
@@ -24,6 +24,7 @@ import com.axelor.exception.AxelorException;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.tool.template.TemplateMaker;
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 import javax.mail.MessagingException;
 
@@ -37,6 +38,17 @@ public interface TemplateMessageService {
       throws ClassNotFoundException, InstantiationException, IllegalAccessException,
           AxelorException, IOException;
 
+  /**
+   * Generate the messages of a template for several records of its model. The records are loaded
+   * by chunks, and the template is compiled once.
+   *
+   * @param objectIds the ids of the records
+   * @param template
+   * @return the ids of the generated messages
+   */
+  public List<Long> generateMessages(List<Long> objectIds, Template template)
+      throws ClassNotFoundException, AxelorException, IOException;
+
   public Message generateAndSendMessage(Model model, Template template)
       throws MessagingException, IOException, AxelorException, ClassNotFoundException,
           InstantiationException, IllegalAccessException;
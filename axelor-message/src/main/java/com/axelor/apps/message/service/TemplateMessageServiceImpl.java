@@ -25,6 +25,7 @@ import com.axelor.apps.message.db.repo.EmailAddressRepository;
 import com.axelor.apps.message.db.repo.MessageRepository;
 import com.axelor.apps.message.db.repo.TemplateRepository;
 import com.axelor.apps.message.exception.IExceptionMessage;
+import com.axelor.apps.message.service.CompiledTemplateCache.CompiledTemplate;
 import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
@@ -45,6 +46,7 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -53,12 +55,16 @@ import java.util.Set;
 import javax.mail.MessagingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.stringtemplate.v4.ST;
 
 public class TemplateMessageServiceImpl implements TemplateMessageService {
 
   private static final String RECIPIENT_SEPARATOR = ";|,";
   private static final char TEMPLATE_DELIMITER = '$';
 
+  /** Number of records loaded at once by {@link #generateMessages(List, Template)}. */
+  public static final int GENERATE_CHUNK_SIZE = 100;
+
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   protected TemplateMaker maker =
@@ -102,65 +108,106 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
     log.debug("object id : {}", objectId);
     log.debug("template : {}", template);
 
-    String content = "",
-        subject = "",
-        from = "",
-        replyToRecipients = "",
-        toRecipients = "",
-        ccRecipients = "",
-        bccRecipients = "",
-        addressBlock = "";
-    int mediaTypeSelect;
-
-    if (!Strings.isNullOrEmpty(template.getContent())) {
-      // Set template
-      maker.setTemplate(template.getContent());
-      content = maker.make();
-    }
-
-    if (!Strings.isNullOrEmpty(template.getAddressBlock())) {
-      maker.setTemplate(template.getAddressBlock());
-      // Make it
-      addressBlock = maker.make();
-    }
+    return createMessage(
+        objectId,
+        model,
+        template,
+        Beans.get(CompiledTemplateCache.class).get(template, metaModel != null ? tag : null),
+        getMailAccount());
+  }
 
-    if (!Strings.isNullOrEmpty(template.getSubject())) {
-      maker.setTemplate(template.getSubject());
-      subject = maker.make();
-      log.debug("Subject ::: {}", subject);
-    }
+  @Override
+  public List<Long> generateMessages(List<Long> objectIds, Template template)
+      throws ClassNotFoundException, AxelorException, IOException {
 
-    if (!Strings.isNullOrEmpty(template.getFromAdress())) {
-      maker.setTemplate(template.getFromAdress());
-      from = maker.make();
-      log.debug("From ::: {}", from);
+    MetaModel metaModel = template.getMetaModel();
+    if (metaModel == null) {
+      throw new AxelorException(
+          template,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.TEMPLATE_SERVICE_1));
     }
 
-    if (!Strings.isNullOrEmpty(template.getReplyToRecipients())) {
-      maker.setTemplate(template.getReplyToRecipients());
-      replyToRecipients = maker.make();
-      log.debug("Reply to ::: {}", replyToRecipients);
+    @SuppressWarnings("unchecked")
+    Class<? extends Model> klass = (Class<? extends Model>) Class.forName(metaModel.getFullName());
+    String model = metaModel.getFullName();
+    String tag = metaModel.getName();
+    Long templateId = template.getId();
+    List<Long> messageIdList = new ArrayList<>();
+
+    for (List<Long> idList : Lists.partition(objectIds, GENERATE_CHUNK_SIZE)) {
+      template = Beans.get(TemplateRepository.class).find(templateId);
+      List<? extends Model> modelList =
+          JPA.all(klass).filter("self.id IN (:idList)").bind("idList", idList).fetch();
+
+      messageIdList.addAll(
+          generateMessages(
+              modelList,
+              model,
+              tag,
+              template,
+              Beans.get(CompiledTemplateCache.class).get(template, tag)));
+      JPA.clear();
     }
 
-    if (template.getToRecipients() != null) {
-      maker.setTemplate(template.getToRecipients());
-      toRecipients = maker.make();
-      log.debug("To ::: {}", toRecipients);
-    }
+    return messageIdList;
+  }
 
-    if (template.getCcRecipients() != null) {
-      maker.setTemplate(template.getCcRecipients());
-      ccRecipients = maker.make();
-      log.debug("CC ::: {}", ccRecipients);
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  protected List<Long> generateMessages(
+      List<? extends Model> modelList,
+      String model,
+      String tag,
+      Template template,
+      CompiledTemplate compiledTemplate)
+      throws AxelorException, IOException {
+
+    EmailAccount mailAccount = getMailAccount();
+    List<Long> messageIdList = new ArrayList<>();
+
+    for (Model record : modelList) {
+      maker.setContext(record, tag);
+      messageIdList.add(
+          createMessage(record.getId(), model, template, compiledTemplate, mailAccount).getId());
     }
 
-    if (template.getBccRecipients() != null) {
-      maker.setTemplate(template.getBccRecipients());
-      bccRecipients = maker.make();
-      log.debug("BCC ::: {}", bccRecipients);
-    }
+    return messageIdList;
+  }
 
-    mediaTypeSelect = this.getMediaTypeSelect(template);
+  /**
+   * Create the message of a template, rendered with the context of the maker.
+   *
+   * @param objectId
+   * @param model
+   * @param template
+   * @param compiledTemplate the compiled fields of the template
+   * @param mailAccount
+   * @return the saved message
+   */
+  protected Message createMessage(
+      long objectId,
+      String model,
+      Template template,
+      CompiledTemplate compiledTemplate,
+      EmailAccount mailAccount)
+      throws AxelorException, IOException {
+
+    String content = make(compiledTemplate.getContent()),
+        addressBlock = make(compiledTemplate.getAddressBlock()),
+        subject = make(compiledTemplate.getSubject()),
+        from = make(compiledTemplate.getFromAddress()),
+        replyToRecipients = make(compiledTemplate.getReplyToRecipients()),
+        toRecipients = make(compiledTemplate.getToRecipients()),
+        ccRecipients = make(compiledTemplate.getCcRecipients()),
+        bccRecipients = make(compiledTemplate.getBccRecipients());
+    int mediaTypeSelect = this.getMediaTypeSelect(template);
+
+    log.debug("Subject ::: {}", subject);
+    log.debug("From ::: {}", from);
+    log.debug("Reply to ::: {}", replyToRecipients);
+    log.debug("To ::: {}", toRecipients);
+    log.debug("CC ::: {}", ccRecipients);
+    log.debug("BCC ::: {}", bccRecipients);
     log.debug("Media ::: {}", mediaTypeSelect);
     log.debug("Content ::: {}", content);
 
@@ -178,7 +225,7 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
             null,
             addressBlock,
             mediaTypeSelect,
-            getMailAccount());
+            mailAccount);
 
     message.setTemplate(Beans.get(TemplateRepository.class).find(template.getId()));
 
@@ -189,6 +236,10 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
     return message;
   }
 
+  protected String make(ST compiledTemplate) {
+    return compiledTemplate == null ? "" : maker.make(compiledTemplate);
+  }
+
   @Override
   public Message generateAndSendMessage(Model model, Template template)
       throws MessagingException, IOException, AxelorException, ClassNotFoundException,
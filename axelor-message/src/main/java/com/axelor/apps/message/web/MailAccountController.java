@@ -21,6 +21,7 @@ import com.axelor.apps.message.db.EmailAccount;
 import com.axelor.apps.message.db.repo.EmailAccountRepository;
 import com.axelor.apps.message.exception.IExceptionMessage;
 import com.axelor.apps.message.service.MailAccountService;
+import com.axelor.apps.message.service.MailQueueService;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
@@ -38,6 +39,8 @@ public class MailAccountController {
 
   @Inject private EmailAccountRepository mailAccountRepo;
 
+  @Inject private MailQueueService mailQueueService;
+
   public void validateSmtpAccount(ActionRequest request, ActionResponse response) {
 
     EmailAccount account = request.getContext().asType(EmailAccount.class);
@@ -45,6 +48,7 @@ public class MailAccountController {
     try {
 
       mailAccountService.checkMailAccountConfiguration(account);
+      mailQueueService.createSendSchedule();
 
       response.setValue("isValid", Boolean.TRUE);
       response.setFlash(I18n.get(IExceptionMessage.MAIL_ACCOUNT_3));
@@ -0,0 +1,165 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.message.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMailQueueService {
+
+  /** Next send attempt of the queued emails, shared by the servers. */
+  private Map<Long, LocalDateTime> queue;
+
+  private LocalDateTime dueDateT;
+
+  /** Mail queue service reading and claiming the emails of {@link #queue}. */
+  private class InMemoryMailQueueService extends MailQueueServiceImpl {
+
+    private Runnable beforeUpdate = () -> {};
+
+    private InMemoryMailQueueService() {
+      super(null, null, null, null);
+    }
+
+    @Override
+    protected List<Long> findDueIds(Long emailAccountId, LocalDateTime now, int limit) {
+      List<Long> idList = new ArrayList<>();
+      for (Map.Entry<Long, LocalDateTime> entry : queue.entrySet()) {
+        if (!entry.getValue().isAfter(now) && idList.size() < limit) {
+          idList.add(entry.getKey());
+        }
+      }
+      return idList;
+    }
+
+    @Override
+    protected int updateClaim(List<Long> idList, LocalDateTime now, LocalDateTime claimDateT) {
+      beforeUpdate.run();
+      beforeUpdate = () -> {};
+
+      int claimed = 0;
+      for (Long id : idList) {
+        if (!queue.get(id).isAfter(now)) {
+          queue.put(id, claimDateT);
+          claimed++;
+        }
+      }
+      return claimed;
+    }
+
+    @Override
+    protected List<Long> findClaimedIds(List<Long> idList, LocalDateTime claimDateT) {
+      List<Long> claimedIdList = new ArrayList<>();
+      for (Long id : idList) {
+        if (queue.get(id).equals(claimDateT)) {
+          claimedIdList.add(id);
+        }
+      }
+      return claimedIdList;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    queue = new TreeMap<>();
+    dueDateT = LocalDateTime.now().minusMinutes(1);
+    for (long id = 1; id <= 5; id++) {
+      queue.put(id, dueDateT);
+    }
+    queue.put(6L, LocalDateTime.now().plusHours(1));
+  }
+
+  @Test
+  public void testClaim() {
+    InMemoryMailQueueService service = new InMemoryMailQueueService();
+
+    Assert.assertEquals(Arrays.asList(1L, 2L, 3L), service.claim(1L, 3));
+    Assert.assertEquals(Arrays.asList(4L, 5L), service.claim(1L, 3));
+    Assert.assertEquals(Collections.emptyList(), service.claim(1L, 3));
+
+    LocalDateTime claimLimit = LocalDateTime.now().plusMinutes(MailQueueServiceImpl.CLAIM_MINUTES);
+    for (long id = 1; id <= 5; id++) {
+      Assert.assertTrue(queue.get(id).isAfter(LocalDateTime.now()));
+      Assert.assertFalse(queue.get(id).isAfter(claimLimit));
+    }
+  }
+
+  @Test
+  public void testConcurrentClaim() {
+    InMemoryMailQueueService server = new InMemoryMailQueueService();
+    InMemoryMailQueueService otherServer = new InMemoryMailQueueService();
+
+    // The other server claims the first emails between the read and the claim of the server, in
+    // a later millisecond so that the claims can be told apart.
+    server.beforeUpdate =
+        () -> {
+          sleep();
+          Assert.assertEquals(Arrays.asList(1L, 2L), otherServer.claim(1L, 2));
+        };
+    Assert.assertEquals(Arrays.asList(3L, 4L), server.claim(1L, 4));
+
+    server.beforeUpdate = () -> otherServer.claim(1L, 10);
+    Assert.assertEquals(Collections.emptyList(), server.claim(1L, 10));
+  }
+
+  private void sleep() {
+    try {
+      Thread.sleep(2);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void testRetryDelay() {
+    MailQueueServiceImpl service = new InMemoryMailQueueService();
+    LocalDateTime now = LocalDateTime.of(2019, 5, 1, 10, 0);
+
+    Assert.assertEquals(now.plusMinutes(1), service.getNextSendAttemptDateT(now, 1));
+    Assert.assertEquals(now.plusMinutes(2), service.getNextSendAttemptDateT(now, 2));
+    Assert.assertEquals(now.plusMinutes(8), service.getNextSendAttemptDateT(now, 4));
+  }
+
+  @Test
+  public void testRateLimit() {
+    long start = 1_000L;
+    long interval = TimeUnit.SECONDS.toNanos(2);
+    SendRateLimiter rateLimiter = new SendRateLimiter(30, start);
+
+    Assert.assertEquals(0, rateLimiter.reserve(start));
+    Assert.assertEquals(interval, rateLimiter.reserve(start));
+    // After waiting, the next email waits a full interval again.
+    Assert.assertEquals(interval, rateLimiter.reserve(start + interval));
+    // A slow sending uses up the wait of the next email, without allowing a burst later on.
+    Assert.assertEquals(0, rateLimiter.reserve(start + 10 * interval));
+    Assert.assertEquals(interval, rateLimiter.reserve(start + 10 * interval));
+
+    SendRateLimiter unlimited = new SendRateLimiter(0, start);
+    Assert.assertEquals(0, unlimited.reserve(start));
+    Assert.assertEquals(0, unlimited.reserve(start));
+  }
+}
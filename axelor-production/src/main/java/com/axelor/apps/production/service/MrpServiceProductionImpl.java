@@ -45,7 +45,6 @@ import com.axelor.apps.supplychain.db.repo.MrpRepository;
 import com.axelor.apps.supplychain.service.MrpLineService;
 import com.axelor.apps.supplychain.service.MrpServiceImpl;
 import com.axelor.apps.tool.StringTool;
-import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -121,26 +120,25 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
     }
 
     List<ManufOrder> manufOrderList =
-        manufOrderRepository
-            .all()
-            .filter(
-                "self.product.id in (?1) AND self.prodProcess.stockLocation in (?2) "
-                    + "AND self.statusSelect NOT IN (?3) AND self.plannedStartDateT > ?4",
-                this.productMap.keySet(),
-                this.stockLocationList,
-                statusList, // TODO ETRANGE ICI : DEVRAIT ETRE
-                // L'INVERSE.!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-                today.atStartOfDay())
-            .fetch();
+        this.fetchSources(
+            ManufOrder.class,
+            "JOIN FETCH self.product JOIN FETCH self.prodProcess",
+            "self.product.id in (?1) AND self.prodProcess.stockLocation in (?2) "
+                + "AND self.statusSelect NOT IN (?3) AND self.plannedStartDateT > ?4",
+            this.productMap.keySet(),
+            this.stockLocationList,
+            statusList, // TODO ETRANGE ICI : DEVRAIT ETRE
+            // L'INVERSE.!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
+            today.atStartOfDay());
 
     for (ManufOrder manufOrder : manufOrderList) {
 
       this.createManufOrderMrpLines(
-          mrpRepository.find(mrp.getId()),
-          manufOrderRepository.find(manufOrder.getId()),
-          mrpLineTypeRepository.find(manufOrderMrpLineType.getId()),
-          mrpLineTypeRepository.find(manufOrderNeedMrpLineType.getId()));
-      JPA.clear();
+          this.findAgain(mrpRepository, mrp),
+          this.findAgain(manufOrderRepository, manufOrder),
+          this.findAgain(mrpLineTypeRepository, manufOrderMrpLineType),
+          this.findAgain(mrpLineTypeRepository, manufOrderNeedMrpLineType));
+      this.clearSession();
     }
   }
 
@@ -180,7 +178,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
                 stockLocation,
                 manufOrder);
         if (mrpLine != null) {
-          mrpLineRepository.save(mrpLine);
+          this.saveMrpLine(mrpLine);
         }
       }
     }
@@ -214,7 +212,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
                     stockLocation,
                     operationOrder);
             if (mrpLine != null) {
-              mrpLineRepository.save(mrpLine);
+              this.saveMrpLine(mrpLine);
             }
           }
         }
@@ -247,7 +245,7 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
                   stockLocation,
                   manufOrder);
           if (mrpLine != null) {
-            mrpLineRepository.save(mrpLine);
+            this.saveMrpLine(mrpLine);
           }
         }
       }
@@ -422,11 +420,10 @@ public class MrpServiceProductionImpl extends MrpServiceImpl {
     MrpLineType availableStockMrpLineType =
         this.getMrpLineType(MrpLineTypeRepository.ELEMENT_AVAILABLE_STOCK);
 
-    mrpLineRepository.save(
-        this.createAvailableStockMrpLine(
-            mrpRepository.find(mrp.getId()),
-            productRepository.find(product.getId()),
-            stockLocation,
-            availableStockMrpLineType));
+    this.createAvailableStockMrpLine(
+        mrpRepository.find(mrp.getId()),
+        productRepository.find(product.getId()),
+        stockLocation,
+        availableStockMrpLineType);
   }
 }
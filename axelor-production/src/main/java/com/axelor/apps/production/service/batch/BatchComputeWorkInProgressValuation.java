@@ -19,6 +19,7 @@ package com.axelor.apps.production.service.batch;
 
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.production.db.ManufOrder;
 import com.axelor.apps.production.db.ProductionBatch;
@@ -27,8 +28,6 @@ import com.axelor.apps.production.db.repo.ManufOrderRepository;
 import com.axelor.apps.production.exceptions.IExceptionMessage;
 import com.axelor.apps.production.service.costsheet.CostSheetService;
 import com.axelor.apps.stock.db.StockLocation;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
@@ -85,22 +84,18 @@ public class BatchComputeWorkInProgressValuation extends AbstractBatch {
       bindValues.put("stockLocationId", workshopStockLocation.getId());
     }
 
-    Query<ManufOrder> manufOrderQuery =
-        Beans.get(ManufOrderRepository.class).all().filter(domain).bind(bindValues);
+    KeysetPager<ManufOrder> manufOrderPager =
+        KeysetPager.of(ManufOrder.class).filter(domain).bind(bindValues).limit(FETCH_LIMIT);
 
-    int offset = 0;
-
-    while (!(manufOrderList = manufOrderQuery.order("id").fetch(FETCH_LIMIT, offset)).isEmpty()) {
+    while (!(manufOrderList = manufOrderPager.fetchNext()).isEmpty()) {
 
       for (ManufOrder manufOrder : manufOrderList) {
-        ++offset;
         try {
           costSheetService.computeCostPrice(
               manufOrderRepository.find(manufOrder.getId()),
               CostSheetRepository.CALCULATION_WORK_IN_PROGRESS,
               valuationDate);
           incrementDone();
-          JPA.clear();
         } catch (Exception e) {
           incrementAnomaly();
           TraceBackService.trace(e, IExceptionMessage.MANUF_ORDER_NO_GENERATION, batch.getId());
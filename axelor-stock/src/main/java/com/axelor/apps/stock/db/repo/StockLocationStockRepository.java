@@ -18,15 +18,22 @@
 package com.axelor.apps.stock.db.repo;
 
 import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.exception.IExceptionMessage;
 import com.axelor.apps.stock.service.StockLocationSaveService;
 import com.axelor.apps.stock.service.StockLocationService;
+import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
+import javax.persistence.PersistenceException;
 
 public class StockLocationStockRepository extends StockLocationRepository {
 
+  public static final String PATH_SEPARATOR = "/";
+
   /**
-   * Override to remove incompatible stock locations in partners
+   * Override to remove incompatible stock locations in partners and to update the location path.
    *
    * @param entity
    * @return
@@ -34,7 +41,86 @@ public class StockLocationStockRepository extends StockLocationRepository {
   @Override
   public StockLocation save(StockLocation entity) {
     Beans.get(StockLocationSaveService.class).removeForbiddenDefaultStockLocation(entity);
-    return super.save(entity);
+    entity = super.save(entity);
+    updateLocationPath(entity);
+    return entity;
+  }
+
+  @Override
+  public StockLocation copy(StockLocation entity, boolean deep) {
+    StockLocation copy = super.copy(entity, deep);
+    copy.setLocationPath(null);
+    return copy;
+  }
+
+  /**
+   * Override to prevent the removal of a stock location which still has sub-locations, they would
+   * be left with the path of a missing parent.
+   *
+   * @param entity
+   */
+  @Override
+  public void remove(StockLocation entity) {
+    if (all().filter("self.parentStockLocation = ?1", entity).count() > 0) {
+      throw new PersistenceException(I18n.get(IExceptionMessage.LOCATION_HAS_SUB_LOCATIONS));
+    }
+    super.remove(entity);
+  }
+
+  /**
+   * Update the path of a stock location and, if it has been moved, the paths of its
+   * sub-locations.
+   *
+   * @param stockLocation a saved stock location
+   */
+  protected void updateLocationPath(StockLocation stockLocation) {
+    String oldPath = stockLocation.getLocationPath();
+    String path = computeLocationPath(stockLocation);
+
+    if (path.equals(oldPath)) {
+      return;
+    }
+
+    stockLocation.setLocationPath(path);
+
+    if (oldPath == null) {
+      return;
+    }
+
+    for (StockLocation subLocation :
+        all()
+            .filter("self.locationPath LIKE :oldPath AND self.id != :id")
+            .bind("oldPath", oldPath + "%")
+            .bind("id", stockLocation.getId())
+            .fetch()) {
+      subLocation.setLocationPath(path + subLocation.getLocationPath().substring(oldPath.length()));
+    }
+  }
+
+  /**
+   * Compute the path of a stock location by walking up its parents.
+   *
+   * @param stockLocation a saved stock location
+   * @return the ids of the parents and of the stock location, as /1/5/12/
+   * @throws PersistenceException if the stock location is one of its own parents
+   */
+  public static String computeLocationPath(StockLocation stockLocation) {
+    Deque<Long> idList = new ArrayDeque<>();
+
+    for (StockLocation location = stockLocation;
+        location != null;
+        location = location.getParentStockLocation()) {
+      if (idList.contains(location.getId())) {
+        throw new PersistenceException(I18n.get(IExceptionMessage.LOCATION_PARENT_CYCLE));
+      }
+      idList.push(location.getId());
+    }
+
+    StringBuilder path = new StringBuilder(PATH_SEPARATOR);
+    for (Long id : idList) {
+      path.append(id).append(PATH_SEPARATOR);
+    }
+    return path.toString();
   }
 
   @Override
@@ -127,6 +127,13 @@ public interface IExceptionMessage {
   static final String STOCK_CONFIG_PICKUP = /*$$(*/
       "You must configure a default pickup stock location for the company %s" /*)*/;
 
+  /** Stock Location Repository */
+  static final String LOCATION_PARENT_CYCLE = /*$$(*/
+      "A stock location can not be a sub-location of itself or of one of its sub-locations" /*)*/;
+  static final String LOCATION_HAS_SUB_LOCATIONS = /*$$(*/
+      "A stock location with sub-locations can not be removed" /*)*/;
+  static final String LOCATION_PATHS_FILLED = /*$$(*/ "%s stock location paths filled" /*)*/;
+
   /** Stock Location Controller */
   static final String LOCATION_1 = /*$$(*/
       "There's already an existing storage, you must deactivate it first" /*)*/;
@@ -0,0 +1,47 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.job;
+
+import com.axelor.apps.base.job.ThreadedJob;
+import com.axelor.apps.base.job.UncheckedJobExecutionException;
+import com.axelor.apps.stock.service.StockLocationLineService;
+import com.axelor.inject.Beans;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Correct the future quantities of the stock location lines which have drifted from the planned
+ * stock move lines. Each corrected line is logged.
+ */
+public class StockLocationLineFutureQtyJob extends ThreadedJob {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Override
+  public void executeInThread(JobExecutionContext context) {
+    try {
+      List<Long> correctedIdList = Beans.get(StockLocationLineService.class).reconcileFutureQty();
+      LOG.info("Future quantity corrected on {} stock location line(s)", correctedIdList.size());
+    } catch (Exception e) {
+      throw new UncheckedJobExecutionException(e);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.listener;
+
+import com.axelor.apps.stock.service.StockLocationService;
+import com.axelor.event.Observes;
+import com.axelor.events.StartupEvent;
+import com.axelor.inject.Beans;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class StockServerStartListener {
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Fill the paths of the stock locations saved before they were maintained, so that the
+   * sub-locations are found by path as soon as possible.
+   *
+   * @param event
+   */
+  public void fillLocationPaths(@Observes StartupEvent event) {
+    RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+    try (RequestScoper.CloseableScope ignored = scope.open()) {
+      int count = Beans.get(StockLocationService.class).fillLocationPaths();
+      if (count > 0) {
+        log.info("Location path filled on {} stock locations", count);
+      }
+    } catch (Exception e) {
+      log.error("Unable to fill the stock location paths", e);
+    }
+  }
+}
@@ -36,6 +36,7 @@ import com.axelor.apps.stock.db.repo.StockMoveManagementRepository;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.stock.db.repo.TrackingNumberManagementRepository;
 import com.axelor.apps.stock.db.repo.TrackingNumberRepository;
+import com.axelor.apps.stock.listener.StockServerStartListener;
 import com.axelor.apps.stock.service.AddressServiceStockImpl;
 import com.axelor.apps.stock.service.LogisticalFormLineService;
 import com.axelor.apps.stock.service.LogisticalFormLineServiceImpl;
@@ -45,6 +46,8 @@ import com.axelor.apps.stock.service.PartnerProductQualityRatingService;
 import com.axelor.apps.stock.service.PartnerProductQualityRatingServiceImpl;
 import com.axelor.apps.stock.service.PartnerStockSettingsService;
 import com.axelor.apps.stock.service.PartnerStockSettingsServiceImpl;
+import com.axelor.apps.stock.service.StockAvailabilityService;
+import com.axelor.apps.stock.service.StockAvailabilityServiceImpl;
 import com.axelor.apps.stock.service.StockLocationLineService;
 import com.axelor.apps.stock.service.StockLocationLineServiceImpl;
 import com.axelor.apps.stock.service.StockLocationService;
@@ -73,6 +76,7 @@ public class StockModule extends AxelorModule {
   @Override
   protected void configure() {
     bind(AddressServiceStockImpl.class);
+    bind(StockServerStartListener.class);
     bind(StockRulesService.class).to(StockRulesServiceImpl.class);
     bind(InventoryRepository.class).to(InventoryManagementRepository.class);
     bind(StockMoveRepository.class).to(StockMoveManagementRepository.class);
@@ -97,5 +101,6 @@ public class StockModule extends AxelorModule {
     bind(ConformityCertificatePrintService.class).to(ConformityCertificatePrintServiceImpl.class);
     bind(StockLocationLineRepository.class).to(StockLocationLineStockRepository.class);
     bind(WeightedAveragePriceService.class).to(WeightedAveragePriceServiceImpl.class);
+    bind(StockAvailabilityService.class).to(StockAvailabilityServiceImpl.class);
   }
 }
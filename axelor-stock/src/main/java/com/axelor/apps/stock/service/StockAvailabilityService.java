@@ -0,0 +1,63 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.exception.AxelorException;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only stock quantities, computed with grouped queries on the stock location lines. Nothing
+ * is created or modified on read: a product without line in a stock location has no quantity
+ * there.
+ */
+public interface StockAvailabilityService {
+
+  static final String CURRENT_QTY = "currentQty";
+  static final String FUTURE_QTY = "futureQty";
+
+  /**
+   * Get a quantity of products, summed over stock locations.
+   *
+   * @param productIds
+   * @param stockLocationIds the stock locations, or null for all the non virtual stock locations
+   * @param qtyField the quantity field of the stock location lines, {@link #CURRENT_QTY}, {@link
+   *     #FUTURE_QTY} or a field added by another module
+   * @return the quantity of each product in its unit, zero for a product without line
+   * @throws AxelorException if a quantity can not be converted in the unit of its product
+   */
+  Map<Long, BigDecimal> getQty(
+      Collection<Long> productIds, Collection<Long> stockLocationIds, String qtyField)
+      throws AxelorException;
+
+  Map<Long, BigDecimal> getRealQty(Collection<Long> productIds, Collection<Long> stockLocationIds)
+      throws AxelorException;
+
+  Map<Long, BigDecimal> getFutureQty(
+      Collection<Long> productIds, Collection<Long> stockLocationIds) throws AxelorException;
+
+  /**
+   * Get the stock location lines of internal and external stock locations whose future quantity is
+   * below the minimum quantity of a stock rule of their product and stock location.
+   *
+   * @return the ids of the lines
+   */
+  List<Long> getBelowMinQtyStockLocationLineIds();
+}
@@ -0,0 +1,183 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.base.db.repo.ProductRepository;
+import com.axelor.apps.base.db.repo.UnitRepository;
+import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.stock.db.repo.StockLocationRepository;
+import com.axelor.db.JPA;
+import com.axelor.exception.AxelorException;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.Query;
+
+public class StockAvailabilityServiceImpl implements StockAvailabilityService {
+
+  /** Maximum number of products of one query, to keep the IN clause small. */
+  protected static final int PRODUCT_CHUNK_SIZE = 500;
+
+  protected ProductRepository productRepo;
+
+  protected UnitRepository unitRepo;
+
+  protected UnitConversionService unitConversionService;
+
+  @Inject
+  public StockAvailabilityServiceImpl(
+      ProductRepository productRepo,
+      UnitRepository unitRepo,
+      UnitConversionService unitConversionService) {
+    this.productRepo = productRepo;
+    this.unitRepo = unitRepo;
+    this.unitConversionService = unitConversionService;
+  }
+
+  @Override
+  public Map<Long, BigDecimal> getRealQty(
+      Collection<Long> productIds, Collection<Long> stockLocationIds) throws AxelorException {
+    return getQty(productIds, stockLocationIds, CURRENT_QTY);
+  }
+
+  @Override
+  public Map<Long, BigDecimal> getFutureQty(
+      Collection<Long> productIds, Collection<Long> stockLocationIds) throws AxelorException {
+    return getQty(productIds, stockLocationIds, FUTURE_QTY);
+  }
+
+  @Override
+  public Map<Long, BigDecimal> getQty(
+      Collection<Long> productIds, Collection<Long> stockLocationIds, String qtyField)
+      throws AxelorException {
+
+    Map<Long, BigDecimal> qtyMap = new HashMap<>();
+
+    if (stockLocationIds != null && stockLocationIds.isEmpty()) {
+      productIds.forEach(productId -> qtyMap.put(productId, BigDecimal.ZERO));
+      return qtyMap;
+    }
+
+    for (List<Long> productIdList :
+        Lists.partition(new ArrayList<>(new LinkedHashSet<>(productIds)), PRODUCT_CHUNK_SIZE)) {
+
+      Map<Long, Long> productUnitIdMap = getProductUnitIds(productIdList);
+      productIdList.forEach(productId -> qtyMap.put(productId, BigDecimal.ZERO));
+
+      for (Object[] row : sumQty(productIdList, stockLocationIds, qtyField)) {
+        Long productId = (Long) row[0];
+        Long unitId = (Long) row[1];
+        BigDecimal qty = (BigDecimal) row[2];
+
+        if (qty == null) {
+          continue;
+        }
+
+        Long productUnitId = productUnitIdMap.get(productId);
+        if (productUnitId != null && !productUnitId.equals(unitId)) {
+          qty = convert(unitId, productUnitId, qty, productId);
+        }
+
+        qtyMap.merge(productId, qty, BigDecimal::add);
+      }
+    }
+
+    return qtyMap;
+  }
+
+  /**
+   * Sum a quantity of the stock location lines by product and unit.
+   *
+   * @return rows of product id, unit id and quantity
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> sumQty(
+      List<Long> productIds, Collection<Long> stockLocationIds, String qtyField) {
+
+    Query query =
+        JPA.em()
+            .createQuery(
+                String.format(
+                    "SELECT self.product.id, unit.id, SUM(self.%s) "
+                        + "FROM StockLocationLine self LEFT JOIN self.unit unit "
+                        + "WHERE self.product.id IN (:productIds) AND %s "
+                        + "GROUP BY self.product.id, unit.id",
+                    qtyField,
+                    stockLocationIds == null
+                        ? "self.stockLocation.typeSelect != :virtual"
+                        : "self.stockLocation.id IN (:stockLocationIds)"));
+
+    query.setParameter("productIds", productIds);
+    if (stockLocationIds == null) {
+      query.setParameter("virtual", StockLocationRepository.TYPE_VIRTUAL);
+    } else {
+      query.setParameter("stockLocationIds", stockLocationIds);
+    }
+
+    return query.getResultList();
+  }
+
+  @SuppressWarnings("unchecked")
+  protected Map<Long, Long> getProductUnitIds(List<Long> productIds) {
+    List<Object[]> rowList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, unit.id FROM Product self "
+                    + "LEFT JOIN self.unit unit WHERE self.id IN (:productIds)")
+            .setParameter("productIds", productIds)
+            .getResultList();
+
+    Map<Long, Long> productUnitIdMap = new HashMap<>();
+    for (Object[] row : rowList) {
+      productUnitIdMap.put((Long) row[0], (Long) row[1]);
+    }
+    return productUnitIdMap;
+  }
+
+  /** Convert the quantity of a group, only loading the units and the product in that case. */
+  protected BigDecimal convert(Long unitId, Long productUnitId, BigDecimal qty, Long productId)
+      throws AxelorException {
+    Unit unit = unitId == null ? null : unitRepo.find(unitId);
+    Product product = productRepo.find(productId);
+    return unitConversionService.convert(
+        unit, unitRepo.find(productUnitId), qty, qty.scale(), product);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<Long> getBelowMinQtyStockLocationLineIds() {
+    return JPA.em()
+        .createQuery(
+            "SELECT DISTINCT self.id FROM StockLocationLine self, StockRules stockRules "
+                + "WHERE stockRules.stockLocation = self.stockLocation "
+                + "AND stockRules.product = self.product "
+                + "AND self.stockLocation.typeSelect IN (:internal, :external) "
+                + "AND self.futureQty < stockRules.minQty")
+        .setParameter("internal", StockLocationRepository.TYPE_INTERNAL)
+        .setParameter("external", StockLocationRepository.TYPE_EXTERNAL)
+        .getResultList();
+  }
+}
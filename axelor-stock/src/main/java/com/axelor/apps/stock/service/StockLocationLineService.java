@@ -63,6 +63,19 @@ public interface StockLocationLineService {
       boolean future)
       throws AxelorException;
 
+  /**
+   * Check that adding a quantity does not exceed the maximum quantity of the stock rules.
+   *
+   * @throws AxelorException if the maximum quantity is exceeded
+   */
+  public void maxStockRules(
+      Product product,
+      BigDecimal qty,
+      StockLocationLine stockLocationLine,
+      boolean current,
+      boolean future)
+      throws AxelorException;
+
   @Transactional(rollbackOn = {AxelorException.class, Exception.class})
   public void updateDetailLocation(
       StockLocation stockLocation,
@@ -199,4 +212,14 @@ public interface StockLocationLineService {
    * @return the future quantity of the stock location line.
    */
   BigDecimal computeFutureQty(StockLocationLine stockLocationLine) throws AxelorException;
+
+  /**
+   * Compute again the future quantity of all the stock location lines with grouped sums of the
+   * planned stock move lines. A line whose stored future quantity has drifted is computed again
+   * while locked, and corrected in a transaction of its own.
+   *
+   * @return the ids of the corrected lines
+   * @throws AxelorException if a quantity can not be converted in the unit of its line
+   */
+  List<Long> reconcileFutureQty() throws AxelorException;
 }
@@ -20,10 +20,10 @@ package com.axelor.apps.stock.service;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.Unit;
 import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.stock.db.StockLocation;
 import com.axelor.apps.stock.db.StockLocationLine;
-import com.axelor.apps.stock.db.StockMoveLine;
 import com.axelor.apps.stock.db.StockRules;
 import com.axelor.apps.stock.db.TrackingNumber;
 import com.axelor.apps.stock.db.repo.StockLocationLineRepository;
@@ -32,7 +32,7 @@ import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.stock.db.repo.StockRulesRepository;
 import com.axelor.apps.stock.exception.IExceptionMessage;
-import com.axelor.db.Query;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -44,7 +44,13 @@ import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -176,6 +182,7 @@ public class StockLocationLineServiceImpl implements StockLocationLineService {
     }
   }
 
+  @Override
   public void maxStockRules(
       Product product,
       BigDecimal qty,
@@ -364,7 +371,13 @@ public class StockLocationLineServiceImpl implements StockLocationLineService {
       }
     }
     if (future) {
-      stockLocationLine.setFutureQty(computeFutureQty(stockLocationLine));
+      // The planned stock move lines are the same as before, but for the one being updated: the
+      // future quantity changes by its quantity, as the current quantity.
+      if (isIncrement) {
+        stockLocationLine.setFutureQty(stockLocationLine.getFutureQty().add(qty));
+      } else {
+        stockLocationLine.setFutureQty(stockLocationLine.getFutureQty().subtract(qty));
+      }
       stockLocationLine.setLastFutureStockMoveDate(lastFutureStockMoveDate);
     }
 
@@ -560,99 +573,228 @@ public class StockLocationLineServiceImpl implements StockLocationLineService {
     return stockLocationLine;
   }
 
-  protected static final String STOCK_MOVE_LINE_FILTER =
-      "(self.stockMove.archived IS NULL OR self.archived IS FALSE) "
-          + "AND self.stockMove.statusSelect = :planned "
-          + "AND self.product.id = :productId ";
+  /**
+   * Sum of the quantities of the planned stock move lines, by stock location, product, tracking
+   * number and unit. The first argument is the stock location field of the stock move, the second
+   * one an additional filter.
+   */
+  protected static final String PLANNED_QTY_QUERY =
+      "SELECT stockLocation.id, self.product.id, trackingNumber.id, unit.id, SUM(self.qty) "
+          + "FROM StockMoveLine self JOIN self.stockMove.%1$s stockLocation "
+          + "LEFT JOIN self.trackingNumber trackingNumber LEFT JOIN self.unit unit "
+          + "WHERE (self.stockMove.archived IS NULL OR self.archived IS FALSE) "
+          + "AND self.stockMove.statusSelect = :planned %2$s"
+          + "GROUP BY stockLocation.id, self.product.id, trackingNumber.id, unit.id";
 
   @Override
   public BigDecimal computeFutureQty(StockLocationLine stockLocationLine) throws AxelorException {
     // future quantity is current quantity minus planned outgoing stock move lines plus planned
     // incoming stock move lines.
 
-    UnitConversionService unitConversionService = Beans.get(UnitConversionService.class);
-    Product product = stockLocationLine.getProduct();
+    boolean isDetailsStockLocationLine = stockLocationLine.getDetailsStockLocation() != null;
+    String filter = "AND self.product.id = :productId AND stockLocation.id = :stockLocationId ";
+    Map<String, Object> params = new HashMap<>();
+    params.put("productId", stockLocationLine.getProduct().getId());
+
+    if (isDetailsStockLocationLine) {
+      filter += "AND trackingNumber.id = :trackingNumberId ";
+      params.put("stockLocationId", stockLocationLine.getDetailsStockLocation().getId());
+      params.put("trackingNumberId", stockLocationLine.getTrackingNumber().getId());
+    } else {
+      params.put("stockLocationId", stockLocationLine.getStockLocation().getId());
+    }
 
     BigDecimal futureQty = stockLocationLine.getCurrentQty();
 
-    List<StockMoveLine> incomingStockMoveLineList =
-        findIncomingPlannedStockMoveLines(stockLocationLine);
-    List<StockMoveLine> outgoingStockMoveLineList =
-        findOutgoingPlannedStockMoveLines(stockLocationLine);
+    Long unitId = stockLocationLine.getUnit() == null ? null : stockLocationLine.getUnit().getId();
+    Long productId = stockLocationLine.getProduct().getId();
 
-    for (StockMoveLine incomingStockMoveLine : incomingStockMoveLineList) {
-      BigDecimal qtyToAdd =
-          unitConversionService.convert(
-              incomingStockMoveLine.getUnit(),
-              stockLocationLine.getUnit(),
-              incomingStockMoveLine.getQty(),
-              incomingStockMoveLine.getQty().scale(),
-              product);
-      futureQty = futureQty.add(qtyToAdd);
+    for (Object[] row : sumPlannedQty("toStockLocation", filter, params)) {
+      futureQty =
+          futureQty.add(convertPlannedQty((Long) row[3], (BigDecimal) row[4], unitId, productId));
     }
-
-    for (StockMoveLine outgoingStockMoveLine : outgoingStockMoveLineList) {
-      BigDecimal qtyToSubtract =
-          unitConversionService.convert(
-              outgoingStockMoveLine.getUnit(),
-              stockLocationLine.getUnit(),
-              outgoingStockMoveLine.getQty(),
-              outgoingStockMoveLine.getQty().scale(),
-              product);
-      futureQty = futureQty.subtract(qtyToSubtract);
+    for (Object[] row : sumPlannedQty("fromStockLocation", filter, params)) {
+      futureQty =
+          futureQty.subtract(
+              convertPlannedQty((Long) row[3], (BigDecimal) row[4], unitId, productId));
     }
 
     return futureQty;
   }
 
-  protected List<StockMoveLine> findIncomingPlannedStockMoveLines(
-      StockLocationLine stockLocationLine) {
-    boolean isDetailsStockLocationLine = stockLocationLine.getDetailsStockLocation() != null;
-    String incomingStockMoveLineFilter =
-        STOCK_MOVE_LINE_FILTER + "AND self.stockMove.toStockLocation.id = :stockLocationId";
-    if (isDetailsStockLocationLine) {
-      incomingStockMoveLineFilter =
-          incomingStockMoveLineFilter + " AND self.trackingNumber.id = :trackingNumberId";
-    }
-    Query<StockMoveLine> stockMoveLineQuery =
-        stockMoveLineRepository
-            .all()
-            .filter(incomingStockMoveLineFilter)
-            .bind("planned", StockMoveRepository.STATUS_PLANNED)
-            .bind("productId", stockLocationLine.getProduct().getId());
-    if (isDetailsStockLocationLine) {
-      stockMoveLineQuery
-          .bind("stockLocationId", stockLocationLine.getDetailsStockLocation().getId())
-          .bind("trackingNumberId", stockLocationLine.getTrackingNumber().getId());
-    } else {
-      stockMoveLineQuery.bind("stockLocationId", stockLocationLine.getStockLocation().getId());
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> sumPlannedQty(
+      String stockLocationField, String filter, Map<String, Object> params) {
+    Query query =
+        JPA.em().createQuery(String.format(PLANNED_QTY_QUERY, stockLocationField, filter));
+    query.setParameter("planned", StockMoveRepository.STATUS_PLANNED);
+    params.forEach(query::setParameter);
+    return query.getResultList();
+  }
+
+  /** Convert a planned quantity in the unit of a stock location line. */
+  protected BigDecimal convertPlannedQty(
+      Long unitId, BigDecimal qty, Long stockLocationLineUnitId, Long productId)
+      throws AxelorException {
+
+    if (qty == null) {
+      return BigDecimal.ZERO;
+    }
+    if (stockLocationLineUnitId != null && stockLocationLineUnitId.equals(unitId)) {
+      return qty;
     }
-    return stockMoveLineQuery.fetch();
+
+    return Beans.get(UnitConversionService.class)
+        .convert(
+            unitId == null ? null : JPA.em().find(Unit.class, unitId),
+            stockLocationLineUnitId == null
+                ? null
+                : JPA.em().find(Unit.class, stockLocationLineUnitId),
+            qty,
+            qty.scale(),
+            JPA.em().find(Product.class, productId));
   }
 
-  protected List<StockMoveLine> findOutgoingPlannedStockMoveLines(
-      StockLocationLine stockLocationLine) {
-    boolean isDetailsStockLocationLine = stockLocationLine.getDetailsStockLocation() != null;
-    String outgoingStockMoveLineFilter =
-        STOCK_MOVE_LINE_FILTER + "AND self.stockMove.fromStockLocation.id = :stockLocationId";
-    if (isDetailsStockLocationLine) {
-      outgoingStockMoveLineFilter =
-          outgoingStockMoveLineFilter + " AND self.trackingNumber.id = :trackingNumberId";
+  @Override
+  public List<Long> reconcileFutureQty() throws AxelorException {
+
+    // Planned quantities of all the stock location lines, by line key and unit.
+    Map<String, Map<Long, BigDecimal>> incomingQtyMap =
+        groupPlannedQty(sumPlannedQty("toStockLocation", "", Collections.emptyMap()));
+    Map<String, Map<Long, BigDecimal>> outgoingQtyMap =
+        groupPlannedQty(sumPlannedQty("fromStockLocation", "", Collections.emptyMap()));
+
+    List<Long> correctedIdList = new ArrayList<>();
+    long lastId = 0;
+    List<Object[]> rowList;
+
+    do {
+      rowList = fetchFutureQtyRows(lastId);
+      List<Long> driftedIdList = new ArrayList<>();
+
+      for (Object[] row : rowList) {
+        lastId = (Long) row[0];
+        Long stockLocationId = (Long) (row[1] != null ? row[1] : row[2]);
+        Long productId = (Long) row[3];
+        String key = getPlannedQtyKey(stockLocationId, productId, row[2] != null ? row[4] : null);
+        Long unitId = (Long) row[5];
+        BigDecimal storedFutureQty = (BigDecimal) row[7];
+
+        BigDecimal futureQty = (BigDecimal) row[6];
+        for (Map.Entry<Long, BigDecimal> entry :
+            incomingQtyMap.getOrDefault(key, Collections.emptyMap()).entrySet()) {
+          futureQty =
+              futureQty.add(
+                  convertPlannedQty(entry.getKey(), entry.getValue(), unitId, productId));
+        }
+        for (Map.Entry<Long, BigDecimal> entry :
+            outgoingQtyMap.getOrDefault(key, Collections.emptyMap()).entrySet()) {
+          futureQty =
+              futureQty.subtract(
+                  convertPlannedQty(entry.getKey(), entry.getValue(), unitId, productId));
+        }
+
+        if (storedFutureQty == null || futureQty.compareTo(storedFutureQty) != 0) {
+          driftedIdList.add(lastId);
+        }
+      }
+
+      JPA.clear();
+
+      // The sums above may be older than the line: a drifted line is checked again under lock.
+      for (Long stockLocationLineId : driftedIdList) {
+        if (correctFutureQty(stockLocationLineId)) {
+          correctedIdList.add(stockLocationLineId);
+        }
+      }
+    } while (rowList.size() == AbstractBatch.FETCH_LIMIT);
+
+    return correctedIdList;
+  }
+
+  /**
+   * Compute again the future quantity of a line while its row is locked, and correct it if it still
+   * differs. A stock move applied to the line since the drift was detected is then either counted
+   * in the planned quantities, or waits for the lock and applies its change on top of the
+   * correction.
+   *
+   * @param stockLocationLineId
+   * @return true if the future quantity has been corrected
+   * @throws AxelorException
+   */
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  protected boolean correctFutureQty(Long stockLocationLineId) throws AxelorException {
+    StockLocationLine stockLocationLine = lockStockLocationLine(stockLocationLineId);
+    if (stockLocationLine == null || stockLocationLine.getProduct() == null) {
+      return false;
     }
-    Query<StockMoveLine> stockMoveLineQuery =
-        stockMoveLineRepository
-            .all()
-            .filter(outgoingStockMoveLineFilter)
-            .bind("planned", StockMoveRepository.STATUS_PLANNED)
-            .bind("productId", stockLocationLine.getProduct().getId());
 
-    if (isDetailsStockLocationLine) {
-      stockMoveLineQuery
-          .bind("stockLocationId", stockLocationLine.getDetailsStockLocation().getId())
-          .bind("trackingNumberId", stockLocationLine.getTrackingNumber().getId());
-    } else {
-      stockMoveLineQuery.bind("stockLocationId", stockLocationLine.getStockLocation().getId());
+    BigDecimal storedFutureQty = stockLocationLine.getFutureQty();
+    BigDecimal futureQty = computeFutureQty(stockLocationLine);
+    if (storedFutureQty != null && futureQty.compareTo(storedFutureQty) == 0) {
+      return false;
     }
-    return stockMoveLineQuery.fetch();
+
+    LOG.warn(
+        "Future quantity of stock location line {} corrected from {} to {}",
+        stockLocationLineId,
+        storedFutureQty,
+        futureQty);
+    stockLocationLine.setFutureQty(futureQty);
+    return true;
+  }
+
+  protected StockLocationLine lockStockLocationLine(Long stockLocationLineId) {
+    return JPA.em()
+        .find(StockLocationLine.class, stockLocationLineId, LockModeType.PESSIMISTIC_WRITE);
+  }
+
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> fetchFutureQtyRows(long lastId) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id, stockLocation.id, detailsStockLocation.id, self.product.id, "
+                + "trackingNumber.id, unit.id, self.currentQty, self.futureQty "
+                + "FROM StockLocationLine self "
+                + "LEFT JOIN self.stockLocation stockLocation "
+                + "LEFT JOIN self.detailsStockLocation detailsStockLocation "
+                + "LEFT JOIN self.trackingNumber trackingNumber "
+                + "LEFT JOIN self.unit unit "
+                + "WHERE self.id > :lastId AND self.product IS NOT NULL ORDER BY self.id")
+        .setParameter("lastId", lastId)
+        .setMaxResults(AbstractBatch.FETCH_LIMIT)
+        .getResultList();
+  }
+
+  /**
+   * Group rows of {@link #PLANNED_QTY_QUERY} by stock location line: a stock location line counts
+   * all the tracking numbers, a detail line its own tracking number.
+   */
+  protected Map<String, Map<Long, BigDecimal>> groupPlannedQty(List<Object[]> rowList) {
+    Map<String, Map<Long, BigDecimal>> qtyMap = new HashMap<>();
+
+    for (Object[] row : rowList) {
+      BigDecimal qty = (BigDecimal) row[4];
+      if (qty == null) {
+        continue;
+      }
+      Long unitId = (Long) row[3];
+
+      qtyMap
+          .computeIfAbsent(getPlannedQtyKey(row[0], row[1], null), key -> new HashMap<>())
+          .merge(unitId, qty, BigDecimal::add);
+
+      if (row[2] != null) {
+        qtyMap
+            .computeIfAbsent(getPlannedQtyKey(row[0], row[1], row[2]), key -> new HashMap<>())
+            .merge(unitId, qty, BigDecimal::add);
+      }
+    }
+
+    return qtyMap;
+  }
+
+  protected String getPlannedQtyKey(Object stockLocationId, Object productId, Object trackingId) {
+    return stockLocationId + ":" + productId + ":" + trackingId;
   }
 }
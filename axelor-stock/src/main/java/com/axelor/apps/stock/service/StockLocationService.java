@@ -58,4 +58,13 @@ public interface StockLocationService {
       StockLocation stockLocation, boolean isVirtualInclude);
 
   public BigDecimal getStockLocationValue(StockLocation stockLocation);
+
+  /**
+   * Fill the paths of the stock locations created before they were maintained, or imported without
+   * the repository. It is run on server startup. Until all the stock locations have a path, the
+   * sub-locations are found by walking down the parents.
+   *
+   * @return the number of filled paths
+   */
+  public int fillLocationPaths();
 }
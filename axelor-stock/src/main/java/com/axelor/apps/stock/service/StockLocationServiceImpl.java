@@ -18,17 +18,12 @@
 package com.axelor.apps.stock.service;
 
 import com.axelor.apps.base.db.Company;
-import com.axelor.apps.base.db.Product;
-import com.axelor.apps.base.db.Unit;
 import com.axelor.apps.base.db.repo.ProductRepository;
-import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.stock.db.StockConfig;
 import com.axelor.apps.stock.db.StockLocation;
-import com.axelor.apps.stock.db.StockLocationLine;
-import com.axelor.apps.stock.db.StockRules;
-import com.axelor.apps.stock.db.repo.StockLocationLineRepository;
 import com.axelor.apps.stock.db.repo.StockLocationRepository;
-import com.axelor.apps.stock.db.repo.StockRulesRepository;
+import com.axelor.apps.stock.db.repo.StockLocationStockRepository;
 import com.axelor.apps.stock.service.config.StockConfigService;
 import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
@@ -37,6 +32,9 @@ import com.google.inject.Inject;
 import com.google.inject.servlet.RequestScoped;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -53,6 +51,9 @@ public class StockLocationServiceImpl implements StockLocationService {
 
   protected Set<Long> locationIdSet = new HashSet<>();
 
+  /** Whether all the stock locations have a path, to find their sub-locations by it. */
+  private static volatile boolean locationPathsFilled;
+
   @Inject
   public StockLocationServiceImpl(
       StockLocationRepository stockLocationRepo,
@@ -94,62 +95,32 @@ public class StockLocationServiceImpl implements StockLocationService {
 
   @Override
   public BigDecimal getQty(Long productId, Long locationId, String qtyType) throws AxelorException {
-    if (productId != null) {
-      Product product = productRepo.find(productId);
-      Unit productUnit = product.getUnit();
-      UnitConversionService unitConversionService = Beans.get(UnitConversionService.class);
-
-      if (locationId == null) {
-        List<StockLocation> stockLocations = getNonVirtualStockLocations();
-        if (!stockLocations.isEmpty()) {
-          BigDecimal qty = BigDecimal.ZERO;
-          for (StockLocation stockLocation : stockLocations) {
-            StockLocationLine stockLocationLine =
-                stockLocationLineService.getOrCreateStockLocationLine(
-                    stockLocationRepo.find(stockLocation.getId()), productRepo.find(productId));
-
-            if (stockLocationLine != null) {
-              Unit stockLocationLineUnit = stockLocationLine.getUnit();
-              qty =
-                  qty.add(
-                      qtyType.equals("real")
-                          ? stockLocationLine.getCurrentQty()
-                          : stockLocationLine.getFutureQty());
-
-              if (productUnit != null && !productUnit.equals(stockLocationLineUnit)) {
-                qty =
-                    unitConversionService.convert(
-                        stockLocationLineUnit, productUnit, qty, qty.scale(), product);
-              }
-            }
-          }
-          return qty;
-        }
-      } else {
-        StockLocationLine stockLocationLine =
-            stockLocationLineService.getOrCreateStockLocationLine(
-                stockLocationRepo.find(locationId), productRepo.find(productId));
-
-        if (stockLocationLine != null) {
-          Unit stockLocationLineUnit = stockLocationLine.getUnit();
-          BigDecimal qty = BigDecimal.ZERO;
-
-          qty =
-              qtyType.equals("real")
-                  ? stockLocationLine.getCurrentQty()
-                  : stockLocationLine.getFutureQty();
-
-          if (productUnit != null && !productUnit.equals(stockLocationLineUnit)) {
-            qty =
-                unitConversionService.convert(
-                    stockLocationLineUnit, productUnit, qty, qty.scale(), product);
-          }
-          return qty;
-        }
-      }
+    if (productId == null) {
+      return null;
     }
 
-    return null;
+    return getQty(
+        productId,
+        locationId == null ? null : Collections.singleton(locationId),
+        qtyType.equals("real")
+            ? StockAvailabilityService.CURRENT_QTY
+            : StockAvailabilityService.FUTURE_QTY);
+  }
+
+  /**
+   * Get a quantity of a product in stock locations, see {@link StockAvailabilityService#getQty}.
+   *
+   * @param productId
+   * @param stockLocationIds the stock locations, or null for all the non virtual stock locations
+   * @param qtyField the quantity field of the stock location lines
+   * @return the quantity in the unit of the product
+   * @throws AxelorException
+   */
+  protected BigDecimal getQty(Long productId, Collection<Long> stockLocationIds, String qtyField)
+      throws AxelorException {
+    return Beans.get(StockAvailabilityService.class)
+        .getQty(Collections.singleton(productId), stockLocationIds, qtyField)
+        .get(productId);
   }
 
   @Override
@@ -163,31 +134,9 @@ public class StockLocationServiceImpl implements StockLocationService {
   }
 
   public List<Long> getBadStockLocationLineId() {
-
-    List<StockLocationLine> stockLocationLineList =
-        Beans.get(StockLocationLineRepository.class)
-            .all()
-            .filter("self.stockLocation.typeSelect = 1 OR self.stockLocation.typeSelect = 2")
-            .fetch();
-
-    List<Long> idList = new ArrayList<>();
-
-    StockRulesRepository stockRulesRepository = Beans.get(StockRulesRepository.class);
-
-    for (StockLocationLine stockLocationLine : stockLocationLineList) {
-      StockRules stockRules =
-          stockRulesRepository
-              .all()
-              .filter(
-                  "self.stockLocation = ?1 AND self.product = ?2",
-                  stockLocationLine.getStockLocation(),
-                  stockLocationLine.getProduct())
-              .fetchOne();
-      if (stockRules != null
-          && stockLocationLine.getFutureQty().compareTo(stockRules.getMinQty()) < 0) {
-        idList.add(stockLocationLine.getId());
-      }
-    }
+    List<Long> idList =
+        new ArrayList<>(
+            Beans.get(StockAvailabilityService.class).getBelowMinQtyStockLocationLineIds());
 
     if (idList.isEmpty()) {
       idList.add(0L);
@@ -199,11 +148,20 @@ public class StockLocationServiceImpl implements StockLocationService {
   @Override
   public Set<Long> getContentStockLocationIds(StockLocation stockLocation) {
     locationIdSet = new HashSet<>();
-    if (stockLocation != null) {
-      List<StockLocation> stockLocations = getAllLocationAndSubLocation(stockLocation, true);
-      for (StockLocation item : stockLocations) {
+    if (stockLocation != null && !areLocationPathsFilled()) {
+      for (StockLocation item : getAllLocationAndSubLocationByParent(stockLocation, true)) {
         locationIdSet.add(item.getId());
       }
+    } else if (stockLocation != null) {
+      @SuppressWarnings("unchecked")
+      List<Long> idList =
+          JPA.em()
+              .createQuery(
+                  "SELECT self.id FROM StockLocation self WHERE self.locationPath LIKE :path")
+              .setParameter("path", getLocationPath(stockLocation) + "%")
+              .getResultList();
+      locationIdSet.addAll(idList);
+      locationIdSet.add(stockLocation.getId());
     } else {
       locationIdSet.add(0L);
     }
@@ -214,6 +172,60 @@ public class StockLocationServiceImpl implements StockLocationService {
   public List<StockLocation> getAllLocationAndSubLocation(
       StockLocation stockLocation, boolean isVirtualInclude) {
 
+    if (!areLocationPathsFilled()) {
+      return getAllLocationAndSubLocationByParent(stockLocation, isVirtualInclude);
+    }
+
+    String path = getLocationPath(stockLocation);
+
+    List<StockLocation> subLocationList =
+        stockLocationRepo
+            .all()
+            .filter("self.locationPath LIKE :path AND self.id != :stockLocationId")
+            .bind("path", path + "%")
+            .bind("stockLocationId", stockLocation.getId())
+            .order("id")
+            .fetch();
+
+    List<StockLocation> resultList = new ArrayList<>();
+
+    if (isVirtualInclude) {
+      resultList.addAll(subLocationList);
+    } else {
+      // Sub-locations of a virtual location are skipped with it.
+      Set<String> virtualIds = new HashSet<>();
+      for (StockLocation subLocation : subLocationList) {
+        if (subLocation.getTypeSelect() == StockLocationRepository.TYPE_VIRTUAL) {
+          virtualIds.add(subLocation.getId().toString());
+        }
+      }
+      for (StockLocation subLocation : subLocationList) {
+        String[] subPathIds =
+            subLocation
+                .getLocationPath()
+                .substring(path.length())
+                .split(StockLocationStockRepository.PATH_SEPARATOR);
+        if (Collections.disjoint(virtualIds, Arrays.asList(subPathIds))) {
+          resultList.add(subLocation);
+        }
+      }
+    }
+    resultList.add(stockLocation);
+
+    return resultList;
+  }
+
+  /**
+   * Get a stock location and its sub-locations by walking down the parents, while some stock
+   * locations have no path yet.
+   *
+   * @param stockLocation
+   * @param isVirtualInclude
+   * @return
+   */
+  protected List<StockLocation> getAllLocationAndSubLocationByParent(
+      StockLocation stockLocation, boolean isVirtualInclude) {
+
     List<StockLocation> resultList = new ArrayList<>();
 
     if (isVirtualInclude) {
@@ -224,7 +236,7 @@ public class StockLocationServiceImpl implements StockLocationService {
               .bind("stockLocationId", stockLocation.getId())
               .fetch()) {
 
-        resultList.addAll(this.getAllLocationAndSubLocation(subLocation, isVirtualInclude));
+        resultList.addAll(this.getAllLocationAndSubLocationByParent(subLocation, isVirtualInclude));
       }
     } else {
       for (StockLocation subLocation :
@@ -236,7 +248,7 @@ public class StockLocationServiceImpl implements StockLocationService {
               .bind("virtual", StockLocationRepository.TYPE_VIRTUAL)
               .fetch()) {
 
-        resultList.addAll(this.getAllLocationAndSubLocation(subLocation, isVirtualInclude));
+        resultList.addAll(this.getAllLocationAndSubLocationByParent(subLocation, isVirtualInclude));
       }
     }
     resultList.add(stockLocation);
@@ -244,6 +256,53 @@ public class StockLocationServiceImpl implements StockLocationService {
     return resultList;
   }
 
+  /**
+   * Check whether all the stock locations have a path. Paths are kept on save once filled, so the
+   * check is done until there is no stock location left without one.
+   *
+   * @return
+   */
+  protected boolean areLocationPathsFilled() {
+    if (!locationPathsFilled) {
+      locationPathsFilled =
+          stockLocationRepo.all().filter("self.locationPath IS NULL").count() == 0;
+    }
+    return locationPathsFilled;
+  }
+
+  /**
+   * Get the path of a stock location, computed from its parents if it has not been filled yet.
+   *
+   * @param stockLocation
+   * @return
+   */
+  protected String getLocationPath(StockLocation stockLocation) {
+    String path = stockLocation.getLocationPath();
+    return path != null ? path : StockLocationStockRepository.computeLocationPath(stockLocation);
+  }
+
+  @Override
+  public int fillLocationPaths() {
+    KeysetPager<StockLocation> pager =
+        KeysetPager.of(StockLocation.class).filter("self.locationPath IS NULL");
+    int count = 0;
+
+    List<StockLocation> stockLocationList;
+    while (!(stockLocationList = pager.fetchNext()).isEmpty()) {
+      List<StockLocation> chunk = stockLocationList;
+      JPA.runInTransaction(
+          () -> {
+            for (StockLocation stockLocation : chunk) {
+              stockLocation.setLocationPath(
+                  StockLocationStockRepository.computeLocationPath(stockLocation));
+            }
+          });
+      count += chunk.size();
+    }
+
+    return count;
+  }
+
   @Override
   public BigDecimal getStockLocationValue(StockLocation stockLocation) {
 
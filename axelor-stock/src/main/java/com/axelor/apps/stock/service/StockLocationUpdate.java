@@ -0,0 +1,227 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.service;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockMoveLine;
+import com.axelor.apps.stock.db.TrackingNumber;
+import com.axelor.db.Model;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Changes of stock location lines collected from the lines of one or several stock moves, to be
+ * applied at once by {@link StockMoveLineService#applyLocationUpdate(StockLocationUpdate)}.
+ *
+ * <p>Changes are grouped by stock location line, identified by its stock location, product and
+ * tracking number for a detail line. Stock location lines are sorted by these ids, so that
+ * concurrent updates lock them in the same order.
+ */
+public class StockLocationUpdate {
+
+  /** Change of a stock location line due to a stock move line. */
+  public static class Operation {
+
+    private final StockMoveLine stockMoveLine;
+    private final Unit unit;
+    private final BigDecimal qty;
+    private final boolean current;
+    private final boolean future;
+    private final boolean isIncrement;
+    private final LocalDate lastFutureStockMoveDate;
+    private final boolean avgPriceUpdated;
+
+    public Operation(
+        StockMoveLine stockMoveLine,
+        Unit unit,
+        BigDecimal qty,
+        boolean current,
+        boolean future,
+        boolean isIncrement,
+        LocalDate lastFutureStockMoveDate,
+        boolean avgPriceUpdated) {
+      this.stockMoveLine = stockMoveLine;
+      this.unit = unit;
+      this.qty = qty;
+      this.current = current;
+      this.future = future;
+      this.isIncrement = isIncrement;
+      this.lastFutureStockMoveDate = lastFutureStockMoveDate;
+      this.avgPriceUpdated = avgPriceUpdated;
+    }
+
+    public StockMoveLine getStockMoveLine() {
+      return stockMoveLine;
+    }
+
+    public Unit getUnit() {
+      return unit;
+    }
+
+    public BigDecimal getQty() {
+      return qty;
+    }
+
+    public boolean isCurrent() {
+      return current;
+    }
+
+    public boolean isFuture() {
+      return future;
+    }
+
+    public boolean isIncrement() {
+      return isIncrement;
+    }
+
+    public LocalDate getLastFutureStockMoveDate() {
+      return lastFutureStockMoveDate;
+    }
+
+    /** @return whether the average price of the line is updated with the stock move line price */
+    public boolean isAvgPriceUpdated() {
+      return avgPriceUpdated;
+    }
+  }
+
+  /** Stock location line: stock location, product and, for a detail line, tracking number. */
+  public static class Key implements Comparable<Key> {
+
+    private static final Comparator<Key> ORDER =
+        Comparator.comparing((Key key) -> key.stockLocation.getId())
+            .thenComparing(key -> key.product.getId())
+            .thenComparing(
+                key -> key.trackingNumber == null ? null : key.trackingNumber.getId(),
+                Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final StockLocation stockLocation;
+    private final Product product;
+    private final TrackingNumber trackingNumber;
+
+    public Key(StockLocation stockLocation, Product product, TrackingNumber trackingNumber) {
+      this.stockLocation = stockLocation;
+      this.product = product;
+      this.trackingNumber = trackingNumber;
+    }
+
+    public StockLocation getStockLocation() {
+      return stockLocation;
+    }
+
+    public Product getProduct() {
+      return product;
+    }
+
+    /** @return the tracking number of a detail line, null for a stock location line */
+    public TrackingNumber getTrackingNumber() {
+      return trackingNumber;
+    }
+
+    @Override
+    public int compareTo(Key other) {
+      return ORDER.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      return compareTo((Key) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(stockLocation.getId(), product.getId(), getId(trackingNumber));
+    }
+
+    private static Long getId(Model model) {
+      return model == null ? null : model.getId();
+    }
+  }
+
+  private final Map<Key, List<Operation>> operationMap = new TreeMap<>();
+
+  private final Set<Product> productSet = new LinkedHashSet<>();
+
+  /**
+   * Add a change of the stock location line of a product, and of its detail line if there is a
+   * tracking number.
+   *
+   * @param stockLocation
+   * @param product
+   * @param trackingNumber
+   * @param operation
+   */
+  public void add(
+      StockLocation stockLocation,
+      Product product,
+      TrackingNumber trackingNumber,
+      Operation operation) {
+
+    operationMap
+        .computeIfAbsent(new Key(stockLocation, product, null), key -> new ArrayList<>())
+        .add(operation);
+
+    if (trackingNumber != null) {
+      operationMap
+          .computeIfAbsent(
+              new Key(stockLocation, product, trackingNumber), key -> new ArrayList<>())
+          .add(
+              new Operation(
+                  operation.stockMoveLine,
+                  operation.unit,
+                  operation.qty,
+                  operation.current,
+                  operation.future,
+                  operation.isIncrement,
+                  operation.lastFutureStockMoveDate,
+                  false));
+    }
+
+    productSet.add(product);
+  }
+
+  /** @return the changes of each stock location line, in lock order */
+  public Map<Key, List<Operation>> getOperationMap() {
+    return Collections.unmodifiableMap(operationMap);
+  }
+
+  /** @return the products of the changed stock location lines */
+  public Set<Product> getProductSet() {
+    return Collections.unmodifiableSet(productSet);
+  }
+
+  public boolean isEmpty() {
+    return operationMap.isEmpty();
+  }
+}
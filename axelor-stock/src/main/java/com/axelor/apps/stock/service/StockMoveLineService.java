@@ -134,6 +134,38 @@ public interface StockMoveLineService {
       boolean realQty)
       throws AxelorException;
 
+  /**
+   * Add the changes of the stock location lines due to stock move lines going from a status to
+   * another, to be applied later with other stock moves.
+   *
+   * @param stockLocationUpdate
+   * @param fromStockLocation
+   * @param toStockLocation
+   * @param fromStatus
+   * @param toStatus
+   * @param stockMoveLineList
+   * @param lastFutureStockMoveDate
+   * @param realQty
+   */
+  public void addLocationUpdates(
+      StockLocationUpdate stockLocationUpdate,
+      StockLocation fromStockLocation,
+      StockLocation toStockLocation,
+      int fromStatus,
+      int toStatus,
+      List<StockMoveLine> stockMoveLineList,
+      LocalDate lastFutureStockMoveDate,
+      boolean realQty);
+
+  /**
+   * Apply the collected changes, with one read and one write of each stock location line, then
+   * compute the average price of each product once.
+   *
+   * @param stockLocationUpdate
+   * @throws AxelorException
+   */
+  public void applyLocationUpdate(StockLocationUpdate stockLocationUpdate) throws AxelorException;
+
   public void updateLocations(
       StockMoveLine stockMoveLine,
       StockLocation fromStockLocation,
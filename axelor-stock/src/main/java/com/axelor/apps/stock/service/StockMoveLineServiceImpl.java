@@ -41,6 +41,7 @@ import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.stock.db.repo.TrackingNumberRepository;
 import com.axelor.apps.stock.exception.IExceptionMessage;
 import com.axelor.apps.stock.service.app.AppStockService;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -58,6 +59,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -435,8 +437,36 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
       boolean realQty)
       throws AxelorException {
 
+    StockLocationUpdate stockLocationUpdate = new StockLocationUpdate();
+    this.addLocationUpdates(
+        stockLocationUpdate,
+        fromStockLocation,
+        toStockLocation,
+        fromStatus,
+        toStatus,
+        stockMoveLineList,
+        lastFutureStockMoveDate,
+        realQty);
+    this.applyLocationUpdate(stockLocationUpdate);
+  }
+
+  @Override
+  public void addLocationUpdates(
+      StockLocationUpdate stockLocationUpdate,
+      StockLocation fromStockLocation,
+      StockLocation toStockLocation,
+      int fromStatus,
+      int toStatus,
+      List<StockMoveLine> stockMoveLineList,
+      LocalDate lastFutureStockMoveDate,
+      boolean realQty) {
+
     stockMoveLineList = MoreObjects.firstNonNull(stockMoveLineList, Collections.emptyList());
 
+    boolean avgPriceUpdated =
+        toStatus == StockMoveRepository.STATUS_REALIZED
+            && toStockLocation.getTypeSelect() != StockLocationRepository.TYPE_VIRTUAL;
+
     for (StockMoveLine stockMoveLine : stockMoveLineList) {
 
       Product product = stockMoveLine.getProduct();
@@ -452,24 +482,139 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
           qty = stockMoveLine.getQty();
         }
 
-        if (toStockLocation.getTypeSelect() != StockLocationRepository.TYPE_VIRTUAL) {
-          this.updateAveragePriceLocationLine(toStockLocation, stockMoveLine, fromStatus, toStatus);
-        }
-        this.updateLocations(
+        this.addLocationUpdates(
+            stockLocationUpdate,
             stockMoveLine,
             fromStockLocation,
             toStockLocation,
-            stockMoveLine.getProduct(),
+            product,
             qty,
             fromStatus,
             toStatus,
             lastFutureStockMoveDate,
-            stockMoveLine.getTrackingNumber());
-        weightedAveragePriceService.computeAvgPriceForProduct(stockMoveLine.getProduct());
+            stockMoveLine.getTrackingNumber(),
+            avgPriceUpdated);
       }
     }
   }
 
+  @Override
+  public void applyLocationUpdate(StockLocationUpdate stockLocationUpdate) throws AxelorException {
+
+    for (Map.Entry<StockLocationUpdate.Key, List<StockLocationUpdate.Operation>> entry :
+        stockLocationUpdate.getOperationMap().entrySet()) {
+      this.applyOperations(entry.getKey(), entry.getValue());
+    }
+
+    for (Product product : stockLocationUpdate.getProductSet()) {
+      weightedAveragePriceService.computeAvgPriceForProduct(product);
+    }
+  }
+
+  /**
+   * Apply the changes of a stock location line with one read and one write. The changes follow
+   * the stock move lines in order, each one checking the stock rules against the quantities left
+   * by the previous ones, as if the stock location line was updated once per stock move line.
+   *
+   * @param key
+   * @param operationList
+   * @throws AxelorException
+   */
+  protected void applyOperations(
+      StockLocationUpdate.Key key, List<StockLocationUpdate.Operation> operationList)
+      throws AxelorException {
+
+    StockLocation stockLocation = key.getStockLocation();
+    Product product = key.getProduct();
+    boolean isDetailLocationLine = key.getTrackingNumber() != null;
+
+    StockLocationLine stockLocationLine =
+        isDetailLocationLine
+            ? stockLocationLineService.getOrCreateDetailLocationLine(
+                stockLocation, product, key.getTrackingNumber())
+            : stockLocationLineService.getOrCreateStockLocationLine(stockLocation, product);
+
+    if (stockLocationLine == null) {
+      return;
+    }
+
+    log.debug(
+        "Update of stock location {}, product {}, tracking number {}: {} change(s)",
+        stockLocation.getName(),
+        product.getCode(),
+        key.getTrackingNumber(),
+        operationList.size());
+
+    Unit stockLocationLineUnit = stockLocationLine.getUnit();
+    boolean futureUpdated = false;
+    LocalDate lastFutureStockMoveDate = null;
+
+    for (StockLocationUpdate.Operation operation : operationList) {
+      BigDecimal qty = operation.getQty();
+      if (stockLocationLineUnit != null && !stockLocationLineUnit.equals(operation.getUnit())) {
+        qty =
+            unitConversionService.convert(
+                operation.getUnit(), stockLocationLineUnit, qty, qty.scale(), product);
+      }
+
+      if (!isDetailLocationLine) {
+        this.checkStockRules(product, stockLocationLine, operation, qty);
+      }
+
+      if (operation.isAvgPriceUpdated()) {
+        this.computeNewAveragePriceLocationLine(stockLocationLine, operation.getStockMoveLine());
+      }
+      if (operation.isCurrent()) {
+        stockLocationLine.setCurrentQty(
+            operation.isIncrement()
+                ? stockLocationLine.getCurrentQty().add(qty)
+                : stockLocationLine.getCurrentQty().subtract(qty));
+      }
+      if (operation.isFuture()) {
+        stockLocationLine.setFutureQty(
+            operation.isIncrement()
+                ? stockLocationLine.getFutureQty().add(qty)
+                : stockLocationLine.getFutureQty().subtract(qty));
+        futureUpdated = true;
+        lastFutureStockMoveDate = operation.getLastFutureStockMoveDate();
+      }
+    }
+
+    if (futureUpdated) {
+      stockLocationLine.setLastFutureStockMoveDate(lastFutureStockMoveDate);
+    }
+
+    stockLocationLineService.checkStockMin(stockLocationLine, isDetailLocationLine);
+
+    this.saveStockLocationLine(stockLocationLine);
+  }
+
+  protected void saveStockLocationLine(StockLocationLine stockLocationLine) {
+    Beans.get(StockLocationLineRepository.class).save(stockLocationLine);
+    // Written now, so that the rows are locked in the order of the keys.
+    JPA.flush();
+  }
+
+  /**
+   * Check the stock rules of a change before it is applied: minimum rules on a decrement, maximum
+   * rules on an increment.
+   */
+  protected void checkStockRules(
+      Product product,
+      StockLocationLine stockLocationLine,
+      StockLocationUpdate.Operation operation,
+      BigDecimal qty)
+      throws AxelorException {
+
+    if (operation.isIncrement()) {
+      stockLocationLineService.maxStockRules(
+          product, qty, stockLocationLine, operation.isCurrent(), operation.isFuture());
+    } else {
+      stockLocationLineService.minStockRules(
+          product, qty, stockLocationLine, operation.isCurrent(), operation.isFuture());
+    }
+  }
+
   @Override
   public void updateAveragePriceLocationLine(
       StockLocation stockLocation, StockMoveLine stockMoveLine, int fromStatus, int toStatus)
@@ -676,53 +821,72 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
       LocalDate lastFutureStockMoveDate,
       TrackingNumber trackingNumber)
       throws AxelorException {
+
+    StockLocationUpdate stockLocationUpdate = new StockLocationUpdate();
+    this.addLocationUpdates(
+        stockLocationUpdate,
+        stockMoveLine,
+        fromStockLocation,
+        toStockLocation,
+        product,
+        qty,
+        fromStatus,
+        toStatus,
+        lastFutureStockMoveDate,
+        trackingNumber,
+        false);
+    this.applyLocationUpdate(stockLocationUpdate);
+  }
+
+  /**
+   * Add the changes of the stock locations of a stock move line going from a status to another.
+   *
+   * @param avgPriceUpdated whether the stock move line price is taken into the average price of
+   *     the destination stock location line
+   */
+  protected void addLocationUpdates(
+      StockLocationUpdate stockLocationUpdate,
+      StockMoveLine stockMoveLine,
+      StockLocation fromStockLocation,
+      StockLocation toStockLocation,
+      Product product,
+      BigDecimal qty,
+      int fromStatus,
+      int toStatus,
+      LocalDate lastFutureStockMoveDate,
+      TrackingNumber trackingNumber,
+      boolean avgPriceUpdated) {
     Unit stockMoveLineUnit = stockMoveLine.getUnit();
 
     switch (fromStatus) {
       case StockMoveRepository.STATUS_PLANNED:
-        stockLocationLineService.updateLocation(
+        stockLocationUpdate.add(
             fromStockLocation,
             product,
-            stockMoveLineUnit,
-            qty,
-            false,
-            true,
-            true,
-            null,
-            trackingNumber);
-        stockLocationLineService.updateLocation(
+            trackingNumber,
+            new StockLocationUpdate.Operation(
+                stockMoveLine, stockMoveLineUnit, qty, false, true, true, null, false));
+        stockLocationUpdate.add(
             toStockLocation,
             product,
-            stockMoveLineUnit,
-            qty,
-            false,
-            true,
-            false,
-            null,
-            trackingNumber);
+            trackingNumber,
+            new StockLocationUpdate.Operation(
+                stockMoveLine, stockMoveLineUnit, qty, false, true, false, null, false));
         break;
 
       case StockMoveRepository.STATUS_REALIZED:
-        stockLocationLineService.updateLocation(
+        stockLocationUpdate.add(
             fromStockLocation,
             product,
-            stockMoveLineUnit,
-            qty,
-            true,
-            true,
-            true,
-            null,
-            trackingNumber);
-        stockLocationLineService.updateLocation(
+            trackingNumber,
+            new StockLocationUpdate.Operation(
+                stockMoveLine, stockMoveLineUnit, qty, true, true, true, null, false));
+        stockLocationUpdate.add(
             toStockLocation,
             product,
-            stockMoveLineUnit,
-            qty,
-            true,
-            true,
-            false,
-            null,
-            trackingNumber);
+            trackingNumber,
+            new StockLocationUpdate.Operation(
+                stockMoveLine, stockMoveLineUnit, qty, true, true, false, null, false));
         break;
 
       default:
@@ -731,49 +895,47 @@ public class StockMoveLineServiceImpl implements StockMoveLineService {
 
     switch (toStatus) {
       case StockMoveRepository.STATUS_PLANNED:
-        stockLocationLineService.updateLocation(
+        stockLocationUpdate.add(
             fromStockLocation,
             product,
-            stockMoveLineUnit,
-            qty,
-            false,
-            true,
-            false,
-            lastFutureStockMoveDate,
-            trackingNumber);
-        stockLocationLineService.updateLocation(
+            trackingNumber,
+            new StockLocationUpdate.Operation(
+                stockMoveLine,
+                stockMoveLineUnit,
+                qty,
+                false,
+                true,
+                false,
+                lastFutureStockMoveDate,
+                false));
+        stockLocationUpdate.add(
             toStockLocation,
             product,
-            stockMoveLineUnit,
-            qty,
-            false,
-            true,
-            true,
-            lastFutureStockMoveDate,
-            trackingNumber);
+            trackingNumber,
+            new StockLocationUpdate.Operation(
+                stockMoveLine,
+                stockMoveLineUnit,
+                qty,
+                false,
+                true,
+                true,
+                lastFutureStockMoveDate,
+                false));
         break;
 
       case StockMoveRepository.STATUS_REALIZED:
-        stockLocationLineService.updateLocation(
+        stockLocationUpdate.add(
             fromStockLocation,
             product,
-            stockMoveLineUnit,
-            qty,
-            true,
-            true,
-            false,
-            null,
-            trackingNumber);
-        stockLocationLineService.updateLocation(
+            trackingNumber,
+            new StockLocationUpdate.Operation(
+                stockMoveLine, stockMoveLineUnit, qty, true, true, false, null, false));
+        stockLocationUpdate.add(
             toStockLocation,
             product,
-            stockMoveLineUnit,
-            qty,
-            true,
-            true,
-            true,
-            null,
-            trackingNumber);
+            trackingNumber,
+            new StockLocationUpdate.Operation(
+                stockMoveLine, stockMoveLineUnit, qty, true, true, true, null, avgPriceUpdated));
         break;
 
       default:
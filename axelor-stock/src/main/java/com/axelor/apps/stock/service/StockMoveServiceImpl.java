@@ -381,7 +381,9 @@ public class StockMoveServiceImpl implements StockMoveService {
     checkExpirationDates(stockMove);
 
     setRealizedStatus(stockMove);
-    stockMoveLineService.updateLocations(
+    StockLocationUpdate stockLocationUpdate = new StockLocationUpdate();
+    stockMoveLineService.addLocationUpdates(
+        stockLocationUpdate,
         stockMove.getFromStockLocation(),
         stockMove.getToStockLocation(),
         initialStatus,
@@ -389,8 +391,8 @@ public class StockMoveServiceImpl implements StockMoveService {
         stockMove.getPlannedStockMoveLineList(),
         stockMove.getEstimatedDate(),
         false);
-
-    stockMoveLineService.updateLocations(
+    stockMoveLineService.addLocationUpdates(
+        stockLocationUpdate,
         stockMove.getFromStockLocation(),
         stockMove.getToStockLocation(),
         StockMoveRepository.STATUS_DRAFT,
@@ -398,6 +400,7 @@ public class StockMoveServiceImpl implements StockMoveService {
         stockMove.getStockMoveLineList(),
         stockMove.getEstimatedDate(),
         true);
+    stockMoveLineService.applyLocationUpdate(stockLocationUpdate);
 
     stockMove.clearPlannedStockMoveLineList();
 
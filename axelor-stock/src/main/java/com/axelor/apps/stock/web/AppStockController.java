@@ -17,7 +17,11 @@
  */
 package com.axelor.apps.stock.web;
 
+import com.axelor.apps.stock.exception.IExceptionMessage;
+import com.axelor.apps.stock.service.StockLocationService;
 import com.axelor.apps.stock.service.app.AppStockService;
+import com.axelor.i18n.I18n;
+import com.axelor.inject.Beans;
 import com.axelor.rpc.ActionRequest;
 import com.axelor.rpc.ActionResponse;
 import com.google.inject.Inject;
@@ -34,4 +38,11 @@ public class AppStockController {
 
     response.setReload(true);
   }
+
+  public void fillStockLocationPaths(ActionRequest request, ActionResponse response) {
+
+    int count = Beans.get(StockLocationService.class).fillLocationPaths();
+
+    response.setFlash(String.format(I18n.get(IExceptionMessage.LOCATION_PATHS_FILLED), count));
+  }
 }
@@ -0,0 +1,301 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.test;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockLocationLine;
+import com.axelor.apps.stock.db.StockMoveLine;
+import com.axelor.apps.stock.db.repo.StockMoveRepository;
+import com.axelor.apps.stock.service.StockLocationLineServiceImpl;
+import com.axelor.apps.stock.service.StockLocationUpdate;
+import com.axelor.apps.stock.service.StockMoveLineServiceImpl;
+import com.axelor.exception.AxelorException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Future quantities of the stock location lines: the change applied by a stock move, and the
+ * reconciliation against the planned stock move lines.
+ */
+public class TestFutureQty {
+
+  /** Planned stock move line: from stock location, to stock location, quantity. */
+  private static class PlannedLine {
+    private final long fromStockLocationId;
+    private final long toStockLocationId;
+    private final BigDecimal qty;
+
+    private PlannedLine(long fromStockLocationId, long toStockLocationId, BigDecimal qty) {
+      this.fromStockLocationId = fromStockLocationId;
+      this.toStockLocationId = toStockLocationId;
+      this.qty = qty;
+    }
+  }
+
+  /** Stock location lines and planned stock move lines of a single product, in memory. */
+  private class InMemoryStockLocationLineService extends StockLocationLineServiceImpl {
+
+    @Override
+    protected List<Object[]> sumPlannedQty(
+        String stockLocationField, String filter, Map<String, Object> params) {
+      List<Object[]> rowList = new ArrayList<>();
+      for (PlannedLine plannedLine : plannedLineList) {
+        long stockLocationId =
+            stockLocationField.equals("toStockLocation")
+                ? plannedLine.toStockLocationId
+                : plannedLine.fromStockLocationId;
+        Object filteredId = params.get("stockLocationId");
+        if (filteredId == null || filteredId.equals(stockLocationId)) {
+          rowList.add(
+              new Object[] {stockLocationId, product.getId(), null, unit.getId(), plannedLine.qty});
+        }
+      }
+      return rowList;
+    }
+
+    @Override
+    protected List<Object[]> fetchFutureQtyRows(long lastId) {
+      return lineMap.values().stream()
+          .filter(line -> line.getId() > lastId)
+          .map(
+              line ->
+                  new Object[] {
+                    line.getId(),
+                    line.getStockLocation().getId(),
+                    null,
+                    product.getId(),
+                    null,
+                    unit.getId(),
+                    line.getCurrentQty(),
+                    line.getFutureQty()
+                  })
+          .collect(Collectors.toList());
+    }
+
+    @Override
+    protected StockLocationLine lockStockLocationLine(Long stockLocationLineId) {
+      return lineMap.get(stockLocationLineId);
+    }
+
+    @Override
+    public StockLocationLine getOrCreateStockLocationLine(
+        StockLocation stockLocation, Product product) {
+      return lineMap.get(stockLocation.getId());
+    }
+
+    @Override
+    public void minStockRules(
+        Product product,
+        BigDecimal qty,
+        StockLocationLine stockLocationLine,
+        boolean current,
+        boolean future) {}
+
+    @Override
+    public void maxStockRules(
+        Product product,
+        BigDecimal qty,
+        StockLocationLine stockLocationLine,
+        boolean current,
+        boolean future) {}
+
+    @Override
+    public void checkStockMin(StockLocationLine stockLocationLine, boolean isDetailLocationLine) {}
+  }
+
+  /** Applies the changes of the stock moves to the in-memory stock location lines. */
+  private static class InMemoryStockMoveLineService extends StockMoveLineServiceImpl {
+
+    private InMemoryStockMoveLineService(InMemoryStockLocationLineService service) {
+      super(null, null, null, null, null, service, null, null, null);
+    }
+
+    private void updateLocations(
+        StockLocation fromStockLocation,
+        StockLocation toStockLocation,
+        int fromStatus,
+        int toStatus,
+        StockMoveLine stockMoveLine)
+        throws AxelorException {
+
+      StockLocationUpdate stockLocationUpdate = new StockLocationUpdate();
+      this.addLocationUpdates(
+          stockLocationUpdate,
+          stockMoveLine,
+          fromStockLocation,
+          toStockLocation,
+          stockMoveLine.getProduct(),
+          stockMoveLine.getQty(),
+          fromStatus,
+          toStatus,
+          null,
+          null,
+          false);
+      for (Map.Entry<StockLocationUpdate.Key, List<StockLocationUpdate.Operation>> entry :
+          stockLocationUpdate.getOperationMap().entrySet()) {
+        this.applyOperations(entry.getKey(), entry.getValue());
+      }
+    }
+
+    @Override
+    protected void saveStockLocationLine(StockLocationLine stockLocationLine) {}
+  }
+
+  private Product product;
+  private Unit unit;
+  private StockLocation warehouse;
+  private StockLocation customer;
+  private Map<Long, StockLocationLine> lineMap;
+  private List<PlannedLine> plannedLineList;
+  private InMemoryStockLocationLineService stockLocationLineService;
+
+  @Before
+  public void prepare() {
+    product = new Product();
+    product.setId(1L);
+    unit = new Unit();
+    unit.setId(1L);
+    warehouse = stockLocation(1L);
+    customer = stockLocation(2L);
+    lineMap = new TreeMap<>();
+    plannedLineList = new ArrayList<>();
+    stockLocationLineService = new InMemoryStockLocationLineService();
+
+    stockLocationLine(warehouse, 100, 100);
+    stockLocationLine(customer, 0, 0);
+  }
+
+  private static StockLocation stockLocation(long id) {
+    StockLocation stockLocation = new StockLocation();
+    stockLocation.setId(id);
+    return stockLocation;
+  }
+
+  /** A stock location line with the same id as its stock location. */
+  private StockLocationLine stockLocationLine(
+      StockLocation stockLocation, int currentQty, int futureQty) {
+    StockLocationLine stockLocationLine = new StockLocationLine();
+    stockLocationLine.setId(stockLocation.getId());
+    stockLocationLine.setStockLocation(stockLocation);
+    stockLocationLine.setProduct(product);
+    stockLocationLine.setUnit(unit);
+    stockLocationLine.setCurrentQty(BigDecimal.valueOf(currentQty));
+    stockLocationLine.setFutureQty(BigDecimal.valueOf(futureQty));
+    lineMap.put(stockLocation.getId(), stockLocationLine);
+    return stockLocationLine;
+  }
+
+  private StockMoveLine stockMoveLine(int qty) {
+    StockMoveLine stockMoveLine = new StockMoveLine();
+    stockMoveLine.setProduct(product);
+    stockMoveLine.setUnit(unit);
+    stockMoveLine.setQty(BigDecimal.valueOf(qty));
+    return stockMoveLine;
+  }
+
+  private void assertQty(StockLocation stockLocation, int currentQty, int futureQty) {
+    StockLocationLine stockLocationLine = lineMap.get(stockLocation.getId());
+    Assert.assertEquals(
+        0, BigDecimal.valueOf(currentQty).compareTo(stockLocationLine.getCurrentQty()));
+    Assert.assertEquals(
+        0, BigDecimal.valueOf(futureQty).compareTo(stockLocationLine.getFutureQty()));
+  }
+
+  @Test
+  public void testStockMoveChangesFutureQty() throws AxelorException {
+    InMemoryStockMoveLineService stockMoveLineService =
+        new InMemoryStockMoveLineService(stockLocationLineService);
+    StockMoveLine stockMoveLine = stockMoveLine(30);
+
+    stockMoveLineService.updateLocations(
+        warehouse,
+        customer,
+        StockMoveRepository.STATUS_DRAFT,
+        StockMoveRepository.STATUS_PLANNED,
+        stockMoveLine);
+    assertQty(warehouse, 100, 70);
+    assertQty(customer, 0, 30);
+
+    // The planned quantities now give the same future quantities.
+    plannedLineList.add(
+        new PlannedLine(warehouse.getId(), customer.getId(), stockMoveLine.getQty()));
+    Assert.assertEquals(0, stockLocationLineService.reconcileFutureQty().size());
+
+    stockMoveLineService.updateLocations(
+        warehouse,
+        customer,
+        StockMoveRepository.STATUS_PLANNED,
+        StockMoveRepository.STATUS_REALIZED,
+        stockMoveLine);
+    assertQty(warehouse, 70, 70);
+    assertQty(customer, 30, 30);
+
+    plannedLineList.clear();
+    Assert.assertEquals(0, stockLocationLineService.reconcileFutureQty().size());
+  }
+
+  @Test
+  public void testDriftedFutureQtyIsCorrected() throws AxelorException {
+    plannedLineList.add(new PlannedLine(warehouse.getId(), customer.getId(), BigDecimal.TEN));
+
+    Assert.assertEquals(
+        Arrays.asList(warehouse.getId(), customer.getId()),
+        stockLocationLineService.reconcileFutureQty());
+    assertQty(warehouse, 100, 90);
+    assertQty(customer, 0, 10);
+
+    Assert.assertEquals(0, stockLocationLineService.reconcileFutureQty().size());
+  }
+
+  @Test
+  public void testMovePlannedAfterDetectionIsCounted() throws AxelorException {
+    lineMap.get(customer.getId()).setFutureQty(BigDecimal.valueOf(5));
+
+    // A stock move of 20 is planned between the detection and the lock of the customer line.
+    InMemoryStockLocationLineService service =
+        new InMemoryStockLocationLineService() {
+          @Override
+          protected StockLocationLine lockStockLocationLine(Long stockLocationLineId) {
+            if (plannedLineList.isEmpty()) {
+              BigDecimal qty = BigDecimal.valueOf(20);
+              plannedLineList.add(new PlannedLine(warehouse.getId(), customer.getId(), qty));
+              StockLocationLine warehouseLine = lineMap.get(warehouse.getId());
+              warehouseLine.setFutureQty(warehouseLine.getFutureQty().subtract(qty));
+              StockLocationLine customerLine = lineMap.get(customer.getId());
+              customerLine.setFutureQty(customerLine.getFutureQty().add(qty));
+            }
+            return super.lockStockLocationLine(stockLocationLineId);
+          }
+        };
+
+    Assert.assertEquals(Arrays.asList(customer.getId()), service.reconcileFutureQty());
+    // Corrected with the move, not with the sums read before it.
+    assertQty(customer, 0, 20);
+    assertQty(warehouse, 100, 80);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.stock.test;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.stock.db.StockMoveLine;
+import com.axelor.apps.stock.db.TrackingNumber;
+import com.axelor.apps.stock.service.StockLocationUpdate;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStockLocationUpdate {
+
+  private static StockLocation stockLocation(long id) {
+    StockLocation stockLocation = new StockLocation();
+    stockLocation.setId(id);
+    return stockLocation;
+  }
+
+  private static Product product(long id) {
+    Product product = new Product();
+    product.setId(id);
+    return product;
+  }
+
+  private static TrackingNumber trackingNumber(long id) {
+    TrackingNumber trackingNumber = new TrackingNumber();
+    trackingNumber.setId(id);
+    return trackingNumber;
+  }
+
+  private static StockLocationUpdate.Operation operation(
+      StockMoveLine stockMoveLine, boolean isIncrement) {
+    return new StockLocationUpdate.Operation(
+        stockMoveLine, null, BigDecimal.ONE, true, true, isIncrement, null, false);
+  }
+
+  @Test
+  public void testLinesAreSortedAndMerged() {
+    StockLocationUpdate stockLocationUpdate = new StockLocationUpdate();
+    StockLocation warehouse = stockLocation(2);
+    StockLocation customer = stockLocation(1);
+    Product bolt = product(7);
+    Product screw = product(3);
+    TrackingNumber lot = trackingNumber(5);
+    StockMoveLine firstLine = new StockMoveLine();
+    StockMoveLine secondLine = new StockMoveLine();
+
+    stockLocationUpdate.add(warehouse, bolt, null, operation(firstLine, false));
+    stockLocationUpdate.add(customer, bolt, null, operation(firstLine, true));
+    stockLocationUpdate.add(warehouse, screw, lot, operation(secondLine, false));
+    stockLocationUpdate.add(customer, screw, lot, operation(secondLine, true));
+    stockLocationUpdate.add(warehouse, bolt, null, operation(secondLine, false));
+
+    List<String> keyList = new ArrayList<>();
+    for (Map.Entry<StockLocationUpdate.Key, List<StockLocationUpdate.Operation>> entry :
+        stockLocationUpdate.getOperationMap().entrySet()) {
+      StockLocationUpdate.Key key = entry.getKey();
+      keyList.add(
+          key.getStockLocation().getId()
+              + "/"
+              + key.getProduct().getId()
+              + "/"
+              + (key.getTrackingNumber() == null ? "-" : key.getTrackingNumber().getId())
+              + ":"
+              + entry.getValue().size());
+    }
+
+    Assert.assertEquals(
+        "[1/3/-:1, 1/3/5:1, 1/7/-:1, 2/3/-:1, 2/3/5:1, 2/7/-:2]", keyList.toString());
+    Assert.assertEquals(2, stockLocationUpdate.getProductSet().size());
+
+    List<StockLocationUpdate.Operation> operationList =
+        stockLocationUpdate
+            .getOperationMap()
+            .get(new StockLocationUpdate.Key(warehouse, product(7), null));
+    Assert.assertSame(firstLine, operationList.get(0).getStockMoveLine());
+    Assert.assertSame(secondLine, operationList.get(1).getStockMoveLine());
+  }
+}
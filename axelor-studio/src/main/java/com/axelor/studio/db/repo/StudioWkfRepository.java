@@ -19,12 +19,25 @@ package com.axelor.studio.db.repo;
 
 import com.axelor.studio.db.Wkf;
 import com.axelor.studio.service.wkf.WkfService;
+import com.axelor.studio.service.wkf.WkfTrackingService;
 import com.google.inject.Inject;
 
 public class StudioWkfRepository extends WkfRepository {
 
   @Inject private WkfService wkfService;
 
+  @Inject private WkfTrackingService wkfTrackingService;
+
+  @Override
+  public Wkf save(Wkf wkf) {
+
+    wkf = super.save(wkf);
+
+    wkfTrackingService.invalidateAfterCommit();
+
+    return wkf;
+  }
+
   /**
    * Overridden to remove changes related with workflow. Like to remove buttons and status field
    * from view and model.
@@ -35,5 +48,7 @@ public class StudioWkfRepository extends WkfRepository {
     wkfService.clearWkf(wkf);
 
     super.remove(wkf);
+
+    wkfTrackingService.invalidateAfterCommit();
   }
 }
@@ -0,0 +1,53 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.listener;
+
+import com.axelor.event.Observes;
+import com.axelor.events.StartupEvent;
+import com.axelor.inject.Beans;
+import com.axelor.studio.service.wkf.WkfTrackingService;
+import com.google.inject.servlet.RequestScoper;
+import com.google.inject.servlet.ServletScopes;
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class StudioServerStartListener {
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Fill the status date and user of the workflow tracking lines written before they were stored.
+   * Only the lines without status date are updated, so nothing is left to do after the first
+   * start.
+   *
+   * @param event
+   */
+  public void fillWkfTrackingStatusFields(@Observes StartupEvent event) {
+    RequestScoper scope = ServletScopes.scopeRequest(Collections.emptyMap());
+    try (RequestScoper.CloseableScope ignored = scope.open()) {
+      int count = Beans.get(WkfTrackingService.class).fillStatusFields();
+      if (count > 0) {
+        log.info("Status date filled on {} workflow tracking lines", count);
+      }
+    } catch (Exception e) {
+      log.error("Unable to fill the status dates of the workflow tracking lines", e);
+    }
+  }
+}
@@ -36,6 +36,7 @@ import com.axelor.studio.db.repo.MetaJsonFieldRepo;
 import com.axelor.studio.db.repo.MetaJsonModelRepo;
 import com.axelor.studio.db.repo.StudioWkfRepository;
 import com.axelor.studio.db.repo.WkfRepository;
+import com.axelor.studio.listener.StudioServerStartListener;
 
 public class StudioModule extends AxelorModule {
 
@@ -50,5 +51,6 @@ public class StudioModule extends AxelorModule {
     bind(MetaJsonFieldRepository.class).to(MetaJsonFieldRepo.class);
     bind(JsonCreatorRepository.class).to(JsonCreatorRepo.class);
     bind(MetaJsonModelRepository.class).to(MetaJsonModelRepo.class);
+    bind(StudioServerStartListener.class);
   }
 }
@@ -0,0 +1,251 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.service.wkf;
+
+import com.axelor.db.JPA;
+import com.axelor.exception.service.TraceBackService;
+import com.axelor.inject.Beans;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory queue of the status changes of tracked records, written in background by one worker
+ * thread.
+ *
+ * <p>The worker waits {@link #FLUSH_DELAY_MILLIS} after the first queued change, so the changes of
+ * a bulk update are written together, then writes them by batches of {@link #BATCH_SIZE}, each in
+ * one transaction. Changes still queued when the server stops are lost.
+ */
+@Singleton
+public class WkfTrackingQueue {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final int BATCH_SIZE = 500;
+
+  protected static final long FLUSH_DELAY_MILLIS = 1000;
+
+  /** Lag above which a batch is logged as a warning, the worker not keeping up with the saves. */
+  protected static final long LAG_WARNING_MILLIS = 60000;
+
+  /** Status reached by a tracked record. */
+  public static class Event {
+
+    private final Long wkfId;
+    private final String recordModel;
+    private final Long recordId;
+    private final String status;
+    private final LocalDateTime statusDateT;
+    private final Long userId;
+    private final long queuedNanos = System.nanoTime();
+
+    public Event(
+        Long wkfId,
+        String recordModel,
+        Long recordId,
+        String status,
+        LocalDateTime statusDateT,
+        Long userId) {
+      this.wkfId = wkfId;
+      this.recordModel = recordModel;
+      this.recordId = recordId;
+      this.status = status;
+      this.statusDateT = statusDateT;
+      this.userId = userId;
+    }
+
+    public Long getWkfId() {
+      return wkfId;
+    }
+
+    public String getRecordModel() {
+      return recordModel;
+    }
+
+    public Long getRecordId() {
+      return recordId;
+    }
+
+    public String getStatus() {
+      return status;
+    }
+
+    public LocalDateTime getStatusDateT() {
+      return statusDateT;
+    }
+
+    public Long getUserId() {
+      return userId;
+    }
+
+    String getTrackingKey() {
+      return wkfId + ":" + recordModel + ":" + recordId;
+    }
+  }
+
+  private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger queueSize = new AtomicInteger();
+
+  private final AtomicLong writtenCount = new AtomicLong();
+
+  private final AtomicLong lastBatchLagMillis = new AtomicLong();
+
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("wkf-tracking-%d").setDaemon(true).build());
+
+  public void add(Event event) {
+    queue.add(event);
+    queueSize.incrementAndGet();
+    schedule(FLUSH_DELAY_MILLIS);
+  }
+
+  /** @return count of status changes waiting to be written */
+  public int getQueueSize() {
+    return queueSize.get();
+  }
+
+  /** @return time since the oldest status change waiting to be written was queued, in ms */
+  public long getLagMillis() {
+    Event event = queue.peek();
+    return event == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - event.queuedNanos);
+  }
+
+  /** @return time between the queuing and the writing of the oldest change of the last batch */
+  public long getLastBatchLagMillis() {
+    return lastBatchLagMillis.get();
+  }
+
+  /** @return count of status changes written since the server started */
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  /**
+   * Schedule a run of the worker, unless one is already waiting. Changes queued during a run
+   * schedule another one, so they are not missed.
+   */
+  protected void schedule(long delayMillis) {
+    if (!scheduled.compareAndSet(false, true)) {
+      return;
+    }
+
+    executor.schedule(
+        () -> {
+          scheduled.set(false);
+          try {
+            flush();
+          } catch (Exception e) {
+            trace(e);
+          }
+        },
+        delayMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Write the queued status changes by batches, until the queue is empty. */
+  public void flush() {
+    for (List<Event> eventList; !(eventList = poll(BATCH_SIZE)).isEmpty(); ) {
+      long lagMillis =
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - eventList.get(0).queuedNanos);
+      Map<String, List<Event>> trackingMap = new LinkedHashMap<>();
+      for (Event event : eventList) {
+        trackingMap.computeIfAbsent(event.getTrackingKey(), key -> new ArrayList<>()).add(event);
+      }
+
+      write(trackingMap.values());
+
+      writtenCount.addAndGet(eventList.size());
+      lastBatchLagMillis.set(lagMillis);
+      if (lagMillis > LAG_WARNING_MILLIS) {
+        LOG.warn(
+            "Workflow tracking is late, lag: {} ms, still queued: {}", lagMillis, queueSize.get());
+      }
+      LOG.debug(
+          "{} status change(s) of {} record(s) tracked, lag: {} ms, still queued: {}",
+          eventList.size(),
+          trackingMap.size(),
+          lagMillis,
+          queueSize.get());
+    }
+  }
+
+  protected List<Event> poll(int limit) {
+    List<Event> eventList = new ArrayList<>();
+    for (Event event; eventList.size() < limit && (event = queue.poll()) != null; ) {
+      queueSize.decrementAndGet();
+      eventList.add(event);
+    }
+    return eventList;
+  }
+
+  /**
+   * Write a batch in one transaction. If it fails, the changes of each record are written in their
+   * own transaction, so a record in error does not prevent the tracking of the others.
+   */
+  protected void write(Collection<List<Event>> trackingEventLists) {
+    try {
+      writeBatch(trackingEventLists);
+    } catch (Exception e) {
+      LOG.debug("Tracking batch failed, tracking record by record: {}", e.getMessage());
+      clear();
+      for (List<Event> eventList : trackingEventLists) {
+        try {
+          writeBatch(Collections.singletonList(eventList));
+        } catch (Exception ex) {
+          trace(ex);
+        }
+      }
+    } finally {
+      clear();
+    }
+  }
+
+  protected void writeBatch(Collection<List<Event>> trackingEventLists) {
+    Beans.get(WkfTrackingService.class).write(trackingEventLists);
+  }
+
+  protected void clear() {
+    JPA.clear();
+  }
+
+  protected void trace(Exception e) {
+    TraceBackService.trace(e);
+  }
+}
@@ -17,10 +17,13 @@
  */
 package com.axelor.studio.service.wkf;
 
+import com.axelor.apps.tool.TransactionTool;
+import com.axelor.auth.AuthUtils;
+import com.axelor.auth.db.User;
 import com.axelor.db.EntityHelper;
+import com.axelor.db.JPA;
 import com.axelor.db.Model;
 import com.axelor.meta.MetaStore;
-import com.axelor.meta.db.MetaJsonField;
 import com.axelor.meta.db.MetaJsonRecord;
 import com.axelor.meta.schema.views.Selection.Option;
 import com.axelor.rpc.Context;
@@ -30,19 +33,24 @@ import com.axelor.studio.db.WkfTracking;
 import com.axelor.studio.db.WkfTrackingLine;
 import com.axelor.studio.db.WkfTrackingTime;
 import com.axelor.studio.db.WkfTrackingTotal;
-import com.axelor.studio.db.repo.WkfRepository;
 import com.axelor.studio.db.repo.WkfTrackingLineRepository;
 import com.axelor.studio.db.repo.WkfTrackingRepository;
 import com.axelor.studio.db.repo.WkfTrackingTimeRepository;
 import com.axelor.studio.db.repo.WkfTrackingTotalRepository;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.script.SimpleBindings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,8 +59,12 @@ import org.slf4j.LoggerFactory;
  * Service handle tracking of workflow instance for particular record. Creates WkfTracking,
  * WkfTrackingLine, WkfTrackingTime and WkfTrackingTotal records.
  *
+ * <p>Status changes are only captured on save, and queued in {@link WkfTrackingQueue} when the
+ * transaction commits. The tracking records are written in background by batches.
+ *
  * @author axelor
  */
+@Singleton
 public class WkfTrackingService {
 
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -61,8 +73,6 @@ public class WkfTrackingService {
 
   public static final String ACTION_OPEN_TRACK = "action-wkf-open-wkf-tracking";
 
-  @Inject private WkfRepository wkfRepo;
-
   @Inject private WkfTrackingRepository wkfTrackingRepo;
 
   @Inject private WkfTrackingLineRepository trackingLineRepo;
@@ -71,239 +81,350 @@ public class WkfTrackingService {
 
   @Inject private WkfTrackingTimeRepository trackingTimeRepo;
 
-  private BigDecimal durationHrs;
-
-  private String oldStatus;
-
-  /**
-   * Root method to access the service. It creates WkfTracking record. WkfTracking is linked with
-   * record of model and workflow of model.
-   *
-   * @param model Model having workflow.
-   * @param modelId Record id of model to track.
-   * @param status Current wkfStatus of record.
-   * @throws ClassNotFoundException
-   */
-  public void track(Object object) {
+  @Inject private WkfTrackingQueue trackingQueue;
 
-    if (object != null) {
+  /** Status field of a workflow, as needed to capture the status changes of a record. */
+  protected static class WkfStatusField {
 
-      SimpleBindings ctx = null;
+    private final Long wkfId;
+    private final String jsonField;
+    private final String name;
+    private final String selection;
 
-      object = EntityHelper.getEntity(object);
-      Model model = (Model) object;
-
-      if (object instanceof MetaJsonRecord) {
-        log.debug("Meta json record context");
-        MetaJsonRecord metaJsonRecord = (MetaJsonRecord) object;
-        log.debug(
-            "Json id: {}, Json model: {}", metaJsonRecord.getId(), metaJsonRecord.getJsonModel());
-        ctx = new JsonContext((MetaJsonRecord) object);
-        ctx.put("id", metaJsonRecord.getId());
-        ctx.put("jsonModel", metaJsonRecord.getJsonModel());
-      } else {
-        ctx = new Context(model.getId(), object.getClass());
-      }
-
-      WkfTracking wkfTracking = getWorkflowTracking(ctx, object.getClass().getName());
+    protected WkfStatusField(Long wkfId, String jsonField, String name, String selection) {
+      this.wkfId = wkfId;
+      this.jsonField = jsonField;
+      this.name = name;
+      this.selection = selection;
+    }
+  }
 
-      if (wkfTracking == null) {
-        return;
-      }
+  /** Status fields of the workflows by model, with the generation they were loaded at. */
+  protected static class StatusFields {
 
-      MetaJsonField wkfField = wkfTracking.getWkf().getStatusField();
+    private final Map<String, List<WkfStatusField>> fieldMap;
+    private final long generation;
 
-      Object status = null;
-      status = ctx.get(wkfField.getName());
-      log.debug("Status value: {}", status);
+    protected StatusFields(Map<String, List<WkfStatusField>> fieldMap, long generation) {
+      this.fieldMap = fieldMap;
+      this.generation = generation;
+    }
+  }
 
-      if (status == null) {
-        return;
-      }
+  /** Loaded on first use and kept until a change of a wkf is committed. */
+  private volatile StatusFields statusFields;
 
-      Option item = MetaStore.getSelectionItem(wkfField.getSelection(), status.toString());
+  /** Incremented by each invalidation, status fields loaded before the last one are stale. */
+  private final AtomicLong generation = new AtomicLong();
 
-      log.debug("Fetching option {} from selection {}", status, wkfField.getSelection());
-      if (item == null) {
-        return;
-      }
+  /** Discard the cached workflows, the next status change reads them from the database. */
+  public void invalidate() {
+    generation.incrementAndGet();
+  }
 
-      durationHrs = BigDecimal.ZERO;
-      WkfTrackingLine trackingLine = updateTrackingLine(wkfTracking, item.getTitle());
-      if (trackingLine != null) {
-        updateTrackingTotal(wkfTracking, item.getTitle());
-        updateTrackingTime(wkfTracking, item.getTitle());
-      }
-    }
+  /** Discard the cached workflows after the commit of the transaction saving a workflow. */
+  public void invalidateAfterCommit() {
+    TransactionTool.runAfterCommit(this::invalidate);
   }
 
   /**
-   * Method find or create WkfTracking for model record.
+   * Root method to access the service. It queues the current status of a record, to be tracked in
+   * the WkfTracking of the record and of the workflow of its model.
    *
-   * @param model Model of record.
-   * @param modelId Id of record.
-   * @return WkfTracking instance created/found.s
+   * @param object Record of a model having workflow.
    */
-  @Transactional
-  public WkfTracking getWorkflowTracking(SimpleBindings ctx, String model) {
+  public void track(Object object) {
 
-    String jsonModel = (String) ctx.get("jsonModel");
+    if (object == null) {
+      return;
+    }
 
-    log.debug("Context json model: {}", jsonModel);
+    object = EntityHelper.getEntity(object);
+    Model model = (Model) object;
 
-    if (jsonModel != null) {
-      model = jsonModel;
+    String recordModel =
+        object instanceof MetaJsonRecord
+            ? ((MetaJsonRecord) object).getJsonModel()
+            : object.getClass().getName();
+
+    List<WkfStatusField> statusFieldList = getStatusFieldMap().get(recordModel);
+
+    if (statusFieldList == null) {
+      log.debug("Workflow not found for model: {}", recordModel);
+      return;
     }
 
-    List<Wkf> wkfs = wkfRepo.all().filter("self.model = ?1", model).fetch();
+    SimpleBindings ctx = null;
 
-    if (wkfs.isEmpty()) {
-      log.debug("Workflow not found for model: {}", model);
-      return null;
+    if (object instanceof MetaJsonRecord) {
+      log.debug("Meta json record context");
+      MetaJsonRecord metaJsonRecord = (MetaJsonRecord) object;
+      log.debug(
+          "Json id: {}, Json model: {}", metaJsonRecord.getId(), metaJsonRecord.getJsonModel());
+      ctx = new JsonContext((MetaJsonRecord) object);
+      ctx.put("id", metaJsonRecord.getId());
+      ctx.put("jsonModel", metaJsonRecord.getJsonModel());
+    } else {
+      ctx = new Context(model.getId(), object.getClass());
     }
 
-    Wkf wkf = null;
+    WkfStatusField statusField = null;
 
-    if (wkfs.size() > 1) {
-      for (Wkf w : wkfs) {
-        if (ctx.get(w.getJsonField()) != null) {
-          wkf = w;
+    if (statusFieldList.size() > 1) {
+      for (WkfStatusField field : statusFieldList) {
+        if (ctx.get(field.jsonField) != null) {
+          statusField = field;
           break;
         }
       }
-      if (wkf == null) {
-        return null;
+      if (statusField == null) {
+        return;
       }
     } else {
-      wkf = wkfs.get(0);
+      statusField = statusFieldList.get(0);
     }
 
-    WkfTracking wkfTracking =
-        wkfTrackingRepo
-            .all()
-            .filter(
-                "self.wkf = ?1 and self.recordModel = ?2 and self.recordId = ?3",
-                wkf,
-                model,
-                ctx.get("id"))
-            .fetchOne();
+    Object status = ctx.get(statusField.name);
+    log.debug("Status value: {}", status);
 
-    if (wkfTracking == null) {
-      wkfTracking = new WkfTracking();
-      wkfTracking.setWkf(wkf);
-      wkfTracking.setRecordModel(model);
-      wkfTracking.setRecordId((Long) ctx.get("id"));
-      wkfTracking = wkfTrackingRepo.save(wkfTracking);
+    if (status == null) {
+      return;
     }
 
-    return wkfTracking;
+    Option item = MetaStore.getSelectionItem(statusField.selection, status.toString());
+
+    log.debug("Fetching option {} from selection {}", status, statusField.selection);
+    if (item == null) {
+      return;
+    }
+
+    User user = AuthUtils.getUser();
+
+    queueAfterCommit(
+        new WkfTrackingQueue.Event(
+            statusField.wkfId,
+            recordModel,
+            model.getId(),
+            item.getTitle(),
+            LocalDateTime.now(),
+            user == null ? null : user.getId()));
+  }
+
+  /** Queue a status change after the commit of the record, nothing is queued on rollback. */
+  protected void queueAfterCommit(WkfTrackingQueue.Event event) {
+    TransactionTool.runAfterCommit(() -> trackingQueue.add(event));
+  }
+
+  /**
+   * Fill the date and the user of the status of the tracking lines written before they were
+   * stored, with the creation date and user of the lines.
+   *
+   * @return count of lines filled
+   */
+  @Transactional
+  public int fillStatusFields() {
+    return JPA.em()
+        .createQuery(
+            "UPDATE WkfTrackingLine self "
+                + "SET self.statusDateT = self.createdOn, self.statusUser = self.createdBy "
+                + "WHERE self.statusDateT IS NULL")
+        .executeUpdate();
+  }
+
+  protected Map<String, List<WkfStatusField>> getStatusFieldMap() {
+    StatusFields current = statusFields;
+    if (current == null || current.generation != generation.get()) {
+      synchronized (this) {
+        current = statusFields;
+        long loadGeneration = generation.get();
+        if (current == null || current.generation != loadGeneration) {
+          current = new StatusFields(loadStatusFields(), loadGeneration);
+          statusFields = current;
+        }
+      }
+    }
+    return current.fieldMap;
+  }
+
+  protected Map<String, List<WkfStatusField>> loadStatusFields() {
+    @SuppressWarnings("unchecked")
+    List<Object[]> rowList =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, self.model, self.jsonField, self.statusField.name, "
+                    + "self.statusField.selection FROM Wkf self ORDER BY self.id")
+            .getResultList();
+
+    Map<String, List<WkfStatusField>> fieldMap = new HashMap<>();
+
+    for (Object[] row : rowList) {
+      fieldMap
+          .computeIfAbsent((String) row[1], model -> new ArrayList<>())
+          .add(
+              new WkfStatusField((Long) row[0], (String) row[2], (String) row[3], (String) row[4]));
+    }
+
+    return fieldMap;
   }
 
   /**
-   * Method add new WkfTrackingLine in WkfTracking for given status if that status is not last
-   * status added.
+   * Write the queued status changes of several records.
    *
-   * @param wkfTracking WkfTracking to update with new line.
-   * @param status Status to check for update.
-   * @return WkfTrackingLine created or return null if status not changed.
+   * @param trackingEventLists Status changes of each record, in the order they were made.
    */
   @Transactional
-  public WkfTrackingLine updateTrackingLine(WkfTracking wkfTracking, String status) {
+  public void write(Collection<List<WkfTrackingQueue.Event>> trackingEventLists) {
+    for (List<WkfTrackingQueue.Event> eventList : trackingEventLists) {
+      writeTracking(eventList);
+    }
+  }
+
+  /**
+   * Add the status changes of a record to its WkfTracking. The totals and times of the WkfTracking
+   * are read once, and a line is only added when the status is not the last status added.
+   *
+   * @param eventList Status changes of one record, in the order they were made.
+   */
+  protected void writeTracking(List<WkfTrackingQueue.Event> eventList) {
+
+    WkfTrackingQueue.Event firstEvent = eventList.get(0);
+    WkfTracking wkfTracking =
+        getWorkflowTracking(
+            firstEvent.getWkfId(), firstEvent.getRecordModel(), firstEvent.getRecordId());
+
+    if (wkfTracking == null) {
+      return;
+    }
 
     WkfTrackingLine trackingLine =
-        trackingLineRepo.all().filter("self.wkfTracking = ?1", wkfTracking).fetchOne();
+        trackingLineRepo.all().filter("self.wkfTracking = ?1", wkfTracking).order("-id").fetchOne();
 
-    if (trackingLine == null || !trackingLine.getStatus().equals(status)) {
+    Map<String, WkfTrackingTotal> trackingTotalMap = new HashMap<>();
+    for (WkfTrackingTotal trackingTotal :
+        trackingTotalRepo.all().filter("self.wkfTracking = ?1", wkfTracking).fetch()) {
+      trackingTotalMap.putIfAbsent(trackingTotal.getStatus(), trackingTotal);
+    }
 
-      LocalDateTime now = LocalDateTime.now();
+    Map<String, WkfTrackingTime> trackingTimeMap = new HashMap<>();
+    for (WkfTrackingTime trackingTime :
+        trackingTimeRepo.all().filter("self.wkfTracking = ?1", wkfTracking).fetch()) {
+      trackingTimeMap.putIfAbsent(trackingTime.getStatus(), trackingTime);
+    }
+
+    for (WkfTrackingQueue.Event event : eventList) {
+
+      if (trackingLine != null && trackingLine.getStatus().equals(event.getStatus())) {
+        continue;
+      }
 
       if (trackingLine != null) {
-        oldStatus = trackingLine.getStatus();
-        LocalDateTime lastUpdated = trackingLine.getCreatedOn();
-        long minutes = Duration.between(lastUpdated, now).toMinutes();
-        log.debug("Minutes between {} and {} : {}", lastUpdated, now, minutes);
-        durationHrs = new BigDecimal(minutes).divide(new BigDecimal(60), 2, RoundingMode.HALF_UP);
-        log.debug("Hours between {} and {} : {}", lastUpdated, now, durationHrs);
-        trackingLine.setTimeSpent(durationHrs);
-        trackingLineRepo.save(trackingLine);
+        updateTimeSpent(trackingLine, event.getStatusDateT(), trackingTimeMap);
       }
 
-      trackingLine = new WkfTrackingLine();
-      trackingLine.setWkfTracking(wkfTracking);
-      trackingLine.setStatus(status);
-      trackingLine.setWkfTracking(wkfTracking);
-      return trackingLineRepo.save(trackingLine);
-    }
+      trackingLine = createTrackingLine(wkfTracking, event);
 
-    return null;
+      WkfTrackingTotal trackingTotal =
+          trackingTotalMap.computeIfAbsent(
+              event.getStatus(), status -> createTrackingTotal(wkfTracking, status));
+      trackingTotal.setTotalCount(trackingTotal.getTotalCount() + 1);
+      trackingTotalRepo.save(trackingTotal);
+
+      trackingTimeMap.computeIfAbsent(
+          event.getStatus(), status -> createTrackingTime(wkfTracking, status));
+    }
   }
 
   /**
-   * Update o2m to WkfTrackingTotal in WkfTracking. Create or Update WkfTrackingTotal for given
-   * status with updated count of status.
+   * Method find or create WkfTracking for model record.
    *
-   * @param wkfTracking WkfTracking to update for WkfTrackingTotal.
-   * @param status Status to check for total update.
+   * @param wkfId Id of the workflow of the model.
+   * @param model Model of record.
+   * @param recordId Id of record.
+   * @return WkfTracking instance created/found, or null if the workflow has been removed.
    */
-  @Transactional
-  public void updateTrackingTotal(WkfTracking wkfTracking, String status) {
+  protected WkfTracking getWorkflowTracking(Long wkfId, String model, Long recordId) {
 
-    WkfTrackingTotal trackingTotal =
-        trackingTotalRepo
+    WkfTracking wkfTracking =
+        wkfTrackingRepo
             .all()
-            .filter("self.wkfTracking = :wkfTracking and self.status = :status")
-            .bind("wkfTracking", wkfTracking)
-            .bind("status", status)
+            .filter(
+                "self.wkf.id = ?1 and self.recordModel = ?2 and self.recordId = ?3",
+                wkfId,
+                model,
+                recordId)
             .fetchOne();
 
-    if (trackingTotal == null) {
-      trackingTotal = new WkfTrackingTotal();
-      trackingTotal.setWkfTracking(wkfTracking);
-      trackingTotal.setTotalCount(0);
-      trackingTotal.setStatus(status);
+    if (wkfTracking == null) {
+      Wkf wkf = JPA.find(Wkf.class, wkfId);
+      if (wkf == null) {
+        log.debug("Workflow {} removed before tracking", wkfId);
+        return null;
+      }
+      wkfTracking = new WkfTracking();
+      wkfTracking.setWkf(wkf);
+      wkfTracking.setRecordModel(model);
+      wkfTracking.setRecordId(recordId);
+      wkfTracking = wkfTrackingRepo.save(wkfTracking);
     }
 
-    trackingTotal.setTotalCount(trackingTotal.getTotalCount() + 1);
+    return wkfTracking;
+  }
+
+  protected WkfTrackingLine createTrackingLine(
+      WkfTracking wkfTracking, WkfTrackingQueue.Event event) {
 
-    trackingTotalRepo.save(trackingTotal);
+    WkfTrackingLine trackingLine = new WkfTrackingLine();
+    trackingLine.setWkfTracking(wkfTracking);
+    trackingLine.setStatus(event.getStatus());
+    trackingLine.setStatusDateT(event.getStatusDateT());
+    if (event.getUserId() != null) {
+      trackingLine.setStatusUser(JPA.find(User.class, event.getUserId()));
+    }
+    return trackingLineRepo.save(trackingLine);
   }
 
   /**
-   * This method create or update WkfTrackingTime record for given WkfTracking and status. For
-   * existing WkfTrackingTime it update total time in days and hours.
-   *
-   * @param wkfTracking WkfTracking to update for WkfTrackingTime.
-   * @param status Status to check for WkfTrackingTime.
+   * Set the time spent on the status of a line, left at the given date, and add it to the
+   * WkfTrackingTime of this status.
    */
-  @Transactional
-  public void updateTrackingTime(WkfTracking wkfTracking, String status) {
-
-    WkfTrackingTime trackingTime =
-        trackingTimeRepo
-            .all()
-            .filter("self.wkfTracking = ?1 and self.status = ?2", wkfTracking, oldStatus)
-            .fetchOne();
+  protected void updateTimeSpent(
+      WkfTrackingLine trackingLine,
+      LocalDateTime statusDateT,
+      Map<String, WkfTrackingTime> trackingTimeMap) {
+
+    LocalDateTime lastUpdated =
+        trackingLine.getStatusDateT() != null
+            ? trackingLine.getStatusDateT()
+            : trackingLine.getCreatedOn();
+    long minutes = Duration.between(lastUpdated, statusDateT).toMinutes();
+    log.debug("Minutes between {} and {} : {}", lastUpdated, statusDateT, minutes);
+    BigDecimal durationHrs =
+        new BigDecimal(minutes).divide(new BigDecimal(60), 2, RoundingMode.HALF_UP);
+    trackingLine.setTimeSpent(durationHrs);
+    trackingLineRepo.save(trackingLine);
+
+    WkfTrackingTime trackingTime = trackingTimeMap.get(trackingLine.getStatus());
 
     if (trackingTime != null) {
       BigDecimal days = durationHrs.divide(new BigDecimal(24), 2, RoundingMode.HALF_UP);
-      BigDecimal totalTimeDays = trackingTime.getTotalTimeDays().add(days);
-      trackingTime.setTotalTimeDays(totalTimeDays);
-      BigDecimal totalTimeHrs = trackingTime.getTotalTimeHours().add(durationHrs);
-      trackingTime.setTotalTimeHours(totalTimeHrs);
+      trackingTime.setTotalTimeDays(trackingTime.getTotalTimeDays().add(days));
+      trackingTime.setTotalTimeHours(trackingTime.getTotalTimeHours().add(durationHrs));
       trackingTimeRepo.save(trackingTime);
     }
+  }
 
-    trackingTime =
-        trackingTimeRepo
-            .all()
-            .filter("self.wkfTracking = ?1 and self.status = ?2", wkfTracking, status)
-            .fetchOne();
+  protected WkfTrackingTotal createTrackingTotal(WkfTracking wkfTracking, String status) {
+    WkfTrackingTotal trackingTotal = new WkfTrackingTotal();
+    trackingTotal.setWkfTracking(wkfTracking);
+    trackingTotal.setTotalCount(0);
+    trackingTotal.setStatus(status);
+    return trackingTotal;
+  }
 
-    if (trackingTime == null) {
-      trackingTime = new WkfTrackingTime();
-      trackingTime.setWkfTracking(wkfTracking);
-      trackingTime.setStatus(status);
-      trackingTimeRepo.save(trackingTime);
-    }
+  protected WkfTrackingTime createTrackingTime(WkfTracking wkfTracking, String status) {
+    WkfTrackingTime trackingTime = new WkfTrackingTime();
+    trackingTime.setWkfTracking(wkfTracking);
+    trackingTime.setStatus(status);
+    return trackingTimeRepo.save(trackingTime);
   }
 }
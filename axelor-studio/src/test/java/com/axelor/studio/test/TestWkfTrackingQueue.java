@@ -0,0 +1,120 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.test;
+
+import com.axelor.studio.service.wkf.WkfTrackingQueue;
+import com.axelor.studio.service.wkf.WkfTrackingQueue.Event;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestWkfTrackingQueue {
+
+  private static final String MODEL = "com.axelor.apps.sale.db.SaleOrder";
+
+  private static final long FAILING_RECORD_ID = 99L;
+
+  /** Queue flushed by the test, keeping the batches written instead of writing them. */
+  private static class TestQueue extends WkfTrackingQueue {
+
+    private final List<List<List<Event>>> batchList = new ArrayList<>();
+
+    private int errorCount;
+
+    @Override
+    protected void schedule(long delayMillis) {}
+
+    @Override
+    protected void writeBatch(Collection<List<Event>> trackingEventLists) {
+      for (List<Event> eventList : trackingEventLists) {
+        if (eventList.get(0).getRecordId() == FAILING_RECORD_ID) {
+          throw new IllegalStateException("Record in error");
+        }
+      }
+      batchList.add(new ArrayList<>(trackingEventLists));
+    }
+
+    @Override
+    protected void clear() {}
+
+    @Override
+    protected void trace(Exception e) {
+      errorCount++;
+    }
+  }
+
+  private TestQueue queue = new TestQueue();
+
+  private void add(long recordId, String status) {
+    queue.add(new Event(1L, MODEL, recordId, status, LocalDateTime.now(), null));
+  }
+
+  @Test
+  public void testGrouping() {
+    add(1L, "Draft");
+    add(2L, "Draft");
+    add(1L, "Confirmed");
+    Assert.assertEquals(3, queue.getQueueSize());
+
+    queue.flush();
+
+    // One batch, the changes of each record together and in the order they were made.
+    Assert.assertEquals(1, queue.batchList.size());
+    List<List<Event>> batch = queue.batchList.get(0);
+    Assert.assertEquals(2, batch.size());
+    Assert.assertEquals(2, batch.get(0).size());
+    Assert.assertEquals("Draft", batch.get(0).get(0).getStatus());
+    Assert.assertEquals("Confirmed", batch.get(0).get(1).getStatus());
+    Assert.assertEquals(Long.valueOf(2L), batch.get(1).get(0).getRecordId());
+
+    Assert.assertEquals(0, queue.getQueueSize());
+    Assert.assertEquals(3, queue.getWrittenCount());
+  }
+
+  @Test
+  public void testBatchSize() {
+    int count = WkfTrackingQueue.BATCH_SIZE * 2 + 10;
+    for (long recordId = 1; recordId <= count; recordId++) {
+      add(recordId, "Draft");
+    }
+
+    queue.flush();
+
+    Assert.assertEquals(3, queue.batchList.size());
+    Assert.assertEquals(WkfTrackingQueue.BATCH_SIZE, queue.batchList.get(0).size());
+    Assert.assertEquals(10, queue.batchList.get(2).size());
+  }
+
+  @Test
+  public void testRetryByRecord() {
+    add(1L, "Draft");
+    add(FAILING_RECORD_ID, "Draft");
+    add(2L, "Draft");
+
+    queue.flush();
+
+    // The batch fails, then each record is written alone and only the failing one is lost.
+    Assert.assertEquals(2, queue.batchList.size());
+    Assert.assertEquals(Long.valueOf(1L), queue.batchList.get(0).get(0).get(0).getRecordId());
+    Assert.assertEquals(Long.valueOf(2L), queue.batchList.get(1).get(0).get(0).getRecordId());
+    Assert.assertEquals(1, queue.errorCount);
+  }
+}
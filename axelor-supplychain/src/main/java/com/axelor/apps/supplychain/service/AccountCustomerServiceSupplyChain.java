@@ -21,6 +21,7 @@ import com.axelor.apps.account.db.AccountingSituation;
 import com.axelor.apps.account.db.repo.AccountingSituationRepository;
 import com.axelor.apps.account.service.AccountCustomerService;
 import com.axelor.apps.account.service.AccountingSituationService;
+import com.axelor.apps.account.service.PartnerBalanceLedgerService;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
@@ -32,8 +33,10 @@ public class AccountCustomerServiceSupplyChain extends AccountCustomerService {
   public AccountCustomerServiceSupplyChain(
       AccountingSituationService accountingSituationService,
       AccountingSituationRepository accSituationRepo,
-      AppBaseService appBaseService) {
-    super(accountingSituationService, accSituationRepo, appBaseService);
+      AppBaseService appBaseService,
+      PartnerBalanceLedgerService partnerBalanceLedgerService) {
+    super(
+        accountingSituationService, accSituationRepo, appBaseService, partnerBalanceLedgerService);
   }
 
   @Override
@@ -20,6 +20,7 @@ package com.axelor.apps.supplychain.service;
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.StockMoveLine;
 import com.axelor.exception.AxelorException;
@@ -36,6 +37,17 @@ public interface AccountingCutOffService {
       Integer limit,
       Integer offset);
 
+  /**
+   * Get the stock moves to process by a cut-off batch, by chunks of increasing ids.
+   *
+   * @param company
+   * @param accountingCutOffTypeSelect
+   * @param moveDate
+   * @return
+   */
+  public KeysetPager<StockMove> getStockMovePager(
+      Company company, int accountingCutOffTypeSelect, LocalDate moveDate);
+
   @Transactional(rollbackOn = {AxelorException.class, RuntimeException.class})
   public List<Move> generateCutOffMoves(
       StockMove stockMove,
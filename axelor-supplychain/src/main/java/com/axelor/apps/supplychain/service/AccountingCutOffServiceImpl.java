@@ -17,8 +17,6 @@
  */
 package com.axelor.apps.supplychain.service;
 
-import static com.axelor.apps.base.service.administration.AbstractBatch.FETCH_LIMIT;
-
 import com.axelor.apps.account.db.Account;
 import com.axelor.apps.account.db.AccountConfig;
 import com.axelor.apps.account.db.AnalyticDistributionTemplate;
@@ -47,6 +45,7 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.repo.AppAccountRepository;
 import com.axelor.apps.base.service.UnitConversionService;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.purchase.db.PurchaseOrder;
 import com.axelor.apps.purchase.db.PurchaseOrderLine;
 import com.axelor.apps.purchase.db.repo.PurchaseOrderRepository;
@@ -59,7 +58,6 @@ import com.axelor.apps.stock.db.repo.StockMoveLineRepository;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.supplychain.db.repo.SupplychainBatchRepository;
 import com.axelor.apps.supplychain.service.config.AccountConfigSupplychainService;
-import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
@@ -137,16 +135,28 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
       Integer limit,
       Integer offset) {
 
-    int stockMoveTypeSelect = 0;
+    Query<StockMove> query =
+        stockMoverepository
+            .all()
+            .filter(getStockMoveFilter(company))
+            .bind(getStockMoveBindings(company, accountingCutOffTypeSelect, moveDate));
 
-    if (accountingCutOffTypeSelect
-        == SupplychainBatchRepository.ACCOUNTING_CUT_OFF_TYPE_SUPPLIER_INVOICES) {
-      stockMoveTypeSelect = StockMoveRepository.TYPE_INCOMING;
-    } else if (accountingCutOffTypeSelect
-        == SupplychainBatchRepository.ACCOUNTING_CUT_OFF_TYPE_CUSTOMER_INVOICES) {
-      stockMoveTypeSelect = StockMoveRepository.TYPE_OUTGOING;
+    if (limit != null && offset != null) {
+      return query.order("id").fetch(limit, offset);
     }
 
+    return query.order("id").fetch();
+  }
+
+  public KeysetPager<StockMove> getStockMovePager(
+      Company company, int accountingCutOffTypeSelect, LocalDate moveDate) {
+
+    return KeysetPager.of(StockMove.class)
+        .filter(getStockMoveFilter(company))
+        .bind(getStockMoveBindings(company, accountingCutOffTypeSelect, moveDate));
+  }
+
+  protected String getStockMoveFilter(Company company) {
     String queryStr =
         "(self.invoice is null or self.invoice.statusSelect != :invoiceStatusVentilated or (self.invoice.statusSelect = :invoiceStatusVentilated and self.invoice.invoiceDate > :moveDate)) "
             + "AND self.statusSelect = :stockMoveStatusRealized and self.realDate <= :moveDate "
@@ -156,24 +166,33 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
       queryStr += "AND self.company.id = :companyId";
     }
 
-    Query<StockMove> query =
-        stockMoverepository
-            .all()
-            .filter(queryStr)
-            .bind("invoiceStatusVentilated", InvoiceRepository.STATUS_VENTILATED)
-            .bind("stockMoveStatusRealized", StockMoveRepository.STATUS_REALIZED)
-            .bind("stockMoveType", stockMoveTypeSelect)
-            .bind("moveDate", moveDate);
+    return queryStr;
+  }
 
-    if (company != null) {
-      query.bind("companyId", company.getId());
+  protected Map<String, Object> getStockMoveBindings(
+      Company company, int accountingCutOffTypeSelect, LocalDate moveDate) {
+
+    int stockMoveTypeSelect = 0;
+
+    if (accountingCutOffTypeSelect
+        == SupplychainBatchRepository.ACCOUNTING_CUT_OFF_TYPE_SUPPLIER_INVOICES) {
+      stockMoveTypeSelect = StockMoveRepository.TYPE_INCOMING;
+    } else if (accountingCutOffTypeSelect
+        == SupplychainBatchRepository.ACCOUNTING_CUT_OFF_TYPE_CUSTOMER_INVOICES) {
+      stockMoveTypeSelect = StockMoveRepository.TYPE_OUTGOING;
     }
 
-    if (limit != null && offset != null) {
-      return query.order("id").fetch(limit, offset);
+    Map<String, Object> bindings = new HashMap<>();
+    bindings.put("invoiceStatusVentilated", InvoiceRepository.STATUS_VENTILATED);
+    bindings.put("stockMoveStatusRealized", StockMoveRepository.STATUS_REALIZED);
+    bindings.put("stockMoveType", stockMoveTypeSelect);
+    bindings.put("moveDate", moveDate);
+
+    if (company != null) {
+      bindings.put("companyId", company.getId());
     }
 
-    return query.order("id").fetch();
+    return bindings;
   }
 
   @Transactional(rollbackOn = {AxelorException.class, RuntimeException.class})
@@ -600,7 +619,6 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
   }
 
   public List<Long> getStockMoveLines(Batch batch) {
-    int offset = 0;
     Boolean includeNotStockManagedProduct =
         batch.getSupplychainBatch().getIncludeNotStockManagedProduct();
 
@@ -617,15 +635,12 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
             .map(m -> (Long) m.get("id"))
             .collect(Collectors.toList());
 
-    Query<StockMoveLine> stockMoveLineQuery =
-        stockMoveLineRepository
-            .all()
+    KeysetPager<StockMoveLine> stockMoveLinePager =
+        KeysetPager.of(StockMoveLine.class)
             .filter("self.stockMove.id IN :stockMoveIdList")
-            .bind("stockMoveIdList", stockMoveIdList)
-            .order("id");
+            .bind("stockMoveIdList", stockMoveIdList);
 
-    while (!(stockMoveLineList = stockMoveLineQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      offset += stockMoveLineList.size();
+    while (!(stockMoveLineList = stockMoveLinePager.fetchNext()).isEmpty()) {
 
       for (StockMoveLine stockMoveLine : stockMoveLineList) {
         Product product = stockMoveLine.getProduct();
@@ -633,8 +648,6 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
           stockMoveLineIdList.add(stockMoveLine.getId());
         }
       }
-
-      JPA.clear();
     }
 
     return stockMoveLineIdList;
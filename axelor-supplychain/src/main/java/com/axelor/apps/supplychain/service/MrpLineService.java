@@ -51,6 +51,22 @@ public interface MrpLineService {
       StockLocation stockLocation,
       Model model);
 
+  /**
+   * Create a mrp line with an already known min qty, to avoid searching the stock rules of the
+   * product for each created line.
+   */
+  MrpLine createMrpLine(
+      Mrp mrp,
+      Product product,
+      int maxLevel,
+      MrpLineType mrpLineType,
+      BigDecimal qty,
+      LocalDate maturityDate,
+      BigDecimal cumulativeQty,
+      StockLocation stockLocation,
+      Model model,
+      BigDecimal minQty);
+
   MrpLineOrigin createMrpLineOrigin(Model model);
 
   MrpLineOrigin copyMrpLineOrigin(MrpLineOrigin mrpLineOrigin);
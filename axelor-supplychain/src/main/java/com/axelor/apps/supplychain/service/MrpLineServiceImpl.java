@@ -186,6 +186,31 @@ public class MrpLineServiceImpl implements MrpLineService {
       StockLocation stockLocation,
       Model model) {
 
+    return this.createMrpLine(
+        mrp,
+        product,
+        maxLevel,
+        mrpLineType,
+        qty,
+        maturityDate,
+        cumulativeQty,
+        stockLocation,
+        model,
+        this.getMinQty(product, stockLocation));
+  }
+
+  public MrpLine createMrpLine(
+      Mrp mrp,
+      Product product,
+      int maxLevel,
+      MrpLineType mrpLineType,
+      BigDecimal qty,
+      LocalDate maturityDate,
+      BigDecimal cumulativeQty,
+      StockLocation stockLocation,
+      Model model,
+      BigDecimal minQty) {
+
     MrpLine mrpLine = new MrpLine();
 
     mrpLine.setMrp(mrp);
@@ -201,7 +226,7 @@ public class MrpLineServiceImpl implements MrpLineService {
     mrpLine.setCumulativeQty(cumulativeQty);
     mrpLine.setStockLocation(stockLocation);
 
-    mrpLine.setMinQty(this.getMinQty(product, stockLocation));
+    mrpLine.setMinQty(minQty);
 
     this.updatePartner(mrpLine, model);
 
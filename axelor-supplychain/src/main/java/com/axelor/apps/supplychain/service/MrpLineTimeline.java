@@ -0,0 +1,160 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.supplychain.db.MrpLine;
+import com.axelor.apps.supplychain.db.MrpLineType;
+import com.axelor.apps.supplychain.db.repo.MrpLineTypeRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * In-memory storage of the mrp lines of a calculation, grouped by product.
+ *
+ * <p>Lines are kept in creation order, which is the order of their future ids, so sorting them
+ * with {@link #MRP_LINE_COMPARATOR} gives the same result as the "maturityDate,
+ * mrpLineType.typeSelect, mrpLineType.sequence, id" ordering used on the database.
+ */
+public class MrpLineTimeline {
+
+  public static final Comparator<MrpLine> MRP_LINE_COMPARATOR =
+      Comparator.comparing(
+              MrpLine::getMaturityDate, Comparator.nullsLast(Comparator.<LocalDate>naturalOrder()))
+          .thenComparing(
+              mrpLine -> mrpLine.getMrpLineType().getTypeSelect(),
+              Comparator.nullsLast(Comparator.<Integer>naturalOrder()))
+          .thenComparing(
+              mrpLine -> mrpLine.getMrpLineType().getSequence(),
+              Comparator.nullsLast(Comparator.<Integer>naturalOrder()));
+
+  protected Map<Long, List<MrpLine>> mrpLineMap = new HashMap<>();
+
+  protected List<MrpLine> createdMrpLineList = new ArrayList<>();
+
+  public void add(MrpLine mrpLine) {
+
+    mrpLineMap.computeIfAbsent(mrpLine.getProduct().getId(), id -> new ArrayList<>()).add(mrpLine);
+    createdMrpLineList.add(mrpLine);
+  }
+
+  /**
+   * Get the lines of a product sorted like the database query of the calculation. The returned
+   * list is a copy, so lines can be added to the timeline while iterating on it.
+   *
+   * @param productId
+   * @return the sorted lines of the product
+   */
+  public List<MrpLine> getSortedMrpLineList(Long productId) {
+
+    List<MrpLine> mrpLineList = mrpLineMap.get(productId);
+
+    if (mrpLineList == null) {
+      return new ArrayList<>();
+    }
+
+    // List.sort is stable: equal lines stay in creation order, as with the order on id.
+    mrpLineList.sort(MRP_LINE_COMPARATOR);
+
+    return new ArrayList<>(mrpLineList);
+  }
+
+  /**
+   * Compute the cumulative qty of each line of a product, the available stock lines resetting the
+   * cumulative qty.
+   *
+   * @param productId
+   * @return the sorted lines of the product
+   */
+  public List<MrpLine> computeCumulativeQty(Long productId) {
+
+    List<MrpLine> mrpLineList = this.getSortedMrpLineList(productId);
+
+    BigDecimal previousCumulativeQty = BigDecimal.ZERO;
+
+    for (MrpLine mrpLine : mrpLineList) {
+
+      if (mrpLine.getMrpLineType().getElementSelect()
+          == MrpLineTypeRepository.ELEMENT_AVAILABLE_STOCK) {
+
+        mrpLine.setCumulativeQty(mrpLine.getQty());
+      } else {
+
+        mrpLine.setCumulativeQty(previousCumulativeQty.add(mrpLine.getQty()));
+      }
+
+      previousCumulativeQty = mrpLine.getCumulativeQty();
+    }
+
+    return mrpLineList;
+  }
+
+  /**
+   * Find a line of the given product, type and stock location whose maturity date is in the
+   * interval ]startPeriodDate, maturityDate].
+   */
+  public MrpLine findMrpLine(
+      Product product,
+      MrpLineType mrpLineType,
+      StockLocation stockLocation,
+      LocalDate startPeriodDate,
+      LocalDate maturityDate) {
+
+    List<MrpLine> mrpLineList = mrpLineMap.get(product.getId());
+
+    if (mrpLineList == null) {
+      return null;
+    }
+
+    for (MrpLine mrpLine : mrpLineList) {
+
+      LocalDate lineMaturityDate = mrpLine.getMaturityDate();
+
+      if (Objects.equals(mrpLine.getMrpLineType().getId(), mrpLineType.getId())
+          && Objects.equals(mrpLine.getStockLocation().getId(), stockLocation.getId())
+          && lineMaturityDate != null
+          && lineMaturityDate.isAfter(startPeriodDate)
+          && !lineMaturityDate.isAfter(maturityDate)) {
+        return mrpLine;
+      }
+    }
+
+    return null;
+  }
+
+  /** @return all the lines of the timeline, in creation order. */
+  public List<MrpLine> getMrpLineList() {
+    return new ArrayList<>(createdMrpLineList);
+  }
+
+  public int size() {
+    return createdMrpLineList.size();
+  }
+
+  public void clear() {
+    mrpLineMap.clear();
+    createdMrpLineList.clear();
+  }
+}
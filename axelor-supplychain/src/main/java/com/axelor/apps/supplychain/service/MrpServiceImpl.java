@@ -51,8 +51,10 @@ import com.axelor.apps.supplychain.db.repo.MrpLineRepository;
 import com.axelor.apps.supplychain.db.repo.MrpLineTypeRepository;
 import com.axelor.apps.supplychain.db.repo.MrpRepository;
 import com.axelor.apps.supplychain.exception.IExceptionMessage;
+import com.axelor.apps.supplychain.service.app.AppSupplychainService;
 import com.axelor.apps.tool.StringTool;
 import com.axelor.db.JPA;
+import com.axelor.db.JpaRepository;
 import com.axelor.db.Model;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
@@ -71,7 +73,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
 import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -99,6 +104,19 @@ public class MrpServiceImpl implements MrpService {
   protected Mrp mrp;
   protected LocalDate today;
 
+  /** Number of products loaded per query when preloading the stock data of an mrp. */
+  protected static final int PRELOAD_PRODUCT_LIMIT = 1000;
+
+  /** Number of mrp lines persisted between two flushes when saving an in-memory calculation. */
+  protected static final int MRP_LINE_FLUSH_LIMIT = 500;
+
+  protected boolean inMemoryCalculation;
+  protected MrpLineTimeline mrpLineTimeline;
+  protected Set<Long> preloadedProductIdSet;
+  protected Map<Pair<Long, Long>, StockLocationLine> stockLocationLineMap;
+  protected Map<Pair<Long, Long>, StockRules> mrpStockRulesMap;
+  protected Map<Integer, MrpLineType> mrpLineTypeMap;
+
   @Inject
   public MrpServiceImpl(
       AppBaseService appBaseService,
@@ -136,12 +154,152 @@ public class MrpServiceImpl implements MrpService {
 
     this.reset(mrp);
 
+    this.initCalculationMode();
+
     this.startMrp(mrpRepository.find(mrp.getId()));
-    this.completeMrp(mrpRepository.find(mrp.getId()));
-    this.doCalulation(mrpRepository.find(mrp.getId()));
+
+    if (inMemoryCalculation) {
+      this.runInMemoryCalculation(mrpRepository.find(mrp.getId()));
+    } else {
+      this.completeMrp(mrpRepository.find(mrp.getId()));
+      this.doCalulation(mrpRepository.find(mrp.getId()));
+    }
+
     this.finish(mrpRepository.find(mrp.getId()));
   }
 
+  protected void initCalculationMode() {
+
+    this.inMemoryCalculation =
+        Beans.get(AppSupplychainService.class).getAppSupplychain().getMrpInMemoryCalculation();
+    this.mrpLineTimeline = new MrpLineTimeline();
+    this.preloadedProductIdSet = Sets.newHashSet();
+    this.stockLocationLineMap = Maps.newHashMap();
+    this.mrpStockRulesMap = Maps.newHashMap();
+    this.mrpLineTypeMap = Maps.newHashMap();
+  }
+
+  /**
+   * Run the calculation with all the mrp lines kept in memory: the demand and supply sources are
+   * loaded with set-based queries, the netting is done on the in-memory timeline of each product
+   * and the lines are persisted at the end in batches. The result is the same as the calculation
+   * on database.
+   *
+   * <p>The whole calculation runs in one transaction with a commit flush mode, so that the queries
+   * done during the netting do not flush (and dirty check) the whole persistence context.
+   *
+   * @param mrp
+   * @throws AxelorException
+   */
+  @Transactional(rollbackOn = {AxelorException.class, Exception.class})
+  protected void runInMemoryCalculation(Mrp mrp) throws AxelorException {
+
+    FlushModeType flushMode = JPA.em().getFlushMode();
+    JPA.em().setFlushMode(FlushModeType.COMMIT);
+
+    try {
+      this.completeMrp(mrp);
+      this.doCalulation(mrp);
+      this.saveMrpLines();
+    } finally {
+      JPA.em().setFlushMode(flushMode);
+    }
+  }
+
+  /**
+   * Persist the lines of the in-memory timeline, in their creation order. The inserts are sent by
+   * JDBC batches of {@link #MRP_LINE_FLUSH_LIMIT} lines, and the session is cleared after each of
+   * them so that the persistence context does not grow with the number of lines.
+   */
+  protected void saveMrpLines() {
+
+    List<MrpLine> mrpLineList = mrpLineTimeline.getMrpLineList();
+    mrpLineTimeline.clear();
+
+    log.debug("Save {} mrp lines", mrpLineList.size());
+
+    JPA.clear();
+
+    Session session = JPA.em().unwrap(Session.class);
+    Integer jdbcBatchSize = session.getJdbcBatchSize();
+    session.setJdbcBatchSize(MRP_LINE_FLUSH_LIMIT);
+
+    try {
+      int count = 0;
+
+      for (MrpLine mrpLine : mrpLineList) {
+
+        mrpLineRepository.save(mrpLine);
+
+        if (++count % MRP_LINE_FLUSH_LIMIT == 0) {
+          JPA.flush();
+          JPA.clear();
+        }
+      }
+
+      JPA.flush();
+      JPA.clear();
+    } finally {
+      session.setJdbcBatchSize(jdbcBatchSize);
+    }
+  }
+
+  /**
+   * Load with a few queries the stock location lines and the mrp stock rules of all the products
+   * of the mrp on all its stock locations.
+   */
+  protected void preloadStockData() {
+
+    if (stockLocationList.isEmpty()) {
+      return;
+    }
+
+    for (List<Long> productIdList :
+        Lists.partition(Lists.newArrayList(productMap.keySet()), PRELOAD_PRODUCT_LIMIT)) {
+
+      List<StockLocationLine> stockLocationLineList =
+          stockLocationLineRepository
+              .all()
+              .filter(
+                  "self.product.id IN (?1) AND self.stockLocation IN (?2)",
+                  productIdList,
+                  stockLocationList)
+              .fetch();
+
+      for (StockLocationLine stockLocationLine : stockLocationLineList) {
+        stockLocationLineMap.putIfAbsent(
+            Pair.of(
+                stockLocationLine.getProduct().getId(),
+                stockLocationLine.getStockLocation().getId()),
+            stockLocationLine);
+      }
+
+      List<StockRules> stockRulesList =
+          Beans.get(StockRulesRepository.class)
+              .all()
+              .filter(
+                  "self.product.id IN (?1) AND self.stockLocation IN (?2) AND self.useCaseSelect = ?3",
+                  productIdList,
+                  stockLocationList,
+                  StockRulesRepository.USE_CASE_USED_FOR_MRP)
+              .fetch();
+
+      for (StockRules stockRules : stockRulesList) {
+        mrpStockRulesMap.putIfAbsent(
+            Pair.of(stockRules.getProduct().getId(), stockRules.getStockLocation().getId()),
+            stockRules);
+      }
+
+      preloadedProductIdSet.addAll(productIdList);
+    }
+  }
+
+  protected boolean isPreloaded(Product product, StockLocation stockLocation) {
+
+    return preloadedProductIdSet.contains(product.getId())
+        && stockLocationList.contains(stockLocation);
+  }
+
   @Transactional(rollbackOn = {AxelorException.class, Exception.class})
   protected void startMrp(Mrp mrp) {
 
@@ -178,6 +336,10 @@ public class MrpServiceImpl implements MrpService {
         stockLocationService.getAllLocationAndSubLocation(mrp.getStockLocation(), false);
     this.assignProductAndLevel(this.getProductList());
 
+    if (inMemoryCalculation) {
+      this.preloadStockData();
+    }
+
     // Get the stock for each product on each stock location
     this.createAvailableStockMrpLines();
 
@@ -259,6 +421,22 @@ public class MrpServiceImpl implements MrpService {
 
     boolean doASecondPass = false;
 
+    if (inMemoryCalculation) {
+
+      for (MrpLine mrpLine : mrpLineTimeline.computeCumulativeQty(product.getId())) {
+
+        doASecondPass = this.checkInsufficientCumulativeQty(mrpLine, product, firstPass);
+        if (doASecondPass) {
+          break;
+        }
+      }
+
+      if (doASecondPass) {
+        this.checkInsufficientCumulativeQty(product, false);
+      }
+      return;
+    }
+
     this.computeCumulativeQty(productRepository.find(product.getId()));
 
     JPA.clear();
@@ -322,12 +500,7 @@ public class MrpServiceImpl implements MrpService {
 
       BigDecimal reorderQty = minQty.subtract(cumulativeQty);
 
-      StockRules stockRules =
-          stockRulesService.getStockRules(
-              product,
-              mrpLine.getStockLocation(),
-              StockRulesRepository.TYPE_FUTURE,
-              StockRulesRepository.USE_CASE_USED_FOR_MRP);
+      StockRules stockRules = this.getMrpStockRules(product, mrpLine.getStockLocation());
 
       if (stockRules != null) {
         reorderQty = reorderQty.max(stockRules.getReOrderQty());
@@ -370,6 +543,11 @@ public class MrpServiceImpl implements MrpService {
       startPeriodDate = maturityDate.minusDays(mrpFamily.getDayNb());
     }
 
+    if (inMemoryCalculation) {
+      return mrpLineTimeline.findMrpLine(
+          product, mrpLineType, stockLocation, startPeriodDate, maturityDate);
+    }
+
     return mrpLineRepository
         .all()
         .filter(
@@ -426,7 +604,7 @@ public class MrpServiceImpl implements MrpService {
               stockLocation,
               null);
       if (createdmrpLine != null) {
-        mrpLine = mrpLineRepository.save(createdmrpLine);
+        mrpLine = this.saveMrpLine(createdmrpLine);
       }
       mrpLine.setRelatedToSelectName(relatedToSelectName);
     }
@@ -519,6 +697,11 @@ public class MrpServiceImpl implements MrpService {
   @Transactional(rollbackOn = {AxelorException.class, Exception.class})
   protected void computeCumulativeQty(Product product) {
 
+    if (inMemoryCalculation) {
+      mrpLineTimeline.computeCumulativeQty(product.getId());
+      return;
+    }
+
     List<MrpLine> mrpLineList =
         mrpLineRepository
             .all()
@@ -566,24 +749,23 @@ public class MrpServiceImpl implements MrpService {
 
     // TODO : Manage the case where order is partially delivered
     List<PurchaseOrderLine> purchaseOrderLineList =
-        purchaseOrderLineRepository
-            .all()
-            .filter(
-                "self.product.id in (?1) AND self.purchaseOrder.stockLocation in (?2) AND self.receiptState != ?3 "
-                    + "AND self.purchaseOrder.statusSelect IN (?4)",
-                this.productMap.keySet(),
-                this.stockLocationList,
-                IPurchaseOrder.STATE_RECEIVED,
-                statusList)
-            .fetch();
+        this.fetchSources(
+            PurchaseOrderLine.class,
+            "JOIN FETCH self.purchaseOrder JOIN FETCH self.product LEFT JOIN FETCH self.unit",
+            "self.product.id in (?1) AND self.purchaseOrder.stockLocation in (?2) "
+                + "AND self.receiptState != ?3 AND self.purchaseOrder.statusSelect IN (?4)",
+            this.productMap.keySet(),
+            this.stockLocationList,
+            IPurchaseOrder.STATE_RECEIVED,
+            statusList);
 
     for (PurchaseOrderLine purchaseOrderLine : purchaseOrderLineList) {
 
       this.createPurchaseMrpLines(
-          mrpRepository.find(mrp.getId()),
-          purchaseOrderLineRepository.find(purchaseOrderLine.getId()),
-          mrpLineTypeRepository.find(purchaseOrderMrpLineType.getId()));
-      JPA.clear();
+          this.findAgain(mrpRepository, mrp),
+          this.findAgain(purchaseOrderLineRepository, purchaseOrderLine),
+          this.findAgain(mrpLineTypeRepository, purchaseOrderMrpLineType));
+      this.clearSession();
     }
   }
 
@@ -627,7 +809,7 @@ public class MrpServiceImpl implements MrpService {
               purchaseOrder.getStockLocation(),
               purchaseOrderLine);
       if (mrpLine != null) {
-        mrpLineRepository.save(mrpLine);
+        this.saveMrpLine(mrpLine);
       }
     }
   }
@@ -646,16 +828,15 @@ public class MrpServiceImpl implements MrpService {
     if (mrp.getSaleOrderLineSet().isEmpty()) {
 
       saleOrderLineList.addAll(
-          saleOrderLineRepository
-              .all()
-              .filter(
-                  "self.product.id in (?1) AND self.saleOrder.stockLocation in (?2) AND self.deliveryState != ?3 "
-                      + "AND self.saleOrder.statusSelect IN (?4)",
-                  this.productMap.keySet(),
-                  this.stockLocationList,
-                  SaleOrderLineRepository.DELIVERY_STATE_DELIVERED,
-                  statusList)
-              .fetch());
+          this.fetchSources(
+              SaleOrderLine.class,
+              "JOIN FETCH self.saleOrder JOIN FETCH self.product LEFT JOIN FETCH self.unit",
+              "self.product.id in (?1) AND self.saleOrder.stockLocation in (?2) "
+                  + "AND self.deliveryState != ?3 AND self.saleOrder.statusSelect IN (?4)",
+              this.productMap.keySet(),
+              this.stockLocationList,
+              SaleOrderLineRepository.DELIVERY_STATE_DELIVERED,
+              statusList));
 
     } else {
       saleOrderLineList.addAll(mrp.getSaleOrderLineSet());
@@ -664,11 +845,11 @@ public class MrpServiceImpl implements MrpService {
     for (SaleOrderLine saleOrderLine : saleOrderLineList) {
 
       this.createSaleOrderMrpLines(
-          mrpRepository.find(mrp.getId()),
-          saleOrderLineRepository.find(saleOrderLine.getId()),
-          mrpLineTypeRepository.find(saleOrderMrpLineType.getId()),
+          this.findAgain(mrpRepository, mrp),
+          this.findAgain(saleOrderLineRepository, saleOrderLine),
+          this.findAgain(mrpLineTypeRepository, saleOrderMrpLineType),
           statusList);
-      JPA.clear();
+      this.clearSession();
     }
   }
 
@@ -724,7 +905,7 @@ public class MrpServiceImpl implements MrpService {
               saleOrder.getStockLocation(),
               saleOrderLine);
       if (mrpLine != null) {
-        mrpLineRepository.save(mrpLine);
+        this.saveMrpLine(mrpLine);
       }
     }
   }
@@ -741,15 +922,15 @@ public class MrpServiceImpl implements MrpService {
     if (mrp.getMrpForecastSet().isEmpty()) {
 
       mrpForecastList.addAll(
-          mrpForecastRepository
-              .all()
-              .filter(
-                  "self.product.id in (?1) AND self.stockLocation in (?2) AND self.forecastDate >= ?3 AND self.statusSelect = ?4",
-                  this.productMap.keySet(),
-                  this.stockLocationList,
-                  today,
-                  MrpForecastRepository.STATUS_CONFIRMED)
-              .fetch());
+          this.fetchSources(
+              MrpForecast.class,
+              "JOIN FETCH self.product LEFT JOIN FETCH self.unit",
+              "self.product.id in (?1) AND self.stockLocation in (?2) "
+                  + "AND self.forecastDate >= ?3 AND self.statusSelect = ?4",
+              this.productMap.keySet(),
+              this.stockLocationList,
+              today,
+              MrpForecastRepository.STATUS_CONFIRMED));
 
     } else {
       mrpForecastList.addAll(mrp.getMrpForecastSet());
@@ -758,10 +939,10 @@ public class MrpServiceImpl implements MrpService {
     for (MrpForecast mrpForecast : mrpForecastList) {
 
       this.createSaleForecastMrpLines(
-          mrpRepository.find(mrp.getId()),
-          mrpForecastRepository.find(mrpForecast.getId()),
-          mrpLineTypeRepository.find(saleForecastMrpLineType.getId()));
-      JPA.clear();
+          this.findAgain(mrpRepository, mrp),
+          this.findAgain(mrpForecastRepository, mrpForecast),
+          this.findAgain(mrpLineTypeRepository, saleForecastMrpLineType));
+      this.clearSession();
     }
   }
 
@@ -793,11 +974,49 @@ public class MrpServiceImpl implements MrpService {
               mrpForecast.getStockLocation(),
               mrpForecast);
       if (mrpLine != null) {
-        mrpLineRepository.save(mrpLine);
+        this.saveMrpLine(mrpLine);
       }
     }
   }
 
+  /**
+   * Fetch the records of a source of the mrp. On an in-memory calculation, the references used to
+   * create their mrp lines are fetched by the same query rather than one by one.
+   *
+   * @param klass
+   * @param fetchJoins JOIN FETCH clauses of the in-memory query
+   * @param filter
+   * @param params
+   * @return the records of the source
+   */
+  protected <T extends Model> List<T> fetchSources(
+      Class<T> klass, String fetchJoins, String filter, Object... params) {
+
+    if (!inMemoryCalculation) {
+      return JPA.all(klass).filter(filter, params).fetch();
+    }
+
+    TypedQuery<T> query =
+        JPA.em()
+            .createQuery(
+                String.format(
+                    "SELECT self FROM %s self %s WHERE %s",
+                    klass.getSimpleName(), fetchJoins, filter),
+                klass);
+    for (int i = 0; i < params.length; i++) {
+      query.setParameter(i + 1, params[i]);
+    }
+    return query.getResultList();
+  }
+
+  /**
+   * Find a record again after the session was cleared. The session is not cleared on an in-memory
+   * calculation, the record is then returned as it is.
+   */
+  protected <T extends Model> T findAgain(JpaRepository<T> repository, T record) {
+    return inMemoryCalculation ? record : repository.find(record.getId());
+  }
+
   protected LocalDate computeMaturityDate(LocalDate maturityDate, MrpLineType mrpLineType) {
     if ((maturityDate != null && maturityDate.isBefore(today))
         || (maturityDate == null && mrpLineType.getIncludeElementWithoutDate())) {
@@ -832,7 +1051,7 @@ public class MrpServiceImpl implements MrpService {
             stockLocationRepository.find(stockLocation.getId()),
             mrpLineTypeRepository.find(availableStockMrpLineType.getId()));
 
-        JPA.clear();
+        this.clearSession();
       }
     }
   }
@@ -853,17 +1072,24 @@ public class MrpServiceImpl implements MrpService {
       qty = stockLocationLine.getCurrentQty();
     }
 
-    return mrpLineRepository.save(
+    return this.saveMrpLine(
         this.createMrpLine(
             mrp, product, availableStockMrpLineType, qty, today, qty, stockLocation, null));
   }
 
   protected MrpLineType getMrpLineType(int elementSelect) throws AxelorException {
 
+    if (inMemoryCalculation && mrpLineTypeMap.containsKey(elementSelect)) {
+      return mrpLineTypeMap.get(elementSelect);
+    }
+
     MrpLineType mrpLineType =
         mrpLineTypeRepository.all().filter("self.elementSelect = ?1", elementSelect).fetchOne();
 
     if (mrpLineType != null) {
+      if (inMemoryCalculation) {
+        mrpLineTypeMap.put(elementSelect, mrpLineType);
+      }
       return mrpLineType;
     }
 
@@ -878,6 +1104,10 @@ public class MrpServiceImpl implements MrpService {
 
   protected StockLocationLine getStockLocationLine(Product product, StockLocation stockLocation) {
 
+    if (inMemoryCalculation && this.isPreloaded(product, stockLocation)) {
+      return stockLocationLineMap.get(Pair.of(product.getId(), stockLocation.getId()));
+    }
+
     return stockLocationLineRepository
         .all()
         .filter(
@@ -978,6 +1208,19 @@ public class MrpServiceImpl implements MrpService {
       Model model) {
 
     if (productMap != null && product != null) {
+      if (inMemoryCalculation) {
+        return mrpLineService.createMrpLine(
+            mrp,
+            product,
+            this.productMap.get(product.getId()),
+            mrpLineType,
+            qty,
+            maturityDate,
+            cumulativeQty,
+            stockLocation,
+            model,
+            this.getMinQty(product, stockLocation));
+      }
       return mrpLineService.createMrpLine(
           mrp,
           product,
@@ -992,6 +1235,78 @@ public class MrpServiceImpl implements MrpService {
     return null;
   }
 
+  protected BigDecimal getMinQty(Product product, StockLocation stockLocation) {
+
+    StockRules stockRules = this.getMrpStockRules(product, stockLocation);
+
+    if (stockRules != null) {
+      return stockRules.getMinQty();
+    }
+    return BigDecimal.ZERO;
+  }
+
+  /**
+   * Get the stock rules used for mrp of the product on the stock location. On an in-memory
+   * calculation, the stock rules are preloaded or cached for the calculation.
+   *
+   * @param product
+   * @param stockLocation
+   * @return the stock rules, or null if there is none
+   */
+  protected StockRules getMrpStockRules(Product product, StockLocation stockLocation) {
+
+    if (!inMemoryCalculation) {
+      return stockRulesService.getStockRules(
+          product,
+          stockLocation,
+          StockRulesRepository.TYPE_FUTURE,
+          StockRulesRepository.USE_CASE_USED_FOR_MRP);
+    }
+
+    Pair<Long, Long> key = Pair.of(product.getId(), stockLocation.getId());
+
+    if (mrpStockRulesMap.containsKey(key) || this.isPreloaded(product, stockLocation)) {
+      return mrpStockRulesMap.get(key);
+    }
+
+    StockRules stockRules =
+        stockRulesService.getStockRules(
+            product,
+            stockLocation,
+            StockRulesRepository.TYPE_FUTURE,
+            StockRulesRepository.USE_CASE_USED_FOR_MRP);
+    mrpStockRulesMap.put(key, stockRules);
+
+    return stockRules;
+  }
+
+  /**
+   * Save a mrp line, or add it to the timeline of its product on an in-memory calculation.
+   *
+   * @param mrpLine
+   * @return the saved mrp line
+   */
+  protected MrpLine saveMrpLine(MrpLine mrpLine) {
+
+    if (inMemoryCalculation) {
+      mrpLineTimeline.add(mrpLine);
+      return mrpLine;
+    }
+
+    return mrpLineRepository.save(mrpLine);
+  }
+
+  /**
+   * Clear the session between two processed elements. Nothing is done on an in-memory calculation,
+   * as the mrp lines still reference the loaded entities.
+   */
+  protected void clearSession() {
+
+    if (!inMemoryCalculation) {
+      JPA.clear();
+    }
+  }
+
   protected void copyMrpLineOrigins(MrpLine mrpLine, List<MrpLineOrigin> mrpLineOriginList) {
 
     if (mrpLineOriginList != null) {
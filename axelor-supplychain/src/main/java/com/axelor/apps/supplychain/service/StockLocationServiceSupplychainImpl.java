@@ -17,20 +17,14 @@
  */
 package com.axelor.apps.supplychain.service;
 
-import com.axelor.apps.base.db.Product;
-import com.axelor.apps.base.db.Unit;
 import com.axelor.apps.base.db.repo.ProductRepository;
-import com.axelor.apps.base.service.UnitConversionService;
-import com.axelor.apps.stock.db.StockLocation;
-import com.axelor.apps.stock.db.StockLocationLine;
 import com.axelor.apps.stock.db.repo.StockLocationRepository;
 import com.axelor.apps.stock.service.StockLocationLineService;
 import com.axelor.apps.stock.service.StockLocationServiceImpl;
 import com.axelor.exception.AxelorException;
-import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
-import java.util.List;
+import java.util.Collections;
 
 public class StockLocationServiceSupplychainImpl extends StockLocationServiceImpl
     implements StockLocationServiceSupplychain {
@@ -45,57 +39,11 @@ public class StockLocationServiceSupplychainImpl extends StockLocationServiceImp
 
   @Override
   public BigDecimal getReservedQty(Long productId, Long locationId) throws AxelorException {
-    if (productId != null) {
-      Product product = productRepo.find(productId);
-      Unit productUnit = product.getUnit();
-      UnitConversionService unitConversionService = Beans.get(UnitConversionService.class);
-
-      if (locationId == null) {
-        List<StockLocation> stockLocations = getNonVirtualStockLocations();
-        if (!stockLocations.isEmpty()) {
-          BigDecimal reservedQty = BigDecimal.ZERO;
-          for (StockLocation stockLocation : stockLocations) {
-            StockLocationLine stockLocationLine =
-                stockLocationLineService.getOrCreateStockLocationLine(
-                    stockLocationRepo.find(stockLocation.getId()), productRepo.find(productId));
-
-            if (stockLocationLine != null) {
-              Unit stockLocationLineUnit = stockLocationLine.getUnit();
-              reservedQty = reservedQty.add(stockLocationLine.getReservedQty());
-
-              if (productUnit != null && !productUnit.equals(stockLocationLineUnit)) {
-                reservedQty =
-                    unitConversionService.convert(
-                        stockLocationLineUnit,
-                        productUnit,
-                        reservedQty,
-                        reservedQty.scale(),
-                        product);
-              }
-            }
-          }
-          return reservedQty;
-        }
-      } else {
-        StockLocationLine stockLocationLine =
-            stockLocationLineService.getOrCreateStockLocationLine(
-                stockLocationRepo.find(locationId), productRepo.find(productId));
-
-        if (stockLocationLine != null) {
-          Unit stockLocationLineUnit = stockLocationLine.getUnit();
-
-          if (productUnit != null && !productUnit.equals(stockLocationLineUnit)) {
-            return unitConversionService.convert(
-                stockLocationLineUnit,
-                productUnit,
-                stockLocationLine.getReservedQty(),
-                stockLocationLine.getReservedQty().scale(),
-                product);
-          }
-          return stockLocationLine.getReservedQty();
-        }
-      }
+    if (productId == null) {
+      return null;
     }
-    return null;
+
+    return getQty(
+        productId, locationId == null ? null : Collections.singleton(locationId), "reservedQty");
   }
 }
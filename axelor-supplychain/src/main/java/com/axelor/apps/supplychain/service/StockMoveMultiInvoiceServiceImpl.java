@@ -28,7 +28,7 @@ import com.axelor.apps.account.service.invoice.generator.invoice.RefundInvoice;
 import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.service.AddressService;
 import com.axelor.apps.base.service.PartnerService;
-import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.purchase.db.PurchaseOrder;
 import com.axelor.apps.purchase.db.repo.PurchaseOrderRepository;
 import com.axelor.apps.sale.db.SaleOrder;
@@ -37,8 +37,6 @@ import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.supplychain.exception.IExceptionMessage;
 import com.axelor.apps.tool.StringTool;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -76,21 +74,17 @@ public class StockMoveMultiInvoiceServiceImpl implements StockMoveMultiInvoiceSe
 
   @Override
   public Entry<List<Long>, String> generateMultipleInvoices(List<Long> stockMoveIdList) {
-    StockMoveRepository stockMoveRepository = Beans.get(StockMoveRepository.class);
     List<Long> invoiceIdList = new ArrayList<>();
 
     StringBuilder stockMovesInError = new StringBuilder();
     List<StockMove> stockMoveList;
-    Query<StockMove> stockMoveQuery =
-        stockMoveRepository
-            .all()
+    KeysetPager<StockMove> stockMovePager =
+        KeysetPager.of(StockMove.class)
             .filter("self.id IN :stockMoveIdList")
             .bind("stockMoveIdList", stockMoveIdList);
-    int offset = 0;
 
-    while (!(stockMoveList = stockMoveQuery.fetch(AbstractBatch.FETCH_LIMIT, offset)).isEmpty()) {
+    while (!(stockMoveList = stockMovePager.fetchNext()).isEmpty()) {
       for (StockMove stockMove : stockMoveList) {
-        offset++;
         try {
           Invoice invoice = stockMoveInvoiceService.createInvoice(stockMove);
           if (invoice != null) {
@@ -105,10 +99,10 @@ public class StockMoveMultiInvoiceServiceImpl implements StockMoveMultiInvoiceSe
                   I18n.get(IExceptionMessage.STOCK_MOVE_GENERATE_INVOICE),
                   stockMove.getName(),
                   e.getLocalizedMessage()));
+          stockMovePager.seek(stockMove.getId());
           break;
         }
       }
-      JPA.clear();
     }
 
     return new SimpleImmutableEntry<>(invoiceIdList, stockMovesInError.toString());
@@ -19,12 +19,12 @@ package com.axelor.apps.supplychain.service.batch;
 
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.supplychain.db.SupplychainBatch;
 import com.axelor.apps.supplychain.exception.IExceptionMessage;
 import com.axelor.apps.supplychain.service.AccountingCutOffService;
-import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.IException;
 import com.axelor.exception.service.TraceBackService;
@@ -56,8 +56,6 @@ public class BatchAccountingCutOff extends BatchStrategy {
   @Override
   protected void process() {
 
-    int offset = 0;
-
     SupplychainBatch supplychainBatch = batch.getSupplychainBatch();
 
     LocalDate moveDate = supplychainBatch.getMoveDate();
@@ -73,18 +71,15 @@ public class BatchAccountingCutOff extends BatchStrategy {
       return;
     }
 
+    KeysetPager<StockMove> pager =
+        cutOffService.getStockMovePager(company, accountingCutOffTypeSelect, moveDate);
     List<StockMove> stockMoveList;
 
-    while (!(stockMoveList =
-            cutOffService.getStockMoves(
-                company, accountingCutOffTypeSelect, moveDate, FETCH_LIMIT, offset))
-        .isEmpty()) {
+    while (!(stockMoveList = pager.fetchNext()).isEmpty()) {
 
       findBatch();
 
       for (StockMove stockMove : stockMoveList) {
-        ++offset;
-
         try {
           List<Move> moveList =
               cutOffService.generateCutOffMoves(
@@ -112,6 +107,7 @@ public class BatchAccountingCutOff extends BatchStrategy {
               IException.INVOICE_ORIGIN,
               batch.getId());
           incrementAnomaly();
+          pager.seek(stockMove.getId());
           break;
         } catch (Exception e) {
           TraceBackService.trace(
@@ -121,11 +117,10 @@ public class BatchAccountingCutOff extends BatchStrategy {
               batch.getId());
           incrementAnomaly();
           LOG.error("Anomaly generated for the stock move {}", stockMove.getStockMoveSeq());
+          pager.seek(stockMove.getId());
           break;
         }
       }
-
-      JPA.clear();
     }
   }
 
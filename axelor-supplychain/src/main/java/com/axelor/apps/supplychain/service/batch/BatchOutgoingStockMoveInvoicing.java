@@ -21,21 +21,19 @@ import com.axelor.apps.account.db.repo.InvoiceRepository;
 import com.axelor.apps.base.db.repo.BlockingRepository;
 import com.axelor.apps.base.service.BlockingService;
 import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.administration.KeysetPager;
 import com.axelor.apps.sale.db.repo.SaleOrderRepository;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.supplychain.db.SupplychainBatch;
 import com.axelor.apps.supplychain.exception.IExceptionMessage;
 import com.axelor.apps.supplychain.service.StockMoveInvoiceService;
-import com.axelor.db.JPA;
 import com.axelor.exception.db.IException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import java.util.List;
-import javax.persistence.TypedQuery;
 
 public class BatchOutgoingStockMoveInvoicing extends AbstractBatch {
 
@@ -49,34 +47,25 @@ public class BatchOutgoingStockMoveInvoicing extends AbstractBatch {
   @Override
   protected void process() {
     SupplychainBatch supplychainBatch = batch.getSupplychainBatch();
-    List<Long> anomalyList = Lists.newArrayList(0L);
     SaleOrderRepository saleRepo = Beans.get(SaleOrderRepository.class);
 
-    int start = 0;
-    TypedQuery<StockMove> query =
-        JPA.em()
-            .createQuery(
-                "SELECT self FROM StockMove self "
-                    + "LEFT JOIN self.invoice invoice "
-                    + "WHERE self.statusSelect = :statusSelect "
+    KeysetPager<StockMove> pager =
+        KeysetPager.of(StockMove.class)
+            .filter(
+                "self.statusSelect = :statusSelect "
                     + "AND self.originTypeSelect LIKE :typeSaleOrder "
-                    + "AND (invoice IS NULL OR self.invoice.statusSelect = :invoiceStatusSelect)"
-                    + "AND self.id NOT IN (:anomalyList) "
+                    + "AND (self.invoice IS NULL "
+                    + "OR self.invoice.statusSelect = :invoiceStatusSelect) "
                     + "AND self.partner.id NOT IN ("
                     + Beans.get(BlockingService.class)
                         .listOfBlockedPartner(
                             supplychainBatch.getCompany(), BlockingRepository.INVOICING_BLOCKING)
-                    + ")",
-                StockMove.class)
-            .setParameter("statusSelect", StockMoveRepository.STATUS_REALIZED)
-            .setParameter("typeSaleOrder", StockMoveRepository.ORIGIN_SALE_ORDER)
-            .setParameter("invoiceStatusSelect", InvoiceRepository.STATUS_CANCELED)
-            .setParameter("anomalyList", anomalyList)
-            .setMaxResults(FETCH_LIMIT);
+                    + ")")
+            .bind("statusSelect", StockMoveRepository.STATUS_REALIZED)
+            .bind("typeSaleOrder", StockMoveRepository.ORIGIN_SALE_ORDER)
+            .bind("invoiceStatusSelect", InvoiceRepository.STATUS_CANCELED);
 
-    for (List<StockMove> stockMoveList;
-        !(stockMoveList = query.getResultList()).isEmpty();
-        JPA.clear(), start += FETCH_LIMIT, query.setFirstResult(start)) {
+    for (List<StockMove> stockMoveList; !(stockMoveList = pager.fetchNext()).isEmpty(); ) {
       for (StockMove stockMove : stockMoveList) {
         try {
           stockMoveInvoiceService.createInvoiceFromSaleOrder(
@@ -84,8 +73,7 @@ public class BatchOutgoingStockMoveInvoicing extends AbstractBatch {
           incrementDone();
         } catch (Exception e) {
           incrementAnomaly();
-          anomalyList.add(stockMove.getId());
-          query.setParameter("anomalyList", anomalyList);
+          pager.seek(stockMove.getId());
           TraceBackService.trace(e, IException.INVOICE_ORIGIN, batch.getId());
           e.printStackTrace();
           break;
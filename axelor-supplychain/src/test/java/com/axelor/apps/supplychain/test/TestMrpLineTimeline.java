@@ -0,0 +1,198 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.test;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.stock.db.StockLocation;
+import com.axelor.apps.supplychain.db.MrpLine;
+import com.axelor.apps.supplychain.db.MrpLineType;
+import com.axelor.apps.supplychain.db.repo.MrpLineTypeRepository;
+import com.axelor.apps.supplychain.service.MrpLineTimeline;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestMrpLineTimeline {
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final LocalDate TODAY = LocalDate.of(2019, 1, 1);
+
+  private MrpLineType availableStockType =
+      createMrpLineType(1L, MrpLineTypeRepository.ELEMENT_AVAILABLE_STOCK, 0, 0);
+  private MrpLineType purchaseOrderType =
+      createMrpLineType(2L, MrpLineTypeRepository.ELEMENT_PURCHASE_ORDER, 1, 10);
+  private MrpLineType saleOrderType =
+      createMrpLineType(3L, MrpLineTypeRepository.ELEMENT_SALE_ORDER, 2, 20);
+  private MrpLineType purchaseProposalType =
+      createMrpLineType(4L, MrpLineTypeRepository.ELEMENT_PURCHASE_PROPOSAL, 1, 5);
+
+  private StockLocation stockLocation = createStockLocation(1L);
+
+  @Test
+  public void testSortAndCumulativeQty() {
+
+    MrpLineTimeline timeline = new MrpLineTimeline();
+    Product product = createProduct(1L);
+
+    MrpLine sale = createMrpLine(product, saleOrderType, TODAY.plusDays(2), "-5");
+    MrpLine purchase = createMrpLine(product, purchaseOrderType, TODAY.plusDays(2), "3");
+    MrpLine stock = createMrpLine(product, availableStockType, TODAY, "4");
+    MrpLine proposal = createMrpLine(product, purchaseProposalType, TODAY.plusDays(2), "2");
+
+    timeline.add(sale);
+    timeline.add(purchase);
+    timeline.add(stock);
+    timeline.add(proposal);
+
+    List<MrpLine> mrpLineList = timeline.computeCumulativeQty(product.getId());
+
+    Assert.assertSame(stock, mrpLineList.get(0));
+    Assert.assertSame(proposal, mrpLineList.get(1));
+    Assert.assertSame(purchase, mrpLineList.get(2));
+    Assert.assertSame(sale, mrpLineList.get(3));
+
+    Assert.assertEquals(new BigDecimal("4"), stock.getCumulativeQty());
+    Assert.assertEquals(new BigDecimal("6"), proposal.getCumulativeQty());
+    Assert.assertEquals(new BigDecimal("9"), purchase.getCumulativeQty());
+    Assert.assertEquals(new BigDecimal("4"), sale.getCumulativeQty());
+  }
+
+  @Test
+  public void testEqualLinesKeepCreationOrder() {
+
+    MrpLineTimeline timeline = new MrpLineTimeline();
+    Product product = createProduct(1L);
+
+    MrpLine first = createMrpLine(product, saleOrderType, TODAY, "-1");
+    MrpLine second = createMrpLine(product, saleOrderType, TODAY, "-2");
+    timeline.add(first);
+    timeline.add(second);
+    timeline.computeCumulativeQty(product.getId());
+
+    MrpLine third = createMrpLine(product, saleOrderType, TODAY, "-3");
+    timeline.add(third);
+    List<MrpLine> mrpLineList = timeline.getSortedMrpLineList(product.getId());
+
+    Assert.assertSame(first, mrpLineList.get(0));
+    Assert.assertSame(second, mrpLineList.get(1));
+    Assert.assertSame(third, mrpLineList.get(2));
+    Assert.assertSame(third, timeline.getMrpLineList().get(2));
+  }
+
+  @Test
+  public void testFindMrpLine() {
+
+    MrpLineTimeline timeline = new MrpLineTimeline();
+    Product product = createProduct(1L);
+
+    MrpLine proposal = createMrpLine(product, purchaseProposalType, TODAY.plusDays(5), "2");
+    timeline.add(proposal);
+
+    Assert.assertSame(
+        proposal,
+        timeline.findMrpLine(
+            product, purchaseProposalType, stockLocation, TODAY, TODAY.plusDays(5)));
+    Assert.assertNull(
+        timeline.findMrpLine(
+            product, purchaseProposalType, stockLocation, TODAY.plusDays(5), TODAY.plusDays(9)));
+    Assert.assertNull(
+        timeline.findMrpLine(product, saleOrderType, stockLocation, TODAY, TODAY.plusDays(5)));
+  }
+
+  /** Benchmark of the in-memory netting structures on a generated dataset. */
+  @Test
+  public void benchmarkGeneratedDataset() {
+
+    int productCount = 20000;
+    int linesPerProduct = 20;
+    Random random = new Random(42);
+    MrpLineType[] types = {purchaseOrderType, saleOrderType};
+
+    MrpLineTimeline timeline = new MrpLineTimeline();
+
+    long start = System.currentTimeMillis();
+
+    for (long productId = 1; productId <= productCount; productId++) {
+      Product product = createProduct(productId);
+      timeline.add(createMrpLine(product, availableStockType, TODAY, "10"));
+      for (int i = 0; i < linesPerProduct; i++) {
+        MrpLineType type = types[random.nextInt(types.length)];
+        int qty = type == saleOrderType ? -random.nextInt(10) : random.nextInt(10);
+        timeline.add(
+            createMrpLine(product, type, TODAY.plusDays(random.nextInt(90)), String.valueOf(qty)));
+      }
+    }
+
+    long loaded = System.currentTimeMillis();
+
+    for (long productId = 1; productId <= productCount; productId++) {
+      timeline.computeCumulativeQty(productId);
+    }
+
+    long computed = System.currentTimeMillis();
+
+    log.info(
+        "MRP timeline benchmark: {} lines, loaded in {} ms, cumulative qty computed in {} ms",
+        timeline.size(),
+        loaded - start,
+        computed - loaded);
+
+    Assert.assertEquals(productCount * (linesPerProduct + 1), timeline.size());
+  }
+
+  private MrpLine createMrpLine(
+      Product product, MrpLineType mrpLineType, LocalDate maturityDate, String qty) {
+
+    MrpLine mrpLine = new MrpLine();
+    mrpLine.setProduct(product);
+    mrpLine.setMrpLineType(mrpLineType);
+    mrpLine.setMaturityDate(maturityDate);
+    mrpLine.setQty(new BigDecimal(qty));
+    mrpLine.setStockLocation(stockLocation);
+    return mrpLine;
+  }
+
+  private Product createProduct(Long id) {
+    Product product = new Product();
+    product.setId(id);
+    return product;
+  }
+
+  private StockLocation createStockLocation(Long id) {
+    StockLocation stockLocation = new StockLocation();
+    stockLocation.setId(id);
+    return stockLocation;
+  }
+
+  private MrpLineType createMrpLineType(Long id, int elementSelect, int typeSelect, int sequence) {
+
+    MrpLineType mrpLineType = new MrpLineType();
+    mrpLineType.setId(id);
+    mrpLineType.setElementSelect(elementSelect);
+    mrpLineType.setTypeSelect(typeSelect);
+    mrpLineType.setSequence(sequence);
+    return mrpLineType;
+  }
+}
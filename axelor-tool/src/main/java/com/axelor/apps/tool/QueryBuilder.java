@@ -22,6 +22,7 @@ import com.axelor.db.Query;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -71,15 +72,32 @@ public class QueryBuilder<T extends Model> {
     return this;
   }
 
+  /**
+   * Build the filter, joining the added filters with AND.
+   *
+   * @return
+   */
+  public String buildFilter() {
+    return Joiner.on(" AND ")
+        .join(Lists.transform(filterList, input -> String.format("(%s)", input)));
+  }
+
+  /**
+   * Get the bindings.
+   *
+   * @return
+   */
+  public Map<String, Object> getBindingMap() {
+    return Collections.unmodifiableMap(bindingMap);
+  }
+
   /**
    * Build the query.
    *
    * @return
    */
   public Query<T> build() {
-    String filter =
-        Joiner.on(" AND ").join(Lists.transform(filterList, input -> String.format("(%s)", input)));
-    Query<T> query = Query.of(modelClass).filter(filter);
+    Query<T> query = Query.of(modelClass).filter(buildFilter());
 
     for (Entry<String, Object> entry : bindingMap.entrySet()) {
       query.bind(entry.getKey(), entry.getValue());
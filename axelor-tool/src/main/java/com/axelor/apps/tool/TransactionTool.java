@@ -0,0 +1,94 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.tool;
+
+import com.axelor.db.JPA;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import org.hibernate.Session;
+
+public final class TransactionTool {
+
+  private TransactionTool() {}
+
+  /**
+   * Run an action once the current transaction is committed, for instance to invalidate a cache
+   * of committed data. The action is dropped if the transaction is rolled back, and run at once
+   * if there is no active transaction.
+   *
+   * @param action the action to run
+   */
+  public static void runAfterCommit(Runnable action) {
+    runAfterCompletion(
+        committed -> {
+          if (committed) {
+            action.run();
+          }
+        });
+  }
+
+  /**
+   * Run an action once the current transaction is completed, or at once if there is no active
+   * transaction.
+   *
+   * @param action the action to run, given true if the transaction was committed
+   */
+  public static void runAfterCompletion(Consumer<Boolean> action) {
+
+    EntityManager em = JPA.em();
+
+    if (!em.getTransaction().isActive()) {
+      action.accept(true);
+      return;
+    }
+
+    em.unwrap(Session.class)
+        .getTransaction()
+        .registerSynchronization(
+            new Synchronization() {
+              @Override
+              public void beforeCompletion() {}
+
+              @Override
+              public void afterCompletion(int status) {
+                action.accept(status == Status.STATUS_COMMITTED);
+              }
+            });
+  }
+
+  /**
+   * Read with a new entity manager, closed afterwards. The read only sees committed rows and does
+   * not fill the persistence context of the current one, as needed to load a shared cache.
+   *
+   * @param function the read
+   * @return the result of the read
+   */
+  public static <T> T callInNewEntityManager(Function<EntityManager, T> function) {
+
+    EntityManager em = JPA.em().getEntityManagerFactory().createEntityManager();
+
+    try {
+      return function.apply(em);
+    } finally {
+      em.close();
+    }
+  }
+}
@@ -20,6 +20,8 @@ package com.axelor.apps.tool.module;
 import com.axelor.app.AxelorModule;
 import com.axelor.apps.tool.service.CipherService;
 import com.axelor.apps.tool.service.CipherServiceImpl;
+import com.axelor.apps.tool.service.ScriptCacheService;
+import com.axelor.apps.tool.service.ScriptCacheServiceImpl;
 import com.axelor.apps.tool.service.TranslationService;
 import com.axelor.apps.tool.service.TranslationServiceImpl;
 
@@ -29,5 +31,6 @@ public class ToolModule extends AxelorModule {
   protected void configure() {
     bind(CipherService.class).to(CipherServiceImpl.class);
     bind(TranslationService.class).to(TranslationServiceImpl.class);
+    bind(ScriptCacheService.class).to(ScriptCacheServiceImpl.class);
   }
 }
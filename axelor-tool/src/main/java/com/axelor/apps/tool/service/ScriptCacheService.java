@@ -0,0 +1,68 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.tool.service;
+
+import com.google.common.cache.CacheStats;
+import groovy.lang.Script;
+import java.util.Map;
+
+/**
+ * Cache of compiled Groovy scripts, keyed by their text.
+ *
+ * <p>Scripts are compiled once with {@code java.lang.Math} statically imported, and each evaluation
+ * runs a new instance of the compiled class with its own binding, so the cache can be used from
+ * several threads.
+ */
+public interface ScriptCacheService {
+
+  /**
+   * Get the compiled class of a script, compiling it on first use.
+   *
+   * @param expression
+   * @return
+   */
+  Class<? extends Script> getScriptClass(String expression);
+
+  /**
+   * Evaluate a script with the given variables.
+   *
+   * @param expression
+   * @param variables
+   * @return the result of the script
+   */
+  Object eval(String expression, Map<String, Object> variables);
+
+  /**
+   * Evaluate a formula template, where {@code $Name.path$} is the value of a path on the object of
+   * the context named Name, like the templates rendered by {@link
+   * com.axelor.tool.template.TemplateMaker} before being evaluated.
+   *
+   * <p>Placeholders are replaced by variables, so the formula is compiled once for all the objects.
+   * Templates using other expressions are rendered for each evaluation, then evaluated.
+   *
+   * @param template
+   * @param context
+   * @return the result of the formula
+   */
+  Object evalTemplate(String template, Map<String, Object> context);
+
+  /** Get the hit, miss and eviction counts of the cache. */
+  CacheStats getStats();
+
+  void invalidateAll();
+}
@@ -0,0 +1,191 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.tool.service;
+
+import com.axelor.app.AppSettings;
+import com.axelor.auth.AuthUtils;
+import com.axelor.tool.template.TemplateMaker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Singleton;
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+@Singleton
+public class ScriptCacheServiceImpl implements ScriptCacheService {
+
+  public static final String CACHE_SIZE_PROPERTY = "script.formula.cache.size";
+
+  public static final int DEFAULT_CACHE_SIZE = 1000;
+
+  private static final char TEMPLATE_DELIMITER = '$';
+
+  /** Placeholder of a template whose value is a path, like $Product.netMass$. */
+  private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\$([A-Za-z_][\\w.]*)\\$");
+
+  /** Prefix of the template variables, so that they can not be taken for class names. */
+  private static final String VARIABLE_PREFIX = "__";
+
+  private static final String USER = "__user__";
+  private static final String DATE = "__date__";
+  private static final String TIME = "__time__";
+  private static final String DATETIME = "__datetime__";
+
+  private final CompilerConfiguration configuration;
+
+  private final Cache<String, Class<? extends Script>> cache;
+
+  public ScriptCacheServiceImpl() {
+    this(AppSettings.get().getInt(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+  }
+
+  /** @param cacheSize maximum count of compiled scripts, the least recently used are evicted */
+  public ScriptCacheServiceImpl(int cacheSize) {
+    ImportCustomizer customizer = new ImportCustomizer();
+    customizer.addStaticStars("java.lang.Math");
+    configuration = new CompilerConfiguration();
+    configuration.addCompilationCustomizers(customizer);
+
+    cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .recordStats()
+            .build();
+  }
+
+  @Override
+  public Class<? extends Script> getScriptClass(String expression) {
+    try {
+      return cache.get(expression, () -> compile(expression));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  protected Class<? extends Script> compile(String expression) {
+    GroovyShell shell = new GroovyShell(getClass().getClassLoader(), new Binding(), configuration);
+    return shell.parse(expression).getClass();
+  }
+
+  @Override
+  public Object eval(String expression, Map<String, Object> variables) {
+    Binding binding = new Binding();
+    variables.forEach(binding::setVariable);
+    return InvokerHelper.createScript(getScriptClass(expression), binding).run();
+  }
+
+  @Override
+  public Object evalTemplate(String template, Map<String, Object> context) {
+    String expression = replacePlaceholders(template);
+
+    if (expression.indexOf(TEMPLATE_DELIMITER) >= 0) {
+      TemplateMaker maker =
+          new TemplateMaker(Locale.FRENCH, TEMPLATE_DELIMITER, TEMPLATE_DELIMITER);
+      maker.addInContext(context);
+      maker.setTemplate(template);
+      return eval(maker.make(), Collections.emptyMap());
+    }
+
+    Binding binding = new Binding();
+    context.forEach((name, value) -> binding.setVariable(VARIABLE_PREFIX + name, value));
+    bindInternal(binding, expression, USER, AuthUtils::getUser);
+    bindInternal(binding, expression, DATE, LocalDate::now);
+    bindInternal(binding, expression, TIME, LocalTime::now);
+    bindInternal(binding, expression, DATETIME, LocalDateTime::now);
+
+    return InvokerHelper.createScript(getScriptClass(expression), binding).run();
+  }
+
+  /**
+   * Replace the placeholders of a template by variables, outside of its string literals. A
+   * placeholder inside a literal is left to the rendering of the template, which inserts the value
+   * in the text of the literal.
+   *
+   * @param template
+   * @return
+   */
+  protected String replacePlaceholders(String template) {
+    StringBuilder expression = new StringBuilder(template.length());
+    int start = 0;
+    char quote = 0;
+
+    for (int i = 0; i < template.length(); i++) {
+      char c = template.charAt(i);
+      if (quote == 0) {
+        if (c == '\'' || c == '"') {
+          appendReplaced(expression, template.substring(start, i));
+          start = i;
+          quote = c;
+        }
+      } else if (c == '\\') {
+        i++;
+      } else if (c == quote) {
+        expression.append(template, start, i + 1);
+        start = i + 1;
+        quote = 0;
+      }
+    }
+
+    if (quote == 0) {
+      appendReplaced(expression, template.substring(start));
+    } else {
+      expression.append(template, start, template.length());
+    }
+
+    return expression.toString();
+  }
+
+  private void appendReplaced(StringBuilder expression, String code) {
+    expression.append(PLACEHOLDER_PATTERN.matcher(code).replaceAll(VARIABLE_PREFIX + "$1"));
+  }
+
+  /** Bind a variable of the template internal context, only when the formula uses it. */
+  private void bindInternal(Binding binding, String expression, String name, Supplier<?> value) {
+    if (expression.contains(VARIABLE_PREFIX + name)) {
+      binding.setVariable(VARIABLE_PREFIX + name, value.get());
+    }
+  }
+
+  @Override
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  @Override
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+}
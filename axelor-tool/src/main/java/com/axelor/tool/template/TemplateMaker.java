@@ -31,6 +31,7 @@ import com.beust.jcommander.internal.Maps;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -39,6 +40,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Map;
@@ -51,10 +54,15 @@ import org.stringtemplate.v4.NumberRenderer;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroup;
 import org.stringtemplate.v4.StringRenderer;
+import org.stringtemplate.v4.compiler.FormalArgument;
 import org.stringtemplate.v4.misc.ObjectModelAdaptor;
 
 public class TemplateMaker {
 
+  private static final String[] INTERNAL_NAMES = {
+    "__user__", "__date__", "__time__", "__datetime__"
+  };
+
   private Map<String, Object> context;
   private Map<String, Object> localContext;
 
@@ -153,8 +161,55 @@ public class TemplateMaker {
       throw new IllegalArgumentException(I18n.get(IExceptionMessage.TEMPLATE_MAKER_2));
     }
 
-    ST st = new ST(stGroup, template);
+    return make(new ST(stGroup, template), makeContext());
+  }
 
+  /**
+   * Compile a template once, to be rendered for several contexts with {@link #make(ST)}.
+   *
+   * <p>The names of the context are defined on the compiled template, so that rendering it for a
+   * context with the same names does not modify it: the compiled template can then be rendered by
+   * several threads.
+   *
+   * @param text the template
+   * @param names the names put in the context by {@link #setContext} and {@link #addInContext},
+   *     the internal names are always defined
+   * @return the compiled template
+   */
+  public ST compile(String text, Collection<String> names) {
+    if (Strings.isNullOrEmpty(text)) {
+      throw new IllegalArgumentException(I18n.get(IExceptionMessage.TEMPLATE_MAKER_2));
+    }
+
+    ST st = new ST(stGroup, text);
+    for (String name : Iterables.concat(names, Arrays.asList(INTERNAL_NAMES))) {
+      // Define the name, and leave it without value.
+      st.add(name, null);
+      st.remove(name);
+    }
+    return st;
+  }
+
+  /**
+   * Render a template compiled by {@link #compile}, with the context of this maker.
+   *
+   * @param compiledTemplate
+   * @return the rendered template
+   */
+  public String make(ST compiledTemplate) {
+    Map<String, Object> _map = makeContext();
+    Map<String, FormalArgument> arguments = compiledTemplate.impl.formalArguments;
+
+    // A name unknown to the compiled template would be defined on it: compile it again instead.
+    ST st =
+        arguments != null && arguments.keySet().containsAll(_map.keySet())
+            ? new ST(compiledTemplate)
+            : new ST(stGroup, compiledTemplate.impl.template);
+
+    return make(st, _map);
+  }
+
+  private Map<String, Object> makeContext() {
     Map<String, Object> _map = Maps.newHashMap();
     if (localContext != null && !localContext.isEmpty()) {
       _map.putAll(localContext);
@@ -169,6 +224,10 @@ public class TemplateMaker {
     _map.put("__time__", LocalTime.now());
     _map.put("__datetime__", LocalDateTime.now());
 
+    return _map;
+  }
+
+  private String make(ST st, Map<String, Object> _map) {
     for (String key : _map.keySet()) {
       Object value = _map.get(key);
       if (value instanceof String) {
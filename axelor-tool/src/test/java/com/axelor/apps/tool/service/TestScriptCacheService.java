@@ -0,0 +1,85 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2019 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.tool.service;
+
+import com.google.common.collect.ImmutableMap;
+import java.math.BigDecimal;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestScriptCacheService {
+
+  private ScriptCacheServiceImpl scriptCacheService = new ScriptCacheServiceImpl(2);
+
+  @Test
+  public void testEval() {
+
+    Assert.assertEquals(
+        new BigDecimal("7.5"),
+        scriptCacheService.eval("a * b", ImmutableMap.of("a", new BigDecimal("2.5"), "b", 3)));
+    Assert.assertEquals(
+        new BigDecimal("10"),
+        scriptCacheService.eval("a * b", ImmutableMap.of("a", new BigDecimal("5"), "b", 2)));
+    Assert.assertEquals(2, scriptCacheService.eval("max(1, 2)", Collections.emptyMap()));
+
+    Assert.assertEquals(1, scriptCacheService.getStats().hitCount());
+    Assert.assertEquals(2, scriptCacheService.getStats().missCount());
+  }
+
+  @Test
+  public void testEviction() {
+
+    scriptCacheService.getScriptClass("1");
+    scriptCacheService.getScriptClass("2");
+    scriptCacheService.getScriptClass("1");
+    scriptCacheService.getScriptClass("3");
+
+    Assert.assertEquals(1, scriptCacheService.getStats().evictionCount());
+  }
+
+  @Test
+  public void testEvalTemplate() {
+
+    String template = "$Product.netMass$ * 1000";
+
+    Assert.assertEquals(
+        new BigDecimal("1500.0"),
+        scriptCacheService.evalTemplate(
+            template,
+            ImmutableMap.of("Product", ImmutableMap.of("netMass", new BigDecimal("1.5")))));
+    Assert.assertEquals(
+        new BigDecimal("2000"),
+        scriptCacheService.evalTemplate(
+            template, ImmutableMap.of("Product", ImmutableMap.of("netMass", new BigDecimal("2")))));
+
+    Assert.assertEquals(1, scriptCacheService.getStats().hitCount());
+  }
+
+  @Test
+  public void testPlaceholdersInLiterals() {
+
+    Assert.assertEquals(
+        "'$Product.name$ (kg)' + __Product.netMass + \"\\\"$Unit.name$\"",
+        scriptCacheService.replacePlaceholders(
+            "'$Product.name$ (kg)' + $Product.netMass$ + \"\\\"$Unit.name$\""));
+    Assert.assertEquals(
+        "__Product.netMass + 'unclosed $Unit.name$",
+        scriptCacheService.replacePlaceholders("$Product.netMass$ + 'unclosed $Unit.name$"));
+  }
+}
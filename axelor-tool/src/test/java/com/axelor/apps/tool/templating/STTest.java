@@ -24,6 +24,8 @@ import com.google.common.collect.Maps;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
 import org.junit.Assert;
@@ -31,6 +33,7 @@ import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.stringtemplate.v4.ST;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class STTest {
@@ -162,6 +165,29 @@ public class STTest {
     }
   }
 
+  @Test
+  public void test4() {
+    TemplateMaker maker = new TemplateMaker(new Locale("fr"), '$', '$');
+    ST compiledContent =
+        maker.compile(content, Arrays.asList("contact", "testKey1", "testKey2", "testKey3"));
+
+    for (int i = 0; i < 10000; i++) {
+      maker.setContext(contact, map, "contact");
+      Assert.assertEquals(contentFinal, maker.make(compiledContent));
+    }
+  }
+
+  @Test
+  public void test5() {
+    TemplateMaker maker = new TemplateMaker(new Locale("fr"), '$', '$');
+    ST compiledContent = maker.compile(content, Collections.singletonList("contact"));
+
+    // The keys of the map are not defined on the compiled template, it is compiled again.
+    maker.setContext(contact, map, "contact");
+    Assert.assertEquals(contentFinal, maker.make(compiledContent));
+    Assert.assertNull(compiledContent.impl.formalArguments.get("testKey1"));
+  }
+
   class ThreadTest extends Thread {
     @Override
     public void run() {